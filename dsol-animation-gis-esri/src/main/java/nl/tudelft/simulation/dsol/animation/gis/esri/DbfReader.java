@@ -3,13 +3,15 @@ package nl.tudelft.simulation.dsol.animation.gis.esri;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import nl.tudelft.simulation.dsol.animation.gis.io.Endianness;
-import nl.tudelft.simulation.dsol.animation.gis.io.ObjectEndianInputStream;
+import nl.tudelft.simulation.dsol.animation.gis.io.MappedFile;
 
 /**
- * This class reads a dbf file (in dBase III format), as used in ESRI ShapeFiles.
+ * This class reads a dbf file (in dBase III format), as used in ESRI ShapeFiles. The file is mapped into memory once, and the
+ * rows are decoded directly from the mapped buffer.
  * <p>
  * Copyright (c) 2020-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
@@ -30,9 +32,15 @@ public class DbfReader implements Serializable
     /** the FBFFile. */
     private URL dbfFile;
 
+    /** the contents of the dbf file; mapped again when needed after deserialization. */
+    private transient ByteBuffer buffer;
+
     /** the numberofColumns. */
     private int[] columnLength;
 
+    /** the offset of each column within a record, after the deletion flag. */
+    private int[] columnOffset;
+
     /** the names of the columns. */
     private String[] columnNames;
 
@@ -56,49 +64,53 @@ public class DbfReader implements Serializable
     public DbfReader(final URL dbfFile) throws IOException
     {
         this.dbfFile = dbfFile;
-        ObjectEndianInputStream dbfInput = new ObjectEndianInputStream(dbfFile.openStream());
-        if (dbfInput.readByte() != 3)
+        ByteBuffer dbf = getBuffer();
+        if (dbf.limit() < 32 || dbf.get(0) != 3)
         {
             throw new IOException("dbf file does not seem to be a Dbase III file");
         }
 
-        dbfInput.skipBytes(3);
-        dbfInput.setEndianness(Endianness.LITTLE_ENDIAN);
-
-        this.numRecords = dbfInput.readInt();
-        this.headerLength = dbfInput.readShort();
+        this.numRecords = dbf.getInt(4);
+        this.headerLength = dbf.getShort(8) & 0xffff;
         this.numColumns = (this.headerLength - 33) / 32;
-        this.recordLength = dbfInput.readShort();
+        this.recordLength = dbf.getShort(10) & 0xffff;
 
         this.columnLength = new int[this.numColumns];
+        this.columnOffset = new int[this.numColumns];
         this.columnNames = new String[this.numColumns];
 
-        dbfInput.skipBytes(20);
+        int offset = 0;
         for (int i = 0; i < this.numColumns; i++)
         {
-            StringBuffer buffer = new StringBuffer();
+            int position = 32 + 32 * i;
+            StringBuffer name = new StringBuffer();
             for (int j = 0; j < 10; j++)
             {
-                byte b = dbfInput.readByte();
+                byte b = dbf.get(position + j);
                 if (b > 31)
                 {
-                    buffer.append((char) b);
+                    name.append((char) b);
                 }
             }
-            this.columnNames[i] = buffer.toString();
-            dbfInput.setEndianness(Endianness.BIG_ENDIAN);
-            dbfInput.readChar();
-
-            dbfInput.skipBytes(4);
+            this.columnNames[i] = name.toString();
+            this.columnLength[i] = dbf.get(position + 16) & 0xff;
+            this.columnOffset[i] = offset;
+            offset += this.columnLength[i];
+        }
+    }
 
-            this.columnLength[i] = dbfInput.readByte();
-            if (this.columnLength[i] < 0)
-            {
-                this.columnLength[i] += 256;
-            }
-            dbfInput.skipBytes(15);
+    /**
+     * Return the mapped contents of the dbf file, and map the file when this has not been done yet.
+     * @return ByteBuffer; the mapped contents of the dbf file
+     * @throws IOException when the file cannot be read
+     */
+    private synchronized ByteBuffer getBuffer() throws IOException
+    {
+        if (this.buffer == null)
+        {
+            this.buffer = MappedFile.map(this.dbfFile, Endianness.LITTLE_ENDIAN);
         }
-        dbfInput.close();
+        return this.buffer;
     }
 
     /**
@@ -110,33 +122,34 @@ public class DbfReader implements Serializable
         return this.columnNames;
     }
 
+    /**
+     * Return the number of records (rows) in the dbf file.
+     * @return int; the number of records in the dbf file
+     */
+    public int getNumRecords()
+    {
+        return this.numRecords;
+    }
+
     /**
      * returns the row.
      * @param rowNumber int; the rowNumber
      * @return String[] the attributes of the row
      * @throws IOException on read failure
-     * @throws IndexOutOfBoundsException whenever the rowNumber &gt; numRecords
+     * @throws IndexOutOfBoundsException whenever the rowNumber &gt;= numRecords
      */
     public String[] getRow(final int rowNumber) throws IOException, IndexOutOfBoundsException
     {
-        if (rowNumber > this.numRecords)
+        if (rowNumber < 0 || rowNumber >= this.numRecords)
         {
-            throw new IndexOutOfBoundsException("dbfFile : rowNumber > numRecords");
+            throw new IndexOutOfBoundsException("dbfFile : rowNumber " + rowNumber + " >= numRecords " + this.numRecords);
         }
-
-        // Either we may not cache of the cache is still empty
+        ByteBuffer dbf = getBuffer().duplicate();
         String[] row = new String[this.numColumns];
-
-        ObjectEndianInputStream dbfInput = new ObjectEndianInputStream(this.dbfFile.openStream());
-        dbfInput.skipBytes(this.headerLength + 1);
-        dbfInput.skipBytes(rowNumber * this.recordLength);
-        for (int i = 0; i < this.numColumns; i++)
+        for (int col = 0; col < this.numColumns; col++)
         {
-            byte[] bytes = new byte[this.columnLength[i]];
-            dbfInput.read(bytes);
-            row[i] = new String(bytes);
+            row[col] = readValue(dbf, rowNumber, col);
         }
-        dbfInput.close();
         return row;
     }
 
@@ -147,26 +160,33 @@ public class DbfReader implements Serializable
      */
     public String[][] getRows() throws IOException
     {
+        ByteBuffer dbf = getBuffer().duplicate();
         String[][] result = new String[this.numRecords][this.numColumns];
-        ObjectEndianInputStream dbfInput = new ObjectEndianInputStream(this.dbfFile.openStream());
-        dbfInput.skipBytes(this.headerLength + 1);
         for (int row = 0; row < this.numRecords; row++)
         {
             for (int col = 0; col < this.numColumns; col++)
             {
-                byte[] bytes = new byte[this.columnLength[col]];
-                dbfInput.read(bytes);
-                result[row][col] = new String(bytes);
-                if (col == this.numColumns - 1)
-                {
-                    dbfInput.skipBytes(1);
-                }
+                result[row][col] = readValue(dbf, row, col);
             }
         }
-        dbfInput.close();
         return result;
     }
 
+    /**
+     * Decode one value from the buffer.
+     * @param dbf ByteBuffer; a duplicate of the buffer, of which the position can be changed
+     * @param row int; the row number
+     * @param col int; the column number
+     * @return String; the value of the column in the row
+     */
+    private String readValue(final ByteBuffer dbf, final int row, final int col)
+    {
+        byte[] bytes = new byte[this.columnLength[col]];
+        dbf.position(this.headerLength + 1 + row * this.recordLength + this.columnOffset[col]);
+        dbf.get(bytes);
+        return new String(bytes);
+    }
+
     /**
      * returns the array of rowNumbers belonging to a attribute/column pair.
      * @param attribute String; the attribute value
@@ -177,14 +197,14 @@ public class DbfReader implements Serializable
     public int[] getRowNumbers(final String attribute, final String columnName) throws IOException
     {
         ArrayList<Integer> result = new ArrayList<>();
-        String[][] rows = this.getRows();
+        ByteBuffer dbf = getBuffer().duplicate();
         for (int col = 0; col < this.numColumns; col++)
         {
             if (this.columnNames[col].equals(columnName))
             {
                 for (int row = 0; row < this.numRecords; row++)
                 {
-                    if (rows[row][col].equals(attribute))
+                    if (readValue(dbf, row, col).equals(attribute))
                     {
                         result.add(Integer.valueOf(row));
                     }
@@ -2,6 +2,7 @@ package nl.tudelft.simulation.dsol.animation.gis.esri;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -13,6 +14,7 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.djutils.draw.bounds.Bounds2d;
 import org.djutils.io.URLResource;
+import org.djutils.logger.CategoryLogger;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -26,6 +28,7 @@ import nl.tudelft.simulation.dsol.animation.gis.MapImageInterface;
 import nl.tudelft.simulation.dsol.animation.gis.MapUnits;
 import nl.tudelft.simulation.dsol.animation.gis.map.Feature;
 import nl.tudelft.simulation.dsol.animation.gis.map.GisMap;
+import nl.tudelft.simulation.dsol.animation.gis.map.GisMapCache;
 import nl.tudelft.simulation.dsol.animation.gis.map.Layer;
 import nl.tudelft.simulation.dsol.animation.gis.map.MapImage;
 import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
@@ -75,6 +78,31 @@ public final class EsriFileXmlParser
      */
     public static GisMapInterface parseMapFile(final URL url, final CoordinateTransform coordinateTransform) throws IOException
     {
+        return parseMapFile(url, coordinateTransform, null);
+    }
+
+    /**
+     * parses a Mapfile URL to a mapFile, using a compiled map cache file. When the cache file is still valid for the mapfile,
+     * the shape files, and the coordinate transform, the map is read from the cache file. Otherwise, the mapfile is parsed, and
+     * the map is written to the cache file to be used the next time.
+     * @param url URL; the mapfile url.
+     * @param coordinateTransform CoordinateTransform; the transformation of (x, y) coordinates to (x', y') coordinates.
+     * @param cacheFile File; the map cache file, or null to not use a map cache
+     * @return MapInterface the parsed mapfile.
+     * @throws IOException on failure
+     */
+    public static GisMapInterface parseMapFile(final URL url, final CoordinateTransform coordinateTransform,
+            final File cacheFile) throws IOException
+    {
+        GisMapCache cache = cacheFile == null ? null : new GisMapCache(cacheFile);
+        if (cache != null)
+        {
+            GisMapInterface cachedMap = cache.read(coordinateTransform, url);
+            if (cachedMap != null)
+            {
+                return cachedMap;
+            }
+        }
         try
         {
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -104,8 +132,21 @@ public final class EsriFileXmlParser
             }
 
             // map.layer
-            map.setLayers(parseLayers(root.getElementsByTagName("layer"), coordinateTransform));
+            List<URL> sources = new ArrayList<>();
+            sources.add(url);
+            map.setLayers(parseLayers(root.getElementsByTagName("layer"), coordinateTransform, sources));
 
+            if (cache != null)
+            {
+                try
+                {
+                    cache.write(map, coordinateTransform, sources);
+                }
+                catch (IOException exception)
+                {
+                    CategoryLogger.always().warn("could not write map cache file {}: {}", cacheFile, exception.getMessage());
+                }
+            }
             return map;
         }
         catch (DOMException | SAXException | ParserConfigurationException exception)
@@ -242,11 +283,12 @@ public final class EsriFileXmlParser
      * Parse an xml-element representing a Layer.
      * @param layerNodeList NodeList; the list of layer tags in the map
      * @param coordinateTransform CoordinateTransform; the transformation to apply to the layer
+     * @param sources List&lt;URL&gt;; the list to which the URLs of the shape files of the layers are added
      * @return List&lt;LayerInterface&gt;; the list of parsed layers
      * @throws IOException on parsing error
      */
-    private static List<LayerInterface> parseLayers(final NodeList layerNodeList, final CoordinateTransform coordinateTransform)
-            throws IOException
+    private static List<LayerInterface> parseLayers(final NodeList layerNodeList, final CoordinateTransform coordinateTransform,
+            final List<URL> sources) throws IOException
     {
         try
         {
@@ -271,6 +313,8 @@ public final class EsriFileXmlParser
                     }
                     ShapeFileReader dataSource = new ShapeFileReader(resource, coordinateTransform, layer.getFeatures());
                     dataSource.populateShapes();
+                    layer.setDynamic(dataSource.isDynamic());
+                    sources.addAll(dataSource.getSourceURLs());
                 }
 
                 /*-
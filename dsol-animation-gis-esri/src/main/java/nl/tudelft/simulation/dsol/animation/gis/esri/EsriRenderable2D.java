@@ -2,7 +2,6 @@ package nl.tudelft.simulation.dsol.animation.gis.esri;
 
 import java.awt.Dimension;
 import java.awt.Graphics2D;
-import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 import java.rmi.RemoteException;
 
@@ -17,6 +16,7 @@ import org.djutils.logger.CategoryLogger;
 import nl.tudelft.simulation.dsol.animation.D2.RenderableScale;
 import nl.tudelft.simulation.dsol.animation.gis.GisMapInterface;
 import nl.tudelft.simulation.dsol.animation.gis.GisRenderable2D;
+import nl.tudelft.simulation.dsol.animation.gis.GisTileCache;
 import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
 import nl.tudelft.simulation.naming.context.Contextualized;
 import nl.tudelft.simulation.naming.context.util.ContextUtil;
@@ -40,18 +40,14 @@ public class EsriRenderable2D implements GisRenderable2D
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected GisMapInterface map = null;
 
-    /** the image cached image. */
+    /** the cache with the tiles of the static layers of the map. */
     @SuppressWarnings("checkstyle:visibilitymodifier")
-    protected BufferedImage cachedImage = null;
+    protected GisTileCache tileCache = null;
 
-    /** the cached extent. */
+    /** the extent of the last paint operation. */
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected Bounds2d cachedExtent = new Bounds2d(0, 0, 0, 0);
 
-    /** the cached screenSize. */
-    @SuppressWarnings("checkstyle:visibilitymodifier")
-    protected Dimension cachedScreenSize = new Dimension();
-
     /** the location of the map. */
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected OrientedPoint3d location = null;
@@ -95,6 +91,7 @@ public class EsriRenderable2D implements GisRenderable2D
         try
         {
             this.map = map;
+            this.tileCache = new GisTileCache(map);
             this.location = new OrientedPoint3d(this.cachedExtent.midPoint().getX(), this.cachedExtent.midPoint().getY(), z);
             this.bounds = new Bounds3d(this.cachedExtent.getDeltaX(), this.cachedExtent.getDeltaY(), 0.0);
             this.bind2Context(contextProvider);
@@ -131,16 +128,20 @@ public class EsriRenderable2D implements GisRenderable2D
     {
         try
         {
-            // is the extent or the screen size still the same
-            if (extent.equals(this.cachedExtent) && screen.equals(this.cachedScreenSize) && this.map.isSame())
+            // the tiles are only valid as long as the visible layers of the map do not change
+            if (!this.map.isSame())
             {
-                graphics.drawImage(this.cachedImage, 0, 0, null);
-                return;
+                this.tileCache.clear();
+            }
+            if (!extent.equals(this.cachedExtent))
+            {
+                this.cachedExtent = extent;
+                this.location = new OrientedPoint3d(extent.midPoint().getX(), extent.midPoint().getY(), this.location.getZ());
+                this.bounds = new Bounds3d(extent.getDeltaX(), extent.getDeltaY(), 0.0);
             }
             this.map.setExtent(extent);
             this.map.getImage().setSize(screen);
-            this.cacheImage();
-            this.paintComponent(graphics, extent, screen, renderableScale, observer);
+            this.tileCache.paint(graphics, extent, screen, observer);
         }
         catch (Exception exception)
         {
@@ -178,24 +179,6 @@ public class EsriRenderable2D implements GisRenderable2D
         return this.map;
     }
 
-    /**
-     * caches the GIS map by creating an image. This prevents continuous rendering.
-     * @throws Exception on graphicsProblems and network connection failures.
-     */
-    private void cacheImage() throws Exception
-    {
-        this.cachedImage = new BufferedImage((int) this.map.getImage().getSize().getWidth(),
-                (int) this.map.getImage().getSize().getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-        Graphics2D bg = this.cachedImage.createGraphics();
-        this.map.drawMap(bg);
-        bg.dispose();
-        this.cachedScreenSize = (Dimension) this.map.getImage().getSize().clone();
-        this.cachedExtent = this.map.getExtent();
-        this.location = new OrientedPoint3d(this.cachedExtent.midPoint().getX(), this.cachedExtent.midPoint().getY(),
-                -Double.MIN_VALUE);
-        this.bounds = new Bounds3d(this.cachedExtent.getDeltaX(), this.cachedExtent.getDeltaY(), 0.0);
-    }
-
     /**
      * destroys an RenderableObject by unsubscribing it from the context.
      */
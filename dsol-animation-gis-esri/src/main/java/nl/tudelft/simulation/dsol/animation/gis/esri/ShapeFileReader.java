@@ -2,28 +2,32 @@ package nl.tudelft.simulation.dsol.animation.gis.esri;
 
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
+import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.djutils.draw.bounds.Bounds2d;
 import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
 
 import nl.tudelft.simulation.dsol.animation.gis.DataSourceInterface;
 import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
+import nl.tudelft.simulation.dsol.animation.gis.GeometryStore;
 import nl.tudelft.simulation.dsol.animation.gis.GisMapInterface;
 import nl.tudelft.simulation.dsol.animation.gis.GisObject;
 import nl.tudelft.simulation.dsol.animation.gis.SerializablePath;
-import nl.tudelft.simulation.dsol.animation.gis.SerializableRectangle2D;
+import nl.tudelft.simulation.dsol.animation.gis.SpatialIndex;
 import nl.tudelft.simulation.dsol.animation.gis.io.Endianness;
-import nl.tudelft.simulation.dsol.animation.gis.io.ObjectEndianInputStream;
+import nl.tudelft.simulation.dsol.animation.gis.io.MappedFile;
 import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
-import nl.tudelft.simulation.language.d2.Shape;
 
 /**
- * This class reads ESRI-shapefiles and returns the shape objects.
+ * This class reads ESRI-shapefiles and returns the shape objects. The shape file and the shape index file are mapped into
+ * memory, and the shapes are decoded directly from the mapped buffer.
  * <p>
  * Copyright (c) 2020-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
@@ -50,6 +54,9 @@ public class ShapeFileReader implements DataSourceInterface
     /** the URL for the dbase-III format file with texts to be read. */
     private URL dbfFile = null;
 
+    /** the URL for the spatial index file in the .qix format of shapelib and MapServer. */
+    private URL qixFile = null;
+
     /** the type of shape we are working on. */
     private int currentType = GisMapInterface.POLYGON;
 
@@ -107,8 +114,24 @@ public class ShapeFileReader implements DataSourceInterface
     /** the features to read by this OpenStreeetMap reader. */
     private final List<FeatureInterface> featuresToRead;
 
+    /** the contents of the shape file; mapped again when needed after deserialization. */
+    private transient ByteBuffer shpBuffer;
+
+    /** the offset of the record of each shape in the shape file, from the shape index file. */
+    private final int[] offsets;
+
     /**
-     * Construct a reader for an ESRI ShapeFile.
+     * the transformed bounding box of each shape, as {minX, minY, maxX, maxY} at index 4 * shape number; the values are NaN
+     * for a null shape.
+     */
+    private final double[] boxes;
+
+    /** the spatial index of the shapes; read or built when it is first needed. */
+    private transient SpatialIndex spatialIndex;
+
+    /**
+     * Construct a reader for an ESRI ShapeFile. The shape file and the shape index file are mapped into memory, and the
+     * bounding boxes of all shapes are read once, so shapes can be read by index or by extent without scanning the file.
      * @param shapeUrl URL; URL may or may not end with their extension.
      * @param coordinateTransform CoordinateTransform; the transformation of (x, y) coordinates to (x', y') coordinates.
      * @param featuresToRead the features to read
@@ -127,17 +150,76 @@ public class ShapeFileReader implements DataSourceInterface
         this.shpFile = new URL(fileName + ".shp");
         this.shxFile = new URL(fileName + ".shx");
         this.dbfFile = new URL(fileName + ".dbf");
+        this.qixFile = new URL(fileName + ".qix");
         try
         {
-            URLConnection connection = this.shxFile.openConnection();
-            connection.connect();
-            this.numShapes = (connection.getContentLength() - 100) / 8;
+            // the offsets in the index file are big endian, in 16-bit words
+            ByteBuffer shx = MappedFile.map(this.shxFile, Endianness.BIG_ENDIAN);
+            this.numShapes = (shx.limit() - 100) / 8;
+            this.offsets = new int[this.numShapes];
+            for (int i = 0; i < this.numShapes; i++)
+            {
+                this.offsets[i] = 2 * shx.getInt(100 + 8 * i);
+            }
             this.dbfReader = new DbfReader(this.dbfFile);
         }
         catch (IOException exception)
         {
             throw new IOException("Can't read " + this.shxFile.toString());
         }
+        this.boxes = readBoundingBoxes();
+    }
+
+    /**
+     * Return the mapped contents of the shape file, and map the file when this has not been done yet.
+     * @return ByteBuffer; the mapped contents of the shape file
+     * @throws IOException when the file cannot be read
+     */
+    private synchronized ByteBuffer getShpBuffer() throws IOException
+    {
+        if (this.shpBuffer == null)
+        {
+            this.shpBuffer = MappedFile.map(this.shpFile, Endianness.LITTLE_ENDIAN);
+        }
+        return this.shpBuffer;
+    }
+
+    /**
+     * Read the bounding boxes of all shapes from the shape file, and transform them.
+     * @return double[]; the transformed bounding box of each shape, as {minX, minY, maxX, maxY} at index 4 * shape number
+     * @throws IOException when the shape file cannot be read
+     */
+    private double[] readBoundingBoxes() throws IOException
+    {
+        ByteBuffer shp = getShpBuffer();
+        double[] result = new double[4 * this.numShapes];
+        for (int i = 0; i < this.numShapes; i++)
+        {
+            int content = this.offsets[i] + 8;
+            int type = shp.getInt(content);
+            double[] min;
+            double[] max;
+            if (type == NULLSHAPE)
+            {
+                min = new double[] {Double.NaN, Double.NaN};
+                max = min;
+            }
+            else if (type == POINT || type == POINTZ || type == POINTM)
+            {
+                min = this.coordinateTransform.doubleTransform(shp.getDouble(content + 4), shp.getDouble(content + 12));
+                max = min;
+            }
+            else
+            {
+                min = this.coordinateTransform.doubleTransform(shp.getDouble(content + 4), shp.getDouble(content + 12));
+                max = this.coordinateTransform.doubleTransform(shp.getDouble(content + 20), shp.getDouble(content + 28));
+            }
+            result[4 * i] = Math.min(min[0], max[0]);
+            result[4 * i + 1] = Math.min(min[1], max[1]);
+            result[4 * i + 2] = Math.max(min[0], max[0]);
+            result[4 * i + 3] = Math.max(min[1], max[1]);
+        }
+        return result;
     }
 
     /** {@inheritDoc} */
@@ -147,15 +229,37 @@ public class ShapeFileReader implements DataSourceInterface
         return this.featuresToRead;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc} The shapes are added to the geometry store of the feature one by one, so no GisObject is kept per shape.
+     */
     @Override
-    public void populateShapes() throws IOException
+    public synchronized void populateShapes() throws IOException
     {
         Throw.when(this.featuresToRead.size() != 1, IOException.class,
                 "Trying to read ESROI shapes, but number of features is not 1");
-        List<GisObject> shapes = readAllShapes();
-        this.featuresToRead.get(0).getShapes().clear();
-        this.featuresToRead.get(0).getShapes().addAll(shapes);
+        FeatureInterface feature = this.featuresToRead.get(0);
+        // clearing the shapes of the feature also clears its geometry store
+        feature.getShapes().clear();
+        GeometryStore geometry = feature.getGeometry();
+        ByteBuffer shp = getShpBuffer();
+        for (int i = 0; i < this.numShapes; i++)
+        {
+            Object shape = readShape(shp, i);
+            if (shape != null) // skip Null Shape type 0
+            {
+                geometry.addShape(shape, this.dbfReader.getRow(i));
+            }
+        }
+        geometry.trimToSize();
+    }
+
+    /**
+     * Return the number of shapes in the shape file, including null shapes.
+     * @return int; the number of shapes in the shape file
+     */
+    public int getNumShapes()
+    {
+        return this.numShapes;
     }
 
     /**
@@ -166,20 +270,11 @@ public class ShapeFileReader implements DataSourceInterface
      */
     public synchronized GisObject readShape(final int index) throws IOException
     {
-        if (index > this.numShapes || index < 0)
+        if (index >= this.numShapes || index < 0)
         {
             throw new IndexOutOfBoundsException("Index =" + index + ", while number of shapes in layer :" + this.numShapes);
         }
-
-        ObjectEndianInputStream indexInput = new ObjectEndianInputStream(this.shxFile.openStream());
-        indexInput.skipBytes(8 * index + 100);
-        int offset = 2 * indexInput.readInt();
-        indexInput.close();
-        ObjectEndianInputStream shapeInput = new ObjectEndianInputStream(this.shpFile.openStream());
-        shapeInput.skipBytes(offset);
-        Object shape = this.readShape(shapeInput);
-        shapeInput.close();
-        return new GisObject(shape, this.dbfReader.getRow(index));
+        return new GisObject(readShape(getShpBuffer(), index), this.dbfReader.getRow(index));
     }
 
     /**
@@ -189,76 +284,106 @@ public class ShapeFileReader implements DataSourceInterface
      */
     public synchronized List<GisObject> readAllShapes() throws IOException
     {
-        ObjectEndianInputStream shapeInput = new ObjectEndianInputStream(this.shpFile.openStream());
-
-        shapeInput.skipBytes(100);
+        ByteBuffer shp = getShpBuffer();
         ArrayList<GisObject> results = new ArrayList<>(this.numShapes);
         String[][] attributes = this.dbfReader.getRows();
         for (int i = 0; i < this.numShapes; i++)
         {
-            Object shape = this.readShape(shapeInput);
+            Object shape = readShape(shp, i);
             if (shape != null) // skip Null Shape type 0
             {
                 results.add(new GisObject(shape, attributes[i]));
             }
         }
-        shapeInput.close();
         return results;
     }
 
     /**
      * Read all shapes for a certain extent directly from the shape file, without caching (the cache is stored at the Features).
+     * The spatial index is used to find the shapes in and near the extent, and only the shapes of which the bounding box
+     * overlaps with the extent are decoded.
      * @param extent Bounds2d; the extent for which to read the shapes
      * @return List&lt;GisObject&gt;; the shapes for the given extent that are directly read from the shape file
      * @throws IOException when there is a problem reading the ESRI files.
      */
     public synchronized List<GisObject> readShapes(final Bounds2d extent) throws IOException
     {
-        ObjectEndianInputStream shapeInput = new ObjectEndianInputStream(this.shpFile.openStream());
-
-        shapeInput.skipBytes(100);
+        ByteBuffer shp = getShpBuffer();
         ArrayList<GisObject> results = new ArrayList<>();
+        for (int i : getSpatialIndex().query(extent))
+        {
+            // a null shape has NaN values, for which the comparisons fail
+            if (this.boxes[4 * i] <= extent.getMaxX() && this.boxes[4 * i + 1] <= extent.getMaxY()
+                    && this.boxes[4 * i + 2] >= extent.getMinX() && this.boxes[4 * i + 3] >= extent.getMinY())
+            {
+                results.add(new GisObject(readShape(shp, i), this.dbfReader.getRow(i)));
+            }
+        }
+        return results;
+    }
 
-        String[][] attributes = this.dbfReader.getRows();
-        for (int i = 0; i < this.numShapes; i++)
+    /**
+     * Return the spatial index of the shapes, and read or build it when this has not been done yet. The .qix file next to the
+     * shape file contains the bounds in the coordinates of the shape file, so it is only used when the coordinates are not
+     * transformed. An existing .qix file is used when it is not older than the shape file; otherwise, the index is built and
+     * written as a .qix file, when the shape file is a local file in a writable directory. For transformed coordinates, the
+     * index is built in memory.
+     * @return SpatialIndex; the spatial index of the shapes
+     */
+    public synchronized SpatialIndex getSpatialIndex()
+    {
+        if (this.spatialIndex != null)
+        {
+            return this.spatialIndex;
+        }
+        if (!(this.coordinateTransform instanceof CoordinateTransform.NoTransform))
         {
-            shapeInput.setEndianness(Endianness.BIG_ENDIAN);
-            int shapeNumber = shapeInput.readInt();
-            int contentLength = shapeInput.readInt();
-            shapeInput.setEndianness(Endianness.LITTLE_ENDIAN);
-
-            // the null type is properly skipped
-            int type = shapeInput.readInt();
-            if (type != 0 && type != 1 && type != 11 && type != 21)
+            this.spatialIndex = new SpatialIndex(this.boxes);
+            return this.spatialIndex;
+        }
+        File qix = null;
+        File shp = null;
+        if ("file".equals(this.qixFile.getProtocol()))
+        {
+            try
             {
-                double[] min = this.coordinateTransform.doubleTransform(shapeInput.readDouble(), shapeInput.readDouble());
-                double[] max = this.coordinateTransform.doubleTransform(shapeInput.readDouble(), shapeInput.readDouble());
-                double minX = Math.min(min[0], max[0]);
-                double minY = Math.min(min[1], max[1]);
-                double width = Math.max(min[0], max[0]) - minX;
-                double height = Math.max(min[1], max[1]) - minY;
-                SerializableRectangle2D bounds = new SerializableRectangle2D.Double(minX, minY, width, height);
-                if (Shape.overlaps(extent.toRectangle2D(), bounds))
-                {
-                    results.add(
-                            new GisObject(this.readShape(shapeInput, shapeNumber, contentLength, type, false), attributes[i]));
-                }
-                else
-                {
-                    shapeInput.skipBytes((2 * contentLength) - 36);
-                }
+                qix = new File(this.qixFile.toURI());
+                shp = new File(this.shpFile.toURI());
             }
-            else if (type != 0)
+            catch (URISyntaxException | IllegalArgumentException exception)
             {
-                Point2D temp = (Point2D) this.readShape(shapeInput, shapeNumber, contentLength, type, false);
-                if (extent.toRectangle2D().contains(temp))
+                qix = null;
+            }
+        }
+        if (qix == null || (qix.exists() && qix.lastModified() >= shp.lastModified()))
+        {
+            try
+            {
+                SpatialIndex index = SpatialIndex.read(MappedFile.map(this.qixFile, Endianness.LITTLE_ENDIAN));
+                if (index.getNumShapes() == this.numShapes)
                 {
-                    results.add(new GisObject(temp, attributes[i]));
+                    this.spatialIndex = index;
+                    return this.spatialIndex;
                 }
             }
+            catch (IOException exception)
+            {
+                // no usable .qix file; the index is built
+            }
         }
-        shapeInput.close();
-        return results;
+        this.spatialIndex = new SpatialIndex(this.boxes);
+        if (qix != null && qix.getParentFile() != null && qix.getParentFile().canWrite())
+        {
+            try
+            {
+                this.spatialIndex.write(qix);
+            }
+            catch (IOException exception)
+            {
+                CategoryLogger.always().warn("could not write spatial index file {}: {}", qix, exception.getMessage());
+            }
+        }
+        return this.spatialIndex;
     }
 
     /**
@@ -274,547 +399,168 @@ public class ShapeFileReader implements DataSourceInterface
         int[] shapeNumbers = this.dbfReader.getRowNumbers(attribute, columnName);
         for (int i = 0; i < shapeNumbers.length; i++)
         {
-            result.add(this.readShape(i));
+            result.add(this.readShape(shapeNumbers[i]));
         }
         return result;
     }
 
     /**
-     * Read a shape.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @return Object; the shape
-     * @throws IOException on file IO or database connection failure
-     */
-    private Object readShape(final ObjectEndianInputStream input) throws IOException
-    {
-        return readShape(input, -1, -1, -1, true);
-    }
-
-    /**
-     * @param input ObjectEndianInputStream; the input stream.
-     * @param fixedShapeNumber int; the shape number, if -1, read from input
-     * @param fixedContentLength int; the length of the content, if -1, read from input
-     * @param fixedType int; shape type; if -1, read from input
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the shape
-     * @throws IOException on I/O error reading from the shape file
+     * Decode a shape from the mapped shape file. The record header (shape number and content length) is big endian; the
+     * content is little endian. The Z and M values of the Z and M shape types are not used.
+     *
+     * <pre>
+     *   Integer RecordNumber // byte  0; big endian (4 bytes)
+     *   Integer ContentLength // byte  4; in 16-bit words, big endian (4 bytes)
+     *   Integer ShapeType     // byte  8; little endian (4 bytes)
+     *   ...                   // byte 12; the content of the shape type
+     * </pre>
+     *
+     * @param shp ByteBuffer; the mapped shape file
+     * @param index int; the index of the shape
+     * @return Object; the shape, or null for a null shape
+     * @throws IOException when the shape type is not supported
      */
-    private Object readShape(final ObjectEndianInputStream input, final int fixedShapeNumber, final int fixedContentLength,
-            final int fixedType, final boolean skipBoundingBox) throws IOException
+    private Object readShape(final ByteBuffer shp, final int index) throws IOException
     {
-        input.setEndianness(Endianness.BIG_ENDIAN);
-        @SuppressWarnings("unused")
-        int shapeNumber = fixedShapeNumber == -1 ? input.readInt() : fixedShapeNumber;
-
-        int contentLength = fixedContentLength == -1 ? input.readInt() : fixedContentLength;
-
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        int type = fixedType == -1 ? input.readInt() : fixedType;
-
+        int content = this.offsets[index] + 8;
+        int type = shp.getInt(content);
         switch (type)
         {
-            case 0:
-                return readNullShape(input);
-            case 1:
-                return readPoint(input);
-            case 3:
-                return readPolyLine(input, skipBoundingBox);
-            case 5:
-                return readPolygon(input, skipBoundingBox);
-            case 8:
-                return readMultiPoint(input, skipBoundingBox);
-            case 11:
-                return readPointZ(input, contentLength);
-            case 13:
-                return readPolyLineZ(input, contentLength, skipBoundingBox);
-            case 15:
-                return readPolygonZ(input, contentLength, skipBoundingBox);
-            case 18:
-                return readMultiPointZ(input, contentLength, skipBoundingBox);
-            case 21:
-                return readPointM(input, contentLength);
-            case 23:
-                return readPolyLineM(input, contentLength, skipBoundingBox);
-            case 25:
-                return readPolygonM(input, contentLength, skipBoundingBox);
-            case 28:
-                return readMultiPointM(input, contentLength, skipBoundingBox);
-            case 31:
-                return readMultiPatch(input, contentLength, skipBoundingBox);
+            case NULLSHAPE:
+                return null;
+            case POINT:
+            case POINTZ:
+            case POINTM:
+                this.currentType = GisMapInterface.POINT;
+                return readPoint(shp, content + 4);
+            case POLYLINE:
+            case POLYLINEZ:
+            case POLYLINEM:
+                this.currentType = GisMapInterface.LINE;
+                return readPath(shp, content + 4);
+            case POLYGON:
+            case POLYGONZ:
+            case POLYGONM:
+                this.currentType = GisMapInterface.POLYGON;
+                return readPath(shp, content + 4);
+            case MULTIPOINT:
+            case MULTIPOINTZ:
+            case MULTIPOINTM:
+                this.currentType = GisMapInterface.POINT;
+                return readMultiPoint(shp, content + 4);
+            case MULTIPATCH:
+                throw new IOException(
+                        "Please inform <a href=\"mailto:support@javel.nl\">support@javel.nl</a> that you need MultiPatch support");
             default:
                 throw new IOException("Unknown shape type or shape type not supported");
         }
     }
 
-    /**
-     * Read a Null Shape.
-     * <p>
-     * A shape type of 0 indicates a null shape, with no geometric data for the shape. Each feature type (point, line, polygon,
-     * etc.) supports nulls¾it is valid to have points and null points in the same shapefile. Often null shapes are place
-     * holders; they are used during shapefile creation and are populated with geometric data soon after they are created.
-     * </p>
-     * @param input ObjectEndianInputStream; the inputStream
-     * @return null to indicate this is not a valid shape
-     */
-    private synchronized Object readNullShape(final ObjectEndianInputStream input)
-    {
-        return null;
-    }
-
     /**
      * Read a Point.
      * <p>
      * A point consists of a pair of double-precision coordinates in the order X,Y.
      * </p>
-     * 
+     *
      * <pre>
      *   All byte orders are Little Endian.
-     *   Integer ShapeType  // byte  0; Value 1 for Point
      *   Point
      *   {
-     *     Double X         // byte  4; X coordinate (8 bytes)
-     *     Double Y         // byte 12; Y coordinate (8 bytes)
+     *     Double X         // byte 0; X coordinate (8 bytes)
+     *     Double Y         // byte 8; Y coordinate (8 bytes)
      *   }
      * </pre>
-     * 
-     * @param input ObjectEndianInputStream; the inputStream
+     *
+     * @param shp ByteBuffer; the mapped shape file
+     * @param position int; the position of the point in the shape file
      * @return Point2D.Double; the point
-     * @throws IOException on file IO or database connection failure
      */
-    private synchronized Object readPoint(final ObjectEndianInputStream input) throws IOException
+    private Point2D readPoint(final ByteBuffer shp, final int position)
     {
-        this.currentType = GisMapInterface.POINT;
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        double[] point = this.coordinateTransform.doubleTransform(input.readDouble(), input.readDouble());
+        double[] point = this.coordinateTransform.doubleTransform(shp.getDouble(position), shp.getDouble(position + 8));
         return new Point2D.Double(point[0], point[1]);
     }
 
     /**
-     * Read a PolyLine.
+     * Read a PolyLine or a Polygon.
      * <p>
      * A PolyLine is an ordered set of vertices that consists of one or more parts. A part is a connected sequence of two or
      * more points. Parts may or may not be connected to one another. Parts may or may not intersect one another. Because this
      * specification does not forbid consecutive points with identical coordinates, shapefile readers must handle such cases. On
-     * the other hand, the degenerate, zero length parts that might result are not allowed.
+     * the other hand, the degenerate, zero length parts that might result are not allowed. A Polygon has the same structure,
+     * where each part is a closed ring.
      * </p>
-     * 
+     *
      * <pre>
      *   All byte orders are Little Endian.
-     *   Integer ShapeType         // byte  0; Value 8 for PolyLine
      *   PolyLine
      *   {
-     *     Double[4] Box           // byte  4; Bounding Box, consisting of {Xmin, Ymin, Xmax, Ymax} (32 bytes)
-     *     Integer NumParts        // byte 36; Number of Parts in the PolyLine (4 bytes)
-     *     Integer NumPoints       // byte 40; Total Number of Points, summed for all parts (4 bytes)
-     *     Integer[NumParts] Parts // byte 44; Index array to first point in in the points array (4 * NumParts)
+     *     Double[4] Box           // byte  0; Bounding Box, consisting of {Xmin, Ymin, Xmax, Ymax} (32 bytes)
+     *     Integer NumParts        // byte 32; Number of Parts in the PolyLine (4 bytes)
+     *     Integer NumPoints       // byte 36; Total Number of Points, summed for all parts (4 bytes)
+     *     Integer[NumParts] Parts // byte 40; Index array to first point in in the points array (4 * NumParts)
      *     Point[NumPoints] Points // Points for all parts; no delimiter between points of different parts (16 * NumPoints)
      *   }
-     *   
-     *   where a point consists of a pair of double-precision coordinates in the order X,Y.
-     *   Point
-     *   {
-     *     Double X                // X coordinate (8 bytes)
-     *     Double Y                // Y coordinate (8 bytes)
-     *   }
      * </pre>
-     * 
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
+     *
+     * @param shp ByteBuffer; the mapped shape file
+     * @param position int; the position of the bounding box of the shape in the shape file
      * @return the shape as a SerializablePath
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPolyLine(final ObjectEndianInputStream input, final boolean skipBoundingBox)
-            throws IOException
-    {
-        this.currentType = GisMapInterface.LINE;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        int numParts = input.readInt();
-        int numPoints = input.readInt();
-        int[] partBegin = new int[numParts + 1];
-
-        for (int i = 0; i < partBegin.length - 1; i++)
-        {
-            partBegin[i] = input.readInt();
-
-        }
-        partBegin[partBegin.length - 1] = numPoints;
-
-        SerializablePath result = new SerializablePath(Path2D.WIND_NON_ZERO, numPoints);
-        for (int i = 0; i < numParts; i++)
-        {
-            float[] mf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-            result.moveTo(mf[0], mf[1]);
-            for (int ii = (partBegin[i] + 1); ii < partBegin[i + 1]; ii++)
-            {
-                float[] lf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-                result.lineTo(lf[0], lf[1]);
-            }
-        }
-        return result;
-    }
-
-    /**
-     * reads a Polygon.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPolygon(final ObjectEndianInputStream input, final boolean skipBoundingBox)
-            throws IOException
-    {
-        this.currentType = GisMapInterface.POLYGON;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        int numParts = input.readInt();
-        int numPoints = input.readInt();
-        int[] partBegin = new int[numParts + 1];
-
-        for (int i = 0; i < partBegin.length - 1; i++)
-        {
-            partBegin[i] = input.readInt();
-        }
-        partBegin[partBegin.length - 1] = numPoints;
-
-        SerializablePath result = new SerializablePath(Path2D.WIND_NON_ZERO, numPoints);
-        for (int i = 0; i < numParts; i++)
-        {
-            float[] mf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-            result.moveTo(mf[0], mf[1]);
-            for (int ii = (partBegin[i] + 1); ii < partBegin[i + 1]; ii++)
-            {
-                float[] lf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-                result.lineTo(lf[0], lf[1]);
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * reads a readMultiPoint.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
      */
-    private synchronized Object readMultiPoint(final ObjectEndianInputStream input, final boolean skipBoundingBox)
-            throws IOException
+    private SerializablePath readPath(final ByteBuffer shp, final int position)
     {
-        this.currentType = GisMapInterface.POINT;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        Point2D[] result = new Point2D.Double[input.readInt()];
-        for (int i = 0; i < result.length; i++)
-        {
-            result[i] = (Point2D) readPoint(input);
-        }
-
-        return result;
-    }
-
-    /**
-     * reads a readPointZ.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPointZ(final ObjectEndianInputStream input, final int contentLength) throws IOException
-    {
-        this.currentType = GisMapInterface.POINT;
-        Object point = this.readPoint(input);
-        input.skipBytes((contentLength * 2) - 20);
-
-        return point;
-    }
-
-    /**
-     * reads a readPolyLineZ.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPolyLineZ(final ObjectEndianInputStream input, final int contentLength,
-            final boolean skipBoundingBox) throws IOException
-    {
-        this.currentType = GisMapInterface.LINE;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        int numParts = input.readInt();
-        int numPoints = input.readInt();
-        int byteCounter = 44;
-        int[] partBegin = new int[numParts + 1];
-
-        for (int i = 0; i < partBegin.length - 1; i++)
-        {
-            partBegin[i] = input.readInt();
-            byteCounter += 4;
-        }
-        partBegin[partBegin.length - 1] = numPoints;
-
+        int numParts = shp.getInt(position + 32);
+        int numPoints = shp.getInt(position + 36);
+        int points = position + 40 + 4 * numParts;
         SerializablePath result = new SerializablePath(Path2D.WIND_NON_ZERO, numPoints);
         for (int i = 0; i < numParts; i++)
         {
-            float[] mf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-            result.moveTo(mf[0], mf[1]);
-            byteCounter += 16;
-            for (int ii = (partBegin[i] + 1); ii < partBegin[i + 1]; ii++)
+            int begin = shp.getInt(position + 40 + 4 * i);
+            int end = i < numParts - 1 ? shp.getInt(position + 44 + 4 * i) : numPoints;
+            for (int p = begin; p < end; p++)
             {
-                float[] lf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-                result.lineTo(lf[0], lf[1]);
-                byteCounter += 16;
-            }
-        }
-        input.skipBytes((contentLength * 2) - byteCounter);
-
-        return result;
-    }
-
-    /**
-     * reads a readPolygonZ.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPolygonZ(final ObjectEndianInputStream input, final int contentLength,
-            final boolean skipBoundingBox) throws IOException
-    {
-        this.currentType = GisMapInterface.POLYGON;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        int numParts = input.readInt();
-        int numPoints = input.readInt();
-        int byteCounter = 44;
-        int[] partBegin = new int[numParts + 1];
-        for (int i = 0; i < partBegin.length - 1; i++)
-        {
-            partBegin[i] = input.readInt();
-            byteCounter += 4;
-        }
-        partBegin[partBegin.length - 1] = numPoints;
-
-        SerializablePath result = new SerializablePath(Path2D.WIND_NON_ZERO, numPoints);
-        for (int i = 0; i < numParts; i++)
-        {
-            float[] mf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-            result.moveTo(mf[0], mf[1]);
-            byteCounter += 16;
-            for (int ii = (partBegin[i] + 1); ii < partBegin[i + 1]; ii++)
-            {
-                float[] lf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-                result.lineTo(lf[0], lf[1]);
-                byteCounter += 16;
-            }
-        }
-        input.skipBytes((contentLength * 2) - byteCounter);
-
-        return result;
-    }
-
-    /**
-     * reads a readMultiPointZ.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readMultiPointZ(final ObjectEndianInputStream input, final int contentLength,
-            final boolean skipBoundingBox) throws IOException
-    {
-        this.currentType = GisMapInterface.POINT;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        Point2D[] result = new Point2D.Double[input.readInt()];
-        int byteCounter = 40;
-        for (int i = 0; i < result.length; i++)
-        {
-            result[i] = (Point2D) readPoint(input);
-            byteCounter += 16;
-        }
-        input.skipBytes((contentLength * 2) - byteCounter);
-
-        return result;
-    }
-
-    /**
-     * reads a readPointM.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPointM(final ObjectEndianInputStream input, final int contentLength) throws IOException
-    {
-        this.currentType = GisMapInterface.POINT;
-        Object point = this.readPoint(input);
-        input.skipBytes((contentLength * 2) - 20);
-        return point;
-    }
-
-    /**
-     * reads a readPolyLineM.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPolyLineM(final ObjectEndianInputStream input, final int contentLength,
-            final boolean skipBoundingBox) throws IOException
-    {
-        this.currentType = GisMapInterface.LINE;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        int numParts = input.readInt();
-        int numPoints = input.readInt();
-        int byteCounter = 44;
-        int[] partBegin = new int[numParts + 1];
-        for (int i = 0; i < partBegin.length - 1; i++)
-        {
-            partBegin[i] = input.readInt();
-            byteCounter += 4;
-        }
-        partBegin[partBegin.length - 1] = numPoints;
-
-        SerializablePath result = new SerializablePath(Path2D.WIND_NON_ZERO, numPoints);
-        for (int i = 0; i < numParts; i++)
-        {
-            float[] mf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-            result.moveTo(mf[0], mf[1]);
-            byteCounter += 16;
-            for (int ii = (partBegin[i] + 1); ii < partBegin[i + 1]; ii++)
-            {
-                float[] lf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-                result.lineTo(lf[0], lf[1]);
-                byteCounter += 16;
-            }
-        }
-        input.skipBytes((contentLength * 2) - byteCounter);
-        return result;
-    }
-
-    /**
-     * reads a readPolyLineM.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readPolygonM(final ObjectEndianInputStream input, final int contentLength,
-            final boolean skipBoundingBox) throws IOException
-    {
-        this.currentType = GisMapInterface.POLYGON;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        int numParts = input.readInt();
-        int numPoints = input.readInt();
-        int byteCounter = 44;
-        int[] partBegin = new int[numParts + 1];
-
-        for (int i = 0; i < partBegin.length - 1; i++)
-        {
-            partBegin[i] = input.readInt();
-            byteCounter += 4;
-        }
-        partBegin[partBegin.length - 1] = numPoints;
-
-        SerializablePath result = new SerializablePath(Path2D.WIND_NON_ZERO, numPoints);
-        for (int i = 0; i < numParts; i++)
-        {
-            float[] mf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-            result.moveTo(mf[0], mf[1]);
-            byteCounter += 16;
-            for (int ii = (partBegin[i] + 1); ii < partBegin[i + 1]; ii++)
-            {
-                float[] lf = this.coordinateTransform.floatTransform(input.readDouble(), input.readDouble());
-                result.lineTo(lf[0], lf[1]);
-                byteCounter += 16;
+                float[] f = this.coordinateTransform.floatTransform(shp.getDouble(points + 16 * p),
+                        shp.getDouble(points + 16 * p + 8));
+                if (p == begin)
+                {
+                    result.moveTo(f[0], f[1]);
+                }
+                else
+                {
+                    result.lineTo(f[0], f[1]);
+                }
             }
         }
-        input.skipBytes((contentLength * 2) - byteCounter);
         return result;
     }
 
     /**
-     * reads a readMultiPointM.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
+     * Read a MultiPoint.
+     *
+     * <pre>
+     *   All byte orders are Little Endian.
+     *   MultiPoint
+     *   {
+     *     Double[4] Box           // byte  0; Bounding Box, consisting of {Xmin, Ymin, Xmax, Ymax} (32 bytes)
+     *     Integer NumPoints       // byte 32; Number of Points (4 bytes)
+     *     Point[NumPoints] Points // byte 36; The Points in the set (16 * NumPoints)
+     *   }
+     * </pre>
+     *
+     * @param shp ByteBuffer; the mapped shape file
+     * @param position int; the position of the bounding box of the shape in the shape file
+     * @return Point2D[]; the points
      */
-    private synchronized Object readMultiPointM(final ObjectEndianInputStream input, final int contentLength,
-            final boolean skipBoundingBox) throws IOException
+    private Point2D[] readMultiPoint(final ByteBuffer shp, final int position)
     {
-        this.currentType = GisMapInterface.POINT;
-        if (skipBoundingBox)
-        {
-            input.skipBytes(32);
-        }
-        input.setEndianness(Endianness.LITTLE_ENDIAN);
-        Point2D[] result = new Point2D.Double[input.readInt()];
-        int byteCounter = 40;
+        Point2D[] result = new Point2D.Double[shp.getInt(position + 32)];
         for (int i = 0; i < result.length; i++)
         {
-            result[i] = (Point2D) readPoint(input);
-            byteCounter += 16;
+            result[i] = readPoint(shp, position + 36 + 16 * i);
         }
-        input.skipBytes((contentLength * 2) - byteCounter);
-
         return result;
     }
 
-    /**
-     * reads a readMultiPatch.
-     * @param input ObjectEndianInputStream; the inputStream
-     * @param contentLength int; the contentLength
-     * @param skipBoundingBox boolean; whether to skip the bytes of the bounding box because they have not yet been read
-     * @return the java2D PointShape
-     * @throws IOException on file IO or database connection failure
-     */
-    private synchronized Object readMultiPatch(final ObjectEndianInputStream input, final int contentLength,
-            final boolean skipBoundingBox) throws IOException
-    {
-        if (input != null || contentLength != 0 || skipBoundingBox)
-        {
-            throw new IOException(
-                    "Please inform <a href=\"mailto:support@javel.nl\">support@javel.nl</a> that you need MultiPatch support");
-        }
-        return null;
-    }
-
     /** {@inheritDoc} */
     @Override
     public boolean isDynamic()
@@ -838,4 +584,18 @@ public class ShapeFileReader implements DataSourceInterface
         return this.shpFile;
     }
 
+    /**
+     * Return the URLs of the files from which the shapes and attributes are read: the .shp, .shx and .dbf file. The optional
+     * .qix spatial index file is not included, since it does not change the shapes.
+     * @return List&lt;URL&gt;; the URLs of the .shp, .shx and .dbf file
+     */
+    public List<URL> getSourceURLs()
+    {
+        List<URL> result = new ArrayList<>();
+        result.add(this.shpFile);
+        result.add(this.shxFile);
+        result.add(this.dbfFile);
+        return result;
+    }
+
 }
@@ -0,0 +1,82 @@
+package nl.tudelft.simulation.dsol.animation.gis.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MappedFile provides the contents of a GIS file as a read-only ByteBuffer, so the records can be decoded directly from the
+ * buffer at any position, without opening and skipping through a stream for every record. A local file is mapped into memory
+ * with a FileChannel, so only the parts that are used are read from disk. Other URLs, such as a file in a jar, are read into
+ * a buffer on the heap once.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public final class MappedFile
+{
+    /** Utility class. */
+    private MappedFile()
+    {
+        // utility class
+    }
+
+    /**
+     * Return the contents of the URL as a read-only buffer with the given byte order. The buffer should only be read with the
+     * absolute get methods, or through a duplicate(), so it can be shared between threads.
+     * @param url URL; the URL of the file
+     * @param endianness Endianness; the byte order of the buffer
+     * @return ByteBuffer; the contents of the URL as a read-only buffer
+     * @throws IOException when the file cannot be read, or when it is larger than 2 GB
+     */
+    public static ByteBuffer map(final URL url, final Endianness endianness) throws IOException
+    {
+        ByteBuffer buffer = null;
+        if ("file".equals(url.getProtocol()))
+        {
+            File file;
+            try
+            {
+                file = new File(url.toURI());
+            }
+            catch (URISyntaxException | IllegalArgumentException exception)
+            {
+                file = new File(url.getPath());
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+            {
+                if (channel.size() > Integer.MAX_VALUE)
+                {
+                    throw new IOException("file " + url + " is too large to map");
+                }
+                // the mapping stays valid after the channel has been closed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        else
+        {
+            try (InputStream input = url.openStream(); ByteArrayOutputStream output = new ByteArrayOutputStream())
+            {
+                byte[] bytes = new byte[65536];
+                int n;
+                while ((n = input.read(bytes)) > 0)
+                {
+                    output.write(bytes, 0, n);
+                }
+                buffer = ByteBuffer.wrap(output.toByteArray()).asReadOnlyBuffer();
+            }
+        }
+        return buffer.order(endianness.equals(Endianness.BIG_ENDIAN) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+}
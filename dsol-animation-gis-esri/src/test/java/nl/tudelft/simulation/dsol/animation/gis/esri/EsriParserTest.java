@@ -2,9 +2,12 @@ package nl.tudelft.simulation.dsol.animation.gis.esri;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Files;
 
 import javax.naming.NamingException;
 
@@ -14,6 +17,7 @@ import org.junit.Test;
 import nl.tudelft.simulation.dsol.animation.gis.GisMapInterface;
 import nl.tudelft.simulation.dsol.animation.gis.GisRenderable2D;
 import nl.tudelft.simulation.dsol.animation.gis.MapUnits;
+import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
 import nl.tudelft.simulation.naming.context.ContextInterface;
 import nl.tudelft.simulation.naming.context.Contextualized;
 import nl.tudelft.simulation.naming.context.JVMContext;
@@ -78,6 +82,40 @@ public class EsriParserTest implements Contextualized
         this.context.destroySubcontext("animation");
     }
 
+    /**
+     * Test the CSV map parser with a map cache file, which is written the first time and read the second time.
+     * @throws IOException on error
+     */
+    @Test
+    public void testCachedCsvParser() throws IOException
+    {
+        URL url = URLResource.getResource("/resources/esri/tudelft.csv");
+        File cacheFile = File.createTempFile("tudelft", ".cache");
+        assertTrue(cacheFile.delete());
+        try
+        {
+            GisMapInterface map = EsriFileCsvParser.parseMapFile(url, "tudelft", new CoordinateTransform.NoTransform(), ',',
+                    '"', cacheFile);
+            assertTrue(cacheFile.isFile());
+            GisMapInterface cachedMap = EsriFileCsvParser.parseMapFile(url, "tudelft cached",
+                    new CoordinateTransform.NoTransform(), ',', '"', cacheFile);
+            assertEquals("tudelft cached", cachedMap.getName());
+            assertEquals(map.getAllLayers().size(), cachedMap.getAllLayers().size());
+            for (int i = 0; i < map.getAllLayers().size(); i++)
+            {
+                assertEquals(map.getAllLayers().get(i).getName(), cachedMap.getAllLayers().get(i).getName());
+                assertEquals(map.getAllLayers().get(i).getFeatures().get(0).getGeometry().getNumPoints(),
+                        cachedMap.getAllLayers().get(i).getFeatures().get(0).getGeometry().getNumPoints());
+                assertEquals(map.getAllLayers().get(i).getFeatures().get(0).getOutlineColor(),
+                        cachedMap.getAllLayers().get(i).getFeatures().get(0).getOutlineColor());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(cacheFile.toPath());
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public ContextInterface getContext()
@@ -0,0 +1,91 @@
+package nl.tudelft.simulation.dsol.animation.gis.esri;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.io.URLResource;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.animation.gis.GisObject;
+import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
+
+/**
+ * ShapeFileReaderTest tests reading shapes by index, by extent, and by attribute value from a mapped ESRI shape file.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class ShapeFileReaderTest
+{
+    /**
+     * Test the shapes of the buildings in the TU Delft map.
+     * @throws IOException on error
+     */
+    @Test
+    public void testShapeFileReader() throws IOException
+    {
+        URL url = URLResource.getResource("/resources/esri/tudelft/buildings.shp");
+        assertNotNull(url);
+        ShapeFileReader reader = new ShapeFileReader(url, new CoordinateTransform.NoTransform(), new ArrayList<>());
+        assertArrayEquals(new String[] {"osm_id", "name", "type"}, reader.getAttributeKeyNames());
+        assertEquals(2883, reader.getNumShapes());
+
+        // random access returns the same shapes and attributes as reading all shapes
+        List<GisObject> all = reader.readAllShapes();
+        assertEquals(2883, all.size());
+        for (int i = 0; i < all.size(); i += 97)
+        {
+            GisObject shape = reader.readShape(i);
+            assertArrayEquals(all.get(i).getAttributeValues(), shape.getAttributeValues());
+            assertEquals(((Path2D) all.get(i).getShape()).getBounds2D(), ((Path2D) shape.getShape()).getBounds2D());
+        }
+        assertEquals("32017871", reader.readShape(0).getAttributeValues()[0].trim());
+        try
+        {
+            reader.readShape(2883);
+            fail("index out of bounds should fail");
+        }
+        catch (IndexOutOfBoundsException exception)
+        {
+            // ok
+        }
+
+        // the extent query returns exactly the shapes that overlap with the extent
+        Bounds2d extent = new Bounds2d(4.36, 4.37, 52.0, 52.005);
+        Rectangle2D rectangle = extent.toRectangle2D();
+        List<GisObject> inExtent = reader.readShapes(extent);
+        int expected = 0;
+        for (GisObject shape : all)
+        {
+            if (((Path2D) shape.getShape()).getBounds2D().intersects(rectangle))
+            {
+                expected++;
+            }
+        }
+        assertEquals(expected, inExtent.size());
+        assertTrue(inExtent.size() > 0 && inExtent.size() < all.size());
+
+        // the shapes for an attribute value
+        List<GisObject> apartments = reader.getShapes("apartments      ", "type");
+        assertEquals(81, apartments.size());
+        for (GisObject shape : apartments)
+        {
+            assertEquals("apartments", shape.getAttributeValues()[2].trim());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package nl.tudelft.simulation.dsol.animation.gis.osm;
+
+import java.util.Arrays;
+
+/**
+ * NodeIndex stores the coordinates of the OSM nodes while an OSM file is read, so the ways can look up the coordinates of their
+ * nodes. The node ids are stored in a long[], and the longitude and latitude in int[] arrays as fixed-point numbers with 7
+ * decimals, which is the precision of OpenStreetMap itself. This takes 16 bytes per node, where a HashMap&lt;Long, Node&gt;
+ * takes well over 100 bytes per node. The nodes in an OSM file are sorted on their id, so lookup is a binary search in the
+ * sorted ids. When nodes are added out of order, the arrays are sorted once before the next lookup.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class NodeIndex
+{
+    /** the factor between degrees and the fixed-point representation of the coordinates. */
+    private static final double SCALE = 1.0E7;
+
+    /** the ids of the nodes. */
+    private long[] ids = new long[1024];
+
+    /** the longitudes of the nodes, in units of 1E-7 degree. */
+    private int[] longitudes = new int[1024];
+
+    /** the latitudes of the nodes, in units of 1E-7 degree. */
+    private int[] latitudes = new int[1024];
+
+    /** the number of nodes. */
+    private int size = 0;
+
+    /** whether the ids are sorted. */
+    private boolean sorted = true;
+
+    /**
+     * Add a node to the index.
+     * @param id long; the id of the node
+     * @param longitude double; the longitude of the node in degrees
+     * @param latitude double; the latitude of the node in degrees
+     */
+    public void add(final long id, final double longitude, final double latitude)
+    {
+        if (this.size == this.ids.length)
+        {
+            int capacity = this.size + (this.size >> 1);
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.longitudes = Arrays.copyOf(this.longitudes, capacity);
+            this.latitudes = Arrays.copyOf(this.latitudes, capacity);
+        }
+        if (this.size > 0 && id < this.ids[this.size - 1])
+        {
+            this.sorted = false;
+        }
+        this.ids[this.size] = id;
+        this.longitudes[this.size] = (int) Math.round(longitude * SCALE);
+        this.latitudes[this.size] = (int) Math.round(latitude * SCALE);
+        this.size++;
+    }
+
+    /**
+     * Return the number of nodes in the index.
+     * @return int; the number of nodes in the index
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    /**
+     * Return the position of a node in the index, to retrieve its coordinates with getLongitude() and getLatitude(). The
+     * position is valid until the next node is added.
+     * @param id long; the id of the node
+     * @return int; the position of the node in the index, or -1 when the node is not in the index
+     */
+    public int find(final long id)
+    {
+        if (!this.sorted)
+        {
+            sort();
+        }
+        int position = Arrays.binarySearch(this.ids, 0, this.size, id);
+        return position < 0 ? -1 : position;
+    }
+
+    /**
+     * Return the longitude of the node at a position in the index.
+     * @param position int; the position of the node, as returned by find()
+     * @return double; the longitude of the node in degrees
+     */
+    public double getLongitude(final int position)
+    {
+        return this.longitudes[position] / SCALE;
+    }
+
+    /**
+     * Return the latitude of the node at a position in the index.
+     * @param position int; the position of the node, as returned by find()
+     * @return double; the latitude of the node in degrees
+     */
+    public double getLatitude(final int position)
+    {
+        return this.latitudes[position] / SCALE;
+    }
+
+    /**
+     * Sort the nodes on their id with an in-place heap sort, which needs no extra memory for the arrays.
+     */
+    private void sort()
+    {
+        for (int i = this.size / 2 - 1; i >= 0; i--)
+        {
+            siftDown(i, this.size);
+        }
+        for (int end = this.size - 1; end > 0; end--)
+        {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        this.sorted = true;
+    }
+
+    /**
+     * Move the node at a position down in the heap until both children have a smaller id.
+     * @param position int; the position of the node
+     * @param end int; the end of the heap
+     */
+    private void siftDown(final int position, final int end)
+    {
+        int parent = position;
+        int child = 2 * parent + 1;
+        while (child < end)
+        {
+            if (child + 1 < end && this.ids[child + 1] > this.ids[child])
+            {
+                child++;
+            }
+            if (this.ids[parent] >= this.ids[child])
+            {
+                return;
+            }
+            swap(parent, child);
+            parent = child;
+            child = 2 * parent + 1;
+        }
+    }
+
+    /**
+     * Swap two nodes.
+     * @param i int; the position of the first node
+     * @param j int; the position of the second node
+     */
+    private void swap(final int i, final int j)
+    {
+        long id = this.ids[i];
+        this.ids[i] = this.ids[j];
+        this.ids[j] = id;
+        int longitude = this.longitudes[i];
+        this.longitudes[i] = this.longitudes[j];
+        this.longitudes[j] = longitude;
+        int latitude = this.latitudes[i];
+        this.latitudes[i] = this.latitudes[j];
+        this.latitudes[j] = latitude;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "NodeIndex [size=" + this.size + ", sorted=" + this.sorted + "]";
+    }
+}
@@ -1,6 +1,7 @@
 package nl.tudelft.simulation.dsol.animation.gis.osm;
 
 import java.awt.Color;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -11,6 +12,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
 
 import de.siegmar.fastcsv.reader.NamedCsvReader;
 import de.siegmar.fastcsv.reader.NamedCsvRow;
@@ -19,6 +21,7 @@ import nl.tudelft.simulation.dsol.animation.gis.GisMapInterface;
 import nl.tudelft.simulation.dsol.animation.gis.LayerInterface;
 import nl.tudelft.simulation.dsol.animation.gis.map.Feature;
 import nl.tudelft.simulation.dsol.animation.gis.map.GisMap;
+import nl.tudelft.simulation.dsol.animation.gis.map.GisMapCache;
 import nl.tudelft.simulation.dsol.animation.gis.map.Layer;
 import nl.tudelft.simulation.dsol.animation.gis.parser.ColorParser;
 import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
@@ -91,6 +94,40 @@ public final class OsmFileCsvParser
             final CoordinateTransform coordinateTransform, final char fieldSeparator, final char quoteCharacter)
             throws IOException
     {
+        return parseMapFile(csvUrl, osmUrl, mapName, coordinateTransform, fieldSeparator, quoteCharacter, null);
+    }
+
+    /**
+     * Parses a CSV file with information about the map and layers, using a compiled map cache file. When the cache file is
+     * still valid for the CSV file, the OpenStreetMap file, and the coordinate transform, the map is read from the cache file.
+     * Otherwise, the map is parsed, and written to the cache file to be used the next time.
+     * @param csvUrl URL; the url of the CSV file.
+     * @param osmUrl URL; the OpenStreetMap file in pbf, osm.gz or osm.bz2 format
+     * @param mapName String; the human readable name of the map
+     * @param coordinateTransform CoordinateTransform; the transformation of (x, y) coordinates to (x', y') coordinates.
+     * @param fieldSeparator char; field separator, e.g., comma for csv files and tab for tsv files
+     * @param quoteCharacter char; e.g., single or double quote
+     * @param cacheFile File; the map cache file, or null to not use a map cache
+     * @return MapInterface the parsed map file.
+     * @throws IOException on failure reading the CSV file, the OpenStreetMap file, or making the layers
+     * @throws IllegalArgumentException when one of the outline or fill colors can not be parsed
+     * @throws NumberFormatException when one of colors contains an illegal number
+     */
+    public static GisMapInterface parseMapFile(final URL csvUrl, final URL osmUrl, final String mapName,
+            final CoordinateTransform coordinateTransform, final char fieldSeparator, final char quoteCharacter,
+            final File cacheFile) throws IOException
+    {
+        GisMapCache cache = cacheFile == null ? null : new GisMapCache(cacheFile);
+        if (cache != null)
+        {
+            GisMapInterface cachedMap = cache.read(coordinateTransform, csvUrl, osmUrl);
+            if (cachedMap != null)
+            {
+                cachedMap.setName(mapName);
+                return cachedMap;
+            }
+        }
+
         GisMapInterface map = new GisMap();
         map.setName(mapName);
         List<String> layerNames = new ArrayList<>(); // to get index # in case layers are not sorted in the file
@@ -151,6 +188,20 @@ public final class OsmFileCsvParser
         map.setLayers(layerList);
         OsmFileReader osmReader = new OsmFileReader(osmUrl, coordinateTransform, featuresToRead);
         osmReader.populateShapes();
+        if (cache != null)
+        {
+            List<URL> sources = new ArrayList<>();
+            sources.add(csvUrl);
+            sources.add(osmUrl);
+            try
+            {
+                cache.write(map, coordinateTransform, sources);
+            }
+            catch (IOException exception)
+            {
+                CategoryLogger.always().warn("could not write map cache file {}: {}", cacheFile, exception.getMessage());
+            }
+        }
         return map;
     }
 
@@ -8,14 +8,13 @@ import java.util.List;
 import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
 
-import crosby.binary.osmosis.OsmosisReader;
 import nl.tudelft.simulation.dsol.animation.gis.DataSourceInterface;
 import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
 import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
 
 /**
  * OsmFileReader reads one layer from an OpenStreetMap file based on the given specifications. The supported formats are pbf,
- * osm, osm.gz, and osm.bz2.
+ * osm, osm.gz, and osm.bz2. A pbf file is decoded in parallel by a ParallelPbfReader.
  * <p>
  * Copyright (c) 2021-2021 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
@@ -60,23 +59,27 @@ public class OsmFileReader implements DataSourceInterface
         return this.featuresToRead;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc} A .pbf file is read with a ParallelPbfReader, which decodes the blocks of the file on one thread per
+     * processor. The other formats are read with a single reader thread.
+     */
     @Override
     public void populateShapes() throws IOException
     {
-        InputStream fis = this.osmURL.openStream();
         String filename = this.osmURL.toString().toLowerCase();
-
-        OsmLayerSink sinkImplementation = new OsmLayerSink(this.featuresToRead, this.coordinateTransform);
-        CompressionMethod compression = CompressionMethod.None;
-        boolean pbf = false;
-        RunnableSource reader = null;
-
         if (filename.endsWith(".pbf"))
         {
-            pbf = true;
+            System.out.println("osm pbf map to read: " + filename);
+            new ParallelPbfReader(this.osmURL, this.coordinateTransform, this.featuresToRead,
+                    Runtime.getRuntime().availableProcessors()).read();
+            System.out.println("OSM layer has been read");
+            return;
         }
-        else if (filename.endsWith(".gz"))
+
+        InputStream fis = this.osmURL.openStream();
+        OsmLayerSink sinkImplementation = new OsmLayerSink(this.featuresToRead, this.coordinateTransform);
+        CompressionMethod compression = CompressionMethod.None;
+        if (filename.endsWith(".gz"))
         {
             compression = CompressionMethod.GZip;
         }
@@ -85,25 +88,8 @@ public class OsmFileReader implements DataSourceInterface
             compression = CompressionMethod.BZip2;
         }
 
-        if (pbf)
-        {
-            try
-            {
-                reader = new OsmosisReader(fis);
-                System.out.println("osm pbf map to read: " + filename);
-            }
-            catch (Exception exception)
-            {
-                sinkImplementation.close();
-                fis.close();
-                throw new IOException("Error during reading of OSM file " + filename, exception);
-            }
-        }
-        else
-        {
-            reader = new XmlStreamReader(fis, false, compression);
-            System.out.println("osm xml map to read: " + filename);
-        }
+        RunnableSource reader = new XmlStreamReader(fis, false, compression);
+        System.out.println("osm xml map to read: " + filename);
 
         reader.setSink(sinkImplementation);
         Thread readerThread = new Thread(reader);
@@ -1,7 +1,6 @@
 package nl.tudelft.simulation.dsol.animation.gis.osm;
 
-import java.awt.geom.Path2D;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -16,12 +15,14 @@ import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 
 import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
-import nl.tudelft.simulation.dsol.animation.gis.GisObject;
-import nl.tudelft.simulation.dsol.animation.gis.SerializablePath;
+import nl.tudelft.simulation.dsol.animation.gis.GeometryStore;
 import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
 
 /**
- * OsmLayerSink.java.
+ * OsmLayerSink reads the ways of the features from an OSM file into the geometry store of the features. The coordinates of the
+ * nodes are kept in a compact NodeIndex while the file is read. The nodes in an OSM file come before the ways, so a way is
+ * added to the geometry store as soon as it is read; only the ways of which not all nodes have been read yet are kept until
+ * the file has been read completely.
  * <p>
  * Copyright (c) 2021-2021 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
@@ -32,11 +33,17 @@ import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
  */
 public class OsmLayerSink implements Sink
 {
-    /** the ways in the OSM file. */
-    private Map<Long, Way> ways = new HashMap<Long, Way>();
+    /** the ways that refer to nodes that had not been read yet, to be added when the file has been read completely. */
+    private List<Way> pendingWays = new ArrayList<>();
 
-    /** the nodes in the OSM file. */
-    private Map<Long, Node> nodes = new HashMap<Long, Node>();
+    /** the features of the pending ways. */
+    private List<FeatureInterface> pendingFeatures = new ArrayList<>();
+
+    /** the coordinates of the nodes in the OSM file. */
+    private NodeIndex nodes = new NodeIndex();
+
+    /** the positions of the nodes of a way in the node index, reused for every way. */
+    private int[] positions = new int[256];
 
     /** the key - value pairs to read. There can be multiple values per key, or '*' for all. */
     private final List<FeatureInterface> featuresToRead;
@@ -66,62 +73,72 @@ public class OsmLayerSink implements Sink
 
         if (entity instanceof Node)
         {
-            this.nodes.put(entity.getId(), (Node) entity);
-            Iterator<Tag> tagIterator = entity.getTags().iterator();
-            while (tagIterator.hasNext())
-            {
-                Tag tag = tagIterator.next();
-                String key = tag.getKey();
-                String value = tag.getValue();
-                // TODO: look whether we want to display special nodes.
-            }
+            Node node = (Node) entity;
+            this.nodes.add(node.getId(), node.getLongitude(), node.getLatitude());
+            // TODO: look whether we want to display special nodes.
         }
 
         else if (entity instanceof Way)
         {
-            boolean read = false;
-            Iterator<Tag> tagIterator = entity.getTags().iterator();
-            while (tagIterator.hasNext())
-            {
-                Tag tag = tagIterator.next();
-                String key = tag.getKey();
-                String value = tag.getValue();
-                for (FeatureInterface feature : this.featuresToRead)
-                {
-                    if (feature.getKey().equals("*"))
-                    {
-                        read = true;
-                        break;
-                    }
-                    if (feature.getKey().equals(key))
-                    {
-                        if (feature.getValue().equals("*") || feature.getValue().equals(value))
-                        {
-                            read = true;
-                            break;
-                        }
-                    }
-                }
-                if (read)
-                {
-                    break;
-                }
-            }
-            if (read)
+            FeatureInterface feature = findFeature(entity);
+            if (feature != null && !addWay((Way) entity, feature, false))
             {
-                this.ways.put(entity.getId(), (Way) entity);
+                this.pendingWays.add((Way) entity);
+                this.pendingFeatures.add(feature);
             }
         }
 
         else if (entity instanceof Relation)
         {
-            Iterator<Tag> tagint = entity.getTags().iterator();
-            while (tagint.hasNext())
+            // TODO: look whether we want to display relations, such as routes.
+        }
+
+    }
+
+    /**
+     * Return the first feature to read of which the key and value match a tag of the entity.
+     * @param entity Entity; the entity to find the feature for
+     * @return FeatureInterface; the first feature that matches a tag of the entity, or null when no feature matches
+     */
+    private FeatureInterface findFeature(final Entity entity)
+    {
+        Iterator<Tag> tagIterator = entity.getTags().iterator();
+        while (tagIterator.hasNext())
+        {
+            Tag tag = tagIterator.next();
+            FeatureInterface feature = findFeature(this.featuresToRead, tag.getKey(), tag.getValue());
+            if (feature != null)
             {
-                Tag route = tagint.next();
+                return feature;
             }
         }
+        return null;
+    }
 
+    /**
+     * Return the first feature to read of which the key and value match a tag.
+     * @param featuresToRead List&lt;FeatureInterface&gt;; the features to read
+     * @param key String; the key of the tag
+     * @param value String; the value of the tag
+     * @return FeatureInterface; the first feature that matches the tag, or null when no feature matches
+     */
+    static FeatureInterface findFeature(final List<FeatureInterface> featuresToRead, final String key, final String value)
+    {
+        for (FeatureInterface feature : featuresToRead)
+        {
+            if (feature.getKey().equals("*"))
+            {
+                return feature;
+            }
+            if (feature.getKey().equals(key))
+            {
+                if (feature.getValue().equals("*") || feature.getValue().equals(value))
+                {
+                    return feature;
+                }
+            }
+        }
+        return null;
     }
 
     /** {@inheritDoc} */
@@ -135,72 +152,71 @@ public class OsmLayerSink implements Sink
     @Override
     public void complete()
     {
-        for (Way way : this.ways.values())
+        for (int i = 0; i < this.pendingWays.size(); i++)
         {
-            boolean ready = false;
-            Iterator<Tag> tagIterator = way.getTags().iterator();
-            while (tagIterator.hasNext())
-            {
-                Tag tag = tagIterator.next();
-                String key = tag.getKey();
-                String value = tag.getValue();
-                for (FeatureInterface feature : this.featuresToRead)
-                {
-                    if (feature.getKey().equals("*"))
-                    {
-                        addWay(way, feature);
-                        ready = true;
-                        break;
-                    }
-                    if (feature.getKey().equals(key))
-                    {
-                        if (feature.getValue().equals("*") || feature.getValue().equals(value))
-                        {
-                            addWay(way, feature);
-                            ready = true;
-                            break;
-                        }
-                    }
-                }
-                if (ready)
-                {
-                    break;
-                }
-            }
+            addWay(this.pendingWays.get(i), this.pendingFeatures.get(i), true);
+        }
+        this.pendingWays.clear();
+        this.pendingFeatures.clear();
+        for (FeatureInterface feature : this.featuresToRead)
+        {
+            feature.getGeometry().trimToSize();
         }
     }
 
     /**
-     * Add a way to a feature.
-     * @param way Way; the way to add to the feature shape list
+     * Add a way to the geometry store of a feature.
+     * @param way Way; the way to add to the feature
      * @param feature FeatureInterface; the feature to which this way belongs
+     * @param complete boolean; whether the file has been read completely, so nodes that have not been found are skipped
+     * @return boolean; whether the way has been added, which is false when a node is missing and the file is not complete
      */
-    private void addWay(final Way way, final FeatureInterface feature)
+    private boolean addWay(final Way way, final FeatureInterface feature, final boolean complete)
     {
         List<WayNode> wayNodes = way.getWayNodes();
-        SerializablePath path = new SerializablePath(Path2D.WIND_NON_ZERO, wayNodes.size());
-        boolean start = false;
-        for (WayNode wayNode : wayNodes)
+        if (this.positions.length < wayNodes.size())
+        {
+            this.positions = new int[Math.max(wayNodes.size(), 2 * this.positions.length)];
+        }
+        int found = 0;
+        for (int i = 0; i < wayNodes.size(); i++)
+        {
+            long nodeId = wayNodes.get(i).getNodeId();
+            // a way node without a node id carries its own coordinates
+            this.positions[i] = nodeId == 0 ? -2 : this.nodes.find(nodeId);
+            if (this.positions[i] == -1 && !complete)
+            {
+                return false;
+            }
+            found += this.positions[i] == -1 ? 0 : 1;
+        }
+        if (found == 0)
+        {
+            return true;
+        }
+        GeometryStore geometry = feature.getGeometry();
+        geometry.startShape();
+        geometry.startPart();
+        for (int i = 0; i < wayNodes.size(); i++)
         {
             float[] coordinate;
-            if (wayNode.getNodeId() != 0)
+            if (this.positions[i] >= 0)
             {
-                Node node = this.nodes.get(wayNode.getNodeId());
-                coordinate = this.coordinateTransform.floatTransform(node.getLongitude(), node.getLatitude());
+                coordinate = this.coordinateTransform.floatTransform(this.nodes.getLongitude(this.positions[i]),
+                        this.nodes.getLatitude(this.positions[i]));
             }
-            else
+            else if (this.positions[i] == -2)
             {
+                WayNode wayNode = wayNodes.get(i);
                 coordinate = this.coordinateTransform.floatTransform(wayNode.getLongitude(), wayNode.getLatitude());
             }
-            if (!start)
+            else
             {
-                path.moveTo(coordinate[0], coordinate[1]);
-                start = true;
+                continue; // the node is not in the file, e.g., for a way at the border of an extract
             }
-            path.lineTo(coordinate[0], coordinate[1]);
+            geometry.addPoint(coordinate[0], coordinate[1]);
         }
-        String[] att = new String[0];
-        feature.getShapes().add(new GisObject(path, att));
+        return true;
     }
 
     /** {@inheritDoc} */
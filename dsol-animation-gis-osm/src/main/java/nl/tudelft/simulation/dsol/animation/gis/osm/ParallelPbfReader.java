@@ -0,0 +1,1187 @@
+package nl.tudelft.simulation.dsol.animation.gis.osm;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
+import nl.tudelft.simulation.dsol.animation.gis.GeometryStore;
+import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
+
+/**
+ * ParallelPbfReader reads the ways of the features from an OpenStreetMap .osm.pbf file, where the blocks of the file are
+ * decompressed and decoded on a pool of worker threads. The file is read in two passes:
+ * <ol>
+ * <li>The blocks are decoded in parallel, and only the ways with a tag that matches one of the features to read are kept,
+ * with the ids of their nodes. The tags are checked before the node ids of a way are decoded, and the nodes and relations in
+ * this pass are skipped.</li>
+ * <li>The sorted ids of the nodes of these ways form the node index. The blocks are decoded in parallel again, and the
+ * coordinates of the nodes that are in the node index are stored in the index. Each node has its own place in the index, so
+ * the worker threads do not need to synchronize.</li>
+ * </ol>
+ * Finally, the ways are added to the geometry store of their feature in the order of the file, so the result is the same as
+ * for the OsmLayerSink, and the CoordinateTransform does not need to be thread-safe.
+ * <p>
+ * Only the nodes of the ways that are read are kept. The node ids of the ways are stored on the heap as varints of the
+ * difference with the previous node of the way, which takes 1 to 3 bytes for most nodes instead of 8. Each block also keeps its
+ * distinct node ids in ascending order, encoded in the same way. The node index, with 16 bytes per distinct node, is filled by
+ * merging the sorted ids of the blocks, so no array with all node ids is needed. When the node index is larger than the spill
+ * threshold, it is stored in a memory-mapped temporary file instead of on the heap, so the operating system can page it to
+ * disk. The index is divided in segments of at most 1 GiB, so its size is not limited by the 2 GiB of a single buffer. The
+ * number of blocks that are decoded at the same time is limited to twice the number of threads, which bounds the memory for
+ * the blocks as well.
+ * </p>
+ * <p>
+ * The protocol buffer messages are decoded with ProtobufInput, following the osmformat.proto and fileformat.proto definitions
+ * of the PBF format. Blobs can be stored raw or zlib-compressed.
+ * </p>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class ParallelPbfReader
+{
+    /** the default size in bytes of the node index above which it is stored in a temporary file. */
+    public static final long DEFAULT_SPILL_THRESHOLD = 256L * 1024 * 1024;
+
+    /** the maximum number of nodes in a segment of the node index, which makes a segment of 1 GiB. */
+    private static final int MAX_NODES_PER_SEGMENT = 1 << 26;
+
+    /** the maximum size of a blob header according to the PBF specification. */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+    /** the maximum size of a blob according to the PBF specification. */
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    /** the required features in the header of a PBF file that this reader supports. */
+    private static final Set<String> SUPPORTED_FEATURES =
+            new HashSet<>(Arrays.asList("OsmSchema-V0.6", "DenseNodes", "HistoricalInformation"));
+
+    /** the URL of the pbf file. */
+    private final URL pbfURL;
+
+    /** the transformation of the lat/lon (or other) coordinates. */
+    private final CoordinateTransform coordinateTransform;
+
+    /** the features to read. */
+    private final List<FeatureInterface> featuresToRead;
+
+    /** the number of worker threads. */
+    private final int numThreads;
+
+    /** the size in bytes of the node index above which it is stored in a temporary file. */
+    private long spillThreshold = DEFAULT_SPILL_THRESHOLD;
+
+    /** the number of nodes in a segment of the node index. */
+    private int nodesPerSegment = MAX_NODES_PER_SEGMENT;
+
+    /**
+     * Construct a reader for the ways of the features in a pbf file.
+     * @param pbfURL URL; the URL of the .osm.pbf file
+     * @param coordinateTransform CoordinateTransform; the transformation of (x, y) coordinates to (x', y') coordinates
+     * @param featuresToRead List&lt;FeatureInterface&gt;; the features to read
+     * @param numThreads int; the number of worker threads that decode the blocks of the file
+     * @throws NullPointerException when pbfURL, coordinateTransform, or featuresToRead is null
+     * @throws IllegalArgumentException when numThreads &lt; 1
+     */
+    public ParallelPbfReader(final URL pbfURL, final CoordinateTransform coordinateTransform,
+            final List<FeatureInterface> featuresToRead, final int numThreads)
+    {
+        Throw.whenNull(pbfURL, "pbfURL cannot be null");
+        Throw.whenNull(coordinateTransform, "coordinateTransform cannot be null");
+        Throw.whenNull(featuresToRead, "featuresToRead cannot be null");
+        Throw.when(numThreads < 1, IllegalArgumentException.class, "numThreads should be at least 1");
+        this.pbfURL = pbfURL;
+        this.coordinateTransform = coordinateTransform;
+        this.featuresToRead = featuresToRead;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Return the size in bytes of the node index above which it is stored in a temporary file.
+     * @return long; the size in bytes of the node index above which it is stored in a temporary file
+     */
+    public long getSpillThreshold()
+    {
+        return this.spillThreshold;
+    }
+
+    /**
+     * Set the size in bytes of the node index above which it is stored in a temporary file.
+     * @param spillThreshold long; the size in bytes of the node index above which it is stored in a temporary file
+     */
+    public void setSpillThreshold(final long spillThreshold)
+    {
+        this.spillThreshold = spillThreshold;
+    }
+
+    /**
+     * Set the number of nodes in a segment of the node index. The default is the maximum of 2^26 nodes, i.e., segments of 1
+     * GiB. Smaller segments are only useful to test the segmentation of the index with a small file.
+     * @param nodesPerSegment int; the number of nodes in a segment of the node index, a power of 2
+     * @throws IllegalArgumentException when nodesPerSegment is not a power of 2, or larger than 2^26
+     */
+    void setNodesPerSegment(final int nodesPerSegment)
+    {
+        Throw.when(nodesPerSegment < 1 || nodesPerSegment > MAX_NODES_PER_SEGMENT || Integer.bitCount(nodesPerSegment) != 1,
+                IllegalArgumentException.class, "nodesPerSegment should be a power of 2 between 1 and 2^26");
+        this.nodesPerSegment = nodesPerSegment;
+    }
+
+    /**
+     * Read the ways of the features from the file, and add them to the geometry store of their feature.
+     * @throws IOException when the file cannot be read, or is not a valid pbf file
+     */
+    public void read() throws IOException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(this.numThreads, (runnable) ->
+        {
+            Thread thread = new Thread(runnable, "ParallelPbfReader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        NodeCoordinates nodes = null;
+        try
+        {
+            // pass 1: the ways of the features, with the ids of their nodes
+            List<WayBlock> wayBlocks = readBlocks(executor, (block) -> decodeWays(block));
+
+            // pass 2: the coordinates of the nodes of these ways
+            nodes = new NodeCoordinates(wayBlocks, this.spillThreshold, this.nodesPerSegment);
+            NodeCoordinates wayNodes = nodes;
+            readBlocks(executor, (block) ->
+            {
+                decodeNodes(block, wayNodes);
+                return null;
+            });
+
+            for (WayBlock wayBlock : wayBlocks)
+            {
+                addWays(wayBlock, nodes);
+            }
+            for (FeatureInterface feature : this.featuresToRead)
+            {
+                feature.getGeometry().trimToSize();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            if (nodes != null)
+            {
+                nodes.close();
+            }
+        }
+    }
+
+    /**
+     * Read the blobs of the file, and decode the data blocks on the worker threads.
+     * @param executor ExecutorService; the worker threads
+     * @param decoder BlockDecoder&lt;T&gt;; the decoder for a data block
+     * @return List&lt;T&gt;; the results of the decoder for the data blocks, in the order of the file
+     * @param <T> the type of the result of the decoder
+     * @throws IOException when the file cannot be read, or is not a valid pbf file
+     */
+    private <T> List<T> readBlocks(final ExecutorService executor, final BlockDecoder<T> decoder) throws IOException
+    {
+        List<Future<T>> futures = new ArrayList<>();
+        Semaphore inProgress = new Semaphore(2 * this.numThreads);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(this.pbfURL.openStream(), 65536)))
+        {
+            while (true)
+            {
+                int headerLength;
+                try
+                {
+                    headerLength = input.readInt();
+                }
+                catch (EOFException exception)
+                {
+                    break;
+                }
+                Throw.when(headerLength < 0 || headerLength > MAX_HEADER_SIZE, IOException.class,
+                        "invalid blob header length %d in %s", headerLength, this.pbfURL);
+                byte[] header = new byte[headerLength];
+                input.readFully(header);
+                String type = null;
+                long dataSize = -1;
+                ProtobufInput headerInput = new ProtobufInput(header, 0, headerLength);
+                for (int field = headerInput.nextField(); field != -1; field = headerInput.nextField())
+                {
+                    if (field == 1)
+                    {
+                        type = headerInput.readString();
+                    }
+                    else if (field == 3)
+                    {
+                        dataSize = headerInput.readVarint();
+                    }
+                    else
+                    {
+                        headerInput.skip();
+                    }
+                }
+                Throw.when(dataSize < 0 || dataSize > MAX_BLOB_SIZE, IOException.class, "invalid blob size %d in %s", dataSize,
+                        this.pbfURL);
+                byte[] blob = new byte[(int) dataSize];
+                input.readFully(blob);
+                if ("OSMHeader".equals(type))
+                {
+                    checkHeader(uncompress(blob));
+                }
+                else if ("OSMData".equals(type))
+                {
+                    inProgress.acquire();
+                    futures.add(executor.submit(() ->
+                    {
+                        try
+                        {
+                            return decoder.decode(uncompress(blob));
+                        }
+                        finally
+                        {
+                            inProgress.release();
+                        }
+                    }));
+                }
+                // blobs of other types are skipped, as prescribed by the specification
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures)
+            {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException exception)
+        {
+            throw new IOException("reading " + this.pbfURL + " was interrupted", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            if (exception.getCause() instanceof IOException)
+            {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException("error decoding " + this.pbfURL, exception.getCause());
+        }
+    }
+
+    /**
+     * Return the uncompressed block of a blob.
+     * @param blob byte[]; the Blob message
+     * @return byte[]; the uncompressed block
+     * @throws IOException when the blob is not valid, or uses a compression that is not supported
+     */
+    private static byte[] uncompress(final byte[] blob) throws IOException
+    {
+        ProtobufInput input = new ProtobufInput(blob, 0, blob.length);
+        byte[] raw = null;
+        byte[] zlib = null;
+        long rawSize = -1;
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 1)
+            {
+                raw = input.readBytes();
+            }
+            else if (field == 2)
+            {
+                rawSize = input.readVarint();
+            }
+            else if (field == 3)
+            {
+                zlib = input.readBytes();
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+        if (raw != null)
+        {
+            return raw;
+        }
+        Throw.when(zlib == null, IOException.class, "blob in OSM PBF file is not raw or zlib-compressed");
+        Throw.when(rawSize < 0 || rawSize > MAX_BLOB_SIZE, IOException.class, "invalid raw size %d of blob", rawSize);
+        Inflater inflater = new Inflater();
+        try
+        {
+            inflater.setInput(zlib);
+            byte[] result = new byte[(int) rawSize];
+            int n = 0;
+            while (n < result.length && !inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary())
+            {
+                n += inflater.inflate(result, n, result.length - n);
+            }
+            Throw.when(n != result.length, IOException.class, "zlib-compressed blob has %d bytes instead of %d", n, rawSize);
+            return result;
+        }
+        catch (DataFormatException exception)
+        {
+            throw new IOException("error in zlib-compressed blob", exception);
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Check that the required features in the HeaderBlock are supported.
+     * @param block byte[]; the HeaderBlock message
+     * @throws IOException when a required feature is not supported
+     */
+    private void checkHeader(final byte[] block) throws IOException
+    {
+        ProtobufInput input = new ProtobufInput(block, 0, block.length);
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 4)
+            {
+                String feature = input.readString();
+                Throw.when(!SUPPORTED_FEATURES.contains(feature), IOException.class,
+                        "OSM PBF file %s requires unsupported feature %s", this.pbfURL, feature);
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+    }
+
+    /**
+     * Decode the ways of a PrimitiveBlock that match one of the features to read.
+     * @param block byte[]; the PrimitiveBlock message
+     * @return WayBlock; the ways of the block that match one of the features, with the ids of their nodes
+     * @throws IOException when the block is not valid
+     */
+    private WayBlock decodeWays(final byte[] block) throws IOException
+    {
+        WayBlock result = new WayBlock();
+        String[] strings = null;
+        boolean[] relevantKeys = null;
+        ProtobufInput input = new ProtobufInput(block, 0, block.length);
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 1)
+            {
+                strings = readStringTable(input.readMessage());
+                relevantKeys = relevantKeys(strings);
+            }
+            else if (field == 2)
+            {
+                Throw.when(strings == null, IOException.class, "primitive group before string table in %s", this.pbfURL);
+                ProtobufInput group = input.readMessage();
+                for (int groupField = group.nextField(); groupField != -1; groupField = group.nextField())
+                {
+                    if (groupField == 3)
+                    {
+                        decodeWay(group.readMessage(), strings, relevantKeys, result);
+                    }
+                    else
+                    {
+                        group.skip();
+                    }
+                }
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+        result.sortIds();
+        return result;
+    }
+
+    /**
+     * Read the strings of a StringTable.
+     * @param input ProtobufInput; the StringTable message
+     * @return String[]; the strings
+     * @throws IOException when the string table is not valid
+     */
+    private static String[] readStringTable(final ProtobufInput input) throws IOException
+    {
+        List<String> strings = new ArrayList<>();
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 1)
+            {
+                strings.add(input.readString());
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+        return strings.toArray(new String[strings.size()]);
+    }
+
+    /**
+     * Return for each string in the string table whether it is the key of one of the features to read, so the values of the
+     * other keys do not have to be checked.
+     * @param strings String[]; the strings of the string table
+     * @return boolean[]; for each string whether it can be the key of one of the features to read
+     */
+    private boolean[] relevantKeys(final String[] strings)
+    {
+        boolean[] result = new boolean[strings.length];
+        for (int i = 0; i < strings.length; i++)
+        {
+            for (FeatureInterface feature : this.featuresToRead)
+            {
+                if (feature.getKey().equals("*") || feature.getKey().equals(strings[i]))
+                {
+                    result[i] = true;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode a Way, and add it to the result when one of its tags matches one of the features to read.
+     * @param input ProtobufInput; the Way message
+     * @param strings String[]; the strings of the string table of the block
+     * @param relevantKeys boolean[]; for each string whether it can be the key of one of the features to read
+     * @param result WayBlock; the ways of the block that match one of the features
+     * @throws IOException when the way is not valid
+     */
+    private void decodeWay(final ProtobufInput input, final String[] strings, final boolean[] relevantKeys,
+            final WayBlock result) throws IOException
+    {
+        ProtobufInput keys = null;
+        ProtobufInput values = null;
+        ProtobufInput refs = null;
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 2)
+            {
+                keys = input.readMessage();
+            }
+            else if (field == 3)
+            {
+                values = input.readMessage();
+            }
+            else if (field == 8)
+            {
+                refs = input.readMessage();
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+        if (keys == null || values == null || refs == null)
+        {
+            return;
+        }
+        FeatureInterface feature = null;
+        while (feature == null && keys.hasMore() && values.hasMore())
+        {
+            long key = keys.readVarint();
+            long value = values.readVarint();
+            Throw.when(key >= strings.length || value >= strings.length, IOException.class,
+                    "tag of way refers to string %d, while the string table has %d strings", Math.max(key, value),
+                    strings.length);
+            if (relevantKeys[(int) key])
+            {
+                feature = OsmLayerSink.findFeature(this.featuresToRead, strings[(int) key], strings[(int) value]);
+            }
+        }
+        if (feature != null)
+        {
+            result.startWay(this.featuresToRead.indexOf(feature));
+            // the refs are delta-encoded in the file as well, but are encoded again to keep only the node ids of the way
+            long ref = 0;
+            while (refs.hasMore())
+            {
+                ref += refs.readSignedVarint();
+                result.addRef(ref);
+            }
+        }
+    }
+
+    /**
+     * Decode the nodes of a PrimitiveBlock, and store the coordinates of the nodes that are in the node index.
+     * @param block byte[]; the PrimitiveBlock message
+     * @param nodes NodeCoordinates; the node index
+     * @throws IOException when the block is not valid
+     */
+    private void decodeNodes(final byte[] block, final NodeCoordinates nodes) throws IOException
+    {
+        // the coordinates are stored relative to an offset, in units of the granularity in nanodegrees
+        long granularity = 100;
+        long latOffset = 0;
+        long lonOffset = 0;
+        ProtobufInput input = new ProtobufInput(block, 0, block.length);
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 17)
+            {
+                granularity = input.readVarint();
+            }
+            else if (field == 19)
+            {
+                latOffset = input.readVarint();
+            }
+            else if (field == 20)
+            {
+                lonOffset = input.readVarint();
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+        input = new ProtobufInput(block, 0, block.length);
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field != 2)
+            {
+                input.skip();
+                continue;
+            }
+            ProtobufInput group = input.readMessage();
+            for (int groupField = group.nextField(); groupField != -1; groupField = group.nextField())
+            {
+                if (groupField == 1)
+                {
+                    long[] node = decodeNode(group.readMessage());
+                    long position = nodes.find(node[0], 0);
+                    if (position >= 0)
+                    {
+                        nodes.set(position, lonOffset + granularity * node[2], latOffset + granularity * node[1]);
+                    }
+                }
+                else if (groupField == 2)
+                {
+                    decodeDenseNodes(group.readMessage(), nodes, granularity, latOffset, lonOffset);
+                }
+                else
+                {
+                    group.skip();
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode a Node.
+     * @param input ProtobufInput; the Node message
+     * @return long[]; the id, latitude, and longitude of the node
+     * @throws IOException when the node is not valid
+     */
+    private static long[] decodeNode(final ProtobufInput input) throws IOException
+    {
+        long[] result = new long[3];
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 1)
+            {
+                result[0] = input.readSignedVarint();
+            }
+            else if (field == 8)
+            {
+                result[1] = input.readSignedVarint();
+            }
+            else if (field == 9)
+            {
+                result[2] = input.readSignedVarint();
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode DenseNodes, where the ids and coordinates are delta-encoded, and store the coordinates of the nodes that are in
+     * the node index.
+     * @param input ProtobufInput; the DenseNodes message
+     * @param nodes NodeCoordinates; the node index
+     * @param granularity long; the granularity of the coordinates in nanodegrees
+     * @param latOffset long; the offset of the latitude in nanodegrees
+     * @param lonOffset long; the offset of the longitude in nanodegrees
+     * @throws IOException when the dense nodes are not valid
+     */
+    private static void decodeDenseNodes(final ProtobufInput input, final NodeCoordinates nodes, final long granularity,
+            final long latOffset, final long lonOffset) throws IOException
+    {
+        ProtobufInput ids = null;
+        ProtobufInput lats = null;
+        ProtobufInput lons = null;
+        for (int field = input.nextField(); field != -1; field = input.nextField())
+        {
+            if (field == 1)
+            {
+                ids = input.readMessage();
+            }
+            else if (field == 8)
+            {
+                lats = input.readMessage();
+            }
+            else if (field == 9)
+            {
+                lons = input.readMessage();
+            }
+            else
+            {
+                input.skip();
+            }
+        }
+        if (ids == null || lats == null || lons == null)
+        {
+            return;
+        }
+        long id = 0;
+        long lat = 0;
+        long lon = 0;
+        long from = 0;
+        while (ids.hasMore())
+        {
+            long previousId = id;
+            id += ids.readSignedVarint();
+            lat += lats.readSignedVarint();
+            lon += lons.readSignedVarint();
+            // the ids in a block are normally ascending, so the search can start after the previous node
+            long position = nodes.find(id, id > previousId ? from : 0);
+            if (position >= 0)
+            {
+                nodes.set(position, lonOffset + granularity * lon, latOffset + granularity * lat);
+                from = position + 1;
+            }
+            else
+            {
+                from = -position - 1;
+            }
+        }
+    }
+
+    /**
+     * Add the ways of a block to the geometry store of their feature.
+     * @param wayBlock WayBlock; the ways of a block that match one of the features
+     * @param nodes NodeCoordinates; the node index with the coordinates of the nodes
+     * @throws IOException when the node ids of a way are not valid
+     */
+    private void addWays(final WayBlock wayBlock, final NodeCoordinates nodes) throws IOException
+    {
+        long[] positions = new long[16];
+        for (int way = 0; way < wayBlock.numWays; way++)
+        {
+            int found = 0;
+            long ref = 0;
+            for (ProtobufInput refs = wayBlock.getRefs(way); refs.hasMore();)
+            {
+                ref += refs.readSignedVarint();
+                // nodes that are not in the file, e.g., for a way at the border of an extract, are skipped
+                long position = nodes.find(ref, 0);
+                if (position >= 0 && nodes.isFound(position))
+                {
+                    if (found == positions.length)
+                    {
+                        positions = Arrays.copyOf(positions, 2 * found);
+                    }
+                    positions[found++] = position;
+                }
+            }
+            if (found == 0)
+            {
+                continue;
+            }
+            GeometryStore geometry = this.featuresToRead.get(wayBlock.features[way]).getGeometry();
+            geometry.startShape();
+            geometry.startPart();
+            for (int i = 0; i < found; i++)
+            {
+                float[] coordinate = this.coordinateTransform.floatTransform(nodes.getLongitude(positions[i]),
+                        nodes.getLatitude(positions[i]));
+                geometry.addPoint(coordinate[0], coordinate[1]);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "ParallelPbfReader [pbfURL=" + this.pbfURL + ", numThreads=" + this.numThreads + "]";
+    }
+
+    /**
+     * Decoder for a data block of the file.
+     * @param <T> the type of the result of the decoder
+     */
+    @FunctionalInterface
+    private interface BlockDecoder<T>
+    {
+        /**
+         * Decode a data block.
+         * @param block byte[]; the uncompressed PrimitiveBlock message
+         * @return T; the result of decoding the block
+         * @throws IOException when the block is not valid
+         */
+        T decode(byte[] block) throws IOException;
+    }
+
+    /**
+     * A growable array of bytes to which varints are written, in the encoding of ProtobufInput.
+     */
+    private static class VarintOutput
+    {
+        /** the bytes. */
+        private byte[] bytes;
+
+        /** the number of bytes that have been written. */
+        private int length = 0;
+
+        /**
+         * Create an empty array of bytes.
+         * @param capacity int; the initial capacity
+         */
+        VarintOutput(final int capacity)
+        {
+            this.bytes = new byte[capacity];
+        }
+
+        /**
+         * Write a zigzag-encoded signed varint, which can be read with ProtobufInput.readSignedVarint().
+         * @param value long; the value to write
+         */
+        void writeSignedVarint(final long value)
+        {
+            if (this.length + 10 > this.bytes.length)
+            {
+                this.bytes = Arrays.copyOf(this.bytes, 2 * this.bytes.length + 10);
+            }
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0)
+            {
+                this.bytes[this.length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            this.bytes[this.length++] = (byte) zigzag;
+        }
+
+        /**
+         * Release the capacity that is not used.
+         */
+        void trimToSize()
+        {
+            this.bytes = Arrays.copyOf(this.bytes, this.length);
+        }
+
+        /**
+         * Return an input to read a range of the bytes.
+         * @param from int; the index of the first byte
+         * @param to int; the index after the last byte
+         * @return ProtobufInput; an input to read the bytes from index from to index to
+         */
+        ProtobufInput getInput(final int from, final int to)
+        {
+            return new ProtobufInput(this.bytes, from, to - from);
+        }
+    }
+
+    /**
+     * The ways of a block that match one of the features to read, with the ids of their nodes. The node ids of a way are stored
+     * as varints of the difference with the previous node id of the way. After the block has been decoded, the distinct node
+     * ids of the block are stored in ascending order, as varints of the difference with the previous id, to create the node
+     * index.
+     */
+    private static class WayBlock
+    {
+        /** the number of ways. */
+        private int numWays = 0;
+
+        /** the index of the feature of each way in the features to read. */
+        private int[] features = new int[16];
+
+        /** the index in refs of the first byte of the node ids of each way. */
+        private int[] starts = new int[16];
+
+        /** the node ids of the ways. */
+        private final VarintOutput refs = new VarintOutput(256);
+
+        /** the number of node ids. */
+        private int numRefs = 0;
+
+        /** the last node id that has been added to the last way. */
+        private long lastRef = 0;
+
+        /** the distinct node ids of the ways in ascending order, or null when the node index has been created. */
+        private VarintOutput ids = null;
+
+        /**
+         * Start a new way.
+         * @param feature int; the index of the feature of the way in the features to read
+         */
+        void startWay(final int feature)
+        {
+            if (this.numWays == this.features.length)
+            {
+                this.features = Arrays.copyOf(this.features, 2 * this.numWays);
+                this.starts = Arrays.copyOf(this.starts, 2 * this.numWays);
+            }
+            this.features[this.numWays] = feature;
+            this.starts[this.numWays] = this.refs.length;
+            this.numWays++;
+            this.lastRef = 0;
+        }
+
+        /**
+         * Add a node id to the last way.
+         * @param ref long; the node id
+         */
+        void addRef(final long ref)
+        {
+            this.refs.writeSignedVarint(ref - this.lastRef);
+            this.lastRef = ref;
+            this.numRefs++;
+        }
+
+        /**
+         * Return an input to read the node ids of a way, as the differences with the previous node id of the way.
+         * @param way int; the index of the way
+         * @return ProtobufInput; an input to read the node ids of the way with readSignedVarint()
+         */
+        ProtobufInput getRefs(final int way)
+        {
+            return this.refs.getInput(this.starts[way], way + 1 < this.numWays ? this.starts[way + 1] : this.refs.length);
+        }
+
+        /**
+         * Store the distinct node ids of the ways in ascending order, when all ways of the block have been added.
+         * @throws IOException when the node ids of a way are not valid
+         */
+        void sortIds() throws IOException
+        {
+            long[] sorted = new long[this.numRefs];
+            int n = 0;
+            for (int way = 0; way < this.numWays; way++)
+            {
+                long ref = 0;
+                for (ProtobufInput input = getRefs(way); input.hasMore();)
+                {
+                    ref += input.readSignedVarint();
+                    sorted[n++] = ref;
+                }
+            }
+            Arrays.sort(sorted);
+            this.ids = new VarintOutput(this.refs.length + 10);
+            for (int i = 0; i < n; i++)
+            {
+                if (i == 0 || sorted[i] != sorted[i - 1])
+                {
+                    this.ids.writeSignedVarint(i == 0 ? sorted[i] : sorted[i] - sorted[i - 1]);
+                }
+            }
+            this.refs.trimToSize();
+            this.ids.trimToSize();
+        }
+    }
+
+    /**
+     * The position in the distinct node ids of a block, to merge the node ids of the blocks.
+     */
+    private static class IdCursor
+    {
+        /** the distinct node ids of the block. */
+        private final ProtobufInput input;
+
+        /** the current node id. */
+        private long id = 0;
+
+        /**
+         * Create a cursor before the first node id of a block.
+         * @param wayBlock WayBlock; the block
+         */
+        IdCursor(final WayBlock wayBlock)
+        {
+            this.input = wayBlock.ids.getInput(0, wayBlock.ids.length);
+        }
+
+        /**
+         * Move to the next node id of the block.
+         * @return boolean; whether there was a next node id
+         * @throws IOException when the node ids are not valid
+         */
+        boolean next() throws IOException
+        {
+            if (!this.input.hasMore())
+            {
+                return false;
+            }
+            this.id += this.input.readSignedVarint();
+            return true;
+        }
+
+        /**
+         * Return the current node id.
+         * @return long; the current node id
+         */
+        long getId()
+        {
+            return this.id;
+        }
+    }
+
+    /**
+     * The index of the nodes of the ways that are read, sorted on node id, with 16 bytes per node for the id, the longitude,
+     * and the latitude. The coordinates are stored in units of 1E-7 degree, which is the precision of OpenStreetMap. The index
+     * is stored in segments on the heap, or in memory-mapped segments of a temporary file when it is larger than the spill
+     * threshold. The coordinates of different nodes can be stored by different threads at the same time.
+     */
+    private static class NodeCoordinates
+    {
+        /** the number of bytes per node. */
+        private static final int NODE_BYTES = 16;
+
+        /** the latitude of a node of which the coordinates have not been found in the file. */
+        private static final int MISSING = Integer.MIN_VALUE;
+
+        /** the segments with the nodes, as id, longitude, and latitude. */
+        private final ByteBuffer[] segments;
+
+        /** the number of bits of the position of a node within its segment. */
+        private final int segmentBits;
+
+        /** the mask for the position of a node within its segment. */
+        private final long segmentMask;
+
+        /** the number of nodes. */
+        private final long size;
+
+        /** the temporary file, or null when the index is stored on the heap. */
+        private final File file;
+
+        /**
+         * Create the index for the nodes of the ways. The distinct node ids of the blocks are released afterwards.
+         * @param wayBlocks List&lt;WayBlock&gt;; the ways that are read
+         * @param spillThreshold long; the size in bytes above which the index is stored in a temporary file
+         * @param nodesPerSegment int; the number of nodes in a segment of the index, a power of 2
+         * @throws IOException when the temporary file cannot be created
+         */
+        NodeCoordinates(final List<WayBlock> wayBlocks, final long spillThreshold, final int nodesPerSegment)
+                throws IOException
+        {
+            this.size = merge(wayBlocks, null);
+            this.segmentBits = Integer.numberOfTrailingZeros(nodesPerSegment);
+            this.segmentMask = nodesPerSegment - 1;
+            this.segments = new ByteBuffer[(int) ((this.size + nodesPerSegment - 1) >>> this.segmentBits)];
+            if (NODE_BYTES * this.size <= spillThreshold)
+            {
+                this.file = null;
+                for (int i = 0; i < this.segments.length; i++)
+                {
+                    this.segments[i] = ByteBuffer.allocate(segmentBytes(i));
+                }
+            }
+            else
+            {
+                this.file = File.createTempFile("dsol-osm-nodes", ".tmp");
+                this.file.deleteOnExit();
+                try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE))
+                {
+                    // the mappings stay valid after the channel has been closed
+                    for (int i = 0; i < this.segments.length; i++)
+                    {
+                        this.segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                (long) NODE_BYTES * nodesPerSegment * i, segmentBytes(i));
+                    }
+                }
+            }
+            merge(wayBlocks, this);
+            for (WayBlock wayBlock : wayBlocks)
+            {
+                wayBlock.ids = null;
+            }
+        }
+
+        /**
+         * Merge the distinct node ids of the blocks in ascending order, and store them in the index.
+         * @param wayBlocks List&lt;WayBlock&gt;; the ways that are read
+         * @param index NodeCoordinates; the index to store the node ids in, or null to only count them
+         * @return long; the number of distinct node ids
+         * @throws IOException when the node ids are not valid
+         */
+        private static long merge(final List<WayBlock> wayBlocks, final NodeCoordinates index) throws IOException
+        {
+            PriorityQueue<IdCursor> cursors =
+                    new PriorityQueue<>(Math.max(1, wayBlocks.size()), Comparator.comparingLong(IdCursor::getId));
+            for (WayBlock wayBlock : wayBlocks)
+            {
+                IdCursor cursor = new IdCursor(wayBlock);
+                if (cursor.next())
+                {
+                    cursors.add(cursor);
+                }
+            }
+            long count = 0;
+            long lastId = 0;
+            while (!cursors.isEmpty())
+            {
+                IdCursor cursor = cursors.poll();
+                if (count == 0 || cursor.getId() != lastId)
+                {
+                    lastId = cursor.getId();
+                    if (index != null)
+                    {
+                        index.segment(count).putLong(index.offset(count), lastId);
+                        index.segment(count).putInt(index.offset(count) + 12, MISSING);
+                    }
+                    count++;
+                }
+                if (cursor.next())
+                {
+                    cursors.add(cursor);
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Return the size in bytes of a segment.
+         * @param segment int; the index of the segment
+         * @return int; the size in bytes of the segment
+         */
+        private int segmentBytes(final int segment)
+        {
+            return NODE_BYTES * (int) Math.min(this.segmentMask + 1, this.size - ((long) segment << this.segmentBits));
+        }
+
+        /**
+         * Return the segment of the node at a position.
+         * @param position long; the position of the node
+         * @return ByteBuffer; the segment of the node
+         */
+        private ByteBuffer segment(final long position)
+        {
+            return this.segments[(int) (position >>> this.segmentBits)];
+        }
+
+        /**
+         * Return the offset of the node at a position in its segment.
+         * @param position long; the position of the node
+         * @return int; the offset in bytes of the node in its segment
+         */
+        private int offset(final long position)
+        {
+            return NODE_BYTES * (int) (position & this.segmentMask);
+        }
+
+        /**
+         * Return the position of a node in the index.
+         * @param id long; the id of the node
+         * @param from long; the first position to search
+         * @return long; the position of the node, or (-(insertion point) - 1) when the node is not in the index
+         */
+        long find(final long id, final long from)
+        {
+            long low = from;
+            long high = this.size - 1;
+            while (low <= high)
+            {
+                long mid = (low + high) >>> 1;
+                long midId = segment(mid).getLong(offset(mid));
+                if (midId < id)
+                {
+                    low = mid + 1;
+                }
+                else if (midId > id)
+                {
+                    high = mid - 1;
+                }
+                else
+                {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Store the coordinates of the node at a position.
+         * @param position long; the position of the node
+         * @param lon long; the longitude in nanodegrees
+         * @param lat long; the latitude in nanodegrees
+         */
+        void set(final long position, final long lon, final long lat)
+        {
+            segment(position).putInt(offset(position) + 8, (int) Math.round(lon / 100.0));
+            segment(position).putInt(offset(position) + 12, (int) Math.round(lat / 100.0));
+        }
+
+        /**
+         * Return whether the coordinates of the node at a position have been found in the file.
+         * @param position long; the position of the node
+         * @return boolean; whether the coordinates of the node have been found in the file
+         */
+        boolean isFound(final long position)
+        {
+            return segment(position).getInt(offset(position) + 12) != MISSING;
+        }
+
+        /**
+         * Return the longitude of the node at a position.
+         * @param position long; the position of the node
+         * @return double; the longitude in degrees
+         */
+        double getLongitude(final long position)
+        {
+            return segment(position).getInt(offset(position) + 8) / 1.0E7;
+        }
+
+        /**
+         * Return the latitude of the node at a position.
+         * @param position long; the position of the node
+         * @return double; the latitude in degrees
+         */
+        double getLatitude(final long position)
+        {
+            return segment(position).getInt(offset(position) + 12) / 1.0E7;
+        }
+
+        /**
+         * Delete the temporary file, if any. When the file is still mapped and cannot be deleted yet, it is deleted when the
+         * virtual machine exits.
+         */
+        void close()
+        {
+            if (this.file != null)
+            {
+                this.file.delete();
+            }
+        }
+    }
+}
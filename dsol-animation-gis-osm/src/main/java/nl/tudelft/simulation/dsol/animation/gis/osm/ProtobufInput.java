@@ -0,0 +1,213 @@
+package nl.tudelft.simulation.dsol.animation.gis.osm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ProtobufInput decodes the protocol buffer wire format of the messages in an OSM PBF file directly from a byte array. The
+ * fields of a message are read one by one with nextField(), after which the value of the field is read with one of the read
+ * methods, or skipped with skip(). An embedded message or a packed repeated field is read with a new ProtobufInput on the same
+ * byte array, so no objects are created for the individual values, where the generated protocol buffer classes create a Long
+ * for every element of a packed repeated field.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class ProtobufInput
+{
+    /** the wire type of a varint. */
+    public static final int VARINT = 0;
+
+    /** the wire type of a 64-bit value. */
+    public static final int FIXED64 = 1;
+
+    /** the wire type of a length-delimited value: a string, bytes, an embedded message, or a packed repeated field. */
+    public static final int LENGTH_DELIMITED = 2;
+
+    /** the wire type of a 32-bit value. */
+    public static final int FIXED32 = 5;
+
+    /** the bytes to decode. */
+    private final byte[] bytes;
+
+    /** the position of the next byte to decode. */
+    private int position;
+
+    /** the position after the last byte of the message. */
+    private final int limit;
+
+    /** the wire type of the current field. */
+    private int wireType;
+
+    /**
+     * Create a decoder for a message in a part of a byte array.
+     * @param bytes byte[]; the bytes to decode
+     * @param offset int; the position of the first byte of the message
+     * @param length int; the number of bytes of the message
+     */
+    public ProtobufInput(final byte[] bytes, final int offset, final int length)
+    {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Return whether there are more bytes to decode.
+     * @return boolean; whether there are more bytes to decode
+     */
+    public boolean hasMore()
+    {
+        return this.position < this.limit;
+    }
+
+    /**
+     * Read the key of the next field, and return its field number.
+     * @return int; the field number of the next field, or -1 when there are no more fields
+     * @throws IOException when the message is not valid
+     */
+    public int nextField() throws IOException
+    {
+        if (this.position >= this.limit)
+        {
+            return -1;
+        }
+        long key = readVarint();
+        this.wireType = (int) (key & 0x07);
+        return (int) (key >>> 3);
+    }
+
+    /**
+     * Return the wire type of the current field.
+     * @return int; the wire type of the current field
+     */
+    public int getWireType()
+    {
+        return this.wireType;
+    }
+
+    /**
+     * Read a varint, which is used for the int32, int64, uint32, uint64, and bool types.
+     * @return long; the value of the varint
+     * @throws IOException when the varint is not valid
+     */
+    public long readVarint() throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            if (this.position >= this.limit)
+            {
+                throw new IOException("truncated varint in protocol buffer message");
+            }
+            byte b = this.bytes[this.position++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException("malformed varint in protocol buffer message");
+    }
+
+    /**
+     * Read a zigzag-encoded varint, which is used for the sint32 and sint64 types.
+     * @return long; the value of the signed varint
+     * @throws IOException when the varint is not valid
+     */
+    public long readSignedVarint() throws IOException
+    {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read a length-delimited value as a new decoder, e.g., for an embedded message or a packed repeated field, and skip the
+     * value in this decoder.
+     * @return ProtobufInput; a decoder for the bytes of the value
+     * @throws IOException when the length is not valid
+     */
+    public ProtobufInput readMessage() throws IOException
+    {
+        int length = readLength();
+        ProtobufInput result = new ProtobufInput(this.bytes, this.position, length);
+        this.position += length;
+        return result;
+    }
+
+    /**
+     * Read a length-delimited value as a UTF-8 string.
+     * @return String; the string value
+     * @throws IOException when the length is not valid
+     */
+    public String readString() throws IOException
+    {
+        int length = readLength();
+        String result = new String(this.bytes, this.position, length, StandardCharsets.UTF_8);
+        this.position += length;
+        return result;
+    }
+
+    /**
+     * Read a length-delimited value as a copy of its bytes.
+     * @return byte[]; the bytes of the value
+     * @throws IOException when the length is not valid
+     */
+    public byte[] readBytes() throws IOException
+    {
+        int length = readLength();
+        byte[] result = new byte[length];
+        System.arraycopy(this.bytes, this.position, result, 0, length);
+        this.position += length;
+        return result;
+    }
+
+    /**
+     * Read the length of a length-delimited value, and check that the value fits in the message.
+     * @return int; the length of the value
+     * @throws IOException when the current field is not length-delimited, or when the length is not valid
+     */
+    private int readLength() throws IOException
+    {
+        if (this.wireType != LENGTH_DELIMITED)
+        {
+            throw new IOException("wire type " + this.wireType + " where a length-delimited value was expected");
+        }
+        long length = readVarint();
+        if (length < 0 || length > this.limit - this.position)
+        {
+            throw new IOException("invalid length " + length + " in protocol buffer message");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Skip the value of the current field.
+     * @throws IOException when the wire type is not supported, or the value is not valid
+     */
+    public void skip() throws IOException
+    {
+        switch (this.wireType)
+        {
+            case VARINT:
+                readVarint();
+                break;
+            case FIXED64:
+                this.position += 8;
+                break;
+            case LENGTH_DELIMITED:
+                int length = readLength();
+                this.position += length;
+                break;
+            case FIXED32:
+                this.position += 4;
+                break;
+            default:
+                throw new IOException("unsupported wire type " + this.wireType + " in protocol buffer message");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package nl.tudelft.simulation.dsol.animation.gis.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit test for the NodeIndex class, for nodes that are added in order and out of order.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class NodeIndexTest
+{
+    /**
+     * Test adding and finding nodes.
+     */
+    @Test
+    public void testNodeIndex()
+    {
+        Random random = new Random(11L);
+        for (boolean shuffle : new boolean[] {false, true})
+        {
+            int n = 5000;
+            long[] ids = new long[n];
+            for (int i = 0; i < n; i++)
+            {
+                ids[i] = 1000L * i + 8_000_000_000L;
+            }
+            if (shuffle)
+            {
+                for (int i = n - 1; i > 0; i--)
+                {
+                    int j = random.nextInt(i + 1);
+                    long id = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = id;
+                }
+            }
+            NodeIndex index = new NodeIndex();
+            for (long id : ids)
+            {
+                index.add(id, 4.0 + id * 1.0E-13, 52.0 - id * 1.0E-13);
+            }
+            assertEquals(n, index.size());
+            for (long id : ids)
+            {
+                int position = index.find(id);
+                assertTrue(position >= 0);
+                assertEquals(4.0 + id * 1.0E-13, index.getLongitude(position), 1.0E-7);
+                assertEquals(52.0 - id * 1.0E-13, index.getLatitude(position), 1.0E-7);
+            }
+            assertEquals(-1, index.find(12L));
+            assertEquals(-1, index.find(8_000_000_001L));
+            assertTrue(index.toString().startsWith("NodeIndex"));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package nl.tudelft.simulation.dsol.animation.gis.osm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.djutils.exceptions.Try;
+import org.djutils.io.URLResource;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
+import nl.tudelft.simulation.dsol.animation.gis.GeometryStore;
+import nl.tudelft.simulation.dsol.animation.gis.map.Feature;
+import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
+
+/**
+ * ParallelPbfReaderTest checks that the parallel pbf reader reads the same ways as the OsmLayerSink reads from the xml version
+ * of the same map, for different numbers of threads, with the node index on the heap and in a temporary file, and with the
+ * node index in one or in many segments.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class ParallelPbfReaderTest
+{
+    /**
+     * Compare the ways from the pbf file with the ways from the osm.gz file.
+     * @throws IOException on error
+     */
+    @Test
+    public void testParallelPbfReader() throws IOException
+    {
+        URL gzUrl = URLResource.getResource("/resources/osm/tudelft.osm.gz");
+        URL pbfUrl = URLResource.getResource("/resources/osm/tudelft.osm.pbf");
+        List<FeatureInterface> expected = features();
+        new OsmFileReader(gzUrl, new CoordinateTransform.NoTransform(), expected).populateShapes();
+        assertTrue(expected.get(expected.size() - 1).getGeometry().getNumShapes() > 0);
+
+        for (int threads : new int[] {1, 4})
+        {
+            for (long spillThreshold : new long[] {ParallelPbfReader.DEFAULT_SPILL_THRESHOLD, 0L})
+            {
+                // the small map has a few thousand nodes, so segments of 64 nodes test the segmentation of the index
+                for (int nodesPerSegment : new int[] {1 << 26, 64})
+                {
+                    List<FeatureInterface> features = features();
+                    ParallelPbfReader reader =
+                            new ParallelPbfReader(pbfUrl, new CoordinateTransform.NoTransform(), features, threads);
+                    reader.setSpillThreshold(spillThreshold);
+                    assertEquals(spillThreshold, reader.getSpillThreshold());
+                    reader.setNodesPerSegment(nodesPerSegment);
+                    reader.read();
+                    for (int i = 0; i < features.size(); i++)
+                    {
+                        GeometryStore expectedGeometry = expected.get(i).getGeometry();
+                        GeometryStore geometry = features.get(i).getGeometry();
+                        assertEquals(expectedGeometry.getNumShapes(), geometry.getNumShapes());
+                        assertEquals(expectedGeometry.getNumPoints(), geometry.getNumPoints());
+                        assertArrayEquals(expectedGeometry.getBoxes(), geometry.getBoxes(), 1.0E-5);
+                    }
+                }
+            }
+        }
+
+        Try.testFail(() -> new ParallelPbfReader(pbfUrl, new CoordinateTransform.NoTransform(), features(), 0),
+                IllegalArgumentException.class);
+        ParallelPbfReader reader = new ParallelPbfReader(pbfUrl, new CoordinateTransform.NoTransform(), features(), 1);
+        Try.testFail(() -> reader.setNodesPerSegment(0), IllegalArgumentException.class);
+        Try.testFail(() -> reader.setNodesPerSegment(100), IllegalArgumentException.class);
+        Try.testFail(() -> reader.setNodesPerSegment(1 << 27), IllegalArgumentException.class);
+        Try.testFail(() -> new ParallelPbfReader(gzUrl, new CoordinateTransform.NoTransform(), features(), 2).read(),
+                IOException.class);
+    }
+
+    /**
+     * Return the features of the TU Delft test map.
+     * @return List&lt;FeatureInterface&gt;; the features of the TU Delft test map
+     */
+    private static List<FeatureInterface> features()
+    {
+        List<FeatureInterface> features = new ArrayList<>();
+        for (String[] keyValue : new String[][] {{"natural", "water"}, {"landuse", "grass"}, {"highway", "cycleway"},
+                {"highway", "*"}, {"railway", "*"}, {"building", "university"}, {"building", "*"}})
+        {
+            Feature feature = new Feature();
+            feature.setKey(keyValue[0]);
+            feature.setValue(keyValue[1]);
+            features.add(feature);
+        }
+        return features;
+    }
+}
@@ -0,0 +1,354 @@
+package nl.tudelft.simulation.dsol.animation.gis;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.exceptions.Throw;
+
+/**
+ * SpatialIndex is a tree of bounding boxes to find the shapes of a GIS layer that overlap with an extent, without checking
+ * every shape. The tree is stored in a buffer in the node layout of the .qix quadtree files of shapelib and MapServer, so an
+ * existing .qix file of a shape file can be queried directly from a mapped buffer, and a tree that is built for a shape file
+ * can be written as a .qix file to be used the next time. A tree that is built by this class is an R-tree that is packed with
+ * the Sort-Tile-Recursive algorithm, where every node has at most NODE_CAPACITY children or shapes. The nodes of such a tree
+ * can overlap, which the .qix layout allows, since every node stores its own bounds.
+ * <p>
+ * The .qix layout is a 16 byte header, followed by the nodes in depth-first order:
+ * </p>
+ *
+ * <pre>
+ *   Header
+ *   {
+ *     Byte[3] Signature       // byte  0; "SQT"
+ *     Byte ByteOrder          // byte  3; 1 for little endian, 2 for big endian
+ *     Byte Version            // byte  4; 1
+ *     Byte[3] Reserved        // byte  5; 0
+ *     Integer NumShapes       // byte  8; number of shapes in the shape file
+ *     Integer MaxDepth        // byte 12; depth of the tree
+ *   }
+ *   Node
+ *   {
+ *     Integer Offset          // byte  0; number of bytes of the subnodes, to skip them
+ *     Double[4] Box           // byte  4; bounds of the node {Xmin, Ymin, Xmax, Ymax}
+ *     Integer NumShapes       // byte 36; number of shapes in this node
+ *     Integer[NumShapes] Ids  // byte 40; 0-based shape numbers
+ *     Integer NumSubNodes     // number of subnodes, which follow this node
+ *   }
+ * </pre>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class SpatialIndex
+{
+    /** the maximum number of children or shapes of a node in a tree that is built by this class. */
+    public static final int NODE_CAPACITY = 16;
+
+    /** the length of the header. */
+    private static final int HEADER_LENGTH = 16;
+
+    /** the buffer with the header and the nodes. */
+    private final ByteBuffer buffer;
+
+    /**
+     * Build a packed R-tree for shapes with the given bounding boxes. Shapes with a NaN value in their bounding box, such as
+     * null shapes, are not stored in the tree.
+     * @param boxes double[]; the bounding box of each shape, as {minX, minY, maxX, maxY} at index 4 * shape number
+     * @throws NullPointerException when boxes is null
+     * @throws IllegalArgumentException when the length of boxes is not a multiple of 4
+     */
+    public SpatialIndex(final double[] boxes)
+    {
+        Throw.whenNull(boxes, "boxes cannot be null");
+        Throw.when(boxes.length % 4 != 0, IllegalArgumentException.class, "length of boxes should be a multiple of 4");
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < boxes.length / 4; i++)
+        {
+            Node entry = new Node(boxes[4 * i], boxes[4 * i + 1], boxes[4 * i + 2], boxes[4 * i + 3]);
+            if (!Double.isNaN(entry.minX + entry.minY + entry.maxX + entry.maxY))
+            {
+                entry.ids = new int[] {i};
+                nodes.add(entry);
+            }
+        }
+        int depth = 1;
+        nodes = pack(nodes, true);
+        while (nodes.size() > 1)
+        {
+            nodes = pack(nodes, false);
+            depth++;
+        }
+        Node root = nodes.isEmpty() ? new Node(0.0, 0.0, 0.0, 0.0) : nodes.get(0);
+        this.buffer = ByteBuffer.allocate(HEADER_LENGTH + root.size()).order(ByteOrder.LITTLE_ENDIAN);
+        this.buffer.put(new byte[] {'S', 'Q', 'T', 1, 1, 0, 0, 0});
+        this.buffer.putInt(boxes.length / 4);
+        this.buffer.putInt(depth);
+        root.write(this.buffer);
+        this.buffer.flip();
+    }
+
+    /**
+     * Create a spatial index for a buffer in the .qix layout, e.g., a mapped .qix file.
+     * @param buffer ByteBuffer; the buffer in the .qix layout, of which the byte order is set from the header
+     */
+    private SpatialIndex(final ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Return a spatial index for a buffer in the .qix layout, such as a mapped .qix file. The buffer is used directly for the
+     * queries, and should not be changed.
+     * @param qix ByteBuffer; the buffer in the .qix layout
+     * @return SpatialIndex; the spatial index that uses the buffer
+     * @throws IOException when the buffer does not have a .qix header
+     */
+    public static SpatialIndex read(final ByteBuffer qix) throws IOException
+    {
+        if (qix.limit() < HEADER_LENGTH + 44 || qix.get(0) != 'S' || qix.get(1) != 'Q' || qix.get(2) != 'T')
+        {
+            throw new IOException("buffer does not contain a .qix spatial index");
+        }
+        // byte order 0 is the native order of old files, which is little endian on almost all machines
+        ByteBuffer buffer = qix.duplicate().order(qix.get(3) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        return new SpatialIndex(buffer);
+    }
+
+    /**
+     * Write the spatial index as a .qix file.
+     * @param file File; the file to write
+     * @throws IOException when the file cannot be written
+     */
+    public void write(final File file) throws IOException
+    {
+        try (FileOutputStream output = new FileOutputStream(file))
+        {
+            output.getChannel().write(this.buffer.duplicate());
+        }
+    }
+
+    /**
+     * Return the number of shapes of the shape file for which the index has been made, including the shapes that are not in the
+     * tree, such as null shapes.
+     * @return int; the number of shapes of the shape file for which the index has been made
+     */
+    public int getNumShapes()
+    {
+        return this.buffer.getInt(8);
+    }
+
+    /**
+     * Return the shape numbers of the shapes of which the node in the tree overlaps with the extent. The caller has to check
+     * the bounds of the shapes themselves, since a node in a quadtree can contain shapes that do not overlap with an extent
+     * that overlaps with the node.
+     * @param extent Bounds2d; the extent
+     * @return int[]; the shape numbers in ascending order
+     */
+    public int[] query(final Bounds2d extent)
+    {
+        return query(extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent.getMaxY());
+    }
+
+    /**
+     * Return the shape numbers of the shapes of which the node in the tree overlaps with the rectangle. The caller has to check
+     * the bounds of the shapes themselves, since a node in a quadtree can contain shapes that do not overlap with a rectangle
+     * that overlaps with the node.
+     * @param minX double; the minimum x-coordinate of the rectangle
+     * @param minY double; the minimum y-coordinate of the rectangle
+     * @param maxX double; the maximum x-coordinate of the rectangle
+     * @param maxY double; the maximum y-coordinate of the rectangle
+     * @return int[]; the shape numbers in ascending order
+     */
+    public int[] query(final double minX, final double minY, final double maxX, final double maxY)
+    {
+        int[] result = new int[16];
+        int count = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = HEADER_LENGTH;
+        while (top > 0)
+        {
+            int node = stack[--top];
+            if (this.buffer.getDouble(node + 4) > maxX || this.buffer.getDouble(node + 12) > maxY
+                    || this.buffer.getDouble(node + 20) < minX || this.buffer.getDouble(node + 28) < minY)
+            {
+                continue;
+            }
+            int numShapes = this.buffer.getInt(node + 36);
+            if (count + numShapes > result.length)
+            {
+                result = Arrays.copyOf(result, Math.max(2 * result.length, count + numShapes));
+            }
+            for (int i = 0; i < numShapes; i++)
+            {
+                result[count++] = this.buffer.getInt(node + 40 + 4 * i);
+            }
+            int numSubNodes = this.buffer.getInt(node + 40 + 4 * numShapes);
+            if (top + numSubNodes > stack.length)
+            {
+                stack = Arrays.copyOf(stack, Math.max(2 * stack.length, top + numSubNodes));
+            }
+            int child = node + 44 + 4 * numShapes;
+            for (int i = 0; i < numSubNodes; i++)
+            {
+                stack[top++] = child;
+                int childShapes = this.buffer.getInt(child + 36);
+                child += 44 + 4 * childShapes + this.buffer.getInt(child);
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Group the nodes of one level of the tree into the nodes of the next level with the Sort-Tile-Recursive algorithm: the
+     * nodes are sorted on the x-coordinate of their center and cut into vertical slices, and each slice is sorted on the
+     * y-coordinate of the center and cut into groups of NODE_CAPACITY nodes.
+     * @param nodes List&lt;Node&gt;; the nodes of one level
+     * @param leaves boolean; whether the nodes are the entries of the shapes, which are merged into leaf nodes
+     * @return List&lt;Node&gt;; the nodes of the next level
+     */
+    private static List<Node> pack(final List<Node> nodes, final boolean leaves)
+    {
+        int numGroups = (nodes.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int numSlices = (int) Math.ceil(Math.sqrt(numGroups));
+        int sliceSize = numSlices == 0 ? 0 : ((numGroups + numSlices - 1) / numSlices) * NODE_CAPACITY;
+        nodes.sort(Comparator.comparingDouble((Node n) -> n.minX + n.maxX));
+        List<Node> result = new ArrayList<>(numGroups);
+        for (int s = 0; s < nodes.size(); s += sliceSize)
+        {
+            List<Node> slice = nodes.subList(s, Math.min(s + sliceSize, nodes.size()));
+            slice.sort(Comparator.comparingDouble((Node n) -> n.minY + n.maxY));
+            for (int g = 0; g < slice.size(); g += NODE_CAPACITY)
+            {
+                List<Node> group = slice.subList(g, Math.min(g + NODE_CAPACITY, slice.size()));
+                Node parent = new Node(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                        Double.NEGATIVE_INFINITY);
+                for (Node node : group)
+                {
+                    parent.minX = Math.min(parent.minX, node.minX);
+                    parent.minY = Math.min(parent.minY, node.minY);
+                    parent.maxX = Math.max(parent.maxX, node.maxX);
+                    parent.maxY = Math.max(parent.maxY, node.maxY);
+                }
+                if (leaves)
+                {
+                    parent.ids = new int[group.size()];
+                    for (int i = 0; i < group.size(); i++)
+                    {
+                        parent.ids[i] = group.get(i).ids[0];
+                    }
+                }
+                else
+                {
+                    parent.children = new ArrayList<>(group);
+                }
+                result.add(parent);
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "SpatialIndex [numShapes=" + getNumShapes() + ", depth=" + this.buffer.getInt(12) + "]";
+    }
+
+    /** A node of the tree while it is built. */
+    private static class Node
+    {
+        /** the shape numbers of a node without shapes. */
+        private static final int[] NO_IDS = new int[0];
+
+        /** the minimum x-coordinate of the bounds. */
+        private double minX;
+
+        /** the minimum y-coordinate of the bounds. */
+        private double minY;
+
+        /** the maximum x-coordinate of the bounds. */
+        private double maxX;
+
+        /** the maximum y-coordinate of the bounds. */
+        private double maxY;
+
+        /** the shape numbers of a leaf node. */
+        private int[] ids = NO_IDS;
+
+        /** the children of an inner node. */
+        private List<Node> children = Collections.emptyList();
+
+        /** the number of bytes of the node and its subnodes, or -1 when not yet computed. */
+        private int size = -1;
+
+        /**
+         * @param minX double; the minimum x-coordinate of the bounds
+         * @param minY double; the minimum y-coordinate of the bounds
+         * @param maxX double; the maximum x-coordinate of the bounds
+         * @param maxY double; the maximum y-coordinate of the bounds
+         */
+        Node(final double minX, final double minY, final double maxX, final double maxY)
+        {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+        }
+
+        /**
+         * Return the number of bytes of the node and its subnodes in the .qix layout.
+         * @return int; the number of bytes of the node and its subnodes
+         */
+        int size()
+        {
+            if (this.size < 0)
+            {
+                this.size = 44 + 4 * this.ids.length;
+                for (Node child : this.children)
+                {
+                    this.size += child.size();
+                }
+            }
+            return this.size;
+        }
+
+        /**
+         * Write the node and its subnodes in the .qix layout.
+         * @param buffer ByteBuffer; the buffer to write to
+         */
+        void write(final ByteBuffer buffer)
+        {
+            buffer.putInt(size() - 44 - 4 * this.ids.length);
+            buffer.putDouble(this.minX);
+            buffer.putDouble(this.minY);
+            buffer.putDouble(this.maxX);
+            buffer.putDouble(this.maxY);
+            buffer.putInt(this.ids.length);
+            for (int id : this.ids)
+            {
+                buffer.putInt(id);
+            }
+            buffer.putInt(this.children.size());
+            for (Node child : this.children)
+            {
+                child.write(buffer);
+            }
+        }
+    }
+}
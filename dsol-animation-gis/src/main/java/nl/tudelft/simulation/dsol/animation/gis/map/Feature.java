@@ -3,16 +3,19 @@ package nl.tudelft.simulation.dsol.animation.gis.map;
 import java.awt.Color;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.djutils.draw.bounds.Bounds2d;
 import org.djutils.logger.CategoryLogger;
 
 import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
+import nl.tudelft.simulation.dsol.animation.gis.GeometryStore;
 import nl.tudelft.simulation.dsol.animation.gis.GisObject;
 import nl.tudelft.simulation.dsol.animation.gis.SerializablePath;
-import nl.tudelft.simulation.language.d2.Shape;
+import nl.tudelft.simulation.dsol.animation.gis.SpatialIndex;
 
 /**
  * Feature contains an element of a layer, defined by a key value combination, with its own colors.<br>
@@ -43,7 +46,31 @@ public class Feature implements FeatureInterface
 //    private DataSourceInterface dataSource;
 
     /** the list of shapes that have been retrieved for this feature. */
-    private List<GisObject> shapes = new ArrayList<>();
+    private ShapeList shapes = new ShapeList();
+
+    /** the shapes in the spatial index, which is built when the shapes are queried for an extent after they have changed. */
+    private transient GisObject[] indexedShapes = null;
+
+    /** the bounding boxes of the indexed shapes, as {minX, minY, maxX, maxY} at index 4 * shape number. */
+    private transient double[] indexedBoxes = null;
+
+    /** the spatial index of the indexed shapes. */
+    private transient SpatialIndex spatialIndex = null;
+
+    /** the modification count of the list of shapes when the spatial index was built. */
+    private transient int indexedModCount = -1;
+
+    /** the compact store for the shapes that are not stored as a GisObject. */
+    private GeometryStore geometry = new GeometryStore();
+
+    /** the bounding boxes of the shapes in the geometry store, as {minX, minY, maxX, maxY} at index 4 * shape number. */
+    private transient double[] geometryBoxes = null;
+
+    /** the spatial index of the shapes in the geometry store. */
+    private transient SpatialIndex geometryIndex = null;
+
+    /** the modification count of the geometry store when its spatial index was built. */
+    private transient int geometryModCount = -1;
 
     /** the fillColor of the layer, by default no fill. */
     private Color fillColor = null;
@@ -100,51 +127,127 @@ public class Feature implements FeatureInterface
     @Override
     public int getNumShapes()
     {
-        return this.shapes.size();
+        return this.shapes.size() + this.geometry.getNumShapes();
     }
 
     /** {@inheritDoc} */
     @Override
     public GisObject getShape(final int index) throws IndexOutOfBoundsException
     {
-        return this.shapes.get(index);
+        if (index >= 0 && index < this.shapes.size())
+        {
+            return this.shapes.get(index);
+        }
+        int shape = index - this.shapes.size();
+        SerializablePath path = new SerializablePath();
+        this.geometry.appendTo(shape, path);
+        return new GisObject(path, this.geometry.getAttributeValues(shape));
     }
 
     /** {@inheritDoc} */
     @Override
     public List<GisObject> getShapes()
     {
-        return this.shapes;
+        return new ShapeView();
     }
 
     /** {@inheritDoc} */
     @Override
     public List<GisObject> getShapes(final Bounds2d rectangle)
     {
+        GisObject[] shapeArray;
+        double[] boxes;
+        SpatialIndex index;
+        synchronized (this)
+        {
+            if (this.spatialIndex == null || this.indexedModCount != this.shapes.getModCount())
+            {
+                buildSpatialIndex();
+            }
+            shapeArray = this.indexedShapes;
+            boxes = this.indexedBoxes;
+            index = this.spatialIndex;
+        }
         List<GisObject> result = new ArrayList<>();
-        Rectangle2D rectangle2D = rectangle.toRectangle2D();
-        for (GisObject shape : this.shapes)
+        for (int i : index.query(rectangle))
+        {
+            if (boxes[4 * i] <= rectangle.getMaxX() && boxes[4 * i + 1] <= rectangle.getMaxY()
+                    && boxes[4 * i + 2] >= rectangle.getMinX() && boxes[4 * i + 3] >= rectangle.getMinY())
+            {
+                result.add(shapeArray[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Build the spatial index for the current list of shapes, so drawing the feature for an extent only has to look at the
+     * shapes in and near the extent.
+     */
+    private void buildSpatialIndex()
+    {
+        this.indexedModCount = this.shapes.getModCount();
+        this.indexedShapes = this.shapes.toArray(new GisObject[this.shapes.size()]);
+        this.indexedBoxes = new double[4 * this.indexedShapes.length];
+        for (int i = 0; i < this.indexedShapes.length; i++)
         {
-            if (shape.getShape() instanceof SerializablePath)
+            Object shape = this.indexedShapes[i].getShape();
+            Rectangle2D bounds = null;
+            if (shape instanceof SerializablePath)
             {
-                if (Shape.overlaps(rectangle2D, ((SerializablePath) shape.getShape()).getBounds2D()))
-                {
-                    result.add(shape);
-                }
+                bounds = ((SerializablePath) shape).getBounds2D();
             }
-            else if (shape.getShape() instanceof Point2D)
+            else if (shape instanceof Point2D)
             {
-                if (rectangle2D.contains((Point2D) shape.getShape()))
-                {
-                    result.add(shape);
-                }
+                bounds = new Rectangle2D.Double(((Point2D) shape).getX(), ((Point2D) shape).getY(), 0.0, 0.0);
             }
             else
             {
-                CategoryLogger.always().error("unknown shape in cached content " + shape);
+                CategoryLogger.always().error("unknown shape in cached content " + this.indexedShapes[i]);
             }
+            this.indexedBoxes[4 * i] = bounds == null ? Double.NaN : bounds.getMinX();
+            this.indexedBoxes[4 * i + 1] = bounds == null ? Double.NaN : bounds.getMinY();
+            this.indexedBoxes[4 * i + 2] = bounds == null ? Double.NaN : bounds.getMaxX();
+            this.indexedBoxes[4 * i + 3] = bounds == null ? Double.NaN : bounds.getMaxY();
         }
-        return result;
+        this.spatialIndex = new SpatialIndex(this.indexedBoxes);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public GeometryStore getGeometry()
+    {
+        return this.geometry;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] getGeometryShapes(final Bounds2d rectangle)
+    {
+        double[] boxes;
+        SpatialIndex index;
+        synchronized (this)
+        {
+            if (this.geometryIndex == null || this.geometryModCount != this.geometry.getModCount())
+            {
+                this.geometryModCount = this.geometry.getModCount();
+                this.geometryBoxes = this.geometry.getBoxes();
+                this.geometryIndex = new SpatialIndex(this.geometryBoxes);
+            }
+            boxes = this.geometryBoxes;
+            index = this.geometryIndex;
+        }
+        int[] candidates = index.query(rectangle);
+        int n = 0;
+        for (int i : candidates)
+        {
+            if (boxes[4 * i] <= rectangle.getMaxX() && boxes[4 * i + 1] <= rectangle.getMaxY()
+                    && boxes[4 * i + 2] >= rectangle.getMinX() && boxes[4 * i + 3] >= rectangle.getMinY())
+            {
+                candidates[n++] = i;
+            }
+        }
+        return Arrays.copyOf(candidates, n);
     }
 
 //    /** {@inheritDoc} */
@@ -189,4 +292,106 @@ public class Feature implements FeatureInterface
         this.outlineColor = outlineColor;
     }
 
+    /**
+     * Live view of all shapes of the feature: the shapes that are stored as a GisObject, followed by the shapes in the geometry
+     * store, for which a new GisObject is created when they are retrieved. Shapes are added to the list of GisObjects, and
+     * clear() also clears the geometry store. The shapes in the geometry store cannot be replaced or removed one by one.
+     */
+    private class ShapeView extends AbstractList<GisObject>
+    {
+        /** {@inheritDoc} */
+        @Override
+        public GisObject get(final int index)
+        {
+            if (index < 0 || index >= size())
+            {
+                throw new IndexOutOfBoundsException("index " + index + ", while number of shapes: " + size());
+            }
+            return getShape(index);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size()
+        {
+            return getNumShapes();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public GisObject set(final int index, final GisObject shape)
+        {
+            checkListIndex(index, Feature.this.shapes.size() - 1);
+            return Feature.this.shapes.set(index, shape);
+        }
+
+        /**
+         * {@inheritDoc} The shape is added to the list of GisObjects, so add(shape) places it before the shapes in the geometry
+         * store.
+         */
+        @Override
+        public void add(final int index, final GisObject shape)
+        {
+            if (index == size())
+            {
+                Feature.this.shapes.add(shape);
+            }
+            else
+            {
+                checkListIndex(index, Feature.this.shapes.size());
+                Feature.this.shapes.add(index, shape);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public GisObject remove(final int index)
+        {
+            checkListIndex(index, Feature.this.shapes.size() - 1);
+            return Feature.this.shapes.remove(index);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clear()
+        {
+            Feature.this.shapes.clear();
+            Feature.this.geometry.clear();
+        }
+
+        /**
+         * Check that an index refers to the list of GisObjects, and not to the geometry store.
+         * @param index int; the index to check
+         * @param max int; the highest index that is allowed in the list of GisObjects
+         * @throws IndexOutOfBoundsException when index &lt; 0 or index is beyond the shapes in the geometry store
+         * @throws UnsupportedOperationException when the index refers to a shape in the geometry store
+         */
+        private void checkListIndex(final int index, final int max)
+        {
+            if (index < 0 || index > max + Feature.this.geometry.getNumShapes())
+            {
+                throw new IndexOutOfBoundsException("index " + index + ", while number of shapes: " + size());
+            }
+            if (index > max)
+            {
+                throw new UnsupportedOperationException("shapes in the geometry store cannot be changed one by one");
+            }
+        }
+    }
+
+    /** List of shapes that exposes its modification count, so the spatial index can be rebuilt when the list changes. */
+    private static class ShapeList extends ArrayList<GisObject>
+    {
+        /** */
+        private static final long serialVersionUID = 20220101L;
+
+        /**
+         * Return the number of structural modifications of the list.
+         * @return int; the number of structural modifications of the list
+         */
+        int getModCount()
+        {
+            return this.modCount;
+        }
+    }
 }
@@ -1,13 +1,13 @@
 package nl.tudelft.simulation.dsol.animation.gis.map;
 
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -176,7 +176,6 @@ public class GisMap implements GisMapInterface
 
     /** {@inheritDoc} */
     @Override
-    @SuppressWarnings("checkstyle:methodlength")
     public Graphics2D drawMap(final Graphics2D graphics) throws DSOLGisException
     {
         if (this.drawBackground)
@@ -186,59 +185,41 @@ public class GisMap implements GisMapInterface
             graphics.fillRect(0, 0, (int) this.getImage().getSize().getWidth(), (int) this.getImage().getSize().getHeight());
         }
 
-        // We compute the transform of the map
-        AffineTransform transform = new AffineTransform();
-        transform.scale(this.getImage().getSize().getWidth() / this.extent.getDeltaX(),
-                -this.getImage().getSize().getHeight() / this.extent.getDeltaY());
-        transform.translate(-this.extent.getMinX(), -this.extent.getMinY() - this.extent.getDeltaY());
-        AffineTransform antiTransform = null;
-        try
-        {
-            antiTransform = transform.createInverse();
-        }
-        catch (NoninvertibleTransformException e)
-        {
-            CategoryLogger.always().error(e);
-        }
-
-        // we cache the scale
-        double scale = this.getScale();
-        // XXX: define how we use this -- System.out.println("scale = " + scale);
-
         // we set the rendering hints
         graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 
-        // We loop over the layers
-        for (Iterator<LayerInterface> i = this.visibleLayers.iterator(); i.hasNext();)
+        // We draw the static layers, and the dynamic layers on top
+        drawLayers(graphics, this.extent, this.getImage().getSize(), false);
+        drawLayers(graphics, this.extent, this.getImage().getSize(), true);
+        return graphics;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawLayers(final Graphics2D graphics, final Bounds2d mapExtent, final Dimension size, final boolean dynamic)
+            throws DSOLGisException
+    {
+        // We compute the transform of the map
+        AffineTransform transform = new AffineTransform();
+        transform.scale(size.getWidth() / mapExtent.getDeltaX(), -size.getHeight() / mapExtent.getDeltaY());
+        transform.translate(-mapExtent.getMinX(), -mapExtent.getMinY() - mapExtent.getDeltaY());
+
+        // We loop over a copy of the layers, since the visible layers can change while a tile is drawn
+        for (LayerInterface layer : new ArrayList<>(this.visibleLayers))
         {
-            Layer layer = (Layer) i.next();
             try
             {
-                if (layer.isDisplay()) // TODO: && layer.getMaxScale() < scale && layer.getMinScale() > scale)
+                if (layer.isDisplay() && layer.isDynamic() == dynamic) // TODO: && min scale < scale < max scale
                 {
                     for (FeatureInterface feature : layer.getFeatures())
                     {
-                        List<GisObject> shapes = feature.getShapes(this.extent);
-                        SerializablePath shape = null;
-                        for (Iterator<GisObject> shapeIterator = shapes.iterator(); shapeIterator.hasNext();)
+                        for (GisObject gisObject : feature.getShapes(mapExtent))
                         {
-                            GisObject gisObject = shapeIterator.next();
-//                            if (feature.getDataSource().getType() == POINT)
-//                            {
-//                                shape = new SerializablePath();
-//                                Point2D point = (Point2D) gisObject.getShape();
-//                                shape.moveTo((float) point.getX(), (float) point.getY());
-//                                // TODO: points are not drawn -- we have to do this differently
-//                            }
-//                            else
-//                            {
-                                shape = (SerializablePath) gisObject.getShape();
-//                            }
-                            if (layer.isTransform())
-                            {
-                                shape.transform(transform);
-                            }
-                            if (/*feature.getDataSource().getType() == POLYGON &&*/ feature.getFillColor() != null)
+                            // TODO: points are not drawn -- we have to do this differently
+                            SerializablePath path = (SerializablePath) gisObject.getShape();
+                            // the shapes are shared between threads, so they are not transformed in place
+                            Shape shape = layer.isTransform() ? transform.createTransformedShape(path) : path;
+                            if (feature.getFillColor() != null)
                             {
                                 graphics.setColor(feature.getFillColor());
                                 graphics.fill(shape);
@@ -248,11 +229,10 @@ public class GisMap implements GisMapInterface
                                 graphics.setColor(feature.getOutlineColor());
                                 graphics.draw(shape);
                             }
-                            if (layer.isTransform())
-                            {
-                                shape.transform(antiTransform);
-                            }
                         }
+                        // the shapes in the geometry store are drawn directly from its arrays
+                        feature.getGeometry().draw(graphics, feature.getGeometryShapes(mapExtent),
+                                layer.isTransform() ? transform : null, feature.getFillColor(), feature.getOutlineColor());
                     }
                 }
             }
@@ -262,7 +242,6 @@ public class GisMap implements GisMapInterface
                 throw new DSOLGisException(exception.getMessage());
             }
         }
-        return graphics;
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,510 @@
+package nl.tudelft.simulation.dsol.animation.gis.map;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
+
+import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
+import nl.tudelft.simulation.dsol.animation.gis.GisMapInterface;
+import nl.tudelft.simulation.dsol.animation.gis.LayerInterface;
+import nl.tudelft.simulation.dsol.animation.gis.MapImageInterface;
+import nl.tudelft.simulation.dsol.animation.gis.MapUnits;
+import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
+
+/**
+ * GisMapCache stores a map that has been read from its source files, such as shape files or an OpenStreetMap file, in one
+ * binary file, so the next time the map can be read from that file instead of parsing the source files and transforming all
+ * coordinates again. The file contains the styling of the map, its layers and features, and the geometry of each feature as
+ * the arrays of its GeometryStore, which are read back from the file mapped into memory with one bulk copy per array.
+ * <p>
+ * The cache is only used when it is still valid: the file has the current format version, it was made with a coordinate
+ * transform that gives the same result for a few probe points, and none of the source files has changed. For every source
+ * file, the cache stores its URL, last modification time, length, and CRC32 checksum. A source file with the same time and
+ * length is seen as unchanged without reading it; a source file with another time, e.g., after a checkout, is checksummed to
+ * see whether its contents have changed. The layout of the file, where all values are big-endian, is:
+ * </p>
+ *
+ * <pre>
+ *   Header
+ *   {
+ *     Integer Magic           // 0x44534D43, "DSMC"
+ *     Integer Version         // VERSION
+ *     Double[6] Probe         // transformed probe points (x, y)
+ *     Integer NumSources
+ *     Source[NumSources]      // String Url, Long LastModified, Long Length, Long Crc32
+ *   }
+ *   Map
+ *   {
+ *     String Name
+ *     String Units            // name of the MapUnits value
+ *     Byte HasExtent          // 1 when followed by the extent, 0 otherwise
+ *     Double[4] Extent        // minX, minY, maxX, maxY
+ *     Integer BackgroundColor // ARGB value
+ *     Integer[2] ImageSize    // width, height
+ *     Integer NumLayers
+ *     Layer[NumLayers]        // String Name, Byte Display, Byte Transform, Byte Dynamic, Integer NumFeatures, Feature[]
+ *   }
+ *   Feature
+ *   {
+ *     String Key
+ *     String Value
+ *     Color FillColor         // Byte 1 followed by the Integer ARGB value, or Byte 0 for no color
+ *     Color OutlineColor      // Byte 1 followed by the Integer ARGB value, or Byte 0 for no color
+ *     GeometryStore Geometry  // as written by GeometryStore.writeTo()
+ *   }
+ * </pre>
+ * <p>
+ * A String is stored as the number of its UTF-8 bytes, followed by the bytes, or as -1 for null. Only the shapes in the
+ * GeometryStore of a feature are cached, which is where the shape file and OpenStreetMap readers store the shapes they read.
+ * </p>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class GisMapCache
+{
+    /** the first int of a cache file, "DSMC". */
+    public static final int MAGIC = 0x44534D43;
+
+    /** the version of the cache file format; a cache file with another version is not used. */
+    public static final int VERSION = 1;
+
+    /** the probe points (x, y) to compare the coordinate transform of the cache with the current transform. */
+    private static final double[] PROBE = {0.0, 0.0, 4.37, 52.0, 85000.0, 445000.0};
+
+    /** the cache file. */
+    private final File cacheFile;
+
+    /**
+     * Create a cache for a map in a file. The file does not have to exist yet.
+     * @param cacheFile File; the cache file
+     * @throws NullPointerException when cacheFile is null
+     */
+    public GisMapCache(final File cacheFile)
+    {
+        Throw.whenNull(cacheFile, "cacheFile cannot be null");
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Return the cache file.
+     * @return File; the cache file
+     */
+    public File getCacheFile()
+    {
+        return this.cacheFile;
+    }
+
+    /**
+     * Read the map from the cache file, when the cache file exists and is still valid for the coordinate transform and the
+     * source files. The definition files of the map, e.g., the csv or xml file with the layers, and an OpenStreetMap file that
+     * is given separately, should be passed, so a cache file that was made for another map is not used.
+     * @param coordinateTransform CoordinateTransform; the transformation that would be applied to the source coordinates
+     * @param definitionUrls URL...; the URLs of the files that define the map, which should all be sources of the cache
+     * @return GisMapInterface; the map from the cache, or null when there is no valid cache file
+     */
+    public GisMapInterface read(final CoordinateTransform coordinateTransform, final URL... definitionUrls)
+    {
+        if (!this.cacheFile.isFile())
+        {
+            return null;
+        }
+        try
+        {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(this.cacheFile.toPath(), StandardOpenOption.READ))
+            {
+                // the mapping stays valid after the channel has been closed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            {
+                return null;
+            }
+            double[] probe = probe(coordinateTransform);
+            for (int i = 0; i < probe.length; i++)
+            {
+                if (Double.compare(buffer.getDouble(), probe[i]) != 0)
+                {
+                    return null;
+                }
+            }
+            int numSources = buffer.getInt();
+            Set<String> sources = new HashSet<>();
+            for (int i = 0; i < numSources; i++)
+            {
+                URL url = new URL(readString(buffer));
+                sources.add(url.toString());
+                if (!isUnchanged(url, buffer.getLong(), buffer.getLong(), buffer.getLong()))
+                {
+                    return null;
+                }
+            }
+            for (URL url : definitionUrls)
+            {
+                if (!sources.contains(url.toString()))
+                {
+                    return null;
+                }
+            }
+            return readMap(buffer);
+        }
+        catch (IOException | BufferUnderflowException | IllegalArgumentException exception)
+        {
+            CategoryLogger.always().warn("could not read map cache file {}: {}", this.cacheFile, exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write a map to the cache file, with the source files from which it has been read. The file is first written under
+     * another name in the same directory, and then renamed, so a cache file is either complete or not there.
+     * @param map GisMapInterface; the map to write
+     * @param coordinateTransform CoordinateTransform; the transformation that has been applied to the source coordinates
+     * @param sources List&lt;URL&gt;; the URLs of all files from which the map has been read, including the definition files
+     * @throws IOException when the cache file or one of the source files cannot be read or written
+     * @throws NullPointerException when map, coordinateTransform, or sources is null
+     */
+    public void write(final GisMapInterface map, final CoordinateTransform coordinateTransform, final List<URL> sources)
+            throws IOException
+    {
+        Throw.whenNull(map, "map cannot be null");
+        Throw.whenNull(coordinateTransform, "coordinateTransform cannot be null");
+        Throw.whenNull(sources, "sources cannot be null");
+        File directory = this.cacheFile.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(this.cacheFile.getName(), ".tmp", directory);
+        try
+        {
+            try (DataOutputStream output =
+                    new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536)))
+            {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                for (double value : probe(coordinateTransform))
+                {
+                    output.writeDouble(value);
+                }
+                output.writeInt(sources.size());
+                for (URL url : sources)
+                {
+                    long[] stat = stat(url);
+                    writeString(output, url.toString());
+                    output.writeLong(stat[0]);
+                    output.writeLong(stat[1]);
+                    output.writeLong(checksum(url));
+                }
+                writeMap(output, map);
+            }
+            try
+            {
+                Files.move(tempFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException exception)
+            {
+                Files.move(tempFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Write the styling, layers, features and geometry of a map.
+     * @param output DataOutputStream; the output to write to
+     * @param map GisMapInterface; the map to write
+     * @throws IOException when writing fails
+     */
+    private static void writeMap(final DataOutputStream output, final GisMapInterface map) throws IOException
+    {
+        writeString(output, map.getName());
+        writeString(output, map.getUnits().name());
+        Bounds2d extent = map.getExtent();
+        output.writeBoolean(extent != null);
+        if (extent != null)
+        {
+            output.writeDouble(extent.getMinX());
+            output.writeDouble(extent.getMinY());
+            output.writeDouble(extent.getMaxX());
+            output.writeDouble(extent.getMaxY());
+        }
+        output.writeInt(map.getImage().getBackgroundColor().getRGB());
+        output.writeInt(map.getImage().getSize().width);
+        output.writeInt(map.getImage().getSize().height);
+        output.writeInt(map.getAllLayers().size());
+        for (LayerInterface layer : map.getAllLayers())
+        {
+            writeString(output, layer.getName());
+            output.writeBoolean(layer.isDisplay());
+            output.writeBoolean(layer.isTransform());
+            output.writeBoolean(layer.isDynamic());
+            output.writeInt(layer.getFeatures().size());
+            for (FeatureInterface feature : layer.getFeatures())
+            {
+                writeString(output, feature.getKey());
+                writeString(output, feature.getValue());
+                writeColor(output, feature.getFillColor());
+                writeColor(output, feature.getOutlineColor());
+                feature.getGeometry().writeTo(output);
+            }
+        }
+    }
+
+    /**
+     * Read the styling, layers, features and geometry of a map.
+     * @param buffer ByteBuffer; the buffer to read from, positioned at the start of the map
+     * @return GisMapInterface; the map
+     * @throws IOException when the contents of the buffer are not valid
+     */
+    private static GisMapInterface readMap(final ByteBuffer buffer) throws IOException
+    {
+        GisMapInterface map = new GisMap();
+        map.setName(readString(buffer));
+        map.setUnits(MapUnits.valueOf(readString(buffer)));
+        if (buffer.get() != 0)
+        {
+            double minX = buffer.getDouble();
+            double minY = buffer.getDouble();
+            double maxX = buffer.getDouble();
+            double maxY = buffer.getDouble();
+            map.setExtent(new Bounds2d(minX, maxX, minY, maxY));
+        }
+        MapImageInterface image = new MapImage();
+        image.setBackgroundColor(new Color(buffer.getInt(), true));
+        int width = buffer.getInt();
+        image.setSize(new Dimension(width, buffer.getInt()));
+        map.setImage(image);
+        int numLayers = buffer.getInt();
+        List<LayerInterface> layers = new ArrayList<>();
+        for (int i = 0; i < numLayers; i++)
+        {
+            LayerInterface layer = new Layer();
+            layer.setName(readString(buffer));
+            layer.setDisplay(buffer.get() != 0);
+            layer.setTransform(buffer.get() != 0);
+            layer.setDynamic(buffer.get() != 0);
+            int numFeatures = buffer.getInt();
+            for (int j = 0; j < numFeatures; j++)
+            {
+                Feature feature = new Feature();
+                feature.setKey(readString(buffer));
+                feature.setValue(readString(buffer));
+                feature.setFillColor(readColor(buffer));
+                feature.setOutlineColor(readColor(buffer));
+                feature.getGeometry().readFrom(buffer);
+                layer.addFeature(feature);
+            }
+            layers.add(layer);
+        }
+        map.setLayers(layers);
+        return map;
+    }
+
+    /**
+     * Return the transformed probe points, to see whether a cache file has been made with the same coordinate transform. A
+     * probe point that the transform cannot transform is stored as NaN values.
+     * @param coordinateTransform CoordinateTransform; the coordinate transform
+     * @return double[]; the transformed probe points
+     */
+    private static double[] probe(final CoordinateTransform coordinateTransform)
+    {
+        double[] result = new double[PROBE.length];
+        for (int i = 0; i < PROBE.length; i += 2)
+        {
+            try
+            {
+                double[] point = coordinateTransform.doubleTransform(PROBE[i], PROBE[i + 1]);
+                result[i] = point[0];
+                result[i + 1] = point[1];
+            }
+            catch (RuntimeException exception)
+            {
+                result[i] = Double.NaN;
+                result[i + 1] = Double.NaN;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return whether a source file is unchanged since the cache file was written. A file with the same modification time and
+     * length is unchanged. Otherwise, or when the modification time is not known, a file with the same length is checksummed.
+     * @param url URL; the URL of the source file
+     * @param lastModified long; the modification time of the source file when the cache file was written
+     * @param length long; the length of the source file when the cache file was written
+     * @param crc long; the CRC32 checksum of the source file when the cache file was written
+     * @return boolean; whether the source file is unchanged
+     */
+    private static boolean isUnchanged(final URL url, final long lastModified, final long length, final long crc)
+    {
+        try
+        {
+            long[] stat = stat(url);
+            if (stat[1] != length)
+            {
+                return false;
+            }
+            return (stat[0] != 0 && stat[0] == lastModified) || checksum(url) == crc;
+        }
+        catch (IOException exception)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Return the modification time and length of a source file, without reading the file.
+     * @param url URL; the URL of the source file
+     * @return long[]; the modification time in milliseconds at index 0, and the length in bytes at index 1
+     * @throws IOException when the source file does not exist or cannot be reached
+     */
+    private static long[] stat(final URL url) throws IOException
+    {
+        if ("file".equals(url.getProtocol()))
+        {
+            File file;
+            try
+            {
+                file = new File(url.toURI());
+            }
+            catch (URISyntaxException | IllegalArgumentException exception)
+            {
+                file = new File(url.getPath());
+            }
+            if (!file.isFile())
+            {
+                throw new IOException("source file " + url + " does not exist");
+            }
+            return new long[] {file.lastModified(), file.length()};
+        }
+        URLConnection connection = url.openConnection();
+        try (InputStream input = connection.getInputStream())
+        {
+            return new long[] {connection.getLastModified(), connection.getContentLengthLong()};
+        }
+    }
+
+    /**
+     * Return the CRC32 checksum of the contents of a source file.
+     * @param url URL; the URL of the source file
+     * @return long; the CRC32 checksum of the contents of the source file
+     * @throws IOException when the source file cannot be read
+     */
+    private static long checksum(final URL url) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        try (InputStream input = url.openStream())
+        {
+            byte[] bytes = new byte[65536];
+            int n;
+            while ((n = input.read(bytes)) > 0)
+            {
+                crc.update(bytes, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Write a color as a byte 1 followed by its ARGB value, or as a byte 0 for null.
+     * @param output DataOutputStream; the output to write to
+     * @param color Color; the color to write, may be null
+     * @throws IOException when writing fails
+     */
+    private static void writeColor(final DataOutputStream output, final Color color) throws IOException
+    {
+        output.writeBoolean(color != null);
+        if (color != null)
+        {
+            output.writeInt(color.getRGB());
+        }
+    }
+
+    /**
+     * Read a color that has been written by writeColor().
+     * @param buffer ByteBuffer; the buffer to read from
+     * @return Color; the color, or null
+     */
+    private static Color readColor(final ByteBuffer buffer)
+    {
+        return buffer.get() == 0 ? null : new Color(buffer.getInt(), true);
+    }
+
+    /**
+     * Write a string as the int number of its UTF-8 bytes, followed by the bytes, or as -1 for null.
+     * @param output DataOutputStream; the output to write to
+     * @param value String; the string to write, may be null
+     * @throws IOException when writing fails
+     */
+    private static void writeString(final DataOutputStream output, final String value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Read a string that has been written by writeString().
+     * @param buffer ByteBuffer; the buffer to read from
+     * @return String; the string, or null
+     * @throws IOException when the length of the string is not valid
+     */
+    private static String readString(final ByteBuffer buffer) throws IOException
+    {
+        int length = buffer.getInt();
+        if (length == -1)
+        {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining())
+        {
+            throw new IOException("invalid string length " + length + " in map cache");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "GisMapCache [cacheFile=" + this.cacheFile + "]";
+    }
+}
@@ -32,6 +32,9 @@ public class Layer implements LayerInterface
     /** whether to transform the layer. */
     private boolean transform = false;
 
+    /** whether the shapes of the layer can change between paint operations. */
+    private boolean dynamic = false;
+
     /** the feature map, implemented by a LinkedHashMap to guarantee a reproducible order. */
     private List<FeatureInterface> features = new ArrayList<>();
 
@@ -98,4 +101,18 @@ public class Layer implements LayerInterface
         this.transform = transform;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean isDynamic()
+    {
+        return this.dynamic;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setDynamic(final boolean dynamic)
+    {
+        this.dynamic = dynamic;
+    }
+
 }
@@ -0,0 +1,131 @@
+package nl.tudelft.simulation.dsol.animation.gis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.junit.Test;
+
+/**
+ * SpatialIndexTest tests the queries of the spatial index against a check of all bounding boxes, and writing and reading the
+ * index as a .qix file.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class SpatialIndexTest
+{
+    /**
+     * Test the queries for different numbers of shapes, with some null shapes.
+     * @throws IOException when the .qix file cannot be written or read
+     */
+    @Test
+    public void testQueries() throws IOException
+    {
+        Random random = new Random(17L);
+        for (int n : new int[] {0, 1, 16, 17, 300, 5000})
+        {
+            double[] boxes = new double[4 * n];
+            for (int i = 0; i < n; i++)
+            {
+                double x = random.nextDouble() * 1000.0;
+                double y = random.nextDouble() * 1000.0;
+                boxes[4 * i] = i % 50 == 7 ? Double.NaN : x;
+                boxes[4 * i + 1] = y;
+                boxes[4 * i + 2] = x + random.nextDouble() * 20.0;
+                boxes[4 * i + 3] = y + random.nextDouble() * 20.0;
+            }
+            SpatialIndex built = new SpatialIndex(boxes);
+            assertEquals(n, built.getNumShapes());
+
+            File file = File.createTempFile("spatialindex", ".qix");
+            file.deleteOnExit();
+            built.write(file);
+            SpatialIndex read = SpatialIndex.read(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+            assertEquals(n, read.getNumShapes());
+
+            for (int q = 0; q < 50; q++)
+            {
+                double x = random.nextDouble() * 1000.0;
+                double y = random.nextDouble() * 1000.0;
+                double size = random.nextDouble() * 100.0;
+                Bounds2d extent = new Bounds2d(x, x + size, y, y + size);
+                List<Integer> expected = expected(boxes, extent);
+                for (SpatialIndex index : new SpatialIndex[] {built, read})
+                {
+                    int[] result = index.query(extent);
+                    List<Integer> found = new ArrayList<>();
+                    for (int k = 0; k < result.length; k++)
+                    {
+                        assertTrue(k == 0 || result[k] > result[k - 1]);
+                        if (expected.contains(result[k]))
+                        {
+                            found.add(result[k]);
+                        }
+                    }
+                    assertEquals(expected, found);
+                }
+            }
+        }
+        assertTrue(new SpatialIndex(new double[0]).toString().startsWith("SpatialIndex"));
+    }
+
+    /**
+     * Test the checks of the arguments.
+     */
+    @Test
+    public void testArguments()
+    {
+        try
+        {
+            new SpatialIndex(new double[3]);
+            fail("length that is not a multiple of 4 should fail");
+        }
+        catch (IllegalArgumentException exception)
+        {
+            // ok
+        }
+        try
+        {
+            SpatialIndex.read(ByteBuffer.wrap(new byte[100]));
+            fail("buffer without .qix header should fail");
+        }
+        catch (IOException exception)
+        {
+            // ok
+        }
+    }
+
+    /**
+     * Return the shape numbers of which the bounding box overlaps with the extent.
+     * @param boxes double[]; the bounding boxes
+     * @param extent Bounds2d; the extent
+     * @return List&lt;Integer&gt;; the shape numbers in ascending order
+     */
+    private List<Integer> expected(final double[] boxes, final Bounds2d extent)
+    {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < boxes.length / 4; i++)
+        {
+            if (boxes[4 * i] <= extent.getMaxX() && boxes[4 * i + 1] <= extent.getMaxY() && boxes[4 * i + 2] >= extent.getMinX()
+                    && boxes[4 * i + 3] >= extent.getMinY())
+            {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package nl.tudelft.simulation.dsol.animation.gis.map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.animation.gis.GisObject;
+import nl.tudelft.simulation.dsol.animation.gis.SerializablePath;
+
+/**
+ * FeatureTest tests that the shapes of a Feature can be retrieved and changed through getShapes(), both the shapes that are
+ * stored as a GisObject, and the shapes in the geometry store.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class FeatureTest
+{
+    /**
+     * Test that getShapes() returns the shapes that are stored as a GisObject, followed by the shapes in the geometry store.
+     */
+    @Test
+    public void testGetShapes()
+    {
+        Feature feature = new Feature();
+        assertTrue(feature.getShapes().isEmpty());
+        GisObject square = new GisObject(square(0.0f, 10.0f), new String[] {"square"});
+        feature.getShapes().add(square);
+        feature.getGeometry().addShape(square(20.0f, 30.0f), "store1");
+        feature.getGeometry().addShape(square(40.0f, 50.0f), "store2");
+
+        List<GisObject> shapes = feature.getShapes();
+        assertEquals(3, shapes.size());
+        assertEquals(feature.getNumShapes(), shapes.size());
+        assertSame(square, shapes.get(0));
+        assertArrayEquals(new String[] {"store1"}, shapes.get(1).getAttributeValues());
+        assertArrayEquals(new String[] {"store2"}, shapes.get(2).getAttributeValues());
+        Rectangle2D bounds = ((SerializablePath) shapes.get(2).getShape()).getBounds2D();
+        assertEquals(40.0, bounds.getMinX(), 0.0);
+        assertEquals(50.0, bounds.getMaxY(), 0.0);
+        int n = 0;
+        for (GisObject shape : shapes)
+        {
+            assertArrayEquals(feature.getShape(n++).getAttributeValues(), shape.getAttributeValues());
+        }
+        assertEquals(3, n);
+
+        // the view is live: a shape added to the store is visible in an earlier view
+        feature.getGeometry().addShape(square(60.0f, 70.0f), "store3");
+        assertEquals(4, shapes.size());
+        assertArrayEquals(new String[] {"store3"}, shapes.get(3).getAttributeValues());
+
+        try
+        {
+            shapes.get(4);
+            fail("index beyond the shapes should throw an IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException exception)
+        {
+            // ok
+        }
+    }
+
+    /**
+     * Test adding, replacing, removing, and clearing shapes through getShapes().
+     */
+    @Test
+    public void testChangeShapes()
+    {
+        Feature feature = new Feature();
+        feature.getGeometry().addShape(square(20.0f, 30.0f), "store");
+        GisObject first = new GisObject(square(0.0f, 10.0f), new String[] {"first"});
+        GisObject second = new GisObject(square(0.0f, 10.0f), new String[] {"second"});
+        List<GisObject> shapes = feature.getShapes();
+
+        // added shapes are stored as a GisObject, before the shapes in the store, and can be queried for an extent
+        assertTrue(shapes.add(second));
+        shapes.add(0, first);
+        assertEquals(3, shapes.size());
+        assertSame(first, shapes.get(0));
+        assertSame(second, shapes.get(1));
+        assertArrayEquals(new String[] {"store"}, shapes.get(2).getAttributeValues());
+        assertEquals(2, feature.getShapes(new Bounds2d(-5.0, 5.0, -5.0, 5.0)).size());
+        assertEquals(1, feature.getGeometryShapes(new Bounds2d(25.0, 26.0, 25.0, 26.0)).length);
+
+        assertSame(second, shapes.set(1, first));
+        assertSame(first, shapes.remove(1));
+        assertEquals(2, shapes.size());
+        assertEquals(1, feature.getShapes(new Bounds2d(-5.0, 5.0, -5.0, 5.0)).size());
+
+        // the shapes in the store cannot be changed one by one
+        try
+        {
+            shapes.remove(1);
+            fail("removing a shape in the geometry store should throw an UnsupportedOperationException");
+        }
+        catch (UnsupportedOperationException exception)
+        {
+            // ok
+        }
+        try
+        {
+            shapes.set(1, second);
+            fail("replacing a shape in the geometry store should throw an UnsupportedOperationException");
+        }
+        catch (UnsupportedOperationException exception)
+        {
+            // ok
+        }
+        try
+        {
+            shapes.remove(2);
+            fail("removing beyond the shapes should throw an IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException exception)
+        {
+            // ok
+        }
+
+        // clear() removes the shapes in the store as well
+        shapes.clear();
+        assertTrue(shapes.isEmpty());
+        assertEquals(0, feature.getNumShapes());
+        assertEquals(0, feature.getGeometry().getNumShapes());
+    }
+
+    /**
+     * Make a square path.
+     * @param min float; the minimum x- and y-coordinate of the square
+     * @param max float; the maximum x- and y-coordinate of the square
+     * @return SerializablePath; the square
+     */
+    private static SerializablePath square(final float min, final float max)
+    {
+        SerializablePath path = new SerializablePath();
+        path.moveTo(min, min);
+        path.lineTo(max, min);
+        path.lineTo(max, max);
+        path.lineTo(min, max);
+        path.closePath();
+        return path;
+    }
+}
@@ -0,0 +1,214 @@
+package nl.tudelft.simulation.dsol.animation.gis.map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.animation.gis.FeatureInterface;
+import nl.tudelft.simulation.dsol.animation.gis.GeometryStore;
+import nl.tudelft.simulation.dsol.animation.gis.GisMapInterface;
+import nl.tudelft.simulation.dsol.animation.gis.LayerInterface;
+import nl.tudelft.simulation.dsol.animation.gis.MapUnits;
+import nl.tudelft.simulation.dsol.animation.gis.transform.CoordinateTransform;
+
+/**
+ * GisMapCacheTest tests writing a map to a cache file, reading it back, and the invalidation of the cache file when the
+ * coordinate transform or one of the source files changes.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class GisMapCacheTest
+{
+    /**
+     * Test writing and reading a map, and the invalidation of the cache file.
+     * @throws IOException on error
+     */
+    @Test
+    public void testGisMapCache() throws IOException
+    {
+        File directory = Files.createTempDirectory("gismapcache").toFile();
+        try
+        {
+            File definition = new File(directory, "map.csv");
+            File data = new File(directory, "map.dat");
+            Files.write(definition.toPath(), "layerName,shapeFile\n".getBytes(StandardCharsets.UTF_8));
+            Files.write(data.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+            URL definitionUrl = definition.toURI().toURL();
+            List<URL> sources = Arrays.asList(definitionUrl, data.toURI().toURL());
+            CoordinateTransform transform = new CoordinateTransform.NoTransform();
+
+            GisMapCache cache = new GisMapCache(new File(directory, "map.cache"));
+            assertNull(cache.read(transform, definitionUrl));
+            GisMapInterface map = makeMap();
+            cache.write(map, transform, sources);
+            assertTrue(cache.getCacheFile().isFile());
+            assertTrue(cache.toString().startsWith("GisMapCache"));
+
+            GisMapInterface cachedMap = cache.read(transform, definitionUrl);
+            assertNotNull(cachedMap);
+            assertEquals(map.getName(), cachedMap.getName());
+            assertEquals(MapUnits.DECIMAL_DEGREES, cachedMap.getUnits());
+            assertEquals(map.getExtent(), cachedMap.getExtent());
+            assertEquals(map.getImage().getBackgroundColor(), cachedMap.getImage().getBackgroundColor());
+            assertEquals(map.getImage().getSize(), cachedMap.getImage().getSize());
+            assertEquals(map.getAllLayers().size(), cachedMap.getAllLayers().size());
+            for (int i = 0; i < map.getAllLayers().size(); i++)
+            {
+                LayerInterface layer = map.getAllLayers().get(i);
+                LayerInterface cachedLayer = cachedMap.getAllLayers().get(i);
+                assertEquals(layer.getName(), cachedLayer.getName());
+                assertEquals(layer.isDisplay(), cachedLayer.isDisplay());
+                assertEquals(layer.isTransform(), cachedLayer.isTransform());
+                assertEquals(layer.isDynamic(), cachedLayer.isDynamic());
+                assertEquals(layer.getFeatures().size(), cachedLayer.getFeatures().size());
+                for (int j = 0; j < layer.getFeatures().size(); j++)
+                {
+                    FeatureInterface feature = layer.getFeatures().get(j);
+                    FeatureInterface cachedFeature = cachedLayer.getFeatures().get(j);
+                    assertEquals(feature.getKey(), cachedFeature.getKey());
+                    assertEquals(feature.getValue(), cachedFeature.getValue());
+                    assertEquals(feature.getFillColor(), cachedFeature.getFillColor());
+                    assertEquals(feature.getOutlineColor(), cachedFeature.getOutlineColor());
+                    GeometryStore geometry = feature.getGeometry();
+                    GeometryStore cachedGeometry = cachedFeature.getGeometry();
+                    assertEquals(geometry.getNumShapes(), cachedGeometry.getNumShapes());
+                    assertEquals(geometry.getNumPoints(), cachedGeometry.getNumPoints());
+                    assertArrayEquals(geometry.getBoxes(), cachedGeometry.getBoxes(), 0.0);
+                    for (int shape = 0; shape < geometry.getNumShapes(); shape++)
+                    {
+                        assertEquals(geometry.getNumParts(shape), cachedGeometry.getNumParts(shape));
+                        assertArrayEquals(geometry.getAttributeValues(shape), cachedGeometry.getAttributeValues(shape));
+                    }
+                }
+            }
+
+            // another map definition, or another transform, does not use the cache
+            assertNull(cache.read(transform, definitionUrl, new File(directory, "other.csv").toURI().toURL()));
+            CoordinateTransform scale = new CoordinateTransform()
+            {
+                @Override
+                public float[] floatTransform(final double x, final double y)
+                {
+                    return new float[] {(float) (2.0 * x), (float) (2.0 * y)};
+                }
+
+                @Override
+                public double[] doubleTransform(final double x, final double y)
+                {
+                    return new double[] {2.0 * x, 2.0 * y};
+                }
+            };
+            assertNull(cache.read(scale, definitionUrl));
+
+            // a source with another time but the same contents is unchanged; another content is a change
+            assertTrue(data.setLastModified(data.lastModified() - 100_000L));
+            assertNotNull(cache.read(transform, definitionUrl));
+            Files.write(data.toPath(), "0123456780".getBytes(StandardCharsets.UTF_8));
+            assertTrue(data.setLastModified(data.lastModified() - 200_000L));
+            assertNull(cache.read(transform, definitionUrl));
+
+            // a cache file that has been cut off is not used
+            Files.write(data.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+            cache.write(map, transform, sources);
+            assertNotNull(cache.read(transform, definitionUrl));
+            try (RandomAccessFile file = new RandomAccessFile(cache.getCacheFile(), "rw"))
+            {
+                file.setLength(file.length() - 10);
+            }
+            assertNull(cache.read(transform, definitionUrl));
+
+            // a source that has been removed invalidates the cache
+            cache.write(map, transform, sources);
+            assertTrue(data.delete());
+            assertNull(cache.read(transform, definitionUrl));
+        }
+        finally
+        {
+            for (File file : directory.listFiles())
+            {
+                file.delete();
+            }
+            directory.delete();
+        }
+        assertFalse(directory.exists());
+    }
+
+    /**
+     * Make a map with two layers, of which one has two features.
+     * @return GisMapInterface; a map with two layers
+     */
+    private static GisMapInterface makeMap()
+    {
+        GisMap map = new GisMap();
+        map.setName("cache test");
+        map.setUnits(MapUnits.DECIMAL_DEGREES);
+        map.setExtent(new Bounds2d(4.0, 5.0, 51.0, 52.0));
+        MapImage image = new MapImage();
+        image.setBackgroundColor(new Color(10, 20, 30, 40));
+        image.setSize(new Dimension(640, 480));
+        map.setImage(image);
+
+        List<LayerInterface> layers = new ArrayList<>();
+        Layer buildings = new Layer();
+        buildings.setName("buildings");
+        buildings.setTransform(true);
+        Feature university = new Feature();
+        university.setKey("building");
+        university.setValue("university");
+        university.setFillColor(Color.RED);
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(4.37, 51.99);
+        path.lineTo(4.38, 51.99);
+        path.lineTo(4.38, 52.0);
+        path.closePath();
+        path.moveTo(4.371, 51.991);
+        path.lineTo(4.372, 51.992);
+        university.getGeometry().addShape(path, "Aula", "Mekelweg 5");
+        university.getGeometry().startShape("empty");
+        buildings.addFeature(university);
+        Feature other = new Feature();
+        other.setKey("building");
+        other.setOutlineColor(null);
+        buildings.addFeature(other);
+        layers.add(buildings);
+
+        Layer trees = new Layer();
+        trees.setName("trees");
+        trees.setDisplay(false);
+        trees.setDynamic(true);
+        Feature tree = new Feature();
+        for (int i = 0; i < 100; i++)
+        {
+            tree.getGeometry().addShape(new Point2D.Double(4.0 + 0.01 * i, 51.5), "tree", "éèn " + (i % 3));
+        }
+        trees.addFeature(tree);
+        layers.add(trees);
+        map.setLayers(layers);
+        return map;
+    }
+}
@@ -0,0 +1,150 @@
+package nl.tudelft.simulation.dsol.animation.gis.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.animation.gis.GisObject;
+import nl.tudelft.simulation.dsol.animation.gis.GisTileCache;
+import nl.tudelft.simulation.dsol.animation.gis.SerializablePath;
+
+/**
+ * GisTileCacheTest tests drawing the static layers of a GisMap from tiles, and the dynamic layers on top of the tiles.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class GisTileCacheTest
+{
+    /** the extent of the screen: 0.5 world units per pixel. */
+    private static final Bounds2d EXTENT = new Bounds2d(-100.0, 100.0, -100.0, 100.0);
+
+    /** the size of the screen. */
+    private static final Dimension SCREEN = new Dimension(400, 400);
+
+    /**
+     * Test the tiles that are drawn right away in the paint operation, and the dynamic layers.
+     */
+    @Test
+    public void testTiles()
+    {
+        GisTileCache cache = new GisTileCache(makeMap(), 2);
+        cache.setBackground(false);
+        BufferedImage screen = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_ARGB);
+        cache.paint(screen.createGraphics(), EXTENT, SCREEN, null);
+        // the static square covers (10, 10) - (30, 30), which is pixel (220, 140) - (260, 180)
+        assertEquals(Color.RED.getRGB(), screen.getRGB(240, 160));
+        assertEquals(Color.RED.getRGB(), screen.getRGB(221, 160));
+        assertEquals(Color.WHITE.getRGB(), screen.getRGB(218, 160));
+        assertEquals(Color.WHITE.getRGB(), screen.getRGB(240, 138));
+        // the dynamic square covers (-50, -50) - (-40, -40), which is pixel (100, 280) - (120, 300)
+        assertEquals(Color.BLUE.getRGB(), screen.getRGB(110, 290));
+        // the screen covers 4 tiles, of which 2 are kept in memory
+        assertEquals(2, cache.size());
+        assertTrue(cache.toString().startsWith("GisTileCache"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        try
+        {
+            cache.setMaxTiles(0);
+            fail("maxTiles 0 should fail");
+        }
+        catch (IllegalArgumentException exception)
+        {
+            // ok
+        }
+    }
+
+    /**
+     * Test the tiles that are drawn on a background thread, and the coarser tile that is shown in the meantime.
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testBackgroundTiles() throws InterruptedException
+    {
+        GisTileCache cache = new GisTileCache(makeMap());
+        assertTrue(cache.isBackground());
+        CountDownLatch latch = new CountDownLatch(1);
+        ImageObserver observer = (image, infoflags, x, y, width, height) ->
+        {
+            assertEquals(ImageObserver.ALLBITS, infoflags);
+            latch.countDown();
+            return false;
+        };
+        BufferedImage screen = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_ARGB);
+        cache.paint(screen.createGraphics(), EXTENT, SCREEN, observer);
+        // the dynamic layer is drawn right away; the static layer when the tiles are ready
+        assertEquals(Color.BLUE.getRGB(), screen.getRGB(110, 290));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.size() < 4 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(4, cache.size());
+
+        // when zooming in, the part of the coarser tile is shown until the finer tile is ready
+        Bounds2d zoomed = new Bounds2d(0.0, 50.0, 0.0, 50.0);
+        screen = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_ARGB);
+        cache.paint(screen.createGraphics(), zoomed, SCREEN, null);
+        // world (20, 20) is pixel (160, 240)
+        assertEquals(Color.RED.getRGB(), screen.getRGB(160, 240));
+    }
+
+    /**
+     * Make a map with a static layer with a red square, and a dynamic layer with a blue square.
+     * @return GisMap; the map
+     */
+    private GisMap makeMap()
+    {
+        GisMap map = new GisMap();
+        map.getImage().setBackgroundColor(Color.WHITE);
+        map.addLayer(makeLayer("static", false, Color.RED, 10.0f, 30.0f));
+        map.addLayer(makeLayer("dynamic", true, Color.BLUE, -50.0f, -40.0f));
+        return map;
+    }
+
+    /**
+     * Make a layer with one square.
+     * @param name String; the name of the layer
+     * @param dynamic boolean; whether the layer is dynamic
+     * @param color Color; the fill color of the square
+     * @param min float; the minimum x- and y-coordinate of the square
+     * @param max float; the maximum x- and y-coordinate of the square
+     * @return Layer; the layer
+     */
+    private Layer makeLayer(final String name, final boolean dynamic, final Color color, final float min, final float max)
+    {
+        SerializablePath path = new SerializablePath();
+        path.moveTo(min, min);
+        path.lineTo(max, min);
+        path.lineTo(max, max);
+        path.lineTo(min, max);
+        path.closePath();
+        Feature feature = new Feature();
+        feature.setFillColor(color);
+        feature.setOutlineColor(null);
+        feature.getShapes().add(new GisObject(path, new String[0]));
+        Layer layer = new Layer();
+        layer.setName(name);
+        layer.setTransform(true);
+        layer.setDynamic(dynamic);
+        layer.addFeature(feature);
+        return layer;
+    }
+}
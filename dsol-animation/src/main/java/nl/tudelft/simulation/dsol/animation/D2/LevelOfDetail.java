@@ -0,0 +1,422 @@
+package nl.tudelft.simulation.dsol.animation.D2;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.ImageObserver;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.djutils.draw.bounds.Bounds;
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.draw.point.Point;
+import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
+
+import nl.tudelft.simulation.dsol.animation.Locatable;
+
+/**
+ * LevelOfDetail decides for an animation panel which renderables are too small on the screen to be painted in detail, and
+ * draws those renderables in a simplified way, without setting up the transformation and calling the paint method of each of
+ * them. A renderable takes part when it returns a color in getLevelOfDetailColor(). When its bounds are smaller than the
+ * minimum screen size in pixels, it is drawn in that color in one of the following modes:
+ * <ul>
+ * <li>POINTS: the renderable is drawn as a small square of pointSize pixels in a raster of the screen size, and the raster is
+ * drawn as one image at the end of the frame.</li>
+ * <li>DENSITY: the screen is divided into tiles of tileSize pixels, and the renderables are counted per tile and per color. At
+ * the end of the frame, each tile with renderables is filled with the color that has most renderables in the tile, with an
+ * opacity that grows with the logarithm of the number of renderables in the tile.</li>
+ * <li>DETAIL: all renderables are painted in detail.</li>
+ * </ul>
+ * The cost of a simplified renderable is a few arithmetic operations, and the cost of drawing the result depends on the number
+ * of pixels of the screen, not on the number of renderables. The simplified renderables are drawn on top of the renderables
+ * that are painted in detail.
+ * <p>
+ * A frame is drawn by calling begin(), then add() for each renderable to show, painting the renderable in detail when add()
+ * returns false, and finally end() to draw the simplified renderables. A LevelOfDetail belongs to one panel, and is not meant
+ * to be used by several threads at the same time.
+ * </p>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class LevelOfDetail
+{
+    /** The ways to draw renderables that are too small to be painted in detail. */
+    public enum Mode
+    {
+        /** paint all renderables in detail. */
+        DETAIL,
+
+        /** draw small renderables as points. */
+        POINTS,
+
+        /** aggregate small renderables into density tiles. */
+        DENSITY;
+    }
+
+    /** the mode. */
+    private Mode mode;
+
+    /** the size in pixels below which a renderable is simplified. */
+    private double minimumSize = 2.0;
+
+    /** the size in pixels of a point. */
+    private int pointSize = 2;
+
+    /** the size in pixels of a density tile. */
+    private int tileSize = 8;
+
+    /** whether a frame is being drawn. */
+    private boolean active = false;
+
+    /** the extent of the current frame. */
+    private double minX, minY;
+
+    /** the world units per pixel of the current frame. */
+    private double xScale, yScale;
+
+    /** the size of the screen of the current frame. */
+    private int width, height;
+
+    /** the number of renderables that have been simplified in the current frame. */
+    private int numberSimplified = 0;
+
+    /** the image with the points, reused for frames with the same screen size. */
+    private BufferedImage image = null;
+
+    /** the pixels of the image with the points. */
+    private int[] pixels = null;
+
+    /** the number of tiles in x-direction and y-direction. */
+    private int tilesX, tilesY;
+
+    /** the colors of the density tiles, with their index. */
+    private final Map<Color, Integer> colorIndex = new LinkedHashMap<>();
+
+    /** the colors of the density tiles, in order of their index. */
+    private final List<Color> colors = new ArrayList<>();
+
+    /** the number of renderables per color per tile, stored as counts[color][tile]. */
+    private final List<int[]> counts = new ArrayList<>();
+
+    /** the last color that has been looked up; renderables of the same class usually follow each other. */
+    private Color lastColor = null;
+
+    /** the index of the last color that has been looked up. */
+    private int lastColorIndex = -1;
+
+    /**
+     * Construct a LevelOfDetail.
+     * @param mode Mode; the mode to draw small renderables
+     * @throws NullPointerException when mode is null
+     */
+    public LevelOfDetail(final Mode mode)
+    {
+        Throw.whenNull(mode, "mode cannot be null");
+        this.mode = mode;
+    }
+
+    /**
+     * Start a new frame.
+     * @param extent Bounds2d; the extent of the panel
+     * @param screenSize Dimension; the screen size of the panel
+     */
+    public void begin(final Bounds2d extent, final Dimension screenSize)
+    {
+        this.active = this.mode != Mode.DETAIL && screenSize.width > 0 && screenSize.height > 0;
+        this.numberSimplified = 0;
+        if (!this.active)
+        {
+            return;
+        }
+        this.minX = extent.getMinX();
+        this.minY = extent.getMinY();
+        this.xScale = extent.getDeltaX() / screenSize.width;
+        this.yScale = extent.getDeltaY() / screenSize.height;
+        this.width = screenSize.width;
+        this.height = screenSize.height;
+        if (this.mode == Mode.POINTS)
+        {
+            if (this.image == null || this.image.getWidth() != this.width || this.image.getHeight() != this.height)
+            {
+                this.image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB);
+                this.pixels = ((DataBufferInt) this.image.getRaster().getDataBuffer()).getData();
+            }
+        }
+        else
+        {
+            this.tilesX = (this.width + this.tileSize - 1) / this.tileSize;
+            this.tilesY = (this.height + this.tileSize - 1) / this.tileSize;
+            for (int i = 0; i < this.counts.size(); i++)
+            {
+                if (this.counts.get(i).length != this.tilesX * this.tilesY)
+                {
+                    this.counts.set(i, new int[this.tilesX * this.tilesY]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Simplify the renderable when it is smaller than the minimum size on the screen.
+     * @param renderable Renderable2DInterface&lt;? extends Locatable&gt;; the renderable to show
+     * @return boolean; true when the renderable has been simplified, false when it should be painted in detail
+     */
+    public boolean add(final Renderable2DInterface<? extends Locatable> renderable)
+    {
+        if (!this.active)
+        {
+            return false;
+        }
+        Color color = renderable.getLevelOfDetailColor();
+        Locatable source = renderable.getSource();
+        if (color == null || source == null)
+        {
+            return false;
+        }
+        try
+        {
+            Point<?> location = source.getLocation();
+            if (location == null)
+            {
+                return false;
+            }
+            Bounds<?, ?, ?> bounds = source.getBounds();
+            double dx = bounds.getDeltaX() / this.xScale;
+            double dy = bounds.getDeltaY() / this.yScale;
+            if (dx >= this.minimumSize || dy >= this.minimumSize)
+            {
+                return false;
+            }
+            double x = location.getX() + 0.5 * (bounds.getMinX() + bounds.getMaxX());
+            double y = location.getY() + 0.5 * (bounds.getMinY() + bounds.getMaxY());
+            int px = (int) Math.floor((x - this.minX) / this.xScale);
+            int py = (int) Math.floor(this.height - (y - this.minY) / this.yScale);
+            this.numberSimplified++;
+            if (px < 0 || py < 0 || px >= this.width || py >= this.height)
+            {
+                return true;
+            }
+            if (this.mode == Mode.POINTS)
+            {
+                int rgb = color.getRGB();
+                int x0 = Math.max(0, px - (this.pointSize - 1) / 2);
+                int y0 = Math.max(0, py - (this.pointSize - 1) / 2);
+                int x1 = Math.min(this.width, x0 + this.pointSize);
+                int y1 = Math.min(this.height, y0 + this.pointSize);
+                for (int j = y0; j < y1; j++)
+                {
+                    Arrays.fill(this.pixels, j * this.width + x0, j * this.width + x1, rgb);
+                }
+            }
+            else
+            {
+                this.counts.get(colorIndex(color))[(py / this.tileSize) * this.tilesX + px / this.tileSize]++;
+            }
+            return true;
+        }
+        catch (RemoteException exception)
+        {
+            CategoryLogger.always().warn(exception, "add");
+            return false;
+        }
+    }
+
+    /**
+     * Return the index of the color for the density tiles, and add the color when it is new.
+     * @param color Color; the color
+     * @return int; the index of the color
+     */
+    private int colorIndex(final Color color)
+    {
+        if (color == this.lastColor)
+        {
+            return this.lastColorIndex;
+        }
+        Integer index = this.colorIndex.get(color);
+        if (index == null)
+        {
+            index = this.colors.size();
+            this.colorIndex.put(color, index);
+            this.colors.add(color);
+            this.counts.add(new int[this.tilesX * this.tilesY]);
+        }
+        this.lastColor = color;
+        this.lastColorIndex = index;
+        return index;
+    }
+
+    /**
+     * Draw the simplified renderables of the frame, and clear them for the next frame.
+     * @param graphics Graphics2D; the graphics object of the panel
+     * @param observer ImageObserver; the observer of the panel
+     */
+    public void end(final Graphics2D graphics, final ImageObserver observer)
+    {
+        if (!this.active)
+        {
+            return;
+        }
+        this.active = false;
+        Color originalColor = graphics.getColor();
+        if (this.mode == Mode.POINTS)
+        {
+            if (this.numberSimplified > 0 && !graphics.drawImage(this.image, 0, 0, observer))
+            {
+                // the graphics cannot draw images, e.g., for the web: draw the pixels as rectangles
+                for (int j = 0; j < this.height; j++)
+                {
+                    for (int i = 0; i < this.width; i++)
+                    {
+                        int rgb = this.pixels[j * this.width + i];
+                        if (rgb != 0)
+                        {
+                            graphics.setColor(new Color(rgb, true));
+                            graphics.fillRect(i, j, 1, 1);
+                        }
+                    }
+                }
+            }
+            Arrays.fill(this.pixels, 0);
+        }
+        else
+        {
+            for (int tile = 0; tile < this.tilesX * this.tilesY; tile++)
+            {
+                int total = 0;
+                int best = -1;
+                for (int c = 0; c < this.colors.size(); c++)
+                {
+                    int count = this.counts.get(c)[tile];
+                    total += count;
+                    if (count > 0 && (best < 0 || count > this.counts.get(best)[tile]))
+                    {
+                        best = c;
+                    }
+                }
+                if (total > 0)
+                {
+                    Color color = this.colors.get(best);
+                    int alpha = (int) Math.min(255.0, 64.0 + 48.0 * Math.log(total));
+                    graphics.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+                    graphics.fillRect((tile % this.tilesX) * this.tileSize, (tile / this.tilesX) * this.tileSize,
+                            this.tileSize, this.tileSize);
+                }
+            }
+            for (int[] colorCounts : this.counts)
+            {
+                Arrays.fill(colorCounts, 0);
+            }
+        }
+        graphics.setColor(originalColor);
+    }
+
+    /**
+     * Return the number of renderables that have been simplified in the last frame.
+     * @return int; the number of renderables that have been simplified in the last frame
+     */
+    public int getNumberSimplified()
+    {
+        return this.numberSimplified;
+    }
+
+    /**
+     * Return the mode.
+     * @return Mode; the mode
+     */
+    public Mode getMode()
+    {
+        return this.mode;
+    }
+
+    /**
+     * Set the mode.
+     * @param mode Mode; the new mode
+     * @throws NullPointerException when mode is null
+     */
+    public void setMode(final Mode mode)
+    {
+        Throw.whenNull(mode, "mode cannot be null");
+        this.mode = mode;
+    }
+
+    /**
+     * Return the size in pixels below which a renderable is simplified.
+     * @return double; the size in pixels below which a renderable is simplified
+     */
+    public double getMinimumSize()
+    {
+        return this.minimumSize;
+    }
+
+    /**
+     * Set the size in pixels below which a renderable is simplified.
+     * @param minimumSize double; the size in pixels below which a renderable is simplified
+     * @throws IllegalArgumentException when minimumSize is negative or NaN
+     */
+    public void setMinimumSize(final double minimumSize)
+    {
+        Throw.when(!(minimumSize >= 0.0), IllegalArgumentException.class, "minimumSize should be positive or zero");
+        this.minimumSize = minimumSize;
+    }
+
+    /**
+     * Return the size in pixels of a point.
+     * @return int; the size in pixels of a point
+     */
+    public int getPointSize()
+    {
+        return this.pointSize;
+    }
+
+    /**
+     * Set the size in pixels of a point.
+     * @param pointSize int; the size in pixels of a point
+     * @throws IllegalArgumentException when pointSize is smaller than 1
+     */
+    public void setPointSize(final int pointSize)
+    {
+        Throw.when(pointSize < 1, IllegalArgumentException.class, "pointSize should be at least 1");
+        this.pointSize = pointSize;
+    }
+
+    /**
+     * Return the size in pixels of a density tile.
+     * @return int; the size in pixels of a density tile
+     */
+    public int getTileSize()
+    {
+        return this.tileSize;
+    }
+
+    /**
+     * Set the size in pixels of a density tile.
+     * @param tileSize int; the size in pixels of a density tile
+     * @throws IllegalArgumentException when tileSize is smaller than 1
+     */
+    public void setTileSize(final int tileSize)
+    {
+        Throw.when(tileSize < 1, IllegalArgumentException.class, "tileSize should be at least 1");
+        this.tileSize = tileSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "LevelOfDetail [mode=" + this.mode + ", minimumSize=" + this.minimumSize + ", pointSize=" + this.pointSize
+                + ", tileSize=" + this.tileSize + "]";
+    }
+}
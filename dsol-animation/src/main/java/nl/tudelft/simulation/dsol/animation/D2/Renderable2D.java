@@ -1,5 +1,6 @@
 package nl.tudelft.simulation.dsol.animation.D2;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.geom.AffineTransform;
@@ -76,6 +77,9 @@ public abstract class Renderable2D<L extends Locatable> implements Renderable2DI
     /** the unique id of this animation object. */
     private int id;
 
+    /** the color to draw the renderable when it is too small on the screen, or null to always paint it in detail. */
+    private Color levelOfDetailColor = Color.DARK_GRAY;
+
     /**
      * Constructs a new Renderable2D.
      * @param source T; the source
@@ -241,6 +245,27 @@ public abstract class Renderable2D<L extends Locatable> implements Renderable2DI
             this.flags &= (~TRANSLATE_FLAG);
     }
 
+    /**
+     * Set the color to draw the renderable when it is too small on the screen to be painted in detail. Set the color to null to
+     * always paint the renderable in detail, e.g., when it should remain visible with its own shape at any zoom level.
+     * @param levelOfDetailColor Color; the color to draw the renderable when it is too small on the screen, or null to always
+     *            paint it in detail
+     */
+    public void setLevelOfDetailColor(final Color levelOfDetailColor)
+    {
+        this.levelOfDetailColor = levelOfDetailColor;
+    }
+
+    /**
+     * {@inheritDoc} Only renderables that are translated and scaled with the panel are drawn in a simplified way; renderables
+     * with a fixed size on the screen return null.
+     */
+    @Override
+    public Color getLevelOfDetailColor()
+    {
+        return isTranslate() && isScale() && !isScaleObject() ? this.levelOfDetailColor : null;
+    }
+
     /** {@inheritDoc} */
     @Override
     public L getSource()
@@ -1,5 +1,6 @@
 package nl.tudelft.simulation.dsol.animation.D2;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.ImageObserver;
@@ -70,4 +71,14 @@ public interface Renderable2DInterface<L extends Locatable> extends Serializable
      * @return long; the id of the renderable component
      */
     long getId();
+
+    /**
+     * Return the color in which the renderable can be drawn as a point or density tile when it is too small on the screen to be
+     * painted in detail, see LevelOfDetail. The default is null, meaning that the renderable is always painted in detail.
+     * @return Color; the color to draw the renderable when it is too small on the screen, or null to always paint it in detail
+     */
+    default Color getLevelOfDetailColor()
+    {
+        return null;
+    }
 }
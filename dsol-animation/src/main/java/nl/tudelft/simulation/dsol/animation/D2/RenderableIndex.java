@@ -0,0 +1,921 @@
+package nl.tudelft.simulation.dsol.animation.D2;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.djutils.draw.bounds.Bounds;
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.draw.point.Point;
+import org.djutils.draw.point.Point2d;
+import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
+
+import nl.tudelft.simulation.dsol.animation.Locatable;
+
+/**
+ * RenderableIndex is a spatial index of the renderables of an animation panel, to paint only the renderables that overlap with
+ * the visible extent, and to find the renderables under the mouse pointer without visiting all renderables. The index is a
+ * uniform grid of square cells in world coordinates, where each renderable is stored in the cells that its projected bounds
+ * overlap. The cell size is chosen automatically from the number, the size and the spread of the renderables, unless a fixed
+ * cell size is given.
+ * <p>
+ * A Locatable does not announce its movements, so the index has to be brought up to date with the update() method before
+ * painting. The update compares the location and bounds of each renderable with the values at the previous update, and only
+ * moves the renderables that changed to other cells. Renderables that are not translated or scaled with the world, such as
+ * fixed overlays, and renderables that are not a Renderable2D, such as GIS maps, have no reliable world bounds. They are not
+ * stored in the grid, and are always returned by the queries, just like renderables that are too large for the grid.
+ * </p>
+ * <p>
+ * The queries return the renderables in the paint order of the Renderable2DComparator, with the z-value of the last update.
+ * The methods of the index are synchronized, so renderables can be added and removed by the simulator thread while the panel
+ * paints in another thread. The update reads the locations and bounds of the renderables without holding the lock, and only
+ * applies the changes under the lock, so adding, removing and querying renderables do not wait for all renderables to be
+ * read.
+ * </p>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class RenderableIndex
+{
+    /** the maximum number of cells a renderable can cover; larger renderables are kept in a separate list. */
+    private static final int MAX_CELLS = 16;
+
+    /** the maximum number of renderables that is sampled to choose the cell size. */
+    private static final int LAYOUT_SAMPLE_SIZE = 1024;
+
+    /** the maximum absolute cell index, to prevent overflow for far away renderables. */
+    private static final int MAX_CELL_INDEX = 1 << 30;
+
+    /** the paint order of the entries, which is the order of the Renderable2DComparator. */
+    private static final Comparator<Entry> PAINT_ORDER =
+            (e1, e2) -> e1.z != e2.z ? Double.compare(e1.z, e2.z) : Long.compare(e1.id, e2.id);
+
+    /** the fixed cell size, or 0.0 when the cell size is chosen automatically. */
+    private final double fixedCellSize;
+
+    /** the current cell size. */
+    private double cellSize;
+
+    /** the number of renderables at the last choice of the cell size. */
+    private int sizeAtLayout = 0;
+
+    /** the entries of all renderables in the index. */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** the map from renderable to entry. */
+    private final Map<Renderable2DInterface<? extends Locatable>, Entry> entryMap = new HashMap<>();
+
+    /** the grid cells, stored by their packed cell coordinates. */
+    private final CellMap grid = new CellMap();
+
+    /** the renderables that cover too many cells to be stored in the grid. */
+    private final List<Entry> large = new ArrayList<>();
+
+    /** the renderables without reliable world bounds, which are always returned. */
+    private final List<Entry> unbounded = new ArrayList<>();
+
+    /** all entries in paint order, which is used for queries that return many entries. */
+    private final List<Entry> paintOrder = new ArrayList<>();
+
+    /** whether the paint order has to be sorted again. */
+    private boolean paintOrderChanged = false;
+
+    /** the stamp of the current query, to return each entry only once. */
+    private int queryStamp = 0;
+
+    /** the bounds of all renderables with a location at the last update, or null when there are none. */
+    private Bounds2d bounds = null;
+
+    /** the bounds at the last choice of the cell size. */
+    private Bounds2d boundsAtLayout = null;
+
+    /** the lock that lets one update at a time read the renderables, while the lock of the index is not held. */
+    private final Object updateLock = new Object();
+
+    /**
+     * Construct a spatial index that chooses its cell size automatically.
+     */
+    public RenderableIndex()
+    {
+        this.fixedCellSize = 0.0;
+        this.cellSize = 1.0;
+    }
+
+    /**
+     * Construct a spatial index with a fixed cell size.
+     * @param cellSize double; the size of the square cells in world coordinates
+     * @throws IllegalArgumentException when cellSize is not positive
+     */
+    public RenderableIndex(final double cellSize)
+    {
+        Throw.when(!(cellSize > 0.0) || Double.isInfinite(cellSize), IllegalArgumentException.class,
+                "cellSize should be positive and finite");
+        this.fixedCellSize = cellSize;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Add a renderable to the index. Its location is read at the next update.
+     * @param renderable Renderable2DInterface&lt;? extends Locatable&gt;; the renderable to add
+     * @throws NullPointerException when renderable is null
+     */
+    public synchronized void add(final Renderable2DInterface<? extends Locatable> renderable)
+    {
+        Throw.whenNull(renderable, "renderable cannot be null");
+        if (this.entryMap.containsKey(renderable))
+        {
+            return;
+        }
+        Entry entry = new Entry(renderable);
+        entry.position = this.entries.size();
+        this.entries.add(entry);
+        this.entryMap.put(renderable, entry);
+        if (!entry.bounded)
+        {
+            this.unbounded.add(entry);
+        }
+        this.paintOrderChanged = true;
+    }
+
+    /**
+     * Remove a renderable from the index.
+     * @param renderable Renderable2DInterface&lt;? extends Locatable&gt;; the renderable to remove
+     * @return boolean; whether the renderable was part of the index
+     */
+    public synchronized boolean remove(final Renderable2DInterface<? extends Locatable> renderable)
+    {
+        Entry entry = this.entryMap.remove(renderable);
+        if (entry == null)
+        {
+            return false;
+        }
+        unplace(entry);
+        this.unbounded.remove(entry);
+        Entry last = this.entries.remove(this.entries.size() - 1);
+        if (last != entry)
+        {
+            last.position = entry.position;
+            this.entries.set(entry.position, last);
+        }
+        this.paintOrderChanged = true;
+        return true;
+    }
+
+    /**
+     * Remove all renderables from the index.
+     */
+    public synchronized void clear()
+    {
+        this.entries.clear();
+        this.entryMap.clear();
+        this.grid.clear();
+        this.large.clear();
+        this.unbounded.clear();
+        this.paintOrder.clear();
+        this.paintOrderChanged = false;
+        this.sizeAtLayout = 0;
+        this.bounds = null;
+        this.boundsAtLayout = null;
+    }
+
+    /**
+     * Return the number of renderables in the index.
+     * @return int; the number of renderables in the index
+     */
+    public synchronized int size()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Bring the index up to date with the current locations and bounds of the renderables. Renderables whose source has been
+     * destroyed, i.e., whose source is null, are removed from the index and returned, so the caller can remove them as well.
+     * The locations and bounds are read without holding the lock of the index; renderables that are added during the update
+     * are read at the next update, and renderables that are removed during the update are not changed.
+     * @return List&lt;Renderable2DInterface&lt;? extends Locatable&gt;&gt;; the renderables that were removed because their
+     *         source is null
+     */
+    public List<Renderable2DInterface<? extends Locatable>> update()
+    {
+        synchronized (this.updateLock)
+        {
+            Entry[] snapshot;
+            boolean layout;
+            synchronized (this)
+            {
+                snapshot = this.entries.toArray(new Entry[this.entries.size()]);
+                layout = needsLayout();
+            }
+            List<Renderable2DInterface<? extends Locatable>> destroyed = new ArrayList<>();
+            List<Change> changes = readChanges(snapshot, layout, destroyed);
+            synchronized (this)
+            {
+                applyChanges(changes, layout);
+                if (layout)
+                {
+                    layout();
+                    this.sizeAtLayout = this.bounds == null ? 0 : Math.max(1, this.entries.size());
+                    this.boundsAtLayout = this.bounds;
+                }
+                for (Renderable2DInterface<? extends Locatable> renderable : destroyed)
+                {
+                    remove(renderable);
+                }
+            }
+            return destroyed;
+        }
+    }
+
+    /**
+     * Return whether the cell size has to be chosen again, because it has not been chosen yet, or because the number of
+     * renderables or the area that they cover has changed considerably since the last choice.
+     * @return boolean; whether the cell size has to be chosen again
+     */
+    private boolean needsLayout()
+    {
+        if (this.fixedCellSize != 0.0)
+        {
+            return false;
+        }
+        int size = this.entries.size();
+        if (this.sizeAtLayout == 0 || size > 2 * this.sizeAtLayout || size < this.sizeAtLayout / 4)
+        {
+            return true;
+        }
+        if (this.bounds == null || this.boundsAtLayout == null)
+        {
+            return false;
+        }
+        double widthRatio = this.bounds.getDeltaX() / Math.max(this.boundsAtLayout.getDeltaX(), this.cellSize);
+        double heightRatio = this.bounds.getDeltaY() / Math.max(this.boundsAtLayout.getDeltaY(), this.cellSize);
+        return widthRatio > 4.0 || heightRatio > 4.0;
+    }
+
+    /**
+     * Read the location and bounds of the entries, without holding the lock of the index. The location and bounds of the last
+     * update in the entries are only changed by an update, so they can be compared without the lock of the index as well.
+     * @param snapshot Entry[]; the entries at the start of the update
+     * @param layout boolean; whether all entries are placed again, so every entry with a location is a change
+     * @param destroyed List&lt;Renderable2DInterface&lt;? extends Locatable&gt;&gt;; the list to add destroyed renderables to
+     * @return List&lt;Change&gt;; the entries with a new location or bounds, or without a location
+     */
+    private List<Change> readChanges(final Entry[] snapshot, final boolean layout,
+            final List<Renderable2DInterface<? extends Locatable>> destroyed)
+    {
+        List<Change> changes = new ArrayList<>();
+        for (Entry entry : snapshot)
+        {
+            Locatable source = entry.renderable.getSource();
+            if (source == null)
+            {
+                destroyed.add(entry.renderable);
+                continue;
+            }
+            try
+            {
+                Point<?> location = source.getLocation();
+                if (location == null)
+                {
+                    if (entry.location != null)
+                    {
+                        changes.add(new Change(entry, null, null, entry.z));
+                    }
+                    continue;
+                }
+                Bounds<?, ?, ?> sourceBounds = source.getBounds();
+                if (layout || !entry.sameAs(location, sourceBounds))
+                {
+                    changes.add(new Change(entry, location, sourceBounds, source.getZ()));
+                }
+            }
+            catch (RemoteException exception)
+            {
+                CategoryLogger.always().warn(exception, "update");
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Apply the changes of the entries that are still in the index, move the changed entries to their new cells, and compute
+     * the total bounds. When all entries are placed again, the grid is cleared first, and the entries are placed by the
+     * layout afterwards.
+     * @param changes List&lt;Change&gt;; the entries with a new location or bounds, or without a location
+     * @param layout boolean; whether all entries are placed again after the update
+     */
+    private void applyChanges(final List<Change> changes, final boolean layout)
+    {
+        if (layout)
+        {
+            this.grid.clear();
+            this.large.clear();
+            for (Entry entry : this.entries)
+            {
+                entry.placed = false;
+                entry.location = null;
+            }
+        }
+        for (Change change : changes)
+        {
+            Entry entry = change.entry;
+            if (this.entryMap.get(entry.renderable) != entry)
+            {
+                continue;
+            }
+            if (change.location == null)
+            {
+                entry.location = null;
+                unplace(entry);
+                continue;
+            }
+            entry.location = change.location;
+            entry.sourceBounds = change.sourceBounds;
+            if (change.z != entry.z)
+            {
+                entry.z = change.z;
+                this.paintOrderChanged = true;
+            }
+            entry.minX = change.projected.getMinX();
+            entry.minY = change.projected.getMinY();
+            entry.maxX = change.projected.getMaxX();
+            entry.maxY = change.projected.getMaxY();
+            if (!layout)
+            {
+                place(entry);
+            }
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Entry entry : this.entries)
+        {
+            if (entry.location != null)
+            {
+                minX = Math.min(minX, entry.minX);
+                minY = Math.min(minY, entry.minY);
+                maxX = Math.max(maxX, entry.maxX);
+                maxY = Math.max(maxY, entry.maxY);
+            }
+        }
+        this.bounds = minX <= maxX && minY <= maxY ? new Bounds2d(minX, maxX, minY, maxY) : null;
+    }
+
+    /**
+     * Choose the cell size when it is not fixed, and place all entries with a location in the grid. The cell size is about
+     * twice the size of a typical renderable, and large enough to have a few renderables per cell on average. Both are
+     * estimated from a sample of the renderables, using the median size and the spread of the central 90% of the locations,
+     * so a few very large or very distant renderables do not spoil the grid for all others.
+     */
+    private void layout()
+    {
+        if (this.fixedCellSize == 0.0 && this.bounds != null)
+        {
+            int count = 0;
+            for (Entry entry : this.entries)
+            {
+                if (entry.location != null && entry.bounded)
+                {
+                    count++;
+                }
+            }
+            if (count > 0)
+            {
+                int stride = Math.max(1, count / LAYOUT_SAMPLE_SIZE);
+                int n = (count + stride - 1) / stride;
+                double[] sizes = new double[n];
+                double[] xs = new double[n];
+                double[] ys = new double[n];
+                int index = 0;
+                int sample = 0;
+                for (Entry entry : this.entries)
+                {
+                    if (entry.location != null && entry.bounded && index++ % stride == 0 && sample < n)
+                    {
+                        sizes[sample] = Math.max(entry.maxX - entry.minX, entry.maxY - entry.minY);
+                        xs[sample] = 0.5 * (entry.minX + entry.maxX);
+                        ys[sample] = 0.5 * (entry.minY + entry.maxY);
+                        sample++;
+                    }
+                }
+                Arrays.sort(sizes, 0, sample);
+                Arrays.sort(xs, 0, sample);
+                Arrays.sort(ys, 0, sample);
+                int low = sample / 20;
+                int high = sample - 1 - low;
+                double spread = Math.sqrt((xs[high] - xs[low]) * (ys[high] - ys[low]) / count);
+                double size = Math.max(2.0 * sizes[sample / 2], 2.0 * spread);
+                this.cellSize = size > 0.0 && !Double.isInfinite(size) ? size : 1.0;
+            }
+        }
+        for (Entry entry : this.entries)
+        {
+            if (entry.location != null)
+            {
+                place(entry);
+            }
+        }
+    }
+
+    /**
+     * Return whether the renderable is painted within its projected bounds in world coordinates.
+     * @param renderable Renderable2DInterface&lt;? extends Locatable&gt;; the renderable
+     * @return boolean; whether the renderable has reliable world bounds
+     */
+    private static boolean hasWorldBounds(final Renderable2DInterface<? extends Locatable> renderable)
+    {
+        if (!(renderable instanceof Renderable2D))
+        {
+            return false;
+        }
+        Renderable2D<?> renderable2D = (Renderable2D<?>) renderable;
+        return renderable2D.isTranslate() && renderable2D.isScale() && !renderable2D.isScaleObject();
+    }
+
+    /**
+     * Return the cell index for a world coordinate.
+     * @param value double; the world coordinate
+     * @return int; the cell index
+     */
+    private int cell(final double value)
+    {
+        double index = Math.floor(value / this.cellSize);
+        return (int) Math.max(-MAX_CELL_INDEX, Math.min(MAX_CELL_INDEX, index));
+    }
+
+    /**
+     * Pack the cell coordinates into one key.
+     * @param ix int; the cell index in x-direction
+     * @param iy int; the cell index in y-direction
+     * @return long; the key of the cell
+     */
+    private static long key(final int ix, final int iy)
+    {
+        return (((long) ix) << 32) | (iy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Store the entry in the cells that its bounds overlap, or in the list of large entries. Entries without world bounds are
+     * not stored in the grid.
+     * @param entry Entry; the entry to place
+     */
+    private void place(final Entry entry)
+    {
+        if (!entry.bounded)
+        {
+            return;
+        }
+        int ix0 = cell(entry.minX);
+        int iy0 = cell(entry.minY);
+        int ix1 = cell(entry.maxX);
+        int iy1 = cell(entry.maxY);
+        if (entry.placed && ix0 == entry.ix0 && iy0 == entry.iy0 && ix1 == entry.ix1 && iy1 == entry.iy1)
+        {
+            return;
+        }
+        unplace(entry);
+        entry.ix0 = ix0;
+        entry.iy0 = iy0;
+        entry.ix1 = ix1;
+        entry.iy1 = iy1;
+        entry.placed = true;
+        if ((long) (ix1 - ix0 + 1) * (iy1 - iy0 + 1) > MAX_CELLS)
+        {
+            entry.isLarge = true;
+            this.large.add(entry);
+            return;
+        }
+        entry.isLarge = false;
+        for (int ix = ix0; ix <= ix1; ix++)
+        {
+            for (int iy = iy0; iy <= iy1; iy++)
+            {
+                this.grid.getOrCreate(key(ix, iy)).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Remove the entry from the cells or the list of large entries in which it is stored.
+     * @param entry Entry; the entry to remove from the grid
+     */
+    private void unplace(final Entry entry)
+    {
+        if (!entry.placed)
+        {
+            return;
+        }
+        entry.placed = false;
+        if (entry.isLarge)
+        {
+            this.large.remove(entry);
+            return;
+        }
+        for (int ix = entry.ix0; ix <= entry.ix1; ix++)
+        {
+            for (int iy = entry.iy0; iy <= entry.iy1; iy++)
+            {
+                List<Entry> cell = this.grid.get(key(ix, iy));
+                if (cell != null)
+                {
+                    int index = cell.indexOf(entry);
+                    if (index >= 0)
+                    {
+                        cell.set(index, cell.get(cell.size() - 1));
+                        cell.remove(cell.size() - 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the renderables whose bounds overlap with the extent, and the renderables without world bounds, in paint order.
+     * @param extent Bounds2d; the extent in world coordinates
+     * @return List&lt;Renderable2DInterface&lt;? extends Locatable&gt;&gt;; the renderables to paint for the extent
+     * @throws NullPointerException when extent is null
+     */
+    public synchronized List<Renderable2DInterface<? extends Locatable>> query(final Bounds2d extent)
+    {
+        Throw.whenNull(extent, "extent cannot be null");
+        int stamp = ++this.queryStamp;
+        List<Entry> result = new ArrayList<>();
+        double minX = extent.getMinX();
+        double minY = extent.getMinY();
+        double maxX = extent.getMaxX();
+        double maxY = extent.getMaxY();
+        int ix0 = cell(minX);
+        int iy0 = cell(minY);
+        int ix1 = cell(maxX);
+        int iy1 = cell(maxY);
+        if ((long) (ix1 - ix0 + 1) * (iy1 - iy0 + 1) > this.grid.size())
+        {
+            // zoomed out: visiting the occupied cells is cheaper than visiting all cells in the extent
+            for (List<Entry> cell : this.grid.cells)
+            {
+                if (cell != null)
+                {
+                    collect(cell, stamp, minX, minY, maxX, maxY, result);
+                }
+            }
+        }
+        else
+        {
+            for (int ix = ix0; ix <= ix1; ix++)
+            {
+                for (int iy = iy0; iy <= iy1; iy++)
+                {
+                    List<Entry> cell = this.grid.get(key(ix, iy));
+                    if (cell != null)
+                    {
+                        collect(cell, stamp, minX, minY, maxX, maxY, result);
+                    }
+                }
+            }
+        }
+        collect(this.large, stamp, minX, minY, maxX, maxY, result);
+        return inPaintOrder(result, stamp);
+    }
+
+    /**
+     * Return the renderables whose bounds contain the point, and the renderables without world bounds, in paint order. The
+     * caller should still check with the contains() method of the renderable whether the point is really part of it.
+     * @param point Point2d; the point in world coordinates
+     * @return List&lt;Renderable2DInterface&lt;? extends Locatable&gt;&gt;; the candidate renderables for the point
+     * @throws NullPointerException when point is null
+     */
+    public synchronized List<Renderable2DInterface<? extends Locatable>> query(final Point2d point)
+    {
+        Throw.whenNull(point, "point cannot be null");
+        int stamp = ++this.queryStamp;
+        List<Entry> result = new ArrayList<>();
+        List<Entry> cell = this.grid.get(key(cell(point.getX()), cell(point.getY())));
+        if (cell != null)
+        {
+            collect(cell, stamp, point.getX(), point.getY(), point.getX(), point.getY(), result);
+        }
+        collect(this.large, stamp, point.getX(), point.getY(), point.getX(), point.getY(), result);
+        return inPaintOrder(result, stamp);
+    }
+
+    /**
+     * Add the entries of the list that overlap with the rectangle and that have not been added in this query to the result.
+     * @param list Collection&lt;Entry&gt;; the entries to check
+     * @param stamp int; the stamp of the query
+     * @param minX double; the minimum x of the rectangle
+     * @param minY double; the minimum y of the rectangle
+     * @param maxX double; the maximum x of the rectangle
+     * @param maxY double; the maximum y of the rectangle
+     * @param result List&lt;Entry&gt;; the list to add the entries to
+     */
+    private static void collect(final Collection<Entry> list, final int stamp, final double minX, final double minY,
+            final double maxX, final double maxY, final List<Entry> result)
+    {
+        for (Entry entry : list)
+        {
+            if (entry.stamp != stamp && entry.minX <= maxX && entry.maxX >= minX && entry.minY <= maxY && entry.maxY >= minY)
+            {
+                entry.stamp = stamp;
+                result.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Add the entries without world bounds to the result, and return the renderables in paint order, i.e., on z-value and then
+     * on id. A small result is sorted; for a large result, the entries are taken from the sorted list of all entries.
+     * @param result List&lt;Entry&gt;; the entries found in the grid, marked with the stamp of the query
+     * @param stamp int; the stamp of the query
+     * @return List&lt;Renderable2DInterface&lt;? extends Locatable&gt;&gt;; the renderables in paint order
+     */
+    private List<Renderable2DInterface<? extends Locatable>> inPaintOrder(final List<Entry> result, final int stamp)
+    {
+        for (Entry entry : this.unbounded)
+        {
+            entry.stamp = stamp;
+            result.add(entry);
+        }
+        List<Renderable2DInterface<? extends Locatable>> renderables = new ArrayList<>(result.size());
+        if (result.size() > this.entries.size() / 8)
+        {
+            if (this.paintOrderChanged)
+            {
+                this.paintOrder.clear();
+                this.paintOrder.addAll(this.entries);
+                this.paintOrder.sort(PAINT_ORDER);
+                this.paintOrderChanged = false;
+            }
+            for (Entry entry : this.paintOrder)
+            {
+                if (entry.stamp == stamp)
+                {
+                    renderables.add(entry.renderable);
+                }
+            }
+        }
+        else
+        {
+            result.sort(PAINT_ORDER);
+            for (Entry entry : result)
+            {
+                renderables.add(entry.renderable);
+            }
+        }
+        return renderables;
+    }
+
+    /**
+     * Return the bounds of all renderables with a location at the last update.
+     * @return Bounds2d; the bounds of all renderables with a location at the last update, or null when there are none
+     */
+    public synchronized Bounds2d getBounds()
+    {
+        return this.bounds;
+    }
+
+    /**
+     * Return the current cell size of the grid.
+     * @return double; the current cell size of the grid
+     */
+    public synchronized double getCellSize()
+    {
+        return this.cellSize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized String toString()
+    {
+        return "RenderableIndex [size=" + this.entries.size() + ", cellSize=" + this.cellSize + ", cells=" + this.grid.size()
+                + ", large=" + this.large.size() + ", unbounded=" + this.unbounded.size() + "]";
+    }
+
+    /** The administration of one renderable in the index. */
+    private static class Entry
+    {
+        /** the renderable. */
+        private final Renderable2DInterface<? extends Locatable> renderable;
+
+        /** the id of the renderable. */
+        private final long id;
+
+        /** the position of the entry in the list of entries. */
+        private int position;
+
+        /** the location at the last update, or null when the renderable has no location. */
+        private Point<?> location = null;
+
+        /** the bounds of the source at the last update. */
+        private Bounds<?, ?, ?> sourceBounds = null;
+
+        /** whether the renderable is painted within its projected bounds, so it can be stored in the grid. */
+        private final boolean bounded;
+
+        /** the z-value for the paint order at the last update. */
+        private double z;
+
+        /** the projected bounds in world coordinates. */
+        private double minX, minY, maxX, maxY;
+
+        /** the range of cells in which the entry is stored. */
+        private int ix0, iy0, ix1, iy1;
+
+        /** whether the entry is stored in the grid or in the list of large entries. */
+        private boolean placed = false;
+
+        /** whether the entry is stored in the list of large entries. */
+        private boolean isLarge = false;
+
+        /** the stamp of the last query that returned the entry. */
+        private int stamp = 0;
+
+        /**
+         * @param renderable Renderable2DInterface&lt;? extends Locatable&gt;; the renderable
+         */
+        Entry(final Renderable2DInterface<? extends Locatable> renderable)
+        {
+            this.renderable = renderable;
+            this.id = renderable.getId();
+            this.bounded = hasWorldBounds(renderable);
+        }
+
+        /**
+         * Return whether the location and the bounds are the same as at the last update.
+         * @param newLocation Point&lt;?&gt;; the current location
+         * @param newBounds Bounds&lt;?, ?, ?&gt;; the current bounds
+         * @return boolean; whether the location and the bounds did not change
+         */
+        boolean sameAs(final Point<?> newLocation, final Bounds<?, ?, ?> newBounds)
+        {
+            if (this.location == null)
+            {
+                return false;
+            }
+            if (newLocation != this.location && !newLocation.equals(this.location))
+            {
+                return false;
+            }
+            return newBounds == this.sourceBounds || newBounds.equals(this.sourceBounds);
+        }
+    }
+
+    /**
+     * The new location, bounds and z-value of an entry, read by the update without holding the lock of the index.
+     */
+    private static class Change
+    {
+        /** the entry. */
+        private final Entry entry;
+
+        /** the new location, or null when the renderable has no location anymore. */
+        private final Point<?> location;
+
+        /** the new bounds of the source. */
+        private final Bounds<?, ?, ?> sourceBounds;
+
+        /** the new z-value. */
+        private final double z;
+
+        /** the new projected bounds in world coordinates, or null when the renderable has no location. */
+        private final Bounds2d projected;
+
+        /**
+         * @param entry Entry; the entry
+         * @param location Point&lt;?&gt;; the new location, or null when the renderable has no location anymore
+         * @param sourceBounds Bounds&lt;?, ?, ?&gt;; the new bounds of the source
+         * @param z double; the new z-value
+         */
+        Change(final Entry entry, final Point<?> location, final Bounds<?, ?, ?> sourceBounds, final double z)
+        {
+            this.entry = entry;
+            this.location = location;
+            this.sourceBounds = sourceBounds;
+            this.z = z;
+            this.projected = location == null ? null : BoundsUtil.projectBounds(location, sourceBounds);
+        }
+    }
+
+    /**
+     * Hash map from packed cell coordinates to the list of entries of the cell, with open addressing on a primitive long key,
+     * because the cells are looked up for every renderable that moves. Cells are not removed when they become empty, since
+     * they are likely to be used again by the next renderable that moves into the cell.
+     */
+    private static class CellMap
+    {
+        /** the keys of the cells. */
+        private long[] keys = new long[256];
+
+        /** the cells, or null for an unused slot. */
+        private List<Entry>[] cells = newCells(256);
+
+        /** the number of cells in the map. */
+        private int size = 0;
+
+        /**
+         * Create an array of cells.
+         * @param length int; the length of the array
+         * @return List&lt;Entry&gt;[]; the new array
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static List<Entry>[] newCells(final int length)
+        {
+            return new List[length];
+        }
+
+        /**
+         * Return the slot of the key, or the empty slot where the key should be stored.
+         * @param key long; the key
+         * @return int; the slot of the key
+         */
+        private int slot(final long key)
+        {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int mask = this.keys.length - 1;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (this.cells[slot] != null && this.keys[slot] != key)
+            {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Return the cell with the key.
+         * @param key long; the key
+         * @return List&lt;Entry&gt;; the cell, or null when the cell does not exist
+         */
+        List<Entry> get(final long key)
+        {
+            return this.cells[slot(key)];
+        }
+
+        /**
+         * Return the cell with the key, and create it when it does not exist.
+         * @param key long; the key
+         * @return List&lt;Entry&gt;; the cell
+         */
+        List<Entry> getOrCreate(final long key)
+        {
+            int slot = slot(key);
+            if (this.cells[slot] == null)
+            {
+                if (2 * (this.size + 1) > this.keys.length)
+                {
+                    grow();
+                    slot = slot(key);
+                }
+                this.keys[slot] = key;
+                this.cells[slot] = new ArrayList<>(4);
+                this.size++;
+            }
+            return this.cells[slot];
+        }
+
+        /** Double the capacity of the map. */
+        private void grow()
+        {
+            long[] oldKeys = this.keys;
+            List<Entry>[] oldCells = this.cells;
+            this.keys = new long[2 * oldKeys.length];
+            this.cells = newCells(2 * oldKeys.length);
+            for (int i = 0; i < oldKeys.length; i++)
+            {
+                if (oldCells[i] != null)
+                {
+                    int slot = slot(oldKeys[i]);
+                    this.keys[slot] = oldKeys[i];
+                    this.cells[slot] = oldCells[i];
+                }
+            }
+        }
+
+        /**
+         * Return the number of cells in the map.
+         * @return int; the number of cells in the map
+         */
+        int size()
+        {
+            return this.size;
+        }
+
+        /** Remove all cells. */
+        void clear()
+        {
+            this.keys = new long[256];
+            this.cells = newCells(256);
+            this.size = 0;
+        }
+    }
+}
@@ -58,13 +58,15 @@ public interface FeatureInterface extends Serializable
     void setInitialized(boolean initialized);
     
     /**
-     * Return the number of shapes for this feature at this moment.
+     * Return the number of shapes for this feature at this moment, both the shapes that are stored as a GisObject, and the
+     * shapes in the geometry store.
      * @return int; the number of shapes in the data source
      */
     int getNumShapes();
 
     /**
-     * Return a GisObject.
+     * Return a GisObject. The shapes that are stored as a GisObject come first, followed by the shapes in the geometry store,
+     * for which a new GisObject is created.
      * @param index int; the number of the shape to be returned for this feature
      * @return GisObject returns a <code>nl.tudelft.simulation.dsol.animation.gis.GisObject</code>
      * @throws IndexOutOfBoundsException whenever index &gt; numShapes or index &lt; 0
@@ -72,18 +74,38 @@ public interface FeatureInterface extends Serializable
     GisObject getShape(int index) throws IndexOutOfBoundsException;
 
     /**
-     * Return all the shapes of the particular data source for this feature.
+     * Return all shapes of the particular data source for this feature, in the order of getShape(index): the shapes that are
+     * stored as a GisObject, followed by the shapes in the geometry store. The list is a live view, for which a new GisObject
+     * is created when a shape in the geometry store is retrieved, so iterating over the geometry store with getGeometry() is
+     * cheaper for large data sources. Added shapes are stored as a GisObject, and clear() also clears the geometry store.
      * @return List the resulting List of <code>nl.tudelft.simulation.dsol.animation.gis.GisObject</code>
      */
     List<GisObject> getShapes();
 
     /**
-     * Return the shapes of the particular data source for this feature, bound to a particular extent.
+     * Return the shapes of the particular data source for this feature that are stored as a GisObject, bound to a particular
+     * extent. The shapes in the geometry store for the extent are returned by getGeometryShapes(rectangle), so a map can draw
+     * them straight from the arrays of the store.
      * @param rectangle Bounds2d; the extent of the box (in geo-coordinates)
      * @return List the resulting List of <code>nl.tudelft.simulation.dsol.animation.gis.GisObject</code>
      */
      List<GisObject> getShapes(Bounds2d rectangle);
 
+    /**
+     * Return the compact store for the shapes of this feature that are not stored as a GisObject. Data sources with many
+     * static shapes, such as OpenStreetMap files, add their shapes to the geometry store.
+     * @return GeometryStore; the compact store for the shapes of this feature
+     */
+    GeometryStore getGeometry();
+
+    /**
+     * Return the numbers of the shapes in the geometry store that are bound to a particular extent.
+     * @param rectangle Bounds2d; the extent of the box (in geo-coordinates)
+     * @return int[]; the shape numbers in the geometry store of which the bounding box overlaps with the extent, in ascending
+     *         order
+     */
+    int[] getGeometryShapes(Bounds2d rectangle);
+
 //    /**
 //     * Set the data source, which contains the location of the GIS data.
 //     * @param dataSource DataSourceInterface; the data source, contains the location of the GIS data
@@ -0,0 +1,658 @@
+package nl.tudelft.simulation.dsol.animation.gis;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * GeometryStore stores the shapes of a feature in a few primitive arrays, instead of as a Path2D and a String[] per shape. The
+ * (x, y) coordinates of all points are stored after each other in one float[]. A shape consists of one or more parts, and a
+ * part is a connected sequence of points; the start of each part is stored as a point index in an int[], and the start of
+ * each shape as a part index in another int[]. A point is stored as a part with one point. The attribute values are
+ * dictionary-encoded: each different String is stored once, and a shape stores the codes of its attribute values. This takes
+ * 8 bytes per point and around 16 bytes per shape, where a GisObject with a path and its own String[] of attribute values
+ * takes a few hundred bytes per shape.
+ * <p>
+ * Shapes can only be added to the store, or the store can be cleared as a whole. The store is filled by a single thread, e.g.,
+ * the reader of a data source, before it is drawn. Shapes are drawn directly from the arrays with draw(), without creating a
+ * Shape object per shape.
+ * </p>
+ * <p>
+ * The arrays can be written to a binary file with writeTo(), and read back with readFrom() from a buffer, e.g., a file that is
+ * mapped into memory, with one bulk copy per array. This is how a compiled map file stores the geometry of its features.
+ * </p>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class GeometryStore implements Serializable
+{
+    /** */
+    private static final long serialVersionUID = 20220101L;
+
+    /** the initial capacity of the arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** the coordinates of the points, as x at index 2 * point number and y at index 2 * point number + 1. */
+    private float[] coordinates = new float[2 * INITIAL_CAPACITY];
+
+    /** the number of points. */
+    private int numPoints = 0;
+
+    /** the point number of the first point of each part. */
+    private int[] partStarts = new int[INITIAL_CAPACITY];
+
+    /** the number of parts. */
+    private int numParts = 0;
+
+    /** the part number of the first part of each shape. */
+    private int[] shapeStarts = new int[INITIAL_CAPACITY];
+
+    /** the index in attributeCodes of the first attribute value of each shape. */
+    private int[] attributeStarts = new int[INITIAL_CAPACITY];
+
+    /** the number of shapes. */
+    private int numShapes = 0;
+
+    /** the dictionary codes of the attribute values of all shapes. */
+    private int[] attributeCodes = new int[INITIAL_CAPACITY];
+
+    /** the number of attribute codes. */
+    private int numAttributeCodes = 0;
+
+    /** the different attribute values; the code of an attribute value is its index in this list. */
+    private List<String> dictionary = new ArrayList<>();
+
+    /** the codes of the attribute values in the dictionary; rebuilt when needed after deserialization. */
+    private transient Map<String, Integer> dictionaryCodes = null;
+
+    /** the number of times the store has been changed, to see whether derived data, such as a spatial index, is still valid. */
+    private int modCount = 0;
+
+    /**
+     * Start a new shape with the given attribute values. The points of the shape are added with startPart() and addPoint(). A
+     * shape without points is allowed, e.g., to keep the shape numbers equal to the record numbers in a data source.
+     * @param attributeValues String...; the attribute values of the shape
+     * @return int; the shape number of the new shape
+     * @throws NullPointerException when attributeValues is null
+     */
+    public int startShape(final String... attributeValues)
+    {
+        Throw.whenNull(attributeValues, "attributeValues cannot be null");
+        if (this.numShapes == this.shapeStarts.length)
+        {
+            this.shapeStarts = Arrays.copyOf(this.shapeStarts, 2 * this.numShapes);
+            this.attributeStarts = Arrays.copyOf(this.attributeStarts, 2 * this.numShapes);
+        }
+        this.shapeStarts[this.numShapes] = this.numParts;
+        this.attributeStarts[this.numShapes] = this.numAttributeCodes;
+        for (String value : attributeValues)
+        {
+            if (this.numAttributeCodes == this.attributeCodes.length)
+            {
+                this.attributeCodes = Arrays.copyOf(this.attributeCodes, 2 * this.numAttributeCodes);
+            }
+            this.attributeCodes[this.numAttributeCodes++] = encode(value);
+        }
+        this.modCount++;
+        return this.numShapes++;
+    }
+
+    /**
+     * Start a new part of the last shape.
+     * @throws IllegalStateException when no shape has been started
+     */
+    public void startPart()
+    {
+        Throw.when(this.numShapes == 0, IllegalStateException.class, "startPart called before startShape");
+        if (this.numParts == this.partStarts.length)
+        {
+            this.partStarts = Arrays.copyOf(this.partStarts, 2 * this.numParts);
+        }
+        this.partStarts[this.numParts++] = this.numPoints;
+        this.modCount++;
+    }
+
+    /**
+     * Add a point to the last part of the last shape.
+     * @param x double; the x-coordinate of the point
+     * @param y double; the y-coordinate of the point
+     * @throws IllegalStateException when no part of the last shape has been started
+     */
+    public void addPoint(final double x, final double y)
+    {
+        Throw.when(this.numShapes == 0 || this.shapeStarts[this.numShapes - 1] == this.numParts, IllegalStateException.class,
+                "addPoint called before startPart");
+        if (2 * this.numPoints == this.coordinates.length)
+        {
+            this.coordinates = Arrays.copyOf(this.coordinates, 4 * this.numPoints);
+        }
+        this.coordinates[2 * this.numPoints] = (float) x;
+        this.coordinates[2 * this.numPoints + 1] = (float) y;
+        this.numPoints++;
+        this.modCount++;
+    }
+
+    /**
+     * Add a shape that has been read as an object, as used in a GisObject: a Point2D, a Point2D[], or a Shape. Every point of a
+     * Point2D[] is stored as a separate part. A curved segment of a Shape is stored as a line to the end point of the segment.
+     * @param shape Object; the Point2D, Point2D[], or Shape to add
+     * @param attributeValues String...; the attribute values of the shape
+     * @return int; the shape number of the new shape
+     * @throws IllegalArgumentException when the shape is not a Point2D, Point2D[], or Shape
+     */
+    public int addShape(final Object shape, final String... attributeValues)
+    {
+        Throw.when(!(shape instanceof Point2D || shape instanceof Point2D[] || shape instanceof Shape),
+                IllegalArgumentException.class, "shape %s cannot be added to a GeometryStore", shape);
+        int shapeNumber = startShape(attributeValues);
+        if (shape instanceof Point2D)
+        {
+            startPart();
+            addPoint(((Point2D) shape).getX(), ((Point2D) shape).getY());
+        }
+        else if (shape instanceof Point2D[])
+        {
+            for (Point2D point : (Point2D[]) shape)
+            {
+                startPart();
+                addPoint(point.getX(), point.getY());
+            }
+        }
+        else
+        {
+            double[] segment = new double[6];
+            for (PathIterator it = ((Shape) shape).getPathIterator(null); !it.isDone(); it.next())
+            {
+                int type = it.currentSegment(segment);
+                if (type == PathIterator.SEG_MOVETO || this.shapeStarts[shapeNumber] == this.numParts)
+                {
+                    startPart();
+                }
+                if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO)
+                {
+                    addPoint(segment[0], segment[1]);
+                }
+                else if (type == PathIterator.SEG_QUADTO)
+                {
+                    addPoint(segment[2], segment[3]);
+                }
+                else if (type == PathIterator.SEG_CUBICTO)
+                {
+                    addPoint(segment[4], segment[5]);
+                }
+            }
+        }
+        return shapeNumber;
+    }
+
+    /**
+     * Remove all shapes from the store.
+     */
+    public void clear()
+    {
+        this.numPoints = 0;
+        this.numParts = 0;
+        this.numShapes = 0;
+        this.numAttributeCodes = 0;
+        this.dictionary.clear();
+        this.dictionaryCodes = null;
+        this.modCount++;
+    }
+
+    /**
+     * Shrink the arrays to the number of points, parts, and shapes in the store, e.g., after a data source has been read.
+     */
+    public void trimToSize()
+    {
+        this.coordinates = Arrays.copyOf(this.coordinates, Math.max(2 * this.numPoints, 2));
+        this.partStarts = Arrays.copyOf(this.partStarts, Math.max(this.numParts, 1));
+        this.shapeStarts = Arrays.copyOf(this.shapeStarts, Math.max(this.numShapes, 1));
+        this.attributeStarts = Arrays.copyOf(this.attributeStarts, Math.max(this.numShapes, 1));
+        this.attributeCodes = Arrays.copyOf(this.attributeCodes, Math.max(this.numAttributeCodes, 1));
+    }
+
+    /**
+     * Write the contents of the store to a binary output, to be read back with readFrom(). The output starts with the number of
+     * points, parts, shapes, attribute codes, and dictionary entries as int values, followed by the coordinates as float
+     * values, the part starts, shape starts, attribute starts, and attribute codes as int values, and the dictionary entries as
+     * strings, where each string is stored as the int number of its UTF-8 bytes, followed by the bytes, or as -1 for null.
+     * @param output DataOutput; the output to write to, which writes the values in big-endian order
+     * @throws IOException when writing fails
+     */
+    public void writeTo(final DataOutput output) throws IOException
+    {
+        output.writeInt(this.numPoints);
+        output.writeInt(this.numParts);
+        output.writeInt(this.numShapes);
+        output.writeInt(this.numAttributeCodes);
+        output.writeInt(this.dictionary.size());
+        for (int i = 0; i < 2 * this.numPoints; i++)
+        {
+            output.writeFloat(this.coordinates[i]);
+        }
+        writeInts(output, this.partStarts, this.numParts);
+        writeInts(output, this.shapeStarts, this.numShapes);
+        writeInts(output, this.attributeStarts, this.numShapes);
+        writeInts(output, this.attributeCodes, this.numAttributeCodes);
+        for (String value : this.dictionary)
+        {
+            if (value == null)
+            {
+                output.writeInt(-1);
+            }
+            else
+            {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Write the first values of an int[] to a binary output.
+     * @param output DataOutput; the output to write to
+     * @param values int[]; the array with the values
+     * @param length int; the number of values to write
+     * @throws IOException when writing fails
+     */
+    private static void writeInts(final DataOutput output, final int[] values, final int length) throws IOException
+    {
+        for (int i = 0; i < length; i++)
+        {
+            output.writeInt(values[i]);
+        }
+    }
+
+    /**
+     * Replace the contents of the store by the contents that have been written by writeTo(), read from the current position of
+     * a big-endian buffer. The arrays are filled with one bulk copy each, so reading from a memory-mapped file is fast. After
+     * the call, the position of the buffer is after the contents of the store.
+     * @param buffer ByteBuffer; the buffer to read from, in big-endian order
+     * @throws IOException when the contents in the buffer are not valid, or end before the end of the store
+     */
+    public void readFrom(final ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            int points = buffer.getInt();
+            int parts = buffer.getInt();
+            int shapes = buffer.getInt();
+            int codes = buffer.getInt();
+            int dictionarySize = buffer.getInt();
+            if (points < 0 || parts < 0 || shapes < 0 || codes < 0 || dictionarySize < 0
+                    || 8L * points + 4L * parts + 8L * shapes + 4L * codes > buffer.remaining())
+            {
+                throw new IOException("invalid geometry header in buffer");
+            }
+            float[] newCoordinates = new float[Math.max(2 * points, 2)];
+            buffer.asFloatBuffer().get(newCoordinates, 0, 2 * points);
+            buffer.position(buffer.position() + 8 * points);
+            int[] newPartStarts = readInts(buffer, parts);
+            int[] newShapeStarts = readInts(buffer, shapes);
+            int[] newAttributeStarts = readInts(buffer, shapes);
+            int[] newAttributeCodes = readInts(buffer, codes);
+            if (!isAscending(newPartStarts, parts, points) || !isAscending(newShapeStarts, shapes, parts)
+                    || !isAscending(newAttributeStarts, shapes, codes))
+            {
+                throw new IOException("invalid geometry index in buffer");
+            }
+            for (int i = 0; i < codes; i++)
+            {
+                if (newAttributeCodes[i] < 0 || newAttributeCodes[i] >= dictionarySize)
+                {
+                    throw new IOException("invalid attribute code " + newAttributeCodes[i] + " in buffer");
+                }
+            }
+            List<String> newDictionary = new ArrayList<>(dictionarySize);
+            for (int i = 0; i < dictionarySize; i++)
+            {
+                int length = buffer.getInt();
+                if (length < -1 || length > buffer.remaining())
+                {
+                    throw new IOException("invalid length " + length + " of a geometry attribute value in buffer");
+                }
+                if (length == -1)
+                {
+                    newDictionary.add(null);
+                }
+                else
+                {
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    newDictionary.add(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+            this.coordinates = newCoordinates;
+            this.numPoints = points;
+            this.partStarts = newPartStarts;
+            this.numParts = parts;
+            this.shapeStarts = newShapeStarts;
+            this.attributeStarts = newAttributeStarts;
+            this.numShapes = shapes;
+            this.attributeCodes = newAttributeCodes;
+            this.numAttributeCodes = codes;
+            this.dictionary = newDictionary;
+            this.dictionaryCodes = null;
+            this.modCount++;
+        }
+        catch (BufferUnderflowException exception)
+        {
+            throw new IOException("geometry in buffer ends before the end of the store", exception);
+        }
+    }
+
+    /**
+     * Read an int[] from the current position of a buffer, with one bulk copy.
+     * @param buffer ByteBuffer; the buffer to read from
+     * @param length int; the number of values to read
+     * @return int[]; an array with the values, with a length of at least 1
+     */
+    private static int[] readInts(final ByteBuffer buffer, final int length)
+    {
+        int[] values = new int[Math.max(length, 1)];
+        buffer.asIntBuffer().get(values, 0, length);
+        buffer.position(buffer.position() + 4 * length);
+        return values;
+    }
+
+    /**
+     * Return whether the first values of an array of start indices are ascending, and lie between 0 and a maximum value.
+     * @param starts int[]; the start indices
+     * @param length int; the number of start indices to check
+     * @param max int; the maximum value of a start index
+     * @return boolean; whether the start indices are ascending, and lie between 0 and max
+     */
+    private static boolean isAscending(final int[] starts, final int length, final int max)
+    {
+        int previous = 0;
+        for (int i = 0; i < length; i++)
+        {
+            if (starts[i] < previous || starts[i] > max)
+            {
+                return false;
+            }
+            previous = starts[i];
+        }
+        return true;
+    }
+
+    /**
+     * Return the dictionary code of an attribute value, and add the value to the dictionary when it is not there yet.
+     * @param value String; the attribute value
+     * @return int; the dictionary code of the attribute value
+     */
+    private int encode(final String value)
+    {
+        if (this.dictionaryCodes == null)
+        {
+            this.dictionaryCodes = new HashMap<>();
+            for (int i = 0; i < this.dictionary.size(); i++)
+            {
+                this.dictionaryCodes.put(this.dictionary.get(i), i);
+            }
+        }
+        Integer code = this.dictionaryCodes.get(value);
+        if (code == null)
+        {
+            code = this.dictionary.size();
+            this.dictionary.add(value);
+            this.dictionaryCodes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Return the number of shapes in the store.
+     * @return int; the number of shapes in the store
+     */
+    public int getNumShapes()
+    {
+        return this.numShapes;
+    }
+
+    /**
+     * Return the total number of points of all shapes in the store.
+     * @return int; the total number of points of all shapes in the store
+     */
+    public int getNumPoints()
+    {
+        return this.numPoints;
+    }
+
+    /**
+     * Return the number of different attribute values in the dictionary.
+     * @return int; the number of different attribute values in the dictionary
+     */
+    public int getDictionarySize()
+    {
+        return this.dictionary.size();
+    }
+
+    /**
+     * Return the number of times the store has been changed, so derived data, such as a spatial index, can be rebuilt when the
+     * store changes.
+     * @return int; the number of times the store has been changed
+     */
+    public int getModCount()
+    {
+        return this.modCount;
+    }
+
+    /**
+     * Check the shape number.
+     * @param shape int; the shape number
+     * @throws IndexOutOfBoundsException when shape &lt; 0 or shape &gt;= getNumShapes()
+     */
+    private void checkShape(final int shape)
+    {
+        if (shape < 0 || shape >= this.numShapes)
+        {
+            throw new IndexOutOfBoundsException("shape " + shape + ", while number of shapes in the store: " + this.numShapes);
+        }
+    }
+
+    /**
+     * Return the number of parts of a shape.
+     * @param shape int; the shape number
+     * @return int; the number of parts of the shape
+     * @throws IndexOutOfBoundsException when shape &lt; 0 or shape &gt;= getNumShapes()
+     */
+    public int getNumParts(final int shape)
+    {
+        checkShape(shape);
+        return partEnd(shape) - this.shapeStarts[shape];
+    }
+
+    /**
+     * Return the part number after the last part of a shape.
+     * @param shape int; the shape number
+     * @return int; the part number after the last part of the shape
+     */
+    private int partEnd(final int shape)
+    {
+        return shape + 1 < this.numShapes ? this.shapeStarts[shape + 1] : this.numParts;
+    }
+
+    /**
+     * Return the point number after the last point of a part.
+     * @param part int; the part number
+     * @return int; the point number after the last point of the part
+     */
+    private int pointEnd(final int part)
+    {
+        return part + 1 < this.numParts ? this.partStarts[part + 1] : this.numPoints;
+    }
+
+    /**
+     * Return the attribute values of a shape.
+     * @param shape int; the shape number
+     * @return String[]; a new array with the attribute values of the shape
+     * @throws IndexOutOfBoundsException when shape &lt; 0 or shape &gt;= getNumShapes()
+     */
+    public String[] getAttributeValues(final int shape)
+    {
+        checkShape(shape);
+        int start = this.attributeStarts[shape];
+        int end = shape + 1 < this.numShapes ? this.attributeStarts[shape + 1] : this.numAttributeCodes;
+        String[] result = new String[end - start];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = this.dictionary.get(this.attributeCodes[start + i]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the bounding boxes of all shapes, e.g., to build a spatial index.
+     * @return double[]; the bounding box of each shape as {minX, minY, maxX, maxY} at index 4 * shape number, or NaN values for
+     *         a shape without points
+     */
+    public double[] getBoxes()
+    {
+        double[] boxes = new double[4 * this.numShapes];
+        for (int shape = 0; shape < this.numShapes; shape++)
+        {
+            // the points of the parts of a shape are stored after each other
+            int first = this.shapeStarts[shape] < partEnd(shape) ? this.partStarts[this.shapeStarts[shape]] : 0;
+            int last = this.shapeStarts[shape] < partEnd(shape) ? pointEnd(partEnd(shape) - 1) : 0;
+            double minX = Double.NaN;
+            double minY = Double.NaN;
+            double maxX = Double.NaN;
+            double maxY = Double.NaN;
+            if (last > first)
+            {
+                minX = Double.POSITIVE_INFINITY;
+                minY = Double.POSITIVE_INFINITY;
+                maxX = Double.NEGATIVE_INFINITY;
+                maxY = Double.NEGATIVE_INFINITY;
+                for (int p = first; p < last; p++)
+                {
+                    minX = Math.min(minX, this.coordinates[2 * p]);
+                    minY = Math.min(minY, this.coordinates[2 * p + 1]);
+                    maxX = Math.max(maxX, this.coordinates[2 * p]);
+                    maxY = Math.max(maxY, this.coordinates[2 * p + 1]);
+                }
+            }
+            boxes[4 * shape] = minX;
+            boxes[4 * shape + 1] = minY;
+            boxes[4 * shape + 2] = maxX;
+            boxes[4 * shape + 3] = maxY;
+        }
+        return boxes;
+    }
+
+    /**
+     * Append the parts of a shape to a path, where every part starts with a moveTo.
+     * @param shape int; the shape number
+     * @param path Path2D; the path to which the parts of the shape are appended
+     * @throws IndexOutOfBoundsException when shape &lt; 0 or shape &gt;= getNumShapes()
+     */
+    public void appendTo(final int shape, final Path2D path)
+    {
+        checkShape(shape);
+        for (int part = this.shapeStarts[shape]; part < partEnd(shape); part++)
+        {
+            for (int p = this.partStarts[part]; p < pointEnd(part); p++)
+            {
+                if (p == this.partStarts[part])
+                {
+                    path.moveTo(this.coordinates[2 * p], this.coordinates[2 * p + 1]);
+                }
+                else
+                {
+                    path.lineTo(this.coordinates[2 * p], this.coordinates[2 * p + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw shapes directly from the arrays of the store. The coordinates of each part are transformed in one call to the
+     * transform, and the shapes are drawn with one reused path, so no objects are created per shape.
+     * @param graphics Graphics2D; the graphics object to draw on
+     * @param shapes int[]; the shape numbers of the shapes to draw
+     * @param transform AffineTransform; the transform from the coordinates in the store to the screen, or null to draw the
+     *            coordinates as they are
+     * @param fillColor Color; the color to fill the shapes with, or null to not fill the shapes
+     * @param outlineColor Color; the color to draw the outline of the shapes with, or null to not draw the outline
+     * @throws IndexOutOfBoundsException when a shape number is &lt; 0 or &gt;= getNumShapes()
+     */
+    public void draw(final Graphics2D graphics, final int[] shapes, final AffineTransform transform, final Color fillColor,
+            final Color outlineColor)
+    {
+        Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, INITIAL_CAPACITY);
+        float[] screen = new float[2 * INITIAL_CAPACITY];
+        for (int shape : shapes)
+        {
+            checkShape(shape);
+            path.reset();
+            for (int part = this.shapeStarts[shape]; part < partEnd(shape); part++)
+            {
+                int first = this.partStarts[part];
+                int n = pointEnd(part) - first;
+                if (n == 0)
+                {
+                    continue;
+                }
+                if (screen.length < 2 * n)
+                {
+                    screen = new float[Math.max(2 * n, 2 * screen.length)];
+                }
+                if (transform == null)
+                {
+                    System.arraycopy(this.coordinates, 2 * first, screen, 0, 2 * n);
+                }
+                else
+                {
+                    transform.transform(this.coordinates, 2 * first, screen, 0, n);
+                }
+                path.moveTo(screen[0], screen[1]);
+                for (int p = 1; p < n; p++)
+                {
+                    path.lineTo(screen[2 * p], screen[2 * p + 1]);
+                }
+            }
+            if (fillColor != null)
+            {
+                graphics.setColor(fillColor);
+                graphics.fill(path);
+            }
+            if (outlineColor != null)
+            {
+                graphics.setColor(outlineColor);
+                graphics.draw(path);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "GeometryStore [numShapes=" + this.numShapes + ", numParts=" + this.numParts + ", numPoints=" + this.numPoints
+                + ", dictionarySize=" + this.dictionary.size() + "]";
+    }
+}
@@ -1,5 +1,6 @@
 package nl.tudelft.simulation.dsol.animation.gis;
 
+import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
 import java.io.Serializable;
@@ -73,6 +74,20 @@ public interface GisMapInterface extends Serializable
      */
     Graphics2D drawMap(Graphics2D graphics) throws DSOLGisException, RemoteException;
 
+    /**
+     * Draw the visible static or dynamic layers of the map for the given extent on a graphics object of the given size, without
+     * drawing the background. Contrary to drawMap, this method does not use or change the extent and image of the map, so it
+     * can be called by several threads at the same time, e.g., to draw tiles of the map.
+     * @param graphics Graphics2D; the graphics object
+     * @param extent Bounds2d; the extent of the map to draw
+     * @param size Dimension; the size of the graphics object in pixels
+     * @param dynamic boolean; true to draw the dynamic layers, false to draw the static layers
+     * @throws DSOLGisException on drawing failure
+     * @throws RemoteException on network failure
+     */
+    void drawLayers(Graphics2D graphics, Bounds2d extent, Dimension size, boolean dynamic)
+            throws DSOLGisException, RemoteException;
+
     /**
      * Getter for property extent.
      * @return Bounds2d; the extent of the map
@@ -0,0 +1,663 @@
+package nl.tudelft.simulation.dsol.animation.gis;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.imageio.ImageIO;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
+
+/**
+ * GisTileCache draws the static layers of a GIS map from a cache of image tiles, so panning and zooming do not redraw all the
+ * shapes of the map. The world is divided into square tiles of TILE_SIZE pixels per zoom level, where the number of world units
+ * per pixel of a zoom level is a power of 2. A paint operation uses the level that is just as fine as, or finer than the
+ * resolution of the screen, and scales the tiles to the screen. The tiles are kept in memory with least-recently-used
+ * eviction, and can optionally be spilled to a directory on disk when they are evicted.
+ * <p>
+ * Missing tiles are drawn on background threads. Until a tile is available, the part of a coarser tile that covers it is shown,
+ * if there is one. When a tile is ready, the image observers that asked for it are notified with imageUpdate(), just like for
+ * an image that is loaded asynchronously, so the animation panel repaints. The dynamic layers of the map are not cached, and
+ * are drawn on top of the tiles for every paint operation.
+ * </p>
+ * <p>
+ * When the layers of the map change, clear() has to be called to discard the tiles.
+ * </p>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class GisTileCache
+{
+    /** the width and height of a tile in pixels. */
+    public static final int TILE_SIZE = 256;
+
+    /** the number of coarser levels that are searched for a tile to show while a tile is drawn. */
+    private static final int FALLBACK_LEVELS = 4;
+
+    /** the shared threads that draw the tiles, and write them to disk. */
+    private static ExecutorService executor = null;
+
+    /** the map of which the static layers are cached. */
+    private final GisMapInterface map;
+
+    /** the tiles in memory, in least-recently-used order. */
+    private final LinkedHashMap<TileKey, BufferedImage> tiles;
+
+    /** the tiles that are being drawn or read from disk. */
+    private final Set<TileKey> pending = new HashSet<>();
+
+    /** the tiles that have been written to disk. */
+    private final Set<TileKey> spilled = new HashSet<>();
+
+    /** the image observers to notify when a tile is ready. */
+    private final Set<ImageObserver> observers = new LinkedHashSet<>();
+
+    /** the maximum number of tiles in memory. */
+    private int maxTiles;
+
+    /** the directory to which evicted tiles are written, or null when evicted tiles are discarded. */
+    private File diskDirectory = null;
+
+    /** whether missing tiles are drawn on background threads, or right away in the paint operation. */
+    private boolean background = true;
+
+    /** the generation of the tiles, which increases when the cache is cleared, to discard tiles of an older generation. */
+    private int generation = 0;
+
+    /**
+     * Construct a tile cache for the static layers of a map that keeps at most 256 tiles in memory.
+     * @param map GisMapInterface; the map of which the static layers are cached
+     */
+    public GisTileCache(final GisMapInterface map)
+    {
+        this(map, 256);
+    }
+
+    /**
+     * Construct a tile cache for the static layers of a map.
+     * @param map GisMapInterface; the map of which the static layers are cached
+     * @param maxTiles int; the maximum number of tiles in memory; each tile takes 256 kB
+     * @throws NullPointerException when map is null
+     * @throws IllegalArgumentException when maxTiles is smaller than 1
+     */
+    public GisTileCache(final GisMapInterface map, final int maxTiles)
+    {
+        Throw.whenNull(map, "map cannot be null");
+        Throw.when(maxTiles < 1, IllegalArgumentException.class, "maxTiles should be at least 1");
+        this.map = map;
+        this.maxTiles = maxTiles;
+        this.tiles = new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true)
+        {
+            /** */
+            private static final long serialVersionUID = 20220101L;
+
+            /** {@inheritDoc} */
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<TileKey, BufferedImage> eldest)
+            {
+                if (size() > GisTileCache.this.maxTiles)
+                {
+                    spill(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Draw the map for the extent on the screen: the static layers from the tiles, and the dynamic layers on top.
+     * @param graphics Graphics2D; the graphics object
+     * @param extent Bounds2d; the extent of the panel
+     * @param screen Dimension; the size of the panel
+     * @param observer ImageObserver; the observer to notify when missing tiles are ready, can be null
+     */
+    public void paint(final Graphics2D graphics, final Bounds2d extent, final Dimension screen, final ImageObserver observer)
+    {
+        if (screen.width <= 0 || screen.height <= 0 || extent.getDeltaX() <= 0.0 || extent.getDeltaY() <= 0.0)
+        {
+            return;
+        }
+        double unitsPerPixelX = extent.getDeltaX() / screen.width;
+        double unitsPerPixelY = extent.getDeltaY() / screen.height;
+        int levelX = Math.getExponent(unitsPerPixelX);
+        int levelY = Math.getExponent(unitsPerPixelY);
+        double tileWidth = TILE_SIZE * Math.scalb(1.0, levelX);
+        double tileHeight = TILE_SIZE * Math.scalb(1.0, levelY);
+        long tx0 = (long) Math.floor(extent.getMinX() / tileWidth);
+        long tx1 = (long) Math.floor(extent.getMaxX() / tileWidth);
+        long ty0 = (long) Math.floor(extent.getMinY() / tileHeight);
+        long ty1 = (long) Math.floor(extent.getMaxY() / tileHeight);
+
+        Object interpolation = graphics.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        try
+        {
+            List<TileKey> missing = new ArrayList<>();
+            for (long ty = ty0; ty <= ty1; ty++)
+            {
+                for (long tx = tx0; tx <= tx1; tx++)
+                {
+                    TileKey key = new TileKey(levelX, levelY, tx, ty);
+                    BufferedImage image = getTile(key);
+                    if (image == null)
+                    {
+                        missing.add(key);
+                        drawFallback(graphics, key, extent, screen, unitsPerPixelX, unitsPerPixelY);
+                    }
+                    else
+                    {
+                        drawImage(graphics, image, tx * tileWidth, (tx + 1) * tileWidth, ty * tileHeight,
+                                (ty + 1) * tileHeight, 0, 0, TILE_SIZE, TILE_SIZE, extent, screen, unitsPerPixelX,
+                                unitsPerPixelY);
+                    }
+                }
+            }
+            for (TileKey key : missing)
+            {
+                if (this.background)
+                {
+                    requestTile(key, observer);
+                }
+                else
+                {
+                    BufferedImage image = renderTile(key);
+                    putTile(key, image, this.generation);
+                    drawImage(graphics, image, key.tx * tileWidth, (key.tx + 1) * tileWidth, key.ty * tileHeight,
+                            (key.ty + 1) * tileHeight, 0, 0, TILE_SIZE, TILE_SIZE, extent, screen, unitsPerPixelX,
+                            unitsPerPixelY);
+                }
+            }
+        }
+        finally
+        {
+            if (interpolation != null)
+            {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            }
+        }
+
+        // the dynamic layers are drawn on top of the tiles for every paint operation
+        try
+        {
+            this.map.drawLayers(graphics, extent, screen, true);
+        }
+        catch (Exception exception)
+        {
+            CategoryLogger.always().warn(exception, "paint");
+        }
+    }
+
+    /**
+     * Draw the part of a coarser tile that covers a missing tile, when such a tile is in memory.
+     * @param graphics Graphics2D; the graphics object
+     * @param key TileKey; the missing tile
+     * @param extent Bounds2d; the extent of the panel
+     * @param screen Dimension; the size of the panel
+     * @param unitsPerPixelX double; the world units per pixel on the screen in x-direction
+     * @param unitsPerPixelY double; the world units per pixel on the screen in y-direction
+     */
+    private void drawFallback(final Graphics2D graphics, final TileKey key, final Bounds2d extent, final Dimension screen,
+            final double unitsPerPixelX, final double unitsPerPixelY)
+    {
+        for (int k = 1; k <= FALLBACK_LEVELS; k++)
+        {
+            TileKey parent = new TileKey(key.levelX + k, key.levelY + k, key.tx >> k, key.ty >> k);
+            BufferedImage image;
+            synchronized (this)
+            {
+                image = this.tiles.get(parent);
+            }
+            if (image != null)
+            {
+                // the missing tile is a square of TILE_SIZE / 2^k pixels in the parent tile; pixel row 0 is the top
+                int part = TILE_SIZE >> k;
+                int sx = (int) (key.tx - (parent.tx << k)) * part;
+                int sy = TILE_SIZE - (int) (key.ty - (parent.ty << k) + 1) * part;
+                double tileWidth = TILE_SIZE * Math.scalb(1.0, key.levelX);
+                double tileHeight = TILE_SIZE * Math.scalb(1.0, key.levelY);
+                drawImage(graphics, image, key.tx * tileWidth, (key.tx + 1) * tileWidth, key.ty * tileHeight,
+                        (key.ty + 1) * tileHeight, sx, sy, sx + part, sy + part, extent, screen, unitsPerPixelX,
+                        unitsPerPixelY);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Draw a part of a tile image on the world rectangle that it covers. The screen coordinates of the corners are rounded, so
+     * adjacent tiles do not leave gaps between them.
+     * @param graphics Graphics2D; the graphics object
+     * @param image BufferedImage; the tile image
+     * @param minX double; the minimum x-coordinate of the world rectangle
+     * @param maxX double; the maximum x-coordinate of the world rectangle
+     * @param minY double; the minimum y-coordinate of the world rectangle
+     * @param maxY double; the maximum y-coordinate of the world rectangle
+     * @param sx1 int; the left pixel of the part of the image
+     * @param sy1 int; the top pixel of the part of the image
+     * @param sx2 int; the right pixel (exclusive) of the part of the image
+     * @param sy2 int; the bottom pixel (exclusive) of the part of the image
+     * @param extent Bounds2d; the extent of the panel
+     * @param screen Dimension; the size of the panel
+     * @param unitsPerPixelX double; the world units per pixel on the screen in x-direction
+     * @param unitsPerPixelY double; the world units per pixel on the screen in y-direction
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    private void drawImage(final Graphics2D graphics, final BufferedImage image, final double minX, final double maxX,
+            final double minY, final double maxY, final int sx1, final int sy1, final int sx2, final int sy2,
+            final Bounds2d extent, final Dimension screen, final double unitsPerPixelX, final double unitsPerPixelY)
+    {
+        int dx1 = (int) Math.round((minX - extent.getMinX()) / unitsPerPixelX);
+        int dx2 = (int) Math.round((maxX - extent.getMinX()) / unitsPerPixelX);
+        int dy1 = (int) Math.round(screen.height - (maxY - extent.getMinY()) / unitsPerPixelY);
+        int dy2 = (int) Math.round(screen.height - (minY - extent.getMinY()) / unitsPerPixelY);
+        graphics.drawImage(image, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
+    }
+
+    /**
+     * Return the tile from memory, or null when it is not in memory.
+     * @param key TileKey; the tile
+     * @return BufferedImage; the tile image, or null when it is not in memory
+     */
+    private synchronized BufferedImage getTile(final TileKey key)
+    {
+        return this.tiles.get(key);
+    }
+
+    /**
+     * Store a tile in memory, when the cache has not been cleared since the tile was requested.
+     * @param key TileKey; the tile
+     * @param image BufferedImage; the tile image
+     * @param tileGeneration int; the generation of the cache when the tile was requested
+     * @return boolean; whether the tile was stored
+     */
+    private synchronized boolean putTile(final TileKey key, final BufferedImage image, final int tileGeneration)
+    {
+        this.pending.remove(key);
+        if (tileGeneration != this.generation)
+        {
+            return false;
+        }
+        this.tiles.put(key, image);
+        return true;
+    }
+
+    /**
+     * Schedule a missing tile to be read from disk or drawn on a background thread, unless this has been done already.
+     * @param key TileKey; the missing tile
+     * @param observer ImageObserver; the observer to notify when the tile is ready, can be null
+     */
+    private void requestTile(final TileKey key, final ImageObserver observer)
+    {
+        final int tileGeneration;
+        final File file;
+        synchronized (this)
+        {
+            if (observer != null)
+            {
+                this.observers.add(observer);
+            }
+            if (!this.pending.add(key))
+            {
+                return;
+            }
+            tileGeneration = this.generation;
+            file = this.spilled.remove(key) ? tileFile(key, tileGeneration) : null;
+        }
+        getExecutor().execute(() ->
+        {
+            BufferedImage image = null;
+            try
+            {
+                if (file != null)
+                {
+                    image = readTile(file);
+                }
+                if (image == null)
+                {
+                    image = renderTile(key);
+                }
+            }
+            catch (Exception exception)
+            {
+                CategoryLogger.always().warn(exception, "requestTile");
+                synchronized (this)
+                {
+                    this.pending.remove(key);
+                }
+                return;
+            }
+            if (putTile(key, image, tileGeneration))
+            {
+                notifyObservers(image);
+            }
+        });
+    }
+
+    /**
+     * Draw the static layers of the map in a new tile image.
+     * @param key TileKey; the tile
+     * @return BufferedImage; the tile image
+     */
+    private BufferedImage renderTile(final TileKey key)
+    {
+        double tileWidth = TILE_SIZE * Math.scalb(1.0, key.levelX);
+        double tileHeight = TILE_SIZE * Math.scalb(1.0, key.levelY);
+        Bounds2d tileExtent =
+                new Bounds2d(key.tx * tileWidth, (key.tx + 1) * tileWidth, key.ty * tileHeight, (key.ty + 1) * tileHeight);
+        BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = image.createGraphics();
+        try
+        {
+            if (this.map.isDrawBackground())
+            {
+                graphics.setColor(this.map.getImage().getBackgroundColor());
+                graphics.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            this.map.drawLayers(graphics, tileExtent, new Dimension(TILE_SIZE, TILE_SIZE), false);
+        }
+        catch (Exception exception)
+        {
+            CategoryLogger.always().warn(exception, "renderTile");
+        }
+        finally
+        {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Notify the observers that were waiting for tiles that a tile is ready.
+     * @param image BufferedImage; the tile image that is ready
+     */
+    private void notifyObservers(final BufferedImage image)
+    {
+        List<ImageObserver> toNotify;
+        synchronized (this)
+        {
+            toNotify = new ArrayList<>(this.observers);
+            this.observers.clear();
+        }
+        for (ImageObserver observer : toNotify)
+        {
+            observer.imageUpdate(image, ImageObserver.ALLBITS, 0, 0, TILE_SIZE, TILE_SIZE);
+        }
+    }
+
+    /**
+     * Write a tile that is evicted from memory to disk, when a disk directory has been set. This method is called with the
+     * lock on the cache.
+     * @param key TileKey; the evicted tile
+     * @param image BufferedImage; the tile image
+     */
+    private void spill(final TileKey key, final BufferedImage image)
+    {
+        if (this.diskDirectory == null)
+        {
+            return;
+        }
+        final int tileGeneration = this.generation;
+        final File file = tileFile(key, tileGeneration);
+        this.pending.add(key);
+        getExecutor().execute(() ->
+        {
+            boolean written = false;
+            try
+            {
+                written = ImageIO.write(image, "png", file);
+            }
+            catch (IOException exception)
+            {
+                CategoryLogger.always().warn(exception, "spill");
+            }
+            synchronized (this)
+            {
+                this.pending.remove(key);
+                if (written && tileGeneration == this.generation)
+                {
+                    this.spilled.add(key);
+                }
+                else if (written)
+                {
+                    file.delete();
+                }
+            }
+            // observers that asked for the tile while it was written can now ask again
+            notifyObservers(image);
+        });
+    }
+
+    /**
+     * Read a tile that has been written to disk, and delete the file.
+     * @param file File; the file of the tile
+     * @return BufferedImage; the tile image, or null when it could not be read
+     */
+    private BufferedImage readTile(final File file)
+    {
+        try
+        {
+            BufferedImage read = ImageIO.read(file);
+            if (read == null)
+            {
+                return null;
+            }
+            BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D graphics = image.createGraphics();
+            graphics.drawImage(read, 0, 0, null);
+            graphics.dispose();
+            return image;
+        }
+        catch (IOException exception)
+        {
+            CategoryLogger.always().warn(exception, "readTile");
+            return null;
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Return the file for a tile on disk.
+     * @param key TileKey; the tile
+     * @param tileGeneration int; the generation of the tile
+     * @return File; the file for the tile on disk
+     */
+    private File tileFile(final TileKey key, final int tileGeneration)
+    {
+        return new File(this.diskDirectory, "tile_" + System.identityHashCode(this) + "_" + tileGeneration + "_" + key.levelX
+                + "_" + key.levelY + "_" + key.tx + "_" + key.ty + ".png");
+    }
+
+    /**
+     * Discard all tiles in memory and on disk, e.g., because the visible layers of the map have changed. Tiles that are being
+     * drawn are discarded when they are ready.
+     */
+    public synchronized void clear()
+    {
+        this.generation++;
+        this.tiles.clear();
+        this.pending.clear();
+        if (this.diskDirectory != null)
+        {
+            for (TileKey key : this.spilled)
+            {
+                tileFile(key, this.generation - 1).delete();
+            }
+        }
+        this.spilled.clear();
+    }
+
+    /**
+     * Return the number of tiles in memory.
+     * @return int; the number of tiles in memory
+     */
+    public synchronized int size()
+    {
+        return this.tiles.size();
+    }
+
+    /**
+     * Return the maximum number of tiles in memory.
+     * @return int; the maximum number of tiles in memory
+     */
+    public synchronized int getMaxTiles()
+    {
+        return this.maxTiles;
+    }
+
+    /**
+     * Set the maximum number of tiles in memory. Each tile takes 256 kB of memory.
+     * @param maxTiles int; the maximum number of tiles in memory
+     * @throws IllegalArgumentException when maxTiles is smaller than 1
+     */
+    public synchronized void setMaxTiles(final int maxTiles)
+    {
+        Throw.when(maxTiles < 1, IllegalArgumentException.class, "maxTiles should be at least 1");
+        this.maxTiles = maxTiles;
+    }
+
+    /**
+     * Return the directory to which evicted tiles are written, or null when evicted tiles are discarded.
+     * @return File; the directory to which evicted tiles are written, or null when evicted tiles are discarded
+     */
+    public synchronized File getDiskDirectory()
+    {
+        return this.diskDirectory;
+    }
+
+    /**
+     * Set the directory to which evicted tiles are written, or null to discard evicted tiles. Tiles on disk are read back when
+     * they are needed again, which is faster than drawing them for maps with many shapes. The files are deleted when they are
+     * read back, or when the cache is cleared.
+     * @param diskDirectory File; the directory to which evicted tiles are written, or null to discard evicted tiles
+     * @throws IllegalArgumentException when diskDirectory is not an existing directory
+     */
+    public synchronized void setDiskDirectory(final File diskDirectory)
+    {
+        Throw.when(diskDirectory != null && !diskDirectory.isDirectory(), IllegalArgumentException.class,
+                "diskDirectory %s is not an existing directory", diskDirectory);
+        clear();
+        this.diskDirectory = diskDirectory;
+    }
+
+    /**
+     * Return whether missing tiles are drawn on background threads.
+     * @return boolean; whether missing tiles are drawn on background threads
+     */
+    public synchronized boolean isBackground()
+    {
+        return this.background;
+    }
+
+    /**
+     * Set whether missing tiles are drawn on background threads, or right away in the paint operation, e.g., to export an image
+     * of the complete map.
+     * @param background boolean; whether missing tiles are drawn on background threads
+     */
+    public synchronized void setBackground(final boolean background)
+    {
+        this.background = background;
+    }
+
+    /**
+     * Return the shared executor that draws the tiles, and create it when needed. The threads are daemon threads, so they do not
+     * keep the application alive.
+     * @return ExecutorService; the shared executor that draws the tiles
+     */
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), (runnable) ->
+            {
+                Thread thread = new Thread(runnable, "GisTileCache");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "GisTileCache [size=" + size() + ", maxTiles=" + getMaxTiles() + "]";
+    }
+
+    /** The key of a tile: the zoom levels in x- and y-direction, and the tile numbers. */
+    private static class TileKey
+    {
+        /** the zoom level in x-direction: a pixel is 2^levelX world units wide. */
+        private final int levelX;
+
+        /** the zoom level in y-direction: a pixel is 2^levelY world units high. */
+        private final int levelY;
+
+        /** the tile number in x-direction. */
+        private final long tx;
+
+        /** the tile number in y-direction. */
+        private final long ty;
+
+        /**
+         * @param levelX int; the zoom level in x-direction
+         * @param levelY int; the zoom level in y-direction
+         * @param tx long; the tile number in x-direction
+         * @param ty long; the tile number in y-direction
+         */
+        TileKey(final int levelX, final int levelY, final long tx, final long ty)
+        {
+            this.levelX = levelX;
+            this.levelY = levelY;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.levelX, this.levelY, this.tx, this.ty);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @SuppressWarnings("checkstyle:needbraces")
+        public boolean equals(final Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            TileKey other = (TileKey) obj;
+            return this.levelX == other.levelX && this.levelY == other.levelY && this.tx == other.tx && this.ty == other.ty;
+        }
+    }
+}
@@ -68,4 +68,17 @@ public interface LayerInterface extends Serializable
      * @param transform boolean; the status for the transformation: should the transform be used for this layer or not?
      */
     void setTransform(boolean transform);
+
+    /**
+     * Return whether the layer is dynamic, i.e., whether its shapes can change between two paint operations. Static layers can
+     * be cached as images; dynamic layers are drawn on top of the cached layers for every paint operation.
+     * @return boolean; whether the layer is dynamic
+     */
+    boolean isDynamic();
+
+    /**
+     * Set whether the layer is dynamic, i.e., whether its shapes can change between two paint operations.
+     * @param dynamic boolean; whether the layer is dynamic
+     */
+    void setDynamic(boolean dynamic);
 }
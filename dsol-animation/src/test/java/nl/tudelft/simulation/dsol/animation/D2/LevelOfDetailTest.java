@@ -0,0 +1,204 @@
+package nl.tudelft.simulation.dsol.animation.D2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.rmi.RemoteException;
+
+import javax.naming.NamingException;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.animation.D2.RenderableIndexTest.MovingLocatable;
+import nl.tudelft.simulation.dsol.animation.D2.RenderableIndexTest.TestRenderable;
+
+/**
+ * Unit tests for the LevelOfDetail that draws renderables that are too small on the screen as points or density tiles.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class LevelOfDetailTest
+{
+    /** the extent of the panel: 10 world units per pixel. */
+    private static final Bounds2d EXTENT = new Bounds2d(0.0, 1000.0, 0.0, 1000.0);
+
+    /** the screen size of the panel. */
+    private static final Dimension SCREEN = new Dimension(100, 100);
+
+    /**
+     * Test which renderables are simplified, and the points that are drawn.
+     * @throws NamingException when context cannot be created or found
+     * @throws RemoteException when context is remote and cannot be reached
+     */
+    @Test
+    public void testPoints() throws RemoteException, NamingException
+    {
+        Renderable2DTest.ContextProvider contextProvider = new Renderable2DTest.ContextProvider();
+        LevelOfDetail lod = new LevelOfDetail(LevelOfDetail.Mode.POINTS);
+        lod.setPointSize(1);
+        TestRenderable small = new TestRenderable(new MovingLocatable(105.0, 895.0, 5.0, 0), contextProvider);
+        small.setLevelOfDetailColor(Color.RED);
+        TestRenderable large = new TestRenderable(new MovingLocatable(500.0, 500.0, 100.0, 0), contextProvider);
+        TestRenderable overlay = new TestRenderable(new MovingLocatable(10.0, 10.0, 1.0, 0), contextProvider);
+        overlay.setTranslate(false);
+        TestRenderable detailed = new TestRenderable(new MovingLocatable(10.0, 10.0, 1.0, 0), contextProvider);
+        detailed.setLevelOfDetailColor(null);
+        TestRenderable outside = new TestRenderable(new MovingLocatable(-500.0, 10.0, 1.0, 0), contextProvider);
+        assertEquals(Color.DARK_GRAY, large.getLevelOfDetailColor());
+        assertNull(overlay.getLevelOfDetailColor());
+
+        BufferedImage screen = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = screen.createGraphics();
+        graphics.setColor(Color.BLUE);
+        lod.begin(EXTENT, SCREEN);
+        assertTrue(lod.add(small));
+        assertFalse(lod.add(large));
+        assertFalse(lod.add(overlay));
+        assertFalse(lod.add(detailed));
+        assertTrue(lod.add(outside));
+        lod.end(graphics, null);
+        assertEquals(2, lod.getNumberSimplified());
+        assertEquals(Color.BLUE, graphics.getColor());
+        // x = 105 is pixel 10; y = 895 is pixel 100 - 89.5 = 10.5, so 10
+        assertEquals(Color.RED.getRGB(), screen.getRGB(10, 10));
+        assertEquals(0, screen.getRGB(11, 10));
+        assertEquals(0, screen.getRGB(10, 11));
+
+        // zoomed in, the small renderable is painted in detail
+        lod.begin(new Bounds2d(100.0, 110.0, 890.0, 900.0), SCREEN);
+        assertFalse(lod.add(small));
+        lod.end(graphics, null);
+        assertEquals(0, lod.getNumberSimplified());
+
+        // a larger minimum size simplifies the large renderable
+        lod.setMinimumSize(20.0);
+        lod.setPointSize(3);
+        screen = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_ARGB);
+        lod.begin(EXTENT, SCREEN);
+        assertTrue(lod.add(large));
+        lod.end(screen.createGraphics(), null);
+        assertEquals(Color.DARK_GRAY.getRGB(), screen.getRGB(49, 49));
+        assertEquals(Color.DARK_GRAY.getRGB(), screen.getRGB(51, 51));
+        assertEquals(0, screen.getRGB(52, 52));
+        assertEquals(0, screen.getRGB(10, 10));
+
+        // no simplification in detail mode
+        lod.setMode(LevelOfDetail.Mode.DETAIL);
+        lod.begin(EXTENT, SCREEN);
+        assertFalse(lod.add(small));
+        lod.end(graphics, null);
+        assertEquals(LevelOfDetail.Mode.DETAIL, lod.getMode());
+        assertTrue(lod.toString().startsWith("LevelOfDetail"));
+    }
+
+    /**
+     * Test the density tiles.
+     * @throws NamingException when context cannot be created or found
+     * @throws RemoteException when context is remote and cannot be reached
+     */
+    @Test
+    public void testDensity() throws RemoteException, NamingException
+    {
+        Renderable2DTest.ContextProvider contextProvider = new Renderable2DTest.ContextProvider();
+        LevelOfDetail lod = new LevelOfDetail(LevelOfDetail.Mode.DENSITY);
+        lod.setTileSize(10);
+        assertEquals(10, lod.getTileSize());
+        lod.begin(EXTENT, SCREEN);
+        // 1 renderable in the first tile, 100 red and 10 green renderables in the last tile
+        TestRenderable one = new TestRenderable(new MovingLocatable(50.0, 950.0, 1.0, 0), contextProvider);
+        assertTrue(lod.add(one));
+        for (int i = 0; i < 110; i++)
+        {
+            TestRenderable renderable =
+                    new TestRenderable(new MovingLocatable(910.0 + (i % 9) * 10, 10.0 + (i % 7) * 10, 1.0, 0), contextProvider);
+            renderable.setLevelOfDetailColor(i < 100 ? Color.RED : Color.GREEN);
+            assertTrue(lod.add(renderable));
+        }
+        BufferedImage screen = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_ARGB);
+        lod.end(screen.createGraphics(), null);
+        assertEquals(111, lod.getNumberSimplified());
+        Color first = new Color(screen.getRGB(5, 5), true);
+        Color last = new Color(screen.getRGB(95, 95), true);
+        assertEquals(Color.DARK_GRAY.getRed(), first.getRed());
+        assertEquals(255, last.getRed());
+        assertEquals(0, last.getGreen());
+        assertTrue(last.getAlpha() > first.getAlpha());
+        assertEquals(0, screen.getRGB(50, 50));
+
+        // the counts are cleared for the next frame
+        screen = new BufferedImage(SCREEN.width, SCREEN.height, BufferedImage.TYPE_INT_ARGB);
+        lod.begin(EXTENT, SCREEN);
+        lod.end(screen.createGraphics(), null);
+        assertEquals(0, screen.getRGB(95, 95));
+    }
+
+    /** Test the checks of the settings. */
+    @Test
+    public void testSettings()
+    {
+        LevelOfDetail lod = new LevelOfDetail(LevelOfDetail.Mode.POINTS);
+        lod.setMinimumSize(0.0);
+        assertEquals(0.0, lod.getMinimumSize(), 0.0);
+        lod.setPointSize(4);
+        assertEquals(4, lod.getPointSize());
+        try
+        {
+            new LevelOfDetail(null);
+            fail("mode null should fail");
+        }
+        catch (NullPointerException exception)
+        {
+            // ok
+        }
+        try
+        {
+            lod.setMode(null);
+            fail("mode null should fail");
+        }
+        catch (NullPointerException exception)
+        {
+            // ok
+        }
+        try
+        {
+            lod.setMinimumSize(Double.NaN);
+            fail("minimum size NaN should fail");
+        }
+        catch (IllegalArgumentException exception)
+        {
+            // ok
+        }
+        try
+        {
+            lod.setPointSize(0);
+            fail("point size 0 should fail");
+        }
+        catch (IllegalArgumentException exception)
+        {
+            // ok
+        }
+        try
+        {
+            lod.setTileSize(0);
+            fail("tile size 0 should fail");
+        }
+        catch (IllegalArgumentException exception)
+        {
+            // ok
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package nl.tudelft.simulation.dsol.animation.D2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Graphics2D;
+import java.awt.image.ImageObserver;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+
+import org.djutils.draw.bounds.Bounds;
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.draw.point.Point;
+import org.djutils.draw.point.Point2d;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.animation.Locatable;
+import nl.tudelft.simulation.naming.context.Contextualized;
+
+/**
+ * Unit tests for the RenderableIndex: the queries should return the same renderables in the same order as a check of all
+ * renderables, also when the renderables move, are added, removed, or destroyed.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class RenderableIndexTest
+{
+    /**
+     * Compare the queries of the index with a check of all renderables.
+     * @throws NamingException when context cannot be created or found
+     * @throws RemoteException when context is remote and cannot be reached
+     */
+    @Test
+    public void testQueries() throws RemoteException, NamingException
+    {
+        Random random = new Random(11L);
+        Renderable2DTest.ContextProvider contextProvider = new Renderable2DTest.ContextProvider();
+        RenderableIndex index = new RenderableIndex();
+        List<TestRenderable> renderables = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+        {
+            TestRenderable renderable = new TestRenderable(new MovingLocatable(random.nextDouble() * 1000.0,
+                    random.nextDouble() * 1000.0, 1.0 + random.nextDouble() * 4.0, random.nextInt(3)), contextProvider);
+            renderables.add(renderable);
+            index.add(renderable);
+        }
+        TestRenderable large = new TestRenderable(new MovingLocatable(500.0, 500.0, 400.0, 0), contextProvider);
+        renderables.add(large);
+        index.add(large);
+        TestRenderable overlay = new TestRenderable(new MovingLocatable(-100.0, -100.0, 1.0, 1), contextProvider);
+        overlay.setTranslate(false);
+        renderables.add(overlay);
+        index.add(overlay);
+        assertEquals(2002, index.size());
+
+        for (int round = 0; round < 20; round++)
+        {
+            for (int i = 0; i < 200; i++)
+            {
+                MovingLocatable locatable = renderables.get(random.nextInt(renderables.size() - 2)).getSource();
+                if (locatable != null)
+                {
+                    locatable.x += 10.0 * random.nextGaussian();
+                    locatable.y += 10.0 * random.nextGaussian();
+                }
+            }
+            if (round == 5)
+            {
+                for (int i = 0; i < 10; i++)
+                {
+                    assertTrue(index.remove(renderables.remove(random.nextInt(1000))));
+                }
+            }
+            List<TestRenderable> destroyed = new ArrayList<>();
+            if (round == 10)
+            {
+                for (int i = 0; i < 10; i++)
+                {
+                    TestRenderable renderable = renderables.get(1000 + i);
+                    renderable.destroy(contextProvider);
+                    destroyed.add(renderable);
+                }
+            }
+            List<Renderable2DInterface<? extends Locatable>> removed = index.update();
+            assertEquals(new HashSet<>(destroyed), new HashSet<>(removed));
+            renderables.removeAll(destroyed);
+            assertEquals(renderables.size(), index.size());
+
+            double size = round % 5 == 0 ? 2000.0 : 10.0 + 100.0 * random.nextDouble();
+            double x = random.nextDouble() * 1000.0;
+            double y = random.nextDouble() * 1000.0;
+            Bounds2d extent = new Bounds2d(x - size / 2.0, x + size / 2.0, y - size / 2.0, y + size / 2.0);
+            assertEquals(expected(renderables, extent), index.query(extent));
+            Point2d point = new Point2d(x, y);
+            assertEquals(expected(renderables, new Bounds2d(x, x, y, y)), index.query(point));
+        }
+        assertFalse(index.remove(new TestRenderable(new MovingLocatable(0.0, 0.0, 1.0, 0), contextProvider)));
+        assertTrue(index.toString().startsWith("RenderableIndex"));
+        assertTrue(index.getCellSize() > 0.0);
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertNull(index.getBounds());
+        assertTrue(index.query(new Bounds2d(0.0, 1000.0, 0.0, 1000.0)).isEmpty());
+    }
+
+    /**
+     * Test the bounds of the index, and a fixed cell size.
+     * @throws NamingException when context cannot be created or found
+     * @throws RemoteException when context is remote and cannot be reached
+     */
+    @Test
+    public void testBoundsAndCellSize() throws RemoteException, NamingException
+    {
+        Renderable2DTest.ContextProvider contextProvider = new Renderable2DTest.ContextProvider();
+        RenderableIndex index = new RenderableIndex(10.0);
+        assertEquals(10.0, index.getCellSize(), 0.0);
+        TestRenderable r1 = new TestRenderable(new MovingLocatable(10.0, 20.0, 4.0, 0), contextProvider);
+        TestRenderable r2 = new TestRenderable(new MovingLocatable(-30.0, 50.0, 2.0, 0), contextProvider);
+        index.add(r1);
+        index.add(r2);
+        index.add(r2);
+        assertEquals(2, index.size());
+        assertNull(index.getBounds());
+        index.update();
+        assertEquals(new Bounds2d(-31.0, 12.0, 18.0, 51.0), index.getBounds());
+        r1.getSource().x = 1.0E6;
+        index.update();
+        assertEquals(new Bounds2d(-31.0, 1.0E6 + 2.0, 18.0, 51.0), index.getBounds());
+        assertEquals(1, index.query(new Point2d(1.0E6, 20.0)).size());
+        assertEquals(0, index.query(new Point2d(10.0, 20.0)).size());
+        assertEquals(10.0, index.getCellSize(), 0.0);
+
+        for (double cellSize : new double[] {0.0, -1.0, Double.NaN, Double.POSITIVE_INFINITY})
+        {
+            try
+            {
+                new RenderableIndex(cellSize);
+                fail("cell size " + cellSize + " should fail");
+            }
+            catch (IllegalArgumentException exception)
+            {
+                // ok
+            }
+        }
+    }
+
+    /**
+     * Test that the update reads the renderables without holding the lock of the index: while the update waits in the
+     * getLocation() of a renderable, the index can be queried, and renderables can be added and removed. A renderable that is
+     * removed during the update stays removed, and a renderable that is added during the update is placed by the next update.
+     * @throws NamingException when context cannot be created or found
+     * @throws RemoteException when context is remote and cannot be reached
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test(timeout = 20000)
+    public void testUpdateWithoutLock() throws RemoteException, NamingException, InterruptedException
+    {
+        Renderable2DTest.ContextProvider contextProvider = new Renderable2DTest.ContextProvider();
+        RenderableIndex index = new RenderableIndex(10.0);
+        TestRenderable moving = new TestRenderable(new MovingLocatable(10.0, 10.0, 2.0, 0), contextProvider);
+        TestRenderable removed = new TestRenderable(new MovingLocatable(30.0, 10.0, 2.0, 0), contextProvider);
+        BlockingLocatable blocking = new BlockingLocatable(50.0, 10.0);
+        TestRenderable blocked = new TestRenderable(blocking, contextProvider);
+        index.add(moving);
+        index.add(removed);
+        index.add(blocked);
+        index.update();
+        assertEquals(3, index.query(new Bounds2d(0.0, 60.0, 0.0, 20.0)).size());
+
+        moving.getSource().x = 110.0;
+        removed.getSource().x = 130.0;
+        blocking.block();
+        Thread updater = new Thread(() -> index.update(), "updater");
+        updater.start();
+        assertTrue(blocking.entered.await(5, TimeUnit.SECONDS));
+
+        // the update waits in getLocation(); the queries return the state of the previous update
+        assertEquals(1, index.query(new Point2d(10.0, 10.0)).size());
+        assertEquals(0, index.query(new Point2d(110.0, 10.0)).size());
+        TestRenderable added = new TestRenderable(new MovingLocatable(70.0, 10.0, 2.0, 0), contextProvider);
+        index.add(added);
+        assertTrue(index.remove(removed));
+        assertEquals(3, index.size());
+        assertTrue(updater.isAlive());
+        blocking.release();
+        updater.join();
+        assertFalse(blocking.timedOut);
+
+        assertEquals(3, index.size());
+        assertEquals(0, index.query(new Point2d(10.0, 10.0)).size());
+        assertEquals(1, index.query(new Point2d(110.0, 10.0)).size());
+        assertEquals(0, index.query(new Point2d(130.0, 10.0)).size());
+        assertEquals(0, index.query(new Point2d(70.0, 10.0)).size());
+        index.update();
+        assertEquals(1, index.query(new Point2d(70.0, 10.0)).size());
+        assertEquals(0, index.query(new Point2d(130.0, 10.0)).size());
+        assertEquals(1, index.query(new Point2d(50.0, 10.0)).size());
+    }
+
+    /**
+     * Return the renderables that should be returned for the rectangle, in paint order.
+     * @param renderables List&lt;TestRenderable&gt;; all renderables
+     * @param rectangle Bounds2d; the rectangle
+     * @return List&lt;TestRenderable&gt;; the renderables that overlap with the rectangle, or that are not translated
+     */
+    private List<TestRenderable> expected(final List<TestRenderable> renderables, final Bounds2d rectangle)
+    {
+        List<TestRenderable> result = new ArrayList<>();
+        for (TestRenderable renderable : renderables)
+        {
+            MovingLocatable l = renderable.getSource();
+            if (!renderable.isTranslate()
+                    || (l.x - l.size / 2.0 <= rectangle.getMaxX() && l.x + l.size / 2.0 >= rectangle.getMinX()
+                            && l.y - l.size / 2.0 <= rectangle.getMaxY() && l.y + l.size / 2.0 >= rectangle.getMinY()))
+            {
+                result.add(renderable);
+            }
+        }
+        result.sort(new Renderable2DComparator());
+        return result;
+    }
+
+    /** Locatable with a settable position. */
+    static class MovingLocatable implements Locatable
+    {
+        /** the x-coordinate. */
+        private double x;
+
+        /** the y-coordinate. */
+        private double y;
+
+        /** the size of the square bounds. */
+        private final double size;
+
+        /** the z-value. */
+        private final double z;
+
+        /**
+         * @param x double; the x-coordinate
+         * @param y double; the y-coordinate
+         * @param size double; the size of the square bounds
+         * @param z double; the z-value
+         */
+        MovingLocatable(final double x, final double y, final double size, final double z)
+        {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.z = z;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Point<?> getLocation() throws RemoteException
+        {
+            return new Point2d(this.x, this.y);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Bounds<?, ?, ?> getBounds() throws RemoteException
+        {
+            return new Bounds2d(this.size, this.size);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double getZ() throws RemoteException
+        {
+            return this.z;
+        }
+    }
+
+    /** MovingLocatable of which getLocation() can be blocked, to test what happens during an update. */
+    static class BlockingLocatable extends MovingLocatable
+    {
+        /** the latch that is counted down when getLocation() is blocked. */
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        /** the latch that blocks getLocation(), or null when getLocation() is not blocked. */
+        private volatile CountDownLatch blocked = null;
+
+        /** whether getLocation() stopped waiting before it was released. */
+        private volatile boolean timedOut = false;
+
+        /**
+         * @param x double; the x-coordinate
+         * @param y double; the y-coordinate
+         */
+        BlockingLocatable(final double x, final double y)
+        {
+            super(x, y, 2.0, 0);
+        }
+
+        /** Block the next call of getLocation() until release() is called. */
+        void block()
+        {
+            this.blocked = new CountDownLatch(1);
+        }
+
+        /** Release the blocked call of getLocation(). */
+        void release()
+        {
+            this.blocked.countDown();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Point<?> getLocation() throws RemoteException
+        {
+            CountDownLatch latch = this.blocked;
+            if (latch != null)
+            {
+                this.entered.countDown();
+                try
+                {
+                    this.timedOut = !latch.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException exception)
+                {
+                    this.timedOut = true;
+                }
+                this.blocked = null;
+            }
+            return super.getLocation();
+        }
+    }
+
+    /** Renderable for a MovingLocatable. */
+    static class TestRenderable extends Renderable2D<MovingLocatable>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param source MovingLocatable; the source
+         * @param contextProvider Contextualized; the object that can provide the context to store the animation objects
+         */
+        TestRenderable(final MovingLocatable source, final Contextualized contextProvider)
+        {
+            super(source, contextProvider);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void paint(final Graphics2D graphics, final ImageObserver observer)
+        {
+            // placeholder
+        }
+    }
+}
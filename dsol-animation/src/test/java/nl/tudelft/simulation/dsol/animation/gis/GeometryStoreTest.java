@@ -0,0 +1,173 @@
+package nl.tudelft.simulation.dsol.animation.gis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.djutils.exceptions.Try;
+import org.junit.Test;
+
+/**
+ * Unit test for the GeometryStore class.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class GeometryStoreTest
+{
+    /**
+     * Test adding shapes, and retrieving their parts, attributes, and bounding boxes.
+     */
+    @Test
+    public void testGeometryStore()
+    {
+        GeometryStore store = new GeometryStore();
+        assertEquals(0, store.getNumShapes());
+        Try.testFail(() -> store.startPart(), IllegalStateException.class);
+        Try.testFail(() -> store.addShape("no shape"), IllegalArgumentException.class);
+
+        // a shape with two parts, added point by point
+        assertEquals(0, store.startShape("building", "Aula"));
+        Try.testFail(() -> store.addPoint(0.0, 0.0), IllegalStateException.class);
+        store.startPart();
+        store.addPoint(0.0, 0.0);
+        store.addPoint(10.0, 0.0);
+        store.addPoint(10.0, 10.0);
+        store.startPart();
+        store.addPoint(2.0, 2.0);
+        store.addPoint(4.0, 2.0);
+
+        // a shape without points, a point, and a path with the same attribute values
+        assertEquals(1, store.startShape("building", "Aula"));
+        assertEquals(2, store.addShape(new Point2D.Double(-5.0, 20.0), "tree"));
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(100.0, 100.0);
+        path.lineTo(110.0, 105.0);
+        path.closePath();
+        assertEquals(3, store.addShape(path, "building", "Library"));
+        for (int i = 0; i < 1000; i++)
+        {
+            store.addShape(new Point2D.Double(i, -i), "tree");
+        }
+
+        assertEquals(1004, store.getNumShapes());
+        assertEquals(1008, store.getNumPoints());
+        assertEquals(4, store.getDictionarySize());
+        assertEquals(2, store.getNumParts(0));
+        assertEquals(0, store.getNumParts(1));
+        assertArrayEquals(new String[] {"building", "Aula"}, store.getAttributeValues(1));
+        assertArrayEquals(new String[] {"tree"}, store.getAttributeValues(2));
+        assertArrayEquals(new String[] {"building", "Library"}, store.getAttributeValues(3));
+        Try.testFail(() -> store.getAttributeValues(1004), IndexOutOfBoundsException.class);
+        Try.testFail(() -> store.getNumParts(-1), IndexOutOfBoundsException.class);
+
+        double[] boxes = store.getBoxes();
+        assertEquals(4 * 1004, boxes.length);
+        assertArrayEquals(new double[] {0.0, 0.0, 10.0, 10.0}, new double[] {boxes[0], boxes[1], boxes[2], boxes[3]}, 0.0);
+        assertTrue(Double.isNaN(boxes[4]));
+        assertArrayEquals(new double[] {-5.0, 20.0, -5.0, 20.0}, new double[] {boxes[8], boxes[9], boxes[10], boxes[11]},
+                0.0);
+        assertArrayEquals(new double[] {100.0, 100.0, 110.0, 105.0},
+                new double[] {boxes[12], boxes[13], boxes[14], boxes[15]}, 0.0);
+
+        Path2D.Float copy = new Path2D.Float();
+        store.appendTo(0, copy);
+        assertEquals(new Rectangle2D.Double(0.0, 0.0, 10.0, 10.0), copy.getBounds2D());
+
+        int modCount = store.getModCount();
+        store.trimToSize();
+        store.addShape(new Point2D.Double(1.0, 1.0), "new");
+        assertTrue(store.getModCount() > modCount);
+        assertEquals(1005, store.getNumShapes());
+        assertArrayEquals(new String[] {"new"}, store.getAttributeValues(1004));
+
+        store.clear();
+        assertEquals(0, store.getNumShapes());
+        assertEquals(0, store.getNumPoints());
+        assertEquals(0, store.getDictionarySize());
+        assertTrue(store.toString().startsWith("GeometryStore"));
+    }
+
+    /**
+     * Test drawing the shapes directly from the store.
+     */
+    @Test
+    public void testDraw()
+    {
+        GeometryStore store = new GeometryStore();
+        store.startShape();
+        store.startPart();
+        store.addPoint(1.0, 1.0);
+        store.addPoint(3.0, 1.0);
+        store.addPoint(3.0, 3.0);
+        store.addPoint(1.0, 3.0);
+        store.startShape();
+        store.startPart();
+        store.addPoint(6.0, 6.0);
+        store.addPoint(8.0, 6.0);
+        store.addPoint(8.0, 8.0);
+
+        BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        store.draw(graphics, new int[] {0}, AffineTransform.getScaleInstance(10.0, 10.0), Color.RED, null);
+        graphics.dispose();
+        assertEquals(Color.RED.getRGB(), image.getRGB(20, 20));
+        assertEquals(0, image.getRGB(75, 65));
+        Try.testFail(() -> store.draw(graphics, new int[] {2}, null, Color.RED, Color.BLACK), IndexOutOfBoundsException.class);
+    }
+
+    /**
+     * Test writing the store to a binary output, and reading it back from a buffer.
+     * @throws IOException on error
+     */
+    @Test
+    public void testWriteRead() throws IOException
+    {
+        GeometryStore store = new GeometryStore();
+        store.startShape("road", "Mekelweg");
+        store.startPart();
+        store.addPoint(1.0, 2.0);
+        store.addPoint(3.0, 4.0);
+        store.startShape("road", "Schoemakerstraat");
+        store.addShape(new Point2D.Double(5.0, 6.0), "tree", null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        store.writeTo(new DataOutputStream(bytes));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        GeometryStore copy = new GeometryStore();
+        copy.addShape(new Point2D.Double(0.0, 0.0), "replaced");
+        int modCount = copy.getModCount();
+        copy.readFrom(buffer);
+        assertEquals(0, buffer.remaining());
+        assertTrue(copy.getModCount() > modCount);
+        assertEquals(3, copy.getNumShapes());
+        assertEquals(3, copy.getNumPoints());
+        assertEquals(0, copy.getNumParts(1));
+        assertArrayEquals(new String[] {"road", "Schoemakerstraat"}, copy.getAttributeValues(1));
+        assertArrayEquals(new String[] {"tree", null}, copy.getAttributeValues(2));
+        assertArrayEquals(store.getBoxes(), copy.getBoxes(), 0.0);
+        copy.addShape(new Point2D.Double(7.0, 8.0), "road");
+        assertEquals(5, copy.getDictionarySize());
+
+        Try.testFail(() -> new GeometryStore().readFrom(ByteBuffer.wrap(bytes.toByteArray(), 0, 40)), IOException.class);
+        byte[] corrupt = bytes.toByteArray();
+        corrupt[3] = 100; // number of points larger than the contents
+        Try.testFail(() -> new GeometryStore().readFrom(ByteBuffer.wrap(corrupt)), IOException.class);
+    }
+}
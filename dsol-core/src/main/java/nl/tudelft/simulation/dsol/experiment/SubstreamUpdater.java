@@ -0,0 +1,78 @@
+package nl.tudelft.simulation.dsol.experiment;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.jstats.streams.SplittableStreamInterface;
+import nl.tudelft.simulation.jstats.streams.StreamInterface;
+
+/**
+ * SubstreamUpdater hands each replication its own substream of a SplittableStreamInterface stream, rather than a new seed.
+ * Replication n uses substream n, counted from the original seed of the stream. Since the substreams of a splittable stream
+ * are guaranteed not to overlap, replications that run in parallel draw from independent parts of the period of the
+ * generator. Streams that are not splittable are updated with a fallback StreamUpdater, by default the SimpleStreamUpdater.
+ * Note that different streams in a model should still have different seeds (or be split off from each other), since two
+ * splittable streams with the same original seed deliver the same substreams.
+ * <p>
+ * Copyright (c) 2021-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class SubstreamUpdater implements StreamUpdater
+{
+    /** */
+    private static final long serialVersionUID = 20221019L;
+
+    /** the fallback stream updater in case the stream is not splittable. */
+    private StreamUpdater fallbackStreamUpdater;
+
+    /**
+     * Construct a new SubstreamUpdater object with a SimpleStreamUpdater as the fallback for streams that are not splittable.
+     */
+    public SubstreamUpdater()
+    {
+        this.fallbackStreamUpdater = new SimpleStreamUpdater();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateSeed(final String streamId, final StreamInterface stream, final int replicationNumber)
+    {
+        if (stream instanceof SplittableStreamInterface)
+        {
+            if (stream.getSeed() != stream.getOriginalSeed())
+            {
+                stream.setSeed(stream.getOriginalSeed());
+            }
+            ((SplittableStreamInterface) stream).setSubstream(replicationNumber);
+        }
+        else
+        {
+            // stream cannot be split -- fall back to other method
+            this.fallbackStreamUpdater.updateSeed(streamId, stream, replicationNumber);
+        }
+    }
+
+    /**
+     * Return the fallback stream updater in case the stream is not splittable.
+     * @return fallbackStreamUpdater StreamUpdater; the fallback stream updater in case the stream is not splittable
+     */
+    public StreamUpdater getFallbackStreamUpdater()
+    {
+        return this.fallbackStreamUpdater;
+    }
+
+    /**
+     * Set a new fallback stream updater in case the stream is not splittable.
+     * @param fallbackStreamUpdater StreamUpdater; the new fallback stream updater in case the stream is not splittable
+     * @throws NullPointerException when fallbackStreamUpdater is null
+     */
+    public void setFallbackStreamUpdater(final StreamUpdater fallbackStreamUpdater)
+    {
+        Throw.whenNull(fallbackStreamUpdater, "fallbackStreamUpdater cannot be null");
+        this.fallbackStreamUpdater = fallbackStreamUpdater;
+    }
+
+}
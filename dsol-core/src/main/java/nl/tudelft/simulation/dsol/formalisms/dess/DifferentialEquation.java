@@ -1,22 +1,46 @@
 package nl.tudelft.simulation.dsol.formalisms.dess;
 
+import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
+import org.djunits.unit.TimeUnit;
+import org.djunits.value.vdouble.scalar.Time;
+import org.djunits.value.vfloat.scalar.FloatTime;
 import org.djutils.event.EventInterface;
 import org.djutils.event.EventListenerInterface;
+import org.djutils.event.TimedEvent;
 import org.djutils.event.TimedEventType;
 import org.djutils.event.ref.ReferenceType;
+import org.djutils.exceptions.Throw;
 import org.djutils.metadata.MetaData;
 import org.djutils.metadata.ObjectDescriptor;
 
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.Executable;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
 import nl.tudelft.simulation.dsol.simtime.SimTime;
 import nl.tudelft.simulation.dsol.simulators.DESSSimulatorInterface;
+import nl.tudelft.simulation.dsol.simulators.DEVDESSSimulatorInterface;
 import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
 import nl.tudelft.simulation.jstats.ode.DifferentialEquationInterface;
+import nl.tudelft.simulation.jstats.ode.integrators.AdaptiveNumericalIntegrator;
+import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegrator;
 import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegratorType;
+import nl.tudelft.simulation.language.DSOLRuntimeException;
 
 /**
- * The Differential equation provides a reference implementation of the differential equation.
+ * The Differential equation provides a reference implementation of the differential equation. <br>
+ * When the equation runs on a DEVDESS simulator, state events can be added with addStateEvent(). A state event is defined by
+ * a StateEventFunction g(x, y), and takes place when g crosses zero. At the start of each time step of the simulator, the
+ * equation integrates over the step, and stores the values and derivatives in the integration points. The zero crossings of
+ * the state event functions are bracketed in these points, and located with the Illinois variant of regula falsi on the cubic
+ * Hermite interpolation between the points. For each crossing, a discrete event is scheduled at the time of the crossing, so
+ * the state event is handled in between the discrete events at the right time, rather than at the end of the time step. When
+ * the handler of the state event changes the state of the equation with initialize(), the remainder of the step is integrated
+ * again from the new state.
  * <p>
  * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -38,6 +62,9 @@ public abstract class DifferentialEquation<A extends Number & Comparable<A>, R e
     /** */
     private static final long serialVersionUID = 20140804L;
 
+    /** the relative difference with the step size within which a point of the look-ahead is seen as the end of the step. */
+    private static final double STEP_TOLERANCE = 1.0E-9;
+
     /** VALUE_CHANGED_EVENT is fired on value changes. The array is initialized in the ODE's constructor. */
     @SuppressWarnings({"checkstyle:visibilitymodifier", "checkstyle:membername"})
     public TimedEventType[] VALUE_CHANGED_EVENT;
@@ -62,6 +89,36 @@ public abstract class DifferentialEquation<A extends Number & Comparable<A>, R e
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected double[] previousY = null;
 
+    /** the state events of this equation. */
+    private final List<StateEvent> stateEvents = new ArrayList<>();
+
+    /** the discrete events that have been scheduled for the state events within the current time step. */
+    private final List<ScheduledStateEvent> scheduledStateEvents = new ArrayList<>();
+
+    /** the maximum width of the interval in which the time of a state event is located. */
+    private double rootTolerance = 1.0E-9;
+
+    /** the x-value at the end of the current time step of the simulator, or NaN when no step has been looked ahead. */
+    private double lookAheadEnd = Double.NaN;
+
+    /** the number of integration points of the look-ahead over the current time step. */
+    private int lookAheadSize = 0;
+
+    /** the x-values of the integration points of the look-ahead. */
+    private double[] lookAheadX = new double[0];
+
+    /** the y-values of the integration points of the look-ahead. */
+    private double[][] lookAheadY = new double[0][];
+
+    /** the derivatives of the integration points of the look-ahead. */
+    private double[][] lookAheadDy = new double[0][];
+
+    /** the x-value of the last step of a fixed-step integrator in the look-ahead, or NaN to start at the next look-ahead. */
+    private double gridX = Double.NaN;
+
+    /** the y-value at the end of the last step of a fixed-step integrator in the look-ahead. */
+    private double[] gridY = null;
+
     /**
      * Construct a new DifferentialEquation with a step size equal to the simulator time step, and Runge-Kutta4 as the default
      * integrator. Indicate the number of variables that the differential qquation will use.
@@ -112,34 +169,534 @@ public abstract class DifferentialEquation<A extends Number & Comparable<A>, R e
         simulator.addListener(this, SimulatorInterface.TIME_CHANGED_EVENT, ReferenceType.STRONG);
     }
 
+    /**
+     * Add a state event to the equation. The handler is executed as a discrete event at the time when the value of the
+     * function crosses zero in the given direction. The handler can change the state of the equation with initialize(), e.g.,
+     * to reverse the speed of a bouncing ball. State events are only available on a DEVDESS simulator.
+     * @param function StateEventFunction; the function of which the zero crossings define the state event
+     * @param direction StateEventDirection; the direction of the crossings that trigger the state event
+     * @param handler Executable; the handler to execute at the time of the crossing
+     * @throws RemoteException on remote network exception for the listener
+     * @throws NullPointerException when function, direction or handler is null
+     * @throws DSOLRuntimeException when the simulator of the equation is not a DEVDESS simulator, or when the step size of a
+     *             fixed-step integrator is not positive
+     */
+    public synchronized void addStateEvent(final StateEventFunction function, final StateEventDirection direction,
+            final Executable handler) throws RemoteException
+    {
+        Throw.whenNull(function, "function cannot be null");
+        Throw.whenNull(direction, "direction cannot be null");
+        Throw.whenNull(handler, "handler cannot be null");
+        Throw.when(!(this.simulator instanceof DEVDESSSimulatorInterface), DSOLRuntimeException.class,
+                "state events can only be used on a DEVDESS simulator");
+        Throw.when(!(getIntegrator() instanceof AdaptiveNumericalIntegrator) && !(this.stepSize > 0.0),
+                DSOLRuntimeException.class, "state events need a positive step size, but the step size is %f", this.stepSize);
+        if (this.stateEvents.isEmpty())
+        {
+            this.simulator.addListener(this, DEVDESSSimulatorInterface.STEP_STARTED_EVENT, ReferenceType.STRONG);
+        }
+        this.stateEvents.add(new StateEvent(function, direction, handler));
+    }
+
+    /**
+     * Remove all state events with the given function from the equation, and cancel the crossings of the function that have
+     * already been scheduled.
+     * @param function StateEventFunction; the function of the state events to remove
+     * @return boolean; whether a state event with the function was found
+     * @throws RemoteException on remote network exception for the listener
+     */
+    public synchronized boolean removeStateEvent(final StateEventFunction function) throws RemoteException
+    {
+        boolean removed = false;
+        for (Iterator<StateEvent> iterator = this.stateEvents.iterator(); iterator.hasNext();)
+        {
+            if (iterator.next().function == function)
+            {
+                iterator.remove();
+                removed = true;
+            }
+        }
+        for (Iterator<ScheduledStateEvent> iterator = this.scheduledStateEvents.iterator(); iterator.hasNext();)
+        {
+            ScheduledStateEvent scheduled = iterator.next();
+            if (scheduled.stateEvent.function == function)
+            {
+                getDEVDESSSimulator().cancelEvent(scheduled.simEvent);
+                iterator.remove();
+            }
+        }
+        if (removed && this.stateEvents.isEmpty())
+        {
+            this.simulator.removeListener(this, DEVDESSSimulatorInterface.STEP_STARTED_EVENT);
+            this.lookAheadEnd = Double.NaN;
+            this.lookAheadSize = 0;
+            this.gridX = Double.NaN;
+        }
+        return removed;
+    }
+
+    /**
+     * Return the maximum width of the interval in which the time of a state event is located.
+     * @return double; the maximum width of the interval in which the time of a state event is located
+     */
+    public double getRootTolerance()
+    {
+        return this.rootTolerance;
+    }
+
+    /**
+     * Set the maximum width of the interval in which the time of a state event is located.
+     * @param rootTolerance double; the maximum width of the interval in which the time of a state event is located
+     * @throws IllegalArgumentException when rootTolerance &lt;= 0
+     */
+    public void setRootTolerance(final double rootTolerance)
+    {
+        Throw.when(!(rootTolerance > 0.0), IllegalArgumentException.class, "rootTolerance should be > 0");
+        this.rootTolerance = rootTolerance;
+    }
+
     /** {@inheritDoc} */
     @Override
+    @SuppressWarnings("unchecked")
     public synchronized void notify(final EventInterface event) throws RemoteException
     {
-        if (event.getSourceId().equals(this.simulator.getSourceId())
-                && event.getType().equals(SimulatorInterface.TIME_CHANGED_EVENT))
+        if (!event.getSourceId().equals(this.simulator.getSourceId()))
+        {
+            return;
+        }
+        if (event.getType().equals(DEVDESSSimulatorInterface.STEP_STARTED_EVENT))
+        {
+            if (!this.stateEvents.isEmpty() && !Double.isNaN(super.lastX))
+            {
+                lookAhead(this.previousX, this.previousY, ((Number) event.getContent()).doubleValue());
+            }
+        }
+        else if (event.getType().equals(SimulatorInterface.TIME_CHANGED_EVENT))
         {
-            if (this.simulator.getSimulatorTime().doubleValue() < super.lastX || Double.isNaN(super.lastX))
+            // a DEVS simulator fires the event before it moves its time to the time of the next event, e.g., of a state event
+            A time = event instanceof TimedEvent ? (A) ((TimedEvent<?>) event).getTimeStamp()
+                    : this.simulator.getSimulatorTime();
+            double x = time.doubleValue();
+            if (x < super.lastX || Double.isNaN(super.lastX))
             {
                 return;
             }
-            // do not put super here!
-            this.previousY = integrateY(this.simulator.getSimulatorTime().doubleValue(), this.previousX, this.previousY);
+            if (isLookedAhead(x))
+            {
+                this.previousY = new double[this.previousY.length];
+                interpolateLookAhead(x, this.previousY);
+                super.lastX = x;
+                super.lastY = this.previousY;
+            }
+            else
+            {
+                // do not put super here!
+                this.previousY = integrateY(x, this.previousX, this.previousY);
+            }
             for (int i = 0; i < super.lastY.length; i++)
             {
-                this.fireUnverifiedTimedEvent(this.VALUE_CHANGED_EVENT[i], this.previousY[i],
-                        this.simulator.getSimulatorTime());
+                this.fireUnverifiedTimedEvent(this.VALUE_CHANGED_EVENT[i], this.previousY[i], time);
             }
-            this.previousX = this.simulator.getSimulatorTime().doubleValue();
+            this.previousX = x;
         }
     }
 
     /** {@inheritDoc} */
     @Override
-    public void initialize(final double x, final double[] y)
+    public synchronized void initialize(final double x, final double[] y)
     {
         super.initialize(x, y);
         this.previousX = x;
         this.previousY = y;
+        this.gridX = Double.NaN;
+        if (!this.stateEvents.isEmpty() && x < this.lookAheadEnd)
+        {
+            // the state changed within the time step, e.g., by the handler of a state event
+            lookAhead(x, y, this.lookAheadEnd);
+        }
+        else
+        {
+            this.lookAheadSize = 0;
+        }
+    }
+
+    /**
+     * Integrate from (x0, y0) to the end of the time step, store the integration points, and schedule the state events that
+     * occur within the step. The state events that were scheduled earlier for the step are cancelled. A fixed-step integrator
+     * continues from the end of its last step in the previous look-ahead, which can lie beyond x0 when the step size does not
+     * divide the time step, so a multistep integrator keeps the values of its earlier steps. Its last step can therefore end
+     * after the end of the time step; the crossings after the end are found again in the next look-ahead.
+     * @param x0 double; the x-value to start the look-ahead
+     * @param y0 double[]; the y-values in x0
+     * @param end double; the x-value at the end of the time step
+     * @throws DSOLRuntimeException when the step size of a fixed-step integrator is not positive
+     */
+    protected void lookAhead(final double x0, final double[] y0, final double end)
+    {
+        cancelScheduledStateEvents();
+        this.lookAheadEnd = end;
+        this.lookAheadSize = 0;
+        addLookAheadPoint(x0, y0);
+        NumericalIntegrator integrator = getIntegrator();
+        if (integrator instanceof AdaptiveNumericalIntegrator)
+        {
+            AdaptiveNumericalIntegrator adaptive = (AdaptiveNumericalIntegrator) integrator;
+            if (!adaptive.covers(x0))
+            {
+                adaptive.initialize(x0, y0);
+            }
+            if (adaptive.getStepEnd() > x0)
+            {
+                addLookAheadPoint(adaptive.getStepEnd(), adaptive.interpolate(adaptive.getStepEnd()));
+            }
+            while (adaptive.getStepEnd() < end)
+            {
+                double x = adaptive.step(end);
+                addLookAheadPoint(x, adaptive.interpolate(x));
+            }
+        }
+        else
+        {
+            Throw.when(!(this.stepSize > 0.0), DSOLRuntimeException.class,
+                    "the look-ahead for state events needs a positive step size, but the step size is %f", this.stepSize);
+            double x;
+            double[] y;
+            if (this.gridX >= x0 && this.gridX < x0 + this.stepSize)
+            {
+                // y0 is interpolated in the last step of the previous look-ahead, which ends in gridX
+                x = this.gridX;
+                y = this.gridY;
+                if (x > x0 + STEP_TOLERANCE * this.stepSize)
+                {
+                    addLookAheadPoint(x, y);
+                }
+            }
+            else
+            {
+                x = x0;
+                y = y0.clone();
+            }
+            while (x < end - STEP_TOLERANCE * this.stepSize)
+            {
+                integrator.next(x, y, y);
+                x += this.stepSize;
+                if (Math.abs(x - end) <= STEP_TOLERANCE * this.stepSize)
+                {
+                    // the step size divides the time step; keep the steps on the time grid of the simulator
+                    x = end;
+                }
+                addLookAheadPoint(x, y);
+            }
+            this.gridX = x;
+            this.gridY = y;
+        }
+
+        // bracket the crossings of the state event functions between the integration points, and schedule them
+        for (StateEvent stateEvent : new ArrayList<>(this.stateEvents))
+        {
+            double before = stateEvent.function.value(this.lookAheadX[0], this.lookAheadY[0]);
+            for (int k = 0; k < this.lookAheadSize - 1; k++)
+            {
+                double after = stateEvent.function.value(this.lookAheadX[k + 1], this.lookAheadY[k + 1]);
+                if (stateEvent.direction.isCrossing(before, after))
+                {
+                    double crossing = locateCrossing(stateEvent, k, before, after);
+                    if (crossing <= end)
+                    {
+                        scheduleStateEvent(stateEvent, crossing);
+                    }
+                }
+                before = after;
+            }
+        }
+    }
+
+    /**
+     * Add an integration point to the look-ahead, and compute the derivative in the point.
+     * @param x double; the x-value of the point
+     * @param y double[]; the y-values in the point, which are copied
+     */
+    private void addLookAheadPoint(final double x, final double[] y)
+    {
+        int k = this.lookAheadSize;
+        if (k == this.lookAheadX.length)
+        {
+            int capacity = Math.max(8, 2 * k);
+            double[] xs = new double[capacity];
+            double[][] ys = new double[capacity][];
+            double[][] dys = new double[capacity][];
+            System.arraycopy(this.lookAheadX, 0, xs, 0, k);
+            System.arraycopy(this.lookAheadY, 0, ys, 0, k);
+            System.arraycopy(this.lookAheadDy, 0, dys, 0, k);
+            this.lookAheadX = xs;
+            this.lookAheadY = ys;
+            this.lookAheadDy = dys;
+        }
+        if (this.lookAheadY[k] == null || this.lookAheadY[k].length != y.length)
+        {
+            this.lookAheadY[k] = new double[y.length];
+            this.lookAheadDy[k] = new double[y.length];
+        }
+        this.lookAheadX[k] = x;
+        System.arraycopy(y, 0, this.lookAheadY[k], 0, y.length);
+        dy(x, this.lookAheadY[k], this.lookAheadDy[k]);
+        this.lookAheadSize++;
+    }
+
+    /**
+     * Return whether x lies within the look-ahead over the current time step.
+     * @param x double; the x-value to test
+     * @return boolean; whether y(x) can be interpolated on the integration points of the look-ahead
+     */
+    private boolean isLookedAhead(final double x)
+    {
+        return this.lookAheadSize > 1 && x >= this.lookAheadX[0] && x <= this.lookAheadEnd
+                && x <= this.lookAheadX[this.lookAheadSize - 1];
+    }
+
+    /**
+     * Store y(x) for an x-value within the look-ahead in the given array, using cubic Hermite interpolation on the values and
+     * derivatives of the surrounding integration points.
+     * @param x double; the x-value, which should be within the look-ahead
+     * @param y double[]; the array to store the interpolated value of y(x) in
+     */
+    private void interpolateLookAhead(final double x, final double[] y)
+    {
+        int k = 0;
+        while (k < this.lookAheadSize - 2 && x > this.lookAheadX[k + 1])
+        {
+            k++;
+        }
+        interpolate(k, x, y);
+    }
+
+    /**
+     * Store y(x) for an x-value between integration points k and k + 1 in the given array, using cubic Hermite interpolation.
+     * @param k int; the index of the integration point at the start of the interval
+     * @param x double; the x-value
+     * @param y double[]; the array to store the interpolated value of y(x) in
+     */
+    private void interpolate(final int k, final double x, final double[] y)
+    {
+        double[] y0 = this.lookAheadY[k];
+        double[] y1 = this.lookAheadY[k + 1];
+        double[] dy0 = this.lookAheadDy[k];
+        double[] dy1 = this.lookAheadDy[k + 1];
+        double h = this.lookAheadX[k + 1] - this.lookAheadX[k];
+        double t = (x - this.lookAheadX[k]) / h;
+        double t2 = t * t;
+        double t3 = t2 * t;
+        double h00 = 2.0 * t3 - 3.0 * t2 + 1.0;
+        double h10 = t3 - 2.0 * t2 + t;
+        double h01 = -2.0 * t3 + 3.0 * t2;
+        double h11 = t3 - t2;
+        for (int i = 0; i < y.length; i++)
+        {
+            y[i] = h00 * y0[i] + h10 * h * dy0[i] + h01 * y1[i] + h11 * h * dy1[i];
+        }
+    }
+
+    /**
+     * Locate the crossing of a state event function between integration points k and k + 1 with the Illinois variant of regula
+     * falsi on the interpolated values of the equation. The returned x-value lies at or just after the crossing, within the
+     * root tolerance, so the state event function has its new sign in the returned x-value.
+     * @param stateEvent StateEvent; the state event
+     * @param k int; the index of the integration point at the start of the interval
+     * @param gStart double; the value of the function in integration point k
+     * @param gEnd double; the value of the function in integration point k + 1
+     * @return double; the x-value of the crossing
+     */
+    private double locateCrossing(final StateEvent stateEvent, final int k, final double gStart, final double gEnd)
+    {
+        double a = this.lookAheadX[k];
+        double b = this.lookAheadX[k + 1];
+        double ga = gStart;
+        double gb = gEnd;
+        double[] y = new double[this.lookAheadY[k].length];
+        int side = 0;
+        for (int iteration = 0; iteration < 100 && gb != 0.0 && b - a > this.rootTolerance; iteration++)
+        {
+            double c = (a * gb - b * ga) / (gb - ga);
+            if (!(c > a && c < b))
+            {
+                c = 0.5 * (a + b);
+            }
+            interpolate(k, c, y);
+            double gc = stateEvent.function.value(c, y);
+            if (stateEvent.direction.isCrossing(ga, gc))
+            {
+                b = c;
+                gb = gc;
+                if (side == -1)
+                {
+                    ga *= 0.5;
+                }
+                side = -1;
+            }
+            else
+            {
+                a = c;
+                ga = gc;
+                if (side == 1)
+                {
+                    gb *= 0.5;
+                }
+                side = 1;
+            }
+        }
+        return b;
+    }
+
+    /**
+     * Schedule the handler of a state event at the time of its crossing, but not before the current simulator time.
+     * @param stateEvent StateEvent; the state event
+     * @param x double; the x-value of the crossing
+     * @throws DSOLRuntimeException when the event cannot be scheduled
+     */
+    private void scheduleStateEvent(final StateEvent stateEvent, final double x)
+    {
+        ScheduledStateEvent scheduled = new ScheduledStateEvent(stateEvent);
+        try
+        {
+            scheduled.simEvent = getDEVDESSSimulator().scheduleEventAbs(toSimTime(x), scheduled);
+        }
+        catch (SimRuntimeException exception)
+        {
+            throw new DSOLRuntimeException(exception);
+        }
+        this.scheduledStateEvents.add(scheduled);
+    }
+
+    /**
+     * Cancel the state events that have been scheduled for the current time step and that have not yet taken place.
+     */
+    private void cancelScheduledStateEvents()
+    {
+        for (ScheduledStateEvent scheduled : this.scheduledStateEvents)
+        {
+            getDEVDESSSimulator().cancelEvent(scheduled.simEvent);
+        }
+        this.scheduledStateEvents.clear();
+    }
+
+    /**
+     * Convert an x-value of the equation to a simulation time, which is not earlier than the current simulator time. Long
+     * simulation times are rounded up, so the event does not take place before the crossing. For times with a unit, the x-value
+     * is the value in SI units, which is also the value that the equation receives from the simulator.
+     * @param x double; the x-value
+     * @return T; the simulation time of the x-value
+     * @throws DSOLRuntimeException when the absolute time type of the simulator is not supported
+     */
+    @SuppressWarnings("unchecked")
+    private T toSimTime(final double x)
+    {
+        T simTime = this.simulator.getSimTime().copy();
+        if (x <= simTime.get().doubleValue())
+        {
+            return simTime;
+        }
+        A current = simTime.get();
+        Object time;
+        if (current instanceof Double)
+        {
+            time = Double.valueOf(x);
+        }
+        else if (current instanceof Float)
+        {
+            time = Float.valueOf((float) x);
+        }
+        else if (current instanceof Long)
+        {
+            time = Long.valueOf((long) Math.ceil(x));
+        }
+        else if (current instanceof Time)
+        {
+            time = new Time(x, TimeUnit.BASE_SECOND);
+        }
+        else if (current instanceof FloatTime)
+        {
+            time = new FloatTime((float) x, TimeUnit.BASE_SECOND);
+        }
+        else
+        {
+            throw new DSOLRuntimeException("state events not supported for simulation time " + current.getClass());
+        }
+        simTime.set((A) time);
+        return simTime;
+    }
+
+    /**
+     * Return the simulator as a DEVDESS simulator, which is checked when a state event is added.
+     * @return DEVDESSSimulatorInterface&lt;A,R,T&gt;; the simulator
+     */
+    @SuppressWarnings("unchecked")
+    private DEVDESSSimulatorInterface<A, R, T> getDEVDESSSimulator()
+    {
+        return (DEVDESSSimulatorInterface<A, R, T>) this.simulator;
+    }
+
+    /**
+     * A state event: the function of which the zero crossings define the event, the direction of the crossings, and the
+     * handler.
+     */
+    private static class StateEvent implements Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the function of which the zero crossings define the state event. */
+        private final StateEventFunction function;
+
+        /** the direction of the crossings that trigger the state event. */
+        private final StateEventDirection direction;
+
+        /** the handler to execute at the time of the crossing. */
+        private final Executable handler;
+
+        /**
+         * @param function StateEventFunction; the function of which the zero crossings define the state event
+         * @param direction StateEventDirection; the direction of the crossings that trigger the state event
+         * @param handler Executable; the handler to execute at the time of the crossing
+         */
+        StateEvent(final StateEventFunction function, final StateEventDirection direction, final Executable handler)
+        {
+            this.function = function;
+            this.direction = direction;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * The discrete event that executes the handler of a state event at the time of a crossing.
+     */
+    private class ScheduledStateEvent implements Executable, Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the state event. */
+        private final StateEvent stateEvent;
+
+        /** the scheduled event, to be able to cancel it. */
+        private SimEventInterface<T> simEvent = null;
+
+        /**
+         * @param stateEvent StateEvent; the state event
+         */
+        ScheduledStateEvent(final StateEvent stateEvent)
+        {
+            this.stateEvent = stateEvent;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void execute()
+        {
+            synchronized (DifferentialEquation.this)
+            {
+                DifferentialEquation.this.scheduledStateEvents.remove(this);
+            }
+            this.stateEvent.handler.execute();
+        }
     }
 }
@@ -0,0 +1,46 @@
+package nl.tudelft.simulation.dsol.formalisms.dess;
+
+/**
+ * The direction of the zero crossing of a StateEventFunction that triggers the state event.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public enum StateEventDirection
+{
+    /** the event occurs when the function value goes from negative to zero or positive. */
+    INCREASING,
+
+    /** the event occurs when the function value goes from positive to zero or negative. */
+    DECREASING,
+
+    /** the event occurs on any zero crossing of the function value. */
+    BOTH;
+
+    /**
+     * Return whether the change of the function value from before to after is a crossing in this direction. A value of zero
+     * before the change does not count as a crossing, since the event has already taken place in that case.
+     * @param before double; the function value before the change
+     * @param after double; the function value after the change
+     * @return boolean; whether the change is a zero crossing in this direction
+     */
+    public boolean isCrossing(final double before, final double after)
+    {
+        boolean increasing = before < 0.0 && after >= 0.0;
+        boolean decreasing = before > 0.0 && after <= 0.0;
+        switch (this)
+        {
+            case INCREASING:
+                return increasing;
+            case DECREASING:
+                return decreasing;
+            default:
+                return increasing || decreasing;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package nl.tudelft.simulation.dsol.formalisms.dess;
+
+/**
+ * A StateEventFunction g(x, y) defines a state event of a differential equation: the event occurs when the value of g(x, y)
+ * crosses zero, e.g., when a level in a tank reaches a threshold, or when the height of a falling object becomes zero. The
+ * function should be continuous in x and y, so the crossing can be located between two values with a different sign.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+@FunctionalInterface
+public interface StateEventFunction
+{
+    /**
+     * Compute the value of the state event function; the state event occurs when the value crosses zero.
+     * @param x double; the x-value
+     * @param y double[]; the y-values of the differential equation in x
+     * @return double; the value of the state event function
+     */
+    double value(double x, double[] y);
+}
@@ -2,8 +2,11 @@ package nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS;
 
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.djunits.value.vdouble.scalar.Duration;
@@ -26,7 +29,21 @@ import nl.tudelft.simulation.dsol.simulators.DEVSSimulatorInterface;
 
 /**
  * CoupledModel class. This class implements the classic parallel DEVS coupled model with ports conform Zeigler et al. (2000),
- * section 4.3.
+ * section 4.3. <br>
+ * Messages that are sent through an output port are delivered through a flattened routing table, which is kept by the top
+ * model of the hierarchy. For each output port, the table contains the input ports that finally receive the messages, found by
+ * following the internal couplings, the external output couplings to the output ports of the enclosing coupled models, and the
+ * external input couplings into the coupled models down to the atomic models. A message is therefore delivered in time
+ * proportional to the fan-out of the port, independent of the number of couplings and the depth of the hierarchy. The route of
+ * a port is computed on its first use, or for all ports at once with compileRouting(). The table is invalidated when a
+ * coupling, component or port is added or removed through the methods of the coupled model; when the coupling sets are
+ * changed directly, invalidateRouting() has to be called. A port whose messages pass a coupled model that overrides
+ * transfer() is not routed through the table, so its messages still pass through the overridden transfer(). The table can be
+ * switched off for the whole hierarchy with setFlattenedRouting(false) on the top model. <br>
+ * The components of a coupled model always run on the simulator of their parent model. In a parallel simulation, a hierarchy
+ * of coupled models is therefore the partition of exactly one LogicalProcess: the only way to assign a model to a logical
+ * process is to construct the top model with that logical process as its simulator. Couplings cannot cross logical processes;
+ * a message for a model on another logical process has to be sent as an event with LogicalProcess.sendEvent(...).
  * <p>
  * Copyright (c) 2009-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -64,6 +81,18 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected Set<AbstractDEVSModel<A, R, T>> modelComponents = new LinkedHashSet<>();
 
+    /**
+     * the flattened routing table of the hierarchy, from an output port to the input ports that finally receive its messages.
+     * Only the table of the top model is used. A null route means that the port cannot be routed through the table, because a
+     * coupling on its route uses a port implementation other than InputPort or OutputPort, or because a coupled model on its
+     * route overrides transfer().
+     */
+    private final Map<OutputPortInterface<A, R, T, ?>, List<InputPortInterface<A, R, T, ?>>> routingTable =
+            new LinkedHashMap<>();
+
+    /** whether the messages are delivered through the flattened routing table; only the setting of the top model is used. */
+    private boolean flattenedRouting = true;
+
     // ///////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS AND INITIALIZATION
     // ///////////////////////////////////////////////////////////////////////////
@@ -154,6 +183,233 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
         }
     }
 
+    /**
+     * Deliver a value that is sent through an output port of a component of this coupled model to the input ports that finally
+     * receive it, using the flattened routing table of the top model. When the table is switched off, or when the port cannot
+     * be routed through the table, the value is transferred through the couplings with transfer().
+     * @param <TYPE> the type of message / event being delivered
+     * @param x OutputPortInterface&lt;A,R,T,TYPE&gt;; the output port through which the value is sent
+     * @param y TYPE; the value being delivered
+     * @throws RemoteException remote exception
+     * @throws SimRuntimeException simulation run time exception
+     */
+    @SuppressWarnings("unchecked")
+    public <TYPE> void dispatch(final OutputPortInterface<A, R, T, TYPE> x, final TYPE y)
+            throws RemoteException, SimRuntimeException
+    {
+        CoupledModel<A, R, T> topModel = getTopModel();
+        List<InputPortInterface<A, R, T, ?>> route = topModel.flattenedRouting ? topModel.getRoute(x) : null;
+        if (route == null)
+        {
+            transfer(x, y);
+            return;
+        }
+        for (InputPortInterface<A, R, T, ?> inputPort : route)
+        {
+            // as for the external input couplings in InputPort.receive(), an error of one receiver is logged, and the
+            // other receivers still get the message
+            try
+            {
+                ((InputPortInterface<A, R, T, TYPE>) inputPort).receive(y, this.simulator.getSimTime());
+            }
+            catch (SimRuntimeException e)
+            {
+                this.simulator.getLogger().always().error(e);
+            }
+        }
+    }
+
+    /**
+     * Return the top model of the hierarchy that this coupled model is part of, which keeps the routing table.
+     * @return CoupledModel&lt;A,R,T&gt;; the top model of the hierarchy
+     */
+    public CoupledModel<A, R, T> getTopModel()
+    {
+        CoupledModel<A, R, T> model = this;
+        while (model.parentModel != null)
+        {
+            model = model.parentModel;
+        }
+        return model;
+    }
+
+    /**
+     * Compute the routes of all output ports in the hierarchy, so no route has to be computed during the simulation. The
+     * routing table is kept by the top model.
+     */
+    public void compileRouting()
+    {
+        CoupledModel<A, R, T> topModel = getTopModel();
+        synchronized (topModel.routingTable)
+        {
+            topModel.routingTable.clear();
+            topModel.compileRouting(topModel);
+        }
+    }
+
+    /**
+     * Compute the routes of the output ports of a model and, for a coupled model, of all its components.
+     * @param model AbstractDEVSModel&lt;A,R,T&gt;; the model to compute the routes for
+     */
+    private void compileRouting(final AbstractDEVSModel<A, R, T> model)
+    {
+        if (model instanceof AbstractDEVSPortModel)
+        {
+            for (OutputPortInterface<A, R, T, ?> outputPort : ((AbstractDEVSPortModel<A, R, T>) model).getOutputPortMap()
+                    .values())
+            {
+                getRoute(outputPort);
+            }
+        }
+        if (model instanceof CoupledModel)
+        {
+            for (AbstractDEVSModel<A, R, T> component : ((CoupledModel<A, R, T>) model).modelComponents)
+            {
+                compileRouting(component);
+            }
+        }
+    }
+
+    /**
+     * Clear the routing table of the hierarchy, so the routes are computed again on their next use. This method is called by
+     * the methods that change the couplings, components and ports, and should be called after changing the coupling sets
+     * directly.
+     */
+    public void invalidateRouting()
+    {
+        CoupledModel<A, R, T> topModel = getTopModel();
+        synchronized (topModel.routingTable)
+        {
+            topModel.routingTable.clear();
+        }
+    }
+
+    /**
+     * Return whether the messages in the hierarchy are delivered through the flattened routing table.
+     * @return boolean; whether the messages are delivered through the flattened routing table
+     */
+    public boolean isFlattenedRouting()
+    {
+        return getTopModel().flattenedRouting;
+    }
+
+    /**
+     * Set whether the messages in the hierarchy are delivered through the flattened routing table, or are transferred through
+     * the couplings of each coupled model on the way with transfer().
+     * @param flattenedRouting boolean; whether the messages are delivered through the flattened routing table
+     */
+    public void setFlattenedRouting(final boolean flattenedRouting)
+    {
+        getTopModel().flattenedRouting = flattenedRouting;
+        invalidateRouting();
+    }
+
+    /**
+     * Return the route of an output port from the routing table of this (top) model, and compute it when it is not present.
+     * @param outputPort OutputPortInterface&lt;A,R,T,?&gt;; the output port
+     * @return List&lt;InputPortInterface&lt;A,R,T,?&gt;&gt;; the input ports that finally receive the messages of the port, or
+     *         null when the port cannot be routed through the table
+     */
+    List<InputPortInterface<A, R, T, ?>> getRoute(final OutputPortInterface<A, R, T, ?> outputPort)
+    {
+        synchronized (this.routingTable)
+        {
+            if (this.routingTable.containsKey(outputPort))
+            {
+                return this.routingTable.get(outputPort);
+            }
+            List<InputPortInterface<A, R, T, ?>> route = new ArrayList<>();
+            if (!routeOutput(outputPort, route))
+            {
+                route = null;
+            }
+            this.routingTable.put(outputPort, route);
+            return route;
+        }
+    }
+
+    /**
+     * Add the input ports that finally receive the messages of an output port to the route, in the order in which transfer()
+     * would deliver them.
+     * @param outputPort OutputPortInterface&lt;A,R,T,?&gt;; the output port
+     * @param route List&lt;InputPortInterface&lt;A,R,T,?&gt;&gt;; the route to add the input ports to
+     * @return boolean; whether the output port could be routed
+     */
+    private boolean routeOutput(final OutputPortInterface<A, R, T, ?> outputPort,
+            final List<InputPortInterface<A, R, T, ?>> route)
+    {
+        CoupledModel<A, R, T> parent = outputPort.getModel().parentModel;
+        if (parent == null)
+        {
+            return true;
+        }
+        if (overridesTransfer(parent))
+        {
+            return false;
+        }
+        for (IC<A, R, T, ?> ic : parent.internalCouplingSet)
+        {
+            if (ic.getFromPort() == outputPort)
+            {
+                routeInput(ic.getToPort(), route);
+            }
+        }
+        for (EOC<A, R, T, ?> eoc : parent.externalOutputCouplingSet)
+        {
+            if (eoc.getFromPort() == outputPort)
+            {
+                if (!(eoc.getToPort() instanceof OutputPort) || !routeOutput(eoc.getToPort(), route))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return whether the class of a coupled model overrides transfer(), in which case the messages that pass the coupled model
+     * have to be delivered through its transfer() method, and cannot be routed through the table.
+     * @param model CoupledModel&lt;A,R,T&gt;; the coupled model
+     * @return boolean; whether the class of the coupled model overrides transfer()
+     */
+    private static boolean overridesTransfer(final CoupledModel<?, ?, ?> model)
+    {
+        try
+        {
+            return model.getClass().getMethod("transfer", OutputPortInterface.class, Object.class)
+                    .getDeclaringClass() != CoupledModel.class;
+        }
+        catch (NoSuchMethodException exception)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Add an input port to the route, or, for an input port of a coupled model, the input ports that its external input
+     * couplings finally lead to.
+     * @param inputPort InputPortInterface&lt;A,R,T,?&gt;; the input port
+     * @param route List&lt;InputPortInterface&lt;A,R,T,?&gt;&gt;; the route to add the input ports to
+     */
+    private void routeInput(final InputPortInterface<A, R, T, ?> inputPort, final List<InputPortInterface<A, R, T, ?>> route)
+    {
+        if (inputPort instanceof InputPort && inputPort.getModel() instanceof CoupledModel)
+        {
+            for (EIC<A, R, T, ?> eic : ((CoupledModel<A, R, T>) inputPort.getModel()).externalInputCouplingSet)
+            {
+                if (eic.getFromPort() == inputPort)
+                {
+                    routeInput(eic.getToPort(), route);
+                }
+            }
+        }
+        else
+        {
+            route.add(inputPort);
+        }
+    }
+
     // ///////////////////////////////////////////////////////////////////////////
     // COUPLING: MAKING AND REMOVING IC, EOC, EIC COUPLINGS
     // ///////////////////////////////////////////////////////////////////////////
@@ -171,6 +427,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
         try
         {
             this.internalCouplingSet.add(new IC<A, R, T, TYPE>(fromPort, toPort));
+            invalidateRouting();
         }
         catch (Exception e)
         {
@@ -196,7 +453,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
                 this.internalCouplingSet.remove(ic);
             }
         }
-
+        invalidateRouting();
     }
 
     /**
@@ -213,6 +470,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
         try
         {
             this.externalInputCouplingSet.add(new EIC<A, R, T, TYPE>(fromPort, toPort));
+            invalidateRouting();
         }
         catch (Exception e)
         {
@@ -238,6 +496,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
                 this.externalInputCouplingSet.remove(eic);
             }
         }
+        invalidateRouting();
     }
 
     /**
@@ -254,6 +513,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
         try
         {
             this.externalOutputCouplingSet.add(new EOC<A, R, T, TYPE>(fromPort, toPort));
+            invalidateRouting();
         }
         catch (Exception e)
         {
@@ -279,6 +539,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
                 this.externalOutputCouplingSet.remove(eoc);
             }
         }
+        invalidateRouting();
     }
 
     // ///////////////////////////////////////////////////////////////////////////
@@ -292,6 +553,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
     public void addModelComponent(final AbstractDEVSModel<A, R, T> model)
     {
         this.modelComponents.add(model);
+        invalidateRouting();
 
         List<Reference<EventListenerInterface>> elis = getListenerReferences(AbstractDEVSModel.STATE_UPDATE);
 
@@ -340,6 +602,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
         // connected to anything anymore.
 
         this.modelComponents.remove(model);
+        invalidateRouting();
     }
 
     /**
@@ -366,6 +629,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
                 this.internalCouplingSet.remove(ic);
             }
         }
+        invalidateRouting();
     }
 
     /**
@@ -392,6 +656,7 @@ public abstract class CoupledModel<A extends Comparable<A> & Serializable, R ext
                 this.internalCouplingSet.remove(ic);
             }
         }
+        invalidateRouting();
     }
 
     // ///////////////////////////////////////////////////////////////////////////
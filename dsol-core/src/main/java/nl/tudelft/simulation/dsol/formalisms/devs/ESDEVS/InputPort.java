@@ -64,7 +64,12 @@ public class InputPort<A extends Comparable<A> & Serializable, R extends Number
     @Override
     public synchronized void receive(final TYPE value, final T time) throws RemoteException, SimRuntimeException
     {
-        if (this.atomic)
+        if (this.model instanceof ParallelAtomicModel)
+        {
+            // PARALLEL DEVS MODEL: the message is collected in the bag of the model
+            ((ParallelAtomicModel<A, R, T>) this.model).getCoordinator().receive(this, value);
+        }
+        else if (this.atomic)
         {
             // ATOMIC MODEL
             AtomicModel<A, R, T> atomicModel = (AtomicModel<A, R, T>) this.model;
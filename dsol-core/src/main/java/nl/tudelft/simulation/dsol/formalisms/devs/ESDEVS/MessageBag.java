@@ -0,0 +1,125 @@
+package nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+
+/**
+ * MessageBag contains the messages that a ParallelAtomicModel receives at one simulation time in Parallel DEVS, cf. Zeigler et
+ * al. (2000), section 6.2. Each message consists of the input port on which it was received, and the value. The messages are
+ * kept in the order in which they were sent, where the messages of components that produce their output at the same time are
+ * ordered by the registration order of the components in the ParallelDEVSCoordinator, so the order does not depend on the
+ * order in which the outputs were computed in parallel.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration for absolute Time. For most non-unit types, the absolute and
+ *            relative types are the same.
+ * @param <T> the extended type itself to be able to implement a comparator on the simulation time.
+ */
+public class MessageBag<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>, T extends SimTime<A, R, T>>
+        implements Serializable
+{
+    /** the default serialVersionUId. */
+    private static final long serialVersionUID = 1L;
+
+    /** the input ports on which the messages were received. */
+    private final List<InputPortInterface<A, R, T, ?>> ports = new ArrayList<>();
+
+    /** the values of the messages. */
+    private final List<Object> values = new ArrayList<>();
+
+    /**
+     * Add a message to the bag.
+     * @param port InputPortInterface&lt;A,R,T,?&gt;; the input port on which the message was received
+     * @param value Object; the value of the message
+     */
+    protected void add(final InputPortInterface<A, R, T, ?> port, final Object value)
+    {
+        this.ports.add(port);
+        this.values.add(value);
+    }
+
+    /**
+     * Remove all messages from the bag.
+     */
+    protected void clear()
+    {
+        this.ports.clear();
+        this.values.clear();
+    }
+
+    /**
+     * @return the number of messages in the bag
+     */
+    public int size()
+    {
+        return this.values.size();
+    }
+
+    /**
+     * @return whether the bag contains no messages
+     */
+    public boolean isEmpty()
+    {
+        return this.values.isEmpty();
+    }
+
+    /**
+     * Return the input port on which message i was received.
+     * @param i int; the index of the message
+     * @return InputPortInterface&lt;A,R,T,?&gt;; the input port on which message i was received
+     * @throws IndexOutOfBoundsException when i is not between 0 and size() - 1
+     */
+    public InputPortInterface<A, R, T, ?> getPort(final int i)
+    {
+        return this.ports.get(i);
+    }
+
+    /**
+     * Return the value of message i.
+     * @param i int; the index of the message
+     * @return Object; the value of message i
+     * @throws IndexOutOfBoundsException when i is not between 0 and size() - 1
+     */
+    public Object getValue(final int i)
+    {
+        return this.values.get(i);
+    }
+
+    /**
+     * Return the values of the messages that were received on the given input port, in the order of the bag.
+     * @param <TYPE> the type of the messages of the port
+     * @param port InputPortInterface&lt;A,R,T,TYPE&gt;; the input port
+     * @return List&lt;TYPE&gt;; the values of the messages that were received on the port; the list is empty when the port did
+     *         not receive a message
+     */
+    @SuppressWarnings("unchecked")
+    public <TYPE> List<TYPE> getValues(final InputPortInterface<A, R, T, TYPE> port)
+    {
+        List<TYPE> result = new ArrayList<>();
+        for (int i = 0; i < this.ports.size(); i++)
+        {
+            if (this.ports.get(i) == port)
+            {
+                result.add((TYPE) this.values.get(i));
+            }
+        }
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "MessageBag [size=" + this.values.size() + "]";
+    }
+}
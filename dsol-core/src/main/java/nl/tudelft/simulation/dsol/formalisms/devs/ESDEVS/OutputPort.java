@@ -55,13 +55,19 @@ public class OutputPort<A extends Comparable<A> & Serializable, R extends Number
     @Override
     public void send(final TYPE value)
     {
+        if (this.model instanceof ParallelAtomicModel
+                && ((ParallelAtomicModel<A, R, T>) this.model).collectOutput(this, value))
+        {
+            // Parallel DEVS: the coordinator delivers the message after the output of all imminent models is known
+            return;
+        }
         if (this.model.parentModel != null)
         {
             try
             {
                 this.model.getSimulator().getLogger().filter(Cat.DSOL).debug("send: TIME IS {}",
                         this.model.getSimulator().getSimulatorTime());
-                this.model.parentModel.transfer(this, value);
+                this.model.parentModel.dispatch(this, value);
             }
             catch (RemoteException | SimRuntimeException e)
             {
@@ -0,0 +1,186 @@
+package nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+
+/**
+ * ParallelAtomicModel class. Implements the Parallel DEVS atomic model with ports and message bags cf. Zeigler et al. (2000),
+ * section 4.3 and chapter 6. The model does not schedule its own internal events on the simulator; instead, it is executed by
+ * a ParallelDEVSCoordinator, which computes the output of all imminent components at the same simulation time, delivers the
+ * messages into the bags of the receiving components, and then executes the transitions of all these components. The output
+ * function lambda() and the transition functions of the components are executed concurrently, so they should only change the
+ * state of their own component, and send messages through the output ports of the component. Messages should be sent in
+ * lambda(); messages that are sent in a transition function are delivered in a next step of the coordinator at the same time.
+ * <br>
+ * A component that is imminent and receives messages at the same time executes the confluent transition function. The default
+ * implementation follows the conflict strategy of the component: with INTERNAL_FIRST, the internal transition is followed by the
+ * external transition with an elapsed time of zero; with EXTERNAL_FIRST, the external transition with an elapsed time equal to
+ * the time advance is followed by the internal transition.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration for absolute Time. For most non-unit types, the absolute and
+ *            relative types are the same.
+ * @param <T> the extended type itself to be able to implement a comparator on the simulation time.
+ */
+public abstract class ParallelAtomicModel<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+        T extends SimTime<A, R, T>> extends AtomicModel<A, R, T>
+{
+    /** the default serialVersionUId. */
+    private static final long serialVersionUID = 1L;
+
+    /** the coordinator that executes this component. */
+    private final ParallelDEVSCoordinator<A, R, T> coordinator;
+
+    /** the index of this component in the coordinator, which determines the order of the messages in the bags. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    int index;
+
+    /** the messages that this component received at the current simulation time. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    final MessageBag<A, R, T> bag = new MessageBag<>();
+
+    /** the output ports through which messages were sent in the last call of lambda() or of a transition function. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    final List<OutputPortInterface<A, R, T, ?>> outputPorts = new ArrayList<>();
+
+    /** the values of the messages that were sent in the last call of lambda() or of a transition function. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    final List<Object> outputValues = new ArrayList<>();
+
+    /** whether the messages that the component sends are being collected by the coordinator. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    boolean collectingOutput = false;
+
+    /** whether the component is imminent at the current simulation time. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    boolean imminent = false;
+
+    /**
+     * Constructor for a parallel atomic model within a coupled model, with an initial elapsed time of zero.
+     * @param modelName String; the name of this component
+     * @param parentModel CoupledModel&lt;A,R,T&gt;; the coupled model this atomic model is part of
+     * @param coordinator ParallelDEVSCoordinator&lt;A,R,T&gt;; the coordinator that executes this component
+     * @throws NullPointerException when coordinator is null
+     */
+    public ParallelAtomicModel(final String modelName, final CoupledModel<A, R, T> parentModel,
+            final ParallelDEVSCoordinator<A, R, T> coordinator)
+    {
+        this(modelName, parentModel, coordinator, parentModel.getSimulator().getSimTime().getRelativeZero(), new Phase(""),
+                AtomicModel.INTERNAL_FIRST);
+    }
+
+    /**
+     * Constructor for a parallel atomic model within a coupled model with explicit phases and conflict strategy.
+     * @param modelName String; the name of this component
+     * @param parentModel CoupledModel&lt;A,R,T&gt;; the coupled model this atomic model is part of
+     * @param coordinator ParallelDEVSCoordinator&lt;A,R,T&gt;; the coordinator that executes this component
+     * @param e R; initial elapsed time
+     * @param initphase Phase; the initial phase of the model
+     * @param conflictStrategy boolean; the conflict strategy that the default confluent transition function applies
+     * @throws NullPointerException when coordinator is null
+     */
+    public ParallelAtomicModel(final String modelName, final CoupledModel<A, R, T> parentModel,
+            final ParallelDEVSCoordinator<A, R, T> coordinator, final R e, final Phase initphase,
+            final boolean conflictStrategy)
+    {
+        super(modelName, parentModel, e, initphase, conflictStrategy);
+        Throw.whenNull(coordinator, "coordinator cannot be null");
+        this.coordinator = coordinator;
+        coordinator.addModel(this);
+    }
+
+    /**
+     * Initialize the parallel atomic model: the time of the last event is set to the current time minus e, and the coordinator
+     * executes the first internal transition at the time of the last event plus the time advance.
+     * @param e R; elapsed time since the last state transition
+     */
+    @Override
+    public void initialize(final R e)
+    {
+        this.coordinator.initialize(this, e);
+    }
+
+    /**
+     * The external transition function for the messages that the component received at the current simulation time.
+     * @param e R; the elapsed time since the last state transition
+     * @param messages MessageBag&lt;A,R,T&gt;; the messages that were received, which is not empty
+     */
+    protected abstract void deltaExternal(R e, MessageBag<A, R, T> messages);
+
+    /**
+     * The confluent transition function, which is executed when the component is imminent and receives messages at the same
+     * time. The default implementation combines the internal and the external transition according to the conflict strategy.
+     * @param messages MessageBag&lt;A,R,T&gt;; the messages that were received, which is not empty
+     */
+    protected void deltaConfluent(final MessageBag<A, R, T> messages)
+    {
+        if (this.conflictStrategy == AtomicModel.INTERNAL_FIRST)
+        {
+            deltaInternal();
+            deltaExternal(getSimulator().getSimTime().getRelativeZero(), messages);
+        }
+        else
+        {
+            deltaExternal(this.timeNextEvent.diff(this.timeLastEvent), messages);
+            deltaInternal();
+        }
+    }
+
+    /**
+     * The external transition for a single value, e.g., when the method is called directly. The value is offered as a bag with
+     * one message on the active port. In a Parallel DEVS simulation, the messages are delivered through the coordinator.
+     * @param e R; the elapsed time since the last state transition
+     * @param value Object; the value that has been passed through the port
+     */
+    @Override
+    protected final void deltaExternal(final R e, final Object value)
+    {
+        MessageBag<A, R, T> messages = new MessageBag<>();
+        messages.add(this.activePort, value);
+        deltaExternal(e, messages);
+    }
+
+    /**
+     * Collect a message that is sent through an output port of this component while the coordinator executes it.
+     * @param outputPort OutputPortInterface&lt;A,R,T,?&gt;; the output port through which the message is sent
+     * @param value Object; the value of the message
+     * @return boolean; whether the message was collected; false when the component is not executed by the coordinator
+     */
+    boolean collectOutput(final OutputPortInterface<A, R, T, ?> outputPort, final Object value)
+    {
+        if (!this.collectingOutput)
+        {
+            return false;
+        }
+        this.outputPorts.add(outputPort);
+        this.outputValues.add(value);
+        return true;
+    }
+
+    /**
+     * @return the coordinator that executes this component
+     */
+    public ParallelDEVSCoordinator<A, R, T> getCoordinator()
+    {
+        return this.coordinator;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void printModel(final String space)
+    {
+        System.out.println(space + "Parallel atomicmodel: " + this.getClass().getName());
+    }
+}
@@ -0,0 +1,541 @@
+package nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulatorInterface;
+import nl.tudelft.simulation.language.DSOLRuntimeException;
+
+/**
+ * ParallelDEVSCoordinator executes a set of ParallelAtomicModels with the Parallel DEVS protocol of Chow and Zeigler, cf.
+ * Zeigler et al. (2000), chapters 6 and 7. The coordinator keeps the time of the next internal event of its components, and
+ * schedules one event on the DEVS simulator for the first of these times. At that time, the coordinator:
+ * <ol>
+ * <li>computes the output of all imminent components with lambda(), and collects the messages that they send;</li>
+ * <li>delivers the messages through the flattened routing table of the coupled models into the bags of the receiving
+ * components;</li>
+ * <li>executes the confluent transition for the components that are imminent and received messages, the internal transition
+ * for the other imminent components, and the external transition for the other components that received messages;</li>
+ * <li>computes the time of the next internal event of the components that made a transition.</li>
+ * </ol>
+ * The output functions and the transition functions of the components are executed concurrently in the common ForkJoinPool
+ * when parallel execution is switched on, and the number of components exceeds the chunk size. Because the messages are
+ * ordered by the registration order of the sending components, and each transition only changes the state of its own component,
+ * the results do not depend on the number of threads. The events for listeners to the state of the components are fired after
+ * the transitions, in the registration order of the components. Messages that components send in a transition function are
+ * delivered in a next step at the same simulation time. <br>
+ * Messages for components that are not coordinated by this coordinator are delivered after the transitions with the normal
+ * receive() of their input ports, and messages that ParallelAtomicModels receive from outside, e.g., from a classic atomic
+ * model, are collected in their bag and processed in a step of the coordinator at the current simulation time.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration for absolute Time. For most non-unit types, the absolute and
+ *            relative types are the same.
+ * @param <T> the extended type itself to be able to implement a comparator on the simulation time.
+ */
+public class ParallelDEVSCoordinator<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+        T extends SimTime<A, R, T>> implements Serializable
+{
+    /** the default serialVersionUId. */
+    private static final long serialVersionUID = 1L;
+
+    /** the comparator on the registration order of the components. */
+    private static final Comparator<ParallelAtomicModel<?, ?, ?>> INDEX_ORDER = Comparator.comparingInt(model -> model.index);
+
+    /** the simulator to schedule the steps of the coordinator on. */
+    private final DEVSSimulatorInterface<A, R, T> simulator;
+
+    /** the components in registration order. */
+    private final List<ParallelAtomicModel<A, R, T>> models = new ArrayList<>();
+
+    /** the components with a finite time of the next internal event, ordered on that time and on the registration order. */
+    private final TreeSet<ParallelAtomicModel<A, R, T>> schedule = new TreeSet<>(new NextEventComparator<A, R, T>());
+
+    /** the components that received messages from outside the coordinator since the last step. */
+    private final List<ParallelAtomicModel<A, R, T>> influenced = new ArrayList<>();
+
+    /** the event for the next step of the coordinator, or null when no step is scheduled. */
+    private SimEventInterface<T> stepEvent = null;
+
+    /** whether the output and transition functions are executed in parallel. */
+    private boolean parallel = true;
+
+    /** the maximum number of components per parallel task. */
+    private int chunkSize = 64;
+
+    /** the number of steps that the coordinator executed. */
+    private long steps = 0;
+
+    /**
+     * Construct a coordinator for Parallel DEVS components.
+     * @param simulator DEVSSimulatorInterface&lt;A,R,T&gt;; the simulator to schedule the steps of the coordinator on
+     * @throws NullPointerException when simulator is null
+     */
+    public ParallelDEVSCoordinator(final DEVSSimulatorInterface<A, R, T> simulator)
+    {
+        Throw.whenNull(simulator, "simulator cannot be null");
+        this.simulator = simulator;
+    }
+
+    /**
+     * Register a component; this method is called by the constructor of the ParallelAtomicModel.
+     * @param model ParallelAtomicModel&lt;A,R,T&gt;; the component to register
+     */
+    synchronized void addModel(final ParallelAtomicModel<A, R, T> model)
+    {
+        model.index = this.models.size();
+        this.models.add(model);
+    }
+
+    /**
+     * Initialize a component: the time of the last event is set to the current time minus e, and the first internal event of
+     * the component is planned at the time of the last event plus the time advance.
+     * @param model ParallelAtomicModel&lt;A,R,T&gt;; the component to initialize
+     * @param e R; elapsed time since the last state transition
+     */
+    synchronized void initialize(final ParallelAtomicModel<A, R, T> model, final R e)
+    {
+        if (model.timeNextEvent != null)
+        {
+            this.schedule.remove(model);
+        }
+        model.timeLastEvent = this.simulator.getSimTime().minus(e);
+        planNextEvent(model);
+        if (model.timeNextEvent != null)
+        {
+            this.schedule.add(model);
+        }
+        reschedule();
+    }
+
+    /**
+     * Receive a message for a component from outside the coordinator. The message is put in the bag of the component, and
+     * processed in a step of the coordinator at the current simulation time.
+     * @param inputPort InputPortInterface&lt;A,R,T,?&gt;; the input port of a ParallelAtomicModel of this coordinator
+     * @param value Object; the value of the message
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void receive(final InputPortInterface<A, R, T, ?> inputPort, final Object value)
+    {
+        ParallelAtomicModel<A, R, T> model = (ParallelAtomicModel<A, R, T>) inputPort.getModel();
+        if (model.bag.isEmpty())
+        {
+            this.influenced.add(model);
+        }
+        model.bag.add(inputPort, value);
+        reschedule();
+    }
+
+    /**
+     * Execute one step of the Parallel DEVS protocol at the current simulation time.
+     */
+    protected synchronized void step()
+    {
+        this.stepEvent = null;
+        this.steps++;
+        T now = this.simulator.getSimTime().copy();
+
+        // the imminent components, in registration order
+        List<ParallelAtomicModel<A, R, T>> imminents = new ArrayList<>();
+        while (!this.schedule.isEmpty() && this.schedule.first().timeNextEvent.le(now))
+        {
+            ParallelAtomicModel<A, R, T> model = this.schedule.pollFirst();
+            model.imminent = true;
+            imminents.add(model);
+        }
+        imminents.sort(INDEX_ORDER);
+
+        // compute the output of the imminent components, and deliver it into the bags
+        execute(imminents, true, now);
+        List<InputPortInterface<A, R, T, ?>> deferredPorts = new ArrayList<>();
+        List<Object> deferredValues = new ArrayList<>();
+        List<OutputPortInterface<A, R, T, ?>> unroutedPorts = new ArrayList<>();
+        List<Object> unroutedValues = new ArrayList<>();
+        route(imminents, deferredPorts, deferredValues, unroutedPorts, unroutedValues);
+
+        // execute the transitions of the imminent and influenced components, in registration order
+        List<ParallelAtomicModel<A, R, T>> active = new ArrayList<>(imminents);
+        for (ParallelAtomicModel<A, R, T> model : this.influenced)
+        {
+            if (!model.imminent)
+            {
+                if (model.timeNextEvent != null)
+                {
+                    this.schedule.remove(model);
+                }
+                active.add(model);
+            }
+        }
+        this.influenced.clear();
+        active.sort(INDEX_ORDER);
+        execute(active, false, now);
+        for (ParallelAtomicModel<A, R, T> model : active)
+        {
+            if (model.timeNextEvent != null)
+            {
+                this.schedule.add(model);
+            }
+            model.fireUpdatedState();
+        }
+
+        // messages that were sent in the transitions are processed in a next step at the same time
+        route(active, deferredPorts, deferredValues, unroutedPorts, unroutedValues);
+
+        // deliver the messages for the components outside this coordinator
+        deliver(deferredPorts, deferredValues, unroutedPorts, unroutedValues, now);
+        reschedule();
+    }
+
+    /**
+     * Deliver the messages that the components sent into the bags of the receiving components of this coordinator, in the
+     * registration order of the senders. The messages for other components are added to the deferred messages, and the messages
+     * of output ports without a route to the unrouted messages.
+     * @param senders List&lt;ParallelAtomicModel&lt;A,R,T&gt;&gt;; the components that sent messages, in registration order
+     * @param deferredPorts List&lt;InputPortInterface&lt;A,R,T,?&gt;&gt;; the input ports that receive a deferred message
+     * @param deferredValues List&lt;Object&gt;; the values of the deferred messages
+     * @param unroutedPorts List&lt;OutputPortInterface&lt;A,R,T,?&gt;&gt;; the output ports that could not be routed
+     * @param unroutedValues List&lt;Object&gt;; the values of the messages that could not be routed
+     */
+    private void route(final List<ParallelAtomicModel<A, R, T>> senders,
+            final List<InputPortInterface<A, R, T, ?>> deferredPorts, final List<Object> deferredValues,
+            final List<OutputPortInterface<A, R, T, ?>> unroutedPorts, final List<Object> unroutedValues)
+    {
+        for (ParallelAtomicModel<A, R, T> model : senders)
+        {
+            for (int i = 0; i < model.outputPorts.size(); i++)
+            {
+                OutputPortInterface<A, R, T, ?> outputPort = model.outputPorts.get(i);
+                Object value = model.outputValues.get(i);
+                CoupledModel<A, R, T> parent = model.parentModel;
+                List<InputPortInterface<A, R, T, ?>> route = parent == null ? null : parent.getTopModel().getRoute(outputPort);
+                if (route == null)
+                {
+                    unroutedPorts.add(outputPort);
+                    unroutedValues.add(value);
+                    continue;
+                }
+                for (InputPortInterface<A, R, T, ?> inputPort : route)
+                {
+                    if (inputPort.getModel() instanceof ParallelAtomicModel
+                            && ((ParallelAtomicModel<A, R, T>) inputPort.getModel()).getCoordinator() == this)
+                    {
+                        ParallelAtomicModel<A, R, T> receiver = (ParallelAtomicModel<A, R, T>) inputPort.getModel();
+                        if (receiver.bag.isEmpty())
+                        {
+                            this.influenced.add(receiver);
+                        }
+                        receiver.bag.add(inputPort, value);
+                    }
+                    else
+                    {
+                        deferredPorts.add(inputPort);
+                        deferredValues.add(value);
+                    }
+                }
+            }
+            model.outputPorts.clear();
+            model.outputValues.clear();
+        }
+    }
+
+    /**
+     * Deliver the messages for components that are not coordinated by this coordinator, in the order in which they were sent.
+     * @param deferredPorts List&lt;InputPortInterface&lt;A,R,T,?&gt;&gt;; the input ports that receive a routed message
+     * @param deferredValues List&lt;Object&gt;; the values of the routed messages
+     * @param unroutedPorts List&lt;OutputPortInterface&lt;A,R,T,?&gt;&gt;; the output ports that could not be routed
+     * @param unroutedValues List&lt;Object&gt;; the values of the messages that could not be routed
+     * @param now T; the current simulation time
+     */
+    @SuppressWarnings("unchecked")
+    private void deliver(final List<InputPortInterface<A, R, T, ?>> deferredPorts, final List<Object> deferredValues,
+            final List<OutputPortInterface<A, R, T, ?>> unroutedPorts, final List<Object> unroutedValues, final T now)
+    {
+        try
+        {
+            for (int i = 0; i < deferredPorts.size(); i++)
+            {
+                ((InputPortInterface<A, R, T, Object>) deferredPorts.get(i)).receive(deferredValues.get(i), now);
+            }
+            for (int i = 0; i < unroutedPorts.size(); i++)
+            {
+                OutputPortInterface<A, R, T, Object> outputPort = (OutputPortInterface<A, R, T, Object>) unroutedPorts.get(i);
+                if (outputPort.getModel().parentModel != null)
+                {
+                    outputPort.getModel().parentModel.transfer(outputPort, unroutedValues.get(i));
+                }
+            }
+        }
+        catch (RemoteException | SimRuntimeException exception)
+        {
+            this.simulator.getLogger().always().error(exception);
+        }
+    }
+
+    /**
+     * Execute the output function or the transition function of a list of components, in parallel when the list is longer than
+     * the chunk size and parallel execution is switched on.
+     * @param list List&lt;ParallelAtomicModel&lt;A,R,T&gt;&gt;; the components
+     * @param output boolean; true to execute the output function, false to execute the transition function
+     * @param now T; the current simulation time
+     */
+    private void execute(final List<ParallelAtomicModel<A, R, T>> list, final boolean output, final T now)
+    {
+        if (this.parallel && list.size() > this.chunkSize)
+        {
+            ForkJoinPool.commonPool().invoke(new PhaseTask(list, output, now, 0, list.size()));
+        }
+        else
+        {
+            for (ParallelAtomicModel<A, R, T> model : list)
+            {
+                execute(model, output, now);
+            }
+        }
+    }
+
+    /**
+     * Execute the output function or the transition function of one component.
+     * @param model ParallelAtomicModel&lt;A,R,T&gt;; the component
+     * @param output boolean; true to execute the output function, false to execute the transition function
+     * @param now T; the current simulation time
+     */
+    private void execute(final ParallelAtomicModel<A, R, T> model, final boolean output, final T now)
+    {
+        if (output)
+        {
+            model.collectingOutput = true;
+            try
+            {
+                model.lambda();
+            }
+            finally
+            {
+                model.collectingOutput = false;
+            }
+            return;
+        }
+        model.collectingOutput = true;
+        try
+        {
+            if (model.imminent && !model.bag.isEmpty())
+            {
+                model.deltaConfluent(model.bag);
+            }
+            else if (model.imminent)
+            {
+                model.deltaInternal();
+            }
+            else
+            {
+                model.deltaExternal(now.diff(model.timeLastEvent), model.bag);
+            }
+        }
+        finally
+        {
+            model.collectingOutput = false;
+        }
+        model.bag.clear();
+        model.imminent = false;
+        model.timeLastEvent = now.copy();
+        planNextEvent(model);
+    }
+
+    /**
+     * Compute the time of the next internal event of a component from the time of its last event and its time advance.
+     * @param model ParallelAtomicModel&lt;A,R,T&gt;; the component
+     */
+    private void planNextEvent(final ParallelAtomicModel<A, R, T> model)
+    {
+        R timeAdvance = model.timeAdvance();
+        model.timeNextEvent =
+                timeAdvance.doubleValue() == Double.POSITIVE_INFINITY ? null : model.timeLastEvent.plus(timeAdvance);
+    }
+
+    /**
+     * Schedule the next step of the coordinator at the first time of the next internal event of the components, or at the
+     * current time when components received messages from outside. An earlier scheduled step at another time is cancelled.
+     */
+    private void reschedule()
+    {
+        T now = this.simulator.getSimTime();
+        T next = this.schedule.isEmpty() ? null : this.schedule.first().timeNextEvent;
+        if (!this.influenced.isEmpty() || (next != null && next.lt(now)))
+        {
+            next = now;
+        }
+        if (this.stepEvent != null)
+        {
+            if (next != null && this.stepEvent.getAbsoluteExecutionTime().eq(next))
+            {
+                return;
+            }
+            this.simulator.cancelEvent(this.stepEvent);
+            this.stepEvent = null;
+        }
+        if (next != null)
+        {
+            try
+            {
+                this.stepEvent = this.simulator.scheduleEventAbs(next.copy(), this::step);
+            }
+            catch (SimRuntimeException exception)
+            {
+                throw new DSOLRuntimeException(exception);
+            }
+        }
+    }
+
+    /**
+     * Set whether the output and transition functions are executed in parallel, in tasks of at most chunkSize components.
+     * @param parallel boolean; whether the output and transition functions are executed in parallel
+     * @param chunkSize int; the maximum number of components per parallel task
+     * @throws IllegalArgumentException when chunkSize &lt;= 0
+     */
+    public void setParallel(final boolean parallel, final int chunkSize)
+    {
+        Throw.when(chunkSize <= 0, IllegalArgumentException.class, "chunkSize should be > 0");
+        this.parallel = parallel;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return parallel boolean; whether the output and transition functions are executed in parallel
+     */
+    public boolean isParallel()
+    {
+        return this.parallel;
+    }
+
+    /**
+     * @return chunkSize int; the maximum number of components per parallel task
+     */
+    public int getChunkSize()
+    {
+        return this.chunkSize;
+    }
+
+    /**
+     * @return steps long; the number of steps that the coordinator executed
+     */
+    public long getSteps()
+    {
+        return this.steps;
+    }
+
+    /**
+     * @return the components of the coordinator in registration order
+     */
+    public List<ParallelAtomicModel<A, R, T>> getModels()
+    {
+        return new ArrayList<>(this.models);
+    }
+
+    /**
+     * @return the simulator to schedule the steps of the coordinator on
+     */
+    public DEVSSimulatorInterface<A, R, T> getSimulator()
+    {
+        return this.simulator;
+    }
+
+    /**
+     * Comparator on the time of the next internal event of the components, and on their registration order for equal times.
+     * @param <A> the absolute storage type for the simulation time
+     * @param <R> the relative type for time storage
+     * @param <T> the extended type itself to be able to implement a comparator on the simulation time
+     */
+    private static class NextEventComparator<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+            T extends SimTime<A, R, T>> implements Comparator<ParallelAtomicModel<A, R, T>>, Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** {@inheritDoc} */
+        @Override
+        public int compare(final ParallelAtomicModel<A, R, T> model1, final ParallelAtomicModel<A, R, T> model2)
+        {
+            int cmp = model1.timeNextEvent.compareTo(model2.timeNextEvent);
+            return cmp != 0 ? cmp : Integer.compare(model1.index, model2.index);
+        }
+    }
+
+    /**
+     * The task that executes the output or transition function for a range of components, splitting the range until it is at
+     * most chunkSize.
+     */
+    private class PhaseTask extends RecursiveAction
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the components. */
+        private final List<ParallelAtomicModel<A, R, T>> list;
+
+        /** true to execute the output function, false to execute the transition function. */
+        private final boolean output;
+
+        /** the current simulation time. */
+        private final T now;
+
+        /** the first component. */
+        private final int from;
+
+        /** the component after the last component. */
+        private final int to;
+
+        /**
+         * Create a task for the components from..to-1.
+         * @param list List&lt;ParallelAtomicModel&lt;A,R,T&gt;&gt;; the components
+         * @param output boolean; true to execute the output function, false to execute the transition function
+         * @param now T; the current simulation time
+         * @param from int; the first component
+         * @param to int; the component after the last component
+         */
+        PhaseTask(final List<ParallelAtomicModel<A, R, T>> list, final boolean output, final T now, final int from,
+                final int to)
+        {
+            this.list = list;
+            this.output = output;
+            this.now = now;
+            this.from = from;
+            this.to = to;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void compute()
+        {
+            if (this.to - this.from <= ParallelDEVSCoordinator.this.chunkSize)
+            {
+                for (int i = this.from; i < this.to; i++)
+                {
+                    execute(this.list.get(i), this.output, this.now);
+                }
+            }
+            else
+            {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new PhaseTask(this.list, this.output, this.now, this.from, middle),
+                        new PhaseTask(this.list, this.output, this.now, middle, this.to));
+            }
+        }
+    }
+}
@@ -75,6 +75,14 @@ public class LambdaSimEvent<T extends SimTime<?, ?, T>> extends AbstractSimEvent
         }
     }
 
+    /**
+     * @return executable Executable; the lambda expression that takes care of the state change
+     */
+    public Executable getExecutable()
+    {
+        return this.executable;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString()
@@ -0,0 +1,977 @@
+package nl.tudelft.simulation.dsol.simulators;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.Executable;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.LambdaSimEvent;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEvent;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+import nl.tudelft.simulation.jstats.streams.StreamException;
+import nl.tudelft.simulation.jstats.streams.StreamInterface;
+
+/**
+ * Checkpoint writes the state of a DEVSSimulator and its model to a compact binary file, and restores a simulator from such a
+ * file. This makes it possible to restart a long run from a checkpoint after a failure, or to fork a number of what-if runs
+ * from the same moment in a run. The checkpoint contains the simulator time, the replication state, the states of the streams
+ * of the model, the states of the registered Checkpointable model objects, and the events on the event list.
+ * <p>
+ * Objects that are referred to from the events or from the state of other objects, such as the targets of a SimEvent, are
+ * registered under a unique name with register(). A registered object is stored as a reference to its name, which is resolved
+ * to the object that is registered under the same name when the checkpoint is restored. The simulator, the model and the
+ * streams of the model are registered automatically as "simulator", "model" and "stream:" followed by the stream id. Other
+ * objects, such as the arguments of a SimEvent, are stored with Java serialization. A LambdaSimEvent can only be stored when
+ * its Executable is a registered object, or a serializable lambda expression.
+ * <p>
+ * The file is written as a stream to a temporary file that replaces the checkpoint file when it is complete, so a failure
+ * during writing does not damage an earlier checkpoint. The checkpoint can be written when the simulator is not running, or
+ * from an event that is executed by the simulator, e.g., an event scheduled with scheduleWrite(). A checkpoint file is read
+ * with a memory mapping into a Checkpoint.Image, which can be restored into any number of simulators, also concurrently, to
+ * fork what-if runs. Restoring assumes a simulator that has been initialized with a newly constructed model with the same
+ * structure, and with the same objects registered. The events are recreated in their original order, so the restored
+ * simulator continues bit-identically to the original run. The whole checkpoint is read and checked before anything is
+ * changed, so a damaged or incompatible checkpoint leaves the simulator and the model as they were. Only a Checkpointable that
+ * fails to read its own state can leave the model partly restored; in that case, the simulator and the model should be
+ * initialized again.
+ * <p>
+ * The state of each Checkpointable is stored as a separate block with its length, so it can be checked and skipped without
+ * reading it into the object. References to registered objects and events are shared by all blocks, but other objects that
+ * are stored with Java serialization are only shared within one block.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration for absolute Time. For most non-unit types, the absolute and
+ *            relative types are the same.
+ * @param <T> the extended type itself to be able to implement a comparator on the simulation time.
+ */
+public class Checkpoint<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>, T extends SimTime<A, R, T>>
+{
+    /** the magic number at the start of a checkpoint file, "DSOLCKPT". */
+    private static final long MAGIC = 0x44534F4C434B5054L;
+
+    /** the version of the file format. */
+    private static final int VERSION = 2;
+
+    /** the number of bytes of the header with the magic number and the version. */
+    private static final int HEADER_SIZE = 12;
+
+    /** the marker after the state of each object and at the end of the file. */
+    private static final int END_MARKER = 0x454E4421;
+
+    /** the maximum size of one memory mapped segment of a checkpoint file. */
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    /** the event type of a SimEvent. */
+    private static final byte SIM_EVENT = 1;
+
+    /** the event type of a LambdaSimEvent. */
+    private static final byte LAMBDA_SIM_EVENT = 2;
+
+    /** the time is stored as a double. */
+    private static final byte TIME_DOUBLE = 1;
+
+    /** the time is stored as a float. */
+    private static final byte TIME_FLOAT = 2;
+
+    /** the time is stored as a long. */
+    private static final byte TIME_LONG = 3;
+
+    /** the time is stored as a serialized object. */
+    private static final byte TIME_OBJECT = 4;
+
+    /** the name under which the simulator is registered. */
+    public static final String SIMULATOR = "simulator";
+
+    /** the name under which the model is registered. */
+    public static final String MODEL = "model";
+
+    /** the prefix of the names under which the streams are registered. */
+    public static final String STREAM_PREFIX = "stream:";
+
+    /** the simulator. */
+    private final DEVSSimulator<A, R, T> simulator;
+
+    /** the registered objects by name, in order of registration. */
+    private final Map<String, Object> objects = new LinkedHashMap<>();
+
+    /** the registered objects, to check that an object is not registered twice. */
+    private final Map<Object, String> registered = new IdentityHashMap<>();
+
+    /** the events that write a checkpoint, which are not stored in the checkpoint themselves. */
+    private final Set<SimEventInterface<T>> writeEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Create a Checkpoint for a simulator.
+     * @param simulator DEVSSimulator&lt;A, R, T&gt;; the simulator to write checkpoints of, and to restore checkpoints into
+     * @throws NullPointerException when simulator is null
+     */
+    public Checkpoint(final DEVSSimulator<A, R, T> simulator)
+    {
+        Throw.whenNull(simulator, "simulator cannot be null");
+        this.simulator = simulator;
+    }
+
+    /**
+     * Register an object under a unique name. When the object implements Checkpointable, its state is stored in the checkpoint;
+     * otherwise, only references to the object are stored.
+     * @param name String; the unique name of the object, which should be the same in the restoring simulator
+     * @param object Object; the object to register
+     * @throws NullPointerException when name or object is null
+     * @throws IllegalArgumentException when the name is reserved or already used, or when the object is already registered
+     */
+    public void register(final String name, final Object object)
+    {
+        Throw.whenNull(name, "name cannot be null");
+        Throw.whenNull(object, "object cannot be null");
+        Throw.when(name.equals(SIMULATOR) || name.equals(MODEL) || name.startsWith(STREAM_PREFIX),
+                IllegalArgumentException.class, "name %s is reserved", name);
+        Throw.when(this.objects.containsKey(name), IllegalArgumentException.class, "name %s is already registered", name);
+        Throw.when(this.registered.containsKey(object), IllegalArgumentException.class, "object %s is already registered as %s",
+                object, this.registered.get(object));
+        this.objects.put(name, object);
+        this.registered.put(object, name);
+    }
+
+    /**
+     * Return all registered objects, including the simulator, the model and the streams of the model.
+     * @return Map&lt;String, Object&gt;; the registered objects by name
+     */
+    private Map<String, Object> allObjects()
+    {
+        Throw.when(this.simulator.getModel() == null, SimRuntimeException.class, "simulator has not been initialized");
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put(SIMULATOR, this.simulator);
+        all.put(MODEL, this.simulator.getModel());
+        for (Map.Entry<String, StreamInterface> entry : this.simulator.getModel().getStreams().entrySet())
+        {
+            all.put(STREAM_PREFIX + entry.getKey(), entry.getValue());
+        }
+        all.putAll(this.objects);
+        return all;
+    }
+
+    /**
+     * Write a checkpoint of the simulator and the model to a file. The checkpoint can be written when the simulator is not
+     * running, or from an event that is executed by the simulator.
+     * @param file Path; the file to write the checkpoint to; an existing file is replaced when the checkpoint is complete
+     * @throws IOException when writing fails, or when an event or object cannot be stored
+     * @throws SimRuntimeException when the simulator is running in another thread, or has not been initialized
+     */
+    public void write(final Path file) throws IOException
+    {
+        Throw.whenNull(file, "file cannot be null");
+        Throw.when(this.simulator.isStartingOrRunning() && Thread.currentThread() != this.simulator.worker,
+                SimRuntimeException.class, "a checkpoint of a running simulator can only be written from an event");
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        synchronized (this.simulator.semaphore)
+        {
+            Map<String, Object> all = allObjects();
+            try
+            {
+                try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(temp)))
+                {
+                    DataOutputStream header = new DataOutputStream(os);
+                    header.writeLong(MAGIC);
+                    header.writeInt(VERSION);
+                    header.flush();
+                    CheckpointOutputStream out = new CheckpointOutputStream(os, all);
+                    writeContent(out, all);
+                    out.flush();
+                }
+            }
+            catch (IOException | RuntimeException exception)
+            {
+                Files.deleteIfExists(temp);
+                throw exception;
+            }
+        }
+        try
+        {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException exception)
+        {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Write the content of the checkpoint after the header.
+     * @param out CheckpointOutputStream; the stream to write to
+     * @param all Map&lt;String, Object&gt;; all registered objects
+     * @throws IOException when writing fails, or when an event or object cannot be stored
+     */
+    private void writeContent(final CheckpointOutputStream out, final Map<String, Object> all) throws IOException
+    {
+        out.writeInt(all.size());
+        for (String name : all.keySet())
+        {
+            out.writeUTF(name);
+        }
+
+        A time = this.simulator.simulatorTime.get();
+        byte timeType = time instanceof Double ? TIME_DOUBLE
+                : time instanceof Float ? TIME_FLOAT : time instanceof Long ? TIME_LONG : TIME_OBJECT;
+        out.writeByte(timeType);
+        writeTime(out, timeType, time);
+        out.writeUTF(this.simulator.replicationState.name());
+
+        Map<String, StreamInterface> streams = this.simulator.getModel().getStreams();
+        out.writeInt(streams.size());
+        for (Map.Entry<String, StreamInterface> entry : streams.entrySet())
+        {
+            try
+            {
+                byte[] state = entry.getValue().saveState();
+                out.writeUTF(entry.getKey());
+                out.writeInt(state.length);
+                out.write(state);
+            }
+            catch (StreamException exception)
+            {
+                throw new IOException("state of stream " + entry.getKey() + " cannot be saved", exception);
+            }
+        }
+
+        this.writeEvents.removeIf(event -> !this.simulator.eventList.contains(event));
+        List<SimEventInterface<T>> events = new ArrayList<>(this.simulator.eventList.size());
+        for (SimEventInterface<T> event : this.simulator.eventList)
+        {
+            if (!this.writeEvents.contains(event))
+            {
+                events.add(event);
+            }
+        }
+        Collections.sort(events);
+        out.writeInt(events.size());
+        for (SimEventInterface<T> event : events)
+        {
+            try
+            {
+                writeEvent(out, timeType, event);
+            }
+            catch (NotSerializableException exception)
+            {
+                throw new IOException("event " + event + " cannot be stored: " + exception.getMessage()
+                        + " is not registered and not serializable", exception);
+            }
+            out.events.put(event, out.events.size());
+        }
+
+        List<String> checkpointables = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : all.entrySet())
+        {
+            if (entry.getValue() instanceof Checkpointable)
+            {
+                checkpointables.add(entry.getKey());
+            }
+        }
+        out.writeInt(checkpointables.size());
+        for (String name : checkpointables)
+        {
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            try (CheckpointOutputStream blockOut = new CheckpointOutputStream(block, out))
+            {
+                ((Checkpointable) all.get(name)).writeCheckpoint(blockOut);
+                blockOut.writeInt(END_MARKER);
+            }
+            catch (NotSerializableException exception)
+            {
+                throw new IOException("state of " + name + " cannot be stored: " + exception.getMessage()
+                        + " is not registered and not serializable", exception);
+            }
+            out.writeUTF(name);
+            out.writeInt(block.size());
+            block.writeTo(out);
+        }
+        out.writeInt(END_MARKER);
+    }
+
+    /**
+     * Write one event.
+     * @param out CheckpointOutputStream; the stream to write to
+     * @param timeType byte; the way in which the time is stored
+     * @param event SimEventInterface&lt;T&gt;; the event to write
+     * @throws IOException when writing fails, or when the event cannot be stored
+     */
+    @SuppressWarnings("unchecked")
+    private void writeEvent(final CheckpointOutputStream out, final byte timeType, final SimEventInterface<T> event)
+            throws IOException
+    {
+        if (event instanceof SimEvent)
+        {
+            SimEvent<T> simEvent = (SimEvent<T>) event;
+            out.writeByte(SIM_EVENT);
+            writeTime(out, timeType, event.getAbsoluteExecutionTime().get());
+            out.writeShort(event.getPriority());
+            out.writeObject(simEvent.getSource());
+            out.writeObject(simEvent.getTarget());
+            out.writeUTF(simEvent.getMethod());
+            out.writeObject(simEvent.getArgs());
+        }
+        else if (event instanceof LambdaSimEvent)
+        {
+            out.writeByte(LAMBDA_SIM_EVENT);
+            writeTime(out, timeType, event.getAbsoluteExecutionTime().get());
+            out.writeShort(event.getPriority());
+            out.writeObject(((LambdaSimEvent<T>) event).getExecutable());
+        }
+        else
+        {
+            throw new IOException("event of " + event.getClass().getName() + " cannot be stored in a checkpoint");
+        }
+    }
+
+    /**
+     * Write a time value.
+     * @param out ObjectOutputStream; the stream to write to
+     * @param timeType byte; the way in which the time is stored
+     * @param time A; the time to write
+     * @throws IOException when writing fails
+     */
+    private void writeTime(final ObjectOutputStream out, final byte timeType, final A time) throws IOException
+    {
+        switch (timeType)
+        {
+            case TIME_DOUBLE:
+                out.writeDouble((Double) time);
+                break;
+            case TIME_FLOAT:
+                out.writeFloat((Float) time);
+                break;
+            case TIME_LONG:
+                out.writeLong((Long) time);
+                break;
+            default:
+                out.writeObject(time);
+                break;
+        }
+    }
+
+    /**
+     * Read a time value.
+     * @param in ObjectInputStream; the stream to read from
+     * @param timeType byte; the way in which the time is stored
+     * @return T; the time that has been read
+     * @throws IOException when reading fails
+     * @throws ClassNotFoundException when the class of the time cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private T readTime(final ObjectInputStream in, final byte timeType) throws IOException, ClassNotFoundException
+    {
+        Object value;
+        switch (timeType)
+        {
+            case TIME_DOUBLE:
+                value = in.readDouble();
+                break;
+            case TIME_FLOAT:
+                value = in.readFloat();
+                break;
+            case TIME_LONG:
+                value = in.readLong();
+                break;
+            case TIME_OBJECT:
+                value = in.readObject();
+                break;
+            default:
+                throw new IOException("unknown time type " + timeType);
+        }
+        T time = this.simulator.simulatorTime.copy();
+        try
+        {
+            time.set((A) value);
+        }
+        catch (ClassCastException exception)
+        {
+            throw new IOException("time " + value + " does not fit the time of simulator " + this.simulator.getSourceId());
+        }
+        return time;
+    }
+
+    /**
+     * Schedule an event that writes a checkpoint at the given time. The event has the lowest possible priority, so it is
+     * executed after the other events at that time. The events that write a checkpoint are not stored in a checkpoint.
+     * @param time T; the time at which the checkpoint is written
+     * @param file Path; the file to write the checkpoint to
+     * @return SimEventInterface&lt;T&gt;; the scheduled event
+     * @throws SimRuntimeException when the time is in the past
+     */
+    public SimEventInterface<T> scheduleWrite(final T time, final Path file) throws SimRuntimeException
+    {
+        Throw.whenNull(file, "file cannot be null");
+        SimEventInterface<T> event = new LambdaSimEvent<T>(time, (short) (SimEventInterface.MIN_PRIORITY - 1), () ->
+        {
+            try
+            {
+                write(file);
+            }
+            catch (IOException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        });
+        synchronized (this.simulator.semaphore)
+        {
+            this.writeEvents.add(event);
+            return this.simulator.scheduleEvent(event);
+        }
+    }
+
+    /**
+     * Read a checkpoint file into an image, which can be restored into one or more simulators.
+     * @param file Path; the checkpoint file
+     * @return Image; the image of the checkpoint file
+     * @throws IOException when the file cannot be read, or is not a checkpoint file
+     */
+    public static Image read(final Path file) throws IOException
+    {
+        Throw.whenNull(file, "file cannot be null");
+        return new Image(file);
+    }
+
+    /**
+     * Restore the simulator from a checkpoint file.
+     * @param file Path; the checkpoint file
+     * @throws IOException when the file cannot be read, or does not fit the simulator and the model
+     * @throws SimRuntimeException when the simulator is running, or has not been initialized
+     */
+    public void restore(final Path file) throws IOException
+    {
+        restore(read(file));
+    }
+
+    /**
+     * Restore the simulator from a checkpoint image. The simulator should have been initialized with a newly constructed model
+     * with the same structure, and the same objects should have been registered. The simulator time, the replication state,
+     * the event list, the streams and the registered Checkpointable objects are replaced by the state in the checkpoint. The
+     * whole image is read and checked first: the streams, the registered objects, the events, and the end of the checkpoint.
+     * Only when the image fits the simulator and the model, the state is applied.
+     * @param image Image; the image of the checkpoint file
+     * @throws IOException when the image does not fit the simulator and the model; the simulator and the model are then not
+     *             changed, unless a Checkpointable fails to read its own state
+     * @throws SimRuntimeException when the simulator is running, or has not been initialized
+     */
+    @SuppressWarnings("unchecked")
+    public void restore(final Image image) throws IOException
+    {
+        Throw.whenNull(image, "image cannot be null");
+        Throw.when(this.simulator.isStartingOrRunning(), SimRuntimeException.class, "cannot restore a running simulator");
+        synchronized (this.simulator.semaphore)
+        {
+            Map<String, Object> all = allObjects();
+            try (CheckpointInputStream in = new CheckpointInputStream(image.openStream()))
+            {
+                // read and check the whole checkpoint, without changing the simulator or the model
+                int size = in.readInt();
+                for (int i = 0; i < size; i++)
+                {
+                    String name = in.readUTF();
+                    in.names.add(name);
+                    in.objects.add(all.get(name));
+                }
+
+                byte timeType = in.readByte();
+                T time = readTime(in, timeType);
+                ReplicationState replicationState = ReplicationState.valueOf(in.readUTF());
+
+                Map<String, StreamInterface> streams = this.simulator.getModel().getStreams();
+                Map<String, byte[]> streamStates = new LinkedHashMap<>();
+                int numberOfStreams = in.readInt();
+                for (int i = 0; i < numberOfStreams; i++)
+                {
+                    String id = in.readUTF();
+                    byte[] state = new byte[in.readInt()];
+                    in.readFully(state);
+                    if (!streams.containsKey(id))
+                    {
+                        throw new IOException("stream " + id + " of the checkpoint is not part of the model");
+                    }
+                    streamStates.put(id, state);
+                }
+
+                int numberOfEvents = in.readInt();
+                for (int i = 0; i < numberOfEvents; i++)
+                {
+                    byte eventType = in.readByte();
+                    T eventTime = readTime(in, timeType);
+                    short priority = in.readShort();
+                    if (eventType == SIM_EVENT)
+                    {
+                        Object source = in.readObject();
+                        Object target = in.readObject();
+                        String method = in.readUTF();
+                        Object[] args = (Object[]) in.readObject();
+                        in.events.add(new SimEvent<T>(eventTime, priority, source, target, method, args));
+                    }
+                    else if (eventType == LAMBDA_SIM_EVENT)
+                    {
+                        in.events.add(new LambdaSimEvent<T>(eventTime, priority, (Executable) in.readObject()));
+                    }
+                    else
+                    {
+                        throw new IOException("unknown event type " + eventType);
+                    }
+                }
+
+                Map<String, byte[]> objectStates = new LinkedHashMap<>();
+                int numberOfObjects = in.readInt();
+                for (int i = 0; i < numberOfObjects; i++)
+                {
+                    String name = in.readUTF();
+                    if (!(all.get(name) instanceof Checkpointable))
+                    {
+                        throw new IOException("object " + name + " of the checkpoint is not registered as a Checkpointable");
+                    }
+                    byte[] state = new byte[in.readInt()];
+                    in.readFully(state);
+                    objectStates.put(name, state);
+                }
+                if (in.readInt() != END_MARKER)
+                {
+                    throw new IOException("checkpoint " + image.getFile() + " is incomplete");
+                }
+
+                // apply the checkpoint; the streams are put back when a stream or an object cannot be restored
+                applyStates(streams, streamStates, all, objectStates, in);
+                this.simulator.eventList.clear();
+                for (Object event : in.events)
+                {
+                    this.simulator.eventList.add((SimEventInterface<T>) event);
+                }
+                this.simulator.simulatorTime = time;
+                this.simulator.replicationState = replicationState;
+                this.simulator.runState =
+                        replicationState == ReplicationState.INITIALIZED ? RunState.INITIALIZED : RunState.STOPPED;
+            }
+            catch (ClassNotFoundException | ClassCastException | IllegalArgumentException exception)
+            {
+                throw new IOException("checkpoint " + image.getFile() + " does not fit the simulator", exception);
+            }
+        }
+        this.simulator.fireTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT);
+    }
+
+    /**
+     * Restore the states of the streams and the Checkpointable objects. When a stream or an object cannot be restored, the
+     * original states of the streams are put back before the exception is thrown.
+     * @param streams Map&lt;String, StreamInterface&gt;; the streams of the model
+     * @param streamStates Map&lt;String, byte[]&gt;; the states of the streams in the checkpoint
+     * @param all Map&lt;String, Object&gt;; all registered objects
+     * @param objectStates Map&lt;String, byte[]&gt;; the blocks with the states of the Checkpointable objects
+     * @param in CheckpointInputStream; the stream of the checkpoint, with the name table and the events
+     * @throws IOException when a stream or an object cannot be restored
+     * @throws ClassNotFoundException when the class of an object in the state of an object cannot be found
+     */
+    private void applyStates(final Map<String, StreamInterface> streams, final Map<String, byte[]> streamStates,
+            final Map<String, Object> all, final Map<String, byte[]> objectStates, final CheckpointInputStream in)
+            throws IOException, ClassNotFoundException
+    {
+        Map<String, byte[]> originalStates = new LinkedHashMap<>();
+        try
+        {
+            for (String id : streamStates.keySet())
+            {
+                originalStates.put(id, streams.get(id).saveState());
+            }
+            for (Map.Entry<String, byte[]> entry : streamStates.entrySet())
+            {
+                streams.get(entry.getKey()).restoreState(entry.getValue());
+            }
+        }
+        catch (StreamException exception)
+        {
+            IOException ioException = new IOException("state of the streams cannot be restored", exception);
+            putBackStreams(streams, originalStates, ioException);
+            throw ioException;
+        }
+        try
+        {
+            for (Map.Entry<String, byte[]> entry : objectStates.entrySet())
+            {
+                try (CheckpointInputStream blockIn = new CheckpointInputStream(new ByteArrayInputStream(entry.getValue()), in))
+                {
+                    ((Checkpointable) all.get(entry.getKey())).readCheckpoint(blockIn);
+                    if (blockIn.readInt() != END_MARKER)
+                    {
+                        throw new IOException("state of object " + entry.getKey() + " was not read completely");
+                    }
+                }
+            }
+        }
+        catch (IOException | ClassNotFoundException | RuntimeException exception)
+        {
+            putBackStreams(streams, originalStates, exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * Put back the original states of the streams after a failed restore.
+     * @param streams Map&lt;String, StreamInterface&gt;; the streams of the model
+     * @param originalStates Map&lt;String, byte[]&gt;; the original states of the streams
+     * @param exception Exception; the exception of the failed restore, to which a failure to put back a stream is added
+     */
+    private void putBackStreams(final Map<String, StreamInterface> streams, final Map<String, byte[]> originalStates,
+            final Exception exception)
+    {
+        for (Map.Entry<String, byte[]> entry : originalStates.entrySet())
+        {
+            try
+            {
+                streams.get(entry.getKey()).restoreState(entry.getValue());
+            }
+            catch (StreamException streamException)
+            {
+                exception.addSuppressed(streamException);
+            }
+        }
+    }
+
+    /**
+     * @return simulator DEVSSimulator&lt;A, R, T&gt;; the simulator
+     */
+    public DEVSSimulator<A, R, T> getSimulator()
+    {
+        return this.simulator;
+    }
+
+    /**
+     * Image is a checkpoint file that has been mapped into memory. The image is not changed when it is restored, so it can be
+     * restored into several simulators, also concurrently from different threads.
+     * <p>
+     * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved.
+     * See for project information <a href="https://simulation.tudelft.nl/" target="_blank">
+     * https://simulation.tudelft.nl</a>. The DSOL project is distributed under a three-clause BSD-style license, which can be
+     * found at <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+     * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+     * </p>
+     * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+     */
+    public static final class Image
+    {
+        /** the checkpoint file. */
+        private final Path file;
+
+        /** the size of the file. */
+        private final long size;
+
+        /** the memory mapped segments of the file. */
+        private final ByteBuffer[] segments;
+
+        /**
+         * Map a checkpoint file into memory, and check its header.
+         * @param file Path; the checkpoint file
+         * @throws IOException when the file cannot be read, or is not a checkpoint file
+         */
+        private Image(final Path file) throws IOException
+        {
+            this.file = file;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+            {
+                this.size = channel.size();
+                if (this.size < HEADER_SIZE)
+                {
+                    throw new IOException(file + " is not a checkpoint file");
+                }
+                this.segments = new ByteBuffer[(int) ((this.size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                for (int i = 0; i < this.segments.length; i++)
+                {
+                    long position = (long) i * SEGMENT_SIZE;
+                    this.segments[i] =
+                            channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, this.size - position));
+                }
+            }
+            ByteBuffer header = this.segments[0].duplicate();
+            if (header.getLong() != MAGIC)
+            {
+                throw new IOException(file + " is not a checkpoint file");
+            }
+            int version = header.getInt();
+            if (version != VERSION)
+            {
+                throw new IOException(file + " has checkpoint version " + version + "; expected version " + VERSION);
+            }
+        }
+
+        /**
+         * Open a stream on the content of the image after the header.
+         * @return InputStream; a new stream on the content of the image
+         */
+        InputStream openStream()
+        {
+            ByteBuffer[] buffers = new ByteBuffer[this.segments.length];
+            for (int i = 0; i < buffers.length; i++)
+            {
+                buffers[i] = this.segments[i].duplicate();
+            }
+            buffers[0].position(HEADER_SIZE);
+            return new SegmentInputStream(buffers);
+        }
+
+        /**
+         * @return file Path; the checkpoint file
+         */
+        public Path getFile()
+        {
+            return this.file;
+        }
+
+        /**
+         * @return size long; the size of the checkpoint file in bytes
+         */
+        public long getSize()
+        {
+            return this.size;
+        }
+    }
+
+    /** An InputStream that reads from consecutive ByteBuffers. */
+    private static class SegmentInputStream extends InputStream
+    {
+        /** the buffers. */
+        private final ByteBuffer[] buffers;
+
+        /** the index of the current buffer. */
+        private int current = 0;
+
+        /**
+         * @param buffers ByteBuffer[]; the buffers to read from
+         */
+        SegmentInputStream(final ByteBuffer[] buffers)
+        {
+            this.buffers = buffers;
+        }
+
+        /**
+         * Return the current buffer with remaining bytes, or null at the end of the stream.
+         * @return ByteBuffer; the current buffer with remaining bytes, or null at the end of the stream
+         */
+        private ByteBuffer buffer()
+        {
+            while (this.current < this.buffers.length && !this.buffers[this.current].hasRemaining())
+            {
+                this.current++;
+            }
+            return this.current < this.buffers.length ? this.buffers[this.current] : null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read()
+        {
+            ByteBuffer buffer = buffer();
+            return buffer == null ? -1 : buffer.get() & 0xFF;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            ByteBuffer buffer = buffer();
+            if (buffer == null)
+            {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int available()
+        {
+            ByteBuffer buffer = buffer();
+            return buffer == null ? 0 : buffer.remaining();
+        }
+    }
+
+    /** The reference to a registered object or to an event in a checkpoint. */
+    private static final class Reference implements Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 20221019L;
+
+        /** whether the reference is to an event; otherwise, it is a reference to a registered object. */
+        private final boolean event;
+
+        /** the index of the registered object in the name table, or the index of the event in the event list. */
+        private final int index;
+
+        /**
+         * @param event boolean; whether the reference is to an event
+         * @param index int; the index of the registered object in the name table, or of the event in the event list
+         */
+        Reference(final boolean event, final int index)
+        {
+            this.event = event;
+            this.index = index;
+        }
+    }
+
+    /** An ObjectOutputStream that writes registered objects and events as references. */
+    private static class CheckpointOutputStream extends ObjectOutputStream
+    {
+        /** the references to the registered objects. */
+        private final Map<Object, Reference> references;
+
+        /** the events that have been written, with their index. */
+        private final Map<Object, Integer> events;
+
+        /**
+         * @param out OutputStream; the stream to write to
+         * @param all Map&lt;String, Object&gt;; all registered objects, in the order of the name table
+         * @throws IOException when writing the stream header fails
+         */
+        CheckpointOutputStream(final OutputStream out, final Map<String, Object> all) throws IOException
+        {
+            super(out);
+            enableReplaceObject(true);
+            this.references = new IdentityHashMap<>();
+            this.events = new IdentityHashMap<>();
+            int index = 0;
+            for (Object object : all.values())
+            {
+                this.references.putIfAbsent(object, new Reference(false, index++));
+            }
+        }
+
+        /**
+         * Create a stream for a block of the checkpoint, which shares the references to the registered objects and the events
+         * with the stream of the checkpoint.
+         * @param out OutputStream; the stream to write the block to
+         * @param parent CheckpointOutputStream; the stream of the checkpoint
+         * @throws IOException when writing the stream header fails
+         */
+        CheckpointOutputStream(final OutputStream out, final CheckpointOutputStream parent) throws IOException
+        {
+            super(out);
+            enableReplaceObject(true);
+            this.references = parent.references;
+            this.events = parent.events;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object replaceObject(final Object object) throws IOException
+        {
+            Reference reference = this.references.get(object);
+            if (reference != null)
+            {
+                return reference;
+            }
+            Integer event = this.events.get(object);
+            if (event != null)
+            {
+                return new Reference(true, event);
+            }
+            return object;
+        }
+    }
+
+    /** An ObjectInputStream that resolves the references to registered objects and events. */
+    private static class CheckpointInputStream extends ObjectInputStream
+    {
+        /** the names in the name table of the checkpoint. */
+        private final List<String> names;
+
+        /** the registered objects of the restoring simulator, in the order of the name table; null when not registered. */
+        private final List<Object> objects;
+
+        /** the events that have been read. */
+        private final List<Object> events;
+
+        /**
+         * @param in InputStream; the stream to read from
+         * @throws IOException when reading the stream header fails
+         */
+        CheckpointInputStream(final InputStream in) throws IOException
+        {
+            super(in);
+            enableResolveObject(true);
+            this.names = new ArrayList<>();
+            this.objects = new ArrayList<>();
+            this.events = new ArrayList<>();
+        }
+
+        /**
+         * Create a stream for a block of the checkpoint, which resolves the references with the name table and the events of
+         * the stream of the checkpoint.
+         * @param in InputStream; the stream to read the block from
+         * @param parent CheckpointInputStream; the stream of the checkpoint
+         * @throws IOException when reading the stream header fails
+         */
+        CheckpointInputStream(final InputStream in, final CheckpointInputStream parent) throws IOException
+        {
+            super(in);
+            enableResolveObject(true);
+            this.names = parent.names;
+            this.objects = parent.objects;
+            this.events = parent.events;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Object resolveObject(final Object object) throws IOException
+        {
+            if (object instanceof Reference)
+            {
+                Reference reference = (Reference) object;
+                if (reference.event)
+                {
+                    if (reference.index >= this.events.size())
+                    {
+                        throw new IOException("reference to event " + reference.index + " before it has been read");
+                    }
+                    return this.events.get(reference.index);
+                }
+                Object resolved = this.objects.get(reference.index);
+                if (resolved == null)
+                {
+                    throw new IOException("object " + this.names.get(reference.index) + " of the checkpoint is not registered");
+                }
+                return resolved;
+            }
+            return object;
+        }
+    }
+
+}
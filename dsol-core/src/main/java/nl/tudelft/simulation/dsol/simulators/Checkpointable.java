@@ -0,0 +1,38 @@
+package nl.tudelft.simulation.dsol.simulators;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Checkpointable is implemented by model objects that store their state in a Checkpoint. The object writes its state in a
+ * compact form with the primitive methods of the ObjectOutput, and reads it back in the same order. Objects that are
+ * registered in the Checkpoint, such as other model objects, the simulator, and the streams, can be written with writeObject;
+ * they are stored as a reference, and resolved to the corresponding object of the restoring simulator. The same holds for the
+ * events on the event list of the simulator, e.g., an event that is kept to be able to cancel it later.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public interface Checkpointable
+{
+    /**
+     * Write the state of the object to the checkpoint.
+     * @param out ObjectOutput; the output to write the state to
+     * @throws IOException when writing fails
+     */
+    void writeCheckpoint(ObjectOutput out) throws IOException;
+
+    /**
+     * Read the state of the object from the checkpoint, in the same order as it was written, and set the state of the object.
+     * @param in ObjectInput; the input to read the state from
+     * @throws IOException when reading fails
+     * @throws ClassNotFoundException when the class of an object in the state cannot be found
+     */
+    void readCheckpoint(ObjectInput in) throws IOException, ClassNotFoundException;
+}
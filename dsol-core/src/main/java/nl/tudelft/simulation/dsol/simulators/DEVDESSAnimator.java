@@ -99,6 +99,7 @@ public class DEVDESSAnimator<A extends Comparable<A> & Serializable, R extends N
                 // Let's neglect this sleep..
             }
             T runUntil = this.simulatorTime.plus(this.timeStep);
+            this.fireEvent(DEVDESSSimulatorInterface.STEP_STARTED_EVENT, runUntil.get());
             while (!this.eventList.isEmpty() && !isStoppingOrStopped()
                     && runUntil.ge(this.eventList.first().getAbsoluteExecutionTime()))
             {
@@ -89,6 +89,7 @@ public class DEVDESSSimulator<A extends Comparable<A> & Serializable, R extends
             synchronized (super.semaphore)
             {
                 T runUntil = this.simulatorTime.plus(this.timeStep);
+                this.fireEvent(DEVDESSSimulatorInterface.STEP_STARTED_EVENT, runUntil.get());
                 while (!this.eventList.isEmpty() && !isStoppingOrStopped()
                         && runUntil.ge(this.eventList.first().getAbsoluteExecutionTime()))
                 {
@@ -6,6 +6,9 @@ import org.djunits.value.vdouble.scalar.Duration;
 import org.djunits.value.vdouble.scalar.Time;
 import org.djunits.value.vfloat.scalar.FloatDuration;
 import org.djunits.value.vfloat.scalar.FloatTime;
+import org.djutils.event.EventType;
+import org.djutils.metadata.MetaData;
+import org.djutils.metadata.ObjectDescriptor;
 
 import nl.tudelft.simulation.dsol.simtime.SimTime;
 import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
@@ -39,6 +42,14 @@ public interface DEVDESSSimulatorInterface<A extends Comparable<A> & Serializabl
 {
     // This interface combines the DESS and DEVS interfaces and does not add any operations.
 
+    /**
+     * STEP_STARTED_EVENT is fired at the start of each time step of the continuous part of the simulator, before the discrete
+     * events of the step are executed. The content is the absolute time at the end of the step. Differential equations use the
+     * event to look ahead over the step, and to schedule the state events that occur within the step.
+     */
+    EventType STEP_STARTED_EVENT = new EventType(new MetaData("STEP_STARTED_EVENT", "time step started",
+            new ObjectDescriptor("stepEnd", "absolute time at the end of the step", Serializable.class)));
+
     /***********************************************************************************************************/
     /*********************************** EASY ACCESS INTERFACE EXTENSIONS **************************************/
     /***********************************************************************************************************/
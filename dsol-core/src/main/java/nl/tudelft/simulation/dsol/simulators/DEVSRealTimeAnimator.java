@@ -1,6 +1,7 @@
 package nl.tudelft.simulation.dsol.simulators;
 
 import java.io.Serializable;
+import java.util.concurrent.locks.LockSupport;
 
 import org.djunits.unit.DurationUnit;
 import org.djunits.value.vdouble.scalar.Duration;
@@ -25,6 +26,15 @@ import nl.tudelft.simulation.dsol.simtime.SimTimeLong;
  * The reference implementation of the realTimeClock. The realTime clock is a DEVS simulator which runs at a ratio of realTime.
  * If the executionTime exceeds the timeStep, a catchup mechanism can be triggered to make up lost time in consecutive steps.
  * <p>
+ * The pacing of the simulation is done in frames of updateMsec milliseconds on the wall clock, measured with System.nanoTime().
+ * In each frame, all events that are due according to the wall clock are carried out as one batch, after which the simulator
+ * time is advanced to the wall clock, and the thread parks till the end of the frame, or till the next event is due when that
+ * is earlier. At a high speed factor, many events are therefore executed per frame, instead of one event per sleep. In fast
+ * forward mode, or with an infinite speed factor, the events are carried out as fast as possible, where each frame ends after
+ * updateMsec milliseconds to keep the clock and the animation up to date. When a frame cannot carry out all due events, the
+ * simulation is behind, and a BACKLOG_EVENT is fired with the measured speed factor and the backlog in wall clock
+ * milliseconds. A last BACKLOG_EVENT with a backlog of 0.0 is fired when the simulation has caught up again.
+ * <p>
  * Copyright (c) 2004-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
  * project is distributed under a three-clause BSD-style license, which can be found at
@@ -44,15 +54,22 @@ public abstract class DEVSRealTimeAnimator<A extends Comparable<A> & Serializabl
     /** */
     private static final long serialVersionUID = 20150428L;
 
-    // TODO: Fire the BACKLOG_EVENT when we are behind in the run thread
-    /** the backlog event. */
-    public static final TimedEventType BACKLOG_EVENT =
-            new TimedEventType(new MetaData("BACKLOG_EVENT", "Real time simulation is behind"));
+    /**
+     * the backlog event, fired at the end of a frame in which the simulation could not carry out all due events, and once more
+     * with a backlog of 0.0 when it has caught up. The content is the achieved speed factor and the backlog.
+     */
+    public static final TimedEventType BACKLOG_EVENT = new TimedEventType(new MetaData("BACKLOG_EVENT",
+            "Real time simulation is behind",
+            new ObjectDescriptor("achievedSpeedFactor", "Measured speed factor, NaN when not yet measured", Double.class),
+            new ObjectDescriptor("backlog", "Wall clock milliseconds that the simulation is behind", Double.class)));
 
     /** the speed factor event. */
     public static final EventType CHANGE_SPEED_FACTOR_EVENT = new EventType(new MetaData("CHANGE_SPEED_FACTOR_EVENT",
             "Change speed factor", new ObjectDescriptor("newSpeedFactor", "New speed factor", Double.class)));
 
+    /** the time constant in wall clock nanoseconds with which the measurements of the achieved speed factor decay. */
+    private static final long ACHIEVED_SPEED_INTERVAL_NANOS = 1000000000L;
+
     /** the speed factor compared to real time clock. &lt;1 is slower, &gt;1 is faster, 1 is real time speed. */
     private double speedFactor = 1.0;
 
@@ -62,10 +79,20 @@ public abstract class DEVSRealTimeAnimator<A extends Comparable<A> & Serializabl
      * events. When this is too course, set e.g. to 1, which means that the clock will be updated with 1 kHz between events. The
      * latter can be important in real time simulations. Note that the housekeeping of the simulation clock takes time as well,
      * so 1 kHz can be too fine grained in some situations. This factor takes care that animation updates between events happen
-     * fine grained and in small increments.
+     * fine grained and in small increments. The update delay is also the length of the frame in which the due events are
+     * carried out as one batch.
      */
     private int updateMsec = 10;
 
+    /** run the simulation as fast as possible, independent of the speed factor. */
+    private boolean fastForward = false;
+
+    /** the achieved speed factor, smoothed over about one second on the wall clock; NaN when not yet measured. */
+    private double achievedSpeedFactor = Double.NaN;
+
+    /** the number of wall clock milliseconds that the simulation was behind at the end of the last frame. */
+    private double backlogMsec = 0.0;
+
     /** catch up or not catch up after running behind. */
     private boolean catchup = true;
 
@@ -111,219 +138,136 @@ public abstract class DEVSRealTimeAnimator<A extends Comparable<A> & Serializabl
         // set the run flag semaphore to signal to startImpl() that the run method has started
         this.runflag = true;
 
-        /* Baseline point for the wallclock time. */
-        long wallTime0 = System.currentTimeMillis();
+        /* simulation time units per 1 wall clock millisecond. */
+        double msec1 = simulatorTimeForWallClockMillis(1.0).doubleValue();
+
+        /* Baseline point for the wall clock time in nanoseconds. */
+        long wallNanos0 = System.nanoTime();
 
         /* Baseline point for the simulator time. */
         T simTime0 = this.simulatorTime.copy();
 
         /* Speed factor is simulation seconds per 1 wallclock second. */
         double currentSpeedFactor = this.speedFactor;
+        boolean currentFastForward = this.fastForward;
 
-        /* wall clock milliseconds per 1 simulation clock millisecond. */
-        double msec1 = simulatorTimeForWallClockMillis(1.0).doubleValue();
+        /* End of the previous frame, from which the achieved speed factor of the next frame is measured. */
+        long measureNanos0 = wallNanos0;
+        T measureSimTime0 = this.simulatorTime.copy();
+
+        /* Decaying sums of the simulation time (in wall clock milliseconds at speed 1) and of the wall clock time. */
+        double measuredSimTime = 0.0;
+        double measuredWallMsec = 0.0;
+        this.achievedSpeedFactor = Double.NaN;
+        this.backlogMsec = 0.0;
 
         while (!isStoppingOrStopped() && !this.eventList.isEmpty() && this.simulatorTime.le(this.runUntilTime))
         {
-            // check if speedFactor has changed. If yes: re-baseline.
-            if (currentSpeedFactor != this.speedFactor)
+            // check if speedFactor or fast forward has changed. If yes: re-baseline.
+            if (currentSpeedFactor != this.speedFactor || currentFastForward != this.fastForward)
             {
-                wallTime0 = System.currentTimeMillis();
+                wallNanos0 = System.nanoTime();
                 simTime0.set(this.simulatorTime.get());
                 currentSpeedFactor = this.speedFactor;
+                currentFastForward = this.fastForward;
+                measureNanos0 = wallNanos0;
+                measureSimTime0.set(this.simulatorTime.get());
             }
+            boolean asFastAsPossible = currentFastForward || Double.isInfinite(currentSpeedFactor);
 
-            // check if we are behind; wantedSimTime is the needed current time on the wall-clock
-            double wantedSimTime = (System.currentTimeMillis() - wallTime0) * msec1 * currentSpeedFactor;
-            double simTimeSinceBaseline = this.simulatorTime.diff(simTime0).doubleValue();
-
-            if (simTimeSinceBaseline < wantedSimTime)
+            // wallSimTime is the simulation time that belongs to the wall clock time at the start of the frame
+            long frameStart = System.nanoTime();
+            long frameDeadline = frameStart + Math.max(1, this.updateMsec) * 1000000L;
+            T wallSimTime = this.runUntilTime;
+            if (!asFastAsPossible)
             {
-                // we are behind
-                if (!this.catchup)
+                T syncTime = simTime0
+                        .plus(simulatorTimeForWallClockMillis((frameStart - wallNanos0) / 1.0E6 * currentSpeedFactor));
+                if (syncTime.lt(wallSimTime))
                 {
-                    // if no catch-up: re-baseline.
-                    wallTime0 = System.currentTimeMillis();
-                    simTime0.set(this.simulatorTime.get());
-                }
-                else
-                {
-                    // jump to the required wall-clock related time or to the time of the next event, or to the runUntil time,
-                    // whichever comes first
-                    synchronized (super.semaphore)
-                    {
-                        R delta = simulatorTimeForWallClockMillis((wantedSimTime - simTimeSinceBaseline) / msec1);
-                        T absSyncTime = this.simulatorTime.plus(delta);
-                        T eventOrUntilTime = this.eventList.first().getAbsoluteExecutionTime();
-                        if (this.runUntilTime.lt(eventOrUntilTime))
-                        {
-                            eventOrUntilTime = this.runUntilTime;
-                        }
-                        if (absSyncTime.lt(eventOrUntilTime))
-                        {
-                            this.simulatorTime.set(absSyncTime.get());
-                            fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
-                        }
-                        else
-                        {
-                            this.simulatorTime.set(eventOrUntilTime.get());
-                            fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
-                        }
-                    }
+                    wallSimTime = syncTime;
                 }
             }
 
-            // peek at the first event and determine the time difference relative to RT speed; that determines
-            // how long we have to wait.
-            SimEventInterface<T> nextEvent = this.eventList.first();
-            T nextEventOrUntilTime = nextEvent.getAbsoluteExecutionTime();
-            boolean isRunUntil = false;
-            if (this.runUntilTime.lt(nextEventOrUntilTime))
-            {
-                nextEventOrUntilTime = this.runUntilTime;
-                isRunUntil = true;
-            }
-            double wallMillisNextEventSinceBaseline =
-                    (nextEventOrUntilTime.diff(simTime0)).doubleValue() / (msec1 * currentSpeedFactor);
+            // carry out all events that are due as one batch, but not beyond the end of the frame
+            boolean batchCompleted = executeDueEvents(wallSimTime, frameDeadline);
 
-            // wallMillisNextEventSinceBaseline gives the number of milliseconds on the wall clock since baselining for the
-            // expected execution time of the next event on the event list .
-            if (wallMillisNextEventSinceBaseline >= (System.currentTimeMillis() - wallTime0))
+            // advance the clock to the wall clock related time, but never beyond the next event, and never back in time
+            synchronized (super.semaphore)
             {
-                while (wallMillisNextEventSinceBaseline > System.currentTimeMillis() - wallTime0)
+                if (!isStoppingOrStopped() && !this.eventList.isEmpty())
                 {
-                    try
-                    {
-                        Thread.sleep(this.updateMsec);
-                    }
-                    catch (InterruptedException ie)
+                    T clockTime = wallSimTime;
+                    if (this.eventList.first().getAbsoluteExecutionTime().lt(clockTime))
                     {
-                        // do nothing
-                        ie = null;
-                        Thread.interrupted(); // clear the flag
+                        clockTime = this.eventList.first().getAbsoluteExecutionTime();
                     }
-
-                    // did we stop running between events?
-                    if (isStoppingOrStopped())
+                    if (clockTime.gt(this.simulatorTime))
                     {
-                        wallMillisNextEventSinceBaseline = 0.0; // jump out of the while loop for sleeping
-                        break;
-                    }
-
-                    // check if speedFactor has changed. If yes: rebaseline. Try to avoid a jump.
-                    if (currentSpeedFactor != this.speedFactor)
-                    {
-                        // rebaseline
-                        wallTime0 = System.currentTimeMillis();
-                        simTime0.set(this.simulatorTime.get());
-                        currentSpeedFactor = this.speedFactor;
-                        wallMillisNextEventSinceBaseline =
-                                (nextEventOrUntilTime.diff(simTime0)).doubleValue() / (msec1 * currentSpeedFactor);
-                    }
-
-                    // check if an event has been inserted. In a real-time situation this can be done by other threads
-                    if (!nextEvent.equals(this.eventList.first())) // event inserted by a thread...
-                    {
-                        nextEvent = this.eventList.first();
-                        nextEventOrUntilTime = nextEvent.getAbsoluteExecutionTime();
-                        isRunUntil = false;
-                        if (this.runUntilTime.lt(nextEventOrUntilTime))
-                        {
-                            nextEventOrUntilTime = this.runUntilTime;
-                            isRunUntil = true;
-                        }
-                        wallMillisNextEventSinceBaseline =
-                                (nextEventOrUntilTime.diff(simTime0)).doubleValue() / (msec1 * currentSpeedFactor);
-                    }
-
-                    // make a small time step for the animation during wallclock waiting, but never beyond the next event
-                    // time. Changed 2019-04-30: this is now recalculated based on latest system time after the 'sleep'.
-                    synchronized (super.semaphore)
-                    {
-                        A nextEventSimTime = nextEventOrUntilTime.get();
-                        R deltaToWall0inSimTime =
-                                simulatorTimeForWallClockMillis((System.currentTimeMillis() - wallTime0) * currentSpeedFactor);
-                        A currentWallSimTime = simTime0.plus(deltaToWall0inSimTime).get();
-                        if (nextEventSimTime.compareTo(currentWallSimTime) < 0)
-                        {
-                            if (nextEventSimTime.compareTo(this.simulatorTime.get()) > 0) // don't go back in time
-                            {
-                                this.simulatorTime.set(nextEventSimTime);
-                                fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
-                            }
-                            wallMillisNextEventSinceBaseline = 0.0; // force breakout of the loop
-                        }
-                        else
-                        {
-                            if (currentWallSimTime.compareTo(this.simulatorTime.get()) > 0) // don't go back in time
-                            {
-                                this.simulatorTime.set(currentWallSimTime);
-                                fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
-                            }
-                        }
+                        this.simulatorTime.set(clockTime.get());
+                        fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
                     }
                 }
             }
 
-            // only execute an event if we are still running, and if we do not 'run until'...
-            if (isRunUntil)
+            // measure the achieved speed factor and the backlog, and publish them when we are (or were) behind
+            long frameEnd = System.nanoTime();
+            if (!isStoppingOrStopped() && frameEnd - measureNanos0 > 0)
+            {
+                double decay = Math.exp(-(double) (frameEnd - measureNanos0) / ACHIEVED_SPEED_INTERVAL_NANOS);
+                measuredSimTime = measuredSimTime * decay + this.simulatorTime.diff(measureSimTime0).doubleValue() / msec1;
+                measuredWallMsec = measuredWallMsec * decay + (frameEnd - measureNanos0) / 1.0E6;
+                this.achievedSpeedFactor = measuredSimTime / measuredWallMsec;
+                measureNanos0 = frameEnd;
+                measureSimTime0.set(this.simulatorTime.get());
+            }
+            double backlog = 0.0;
+            if (!asFastAsPossible && !batchCompleted && currentSpeedFactor > 0.0)
+            {
+                backlog = Math.max(0.0, (frameEnd - wallNanos0) / 1.0E6
+                        - this.simulatorTime.diff(simTime0).doubleValue() / (msec1 * currentSpeedFactor));
+            }
+            if (backlog > 0.0 || this.backlogMsec > 0.0)
+            {
+                this.backlogMsec = backlog;
+                fireTimedEvent(BACKLOG_EVENT, new Object[] {this.achievedSpeedFactor, backlog}, this.simulatorTime.get());
+            }
+
+            if (!batchCompleted)
             {
-                this.simulatorTime = nextEventOrUntilTime;
+                // we are behind or running as fast as possible; if no catch-up: re-baseline, and start the next frame
+                if (!asFastAsPossible && !this.catchup)
+                {
+                    wallNanos0 = System.nanoTime();
+                    simTime0.set(this.simulatorTime.get());
+                }
+                continue;
             }
-            else if (!isStoppingOrStopped())
+
+            // sleep till the end of the frame, or till the next event or the run-until time is due when that is earlier
+            long parkDeadline = frameDeadline;
+            synchronized (super.semaphore)
             {
-                synchronized (super.semaphore)
+                if (!asFastAsPossible && currentSpeedFactor > 0.0 && !this.eventList.isEmpty())
                 {
-                    if (nextEvent.getAbsoluteExecutionTime().ne(this.simulatorTime))
+                    T nextTime = this.eventList.first().getAbsoluteExecutionTime();
+                    if (this.runUntilTime.lt(nextTime))
                     {
-                        fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null,
-                                nextEvent.getAbsoluteExecutionTime().get());
+                        nextTime = this.runUntilTime;
                     }
-                    this.simulatorTime.set(nextEvent.getAbsoluteExecutionTime().get());
-
-                    // carry out all events scheduled on this simulation time, as long as we are still running.
-                    while (!isStoppingOrStopped() && !this.eventList.isEmpty()
-                            && nextEvent.getAbsoluteExecutionTime().eq(this.simulatorTime))
+                    double nextNanos = nextTime.diff(simTime0).doubleValue() / (msec1 * currentSpeedFactor) * 1.0E6;
+                    if (nextNanos < frameDeadline - wallNanos0)
                     {
-                        nextEvent = this.eventList.removeFirst();
-                        try
-                        {
-                            nextEvent.execute();
-                            if (this.eventList.isEmpty())
-                            {
-                                this.simulatorTime.set(this.runUntilTime.get());
-                                this.runState = RunState.STOPPING;
-                                fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
-                                break;
-                            }
-                            int cmp = this.eventList.first().getAbsoluteExecutionTime().compareTo(this.runUntilTime);
-                            if ((cmp == 0 && !this.runUntilIncluding) || cmp > 0)
-                            {
-                                this.simulatorTime.set(this.runUntilTime.get());
-                                this.runState = RunState.STOPPING;
-                                fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
-                                break;
-                            }
-                        }
-                        catch (Exception exception)
-                        {
-                            handleSimulationException(exception);
-                        }
-                        if (!this.eventList.isEmpty())
-                        {
-                            // peek at next event for while loop.
-                            nextEvent = this.eventList.first();
-                            nextEventOrUntilTime = nextEvent.getAbsoluteExecutionTime();
-                            isRunUntil = false;
-                            if (this.runUntilTime.lt(nextEventOrUntilTime))
-                            {
-                                nextEventOrUntilTime = this.runUntilTime;
-                                isRunUntil = true;
-                            }
-                        }
+                        parkDeadline = wallNanos0 + (long) Math.ceil(nextNanos);
                     }
                 }
             }
+            while (!isStoppingOrStopped() && currentSpeedFactor == this.speedFactor
+                    && currentFastForward == this.fastForward && parkDeadline - System.nanoTime() > 0)
+            {
+                LockSupport.parkNanos(this, parkDeadline - System.nanoTime());
+                Thread.interrupted(); // clear the flag; stop() and endReplication() interrupt the worker thread
+            }
         }
         fireTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
 
@@ -337,6 +281,79 @@ public abstract class DEVSRealTimeAnimator<A extends Comparable<A> & Serializabl
         }
     }
 
+    /**
+     * Carry out all events that are due at or before the given simulation time as one batch. Events with the same time are
+     * executed under one lock of the semaphore, so other threads, such as the animation, can interleave between event times.
+     * When the deadline on the wall clock passes before all due events have been executed, the batch stops, and the remaining
+     * events are carried out in the next frame. When the run-until time is due, or when the event list is empty after an event,
+     * the clock is set to the run-until time and the simulator stops.
+     * @param dueTime T; the simulation time up to and including which events are due
+     * @param deadlineNanos long; the System.nanoTime() value at which the batch should end
+     * @return boolean; true when all due events have been executed or the simulator stops; false when the deadline passed
+     */
+    private boolean executeDueEvents(final T dueTime, final long deadlineNanos)
+    {
+        while (!isStoppingOrStopped())
+        {
+            synchronized (super.semaphore)
+            {
+                if (this.eventList.isEmpty())
+                {
+                    return true;
+                }
+                T eventTime = this.eventList.first().getAbsoluteExecutionTime();
+                int cmp = eventTime.compareTo(this.runUntilTime);
+                if ((cmp == 0 && !this.runUntilIncluding) || cmp > 0)
+                {
+                    if (this.runUntilTime.le(dueTime))
+                    {
+                        this.simulatorTime.set(this.runUntilTime.get());
+                        this.runState = RunState.STOPPING;
+                        fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
+                    }
+                    return true;
+                }
+                if (eventTime.gt(dueTime))
+                {
+                    return true;
+                }
+                if (System.nanoTime() - deadlineNanos > 0)
+                {
+                    return false;
+                }
+
+                if (eventTime.ne(this.simulatorTime))
+                {
+                    fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, eventTime.get());
+                }
+                this.simulatorTime.set(eventTime.get());
+
+                // carry out all events scheduled on this simulation time, as long as we are still running.
+                while (!isStoppingOrStopped() && !this.eventList.isEmpty()
+                        && this.eventList.first().getAbsoluteExecutionTime().eq(this.simulatorTime))
+                {
+                    SimEventInterface<T> nextEvent = this.eventList.removeFirst();
+                    try
+                    {
+                        nextEvent.execute();
+                    }
+                    catch (Exception exception)
+                    {
+                        handleSimulationException(exception);
+                    }
+                }
+                if (this.eventList.isEmpty())
+                {
+                    this.simulatorTime.set(this.runUntilTime.get());
+                    this.runState = RunState.STOPPING;
+                    fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, this.simulatorTime.get());
+                    return true;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Indicate whether we support animation or not.
      * @param animation boolean; whether we support animation or not
@@ -448,6 +465,44 @@ public abstract class DEVSRealTimeAnimator<A extends Comparable<A> & Serializabl
         this.updateMsec = updateMsec;
     }
 
+    /**
+     * Return whether the simulation runs as fast as possible, independent of the speed factor.
+     * @return boolean; whether the simulation runs as fast as possible
+     */
+    public boolean isFastForward()
+    {
+        return this.fastForward;
+    }
+
+    /**
+     * Set whether the simulation runs as fast as possible, independent of the speed factor. The change takes effect at the
+     * start of the next frame, after which the simulation continues from the current time at the wall clock.
+     * @param fastForward boolean; whether the simulation runs as fast as possible
+     */
+    public void setFastForward(final boolean fastForward)
+    {
+        this.fastForward = fastForward;
+    }
+
+    /**
+     * Return the speed factor that was achieved, measured per frame, where the measurements decay with a time constant of one
+     * second on the wall clock.
+     * @return double; the achieved speed factor, or NaN when it has not been measured yet in the current run
+     */
+    public double getAchievedSpeedFactor()
+    {
+        return this.achievedSpeedFactor;
+    }
+
+    /**
+     * Return the number of wall clock milliseconds that the simulation was behind at the end of the last frame.
+     * @return double; the backlog in wall clock milliseconds, 0.0 when the simulation is not behind
+     */
+    public double getBacklogMsec()
+    {
+        return this.backlogMsec;
+    }
+
     /***********************************************************************************************************/
     /************************************* EASY ACCESS CLASS EXTENSIONS ****************************************/
     /***********************************************************************************************************/
@@ -298,7 +298,11 @@ public class DEVSSimulator<A extends Comparable<A> & Serializable, R extends Num
                 if ((cmp == 0 && !this.runUntilIncluding) || cmp > 0)
                 {
                     this.simulatorTime.set(this.runUntilTime.get());
-                    this.replicationState = ReplicationState.ENDING;
+                    // runUpTo() pauses the replication before the end; only reaching the run length ends it
+                    if (this.runUntilTime.ge(this.replication.getEndSimTime()))
+                    {
+                        this.replicationState = ReplicationState.ENDING;
+                    }
                     this.runState = RunState.STOPPING;
                     break;
                 }
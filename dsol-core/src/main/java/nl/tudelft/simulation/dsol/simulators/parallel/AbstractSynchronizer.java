@@ -0,0 +1,445 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+import nl.tudelft.simulation.dsol.simulators.ReplicationState;
+import nl.tudelft.simulation.dsol.simulators.RunState;
+
+/**
+ * The AbstractSynchronizer contains the logical processes of a parallel simulation and the channels between them, and executes
+ * the logical processes in windows on threads of the common ForkJoinPool. Between two windows, the synchronizer delivers the
+ * messages in the channels, sorted on time, sending logical process and order of sending, so the outcome of the simulation
+ * does not depend on the number of threads or their scheduling. Subclasses determine the length of the windows, and what
+ * happens when a message arrives. <br>
+ * Usage: create the logical processes, construct the partition of the model for each logical process with the logical process
+ * as its simulator, add the logical processes to the synchronizer, connect them with the lookahead of the interactions
+ * between the partitions, initialize each logical process with its model and a replication, and call runUpToAndIncluding(...)
+ * or run() on the synchronizer. These methods return when the logical processes have been executed up to the given time.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration. For most non-unit types, such as Double or Long, the absolute
+ *            and relative types are the same.
+ * @param <T> the simulation time type based on the absolute and relative time.
+ */
+public abstract class AbstractSynchronizer<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+        T extends SimTime<A, R, T>>
+{
+    /** the id of the synchronizer. */
+    private final Serializable id;
+
+    /** the logical processes, in the order of their index. */
+    private final List<LogicalProcess<A, R, T>> logicalProcesses = new ArrayList<>();
+
+    /** the channels between the logical processes. */
+    private final List<Channel<A, R, T>> channels = new ArrayList<>();
+
+    /** the smallest lookahead of all channels, or null when there are no channels. */
+    private R lookahead = null;
+
+    /** whether the logical processes are executed in parallel. */
+    private boolean parallel = true;
+
+    /** whether the synchronizer is executing windows. */
+    private volatile boolean running = false;
+
+    /** the number of windows that have been executed. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected long windows = 0L;
+
+    /** the number of messages that have been delivered. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected long deliveredMessages = 0L;
+
+    /**
+     * Create a synchronizer for parallel simulation.
+     * @param id Serializable; the id of the synchronizer
+     */
+    public AbstractSynchronizer(final Serializable id)
+    {
+        Throw.whenNull(id, "id cannot be null");
+        this.id = id;
+    }
+
+    /**
+     * Add a logical process to the synchronizer. The logical processes get an index in the order in which they are added, which
+     * determines the order of delivery of messages with the same time from different logical processes.
+     * @param logicalProcess LogicalProcess&lt;A, R, T&gt;; the logical process to add
+     * @return LogicalProcess&lt;A, R, T&gt;; the logical process, for method chaining
+     * @throws SimRuntimeException when the synchronizer is running, or when the logical process has already been added to a
+     *             synchronizer
+     */
+    public LogicalProcess<A, R, T> addLogicalProcess(final LogicalProcess<A, R, T> logicalProcess) throws SimRuntimeException
+    {
+        Throw.whenNull(logicalProcess, "logicalProcess cannot be null");
+        Throw.when(this.running, SimRuntimeException.class, "cannot add a logical process to a running synchronizer");
+        Throw.when(logicalProcess.getSynchronizer() != null, SimRuntimeException.class,
+                "logical process %s has already been added to a synchronizer", logicalProcess.getSourceId());
+        logicalProcess.setSynchronizer(this, this.logicalProcesses.size());
+        this.logicalProcesses.add(logicalProcess);
+        return logicalProcess;
+    }
+
+    /**
+     * Create a channel from one logical process to another, over which events can be sent with a delay of at least the
+     * lookahead. Connecting two logical processes again replaces the lookahead of the channel.
+     * @param source LogicalProcess&lt;A, R, T&gt;; the sending logical process
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the receiving logical process
+     * @param channelLookahead R; the minimum delay of events that are sent over the channel; should be larger than zero
+     * @return Channel&lt;A, R, T&gt;; the created channel
+     * @throws SimRuntimeException when the synchronizer is running, or when one of the logical processes has not been added to
+     *             this synchronizer
+     * @throws IllegalArgumentException when source equals destination, or when the lookahead is not larger than zero
+     */
+    public Channel<A, R, T> connect(final LogicalProcess<A, R, T> source, final LogicalProcess<A, R, T> destination,
+            final R channelLookahead) throws SimRuntimeException
+    {
+        Throw.whenNull(source, "source cannot be null");
+        Throw.whenNull(destination, "destination cannot be null");
+        Throw.whenNull(channelLookahead, "lookahead cannot be null");
+        Throw.when(this.running, SimRuntimeException.class, "cannot connect logical processes of a running synchronizer");
+        Throw.when(source.getSynchronizer() != this || destination.getSynchronizer() != this, SimRuntimeException.class,
+                "logical processes should be added to the synchronizer before they are connected");
+        Throw.when(source == destination, IllegalArgumentException.class, "cannot connect a logical process to itself");
+        Throw.when(channelLookahead.doubleValue() <= 0.0, IllegalArgumentException.class,
+                "lookahead should be larger than zero");
+        Channel<A, R, T> old = source.getChannel(destination);
+        if (old != null)
+        {
+            this.channels.remove(old);
+        }
+        Channel<A, R, T> channel = new Channel<>(source, destination, channelLookahead);
+        source.addOutputChannel(channel);
+        this.channels.add(channel);
+        this.lookahead = null;
+        for (Channel<A, R, T> c : this.channels)
+        {
+            if (this.lookahead == null || c.getLookahead().compareTo(this.lookahead) < 0)
+            {
+                this.lookahead = c.getLookahead();
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Connect all logical processes with each other in both directions, with the same lookahead.
+     * @param channelLookahead R; the minimum delay of events that are sent between the logical processes
+     * @throws SimRuntimeException when the synchronizer is running
+     * @throws IllegalArgumentException when the lookahead is not larger than zero
+     */
+    public void connectAll(final R channelLookahead) throws SimRuntimeException
+    {
+        for (LogicalProcess<A, R, T> source : this.logicalProcesses)
+        {
+            for (LogicalProcess<A, R, T> destination : this.logicalProcesses)
+            {
+                if (source != destination)
+                {
+                    connect(source, destination, channelLookahead);
+                }
+            }
+        }
+    }
+
+    /**
+     * Execute the logical processes up to the end time of the replication of the first logical process.
+     * @throws SimRuntimeException when there are no logical processes, or when a logical process cannot be run
+     */
+    public void run() throws SimRuntimeException
+    {
+        Throw.when(this.logicalProcesses.isEmpty(), SimRuntimeException.class, "synchronizer has no logical processes");
+        Throw.when(this.logicalProcesses.get(0).getReplication() == null, SimRuntimeException.class,
+                "logical process %s has not been initialized", this.logicalProcesses.get(0).getSourceId());
+        runUpToAndIncluding(this.logicalProcesses.get(0).getReplication().getEndSimTime());
+    }
+
+    /**
+     * Execute the logical processes in windows up to and including the stop time. The method returns when all events up to and
+     * including the stop time have been executed, or earlier when the ErrorStrategy of a logical process stopped it after an
+     * exception; the other logical processes then stop at the end of the current window.
+     * @param stopTime T; the time up to which the logical processes are executed
+     * @throws SimRuntimeException when there are no logical processes, when the synchronizer is already running, or when a
+     *             logical process has not been initialized or its replication has ended
+     */
+    public void runUpToAndIncluding(final T stopTime) throws SimRuntimeException
+    {
+        Throw.whenNull(stopTime, "stopTime cannot be null");
+        Throw.when(this.logicalProcesses.isEmpty(), SimRuntimeException.class, "synchronizer has no logical processes");
+        Throw.when(this.running, SimRuntimeException.class, "synchronizer is already running");
+        for (LogicalProcess<A, R, T> lp : this.logicalProcesses)
+        {
+            Throw.when(!lp.isInitialized() || lp.getReplication() == null, SimRuntimeException.class,
+                    "logical process %s has not been initialized", lp.getSourceId());
+            Throw.when(
+                    !(lp.getReplicationState() == ReplicationState.INITIALIZED
+                            || lp.getReplicationState() == ReplicationState.STARTED),
+                    SimRuntimeException.class, "replication of logical process %s should be INITIALIZED or STARTED",
+                    lp.getSourceId());
+        }
+        this.running = true;
+        try
+        {
+            for (LogicalProcess<A, R, T> lp : this.logicalProcesses)
+            {
+                lp.startWindows();
+            }
+            executeWindows(stopTime);
+            for (LogicalProcess<A, R, T> lp : this.logicalProcesses)
+            {
+                lp.stopWindows(stopTime);
+            }
+        }
+        finally
+        {
+            this.running = false;
+        }
+    }
+
+    /**
+     * Execute the windows up to and including the stop time, and deliver the messages between the windows. The logical
+     * processes have been started when this method is called.
+     * @param stopTime T; the time up to which the logical processes are executed
+     */
+    protected abstract void executeWindows(T stopTime);
+
+    /**
+     * Return the earliest time of the next event over all logical processes.
+     * @return T; the earliest time of the next event over all logical processes, or null when all event lists are empty
+     */
+    protected T nextEventTime()
+    {
+        T result = null;
+        for (LogicalProcess<A, R, T> lp : this.logicalProcesses)
+        {
+            T next = lp.getNextEventTime();
+            if (next != null && (result == null || next.lt(result)))
+            {
+                result = next;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Execute one window for the logical processes that have events in the window.
+     * @param windowEnd T; the end of the window
+     * @param including boolean; whether events at the end of the window are executed as well
+     */
+    protected void executeWindow(final T windowEnd, final boolean including)
+    {
+        List<LogicalProcess<A, R, T>> active = new ArrayList<>();
+        for (LogicalProcess<A, R, T> lp : this.logicalProcesses)
+        {
+            T next = lp.getNextEventTime();
+            if (next != null && (next.lt(windowEnd) || (including && next.eq(windowEnd))))
+            {
+                active.add(lp);
+            }
+        }
+        if (this.parallel && active.size() > 1)
+        {
+            ForkJoinPool.commonPool().invoke(new WindowTask(active, 0, active.size(), windowEnd, including));
+        }
+        else
+        {
+            for (LogicalProcess<A, R, T> lp : active)
+            {
+                lp.executeWindow(windowEnd, including);
+            }
+        }
+        this.windows++;
+    }
+
+    /**
+     * Take the messages from all channels to a logical process, sorted on time, sending logical process and order of sending.
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the receiving logical process
+     * @return List&lt;Channel&lt;A, R, T&gt;.Message&gt;; the sorted messages for the logical process, possibly empty
+     */
+    protected List<Channel<A, R, T>.Message> takeMessages(final LogicalProcess<A, R, T> destination)
+    {
+        List<Channel<A, R, T>.Message> messages = new ArrayList<>();
+        for (Channel<A, R, T> channel : this.channels)
+        {
+            if (channel.getDestination() == destination)
+            {
+                channel.drainTo(messages);
+            }
+        }
+        Collections.sort(messages);
+        return messages;
+    }
+
+    /**
+     * Return whether one of the logical processes has been stopped, e.g., by the ErrorStrategy after an exception.
+     * @return boolean; whether one of the logical processes has been stopped
+     */
+    protected boolean stopped()
+    {
+        for (LogicalProcess<A, R, T> lp : this.logicalProcesses)
+        {
+            if (lp.getRunState() != RunState.STARTED)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set whether the logical processes are executed in parallel. A sequential execution gives the same results, and can be
+     * used for debugging and to compare with the parallel execution.
+     * @param parallel boolean; whether the logical processes are executed in parallel
+     */
+    public void setParallel(final boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return parallel boolean; whether the logical processes are executed in parallel
+     */
+    public boolean isParallel()
+    {
+        return this.parallel;
+    }
+
+    /**
+     * @return running boolean; whether the synchronizer is executing windows
+     */
+    public boolean isRunning()
+    {
+        return this.running;
+    }
+
+    /**
+     * @return id Serializable; the id of the synchronizer
+     */
+    public Serializable getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return List&lt;LogicalProcess&lt;A, R, T&gt;&gt;; the logical processes, in the order of their index
+     */
+    public List<LogicalProcess<A, R, T>> getLogicalProcesses()
+    {
+        return Collections.unmodifiableList(this.logicalProcesses);
+    }
+
+    /**
+     * @return List&lt;Channel&lt;A, R, T&gt;&gt;; the channels between the logical processes
+     */
+    public List<Channel<A, R, T>> getChannels()
+    {
+        return Collections.unmodifiableList(this.channels);
+    }
+
+    /**
+     * @return lookahead R; the smallest lookahead of all channels, or null when there are no channels
+     */
+    public R getLookahead()
+    {
+        return this.lookahead;
+    }
+
+    /**
+     * @return windows long; the number of windows that have been executed
+     */
+    public long getNumberOfWindows()
+    {
+        return this.windows;
+    }
+
+    /**
+     * @return deliveredMessages long; the number of messages that have been delivered between the logical processes
+     */
+    public long getNumberOfDeliveredMessages()
+    {
+        return this.deliveredMessages;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + this.id + ", logicalProcesses=" + this.logicalProcesses.size()
+                + ", lookahead=" + this.lookahead + "]";
+    }
+
+    /**
+     * The task that executes a window for a range of logical processes, splitting the range until it contains one logical
+     * process.
+     */
+    private class WindowTask extends RecursiveAction
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the logical processes with events in the window. */
+        private final List<LogicalProcess<A, R, T>> active;
+
+        /** the first logical process. */
+        private final int from;
+
+        /** the logical process after the last logical process. */
+        private final int to;
+
+        /** the end of the window. */
+        private final T windowEnd;
+
+        /** whether events at the end of the window are executed as well. */
+        private final boolean including;
+
+        /**
+         * Create a task for the logical processes from..to-1.
+         * @param active List&lt;LogicalProcess&lt;A, R, T&gt;&gt;; the logical processes with events in the window
+         * @param from int; the first logical process
+         * @param to int; the logical process after the last logical process
+         * @param windowEnd T; the end of the window
+         * @param including boolean; whether events at the end of the window are executed as well
+         */
+        WindowTask(final List<LogicalProcess<A, R, T>> active, final int from, final int to, final T windowEnd,
+                final boolean including)
+        {
+            this.active = active;
+            this.from = from;
+            this.to = to;
+            this.windowEnd = windowEnd;
+            this.including = including;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void compute()
+        {
+            if (this.to - this.from == 1)
+            {
+                this.active.get(this.from).executeWindow(this.windowEnd, this.including);
+            }
+            else
+            {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new WindowTask(this.active, this.from, middle, this.windowEnd, this.including),
+                        new WindowTask(this.active, middle, this.to, this.windowEnd, this.including));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.Executable;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.LambdaSimEvent;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEvent;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+
+/**
+ * A Channel carries timestamped events from one logical process to another. The channel declares a lookahead: every event
+ * that is sent through the channel is executed at least the lookahead after the simulation time of the sending logical
+ * process. The messages are stored in a lock-free queue by the thread of the sending logical process, and are taken from the
+ * queue by the synchronizer between two windows. The event for a message is only created when it is delivered, so the order
+ * of events with the same time on the receiving logical process does not depend on the scheduling of the threads. In an
+ * optimistic simulation, a message can be cancelled by an anti-message that is sent over the same channel.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration. For most non-unit types, such as Double or Long, the absolute
+ *            and relative types are the same.
+ * @param <T> the simulation time type based on the absolute and relative time.
+ */
+public class Channel<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>, T extends SimTime<A, R, T>>
+        implements Serializable
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the sending logical process. */
+    private final LogicalProcess<A, R, T> source;
+
+    /** the receiving logical process. */
+    private final LogicalProcess<A, R, T> destination;
+
+    /** the minimum delay between the sending of an event and its execution. */
+    private final R lookahead;
+
+    /** the messages that have been sent, and not yet delivered. */
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+
+    /** the number of messages that have been sent; only changed by the thread of the sending logical process. */
+    private long sequence = 0L;
+
+    /**
+     * Create a channel between two logical processes. Channels are created by the ConservativeSynchronizer.
+     * @param source LogicalProcess&lt;A, R, T&gt;; the sending logical process
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the receiving logical process
+     * @param lookahead R; the minimum delay between the sending of an event and its execution
+     */
+    Channel(final LogicalProcess<A, R, T> source, final LogicalProcess<A, R, T> destination, final R lookahead)
+    {
+        this.source = source;
+        this.destination = destination;
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Store a message in the channel. This method is called by the thread of the sending logical process.
+     * @param time T; the absolute execution time of the event on the receiving logical process
+     * @param priority short; the priority of the event
+     * @param executable Executable; the lambda method to invoke, or null when a method is invoked on the target
+     * @param eventSource Object; the source of the event
+     * @param target Object; the object on which the method is invoked
+     * @param method String; the name of the method to invoke
+     * @param args Object[]; the arguments of the method
+     * @return Message; the message that has been stored in the channel
+     */
+    Message send(final T time, final short priority, final Executable executable, final Object eventSource,
+            final Object target, final String method, final Object[] args)
+    {
+        Message message =
+                new Message(time, priority, this.sequence++, executable, eventSource, target, method, args, null);
+        this.messages.add(message);
+        return message;
+    }
+
+    /**
+     * Store an anti-message in the channel, that cancels an earlier message of this channel.
+     * @param positive Message; the message to cancel
+     */
+    void sendAntiMessage(final Message positive)
+    {
+        this.messages.add(new Message(positive.getTime(), positive.priority, this.sequence++, null, null, null, null, null,
+                positive));
+    }
+
+    /**
+     * Move the messages of the channel to a collection. This method is called by the ConservativeSynchronizer between windows.
+     * @param collection Collection&lt;Message&gt;; the collection to add the messages to
+     */
+    void drainTo(final Collection<Message> collection)
+    {
+        Message message;
+        while ((message = this.messages.poll()) != null)
+        {
+            collection.add(message);
+        }
+    }
+
+    /**
+     * @return source LogicalProcess&lt;A, R, T&gt;; the sending logical process
+     */
+    public LogicalProcess<A, R, T> getSource()
+    {
+        return this.source;
+    }
+
+    /**
+     * @return destination LogicalProcess&lt;A, R, T&gt;; the receiving logical process
+     */
+    public LogicalProcess<A, R, T> getDestination()
+    {
+        return this.destination;
+    }
+
+    /**
+     * @return lookahead R; the minimum delay between the sending of an event and its execution
+     */
+    public R getLookahead()
+    {
+        return this.lookahead;
+    }
+
+    /**
+     * @return the number of messages that have been sent through the channel
+     */
+    public long getNumberOfMessages()
+    {
+        return this.sequence;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "Channel[" + this.source.getSourceId() + " -> " + this.destination.getSourceId() + ", lookahead="
+                + this.lookahead + "]";
+    }
+
+    /**
+     * A message in a channel, that is turned into an event on the receiving logical process when it is delivered. Messages
+     * are ordered on their time, and for the same time on the index of the sending logical process and the order in which
+     * they were sent, which makes the delivery independent of the scheduling of the threads. An anti-message refers to the
+     * message that it cancels.
+     */
+    class Message implements Comparable<Message>, Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the absolute execution time of the event. */
+        private final T time;
+
+        /** the priority of the event. */
+        private final short priority;
+
+        /** the sequence number of the message in its channel. */
+        private final long sequence;
+
+        /** the lambda method to invoke, or null. */
+        private final Executable executable;
+
+        /** the source of the event. */
+        private final Object eventSource;
+
+        /** the object on which the method is invoked. */
+        private final Object target;
+
+        /** the name of the method to invoke. */
+        private final String method;
+
+        /** the arguments of the method. */
+        private final Object[] args;
+
+        /** the message that is cancelled by this anti-message, or null for a normal message. */
+        private final Message positive;
+
+        /** the event that has been created for the message on the receiving logical process, or null. */
+        private SimEventInterface<T> event = null;
+
+        /**
+         * Create a message.
+         * @param time T; the absolute execution time of the event
+         * @param priority short; the priority of the event
+         * @param sequence long; the sequence number of the message in its channel
+         * @param executable Executable; the lambda method to invoke, or null
+         * @param eventSource Object; the source of the event
+         * @param target Object; the object on which the method is invoked
+         * @param method String; the name of the method to invoke
+         * @param args Object[]; the arguments of the method
+         * @param positive Message; the message that is cancelled by this anti-message, or null for a normal message
+         */
+        @SuppressWarnings("checkstyle:parameternumber")
+        Message(final T time, final short priority, final long sequence, final Executable executable, final Object eventSource,
+                final Object target, final String method, final Object[] args, final Message positive)
+        {
+            this.time = time;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.executable = executable;
+            this.eventSource = eventSource;
+            this.target = target;
+            this.method = method;
+            this.args = args;
+            this.positive = positive;
+        }
+
+        /**
+         * Create the event for this message, and remember it so an anti-message can find it.
+         * @return SimEventInterface&lt;T&gt;; the event to schedule on the receiving logical process
+         */
+        SimEventInterface<T> createEvent()
+        {
+            if (this.executable != null)
+            {
+                this.event = new LambdaSimEvent<T>(this.time, this.priority, this.executable);
+            }
+            else
+            {
+                this.event = new SimEvent<T>(this.time, this.priority, this.eventSource, this.target, this.method, this.args);
+            }
+            return this.event;
+        }
+
+        /**
+         * @return event SimEventInterface&lt;T&gt;; the event that has been created for the message, or null when the message
+         *         has not been delivered
+         */
+        SimEventInterface<T> getEvent()
+        {
+            return this.event;
+        }
+
+        /**
+         * @return positive Message; the message that is cancelled by this anti-message, or null for a normal message
+         */
+        Message getPositive()
+        {
+            return this.positive;
+        }
+
+        /**
+         * @return Channel&lt;A, R, T&gt;; the channel of the message
+         */
+        Channel<A, R, T> getChannel()
+        {
+            return Channel.this;
+        }
+
+        /**
+         * @return time T; the absolute execution time of the event
+         */
+        T getTime()
+        {
+            return this.time;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int compareTo(final Message other)
+        {
+            int cmp = this.time.compareTo(other.time);
+            if (cmp != 0)
+            {
+                return cmp;
+            }
+            int sourceIndex = getChannel().getSource().getIndex();
+            int otherSourceIndex = other.getChannel().getSource().getIndex();
+            if (sourceIndex != otherSourceIndex)
+            {
+                return Integer.compare(sourceIndex, otherSourceIndex);
+            }
+            return Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import java.io.Serializable;
+import java.util.List;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+
+/**
+ * The ConservativeSynchronizer executes a number of logical processes in parallel, using synchronous windows in the style of
+ * YAWNS. At the start of a window, the earliest time of the next event over all logical processes is determined. Since an
+ * event that is sent to another logical process is executed at least the lookahead of its channel later, no logical process
+ * can receive an event before that earliest time plus the smallest lookahead of all channels. All logical processes therefore
+ * execute their events before the end of the window independently, on threads of the common ForkJoinPool. After the window,
+ * the messages in the channels are delivered to the event lists of the receiving logical processes, sorted on time, sending
+ * logical process and order of sending. The delivery order, and thereby the outcome of the simulation, does not depend on the
+ * number of threads or their scheduling: a sequential execution of the same logical processes, see setParallel(false), gives
+ * exactly the same results.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration. For most non-unit types, such as Double or Long, the absolute
+ *            and relative types are the same.
+ * @param <T> the simulation time type based on the absolute and relative time.
+ */
+public class ConservativeSynchronizer<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+        T extends SimTime<A, R, T>> extends AbstractSynchronizer<A, R, T>
+{
+    /**
+     * Create a synchronizer for conservative parallel simulation.
+     * @param id Serializable; the id of the synchronizer
+     */
+    public ConservativeSynchronizer(final Serializable id)
+    {
+        super(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void executeWindows(final T stopTime)
+    {
+        while (true)
+        {
+            deliverMessages();
+            T windowStart = nextEventTime();
+            if (windowStart == null || windowStart.gt(stopTime))
+            {
+                break;
+            }
+            T windowEnd = getLookahead() == null ? stopTime : windowStart.plus(getLookahead());
+            boolean including = false;
+            if (windowEnd.ge(stopTime))
+            {
+                windowEnd = stopTime;
+                including = true;
+            }
+            executeWindow(windowEnd, including);
+            if (stopped())
+            {
+                break;
+            }
+        }
+        deliverMessages();
+    }
+
+    /**
+     * Deliver the messages in all channels to the receiving logical processes, in the order of time, sending logical process
+     * and order of sending.
+     */
+    private void deliverMessages()
+    {
+        for (LogicalProcess<A, R, T> destination : getLogicalProcesses())
+        {
+            List<Channel<A, R, T>.Message> messages = takeMessages(destination);
+            for (Channel<A, R, T>.Message message : messages)
+            {
+                try
+                {
+                    destination.scheduleEvent(message.createEvent());
+                }
+                catch (SimRuntimeException exception)
+                {
+                    // cannot happen when the lookahead is respected: the message time is at or after the end of the window
+                    destination.getLogger().always().error(exception, "deliverMessages at {}", message.getTime());
+                }
+            }
+            this.deliveredMessages += messages.size();
+        }
+    }
+
+}
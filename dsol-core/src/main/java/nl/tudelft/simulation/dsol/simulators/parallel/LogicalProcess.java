@@ -0,0 +1,487 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djunits.value.vdouble.scalar.Time;
+import org.djunits.value.vfloat.scalar.FloatDuration;
+import org.djunits.value.vfloat.scalar.FloatTime;
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.Executable;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDoubleUnit;
+import nl.tudelft.simulation.dsol.simtime.SimTimeFloat;
+import nl.tudelft.simulation.dsol.simtime.SimTimeFloatUnit;
+import nl.tudelft.simulation.dsol.simtime.SimTimeLong;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulator;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulatorInterface;
+import nl.tudelft.simulation.dsol.simulators.ReplicationState;
+import nl.tudelft.simulation.dsol.simulators.RunState;
+import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
+
+/**
+ * A LogicalProcess is a DEVS simulator that executes one partition of a model in a conservative parallel simulation. The
+ * partition is a normal DSOLModel, or e.g. a DEVS CoupledModel, that is constructed with the logical process as its simulator,
+ * and the logical process is initialized with the model and a replication as any other simulator. Events for the partition
+ * are scheduled on the logical process as usual; events for a partition of another logical process are sent with one of the
+ * sendEvent methods, through a Channel that has been created by the connect(...) method of the synchronizer. The delay of a
+ * sent event should be at least the lookahead of the channel. <br>
+ * The partitioning is static and only defined by construction: there is no API to move a model, or a component of a coupled
+ * model, to another logical process. The couplings of a DEVS CoupledModel therefore cannot cross logical processes; all
+ * components of a coupled model run on the logical process of their top model, and messages between partitions have to be
+ * sent with sendEvent. <br>
+ * A logical process is not started, stopped or stepped on its own; its event list is executed in windows by the synchronizer
+ * to which it has been added, on a thread of the common ForkJoinPool. Listeners for e.g. the TIME_CHANGED_EVENT are therefore
+ * notified on that thread.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration. For most non-unit types, such as Double or Long, the absolute
+ *            and relative types are the same.
+ * @param <T> the simulation time type based on the absolute and relative time.
+ */
+public class LogicalProcess<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+        T extends SimTime<A, R, T>> extends DEVSSimulator<A, R, T>
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the synchronizer that executes this logical process, or null when it has not been added yet. */
+    private AbstractSynchronizer<A, R, T> synchronizer = null;
+
+    /** the index of the logical process in its synchronizer. */
+    private int index = -1;
+
+    /** the channels to other logical processes, by destination. */
+    private final Map<LogicalProcess<A, R, T>, Channel<A, R, T>> outputChannels = new LinkedHashMap<>();
+
+    /**
+     * Constructs a new LogicalProcess.
+     * @param id the id of the logical process, used in logging and firing of events.
+     */
+    public LogicalProcess(final Serializable id)
+    {
+        super(id);
+    }
+
+    /**
+     * Send an event to another logical process, to be executed the delay after the current time of this logical process.
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the logical process that executes the event
+     * @param delay R; the delay after the current time; should be at least the lookahead of the channel
+     * @param priority short; the priority of the event
+     * @param executable Executable; the lambda method to invoke on the destination
+     * @throws SimRuntimeException when there is no channel to the destination, or when the delay is less than its lookahead
+     */
+    public void sendEvent(final LogicalProcess<A, R, T> destination, final R delay, final short priority,
+            final Executable executable) throws SimRuntimeException
+    {
+        Throw.whenNull(executable, "executable cannot be null");
+        send(destination, delay, priority, executable, null, null, null, null);
+    }
+
+    /**
+     * Send an event with normal priority to another logical process, to be executed the delay after the current time of this
+     * logical process.
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the logical process that executes the event
+     * @param delay R; the delay after the current time; should be at least the lookahead of the channel
+     * @param executable Executable; the lambda method to invoke on the destination
+     * @throws SimRuntimeException when there is no channel to the destination, or when the delay is less than its lookahead
+     */
+    public void sendEvent(final LogicalProcess<A, R, T> destination, final R delay, final Executable executable)
+            throws SimRuntimeException
+    {
+        sendEvent(destination, delay, SimEventInterface.NORMAL_PRIORITY, executable);
+    }
+
+    /**
+     * Send an event to another logical process, to be executed the delay after the current time of this logical process.
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the logical process that executes the event
+     * @param delay R; the delay after the current time; should be at least the lookahead of the channel
+     * @param priority short; the priority of the event
+     * @param source Object; the source of the event
+     * @param target Object; the object in the partition of the destination on which the method is invoked
+     * @param method String; the name of the method to invoke
+     * @param args Object[]; the arguments of the method
+     * @throws SimRuntimeException when there is no channel to the destination, or when the delay is less than its lookahead
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public void sendEvent(final LogicalProcess<A, R, T> destination, final R delay, final short priority, final Object source,
+            final Object target, final String method, final Object[] args) throws SimRuntimeException
+    {
+        Throw.whenNull(target, "target cannot be null");
+        Throw.whenNull(method, "method cannot be null");
+        send(destination, delay, priority, null, source, target, method, args);
+    }
+
+    /**
+     * Send an event with normal priority to another logical process, to be executed the delay after the current time of this
+     * logical process.
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the logical process that executes the event
+     * @param delay R; the delay after the current time; should be at least the lookahead of the channel
+     * @param source Object; the source of the event
+     * @param target Object; the object in the partition of the destination on which the method is invoked
+     * @param method String; the name of the method to invoke
+     * @param args Object[]; the arguments of the method
+     * @throws SimRuntimeException when there is no channel to the destination, or when the delay is less than its lookahead
+     */
+    public void sendEvent(final LogicalProcess<A, R, T> destination, final R delay, final Object source, final Object target,
+            final String method, final Object[] args) throws SimRuntimeException
+    {
+        sendEvent(destination, delay, SimEventInterface.NORMAL_PRIORITY, source, target, method, args);
+    }
+
+    /**
+     * Put an event for another logical process in the channel to that logical process. An event for this logical process
+     * itself is scheduled directly.
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the logical process that executes the event
+     * @param delay R; the delay after the current time
+     * @param priority short; the priority of the event
+     * @param executable Executable; the lambda method to invoke, or null
+     * @param source Object; the source of the event
+     * @param target Object; the object on which the method is invoked
+     * @param method String; the name of the method to invoke
+     * @param args Object[]; the arguments of the method
+     * @throws SimRuntimeException when there is no channel to the destination, or when the delay is less than its lookahead
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    private void send(final LogicalProcess<A, R, T> destination, final R delay, final short priority,
+            final Executable executable, final Object source, final Object target, final String method, final Object[] args)
+            throws SimRuntimeException
+    {
+        Throw.whenNull(destination, "destination cannot be null");
+        Throw.whenNull(delay, "delay cannot be null");
+        if (destination == this)
+        {
+            if (executable != null)
+            {
+                scheduleEventRel(delay, priority, executable);
+            }
+            else
+            {
+                scheduleEventRel(delay, priority, source, target, method, args);
+            }
+            return;
+        }
+        Channel<A, R, T> channel = this.outputChannels.get(destination);
+        Throw.when(channel == null, SimRuntimeException.class, "no channel from logical process %s to logical process %s",
+                getSourceId(), destination.getSourceId());
+        Throw.when(delay.compareTo(channel.getLookahead()) < 0, SimRuntimeException.class,
+                "delay %s of event sent from %s to %s is less than the lookahead %s of the channel", delay, getSourceId(),
+                destination.getSourceId(), channel.getLookahead());
+        sent(channel.send(this.simulatorTime.plus(delay), priority, executable, source, target, method, args));
+    }
+
+    /**
+     * Method that is called after a message has been stored in a channel to another logical process. The method does nothing
+     * in a conservative simulation; an optimistic logical process remembers the message, so it can be cancelled on rollback.
+     * @param message Channel&lt;A, R, T&gt;.Message; the message that has been sent
+     */
+    void sent(final Channel<A, R, T>.Message message)
+    {
+        // nothing to do in a conservative simulation
+    }
+
+    /**
+     * Register this logical process with a synchronizer.
+     * @param newSynchronizer AbstractSynchronizer&lt;A, R, T&gt;; the synchronizer that executes this logical process
+     * @param newIndex int; the index of this logical process in the synchronizer
+     */
+    void setSynchronizer(final AbstractSynchronizer<A, R, T> newSynchronizer, final int newIndex)
+    {
+        this.synchronizer = newSynchronizer;
+        this.index = newIndex;
+    }
+
+    /**
+     * Add a channel to another logical process.
+     * @param channel Channel&lt;A, R, T&gt;; the channel to add
+     */
+    void addOutputChannel(final Channel<A, R, T> channel)
+    {
+        this.outputChannels.put(channel.getDestination(), channel);
+    }
+
+    /**
+     * Return the time of the first event on the event list.
+     * @return T; the time of the first event on the event list, or null when the event list is empty
+     */
+    T getNextEventTime()
+    {
+        synchronized (super.semaphore)
+        {
+            return this.eventList.isEmpty() ? null : this.eventList.first().getAbsoluteExecutionTime();
+        }
+    }
+
+    /**
+     * Prepare the logical process for the execution of windows, and fire the start events.
+     */
+    void startWindows()
+    {
+        synchronized (super.semaphore)
+        {
+            if (this.replicationState == ReplicationState.INITIALIZED)
+            {
+                fireTimedEvent(ReplicationInterface.START_REPLICATION_EVENT, null, getSimulatorTime());
+                this.replicationState = ReplicationState.STARTED;
+            }
+            this.runState = RunState.STARTED;
+            fireTimedEvent(SimulatorInterface.START_EVENT, null, getSimulatorTime());
+        }
+    }
+
+    /**
+     * Execute the events on the event list up to the end of the window, in the calling thread. The execution stops earlier
+     * when the ErrorStrategy stops the logical process after an exception in an event.
+     * @param windowEnd T; the end of the window
+     * @param including boolean; whether events at the end of the window are executed as well
+     */
+    void executeWindow(final T windowEnd, final boolean including)
+    {
+        synchronized (super.semaphore)
+        {
+            while (this.runState == RunState.STARTED && !this.eventList.isEmpty())
+            {
+                int cmp = this.eventList.first().getAbsoluteExecutionTime().compareTo(windowEnd);
+                if ((cmp == 0 && !including) || cmp > 0)
+                {
+                    break;
+                }
+                executeEvent(this.eventList.removeFirst());
+            }
+        }
+    }
+
+    /**
+     * Execute one event that has been removed from the event list, in the same way as the run() method of the DEVSSimulator.
+     * @param event SimEventInterface&lt;T&gt;; the event to execute
+     */
+    void executeEvent(final SimEventInterface<T> event)
+    {
+        if (event.getAbsoluteExecutionTime().ne(super.simulatorTime))
+        {
+            fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, event.getAbsoluteExecutionTime().get());
+        }
+        super.simulatorTime = event.getAbsoluteExecutionTime();
+        try
+        {
+            event.execute();
+        }
+        catch (Exception exception)
+        {
+            handleSimulationException(exception);
+        }
+    }
+
+    /**
+     * Finish the execution of windows. When the logical process was not stopped by an error, the time is set to the stop time,
+     * and the replication ends when the stop time is the end time of the replication.
+     * @param stopTime T; the time up to which the logical processes have been executed
+     */
+    void stopWindows(final T stopTime)
+    {
+        synchronized (super.semaphore)
+        {
+            if (this.runState != RunState.STARTED)
+            {
+                return;
+            }
+            if (this.simulatorTime.lt(stopTime))
+            {
+                fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null, stopTime.get());
+                this.simulatorTime = stopTime.copy();
+            }
+            fireTimedEvent(SimulatorInterface.STOP_EVENT, null, getSimulatorTime());
+            this.runState = RunState.STOPPED;
+            if (this.simulatorTime.ge(getReplication().getEndSimTime()))
+            {
+                // the worker thread of the simulator ends the replication and fires the END_REPLICATION_EVENT
+                this.replicationState = ReplicationState.ENDING;
+                this.worker.interrupt();
+            }
+        }
+    }
+
+    /**
+     * A logical process is started by its synchronizer, and cannot be started on its own.
+     * @throws SimRuntimeException always
+     */
+    @Override
+    public void startImpl() throws SimRuntimeException
+    {
+        throw new SimRuntimeException("logical process " + getSourceId() + " can only be run by its synchronizer");
+    }
+
+    /**
+     * A logical process is executed by its synchronizer, and cannot be stepped on its own.
+     * @throws SimRuntimeException always
+     */
+    @Override
+    public void step() throws SimRuntimeException
+    {
+        throw new SimRuntimeException("logical process " + getSourceId() + " can only be run by its synchronizer");
+    }
+
+    /**
+     * @return synchronizer AbstractSynchronizer&lt;A, R, T&gt;; the synchronizer that executes this logical process, or
+     *         null when it has not been added to a synchronizer
+     */
+    public AbstractSynchronizer<A, R, T> getSynchronizer()
+    {
+        return this.synchronizer;
+    }
+
+    /**
+     * @return index int; the index of this logical process in its synchronizer, or -1 when it has not been added
+     */
+    public int getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * Return the channel to another logical process.
+     * @param destination LogicalProcess&lt;A, R, T&gt;; the receiving logical process
+     * @return Channel&lt;A, R, T&gt;; the channel to the destination, or null when the logical processes are not connected
+     */
+    public Channel<A, R, T> getChannel(final LogicalProcess<A, R, T> destination)
+    {
+        return this.outputChannels.get(destination);
+    }
+
+    /***********************************************************************************************************/
+    /************************************* EASY ACCESS CLASS EXTENSIONS ****************************************/
+    /***********************************************************************************************************/
+
+    /** Easy access class LogicalProcess.TimeDouble. */
+    public static class TimeDouble extends LogicalProcess<Double, Double, SimTimeDouble>
+            implements DEVSSimulatorInterface.TimeDouble
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new LogicalProcess.TimeDouble.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeDouble(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeDouble getReplication()
+        {
+            return (ReplicationInterface.TimeDouble) super.getReplication();
+        }
+    }
+
+    /** Easy access class LogicalProcess.TimeFloat. */
+    public static class TimeFloat extends LogicalProcess<Float, Float, SimTimeFloat> implements DEVSSimulatorInterface.TimeFloat
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new LogicalProcess.TimeFloat.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeFloat(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeFloat getReplication()
+        {
+            return (ReplicationInterface.TimeFloat) super.getReplication();
+        }
+    }
+
+    /** Easy access class LogicalProcess.TimeLong. */
+    public static class TimeLong extends LogicalProcess<Long, Long, SimTimeLong> implements DEVSSimulatorInterface.TimeLong
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new LogicalProcess.TimeLong.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeLong(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeLong getReplication()
+        {
+            return (ReplicationInterface.TimeLong) super.getReplication();
+        }
+    }
+
+    /** Easy access class LogicalProcess.TimeDoubleUnit. */
+    public static class TimeDoubleUnit extends LogicalProcess<Time, Duration, SimTimeDoubleUnit>
+            implements DEVSSimulatorInterface.TimeDoubleUnit
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new LogicalProcess.TimeDoubleUnit.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeDoubleUnit(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeDoubleUnit getReplication()
+        {
+            return (ReplicationInterface.TimeDoubleUnit) super.getReplication();
+        }
+    }
+
+    /** Easy access class LogicalProcess.TimeFloatUnit. */
+    public static class TimeFloatUnit extends LogicalProcess<FloatTime, FloatDuration, SimTimeFloatUnit>
+            implements DEVSSimulatorInterface.TimeFloatUnit
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new LogicalProcess.TimeFloatUnit.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeFloatUnit(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeFloatUnit getReplication()
+        {
+            return (ReplicationInterface.TimeFloatUnit) super.getReplication();
+        }
+    }
+
+}
@@ -0,0 +1,648 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djunits.value.vdouble.scalar.Time;
+import org.djunits.value.vfloat.scalar.FloatDuration;
+import org.djunits.value.vfloat.scalar.FloatTime;
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.model.DSOLModel;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDoubleUnit;
+import nl.tudelft.simulation.dsol.simtime.SimTimeFloat;
+import nl.tudelft.simulation.dsol.simtime.SimTimeFloatUnit;
+import nl.tudelft.simulation.dsol.simtime.SimTimeLong;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulatorInterface;
+import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
+import nl.tudelft.simulation.jstats.streams.StreamException;
+import nl.tudelft.simulation.jstats.streams.StreamInterface;
+import nl.tudelft.simulation.language.DSOLException;
+import nl.tudelft.simulation.language.reflection.StateSaver;
+
+/**
+ * An OptimisticLogicalProcess executes one partition of a model speculatively in a Time Warp simulation, that is run by an
+ * OptimisticSynchronizer. Before each event, the logical process saves the registered state of its partition, and it logs the
+ * changes that the event makes to the event list and the messages that the event sends to other logical processes. When a
+ * message arrives with a time before the time of events that have already been executed, the logical process rolls back:
+ * the events are undone in reverse order, the state before the earliest undone event is restored, and anti-messages are sent
+ * for the messages of the undone events. The undone events are executed again afterwards. <br>
+ * The state of the partition that can change during an event has to be registered with addState(...). The streams of the
+ * model are registered automatically when the logical process is initialized, so random draws are replayed identically after
+ * a rollback; other streams can be registered with addStream(...). Objects outside the registered state, such as listeners
+ * of the TIME_CHANGED_EVENT and statistics that are not registered, observe the speculative execution, including the events
+ * that are rolled back later.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration. For most non-unit types, such as Double or Long, the absolute
+ *            and relative types are the same.
+ * @param <T> the simulation time type based on the absolute and relative time.
+ */
+public class OptimisticLogicalProcess<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+        T extends SimTime<A, R, T>> extends LogicalProcess<A, R, T>
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the registered state of the partition, that is saved before each event. */
+    private final List<StateSavable> states = new ArrayList<>();
+
+    /** the states for the streams of the model, registered when the logical process is initialized. */
+    private final List<StateSavable> modelStreamStates = new ArrayList<>();
+
+    /** the executed events that can still be rolled back, in the order of execution. */
+    private final Deque<Step> steps = new ArrayDeque<>();
+
+    /** the step of the event that is being executed, or null when no event is being executed. */
+    private Step currentStep = null;
+
+    /** the number of rollbacks. */
+    private long rollbacks = 0L;
+
+    /** the number of events that have been rolled back. */
+    private long rolledBackEvents = 0L;
+
+    /** the number of events that have been committed by fossil collection. */
+    private long committedEvents = 0L;
+
+    /** the number of anti-messages that have been sent. */
+    private long antiMessages = 0L;
+
+    /**
+     * Constructs a new OptimisticLogicalProcess.
+     * @param id the id of the logical process, used in logging and firing of events.
+     */
+    public OptimisticLogicalProcess(final Serializable id)
+    {
+        super(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings({"hiding", "checkstyle:hiddenfield"})
+    public void initialize(final DSOLModel<A, R, T, ? extends SimulatorInterface<A, R, T>> model,
+            final ReplicationInterface<A, R, T> replication) throws SimRuntimeException
+    {
+        synchronized (super.semaphore)
+        {
+            this.steps.clear();
+            this.modelStreamStates.clear();
+            super.initialize(model, replication);
+            if (model.getStreamInformation() != null)
+            {
+                for (StreamInterface stream : model.getStreamInformation().getStreams().values())
+                {
+                    this.modelStreamStates.add(new StreamStateSavable(stream));
+                }
+            }
+        }
+    }
+
+    /**
+     * Register a part of the state of the partition, that is saved before each event and restored on rollback.
+     * @param state StateSavable; the state to register
+     */
+    public void addState(final StateSavable state)
+    {
+        Throw.whenNull(state, "state cannot be null");
+        this.states.add(state);
+    }
+
+    /**
+     * Register an object of the partition, whose non-transient fields are saved with a deep copy, using the StateSaver, before
+     * each event, and restored on rollback. This is the easiest, but also the slowest way to save state; for objects that are
+     * changed by many events, a StateSavable that copies only the changing fields is much faster.
+     * @param object Serializable; the object to register
+     */
+    public void addSerializableState(final Serializable object)
+    {
+        Throw.whenNull(object, "object cannot be null");
+        this.states.add(new SerializedStateSavable(object));
+    }
+
+    /**
+     * Register a stream, whose state is saved before each event and restored on rollback, so the random draws after a rollback
+     * are identical to the draws of the undone events. The streams of the model are registered automatically.
+     * @param stream StreamInterface; the stream to register
+     */
+    public void addStream(final StreamInterface stream)
+    {
+        Throw.whenNull(stream, "stream cannot be null");
+        this.states.add(new StreamStateSavable(stream));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void setSynchronizer(final AbstractSynchronizer<A, R, T> newSynchronizer, final int newIndex)
+    {
+        Throw.when(!(newSynchronizer instanceof OptimisticSynchronizer), SimRuntimeException.class,
+                "optimistic logical process %s can only be added to an OptimisticSynchronizer", getSourceId());
+        super.setSynchronizer(newSynchronizer, newIndex);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public SimEventInterface<T> scheduleEvent(final SimEventInterface<T> event) throws SimRuntimeException
+    {
+        synchronized (super.semaphore)
+        {
+            super.scheduleEvent(event);
+            if (this.currentStep != null)
+            {
+                this.currentStep.operations.add(new Operation<T>(event, true));
+            }
+            return event;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean cancelEvent(final SimEventInterface<T> event)
+    {
+        synchronized (super.semaphore)
+        {
+            boolean removed = super.cancelEvent(event);
+            if (removed && this.currentStep != null)
+            {
+                this.currentStep.operations.add(new Operation<T>(event, false));
+            }
+            return removed;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void executeEvent(final SimEventInterface<T> event)
+    {
+        Object[] savedStates = new Object[this.states.size() + this.modelStreamStates.size()];
+        int i = 0;
+        for (StateSavable state : this.modelStreamStates)
+        {
+            savedStates[i++] = state.saveState();
+        }
+        for (StateSavable state : this.states)
+        {
+            savedStates[i++] = state.saveState();
+        }
+        Step step = new Step(event, this.simulatorTime, savedStates);
+        this.steps.addLast(step);
+        this.currentStep = step;
+        try
+        {
+            super.executeEvent(event);
+        }
+        finally
+        {
+            this.currentStep = null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void sent(final Channel<A, R, T>.Message message)
+    {
+        if (this.currentStep != null)
+        {
+            this.currentStep.messages.add(message);
+        }
+    }
+
+    /**
+     * Receive a message or an anti-message from another logical process. A message for a time at or before executed events
+     * rolls the logical process back first. An anti-message removes the event of its message from the event list, after a
+     * rollback when the event has already been executed.
+     * @param message Channel&lt;A, R, T&gt;.Message; the message or anti-message
+     */
+    void receive(final Channel<A, R, T>.Message message)
+    {
+        synchronized (super.semaphore)
+        {
+            if (message.getPositive() == null)
+            {
+                rollback(message.getTime());
+                this.eventList.add(message.createEvent());
+            }
+            else
+            {
+                SimEventInterface<T> event = message.getPositive().getEvent();
+                if (event != null && !this.eventList.remove(event))
+                {
+                    rollback(event.getAbsoluteExecutionTime());
+                    this.eventList.remove(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Roll back all executed events with a time at or after the given time: undo their changes to the event list, send
+     * anti-messages for the messages they sent, put the events back on the event list, and restore the state and the time
+     * before the earliest undone event.
+     * @param time T; the time to roll back to
+     * @return int; the number of events that have been rolled back
+     */
+    int rollback(final T time)
+    {
+        synchronized (super.semaphore)
+        {
+            Step earliest = null;
+            int count = 0;
+            while (!this.steps.isEmpty() && this.steps.peekLast().event.getAbsoluteExecutionTime().ge(time))
+            {
+                Step step = this.steps.pollLast();
+                for (Channel<A, R, T>.Message message : step.messages)
+                {
+                    message.getChannel().sendAntiMessage(message);
+                    this.antiMessages++;
+                }
+                for (int i = step.operations.size() - 1; i >= 0; i--)
+                {
+                    Operation<T> operation = step.operations.get(i);
+                    if (operation.added)
+                    {
+                        this.eventList.remove(operation.event);
+                    }
+                    else
+                    {
+                        this.eventList.add(operation.event);
+                    }
+                }
+                this.eventList.add(step.event);
+                earliest = step;
+                count++;
+            }
+            if (earliest != null)
+            {
+                int i = 0;
+                for (StateSavable state : this.modelStreamStates)
+                {
+                    state.restoreState(earliest.savedStates[i++]);
+                }
+                for (StateSavable state : this.states)
+                {
+                    state.restoreState(earliest.savedStates[i++]);
+                }
+                this.simulatorTime = earliest.previousTime;
+                this.rollbacks++;
+                this.rolledBackEvents += count;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Commit the executed events before the global virtual time, which can never be rolled back, and release their saved
+     * state.
+     * @param gvt T; the global virtual time, or null to commit all executed events
+     */
+    void fossilCollect(final T gvt)
+    {
+        synchronized (super.semaphore)
+        {
+            while (!this.steps.isEmpty() && (gvt == null || this.steps.peekFirst().event.getAbsoluteExecutionTime().lt(gvt)))
+            {
+                this.steps.pollFirst();
+                this.committedEvents++;
+            }
+        }
+    }
+
+    /**
+     * @return rollbacks long; the number of rollbacks
+     */
+    public long getNumberOfRollbacks()
+    {
+        return this.rollbacks;
+    }
+
+    /**
+     * @return rolledBackEvents long; the number of events that have been rolled back
+     */
+    public long getNumberOfRolledBackEvents()
+    {
+        return this.rolledBackEvents;
+    }
+
+    /**
+     * @return committedEvents long; the number of events that have been committed by fossil collection
+     */
+    public long getNumberOfCommittedEvents()
+    {
+        return this.committedEvents;
+    }
+
+    /**
+     * @return antiMessages long; the number of anti-messages that have been sent
+     */
+    public long getNumberOfAntiMessages()
+    {
+        return this.antiMessages;
+    }
+
+    /**
+     * @return the number of executed events that can still be rolled back
+     */
+    public int getNumberOfUncommittedEvents()
+    {
+        return this.steps.size();
+    }
+
+    /**
+     * The information to undo one executed event.
+     */
+    private class Step implements Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the executed event. */
+        private final SimEventInterface<T> event;
+
+        /** the simulation time before the event. */
+        private final T previousTime;
+
+        /** the saved states before the event, first the states of the model streams, then the registered states. */
+        private final Object[] savedStates;
+
+        /** the changes to the event list made by the event, in order. */
+        private final List<Operation<T>> operations = new ArrayList<>();
+
+        /** the messages sent to other logical processes by the event. */
+        private final List<Channel<A, R, T>.Message> messages = new ArrayList<>();
+
+        /**
+         * @param event SimEventInterface&lt;T&gt;; the executed event
+         * @param previousTime T; the simulation time before the event
+         * @param savedStates Object[]; the saved states before the event
+         */
+        Step(final SimEventInterface<T> event, final T previousTime, final Object[] savedStates)
+        {
+            this.event = event;
+            this.previousTime = previousTime;
+            this.savedStates = savedStates;
+        }
+    }
+
+    /**
+     * A change to the event list: an event that has been scheduled or cancelled.
+     * @param <T> the simulation time type
+     */
+    private static class Operation<T extends SimTime<?, ?, T>> implements Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the scheduled or cancelled event. */
+        private final SimEventInterface<T> event;
+
+        /** true when the event has been scheduled, false when it has been cancelled. */
+        private final boolean added;
+
+        /**
+         * @param event SimEventInterface&lt;T&gt;; the scheduled or cancelled event
+         * @param added boolean; true when the event has been scheduled, false when it has been cancelled
+         */
+        Operation(final SimEventInterface<T> event, final boolean added)
+        {
+            this.event = event;
+            this.added = added;
+        }
+    }
+
+    /**
+     * The state of a stream, saved in its compact binary format.
+     */
+    private static class StreamStateSavable implements StateSavable, Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the stream. */
+        private final StreamInterface stream;
+
+        /**
+         * @param stream StreamInterface; the stream
+         */
+        StreamStateSavable(final StreamInterface stream)
+        {
+            this.stream = stream;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object saveState()
+        {
+            try
+            {
+                return this.stream.saveState();
+            }
+            catch (StreamException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void restoreState(final Object state)
+        {
+            try
+            {
+                this.stream.restoreState((byte[]) state);
+            }
+            catch (StreamException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        }
+    }
+
+    /**
+     * The state of an object, saved with a deep copy by the StateSaver.
+     */
+    private static class SerializedStateSavable implements StateSavable, Serializable
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the object. */
+        private final Serializable object;
+
+        /**
+         * @param object Serializable; the object
+         */
+        SerializedStateSavable(final Serializable object)
+        {
+            this.object = object;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object saveState()
+        {
+            try
+            {
+                return StateSaver.saveState(this.object);
+            }
+            catch (DSOLException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void restoreState(final Object state)
+        {
+            try
+            {
+                StateSaver.restoreState(this.object, (byte[]) state);
+            }
+            catch (DSOLException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        }
+    }
+
+    /***********************************************************************************************************/
+    /************************************* EASY ACCESS CLASS EXTENSIONS ****************************************/
+    /***********************************************************************************************************/
+
+    /** Easy access class OptimisticLogicalProcess.TimeDouble. */
+    public static class TimeDouble extends OptimisticLogicalProcess<Double, Double, SimTimeDouble>
+            implements DEVSSimulatorInterface.TimeDouble
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new OptimisticLogicalProcess.TimeDouble.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeDouble(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeDouble getReplication()
+        {
+            return (ReplicationInterface.TimeDouble) super.getReplication();
+        }
+    }
+
+    /** Easy access class OptimisticLogicalProcess.TimeFloat. */
+    public static class TimeFloat extends OptimisticLogicalProcess<Float, Float, SimTimeFloat>
+            implements DEVSSimulatorInterface.TimeFloat
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new OptimisticLogicalProcess.TimeFloat.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeFloat(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeFloat getReplication()
+        {
+            return (ReplicationInterface.TimeFloat) super.getReplication();
+        }
+    }
+
+    /** Easy access class OptimisticLogicalProcess.TimeLong. */
+    public static class TimeLong extends OptimisticLogicalProcess<Long, Long, SimTimeLong>
+            implements DEVSSimulatorInterface.TimeLong
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new OptimisticLogicalProcess.TimeLong.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeLong(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeLong getReplication()
+        {
+            return (ReplicationInterface.TimeLong) super.getReplication();
+        }
+    }
+
+    /** Easy access class OptimisticLogicalProcess.TimeDoubleUnit. */
+    public static class TimeDoubleUnit extends OptimisticLogicalProcess<Time, Duration, SimTimeDoubleUnit>
+            implements DEVSSimulatorInterface.TimeDoubleUnit
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new OptimisticLogicalProcess.TimeDoubleUnit.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeDoubleUnit(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeDoubleUnit getReplication()
+        {
+            return (ReplicationInterface.TimeDoubleUnit) super.getReplication();
+        }
+    }
+
+    /** Easy access class OptimisticLogicalProcess.TimeFloatUnit. */
+    public static class TimeFloatUnit extends OptimisticLogicalProcess<FloatTime, FloatDuration, SimTimeFloatUnit>
+            implements DEVSSimulatorInterface.TimeFloatUnit
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs a new OptimisticLogicalProcess.TimeFloatUnit.
+         * @param id the id of the logical process, used in logging and firing of events.
+         */
+        public TimeFloatUnit(final Serializable id)
+        {
+            super(id);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ReplicationInterface.TimeFloatUnit getReplication()
+        {
+            return (ReplicationInterface.TimeFloatUnit) super.getReplication();
+        }
+    }
+
+}
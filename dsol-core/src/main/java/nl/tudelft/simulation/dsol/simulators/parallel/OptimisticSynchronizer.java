@@ -0,0 +1,219 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.simtime.SimTime;
+
+/**
+ * The OptimisticSynchronizer executes a number of optimistic logical processes in parallel with Time Warp, for partitioned
+ * models where the lookahead between the partitions is too small for an efficient conservative simulation. The logical
+ * processes execute their events speculatively in windows that start at the global virtual time (GVT), and that are the
+ * optimistic window long, which is typically much longer than the lookahead of the channels. After each window, the messages
+ * and anti-messages in the channels are delivered, sorted on time, sending logical process and order of sending; a message
+ * that arrives before events that have already been executed rolls the receiving logical process back, which can send
+ * anti-messages that roll back other logical processes, until no messages are left. Since no messages are in transit at that
+ * moment, the GVT is the earliest time of the next event over all logical processes. The executed events before the GVT are
+ * committed, and their saved state is released (fossil collection). <br>
+ * Because all messages are delivered between the windows in a fixed order, the outcome does not depend on the number of
+ * threads or their scheduling. It is equal to the outcome of a conservative or sequential simulation of the same model,
+ * provided that the events that arrive from other logical processes do not coincide in time and priority with other events of
+ * the receiving logical process; for such simultaneous events, the order of execution can differ.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ * @param <A> the absolute storage type for the simulation time, e.g. Time, Float, or Double.
+ * @param <R> the relative type for time storage, e.g. Duration. For most non-unit types, such as Double or Long, the absolute
+ *            and relative types are the same.
+ * @param <T> the simulation time type based on the absolute and relative time.
+ */
+public class OptimisticSynchronizer<A extends Comparable<A> & Serializable, R extends Number & Comparable<R>,
+        T extends SimTime<A, R, T>> extends AbstractSynchronizer<A, R, T>
+{
+    /** the length of the windows in which the logical processes execute their events speculatively. */
+    private R optimisticWindow;
+
+    /** the global virtual time at the start of the last window, or null when no window has been executed. */
+    private T gvt = null;
+
+    /** the number of anti-messages that have been delivered. */
+    private long deliveredAntiMessages = 0L;
+
+    /**
+     * Create a synchronizer for optimistic parallel simulation.
+     * @param id Serializable; the id of the synchronizer
+     * @param optimisticWindow R; the length of the windows in which the logical processes execute their events speculatively
+     * @throws IllegalArgumentException when the optimistic window is not larger than zero
+     */
+    public OptimisticSynchronizer(final Serializable id, final R optimisticWindow)
+    {
+        super(id);
+        setOptimisticWindow(optimisticWindow);
+    }
+
+    /**
+     * Add an optimistic logical process to the synchronizer.
+     * @param logicalProcess LogicalProcess&lt;A, R, T&gt;; the logical process to add, which should be an
+     *            OptimisticLogicalProcess
+     * @return LogicalProcess&lt;A, R, T&gt;; the logical process, for method chaining
+     * @throws SimRuntimeException when the synchronizer is running, when the logical process is not an
+     *             OptimisticLogicalProcess, or when the logical process has already been added to a synchronizer
+     */
+    @Override
+    public LogicalProcess<A, R, T> addLogicalProcess(final LogicalProcess<A, R, T> logicalProcess) throws SimRuntimeException
+    {
+        Throw.when(!(logicalProcess instanceof OptimisticLogicalProcess), SimRuntimeException.class,
+                "logical process %s of an OptimisticSynchronizer should be an OptimisticLogicalProcess",
+                logicalProcess == null ? null : logicalProcess.getSourceId());
+        return super.addLogicalProcess(logicalProcess);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void executeWindows(final T stopTime)
+    {
+        while (true)
+        {
+            deliverMessages();
+            T windowStart = nextEventTime();
+            if (windowStart == null || windowStart.gt(stopTime))
+            {
+                break;
+            }
+            this.gvt = windowStart;
+            fossilCollect(windowStart);
+            T windowEnd = windowStart.plus(this.optimisticWindow);
+            boolean including = false;
+            if (windowEnd.ge(stopTime))
+            {
+                windowEnd = stopTime;
+                including = true;
+            }
+            executeWindow(windowEnd, including);
+            if (stopped())
+            {
+                break;
+            }
+        }
+        fossilCollect(null);
+    }
+
+    /**
+     * Deliver the messages and anti-messages in all channels to the receiving logical processes, in the order of time, sending
+     * logical process and order of sending, until the rollbacks do not send any further anti-messages.
+     */
+    @SuppressWarnings("unchecked")
+    private void deliverMessages()
+    {
+        boolean delivered = true;
+        while (delivered)
+        {
+            delivered = false;
+            for (LogicalProcess<A, R, T> destination : getLogicalProcesses())
+            {
+                List<Channel<A, R, T>.Message> messages = takeMessages(destination);
+                for (Channel<A, R, T>.Message message : messages)
+                {
+                    ((OptimisticLogicalProcess<A, R, T>) destination).receive(message);
+                    if (message.getPositive() == null)
+                    {
+                        this.deliveredMessages++;
+                    }
+                    else
+                    {
+                        this.deliveredAntiMessages++;
+                    }
+                    delivered = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Commit the executed events of all logical processes before the global virtual time.
+     * @param time T; the global virtual time, or null to commit all executed events
+     */
+    @SuppressWarnings("unchecked")
+    private void fossilCollect(final T time)
+    {
+        for (LogicalProcess<A, R, T> lp : getLogicalProcesses())
+        {
+            ((OptimisticLogicalProcess<A, R, T>) lp).fossilCollect(time);
+        }
+    }
+
+    /**
+     * Set the length of the windows in which the logical processes execute their events speculatively. A longer window gives
+     * more parallelism, but also more rollbacks and more saved state.
+     * @param optimisticWindow R; the length of the windows
+     * @throws IllegalArgumentException when the optimistic window is not larger than zero
+     */
+    public void setOptimisticWindow(final R optimisticWindow)
+    {
+        Throw.whenNull(optimisticWindow, "optimisticWindow cannot be null");
+        Throw.when(optimisticWindow.doubleValue() <= 0.0, IllegalArgumentException.class,
+                "optimisticWindow should be larger than zero");
+        this.optimisticWindow = optimisticWindow;
+    }
+
+    /**
+     * @return optimisticWindow R; the length of the windows in which the logical processes execute their events speculatively
+     */
+    public R getOptimisticWindow()
+    {
+        return this.optimisticWindow;
+    }
+
+    /**
+     * @return gvt T; the global virtual time at the start of the last window, or null when no window has been executed
+     */
+    public T getGVT()
+    {
+        return this.gvt;
+    }
+
+    /**
+     * @return deliveredAntiMessages long; the number of anti-messages that have been delivered
+     */
+    public long getNumberOfDeliveredAntiMessages()
+    {
+        return this.deliveredAntiMessages;
+    }
+
+    /**
+     * @return the total number of rollbacks of all logical processes
+     */
+    @SuppressWarnings("unchecked")
+    public long getNumberOfRollbacks()
+    {
+        long result = 0L;
+        for (LogicalProcess<A, R, T> lp : getLogicalProcesses())
+        {
+            result += ((OptimisticLogicalProcess<A, R, T>) lp).getNumberOfRollbacks();
+        }
+        return result;
+    }
+
+    /**
+     * @return the total number of events of all logical processes that have been rolled back
+     */
+    @SuppressWarnings("unchecked")
+    public long getNumberOfRolledBackEvents()
+    {
+        long result = 0L;
+        for (LogicalProcess<A, R, T> lp : getLogicalProcesses())
+        {
+            result += ((OptimisticLogicalProcess<A, R, T>) lp).getNumberOfRolledBackEvents();
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,31 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+/**
+ * A StateSavable is a part of the state of a partition of an optimistic simulation, that is saved by its
+ * OptimisticLogicalProcess before each event, and restored when the logical process rolls back. The state is saved for every
+ * event, so implementations should make a cheap copy of only the information that can change, e.g., a copy of a few fields
+ * or of an array, rather than a deep copy of the complete model. Objects that do not change after they have been saved can
+ * be shared between saved states.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public interface StateSavable
+{
+    /**
+     * Return a copy of the current state, that is later given to restoreState() when the logical process rolls back.
+     * @return Object; a copy of the current state
+     */
+    Object saveState();
+
+    /**
+     * Restore a state that has been returned earlier by saveState().
+     * @param state Object; the state to restore
+     */
+    void restoreState(Object state);
+}
@@ -0,0 +1,15 @@
+/**
+ * Parallel discrete-event simulation, where a model is partitioned over a number of logical processes that each have their own
+ * DEVS simulator and event list, and that are executed on separate threads. The logical processes exchange timestamped events
+ * through channels with a declared lookahead. The ConservativeSynchronizer executes them in windows in which no logical
+ * process can receive an event from another logical process; the OptimisticSynchronizer executes them speculatively with Time
+ * Warp, rolling back logical processes that receive an event in their past.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ */
+package nl.tudelft.simulation.dsol.simulators.parallel;
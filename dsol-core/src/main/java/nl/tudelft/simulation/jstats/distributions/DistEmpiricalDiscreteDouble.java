@@ -1,7 +1,11 @@
 package nl.tudelft.simulation.jstats.distributions;
 
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.jstats.distributions.empirical.AliasTable;
 import nl.tudelft.simulation.jstats.distributions.empirical.DiscreteEmpiricalDistribution;
 import nl.tudelft.simulation.jstats.distributions.empirical.DistributionEntry;
+import nl.tudelft.simulation.jstats.distributions.empirical.SamplingMethod;
 import nl.tudelft.simulation.jstats.streams.StreamInterface;
 
 /**
@@ -10,7 +14,9 @@ import nl.tudelft.simulation.jstats.streams.StreamInterface;
  * Note that interpolated is false for the EmpiricalDistribution to be used in this class, so the function in essence behaves as
  * a <b>discrete</b> distribution, albeit with double values as the outcome. The probability density function returns the
  * equivalent of the discrete distribution function; of course the real probability density function from the viewpoint of a
- * continuous distribution does not exist.
+ * continuous distribution does not exist. <br>
+ * Values are drawn in constant expected time with the sampling method of choice: the inverse transform using the guide table of
+ * the empirical distribution (the default, which draws the same values as earlier versions), or the alias method.
  * <p>
  * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -28,15 +34,45 @@ public class DistEmpiricalDiscreteDouble extends DistContinuous
     /** is the distribution grouped? */
     private final DiscreteEmpiricalDistribution empiricalDistribution;
 
+    /** the sampling method. */
+    private final SamplingMethod samplingMethod;
+
+    /** the values of the distribution, so a draw does not need to unbox. */
+    private final double[] values;
+
+    /** the alias table, or null when the inverse transform method is used. */
+    private final AliasTable aliasTable;
+
     /**
-     * constructs a new DistEmpirical.
+     * constructs a new DistEmpirical, which draws values with the inverse transform method.
      * @param stream StreamInterface; the stream to use
      * @param empiricalDistribution EmpiricalDistributionInterface; the cumulative distribution to use
      */
     public DistEmpiricalDiscreteDouble(final StreamInterface stream, final DiscreteEmpiricalDistribution empiricalDistribution)
+    {
+        this(stream, empiricalDistribution, SamplingMethod.INVERSE_TRANSFORM);
+    }
+
+    /**
+     * constructs a new DistEmpirical, which draws values with the given sampling method.
+     * @param stream StreamInterface; the stream to use
+     * @param empiricalDistribution EmpiricalDistributionInterface; the cumulative distribution to use
+     * @param samplingMethod SamplingMethod; the method to draw values with
+     * @throws NullPointerException when samplingMethod is null
+     */
+    public DistEmpiricalDiscreteDouble(final StreamInterface stream, final DiscreteEmpiricalDistribution empiricalDistribution,
+            final SamplingMethod samplingMethod)
     {
         super(stream);
+        Throw.whenNull(samplingMethod, "samplingMethod cannot be null");
         this.empiricalDistribution = empiricalDistribution;
+        this.samplingMethod = samplingMethod;
+        this.values = new double[empiricalDistribution.size()];
+        for (int i = 0; i < this.values.length; i++)
+        {
+            this.values[i] = empiricalDistribution.getValue(i).doubleValue();
+        }
+        this.aliasTable = samplingMethod == SamplingMethod.ALIAS ? new AliasTable(empiricalDistribution) : null;
     }
 
     /** {@inheritDoc} */
@@ -44,7 +80,20 @@ public class DistEmpiricalDiscreteDouble extends DistContinuous
     public double draw()
     {
         double u = this.stream.nextDouble();
-        return this.empiricalDistribution.getCeilingEntry(u).getValue().doubleValue();
+        if (this.aliasTable != null)
+        {
+            return this.values[this.aliasTable.sample(u)];
+        }
+        return this.values[this.empiricalDistribution.getCeilingIndex(u)];
+    }
+
+    /**
+     * Return the sampling method that is used to draw values.
+     * @return SamplingMethod; the sampling method that is used to draw values
+     */
+    public SamplingMethod getSamplingMethod()
+    {
+        return this.samplingMethod;
     }
 
     /** {@inheritDoc} */
@@ -2,12 +2,16 @@ package nl.tudelft.simulation.jstats.distributions;
 
 import org.djutils.exceptions.Throw;
 
+import nl.tudelft.simulation.jstats.distributions.empirical.AliasTable;
 import nl.tudelft.simulation.jstats.distributions.empirical.DiscreteEmpiricalDistribution;
 import nl.tudelft.simulation.jstats.distributions.empirical.DistributionEntry;
+import nl.tudelft.simulation.jstats.distributions.empirical.SamplingMethod;
 import nl.tudelft.simulation.jstats.streams.StreamInterface;
 
 /**
  * A discrete empirical distribution as defined on page 326 of Law &amp; Kelton, based on an EmpiricalDistribution object.
+ * Values are drawn in constant expected time with the sampling method of choice: the inverse transform using the guide table of
+ * the empirical distribution (the default, which draws the same values as earlier versions), or the alias method.
  * <p>
  * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -26,15 +30,39 @@ public class DistEmpiricalDiscreteLong extends DistDiscrete
     /** the empirical distribution. */
     private final DiscreteEmpiricalDistribution empiricalDistribution;
 
+    /** the sampling method. */
+    private final SamplingMethod samplingMethod;
+
+    /** the values of the distribution, so a draw does not need to unbox. */
+    private final long[] values;
+
+    /** the alias table, or null when the inverse transform method is used. */
+    private final AliasTable aliasTable;
+
     /**
-     * constructs a new DistEmpirical distribution.
+     * constructs a new DistEmpirical distribution, which draws values with the inverse transform method.
      * @param stream StreamInterface; the stream to use
      * @param empiricalDistribution EmpiricalDistributionInterface; the cumulative distribution to use
      * @throws IllegalArgumentException when the empirical distribution has non-integer values
      */
     public DistEmpiricalDiscreteLong(final StreamInterface stream, final DiscreteEmpiricalDistribution empiricalDistribution)
+    {
+        this(stream, empiricalDistribution, SamplingMethod.INVERSE_TRANSFORM);
+    }
+
+    /**
+     * constructs a new DistEmpirical distribution, which draws values with the given sampling method.
+     * @param stream StreamInterface; the stream to use
+     * @param empiricalDistribution EmpiricalDistributionInterface; the cumulative distribution to use
+     * @param samplingMethod SamplingMethod; the method to draw values with
+     * @throws IllegalArgumentException when the empirical distribution has non-integer values
+     * @throws NullPointerException when samplingMethod is null
+     */
+    public DistEmpiricalDiscreteLong(final StreamInterface stream, final DiscreteEmpiricalDistribution empiricalDistribution,
+            final SamplingMethod samplingMethod)
     {
         super(stream);
+        Throw.whenNull(samplingMethod, "samplingMethod cannot be null");
         // check that the values in the distribution are integer valued and we do not interpolate
         for (Number n : empiricalDistribution.getValues())
         {
@@ -42,6 +70,13 @@ public class DistEmpiricalDiscreteLong extends DistDiscrete
                     "empirical distribution can only contain integer or long values");
         }
         this.empiricalDistribution = empiricalDistribution;
+        this.samplingMethod = samplingMethod;
+        this.values = new long[empiricalDistribution.size()];
+        for (int i = 0; i < this.values.length; i++)
+        {
+            this.values[i] = empiricalDistribution.getValue(i).longValue();
+        }
+        this.aliasTable = samplingMethod == SamplingMethod.ALIAS ? new AliasTable(empiricalDistribution) : null;
     }
 
     /** {@inheritDoc} */
@@ -49,7 +84,20 @@ public class DistEmpiricalDiscreteLong extends DistDiscrete
     public long draw()
     {
         double u = this.stream.nextDouble();
-        return this.empiricalDistribution.getCeilingEntry(u).getValue().longValue();
+        if (this.aliasTable != null)
+        {
+            return this.values[this.aliasTable.sample(u)];
+        }
+        return this.values[this.empiricalDistribution.getCeilingIndex(u)];
+    }
+
+    /**
+     * Return the sampling method that is used to draw values.
+     * @return SamplingMethod; the sampling method that is used to draw values
+     */
+    public SamplingMethod getSamplingMethod()
+    {
+        return this.samplingMethod;
     }
 
     /** {@inheritDoc} */
@@ -74,12 +74,12 @@ public class DistErlang extends DistContinuous
         {
             // according to Law and Kelton, Simulation Modeling and Analysis
             // repeated drawing and composition is usually faster for k<=10
-            double product = 1.0;
+            double sum = 0.0;
             for (int i = 1; i <= this.k; i++)
             {
-                product = product * this.stream.nextDouble();
+                sum += ZigguratSampler.nextExponential(this.stream);
             }
-            return -this.scale * Math.log(product);
+            return this.scale * sum;
         }
         // and using the gamma distribution is faster for k>10
         return this.distGamma.draw();
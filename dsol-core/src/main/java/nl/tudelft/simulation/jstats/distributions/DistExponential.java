@@ -49,7 +49,7 @@ public class DistExponential extends DistContinuous
     @Override
     public double draw()
     {
-        return -this.mean * Math.log(this.stream.nextDouble());
+        return this.mean * ZigguratSampler.nextExponential(this.stream);
     }
 
     /** {@inheritDoc} */
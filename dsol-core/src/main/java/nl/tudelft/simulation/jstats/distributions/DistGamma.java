@@ -1,7 +1,6 @@
 package nl.tudelft.simulation.jstats.distributions;
 
 import org.djutils.exceptions.Throw;
-import org.djutils.logger.CategoryLogger;
 
 import nl.tudelft.simulation.jstats.math.ProbMath;
 import nl.tudelft.simulation.jstats.streams.StreamInterface;
@@ -32,6 +31,12 @@ public class DistGamma extends DistContinuous
     /** the scale parameter of the distribution, also often called &theta;. */
     private final double scale;
 
+    /** the constant d = a - 1/3 of the Marsaglia-Tsang method, where a = max(shape, shape + 1). */
+    private final double d;
+
+    /** the constant c = 1 / sqrt(9d) of the Marsaglia-Tsang method. */
+    private final double c;
+
     /**
      * constructs a new gamma distribution. The gamma distribution represents the time to complete some task, e.g. customer
      * service or machine repair. The parameters are not rate-related, but average-related, so the mean is shape*scale (or
@@ -47,87 +52,59 @@ public class DistGamma extends DistContinuous
         Throw.when(shape <= 0.0 || scale <= 0.0, IllegalArgumentException.class, "Error Gamma - shape <= 0.0 or scale <= 0.0");
         this.shape = shape;
         this.scale = scale;
+        this.d = (shape < 1.0 ? shape + 1.0 : shape) - 1.0 / 3.0;
+        this.c = 1.0 / Math.sqrt(9.0 * this.d);
     }
 
     /** {@inheritDoc} */
     @Override
     public double draw()
     {
-        // according to Law and Kelton, Simulation Modeling and Analysis, 1991
-        // pages 488-489
+        if (this.shape == 1.0)
+        {
+            // Gamma(1.0, scale) ~ exponential with mean = scale
+            return this.scale * ZigguratSampler.nextExponential(this.stream);
+        }
         if (this.shape < 1.0)
         {
-            double b = (Math.E + this.shape) / Math.E;
-            int counter = 0;
-            while (counter < 1000)
-            {
-                // step 1.
-                double p = b * this.stream.nextDouble();
-                if (p <= 1.0d)
-                {
-                    // step 2.
-                    double y = Math.pow(p, 1.0d / this.shape);
-                    double u2 = this.stream.nextDouble();
-                    if (u2 <= Math.exp(-y))
-                    {
-                        return this.scale * y;
-                    }
-                }
-                else
-                {
-                    // step 3.
-                    double y = -Math.log((b - p) / this.shape);
-                    double u2 = this.stream.nextDouble();
-                    if (u2 <= Math.pow(y, this.shape - 1.0d))
-                    {
-                        return this.scale * y;
-                    }
-                }
-                counter++;
-            }
-            CategoryLogger.always().info("Gamma distribution -- 1000 tries for alpha<1.0");
-            return 1.0d;
+            // Gamma(shape) = Gamma(shape + 1) * U^(1/shape), see Marsaglia and Tsang (2000), section 6
+            double u = this.stream.nextDouble();
+            return this.scale * drawMarsagliaTsang() * Math.exp(Math.log(u) / this.shape);
         }
-        else if (this.shape > 1.0)
+        return this.scale * drawMarsagliaTsang();
+    }
+
+    /**
+     * Draw a Gamma(a, 1) variate with a = max(shape, shape + 1) &gt;= 1, according to G. Marsaglia and W.W. Tsang, A Simple
+     * Method for Generating Gamma Variables, ACM Transactions on Mathematical Software 26(3), 2000, pp. 363-372. The method
+     * needs one normal and one uniform draw per trial, and accepts at least 95% of the trials, so no cap on the number of
+     * trials is needed.
+     * @return double; a Gamma(a, 1) variate
+     */
+    private double drawMarsagliaTsang()
+    {
+        while (true)
         {
-            // according to Law and Kelton, Simulation Modeling and
-            // Analysis, 1991, pages 488-489
-            double a = 1.0d / Math.sqrt(2.0d * this.shape - 1.0d);
-            double b = this.shape - Math.log(4.0d);
-            double q = this.shape + (1.0d / a);
-            double theta = 4.5d;
-            double d = 1.0d + Math.log(theta);
-            int counter = 0;
-            while (counter < 1000)
+            double x;
+            double v;
+            do
             {
-                // step 1.
-                double u1 = this.stream.nextDouble();
-                double u2 = this.stream.nextDouble();
-                // step 2.
-                double v = a * Math.log(u1 / (1.0d - u1));
-                double y = this.shape * Math.exp(v);
-                double z = u1 * u1 * u2;
-                double w = b + q * v - y;
-                // step 3.
-                if ((w + d - theta * z) >= 0.0d)
-                {
-                    return this.scale * y;
-                }
-                // step 4.
-                if (w > Math.log(z))
-                {
-                    return this.scale * y;
-                }
-                counter++;
+                x = ZigguratSampler.nextNormal(this.stream);
+                v = 1.0 + this.c * x;
+            }
+            while (v <= 0.0);
+            v = v * v * v;
+            double u = this.stream.nextDouble();
+            double x2 = x * x;
+            // squeeze test, avoiding the logarithms in most cases
+            if (u < 1.0 - 0.0331 * x2 * x2)
+            {
+                return this.d * v;
+            }
+            if (Math.log(u) < 0.5 * x2 + this.d * (1.0 - v + Math.log(v)))
+            {
+                return this.d * v;
             }
-            CategoryLogger.always().info("Gamma distribution -- 1000 tries for alpha>1.0");
-            return 1.0d;
-        }
-        else
-        // shape == 1.0
-        {
-            // Gamma(1.0, scale) ~ exponential with mean = scale
-            return -this.scale * Math.log(this.stream.nextDouble());
         }
     }
 
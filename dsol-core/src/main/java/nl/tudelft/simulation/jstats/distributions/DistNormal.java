@@ -31,10 +31,12 @@ public class DistNormal extends DistContinuous
     @SuppressWarnings("checkstyle:visibilitymodifier")
     public double sigma;
 
-    /** nextNextGaussian is a helper attribute. */
-    private double nextNextGaussian;
-
-    /** haveNextNextGaussian is a helper attribute. */
+    /**
+     * haveNextNextGaussian was the flag for the cached second value of the polar method. The ziggurat method does not cache
+     * values, so the flag is not used anymore; it is only kept for subclasses that still reset it.
+     * @deprecated the ziggurat method does not cache a second Gaussian value
+     */
+    @Deprecated
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected boolean haveNextNextGaussian;
 
@@ -93,29 +95,13 @@ public class DistNormal extends DistContinuous
     }
 
     /**
-     * Generates the next pseudorandom, Gaussian (normally) distributed double value, with mean 0.0 and standard deviation 1.0
-     * see section 3.4.1 of The Art of Computer Programming, Volume 2 by Donald Knuth.
+     * Generates the next pseudorandom, Gaussian (normally) distributed double value, with mean 0.0 and standard deviation 1.0,
+     * using the ziggurat method of Marsaglia and Tsang.
      * @return double the next Gaussian value
      */
-    protected synchronized double nextGaussian()
+    protected double nextGaussian()
     {
-        if (this.haveNextNextGaussian)
-        {
-            this.haveNextNextGaussian = false;
-            return this.nextNextGaussian;
-        }
-        double v1, v2, s;
-        do
-        {
-            v1 = 2 * this.stream.nextDouble() - 1; // between -1.0 and 1.0
-            v2 = 2 * this.stream.nextDouble() - 1; // between -1.0 and 1.0
-            s = v1 * v1 + v2 * v2;
-        }
-        while (s >= 1);
-        double norm = Math.sqrt(-2 * Math.log(s) / s);
-        this.nextNextGaussian = v2 * norm;
-        this.haveNextNextGaussian = true;
-        return v1 * norm;
+        return ZigguratSampler.nextNormal(this.stream);
     }
 
     /** {@inheritDoc} */
@@ -143,6 +129,7 @@ public class DistNormal extends DistContinuous
 
     /** {@inheritDoc} */
     @Override
+    @SuppressWarnings("deprecation")
     public void setStream(final StreamInterface stream)
     {
         super.setStream(stream);
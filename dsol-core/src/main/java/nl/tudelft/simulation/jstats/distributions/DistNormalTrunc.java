@@ -9,7 +9,10 @@ import nl.tudelft.simulation.jstats.streams.StreamInterface;
  * The Normal Truncated distribution. For more information on the truncated normal distribution see <a href=
  * "https://en.wikipedia.org/wiki/Truncated_normal_distribution">https://en.wikipedia.org/wiki/Truncated_normal_distribution</a>
  * <p>
- * This version of the normal distribution uses the numerically approached inverse cumulative distribution.
+ * This version of the normal distribution uses the numerically approached inverse cumulative distribution when the interval
+ * [min, max] has a low probability. When the interval contains at least half of the probability mass of the underlying normal
+ * distribution, values are drawn with the ziggurat method and rejected when outside the interval, which needs on average at
+ * most two ziggurat draws and avoids the costly inverse of the error function.
  * <p>
  * (c) copyright 2002-2021 <a href="http://www.simulation.tudelft.nl">Delft University of Technology </a>, the Netherlands. <br>
  * See for project information <a href="http://www.simulation.tudelft.nl"> www.simulation.tudelft.nl </a> <br>
@@ -22,6 +25,9 @@ public class DistNormalTrunc extends DistContinuous
     /** */
     private static final long serialVersionUID = 1L;
 
+    /** the minimum probability mass of the interval for which rejection sampling is used. */
+    private static final double REJECTION_THRESHOLD = 0.5;
+
     /** mu refers to the mean of the normal distribution. */
     private final double mu;
 
@@ -86,6 +92,17 @@ public class DistNormalTrunc extends DistContinuous
     @Override
     public double draw()
     {
+        if (this.cumulProbDiff >= REJECTION_THRESHOLD)
+        {
+            while (true)
+            {
+                double d = this.mu + this.sigma * ZigguratSampler.nextNormal(this.stream);
+                if (d >= this.min && d <= this.max)
+                {
+                    return d;
+                }
+            }
+        }
         double d =
                 getInverseCumulativeProbabilityNotTruncated(this.cumulProbMin + this.cumulProbDiff * this.stream.nextDouble());
         if (Double.isInfinite(d))
@@ -28,6 +28,19 @@ public abstract class AbstractEmpiricalDistribution implements EmpiricalDistribu
     /** the map from cumulative probabilities to values. */
     private final TreeMap<Double, Number> cumulativeProbabilityMap = new TreeMap<>();
 
+    /** the cumulative probabilities in ascending order, for index-based lookup. */
+    private final double[] cumulativeProbabilityArray;
+
+    /** the values in ascending order, for index-based lookup. */
+    private final Number[] valueArray;
+
+    /**
+     * The guide table of Chen and Asau for the inverse transform: guideTable[j] is the lowest index i for which
+     * cumulativeProbabilityArray[i] * n &gt;= j, where n is the number of entries. A lookup for probability u starts at
+     * guideTable[(int) (u * n)] and on average inspects less than two entries.
+     */
+    private final int[] guideTable;
+
     /**
      * Construct the empirical distribution based on two arrays of the same length, one with sorted values, and one with
      * corresponding sorted cumulative probabilities. This constructor assumes that the arrays have been properly cloned to
@@ -67,6 +80,52 @@ public abstract class AbstractEmpiricalDistribution implements EmpiricalDistribu
         {
             this.cumulativeProbabilityMap.put(cumulativeProbabilities[i], values[i]);
         }
+        this.cumulativeProbabilityArray = cumulativeProbabilities.clone();
+        this.valueArray = values.clone();
+
+        // the guide table is filled with the same floating point operation as the lookup, so rounding cannot skip an entry
+        int n = this.cumulativeProbabilityArray.length;
+        this.guideTable = new int[n];
+        int i = 0;
+        for (int j = 0; j < n; j++)
+        {
+            while ((int) (this.cumulativeProbabilityArray[i] * n) < j)
+            {
+                i++;
+            }
+            this.guideTable[j] = i;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getCeilingIndex(final double cumulativeProbability)
+    {
+        int n = this.cumulativeProbabilityArray.length;
+        if (cumulativeProbability > this.cumulativeProbabilityArray[n - 1])
+        {
+            return -1;
+        }
+        int i = cumulativeProbability <= 0.0 ? 0 : this.guideTable[Math.min((int) (cumulativeProbability * n), n - 1)];
+        while (this.cumulativeProbabilityArray[i] < cumulativeProbability)
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getCumulativeProbability(final int index)
+    {
+        return this.cumulativeProbabilityArray[index];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Number getValue(final int index)
+    {
+        return this.valueArray[index];
     }
 
     /** {@inheritDoc} */
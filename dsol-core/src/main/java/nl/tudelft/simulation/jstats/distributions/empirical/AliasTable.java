@@ -0,0 +1,158 @@
+package nl.tudelft.simulation.jstats.distributions.empirical;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * AliasTable implements the alias method of Walker for drawing an index from a discrete distribution in constant time, using
+ * the numerically stable table construction of Vose. The table divides the unit interval into n equal columns; column i
+ * returns index i when the fraction within the column is below probability[i], and index alias[i] otherwise. See M.D. Vose, A
+ * linear algorithm for generating random numbers with a given distribution, IEEE Transactions on Software Engineering 17(9),
+ * 1991, pp. 972-975.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class AliasTable implements Serializable
+{
+    /** */
+    private static final long serialVersionUID = 20221019L;
+
+    /** the probability to return the column index itself rather than its alias. */
+    private final double[] probability;
+
+    /** the alias index for each column. */
+    private final int[] alias;
+
+    /**
+     * Construct an alias table for the entries of an empirical distribution, where the probability of entry i is the
+     * difference between its cumulative probability and the cumulative probability of entry i - 1.
+     * @param empiricalDistribution EmpiricalDistributionInterface; the empirical distribution
+     * @throws NullPointerException when empiricalDistribution is null
+     */
+    public AliasTable(final EmpiricalDistributionInterface empiricalDistribution)
+    {
+        this(probabilities(empiricalDistribution));
+    }
+
+    /**
+     * Construct an alias table for the given probabilities. The probabilities do not have to add up to exactly 1.0; they are
+     * normalized by their sum.
+     * @param probabilities double[]; the probability of each index
+     * @throws NullPointerException when probabilities is null
+     * @throws IllegalArgumentException when probabilities is empty, when one of the probabilities is negative or NaN, or when
+     *             the probabilities add up to zero
+     */
+    public AliasTable(final double[] probabilities)
+    {
+        Throw.whenNull(probabilities, "probabilities cannot be null");
+        int n = probabilities.length;
+        Throw.when(n == 0, IllegalArgumentException.class, "probabilities cannot be empty");
+        double sum = 0.0;
+        for (double p : probabilities)
+        {
+            Throw.when(!(p >= 0.0), IllegalArgumentException.class, "probabilities cannot be negative or NaN");
+            sum += p;
+        }
+        Throw.when(sum <= 0.0, IllegalArgumentException.class, "probabilities cannot add up to zero");
+
+        this.probability = new double[n];
+        this.alias = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int nSmall = 0;
+        int nLarge = 0;
+        for (int i = 0; i < n; i++)
+        {
+            scaled[i] = probabilities[i] * n / sum;
+            if (scaled[i] < 1.0)
+            {
+                small[nSmall++] = i;
+            }
+            else
+            {
+                large[nLarge++] = i;
+            }
+        }
+        while (nSmall > 0 && nLarge > 0)
+        {
+            int s = small[--nSmall];
+            int l = large[--nLarge];
+            this.probability[s] = scaled[s];
+            this.alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0)
+            {
+                small[nSmall++] = l;
+            }
+            else
+            {
+                large[nLarge++] = l;
+            }
+        }
+        // what remains has a probability of 1 up to rounding errors
+        while (nLarge > 0)
+        {
+            int l = large[--nLarge];
+            this.probability[l] = 1.0;
+            this.alias[l] = l;
+        }
+        while (nSmall > 0)
+        {
+            int s = small[--nSmall];
+            this.probability[s] = 1.0;
+            this.alias[s] = s;
+        }
+    }
+
+    /**
+     * Compute the probabilities of the entries of an empirical distribution from the cumulative probabilities.
+     * @param empiricalDistribution EmpiricalDistributionInterface; the empirical distribution
+     * @return double[]; the probability of each entry
+     */
+    private static double[] probabilities(final EmpiricalDistributionInterface empiricalDistribution)
+    {
+        Throw.whenNull(empiricalDistribution, "empiricalDistribution cannot be null");
+        // the list is taken once, since getCumulativeProbability(i) can copy the list for each index
+        List<Double> cumulativeProbabilities = empiricalDistribution.getCumulativeProbabilities();
+        double[] probabilities = new double[cumulativeProbabilities.size()];
+        double previous = 0.0;
+        for (int i = 0; i < probabilities.length; i++)
+        {
+            double cumulativeProbability = cumulativeProbabilities.get(i);
+            probabilities[i] = cumulativeProbability - previous;
+            previous = cumulativeProbability;
+        }
+        return probabilities;
+    }
+
+    /**
+     * Return the index belonging to a Uniform(0, 1) number. The integer part of u * n selects the column, and the fractional
+     * part decides between the column index and its alias, so one uniform number suffices per draw.
+     * @param u double; a number in the interval [0, 1)
+     * @return int; the index belonging to u
+     */
+    public int sample(final double u)
+    {
+        double x = u * this.probability.length;
+        int i = Math.min((int) x, this.probability.length - 1);
+        return (x - i) < this.probability[i] ? i : this.alias[i];
+    }
+
+    /**
+     * Return the number of entries in the table.
+     * @return int; the number of entries in the table
+     */
+    public int size()
+    {
+        return this.probability.length;
+    }
+
+}
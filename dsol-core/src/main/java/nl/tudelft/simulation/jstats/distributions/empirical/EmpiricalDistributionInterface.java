@@ -98,6 +98,60 @@ public interface EmpiricalDistributionInterface extends Serializable
      */
     DistributionEntry getCeilingEntryForValue(Number value);
 
+    /**
+     * Return the index of the entry with the lowest cumulative probability above or at the given probability, or -1 when the
+     * cumulative probability is larger than the highest cumulative probability (1.0). This is the index-based equivalent of
+     * getCeilingEntry, and is meant for drawing values without creating an entry object. The default implementation does a
+     * binary search in getCumulativeProbabilities(); implementations should override it with a lookup table that makes the
+     * expected cost of the method independent of the size of the distribution, as AbstractEmpiricalDistribution does.
+     * @param cumulativeProbability double; the cumulative probability to look up
+     * @return int; the index of the first entry with a cumulative probability above or at the provided cumulative probability,
+     *         or -1 when the cumulative probability is larger than the highest cumulative probability (1.0)
+     */
+    default int getCeilingIndex(final double cumulativeProbability)
+    {
+        List<Double> cumulativeProbabilities = getCumulativeProbabilities();
+        int low = 0;
+        int high = cumulativeProbabilities.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (cumulativeProbabilities.get(mid) < cumulativeProbability)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low == cumulativeProbabilities.size() ? -1 : low;
+    }
+
+    /**
+     * Return the cumulative probability of the entry with the given index. The default implementation takes it from
+     * getCumulativeProbabilities(); implementations that store the entries in an array should override it.
+     * @param index int; the index of the entry, between 0 and size() - 1
+     * @return double; the cumulative probability of the entry with the given index
+     * @throws IndexOutOfBoundsException when index &lt; 0 or index &gt;= size()
+     */
+    default double getCumulativeProbability(final int index)
+    {
+        return getCumulativeProbabilities().get(index);
+    }
+
+    /**
+     * Return the value of the entry with the given index. The default implementation takes it from getValues();
+     * implementations that store the entries in an array should override it.
+     * @param index int; the index of the entry, between 0 and size() - 1
+     * @return Number; the value of the entry with the given index
+     * @throws IndexOutOfBoundsException when index &lt; 0 or index &gt;= size()
+     */
+    default Number getValue(final int index)
+    {
+        return getValues().get(index);
+    }
+
     /**
      * Return the highest value that this empirical distribution can return.
      * @return Number; the highest value that this empirical distribution can return
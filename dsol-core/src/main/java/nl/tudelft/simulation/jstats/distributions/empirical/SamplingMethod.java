@@ -0,0 +1,29 @@
+package nl.tudelft.simulation.jstats.distributions.empirical;
+
+/**
+ * SamplingMethod indicates how a value is drawn from a discrete empirical distribution. Both methods take exactly one
+ * Uniform(0, 1) draw from the stream per value, and both have an expected cost that does not depend on the number of entries in
+ * the distribution.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public enum SamplingMethod
+{
+    /**
+     * The inverse transform method, using the guide table of the empirical distribution. A given uniform number always maps on
+     * the same value as the lookup with getCeilingEntry, so the drawn sequence is the same as for earlier versions of DSOL.
+     */
+    INVERSE_TRANSFORM,
+
+    /**
+     * The alias method of Walker, with the table construction of Vose. Each draw inspects one or two table entries, also for
+     * distributions where a few values carry most of the probability mass. The mapping from uniform number to value differs from
+     * the inverse transform, so the drawn sequence differs from the sequence of the inverse transform method.
+     */
+    ALIAS;
+}
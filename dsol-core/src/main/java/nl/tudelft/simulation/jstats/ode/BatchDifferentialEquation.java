@@ -0,0 +1,326 @@
+package nl.tudelft.simulation.jstats.ode;
+
+import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegratorType;
+
+/**
+ * The BatchDifferentialEquation integrates a number of independent instances of the same differential equation together, as
+ * one system whose state is stored in structure-of-arrays form: variable v of instance i is stored at index v * size + i. The
+ * integrators work on the complete state array in tight loops, and the derivative is computed by the
+ * BatchDifferentialEquationInterface for ranges of instances, so there is no dispatch per instance. Optionally, the evaluation
+ * of the derivative is split over ranges of instances that are computed in parallel in the common ForkJoinPool. <br>
+ * The values of one instance can be retrieved with y(x, instance) or getValue(instance, variable). The instances share the
+ * step size; an adaptive integrator chooses the step size for the instance that needs the smallest step. Implicit integrators
+ * treat the batch as one system with a dense Jacobian, and are therefore only suited for small batches. <br>
+ * In a DEVDESS model, the batch replaces the individual equations, and is brought to the simulator time with y(x), e.g., from
+ * a listener for the TIME_CHANGED_EVENT of the simulator.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class BatchDifferentialEquation extends DifferentialEquation
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the equation that is integrated for all instances. */
+    private final BatchDifferentialEquationInterface equation;
+
+    /** the number of instances. */
+    private final int size;
+
+    /** the number of variables per instance. */
+    private final int numberOfVariables;
+
+    /** whether the derivative is computed in parallel. */
+    private boolean parallel = false;
+
+    /** the minimum number of instances per parallel task. */
+    private int chunkSize = 1024;
+
+    /**
+     * constructs a new BatchDifferentialEquation.
+     * @param stepSize double; the stepSize to use.
+     * @param integratorType NumericalIntegratorType; the integrator to use.
+     * @param equation BatchDifferentialEquationInterface; the equation to integrate for all instances
+     * @param size int; the number of instances
+     * @throws NullPointerException when equation is null
+     * @throws IllegalArgumentException when size &lt;= 0, or when the equation has no variables
+     */
+    public BatchDifferentialEquation(final double stepSize, final NumericalIntegratorType integratorType,
+            final BatchDifferentialEquationInterface equation, final int size)
+    {
+        super(stepSize, integratorType);
+        Throw.whenNull(equation, "equation cannot be null");
+        Throw.when(size <= 0, IllegalArgumentException.class, "size should be > 0");
+        Throw.when(equation.getNumberOfVariables() <= 0, IllegalArgumentException.class, "numberOfVariables should be > 0");
+        this.equation = equation;
+        this.size = size;
+        this.numberOfVariables = equation.getNumberOfVariables();
+    }
+
+    /**
+     * initializes the differential equation with the state of all instances in structure-of-arrays form.
+     * @param x0 double; the initial x-value
+     * @param y0 double[]; the initial y-values, where variable v of instance i is stored at index v * size + i
+     * @throws IllegalArgumentException when the length of y0 is not size * numberOfVariables
+     */
+    @Override
+    public void initialize(final double x0, final double[] y0)
+    {
+        Throw.when(y0.length != this.size * this.numberOfVariables, IllegalArgumentException.class,
+                "length of y0 should be %d", this.size * this.numberOfVariables);
+        super.initialize(x0, y0);
+    }
+
+    /**
+     * initializes the differential equation with the state per instance.
+     * @param x0 double; the initial x-value
+     * @param y0 double[][]; the initial y-values, where y0[i][v] is the value of variable v of instance i
+     * @throws IllegalArgumentException when y0 does not contain size arrays with numberOfVariables values
+     */
+    public void initialize(final double x0, final double[][] y0)
+    {
+        Throw.when(y0.length != this.size, IllegalArgumentException.class, "y0 should contain %d instances", this.size);
+        double[] y = new double[this.size * this.numberOfVariables];
+        for (int i = 0; i < this.size; i++)
+        {
+            Throw.when(y0[i].length != this.numberOfVariables, IllegalArgumentException.class,
+                    "instance %d should have %d variables", i, this.numberOfVariables);
+            for (int v = 0; v < this.numberOfVariables; v++)
+            {
+                y[v * this.size + i] = y0[i][v];
+            }
+        }
+        super.initialize(x0, y);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] dy(final double x, final double[] y)
+    {
+        double[] dy = new double[y.length];
+        dy(x, y, dy);
+        return dy;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void dy(final double x, final double[] y, final double[] dy)
+    {
+        if (this.parallel && this.size > this.chunkSize)
+        {
+            ForkJoinPool.commonPool().invoke(new DyTask(x, y, dy, 0, this.size));
+        }
+        else
+        {
+            this.equation.dy(x, y, dy, this.size, 0, this.size);
+        }
+    }
+
+    /**
+     * Return the values of the variables of one instance at x. The whole batch is integrated to x.
+     * @param x double; the x-value
+     * @param instance int; the instance
+     * @return double[]; the values of the variables of the instance at x
+     * @throws IndexOutOfBoundsException when instance is not between 0 and size - 1
+     */
+    public double[] y(final double x, final int instance)
+    {
+        checkInstance(instance);
+        double[] all = y(x);
+        double[] result = new double[this.numberOfVariables];
+        for (int v = 0; v < this.numberOfVariables; v++)
+        {
+            result[v] = all[v * this.size + instance];
+        }
+        return result;
+    }
+
+    /**
+     * Return the last computed value of a variable of one instance, without integrating.
+     * @param instance int; the instance
+     * @param variable int; the variable
+     * @return double; the last computed value of the variable of the instance
+     * @throws IndexOutOfBoundsException when instance or variable is out of range
+     */
+    public double getValue(final int instance, final int variable)
+    {
+        checkInstance(instance);
+        checkVariable(variable);
+        return this.lastY[variable * this.size + instance];
+    }
+
+    /**
+     * Change the value of a variable of one instance at the last computed x-value, e.g., as the result of a discrete event.
+     * Integration continues from the changed state; integrators that keep information about earlier steps start again.
+     * @param instance int; the instance
+     * @param variable int; the variable
+     * @param value double; the new value of the variable of the instance
+     * @throws IndexOutOfBoundsException when instance or variable is out of range
+     */
+    public void setValue(final int instance, final int variable, final double value)
+    {
+        checkInstance(instance);
+        checkVariable(variable);
+        double[] y = this.lastY.clone();
+        y[variable * this.size + instance] = value;
+        initialize(this.lastX, y);
+    }
+
+    /**
+     * Check whether the instance index is valid.
+     * @param instance int; the instance
+     * @throws IndexOutOfBoundsException when instance is not between 0 and size - 1
+     */
+    private void checkInstance(final int instance)
+    {
+        if (instance < 0 || instance >= this.size)
+        {
+            throw new IndexOutOfBoundsException("instance " + instance + " not between 0 and " + (this.size - 1));
+        }
+    }
+
+    /**
+     * Check whether the variable index is valid.
+     * @param variable int; the variable
+     * @throws IndexOutOfBoundsException when variable is not between 0 and numberOfVariables - 1
+     */
+    private void checkVariable(final int variable)
+    {
+        if (variable < 0 || variable >= this.numberOfVariables)
+        {
+            throw new IndexOutOfBoundsException(
+                    "variable " + variable + " not between 0 and " + (this.numberOfVariables - 1));
+        }
+    }
+
+    /**
+     * Set whether the derivative is computed in parallel, in tasks of at least chunkSize instances.
+     * @param parallel boolean; whether the derivative is computed in parallel
+     * @param chunkSize int; the minimum number of instances per parallel task
+     * @throws IllegalArgumentException when chunkSize &lt;= 0
+     */
+    public void setParallel(final boolean parallel, final int chunkSize)
+    {
+        Throw.when(chunkSize <= 0, IllegalArgumentException.class, "chunkSize should be > 0");
+        this.parallel = parallel;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return parallel boolean; whether the derivative is computed in parallel
+     */
+    public boolean isParallel()
+    {
+        return this.parallel;
+    }
+
+    /**
+     * @return chunkSize int; the minimum number of instances per parallel task
+     */
+    public int getChunkSize()
+    {
+        return this.chunkSize;
+    }
+
+    /**
+     * @return size int; the number of instances
+     */
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return numberOfVariables int; the number of variables per instance
+     */
+    public int getNumberOfVariables()
+    {
+        return this.numberOfVariables;
+    }
+
+    /**
+     * @return equation BatchDifferentialEquationInterface; the equation that is integrated for all instances
+     */
+    public BatchDifferentialEquationInterface getEquation()
+    {
+        return this.equation;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Serializable getSourceId()
+    {
+        return "BatchDifferentialEquation";
+    }
+
+    /**
+     * The task that computes the derivative for a range of instances, splitting the range until it is at most chunkSize.
+     */
+    private class DyTask extends RecursiveAction
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the x-value. */
+        private final double x;
+
+        /** the y-values of all instances. */
+        private final double[] y;
+
+        /** the array to store dy/dx in. */
+        private final double[] dy;
+
+        /** the first instance. */
+        private final int from;
+
+        /** the instance after the last instance. */
+        private final int to;
+
+        /**
+         * Create a task for the instances from..to-1.
+         * @param x double; the x-value
+         * @param y double[]; the y-values of all instances
+         * @param dy double[]; the array to store dy/dx in
+         * @param from int; the first instance
+         * @param to int; the instance after the last instance
+         */
+        DyTask(final double x, final double[] y, final double[] dy, final int from, final int to)
+        {
+            this.x = x;
+            this.y = y;
+            this.dy = dy;
+            this.from = from;
+            this.to = to;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void compute()
+        {
+            int batchSize = BatchDifferentialEquation.this.size;
+            if (this.to - this.from <= BatchDifferentialEquation.this.chunkSize)
+            {
+                BatchDifferentialEquation.this.equation.dy(this.x, this.y, this.dy, batchSize, this.from, this.to);
+            }
+            else
+            {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new DyTask(this.x, this.y, this.dy, this.from, middle),
+                        new DyTask(this.x, this.y, this.dy, middle, this.to));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package nl.tudelft.simulation.jstats.ode;
+
+/**
+ * The BatchDifferentialEquationInterface describes one differential equation that is integrated for a number of independent
+ * instances at the same time, e.g., one per vehicle or tank, in a BatchDifferentialEquation. The state of all instances is
+ * stored in one array in structure-of-arrays form: variable v of instance i is stored at index v * size + i, so the values of
+ * one variable for all instances are contiguous, and dy can be computed in a tight loop over the instances.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public interface BatchDifferentialEquationInterface
+{
+    /**
+     * Return the number of variables of one instance of the equation.
+     * @return int; the number of variables of one instance of the equation
+     */
+    int getNumberOfVariables();
+
+    /**
+     * computes dy as a function of x,y for the instances from (inclusive) to (exclusive), and stores the result in dy. Variable
+     * v of instance i is found at index v * size + i in y and in dy. When the batch is integrated in parallel, the method is
+     * called concurrently for disjoint ranges of instances, so it should only write the entries of its own instances.
+     * @param x double; the x-value
+     * @param y double[]; the y-values of all instances
+     * @param dy double[]; the array in which dy/dx is stored for the instances from..to-1
+     * @param size int; the number of instances in the batch
+     * @param from int; the first instance to compute
+     * @param to int; the instance after the last instance to compute
+     */
+    void dy(double x, double[] y, double[] dy, int size, int from, int to);
+}
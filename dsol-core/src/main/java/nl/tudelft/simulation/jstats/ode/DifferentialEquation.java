@@ -2,11 +2,18 @@ package nl.tudelft.simulation.jstats.ode;
 
 import org.djutils.event.EventProducer;
 
+import nl.tudelft.simulation.jstats.ode.integrators.AdaptiveNumericalIntegrator;
 import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegrator;
 import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegratorType;
 
 /**
- * The DifferentialEquation is the abstract basis for the DESS formalism.
+ * The DifferentialEquation is the abstract basis for the DESS formalism. With a fixed step integrator, y(x) is computed by
+ * taking steps of stepSize and interpolating linearly in the last step. The next call of y(x) continues from the end of that
+ * step rather than from the interpolated value, so the integrator stays on its grid, and a multistep integrator keeps the
+ * values of its earlier steps. With an AdaptiveNumericalIntegrator, the integrator
+ * chooses its own step size to meet its error tolerance, and y(x) is interpolated on the dense output of the step that covers
+ * x, so values within the last step are available without integrating again. initialize() resets the integrator, so a
+ * multistep integrator does not use the values of its steps before the new initial value.
  * <p>
  * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -37,6 +44,15 @@ public abstract class DifferentialEquation extends EventProducer implements Diff
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected double lastX = Double.NaN;
 
+    /** the workspace for the value at the end of the final step. */
+    private double[] nextValue = null;
+
+    /** the x-value at the start of the final step of the last integration, or NaN when there is no final step. */
+    private double finalStepX = Double.NaN;
+
+    /** the value at the start of the final step of the last integration. */
+    private double[] finalStepY = null;
+
     /**
      * constructs a new DifferentialEquation with a user-specified integrator.
      * @param stepSize double; the stepSize to use.
@@ -55,6 +71,8 @@ public abstract class DifferentialEquation extends EventProducer implements Diff
     {
         this.lastX = x0;
         this.lastY = y0;
+        this.finalStepX = Double.NaN;
+        this.integrator.reset();
     }
 
     /** {@inheritDoc} */
@@ -81,21 +99,47 @@ public abstract class DifferentialEquation extends EventProducer implements Diff
     }
 
     /**
-     * integrates Y.
+     * integrates Y. When initialX lies in the final step of the last integration, initialY is assumed to be the value that was
+     * interpolated for initialX, and the integration continues from the end of that step.
      * @param x double; the x-value
      * @param initialX double; the initial X value, non-final (will be updated)
-     * @param initialY double[]; the initial Y value, non-final (will be updated)
+     * @param initialY double[]; the initial Y value, which is not changed
      * @return the new Y value
      */
     @SuppressWarnings("checkstyle:finalparameters")
-    protected double[] integrateY(final double x, /* non-final */ double initialX, /* non-final */ double[] initialY)
+    protected double[] integrateY(final double x, /* non-final */ double initialX, final double[] initialY)
     {
-        // we request the new value from the integrator.
+        if (this.integrator instanceof AdaptiveNumericalIntegrator)
+        {
+            return integrateAdaptive(x, initialX, initialY);
+        }
+
+        // we request the new value from the integrator, and integrate in place in a copy of initialY.
+        double[] y;
+        double start = (initialX - this.finalStepX) / this.stepSize;
+        if (start >= 0.0 && start <= 1.0)
+        {
+            // initialX lies in the final step of the last integration: continue on the grid of the integrator
+            if ((x - this.finalStepX) / this.stepSize <= 1.0)
+            {
+                y = new double[this.nextValue.length];
+                interpolateFinalStep(x, y);
+                this.lastX = x;
+                this.lastY = y;
+                return y;
+            }
+            initialX = this.finalStepX + this.stepSize;
+            y = this.nextValue.clone();
+        }
+        else
+        {
+            y = initialY.clone();
+        }
         if (this.stepSize > 0)
         {
             while (x > initialX + this.stepSize)
             {
-                initialY = this.integrator.next(initialX, initialY); // XXX: this process can adapt the stepSize (!)
+                this.integrator.next(initialX, y, y);
                 initialX = initialX + this.stepSize;
             }
         }
@@ -103,21 +147,63 @@ public abstract class DifferentialEquation extends EventProducer implements Diff
         {
             while (x < initialX + this.stepSize)
             {
-                initialY = this.integrator.next(initialX, initialY); // XXX: this process can adapt the stepSize (!)
+                this.integrator.next(initialX, y, y);
                 initialX = initialX + this.stepSize;
             }
         }
 
-        // We are in our final step. // XXX don't understand
-        double[] nextValue = this.integrator.next(initialX, initialY);
-        double ratio = (x - initialX) / this.stepSize;
-        for (int i = 0; i < initialY.length; i++)
+        // We are in our final step, and interpolate linearly between initialX and initialX + stepSize.
+        if (this.nextValue == null || this.nextValue.length != y.length)
+        {
+            this.nextValue = new double[y.length];
+        }
+        this.integrator.next(initialX, y, this.nextValue);
+        if (this.finalStepY == null || this.finalStepY.length != y.length)
+        {
+            this.finalStepY = new double[y.length];
+        }
+        System.arraycopy(y, 0, this.finalStepY, 0, y.length);
+        this.finalStepX = initialX;
+        interpolateFinalStep(x, y);
+        this.lastX = x;
+        this.lastY = y;
+        return y;
+    }
+
+    /**
+     * Interpolate linearly between the start and the end of the final step of the last integration.
+     * @param x double; the x-value, which should lie in the final step
+     * @param y double[]; the array to store the interpolated value in
+     */
+    private void interpolateFinalStep(final double x, final double[] y)
+    {
+        double ratio = (x - this.finalStepX) / this.stepSize;
+        for (int i = 0; i < y.length; i++)
+        {
+            y[i] = this.finalStepY[i] + ratio * (this.nextValue[i] - this.finalStepY[i]);
+        }
+    }
+
+    /**
+     * integrates Y with an adaptive integrator. When the last step of the integrator does not contain initialX, e.g., after
+     * initialization, the integrator is started in (initialX, initialY). Otherwise, the integrator continues from the end of
+     * its last step, and initialY is assumed to be the value that it computed earlier for initialX.
+     * @param x double; the x-value
+     * @param initialX double; the initial X value
+     * @param initialY double[]; the initial Y value
+     * @return the new Y value
+     */
+    protected double[] integrateAdaptive(final double x, final double initialX, final double[] initialY)
+    {
+        AdaptiveNumericalIntegrator adaptive = (AdaptiveNumericalIntegrator) this.integrator;
+        if (!adaptive.covers(initialX))
         {
-            initialY[i] = initialY[i] + ratio * (nextValue[i] - initialY[i]);
+            adaptive.initialize(initialX, initialY);
         }
+        adaptive.advance(x);
         this.lastX = x;
-        this.lastY = initialY;
-        return initialY;
+        this.lastY = adaptive.interpolate(x);
+        return this.lastY;
     }
 
     /**
@@ -136,4 +222,15 @@ public abstract class DifferentialEquation extends EventProducer implements Diff
         this.integrator = integrator;
     }
 
+    /**
+     * Replace the integrator by a new integrator of the given type, with the step size of this equation. Integration continues
+     * from the last computed value.
+     * @param integratorType NumericalIntegratorType; the type of integrator to use
+     */
+    public void setIntegrator(final NumericalIntegratorType integratorType)
+    {
+        this.integrator = integratorType.getInstance(this.stepSize, this);
+        this.finalStepX = Double.NaN;
+    }
+
 }
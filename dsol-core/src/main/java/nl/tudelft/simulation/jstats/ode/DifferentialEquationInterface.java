@@ -35,4 +35,19 @@ public interface DifferentialEquationInterface
      * @return dy/dx as a function of x,y
      */
     double[] dy(double x, double[] y);
+
+    /**
+     * computes dy as a function of x,y, and stores the result in dy, which has the same length as y. The numerical integrators
+     * only call this method, so equations with many variables can avoid creating arrays during integration by overriding it.
+     * The default implementation calls dy(x, y) and copies the result. An equation that overrides this method can implement
+     * dy(x, y) by calling this method with a new array.
+     * @param x double; the x-value
+     * @param y double[]; the y-value
+     * @param dy double[]; the array in which dy/dx as a function of x,y is stored
+     */
+    default void dy(final double x, final double[] y, final double[] dy)
+    {
+        double[] result = dy(x, y);
+        System.arraycopy(result, 0, dy, 0, result.length);
+    }
 }
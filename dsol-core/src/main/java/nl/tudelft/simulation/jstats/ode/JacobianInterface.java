@@ -0,0 +1,26 @@
+package nl.tudelft.simulation.jstats.ode;
+
+/**
+ * The JacobianInterface can be implemented by a differential equation that can compute its Jacobian matrix df/dy analytically.
+ * The implicit integrators use the analytical Jacobian when the equation implements this interface, and approximate the
+ * Jacobian with finite differences of dy(x, y) otherwise.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public interface JacobianInterface
+{
+    /**
+     * computes the Jacobian matrix of dy(x, y) with respect to y, and stores it in dfdy, where dfdy[i][j] is the partial
+     * derivative of dy[i] to y[j].
+     * @param x double; the x-value
+     * @param y double[]; the y-value
+     * @param dfdy double[][]; the square matrix in which the Jacobian is stored, with the same size as y
+     */
+    void jacobian(double x, double[] y, double[][] dfdy);
+}
@@ -47,15 +47,32 @@ public class Adams extends CachingNumericalIntegrator
     @Override
     public double[] next(final double x)
     {
-        double[] y0 = getY(0);
-        double[] dy0 = getDY(0);
-        double[] dy1 = getDY(1);
-        double[] dy2 = getDY(2);
-        double[] dy3 = getDY(3);
-        double[] sum = add(multiply(-9, dy3), multiply(37, dy2), multiply(-59, dy1), multiply(55, dy0));
-        sum = multiply(this.stepSize / 24.0, sum);
-        double[] p = add(y0, sum);
-        sum = add(dy2, multiply(-5, dy1), multiply(19, dy0), multiply(9, this.equation.dy(x + this.stepSize, p)));
-        return add(y0, multiply(this.stepSize / 24.0, sum));
+        double[] yNext = new double[getY(0).length];
+        nextFromCache(x, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void nextFromCache(final double x, final double[] yNext)
+    {
+        double[] y0 = cachedY(0);
+        double[] dy0 = cachedDY(0);
+        double[] dy1 = cachedDY(1);
+        double[] dy2 = cachedDY(2);
+        double[] dy3 = cachedDY(3);
+        double[][] w = getWorkspace(2, y0.length);
+        double[] p = w[0];
+        double[] dp = w[1];
+        double h24 = this.stepSize / 24.0;
+        for (int i = 0; i < y0.length; i++)
+        {
+            p[i] = y0[i] + h24 * (-9 * dy3[i] + 37 * dy2[i] + -59 * dy1[i] + 55 * dy0[i]);
+        }
+        this.equation.dy(x + this.stepSize, p, dp);
+        for (int i = 0; i < y0.length; i++)
+        {
+            yNext[i] = y0[i] + h24 * (dy2[i] + -5 * dy1[i] + 19 * dy0[i] + 9 * dp[i]);
+        }
     }
 }
@@ -0,0 +1,463 @@
+package nl.tudelft.simulation.jstats.ode.integrators;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.jstats.ode.DifferentialEquationInterface;
+import nl.tudelft.simulation.language.DSOLRuntimeException;
+
+/**
+ * The AdaptiveNumericalIntegrator is the basis for integrators with an embedded error estimate that adapt their step size to
+ * keep the local error within a given tolerance. The integrator keeps the last accepted step, from stepStart to stepEnd, as a
+ * cubic Hermite interpolant (dense output) based on y and y' at both ends of the step. Values of y anywhere within the last
+ * step can therefore be retrieved with interpolate(x) without integrating again, and the integrator can take steps that are
+ * much larger than the interval at which y is requested. <br>
+ * The step size that is passed in the constructor is used as the first trial step size, and as the fixed interval over which
+ * the next(x, y) method integrates, so the integrator can also be used in the same way as the fixed step integrators.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public abstract class AdaptiveNumericalIntegrator extends NumericalIntegrator
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the safety factor for the new step size. */
+    private static final double SAFETY = 0.9;
+
+    /** the minimum factor by which the step size can shrink in one step. */
+    private static final double MIN_FACTOR = 0.2;
+
+    /** the maximum factor by which the step size can grow in one step. */
+    private static final double MAX_FACTOR = 5.0;
+
+    /** the relative tolerance for the local error. */
+    private double relativeTolerance = 1.0E-6;
+
+    /** the absolute tolerance for the local error. */
+    private double absoluteTolerance = 1.0E-9;
+
+    /** the minimum absolute step size; when the step has to become smaller, integration fails. */
+    private double minStepSize = 0.0;
+
+    /** the maximum absolute step size. */
+    private double maxStepSize = Double.POSITIVE_INFINITY;
+
+    /** the step size to try in the next step; has the sign of the integration direction. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected double nextStepSize;
+
+    /** the x-value at the start of the last accepted step, NaN when the integrator has not been initialized. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected double stepStart = Double.NaN;
+
+    /** the x-value at the end of the last accepted step, NaN when the integrator has not been initialized. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected double stepEnd = Double.NaN;
+
+    /** y at the start of the last accepted step. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected double[] yStart;
+
+    /** y' at the start of the last accepted step. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected double[] dyStart;
+
+    /** y at the end of the last accepted step. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected double[] yEnd;
+
+    /** y' at the end of the last accepted step. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected double[] dyEnd;
+
+    /** the workspace for the y-value of a trial step. */
+    private double[] yTrial;
+
+    /** the workspace for y' at the end of a trial step. */
+    private double[] dyTrial;
+
+    /** the number of accepted steps since the last initialization. */
+    private long acceptedSteps = 0;
+
+    /** the number of rejected steps since the last initialization. */
+    private long rejectedSteps = 0;
+
+    /**
+     * constructs a new AdaptiveNumericalIntegrator.
+     * @param stepSize double; the initial step size, which also determines the direction of integration
+     * @param equation DifferentialEquationInterface; the differentialEquation
+     */
+    public AdaptiveNumericalIntegrator(final double stepSize, final DifferentialEquationInterface equation)
+    {
+        super(stepSize, equation);
+        this.nextStepSize = stepSize;
+    }
+
+    /**
+     * Carry out one trial step of size h from (x, y). The method fills yNew with the new value of y, dyNew with y' at (x + h,
+     * yNew), and super.error with the estimate of the local error.
+     * @param x double; the x-value at the start of the step
+     * @param y double[]; the y-value at the start of the step
+     * @param dy double[]; y' at the start of the step
+     * @param h double; the step size
+     * @param yNew double[]; the array to store the new y-value in
+     * @param dyNew double[]; the array to store y' at the end of the step in
+     */
+    protected abstract void trialStep(double x, double[] y, double[] dy, double h, double[] yNew, double[] dyNew);
+
+    /**
+     * Return the order of the error estimate, i.e., the lowest order of the embedded pair, used to scale the step size.
+     * @return int; the order of the error estimate
+     */
+    protected abstract int getErrorOrder();
+
+    /**
+     * Start integration in (x, y), and clear the dense output of earlier steps.
+     * @param x double; the start value of x
+     * @param y double[]; the value of y in x
+     */
+    public void initialize(final double x, final double[] y)
+    {
+        int n = y.length;
+        if (this.yEnd == null || this.yEnd.length != n)
+        {
+            this.yStart = new double[n];
+            this.yEnd = new double[n];
+            this.dyStart = new double[n];
+            this.dyEnd = new double[n];
+            this.yTrial = new double[n];
+            this.dyTrial = new double[n];
+        }
+        this.stepStart = x;
+        this.stepEnd = x;
+        System.arraycopy(y, 0, this.yStart, 0, n);
+        System.arraycopy(y, 0, this.yEnd, 0, n);
+        this.equation.dy(x, this.yStart, this.dyStart);
+        System.arraycopy(this.dyStart, 0, this.dyEnd, 0, n);
+        this.acceptedSteps = 0;
+        this.rejectedSteps = 0;
+    }
+
+    /**
+     * Clear the state of the integrator, e.g., after a discontinuous change of the equation. The integrator has to be
+     * initialized again before it can be used for step() or advance().
+     */
+    @Override
+    public void reset()
+    {
+        this.stepStart = Double.NaN;
+        this.stepEnd = Double.NaN;
+    }
+
+    /**
+     * Return whether the integrator has been initialized with a start value.
+     * @return boolean; whether the integrator has been initialized with a start value
+     */
+    public boolean isInitialized()
+    {
+        return !Double.isNaN(this.stepEnd);
+    }
+
+    /**
+     * Return whether x lies within the last accepted step, so y(x) can be computed with interpolate(x).
+     * @param x double; the x-value to test
+     * @return boolean; whether x lies within the last accepted step
+     */
+    public boolean covers(final double x)
+    {
+        return isInitialized() && (x - this.stepStart) * (x - this.stepEnd) <= 0.0;
+    }
+
+    /**
+     * Carry out one accepted step, adapting the step size until the local error is within the tolerance. The step does not go
+     * beyond the limit; use Double.POSITIVE_INFINITY or Double.NEGATIVE_INFINITY for no limit.
+     * @param limit double; the x-value that the step may not pass
+     * @return double; the x-value at the end of the step
+     * @throws DSOLRuntimeException when the integrator has not been initialized, or when the step size would have to become
+     *             smaller than the minimum step size
+     */
+    public double step(final double limit)
+    {
+        Throw.when(!isInitialized(), DSOLRuntimeException.class, "adaptive integrator not initialized");
+        double x = this.stepEnd;
+        double direction = Math.signum(this.stepSize);
+        while (true)
+        {
+            double proposed = direction * Math.min(Math.abs(this.nextStepSize), this.maxStepSize);
+            double h = proposed;
+            boolean clamped = false;
+            if (Math.abs(limit - x) <= Math.abs(h))
+            {
+                h = limit - x;
+                clamped = true;
+            }
+            trialStep(x, this.yEnd, this.dyEnd, h, this.yTrial, this.dyTrial);
+            double err = errorNorm(this.yEnd, this.yTrial, super.error);
+            double factor = err == 0.0 ? MAX_FACTOR
+                    : Math.min(MAX_FACTOR, Math.max(MIN_FACTOR, SAFETY * Math.pow(err, -1.0 / (getErrorOrder() + 1))));
+            if (err <= 1.0)
+            {
+                this.acceptedSteps++;
+                this.stepStart = x;
+                this.stepEnd = clamped ? limit : x + h;
+                // rotate the arrays, so the array of the old start of the step becomes the workspace
+                double[] swap = this.yStart;
+                this.yStart = this.yEnd;
+                this.yEnd = this.yTrial;
+                this.yTrial = swap;
+                swap = this.dyStart;
+                this.dyStart = this.dyEnd;
+                this.dyEnd = this.dyTrial;
+                this.dyTrial = swap;
+                this.nextStepSize = (clamped && factor >= 1.0 && Math.abs(h * factor) < Math.abs(proposed)) ? proposed
+                        : h * factor;
+                return this.stepEnd;
+            }
+            this.rejectedSteps++;
+            this.nextStepSize = h * factor;
+            if (Math.abs(this.nextStepSize) < this.minStepSize || x + this.nextStepSize == x)
+            {
+                throw new DSOLRuntimeException(
+                        "step size " + this.nextStepSize + " too small to meet the error tolerance at x = " + x);
+            }
+        }
+    }
+
+    /**
+     * Take steps until the last accepted step covers x.
+     * @param x double; the x-value to integrate to
+     * @throws DSOLRuntimeException when the integrator has not been initialized, when x lies before the start of the last step
+     *             in the integration direction, or when the step size would have to become smaller than the minimum step size
+     */
+    public void advance(final double x)
+    {
+        Throw.when(!isInitialized(), DSOLRuntimeException.class, "adaptive integrator not initialized");
+        double direction = Math.signum(this.stepSize);
+        Throw.when(direction * (x - this.stepStart) < 0.0, DSOLRuntimeException.class,
+                "cannot integrate backwards from %f to %f", this.stepStart, x);
+        while (direction * (x - this.stepEnd) > 0.0)
+        {
+            step(direction * Double.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * Return y(x) for an x-value within the last accepted step, using cubic Hermite interpolation on y and y' at the start and
+     * at the end of the step.
+     * @param x double; the x-value, which should be within the last accepted step
+     * @return double[]; the interpolated value of y(x)
+     * @throws DSOLRuntimeException when x is not within the last accepted step
+     */
+    public double[] interpolate(final double x)
+    {
+        Throw.when(!covers(x), DSOLRuntimeException.class, "x = %f not within the last step [%f, %f]", x, this.stepStart,
+                this.stepEnd);
+        double[] y = new double[this.yEnd.length];
+        interpolate(x, y);
+        return y;
+    }
+
+    /**
+     * Store y(x) for an x-value within the last accepted step in the given array, using cubic Hermite interpolation on y and y'
+     * at the start and at the end of the step. The method does not check whether x is within the last step.
+     * @param x double; the x-value, which should be within the last accepted step
+     * @param y double[]; the array to store the interpolated value of y(x) in
+     */
+    protected void interpolate(final double x, final double[] y)
+    {
+        double h = this.stepEnd - this.stepStart;
+        if (h == 0.0)
+        {
+            System.arraycopy(this.yEnd, 0, y, 0, y.length);
+            return;
+        }
+        double t = (x - this.stepStart) / h;
+        double t2 = t * t;
+        double t3 = t2 * t;
+        double h00 = 2.0 * t3 - 3.0 * t2 + 1.0;
+        double h10 = t3 - 2.0 * t2 + t;
+        double h01 = -2.0 * t3 + 3.0 * t2;
+        double h11 = t3 - t2;
+        for (int i = 0; i < y.length; i++)
+        {
+            y[i] = h00 * this.yStart[i] + h10 * h * this.dyStart[i] + h01 * this.yEnd[i] + h11 * h * this.dyEnd[i];
+        }
+    }
+
+    /**
+     * Compute the weighted root-mean-square norm of the error, scaled by the tolerance for each component.
+     * @param y double[]; the y-value at the start of the step
+     * @param yNew double[]; the y-value at the end of the step
+     * @param err double[]; the error estimate per component
+     * @return double; the error norm; the step is accepted when the norm is at most 1
+     */
+    protected double errorNorm(final double[] y, final double[] yNew, final double[] err)
+    {
+        double sum = 0.0;
+        for (int i = 0; i < y.length; i++)
+        {
+            double scale = this.absoluteTolerance + this.relativeTolerance * Math.max(Math.abs(y[i]), Math.abs(yNew[i]));
+            double e = err[i] / scale;
+            sum += e * e;
+        }
+        return Math.sqrt(sum / y.length);
+    }
+
+    /**
+     * Integrate from x to x + stepSize with adaptive steps, and return y(x + stepSize). The dense output of the integrator is
+     * replaced by the last step of this interval.
+     * @param x double; the x value corresponding to the last y-value computed
+     * @param y double[]; the last y value
+     * @return the new value
+     */
+    @Override
+    public double[] next(final double x, final double[] y)
+    {
+        initialize(x, y);
+        double target = x + this.stepSize;
+        while (this.stepEnd != target)
+        {
+            step(target);
+        }
+        return this.yEnd.clone();
+    }
+
+    /**
+     * Integrate from x to x + stepSize with adaptive steps, and store y(x + stepSize) in yNext. The dense output of the
+     * integrator is replaced by the last step of this interval.
+     * @param x double; the x value corresponding to the last y-value computed
+     * @param y double[]; the last y value
+     * @param yNext double[]; the array to store the new value in, with the same length as y
+     */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        initialize(x, y);
+        double target = x + this.stepSize;
+        while (this.stepEnd != target)
+        {
+            step(target);
+        }
+        System.arraycopy(this.yEnd, 0, yNext, 0, yNext.length);
+    }
+
+    /**
+     * Set the relative and absolute tolerance for the local error.
+     * @param relativeTolerance double; the relative tolerance for the local error
+     * @param absoluteTolerance double; the absolute tolerance for the local error
+     * @throws IllegalArgumentException when one of the tolerances is negative or NaN, or when both are zero
+     */
+    public void setTolerances(final double relativeTolerance, final double absoluteTolerance)
+    {
+        Throw.when(!(relativeTolerance >= 0.0) || !(absoluteTolerance >= 0.0), IllegalArgumentException.class,
+                "tolerances should be >= 0");
+        Throw.when(relativeTolerance == 0.0 && absoluteTolerance == 0.0, IllegalArgumentException.class,
+                "tolerances cannot both be zero");
+        this.relativeTolerance = relativeTolerance;
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    /**
+     * @return relativeTolerance double; the relative tolerance for the local error
+     */
+    public double getRelativeTolerance()
+    {
+        return this.relativeTolerance;
+    }
+
+    /**
+     * @return absoluteTolerance double; the absolute tolerance for the local error
+     */
+    public double getAbsoluteTolerance()
+    {
+        return this.absoluteTolerance;
+    }
+
+    /**
+     * Set the bounds for the absolute step size.
+     * @param minStepSize double; the minimum absolute step size; when the step has to become smaller, integration fails
+     * @param maxStepSize double; the maximum absolute step size
+     * @throws IllegalArgumentException when minStepSize &lt; 0 or maxStepSize &lt;= minStepSize
+     */
+    public void setStepSizeBounds(final double minStepSize, final double maxStepSize)
+    {
+        Throw.when(!(minStepSize >= 0.0), IllegalArgumentException.class, "minStepSize should be >= 0");
+        Throw.when(!(maxStepSize > minStepSize), IllegalArgumentException.class, "maxStepSize should be > minStepSize");
+        this.minStepSize = minStepSize;
+        this.maxStepSize = maxStepSize;
+    }
+
+    /**
+     * @return minStepSize double; the minimum absolute step size
+     */
+    public double getMinStepSize()
+    {
+        return this.minStepSize;
+    }
+
+    /**
+     * @return maxStepSize double; the maximum absolute step size
+     */
+    public double getMaxStepSize()
+    {
+        return this.maxStepSize;
+    }
+
+    /**
+     * Set the step size, which is used as the interval for next(x, y) and as the trial step size for the next step.
+     * @param stepSize double; The step size to set.
+     */
+    @Override
+    public void setStepSize(final double stepSize)
+    {
+        super.setStepSize(stepSize);
+        this.nextStepSize = stepSize;
+    }
+
+    /**
+     * @return stepStart double; the x-value at the start of the last accepted step
+     */
+    public double getStepStart()
+    {
+        return this.stepStart;
+    }
+
+    /**
+     * @return stepEnd double; the x-value at the end of the last accepted step
+     */
+    public double getStepEnd()
+    {
+        return this.stepEnd;
+    }
+
+    /**
+     * @return nextStepSize double; the step size that will be tried in the next step
+     */
+    public double getNextStepSize()
+    {
+        return this.nextStepSize;
+    }
+
+    /**
+     * @return acceptedSteps long; the number of accepted steps since the last initialization
+     */
+    public long getAcceptedSteps()
+    {
+        return this.acceptedSteps;
+    }
+
+    /**
+     * @return rejectedSteps long; the number of rejected steps since the last initialization
+     */
+    public long getRejectedSteps()
+    {
+        return this.rejectedSteps;
+    }
+
+}
@@ -0,0 +1,355 @@
+package nl.tudelft.simulation.jstats.ode.integrators;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.jstats.ode.DifferentialEquationInterface;
+import nl.tudelft.simulation.language.DSOLRuntimeException;
+
+/**
+ * The BDF integrator implements the backward differentiation formulas of order 1 to 5 with a fixed step size, for stiff
+ * differential equations. The new value y_(n+1) solves y_(n+1) = a_0 y_n + a_1 y_(n-1) + ... + h b f(x_(n+1), y_(n+1)), which
+ * is done with a modified Newton iteration that re-uses the Jacobian and the LU factorization of the iteration matrix over the
+ * steps, and only evaluates the Jacobian again when the iteration does not converge. BDF1 (implicit Euler) and BDF2 are
+ * A-stable; the higher orders are stable in a sector around the negative real axis that shrinks with the order. <br>
+ * The integrator keeps the values of the last steps. Until there are enough values for the formula, the steps are taken by a
+ * primer integrator with a number of sub-steps per step, by default the Rosenbrock method, which is also suited for stiff
+ * equations. The values are keyed on the end of the last step: when next(x, y) is called with an x that is not the end of the
+ * last step, the integrator starts again with the primer. After a discontinuous change of y, reset() has to be called, which
+ * DifferentialEquation.initialize() does.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class BDF extends ImplicitNumericalIntegrator
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the coefficients a_j of y_(n-j) for the orders 1 to 5. */
+    private static final double[][] ALPHA = {{1.0}, {4.0 / 3.0, -1.0 / 3.0}, {18.0 / 11.0, -9.0 / 11.0, 2.0 / 11.0},
+            {48.0 / 25.0, -36.0 / 25.0, 16.0 / 25.0, -3.0 / 25.0},
+            {300.0 / 137.0, -300.0 / 137.0, 200.0 / 137.0, -75.0 / 137.0, 12.0 / 137.0}};
+
+    /** the coefficient b of h f(x_(n+1), y_(n+1)) for the orders 1 to 5. */
+    private static final double[] BETA = {1.0, 2.0 / 3.0, 6.0 / 11.0, 12.0 / 25.0, 60.0 / 137.0};
+
+    /** the coefficients of the polynomial extrapolation of y_(n+1) through 1 to 5 earlier values, used as predictor. */
+    private static final double[][] PREDICTOR =
+            {{1.0}, {2.0, -1.0}, {3.0, -3.0, 1.0}, {4.0, -6.0, 4.0, -1.0}, {5.0, -10.0, 10.0, -5.0, 1.0}};
+
+    /** the relative difference with the step size within which x is seen as the end of the last step. */
+    private static final double X_TOLERANCE = 1.0E-8;
+
+    /** the maximum number of Newton iterations per step. */
+    private static final int MAX_ITERATIONS = 7;
+
+    /** the order of the method. */
+    private final int order;
+
+    /** the primer integrator for the first steps. */
+    private final NumericalIntegrator startingIntegrator;
+
+    /** the number of sub-steps per step of the primer integrator. */
+    private final int startingSubSteps;
+
+    /** the relative tolerance for the Newton iteration. */
+    private double relativeTolerance = 1.0E-8;
+
+    /** the absolute tolerance for the Newton iteration. */
+    private double absoluteTolerance = 1.0E-10;
+
+    /** the values y_n, y_(n-1), etc. of the last steps. */
+    private double[][] history = null;
+
+    /** the number of values in the history. */
+    private int historySize = 0;
+
+    /** the x-value of y_n. */
+    private double historyX = Double.NaN;
+
+    /** the workspace for the history part of the formula. */
+    private double[] psi = null;
+
+    /** the workspace for the Newton iterate. */
+    private double[] z = null;
+
+    /** the workspace for y'. */
+    private double[] f = null;
+
+    /** the workspace for the Newton correction. */
+    private double[] delta = null;
+
+    /**
+     * constructs a new BDF integrator of order 2.
+     * @param stepSize double; the stepSize
+     * @param equation DifferentialEquationInterface; the differentialEquation
+     */
+    public BDF(final double stepSize, final DifferentialEquationInterface equation)
+    {
+        this(stepSize, equation, 2);
+    }
+
+    /**
+     * constructs a new BDF integrator of a given order.
+     * @param stepSize double; the stepSize
+     * @param equation DifferentialEquationInterface; the differentialEquation
+     * @param order int; the order of the method, 1 to 5
+     * @throws IllegalArgumentException when order is not between 1 and 5
+     */
+    public BDF(final double stepSize, final DifferentialEquationInterface equation, final int order)
+    {
+        this(stepSize, equation, order, NumericalIntegratorType.ROSENBROCK, 10);
+    }
+
+    /**
+     * constructs a new BDF integrator of a given order, indicating the starting method and number of substeps.
+     * @param stepSize double; the stepSize
+     * @param equation DifferentialEquationInterface; the differentialEquation
+     * @param order int; the order of the method, 1 to 5
+     * @param primerIntegrationMethod NumericalIntegratorType; the primer integrator to use
+     * @param startingSubSteps int; the number of substeps per timestep during starting of the integrator
+     * @throws IllegalArgumentException when order is not between 1 and 5, or when startingSubSteps &lt; 1
+     */
+    public BDF(final double stepSize, final DifferentialEquationInterface equation, final int order,
+            final NumericalIntegratorType primerIntegrationMethod, final int startingSubSteps)
+    {
+        super(stepSize, equation, Integer.MAX_VALUE);
+        Throw.when(order < 1 || order > ALPHA.length, IllegalArgumentException.class, "order should be between 1 and 5");
+        Throw.when(startingSubSteps < 1, IllegalArgumentException.class, "startingSubSteps should be >= 1");
+        this.order = order;
+        this.startingSubSteps = startingSubSteps;
+        this.startingIntegrator = primerIntegrationMethod.getInstance(stepSize / startingSubSteps, equation);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] next(final double x, final double[] y)
+    {
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        int n = y.length;
+        if (this.history == null || this.history[0].length != n)
+        {
+            this.history = new double[this.order][n];
+            this.psi = new double[n];
+            this.z = new double[n];
+            this.f = new double[n];
+            this.delta = new double[n];
+            this.historySize = 0;
+        }
+        if (!continues(x))
+        {
+            System.arraycopy(y, 0, this.history[0], 0, n);
+            this.historySize = 1;
+            this.historyX = x;
+            invalidateJacobian();
+        }
+
+        double xNext = x + this.stepSize;
+        if (this.historySize < this.order)
+        {
+            // not enough values for the formula yet: take the step with the primer
+            System.arraycopy(this.history[0], 0, this.z, 0, n);
+            double xStep = x;
+            for (int i = 0; i < this.startingSubSteps; i++)
+            {
+                this.startingIntegrator.next(xStep, this.z, this.z);
+                xStep += this.stepSize / this.startingSubSteps;
+            }
+        }
+        else
+        {
+            implicitStep(x, xNext);
+        }
+
+        // shift the history, and re-use the array of the oldest value for the new value
+        double[] newest = this.history[this.order - 1];
+        for (int j = this.order - 1; j > 0; j--)
+        {
+            this.history[j] = this.history[j - 1];
+        }
+        this.history[0] = newest;
+        System.arraycopy(this.z, 0, newest, 0, n);
+        this.historySize = Math.min(this.historySize + 1, this.order);
+        this.historyX = xNext;
+        System.arraycopy(this.z, 0, yNext, 0, n);
+    }
+
+    /**
+     * Take a step with the backward differentiation formula, and store the new value in z.
+     * @param x double; the x-value at the start of the step
+     * @param xNext double; the x-value at the end of the step
+     * @throws DSOLRuntimeException when the Newton iteration does not converge, even with a new Jacobian
+     */
+    private void implicitStep(final double x, final double xNext)
+    {
+        int n = this.z.length;
+        double hb = this.stepSize * BETA[this.order - 1];
+        for (int i = 0; i < n; i++)
+        {
+            double sum = 0.0;
+            for (int j = 0; j < this.order; j++)
+            {
+                sum += ALPHA[this.order - 1][j] * this.history[j][i];
+            }
+            this.psi[i] = sum;
+        }
+
+        boolean fresh = false;
+        if (isJacobianExpired(n))
+        {
+            this.equation.dy(x, this.history[0], this.f);
+            computeJacobian(x, this.history[0], this.f);
+            fresh = true;
+        }
+        factorize(hb);
+        while (!newton(xNext, hb))
+        {
+            if (fresh)
+            {
+                throw new DSOLRuntimeException("BDF" + this.order + ": Newton iteration does not converge at x = " + xNext
+                        + "; the step size " + this.stepSize + " is too large");
+            }
+            this.equation.dy(x, this.history[0], this.f);
+            computeJacobian(x, this.history[0], this.f);
+            factorize(hb);
+            fresh = true;
+        }
+        stepCompleted();
+    }
+
+    /**
+     * Return whether x is the end of the last step, so the history can be used. The y-value is not compared with the last value
+     * in the history; a change of the state is signalled with reset().
+     * @param x double; the x-value
+     * @return boolean; whether x is the end of the last step
+     */
+    private boolean continues(final double x)
+    {
+        return this.historySize > 0 && Math.abs(x - this.historyX) <= X_TOLERANCE * Math.abs(this.stepSize);
+    }
+
+    /**
+     * Solve z = psi + h.b.f(xNext, z) with a modified Newton iteration, starting from the extrapolation of the history.
+     * @param xNext double; the x-value at the end of the step
+     * @param hb double; the factor h.b of the formula
+     * @return boolean; whether the iteration converged
+     */
+    private boolean newton(final double xNext, final double hb)
+    {
+        int n = this.z.length;
+        for (int i = 0; i < n; i++)
+        {
+            double sum = 0.0;
+            for (int j = 0; j < this.order; j++)
+            {
+                sum += PREDICTOR[this.order - 1][j] * this.history[j][i];
+            }
+            this.z[i] = sum;
+        }
+        double previousNorm = Double.POSITIVE_INFINITY;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++)
+        {
+            this.equation.dy(xNext, this.z, this.f);
+            for (int i = 0; i < n; i++)
+            {
+                this.delta[i] = this.psi[i] + hb * this.f[i] - this.z[i];
+            }
+            solve(this.delta);
+            double sum = 0.0;
+            for (int i = 0; i < n; i++)
+            {
+                this.z[i] += this.delta[i];
+                double e = this.delta[i] / (this.absoluteTolerance + this.relativeTolerance * Math.abs(this.z[i]));
+                sum += e * e;
+            }
+            double norm = Math.sqrt(sum / n);
+            if (!(norm < previousNorm))
+            {
+                return false; // diverging, or NaN
+            }
+            // estimate the remaining error from the convergence rate; without a rate, require a small first correction
+            double rate = norm / previousNorm;
+            if ((iteration == 0 ? 10.0 * norm : rate / (1.0 - rate) * norm) <= 1.0)
+            {
+                return true;
+            }
+            previousNorm = norm;
+        }
+        return false;
+    }
+
+    /**
+     * Set the step size. The history is based on the old step size, so the integrator starts again with the primer.
+     * @param stepSize double; The step size to set.
+     */
+    @Override
+    public void setStepSize(final double stepSize)
+    {
+        super.setStepSize(stepSize);
+        this.startingIntegrator.setStepSize(stepSize / this.startingSubSteps);
+        this.historySize = 0;
+    }
+
+    /**
+     * Clear the history, so the next step starts again with the primer from the y-value that is passed to it.
+     */
+    @Override
+    public void reset()
+    {
+        this.historySize = 0;
+    }
+
+    /**
+     * Set the relative and absolute tolerance for the convergence of the Newton iteration.
+     * @param relativeTolerance double; the relative tolerance for the Newton iteration
+     * @param absoluteTolerance double; the absolute tolerance for the Newton iteration
+     * @throws IllegalArgumentException when one of the tolerances is negative or NaN, or when both are zero
+     */
+    public void setTolerances(final double relativeTolerance, final double absoluteTolerance)
+    {
+        Throw.when(!(relativeTolerance >= 0.0) || !(absoluteTolerance >= 0.0), IllegalArgumentException.class,
+                "tolerances should be >= 0");
+        Throw.when(relativeTolerance == 0.0 && absoluteTolerance == 0.0, IllegalArgumentException.class,
+                "tolerances cannot both be zero");
+        this.relativeTolerance = relativeTolerance;
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    /**
+     * @return relativeTolerance double; the relative tolerance for the Newton iteration
+     */
+    public double getRelativeTolerance()
+    {
+        return this.relativeTolerance;
+    }
+
+    /**
+     * @return absoluteTolerance double; the absolute tolerance for the Newton iteration
+     */
+    public double getAbsoluteTolerance()
+    {
+        return this.absoluteTolerance;
+    }
+
+    /**
+     * @return order int; the order of the method
+     */
+    public int getOrder()
+    {
+        return this.order;
+    }
+
+}
@@ -19,6 +19,9 @@ public abstract class CachingNumericalIntegrator extends NumericalIntegrator
     /** */
     private static final long serialVersionUID = 1L;
 
+    /** the relative difference with the step size within which x is seen as the end of the last step. */
+    private static final double X_TOLERANCE = 1.0E-8;
+
     /** the number of cachePlaces to store, e.g for k-1, k-2 set it to 2. */
     private int cachePlaces = 0;
 
@@ -31,6 +34,9 @@ public abstract class CachingNumericalIntegrator extends NumericalIntegrator
     /** the number of cache places filled = the last cache place used. */
     private int lastCachePlace = -1;
 
+    /** the x-value of the last cached value, which is the end of the last step. */
+    private double cacheX = Double.NaN;
+
     /** The primer integrator. */
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected NumericalIntegrator startingIntegrator = null;
@@ -39,6 +45,9 @@ public abstract class CachingNumericalIntegrator extends NumericalIntegrator
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected int startingSubSteps = 10;
 
+    /** the workspace for the primer integrator. */
+    private double[] primerY = null;
+
     /**
      * constructs a new CachingNumericalIntegrator with a fixed number of cache places.
      * @param stepSize double; the stepSize
@@ -52,17 +61,30 @@ public abstract class CachingNumericalIntegrator extends NumericalIntegrator
     {
         super(stepSize, equation);
         this.cachePlaces = cachePlaces;
-        this.cacheY = new double[cachePlaces][];
-        this.cacheDY = new double[cachePlaces][];
         this.startingIntegrator = primerIntegrationMethod.getInstance(stepSize / (1.0d * startingSubSteps), equation);
         this.startingSubSteps = startingSubSteps;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Set the step size. The cache is based on the old step size, so the integrator starts again with the primer, which takes
+     * its sub steps with the new step size.
+     * @param stepSize double; The step size to set.
+     */
     @Override
     public void setStepSize(final double stepSize)
     {
         super.setStepSize(stepSize);
+        this.startingIntegrator.setStepSize(stepSize / (1.0d * this.startingSubSteps));
+        this.lastCachePlace = -1;
+    }
+
+    /**
+     * Clear the cache, so the next step starts again with the primer from the y-value that is passed to it. The cache is also
+     * cleared when a step does not start at the end of the last step.
+     */
+    @Override
+    public void reset()
+    {
         this.lastCachePlace = -1;
     }
 
@@ -70,29 +92,53 @@ public abstract class CachingNumericalIntegrator extends NumericalIntegrator
     @Override
     public double[] next(final double x, final double[] y)
     {
-        double[] ynext = null;
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        int n = y.length;
+        if (this.primerY == null || this.primerY.length != n)
+        {
+            // (re)allocate the cache for the number of variables; the cache has to be primed again
+            this.primerY = new double[n];
+            this.cacheY = new double[this.cachePlaces][n];
+            this.cacheDY = new double[this.cachePlaces][n];
+            this.lastCachePlace = -1;
+        }
+        if (this.lastCachePlace >= 0 && !(Math.abs(x - this.cacheX) <= X_TOLERANCE * Math.abs(this.stepSize)))
+        {
+            // the cache holds the values before another x-value, so it cannot be used for this step
+            this.lastCachePlace = -1;
+        }
         // look whether we have to prime, or can calculate
         if (this.lastCachePlace < this.cachePlaces)
         {
             // calculate next y-value using the primer, which can have a
             // much smaller timestep
-            ynext = y.clone();
+            System.arraycopy(y, 0, this.primerY, 0, n);
             double xstep = x;
             for (int i = 0; i < this.startingSubSteps; i++)
             {
-                ynext = this.startingIntegrator.next(xstep, ynext);
+                this.startingIntegrator.next(xstep, this.primerY, this.primerY);
                 xstep += this.stepSize / (1.0d * this.startingSubSteps);
             }
+            System.arraycopy(this.primerY, 0, yNext, 0, n);
         }
         else
         {
             // calculate next y-value using the intended method
-            ynext = next(x);
+            nextFromCache(x, yNext);
         }
         this.lastCachePlace++;
-        this.cacheY[this.lastCachePlace % this.cachePlaces] = ynext;
-        this.cacheDY[this.lastCachePlace % this.cachePlaces] = this.equation.dy(x + this.stepSize, ynext);
-        return ynext;
+        int place = this.lastCachePlace % this.cachePlaces;
+        System.arraycopy(yNext, 0, this.cacheY[place], 0, n);
+        this.equation.dy(x + this.stepSize, this.cacheY[place], this.cacheDY[place]);
+        this.cacheX = x + this.stepSize;
     }
 
     /**
@@ -131,6 +177,26 @@ public abstract class CachingNumericalIntegrator extends NumericalIntegrator
         return this.cacheDY[(this.lastCachePlace - numberDown) % this.cachePlaces].clone();
     }
 
+    /**
+     * get a cached Y-value without making a copy; the array should not be changed.
+     * @param numberDown int; the number of the previous value we want
+     * @return the corresponding Y-value
+     */
+    protected double[] cachedY(final int numberDown)
+    {
+        return this.cacheY[(this.lastCachePlace - numberDown) % this.cachePlaces];
+    }
+
+    /**
+     * get a cached dY-value without making a copy; the array should not be changed.
+     * @param numberDown int; the number of the previous value we want
+     * @return the corresponding dY-value
+     */
+    protected double[] cachedDY(final int numberDown)
+    {
+        return this.cacheDY[(this.lastCachePlace - numberDown) % this.cachePlaces];
+    }
+
     /**
      * The integrators that extend the CachingNumericalIntegrator calculate the value of y(x+stepSize) just based on the
      * x-value. They retrieve y(x), y(x-stepSize), etc. or y(k), y(k-1) all from the cache.
@@ -138,4 +204,17 @@ public abstract class CachingNumericalIntegrator extends NumericalIntegrator
      * @return the value of y(x+stepSize)
      */
     public abstract double[] next(double x);
+
+    /**
+     * Calculate the value of y(x+stepSize) based on the cache, and store it in yNext. The default implementation calls next(x)
+     * and copies the result; the integrators in this package override the method to compute the value without creating
+     * arrays.
+     * @param x double; the x-value to use in the calculation
+     * @param yNext double[]; the array to store the value of y(x+stepSize) in
+     */
+    protected void nextFromCache(final double x, final double[] yNext)
+    {
+        double[] result = next(x);
+        System.arraycopy(result, 0, yNext, 0, result.length);
+    }
 }
@@ -0,0 +1,103 @@
+package nl.tudelft.simulation.jstats.ode.integrators;
+
+import nl.tudelft.simulation.jstats.ode.DifferentialEquationInterface;
+
+/**
+ * The Dormand-Prince 5(4) adaptive numerical integrator, also known as RK45 or ode45. The method uses seven stages, of which
+ * the last is evaluated at the end of the step and re-used as the first stage of the next step (first same as last), so an
+ * accepted step costs six evaluations of the differential equation. The solution is propagated with the fifth order formula;
+ * the difference with the embedded fourth order formula is used as the error estimate. See J.R. Dormand and P.J. Prince, A
+ * family of embedded Runge-Kutta formulae, Journal of Computational and Applied Mathematics 6(1), 1980, pp. 19-26.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class DormandPrince extends AdaptiveNumericalIntegrator
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the parameters for c_i, in f(x_n + c_i h, .). */
+    private static final double[] C = {0.0, 1.0 / 5.0, 3.0 / 10.0, 4.0 / 5.0, 8.0 / 9.0, 1.0, 1.0};
+
+    /** the parameters for a_ij, in f(., y_n + h (a_i1 k_1 + a_i2 k_2 + ...)). */
+    private static final double[][] A = {{}, {1.0 / 5.0}, {3.0 / 40.0, 9.0 / 40.0}, {44.0 / 45.0, -56.0 / 15.0, 32.0 / 9.0},
+            {19372.0 / 6561.0, -25360.0 / 2187.0, 64448.0 / 6561.0, -212.0 / 729.0},
+            {9017.0 / 3168.0, -355.0 / 33.0, 46732.0 / 5247.0, 49.0 / 176.0, -5103.0 / 18656.0},
+            {35.0 / 384.0, 0.0, 500.0 / 1113.0, 125.0 / 192.0, -2187.0 / 6784.0, 11.0 / 84.0}};
+
+    /** the differences between the fifth and fourth order weights, for the error estimate. */
+    private static final double[] E = {71.0 / 57600.0, 0.0, -71.0 / 16695.0, 71.0 / 1920.0, -17253.0 / 339200.0, 22.0 / 525.0,
+            -1.0 / 40.0};
+
+    /** the number of stages. */
+    private static final int NK = 7;
+
+    /**
+     * constructs a new DormandPrince integrator.
+     * @param stepSize double; the initial step size, and the interval for next(x, y)
+     * @param equation DifferentialEquationInterface; the differentialEquation
+     */
+    public DormandPrince(final double stepSize, final DifferentialEquationInterface equation)
+    {
+        super(stepSize, equation);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void trialStep(final double x, final double[] y, final double[] dy, final double h, final double[] yNew,
+            final double[] dyNew)
+    {
+        int n = y.length;
+        double[][] k = getWorkspace(NK, n);
+        double[] ysum = k[0];
+        for (int s = 1; s < NK; s++)
+        {
+            for (int i = 0; i < n; i++)
+            {
+                double sum = A[s][0] * dy[i];
+                for (int j = 1; j < s; j++)
+                {
+                    sum += A[s][j] * k[j][i];
+                }
+                ysum[i] = y[i] + h * sum;
+            }
+            if (s < NK - 1)
+            {
+                this.equation.dy(x + C[s] * h, ysum, k[s]);
+            }
+            else
+            {
+                // the last stage is evaluated in the fifth order solution itself
+                System.arraycopy(ysum, 0, yNew, 0, n);
+                this.equation.dy(x + h, yNew, dyNew);
+            }
+        }
+        if (super.error == null || super.error.length != n)
+        {
+            super.error = new double[n];
+        }
+        for (int i = 0; i < n; i++)
+        {
+            double sum = E[0] * dy[i];
+            for (int j = 1; j < NK - 1; j++)
+            {
+                sum += E[j] * k[j][i];
+            }
+            sum += E[NK - 1] * dyNew[i];
+            super.error[i] = h * sum;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected int getErrorOrder()
+    {
+        return 4;
+    }
+}
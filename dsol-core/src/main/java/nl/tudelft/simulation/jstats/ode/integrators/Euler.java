@@ -34,6 +34,20 @@ public class Euler extends NumericalIntegrator
     @Override
     public double[] next(final double x, final double[] y)
     {
-        return add(y, multiply(this.stepSize, this.equation.dy(x, y)));
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        double[] k1 = getWorkspace(1, y.length)[0];
+        this.equation.dy(x, y, k1);
+        for (int i = 0; i < y.length; i++)
+        {
+            yNext[i] = y[i] + this.stepSize * k1[i];
+        }
     }
 }
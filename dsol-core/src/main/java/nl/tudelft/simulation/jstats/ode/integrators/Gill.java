@@ -55,13 +55,45 @@ public class Gill extends NumericalIntegrator
     @Override
     public double[] next(final double x, final double[] y)
     {
-        double[] k1 = multiply(this.stepSize, this.equation.dy(x, y));
-        double[] k2 = multiply(this.stepSize, this.equation.dy(x + 0.5d * this.stepSize, add(y, multiply(0.5d, k1))));
-        double[] k3 = multiply(this.stepSize,
-                this.equation.dy(x + 0.5d * this.stepSize, add(y, multiply(HM1SQRT2, k1), multiply(IMSQRT2D2, k2))));
-        double[] k4 = multiply(this.stepSize,
-                this.equation.dy(x + this.stepSize, add(y, multiply((-SQRT2D2), k2), multiply(IPSQRT2D2, k3))));
-        double[] sum = add(k1, multiply(M2SQRT2, k2), multiply(P2SQRT2, k3), k4);
-        return add(y, multiply(1.0 / 6.0d, sum));
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        double[][] w = getWorkspace(5, y.length);
+        double[] k1 = w[0];
+        double[] k2 = w[1];
+        double[] k3 = w[2];
+        double[] k4 = w[3];
+        double[] tmp = w[4];
+        double h = this.stepSize;
+        this.equation.dy(x, y, k1);
+        for (int i = 0; i < y.length; i++)
+        {
+            k1[i] = h * k1[i];
+            tmp[i] = y[i] + 0.5d * k1[i];
+        }
+        this.equation.dy(x + 0.5d * h, tmp, k2);
+        for (int i = 0; i < y.length; i++)
+        {
+            k2[i] = h * k2[i];
+            tmp[i] = y[i] + HM1SQRT2 * k1[i] + IMSQRT2D2 * k2[i];
+        }
+        this.equation.dy(x + 0.5d * h, tmp, k3);
+        for (int i = 0; i < y.length; i++)
+        {
+            k3[i] = h * k3[i];
+            tmp[i] = y[i] + (-SQRT2D2) * k2[i] + IPSQRT2D2 * k3[i];
+        }
+        this.equation.dy(x + h, tmp, k4);
+        for (int i = 0; i < y.length; i++)
+        {
+            k4[i] = h * k4[i];
+            yNext[i] = y[i] + 1.0 / 6.0d * (k1[i] + M2SQRT2 * k2[i] + P2SQRT2 * k3[i] + k4[i]);
+        }
     }
 }
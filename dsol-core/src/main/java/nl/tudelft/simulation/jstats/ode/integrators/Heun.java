@@ -33,8 +33,28 @@ public class Heun extends NumericalIntegrator
     @Override
     public double[] next(final double x, final double[] y)
     {
-        double[] f0 = this.equation.dy(x, y);
-        double[] p = add(y, multiply(this.stepSize, f0));
-        return add(y, multiply(0.5 * this.stepSize, add(f0, this.equation.dy(x + this.stepSize, p))));
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        double[][] w = getWorkspace(3, y.length);
+        double[] f0 = w[0];
+        double[] p = w[1];
+        double[] f1 = w[2];
+        this.equation.dy(x, y, f0);
+        for (int i = 0; i < y.length; i++)
+        {
+            p[i] = y[i] + this.stepSize * f0[i];
+        }
+        this.equation.dy(x + this.stepSize, p, f1);
+        for (int i = 0; i < y.length; i++)
+        {
+            yNext[i] = y[i] + 0.5 * this.stepSize * (f0[i] + f1[i]);
+        }
     }
 }
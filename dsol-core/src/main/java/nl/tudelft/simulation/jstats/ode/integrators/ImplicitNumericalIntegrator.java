@@ -0,0 +1,225 @@
+package nl.tudelft.simulation.jstats.ode.integrators;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.jstats.ode.DifferentialEquationInterface;
+import nl.tudelft.simulation.jstats.ode.JacobianInterface;
+
+/**
+ * The ImplicitNumericalIntegrator is the basis for integrators for stiff equations, which solve a linear system with the
+ * iteration matrix (I - h.gamma.J) in every step, where J is the Jacobian df/dy. When the equation implements the
+ * JacobianInterface, the analytical Jacobian is used; otherwise the Jacobian is approximated with forward differences, which
+ * costs one evaluation of dy(x, y) per variable. <br>
+ * The Jacobian is kept for at most maxJacobianAge steps, and the LU factorization of the iteration matrix is kept as long as the
+ * Jacobian and h.gamma do not change. With a fixed step size, the factorization is therefore re-used across steps until the
+ * Jacobian is evaluated again.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public abstract class ImplicitNumericalIntegrator extends NumericalIntegrator
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the relative machine precision. */
+    private static final double EPSILON = Math.ulp(1.0);
+
+    /** the Jacobian df/dy. */
+    private double[][] jacobian = null;
+
+    /** the iteration matrix I - h.gamma.J. */
+    private double[][] iterationMatrix = null;
+
+    /** the LU factorization of the iteration matrix. */
+    private final LUDecomposition lu = new LUDecomposition();
+
+    /** the value of h.gamma for which the iteration matrix has been factorized, NaN when there is no valid factorization. */
+    private double factorizedHGamma = Double.NaN;
+
+    /** the number of steps since the last evaluation of the Jacobian. */
+    private int jacobianAge = 0;
+
+    /** the maximum number of steps that a Jacobian is used. */
+    private int maxJacobianAge;
+
+    /** the number of evaluations of the Jacobian. */
+    private long jacobianEvaluations = 0;
+
+    /** the number of LU decompositions of the iteration matrix. */
+    private long decompositions = 0;
+
+    /** the workspace for the perturbed y-value in the finite difference Jacobian. */
+    private double[] yPerturbed = null;
+
+    /** the workspace for the perturbed y' in the finite difference Jacobian. */
+    private double[] dyPerturbed = null;
+
+    /** the workspace for the LU solver. */
+    private double[] solveWork = null;
+
+    /**
+     * constructs a new ImplicitNumericalIntegrator.
+     * @param stepSize double; the stepSize
+     * @param equation DifferentialEquationInterface; the differentialEquation
+     * @param maxJacobianAge int; the maximum number of steps that a Jacobian is used
+     * @throws IllegalArgumentException when maxJacobianAge &lt; 1
+     */
+    public ImplicitNumericalIntegrator(final double stepSize, final DifferentialEquationInterface equation,
+            final int maxJacobianAge)
+    {
+        super(stepSize, equation);
+        setMaxJacobianAge(maxJacobianAge);
+    }
+
+    /**
+     * Return whether the Jacobian has to be evaluated before the next step, because there is no Jacobian for n variables yet,
+     * or because the Jacobian has been used for maxJacobianAge steps.
+     * @param n int; the number of variables
+     * @return boolean; whether the Jacobian has to be evaluated before the next step
+     */
+    protected boolean isJacobianExpired(final int n)
+    {
+        return this.jacobian == null || this.jacobian.length != n || this.jacobianAge >= this.maxJacobianAge;
+    }
+
+    /**
+     * Evaluate the Jacobian in (x, y), analytically when the equation implements the JacobianInterface, and with forward
+     * differences otherwise. The factorization of the iteration matrix becomes invalid.
+     * @param x double; the x-value
+     * @param y double[]; the y-value
+     * @param dy double[]; y' in (x, y), used for the forward differences
+     */
+    protected void computeJacobian(final double x, final double[] y, final double[] dy)
+    {
+        int n = y.length;
+        if (this.jacobian == null || this.jacobian.length != n)
+        {
+            this.jacobian = new double[n][n];
+            this.iterationMatrix = new double[n][n];
+            this.yPerturbed = new double[n];
+            this.dyPerturbed = new double[n];
+            this.solveWork = new double[n];
+        }
+        if (this.equation instanceof JacobianInterface)
+        {
+            ((JacobianInterface) this.equation).jacobian(x, y, this.jacobian);
+        }
+        else
+        {
+            System.arraycopy(y, 0, this.yPerturbed, 0, n);
+            for (int j = 0; j < n; j++)
+            {
+                double yj = y[j];
+                double delta = Math.sqrt(EPSILON * Math.max(1.0E-5, Math.abs(yj)));
+                this.yPerturbed[j] = yj + delta;
+                delta = this.yPerturbed[j] - yj; // the exactly representable difference
+                this.equation.dy(x, this.yPerturbed, this.dyPerturbed);
+                for (int i = 0; i < n; i++)
+                {
+                    this.jacobian[i][j] = (this.dyPerturbed[i] - dy[i]) / delta;
+                }
+                this.yPerturbed[j] = yj;
+            }
+        }
+        this.jacobianAge = 0;
+        this.jacobianEvaluations++;
+        this.factorizedHGamma = Double.NaN;
+    }
+
+    /**
+     * Make sure that the LU factorization of the iteration matrix I - h.gamma.J is available for the given h.gamma. The matrix
+     * is only factorized again when the Jacobian or h.gamma changed since the last factorization.
+     * @param hGamma double; the factor h.gamma of the iteration matrix
+     */
+    protected void factorize(final double hGamma)
+    {
+        if (hGamma == this.factorizedHGamma)
+        {
+            return;
+        }
+        int n = this.jacobian.length;
+        for (int i = 0; i < n; i++)
+        {
+            double[] row = this.iterationMatrix[i];
+            double[] jRow = this.jacobian[i];
+            for (int j = 0; j < n; j++)
+            {
+                row[j] = -hGamma * jRow[j];
+            }
+            row[i] += 1.0;
+        }
+        this.lu.decompose(this.iterationMatrix);
+        this.factorizedHGamma = hGamma;
+        this.decompositions++;
+    }
+
+    /**
+     * Solve (I - h.gamma.J).x = b with the last factorization, and store x in b.
+     * @param b double[]; the right hand side, which is overwritten by the solution
+     */
+    protected void solve(final double[] b)
+    {
+        this.lu.solve(b, this.solveWork);
+    }
+
+    /**
+     * Indicate that a step has been completed with the current Jacobian.
+     */
+    protected void stepCompleted()
+    {
+        if (this.jacobianAge < this.maxJacobianAge)
+        {
+            this.jacobianAge++;
+        }
+    }
+
+    /**
+     * Discard the Jacobian, e.g., after a discontinuous change of the equation, so it is evaluated again in the next step.
+     */
+    public void invalidateJacobian()
+    {
+        this.jacobianAge = this.maxJacobianAge;
+    }
+
+    /**
+     * Set the maximum number of steps that a Jacobian is used. A value of 1 evaluates the Jacobian in every step.
+     * @param maxJacobianAge int; the maximum number of steps that a Jacobian is used
+     * @throws IllegalArgumentException when maxJacobianAge &lt; 1
+     */
+    public void setMaxJacobianAge(final int maxJacobianAge)
+    {
+        Throw.when(maxJacobianAge < 1, IllegalArgumentException.class, "maxJacobianAge should be >= 1");
+        this.maxJacobianAge = maxJacobianAge;
+    }
+
+    /**
+     * @return maxJacobianAge int; the maximum number of steps that a Jacobian is used
+     */
+    public int getMaxJacobianAge()
+    {
+        return this.maxJacobianAge;
+    }
+
+    /**
+     * @return jacobianEvaluations long; the number of evaluations of the Jacobian
+     */
+    public long getJacobianEvaluations()
+    {
+        return this.jacobianEvaluations;
+    }
+
+    /**
+     * @return decompositions long; the number of LU decompositions of the iteration matrix
+     */
+    public long getDecompositions()
+    {
+        return this.decompositions;
+    }
+
+}
@@ -0,0 +1,158 @@
+package nl.tudelft.simulation.jstats.ode.integrators;
+
+import java.io.Serializable;
+
+import org.djutils.exceptions.Throw;
+
+import nl.tudelft.simulation.language.DSOLRuntimeException;
+
+/**
+ * LUDecomposition is a dense LU factorization with partial pivoting of a square matrix, for solving the linear systems of the
+ * implicit integrators. The factorization is stored, so after one call of decompose(), the system can be solved for any number
+ * of right hand sides with solve(). The arrays are allocated once for a given size, and re-used for the next decompositions of a
+ * matrix of the same size.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class LUDecomposition implements Serializable
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the L and U factors; L has an implicit unit diagonal. */
+    private double[][] lu = null;
+
+    /** the row permutation: row i of the factorization is row pivot[i] of the original matrix. */
+    private int[] pivot = null;
+
+    /** whether a factorization is available. */
+    private boolean decomposed = false;
+
+    /**
+     * Factorize the square matrix a. The matrix a itself is not changed.
+     * @param a double[][]; the square matrix to factorize
+     * @throws NullPointerException when a is null
+     * @throws IllegalArgumentException when a is not square
+     * @throws DSOLRuntimeException when a is singular
+     */
+    public void decompose(final double[][] a)
+    {
+        Throw.whenNull(a, "matrix cannot be null");
+        int n = a.length;
+        if (this.lu == null || this.lu.length != n)
+        {
+            this.lu = new double[n][n];
+            this.pivot = new int[n];
+        }
+        this.decomposed = false;
+        for (int i = 0; i < n; i++)
+        {
+            Throw.when(a[i].length != n, IllegalArgumentException.class, "matrix is not square");
+            System.arraycopy(a[i], 0, this.lu[i], 0, n);
+            this.pivot[i] = i;
+        }
+        for (int k = 0; k < n; k++)
+        {
+            // find the pivot row
+            int p = k;
+            double max = Math.abs(this.lu[k][k]);
+            for (int i = k + 1; i < n; i++)
+            {
+                double v = Math.abs(this.lu[i][k]);
+                if (v > max)
+                {
+                    max = v;
+                    p = i;
+                }
+            }
+            if (max == 0.0 || Double.isNaN(max))
+            {
+                throw new DSOLRuntimeException("singular matrix in LU decomposition, column " + k);
+            }
+            if (p != k)
+            {
+                double[] row = this.lu[p];
+                this.lu[p] = this.lu[k];
+                this.lu[k] = row;
+                int index = this.pivot[p];
+                this.pivot[p] = this.pivot[k];
+                this.pivot[k] = index;
+            }
+            double[] rowK = this.lu[k];
+            double diagonal = rowK[k];
+            for (int i = k + 1; i < n; i++)
+            {
+                double[] rowI = this.lu[i];
+                double factor = rowI[k] / diagonal;
+                rowI[k] = factor;
+                if (factor != 0.0)
+                {
+                    for (int j = k + 1; j < n; j++)
+                    {
+                        rowI[j] -= factor * rowK[j];
+                    }
+                }
+            }
+        }
+        this.decomposed = true;
+    }
+
+    /**
+     * Solve A.x = b for the last decomposed matrix A, and store x in b.
+     * @param b double[]; the right hand side, which is overwritten by the solution
+     * @param work double[]; a workspace array with the same length as b
+     * @throws DSOLRuntimeException when no matrix has been decomposed
+     */
+    public void solve(final double[] b, final double[] work)
+    {
+        Throw.when(!this.decomposed, DSOLRuntimeException.class, "no LU decomposition available");
+        int n = this.lu.length;
+        // forward substitution with the permuted right hand side: L.z = P.b
+        for (int i = 0; i < n; i++)
+        {
+            double[] rowI = this.lu[i];
+            double sum = b[this.pivot[i]];
+            for (int j = 0; j < i; j++)
+            {
+                sum -= rowI[j] * work[j];
+            }
+            work[i] = sum;
+        }
+        // backward substitution: U.x = z
+        for (int i = n - 1; i >= 0; i--)
+        {
+            double[] rowI = this.lu[i];
+            double sum = work[i];
+            for (int j = i + 1; j < n; j++)
+            {
+                sum -= rowI[j] * work[j];
+            }
+            work[i] = sum / rowI[i];
+        }
+        System.arraycopy(work, 0, b, 0, n);
+    }
+
+    /**
+     * Return whether a factorization is available for solve().
+     * @return boolean; whether a factorization is available
+     */
+    public boolean isDecomposed()
+    {
+        return this.decomposed;
+    }
+
+    /**
+     * Return the size of the last decomposed matrix.
+     * @return int; the size of the last decomposed matrix, or 0 when no matrix has been decomposed
+     */
+    public int size()
+    {
+        return this.lu == null ? 0 : this.lu.length;
+    }
+}
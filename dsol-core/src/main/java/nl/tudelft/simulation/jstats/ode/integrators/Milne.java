@@ -47,18 +47,37 @@ public class Milne extends CachingNumericalIntegrator
     @Override
     public double[] next(final double x)
     {
-        double[] y3 = getY(3);
-        double[] y1 = getY(1);
-        double[] dy2 = getDY(2);
-        double[] dy1 = getDY(1);
-        double[] dy0 = getDY(0);
+        double[] yNext = new double[getY(0).length];
+        nextFromCache(x, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void nextFromCache(final double x, final double[] yNext)
+    {
+        double[] y3 = cachedY(3);
+        double[] y1 = cachedY(1);
+        double[] dy2 = cachedDY(2);
+        double[] dy1 = cachedDY(1);
+        double[] dy0 = cachedDY(0);
+        double[][] w = getWorkspace(2, y1.length);
+        double[] p = w[0];
+        double[] dp = w[1];
 
         // Let's evaluate the predictor
-        double[] p =
-                add(y3, multiply(4 * this.stepSize / 3.0, add(multiply(2.0, dy0), multiply(-1.0, dy1), multiply(2.0, dy2))));
+        double h43 = 4 * this.stepSize / 3.0;
+        for (int i = 0; i < y1.length; i++)
+        {
+            p[i] = y3[i] + h43 * (2.0 * dy0[i] + -1.0 * dy1[i] + 2.0 * dy2[i]);
+        }
 
         // Now we compute the corrector
-        return add(y1, multiply(this.stepSize / 3.0,
-                add(multiply(1.0, dy1), multiply(4.0, dy0), this.equation.dy(x + this.stepSize, p))));
+        this.equation.dy(x + this.stepSize, p, dp);
+        double h3 = this.stepSize / 3.0;
+        for (int i = 0; i < y1.length; i++)
+        {
+            yNext[i] = y1[i] + h3 * (1.0 * dy1[i] + 4.0 * dy0[i] + dp[i]);
+        }
     }
 }
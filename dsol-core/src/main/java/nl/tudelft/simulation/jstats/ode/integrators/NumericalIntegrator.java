@@ -5,7 +5,10 @@ import java.io.Serializable;
 import nl.tudelft.simulation.jstats.ode.DifferentialEquationInterface;
 
 /**
- * Provides basic methods for all numerical integration methods. They mostly include matrix computation.
+ * Provides basic methods for all numerical integration methods. They mostly include matrix computation. <br>
+ * Integrators compute a step either with next(x, y), which returns a new array, or in place with next(x, y, yNext). The
+ * integrators in this package implement the in-place variant with workspace arrays that are allocated once per integrator, and
+ * call the in-place dy(x, y, dy) of the equation, so a step does not create any objects.
  * <p>
  * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -33,6 +36,9 @@ public abstract class NumericalIntegrator implements Serializable
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected DifferentialEquationInterface equation = null;
 
+    /** the workspace arrays that are re-used between steps. */
+    private transient double[][] workspace = null;
+
     /**
      * constructs a new NumericalIntegrator.
      * @param stepSize double; the stepSize
@@ -52,6 +58,36 @@ public abstract class NumericalIntegrator implements Serializable
      */
     public abstract double[] next(double x, double[] y);
 
+    /**
+     * computes the next value, and stores it in yNext. The yNext array may be the same array as y, in which case y is
+     * overwritten by the new value. The default implementation calls next(x, y) and copies the result; the integrators in this
+     * package override the method to carry out the step without creating arrays.
+     * @param x double; the x value corresponding to the last y-value computed
+     * @param y double[]; the last y value
+     * @param yNext double[]; the array to store the new value in, with the same length as y
+     */
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        double[] result = next(x, y);
+        System.arraycopy(result, 0, yNext, 0, result.length);
+    }
+
+    /**
+     * Return a number of workspace arrays of the given length. The arrays are allocated on the first call, and re-used on later
+     * calls with the same length, so the content of the arrays is undefined.
+     * @param count int; the number of arrays
+     * @param length int; the length of each array
+     * @return double[][]; at least count arrays of the given length
+     */
+    protected double[][] getWorkspace(final int count, final int length)
+    {
+        if (this.workspace == null || this.workspace.length < count || this.workspace[0].length != length)
+        {
+            this.workspace = new double[count][length];
+        }
+        return this.workspace;
+    }
+
     /**
      * multiplies a vector with a constant.
      * @param constant double; the constant
@@ -159,6 +195,16 @@ public abstract class NumericalIntegrator implements Serializable
         return sum;
     }
 
+    /**
+     * Forget the values of the earlier steps, e.g., after a discontinuous change of the state of the equation, so the next
+     * step only depends on the x and y that are passed to it. The default implementation does nothing, since most integrators
+     * do not keep values of earlier steps.
+     */
+    public void reset()
+    {
+        // no values of earlier steps
+    }
+
     /**
      * @return Returns the current step size.
      */
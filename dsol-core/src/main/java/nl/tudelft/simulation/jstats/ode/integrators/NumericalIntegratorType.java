@@ -41,7 +41,28 @@ public enum NumericalIntegratorType
     RUNGEKUTTAFEHLBERG(7, RungeKuttaFehlberg.class),
 
     /** Runge-Kutta-Cash-Carp integration. */
-    RUNGEKUTTACASHCARP(8, RungeKuttaCashCarp.class);
+    RUNGEKUTTACASHCARP(8, RungeKuttaCashCarp.class),
+
+    /** Dormand-Prince 5(4) integration with adaptive step size and dense output. */
+    DORMANDPRINCE(9, DormandPrince.class),
+
+    /** Implicit Euler (BDF of order 1) integration for stiff equations. */
+    BDF1(10, BDF.class, 1),
+
+    /** BDF integration of order 2 for stiff equations. */
+    BDF2(11, BDF.class, 2),
+
+    /** BDF integration of order 3 for stiff equations. */
+    BDF3(12, BDF.class, 3),
+
+    /** BDF integration of order 4 for stiff equations. */
+    BDF4(13, BDF.class, 4),
+
+    /** BDF integration of order 5 for stiff equations. */
+    BDF5(14, BDF.class, 5),
+
+    /** Rosenbrock (ROS3P) integration of order 3 for stiff equations. */
+    ROSENBROCK(15, Rosenbrock.class);
 
     /** the value from DSOL-1 before enum was introduced. */
     private final int value;
@@ -49,15 +70,30 @@ public enum NumericalIntegratorType
     /** the class of the integrator. */
     private final Class<? extends NumericalIntegrator> integratorClass;
 
+    /** the order to pass to the constructor of the integrator, or 0 when the constructor has no order. */
+    private final int order;
+
     /**
      * Create a side; store the value from DSOL-1 as well.
      * @param value int; the value from DSOL-1 before enum was introduced
      * @param integratorClass Class&lt;? extends NumericalIntegrator&gt;; the class of the integrator
      */
     NumericalIntegratorType(final int value, final Class<? extends NumericalIntegrator> integratorClass)
+    {
+        this(value, integratorClass, 0);
+    }
+
+    /**
+     * Create a type for an integrator class that implements several orders.
+     * @param value int; the value from DSOL-1 before enum was introduced
+     * @param integratorClass Class&lt;? extends NumericalIntegrator&gt;; the class of the integrator
+     * @param order int; the order to pass to the constructor of the integrator, or 0 when the constructor has no order
+     */
+    NumericalIntegratorType(final int value, final Class<? extends NumericalIntegrator> integratorClass, final int order)
     {
         this.value = value;
         this.integratorClass = integratorClass;
+        this.order = order;
     }
 
     /**
@@ -88,6 +124,12 @@ public enum NumericalIntegratorType
     {
         try
         {
+            if (this.order > 0)
+            {
+                Constructor<? extends NumericalIntegrator> constructor =
+                        this.integratorClass.getConstructor(double.class, DifferentialEquationInterface.class, int.class);
+                return constructor.newInstance(stepSize, equation, this.order);
+            }
             Constructor<? extends NumericalIntegrator> constructor =
                     this.integratorClass.getConstructor(double.class, DifferentialEquationInterface.class);
             return constructor.newInstance(stepSize, equation);
@@ -0,0 +1,138 @@
+package nl.tudelft.simulation.jstats.ode.integrators;
+
+import nl.tudelft.simulation.jstats.ode.DifferentialEquationInterface;
+
+/**
+ * The Rosenbrock integrator implements the linearly implicit three-stage Rosenbrock method ROS3P of order 3 with a fixed step
+ * size, for stiff differential equations. Each stage solves a linear system with the iteration matrix I - h.gamma.J, so no
+ * Newton iteration is needed, and all stages use the same LU factorization. The method is A-stable. See J. Lang and J.G.
+ * Verwer, ROS3P - an accurate third-order Rosenbrock solver designed for parabolic problems, BIT 41(4), 2001, pp. 731-738.
+ * <br>
+ * The order of the method relies on an exact Jacobian, which is therefore evaluated in every step by default. For equations
+ * where the Jacobian changes slowly, setMaxJacobianAge() lets the integrator re-use the Jacobian and its factorization over a
+ * number of steps, at the expense of the accuracy. The derivative df/dx for equations that depend on x is approximated with a
+ * forward difference when the Jacobian is evaluated.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class Rosenbrock extends ImplicitNumericalIntegrator
+{
+    /** */
+    private static final long serialVersionUID = 1L;
+
+    /** the relative machine precision. */
+    private static final double EPSILON = Math.ulp(1.0);
+
+    /** the diagonal coefficient gamma = 1/2 + sqrt(3)/6. */
+    private static final double GAMMA = 0.5 + Math.sqrt(3.0) / 6.0;
+
+    /** the parameters for a_ij, in f(., y_n + a_i1 U_1 + a_i2 U_2 + ...). */
+    private static final double[][] A = {{}, {1.0 / GAMMA}, {1.0 / GAMMA, 0.0}};
+
+    /** the parameters for c_ij, in (I - h.gamma.J) U_i = h.gamma (f(.) + (c_i1 U_1 + c_i2 U_2 + ...) / h + gamma_i h df/dx). */
+    private static final double[][] C = {{}, {-1.0 / (GAMMA * GAMMA)}, {-2.0 * Math.sqrt(3.0), -Math.sqrt(3.0)}};
+
+    /** the parameters alpha_i, in f(x_n + alpha_i h, .). */
+    private static final double[] ALPHA = {0.0, 1.0, 1.0};
+
+    /** the parameters gamma_i for the derivative df/dx. */
+    private static final double[] GAMMA_X = {GAMMA, GAMMA - 1.0, -1.0 / Math.sqrt(3.0) - 0.5};
+
+    /** the weights m_i, in y_(n+1) = y_n + m_1 U_1 + m_2 U_2 + m_3 U_3. */
+    private static final double[] M = {2.0, 1.0 / Math.sqrt(3.0), 1.0 - 1.0 / Math.sqrt(3.0)};
+
+    /** the number of stages. */
+    private static final int NS = 3;
+
+    /** the derivative df/dx, evaluated together with the Jacobian. */
+    private double[] dfdx = null;
+
+    /**
+     * constructs a new Rosenbrock integrator.
+     * @param stepSize double; the stepSize
+     * @param equation DifferentialEquationInterface; the differentialEquation
+     */
+    public Rosenbrock(final double stepSize, final DifferentialEquationInterface equation)
+    {
+        super(stepSize, equation, 1);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] next(final double x, final double[] y)
+    {
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        int n = y.length;
+        double h = this.stepSize;
+        double hGamma = h * GAMMA;
+        // w[0] = f, w[1] = stage argument, w[2..4] = U_1..U_3
+        double[][] w = getWorkspace(NS + 2, n);
+        double[] f = w[0];
+        double[] ys = w[1];
+        this.equation.dy(x, y, f);
+        if (isJacobianExpired(n))
+        {
+            computeJacobian(x, y, f);
+            if (this.dfdx == null || this.dfdx.length != n)
+            {
+                this.dfdx = new double[n];
+            }
+            double[] dfdx = this.dfdx;
+            double dx = Math.sqrt(EPSILON * Math.max(1.0E-5, Math.abs(x)));
+            dx = (x + dx) - x;
+            this.equation.dy(x + dx, y, dfdx);
+            for (int i = 0; i < n; i++)
+            {
+                dfdx[i] = (dfdx[i] - f[i]) / dx;
+            }
+        }
+        factorize(hGamma);
+        for (int s = 0; s < NS; s++)
+        {
+            if (s > 0)
+            {
+                for (int i = 0; i < n; i++)
+                {
+                    double sum = y[i];
+                    for (int j = 0; j < s; j++)
+                    {
+                        sum += A[s][j] * w[2 + j][i];
+                    }
+                    ys[i] = sum;
+                }
+                this.equation.dy(x + ALPHA[s] * h, ys, f);
+            }
+            double[] u = w[2 + s];
+            for (int i = 0; i < n; i++)
+            {
+                double sum = 0.0;
+                for (int j = 0; j < s; j++)
+                {
+                    sum += C[s][j] * w[2 + j][i];
+                }
+                u[i] = hGamma * (f[i] + sum / h + GAMMA_X[s] * h * this.dfdx[i]);
+            }
+            solve(u);
+        }
+        stepCompleted();
+        for (int i = 0; i < n; i++)
+        {
+            yNext[i] = y[i] + M[0] * w[2][i] + M[1] * w[3][i] + M[2] * w[4][i];
+        }
+    }
+
+}
@@ -33,10 +33,36 @@ public class RungeKutta3 extends NumericalIntegrator
     @Override
     public double[] next(final double x, final double[] y)
     {
-        double[] k1 = this.equation.dy(x, y);
-        double[] k2 = this.equation.dy(x + 0.5 * this.stepSize, add(y, multiply(0.5 * this.stepSize, k1)));
-        double[] k3 = this.equation.dy(x + 0.5 * this.stepSize, add(y, multiply(0.5 * this.stepSize, k2)));
-        double[] sum = add(k1, multiply(4.0, k2), k3);
-        return add(y, multiply(this.stepSize / 6.0, sum));
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        double[][] w = getWorkspace(4, y.length);
+        double[] k1 = w[0];
+        double[] k2 = w[1];
+        double[] k3 = w[2];
+        double[] tmp = w[3];
+        double h2 = 0.5 * this.stepSize;
+        this.equation.dy(x, y, k1);
+        for (int i = 0; i < y.length; i++)
+        {
+            tmp[i] = y[i] + h2 * k1[i];
+        }
+        this.equation.dy(x + h2, tmp, k2);
+        for (int i = 0; i < y.length; i++)
+        {
+            tmp[i] = y[i] + h2 * k2[i];
+        }
+        this.equation.dy(x + h2, tmp, k3);
+        double h6 = this.stepSize / 6.0;
+        for (int i = 0; i < y.length; i++)
+        {
+            yNext[i] = y[i] + h6 * (k1[i] + 4.0 * k2[i] + k3[i]);
+        }
     }
 }
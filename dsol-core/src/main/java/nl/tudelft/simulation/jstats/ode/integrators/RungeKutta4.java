@@ -33,11 +33,42 @@ public class RungeKutta4 extends NumericalIntegrator
     @Override
     public double[] next(final double x, final double[] y)
     {
-        double[] k1 = this.equation.dy(x, y);
-        double[] k2 = this.equation.dy(x + 0.5 * this.stepSize, add(y, multiply(0.5 * this.stepSize, k1)));
-        double[] k3 = this.equation.dy(x + 0.5 * this.stepSize, add(y, multiply(0.5 * this.stepSize, k2)));
-        double[] k4 = this.equation.dy(x + this.stepSize, add(y, multiply(this.stepSize, k3)));
-        double[] sum = add(k1, multiply(2.0, k2), multiply(2.0, k3), k4);
-        return add(y, multiply(this.stepSize / 6.0, sum));
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        double[][] w = getWorkspace(5, y.length);
+        double[] k1 = w[0];
+        double[] k2 = w[1];
+        double[] k3 = w[2];
+        double[] k4 = w[3];
+        double[] tmp = w[4];
+        double h2 = 0.5 * this.stepSize;
+        this.equation.dy(x, y, k1);
+        for (int i = 0; i < y.length; i++)
+        {
+            tmp[i] = y[i] + h2 * k1[i];
+        }
+        this.equation.dy(x + h2, tmp, k2);
+        for (int i = 0; i < y.length; i++)
+        {
+            tmp[i] = y[i] + h2 * k2[i];
+        }
+        this.equation.dy(x + h2, tmp, k3);
+        for (int i = 0; i < y.length; i++)
+        {
+            tmp[i] = y[i] + this.stepSize * k3[i];
+        }
+        this.equation.dy(x + this.stepSize, tmp, k4);
+        double h6 = this.stepSize / 6.0;
+        for (int i = 0; i < y.length; i++)
+        {
+            yNext[i] = y[i] + h6 * (k1[i] + 2.0 * k2[i] + 2.0 * k3[i] + k4[i]);
+        }
     }
 }
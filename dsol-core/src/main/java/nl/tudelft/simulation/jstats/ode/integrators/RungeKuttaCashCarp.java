@@ -55,26 +55,52 @@ public class RungeKuttaCashCarp extends NumericalIntegrator
     @Override
     public double[] next(final double x, final double[] y)
     {
-        double[][] k = new double[nk][];
-        for (int i = 0; i < nk; i++)
+        double[] yNext = new double[y.length];
+        next(x, y, yNext);
+        return yNext;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void next(final double x, final double[] y, final double[] yNext)
+    {
+        int n = y.length;
+        double[][] k = getWorkspace(nk + 1, n);
+        double[] ysum = k[nk];
+        for (int s = 0; s < nk; s++)
         {
-            double[] ysum = y.clone();
-            for (int j = 0; j < i; j++)
+            System.arraycopy(y, 0, ysum, 0, n);
+            for (int j = 0; j < s; j++)
             {
-                if (b[i][j] != 0.0)
+                if (b[s][j] != 0.0)
                 {
-                    ysum = add(ysum, multiply(b[i][j], k[j]));
+                    for (int i = 0; i < n; i++)
+                    {
+                        ysum[i] = ysum[i] + b[s][j] * k[j][i];
+                    }
                 }
             }
-            k[i] = multiply(this.stepSize, this.equation.dy(x + a[i] * this.stepSize, ysum));
+            this.equation.dy(x + a[s] * this.stepSize, ysum, k[s]);
+            for (int i = 0; i < n; i++)
+            {
+                k[s][i] = this.stepSize * k[s][i];
+            }
+        }
+        if (super.error == null || super.error.length != n)
+        {
+            super.error = new double[n];
         }
-        double[] sum = y.clone();
-        super.error = new double[y.length];
-        for (int i = 0; i < nk; i++)
+        for (int i = 0; i < n; i++)
         {
-            sum = add(sum, this.multiply(c[i], k[i]));
-            super.error = add(super.error, multiply(c[i] - c4[i], k[i]));
+            double sum = y[i];
+            double err = 0.0;
+            for (int s = 0; s < nk; s++)
+            {
+                sum = sum + c[s] * k[s][i];
+                err = err + (c[s] - c4[s]) * k[s][i];
+            }
+            yNext[i] = sum;
+            super.error[i] = err;
         }
-        return sum;
     }
 }
@@ -1,5 +1,7 @@
 package nl.tudelft.simulation.jstats.streams;
 
+import java.nio.ByteBuffer;
+
 /**
  * The DX-120-4 pseudo random number generator. This generator is described in
  * <a href="http://www.cs.memphis.edu/~dengl/dx-rng/dengxu2002.pdf"> A System of High-dimensional, Efficient, Long-cycle and
@@ -28,6 +30,12 @@ public class DX120Generator extends RandomNumberGenerator
     /** the LCG multiplier. */
     private static final long MULTIPLIER = 16807;
 
+    /** the version of the binary state format: index, k13, k23 (ints) followed by the K longs of the buffer. */
+    private static final byte STATE_VERSION = 1;
+
+    /** the length of the binary state after the header, in bytes. */
+    private static final int STATE_LENGTH = 3 * 4 + 8 * K;
+
     /** the buffer for this generator. */
     private long[] buffer = null;
 
@@ -120,4 +128,35 @@ public class DX120Generator extends RandomNumberGenerator
         this.seed = seed;
         this.initialize();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized byte[] saveState()
+    {
+        ByteBuffer byteBuffer = StreamState.create(StreamState.DX120, STATE_VERSION, this.seed, STATE_LENGTH);
+        byteBuffer.putInt(this.index);
+        byteBuffer.putInt(this.k13);
+        byteBuffer.putInt(this.k23);
+        byteBuffer.asLongBuffer().put(this.buffer);
+        return byteBuffer.array();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void restoreState(final byte[] state) throws StreamException
+    {
+        ByteBuffer byteBuffer = StreamState.read(state, StreamState.DX120, STATE_VERSION, STATE_LENGTH);
+        int stateIndex = byteBuffer.getInt();
+        int stateK13 = byteBuffer.getInt();
+        int stateK23 = byteBuffer.getInt();
+        if (stateIndex < 0 || stateIndex >= K || stateK13 < 0 || stateK13 >= K || stateK23 < 0 || stateK23 >= K)
+        {
+            throw new StreamException("state has buffer indexes not in range [0," + K + ")");
+        }
+        byteBuffer.asLongBuffer().get(this.buffer);
+        this.index = stateIndex;
+        this.k13 = stateK13;
+        this.k23 = stateK23;
+        this.seed = StreamState.getSeed(byteBuffer);
+    }
 }
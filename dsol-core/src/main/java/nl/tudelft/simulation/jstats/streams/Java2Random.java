@@ -1,12 +1,12 @@
 package nl.tudelft.simulation.jstats.streams;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
-import nl.tudelft.simulation.language.DSOLException;
-import nl.tudelft.simulation.language.reflection.StateSaver;
-
 /**
- * The Java2Random is an extension of the <code>java.util.Random</code> class which implements the StreamInterface.
+ * The Java2Random is an extension of the <code>java.util.Random</code> class which implements the StreamInterface. The
+ * 48-bit linear congruential state of <code>java.util.Random</code> is kept in this class, so the state can be saved and
+ * restored without serialization. The generated numbers are identical to those of <code>java.util.Random</code>.
  * <p>
  * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -22,6 +22,21 @@ public class Java2Random extends Random implements StreamInterface
     /** */
     private static final long serialVersionUID = 20140831L;
 
+    /** the multiplier of the linear congruential generator of java.util.Random. */
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+
+    /** the addend of the linear congruential generator of java.util.Random. */
+    private static final long ADDEND = 0xBL;
+
+    /** the 48-bit mask of the linear congruential generator of java.util.Random. */
+    private static final long MASK = (1L << 48) - 1;
+
+    /** the version of the binary state format: lcgState (long), haveNextNextGaussian (byte), nextNextGaussian (double). */
+    private static final byte STATE_VERSION = 1;
+
+    /** the length of the binary state after the header, in bytes. */
+    private static final int STATE_LENGTH = 8 + 1 + 8;
+
     /**
      * Seed is a link to the current seed value. The reason to store the seed in this variable is that there is no getSeed() on
      * the Random class in Java.
@@ -31,6 +46,15 @@ public class Java2Random extends Random implements StreamInterface
     /** The original seed of the generator. */
     private final long originalSeed;
 
+    /** the 48-bit state of the linear congruential generator. */
+    private long lcgState;
+
+    /** whether a second Gaussian value has been generated and not yet returned. */
+    private boolean haveNextNextGaussian;
+
+    /** the second Gaussian value of the polar method. */
+    private double nextNextGaussian;
+
     /**
      * Create a new Java2Random and initializes with System.currentTimeMillis.
      */
@@ -76,42 +100,71 @@ public class Java2Random extends Random implements StreamInterface
     public synchronized void setSeed(final long seed)
     {
         this.seed = seed;
-        super.setSeed(seed);
+        this.lcgState = (seed ^ MULTIPLIER) & MASK;
+        this.haveNextNextGaussian = false;
     }
 
     /** {@inheritDoc} */
     @Override
-    public long getSeed()
+    protected synchronized int next(final int bits)
     {
-        return this.seed;
+        this.lcgState = (this.lcgState * MULTIPLIER + ADDEND) & MASK;
+        return (int) (this.lcgState >>> (48 - bits));
     }
 
     /** {@inheritDoc} */
     @Override
-    public byte[] saveState() throws StreamException
+    public synchronized double nextGaussian()
     {
-        try
+        // the polar method of java.util.Random, with the second value stored in this class
+        if (this.haveNextNextGaussian)
         {
-            return StateSaver.saveState(this);
+            this.haveNextNextGaussian = false;
+            return this.nextNextGaussian;
         }
-        catch (DSOLException exception)
+        double v1;
+        double v2;
+        double s;
+        do
         {
-            throw new StreamException(exception);
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
         }
+        while (s >= 1 || s == 0);
+        double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        this.nextNextGaussian = v2 * multiplier;
+        this.haveNextNextGaussian = true;
+        return v1 * multiplier;
     }
 
     /** {@inheritDoc} */
     @Override
-    public void restoreState(final byte[] state) throws StreamException
+    public long getSeed()
     {
-        try
-        {
-            StateSaver.restoreState(this, state);
-        }
-        catch (DSOLException exception)
-        {
-            throw new StreamException(exception);
-        }
+        return this.seed;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized byte[] saveState()
+    {
+        ByteBuffer buffer = StreamState.create(StreamState.JAVA2RANDOM, STATE_VERSION, this.seed, STATE_LENGTH);
+        buffer.putLong(this.lcgState);
+        buffer.put(this.haveNextNextGaussian ? (byte) 1 : (byte) 0);
+        buffer.putDouble(this.nextNextGaussian);
+        return buffer.array();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void restoreState(final byte[] state) throws StreamException
+    {
+        ByteBuffer buffer = StreamState.read(state, StreamState.JAVA2RANDOM, STATE_VERSION, STATE_LENGTH);
+        this.lcgState = buffer.getLong() & MASK;
+        this.haveNextNextGaussian = buffer.get() != 0;
+        this.nextNextGaussian = buffer.getDouble();
+        this.seed = StreamState.getSeed(buffer);
     }
 
 }
@@ -0,0 +1,365 @@
+package nl.tudelft.simulation.jstats.streams;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * The MRG32k3a combined multiple recursive pseudo random number generator of Pierre L'Ecuyer, with the stream and substream
+ * facilities of the RngStreams package. The generator has a period of approximately 2<sup>191</sup>. Substreams are spaced
+ * 2<sup>76</sup> numbers apart, and streams that are split off are spaced 2<sup>127</sup> numbers apart, so parallel
+ * replications that each use their own substream are guaranteed not to overlap. The jump-ahead is carried out by multiplying
+ * the state with precomputed powers of the transition matrices.
+ * <p>
+ * The generator is described in P. L'Ecuyer, Good Parameters and Implementations for Combined Multiple Recursive Random Number
+ * Generators, Operations Research 47(1), 1999, pp. 159-164, and the stream facility in P. L'Ecuyer, R. Simard, E.J. Chen and
+ * W.D. Kelton, An Object-Oriented Random-Number Package with Many Long Streams and Substreams, Operations Research 50(6),
+ * 2002, pp. 1073-1075. Contrary to the MersenneTwister and the DX120Generator, the generator is not synchronized.
+ * </p>
+ * <p>
+ * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class MRG32k3aGenerator extends RandomNumberGenerator implements SplittableStreamInterface
+{
+    /** */
+    private static final long serialVersionUID = 20221019L;
+
+    /** modulus of the first component. */
+    private static final long M1 = 4294967087L;
+
+    /** modulus of the second component. */
+    private static final long M2 = 4294944443L;
+
+    /** multiplier a12 of the first component. */
+    private static final long A12 = 1403580L;
+
+    /** negated multiplier a13 of the first component. */
+    private static final long A13N = 810728L;
+
+    /** multiplier a21 of the second component. */
+    private static final long A21 = 527612L;
+
+    /** negated multiplier a23 of the second component. */
+    private static final long A23N = 1370589L;
+
+    /** normalization factor 1 / (m1 + 1). */
+    private static final double NORM = 2.328306549295727688e-10;
+
+    /** the version of the binary state format: the state, substream state and start state, each 6 longs. */
+    private static final byte STATE_VERSION = 1;
+
+    /** the length of the binary state after the header, in bytes. */
+    private static final int STATE_LENGTH = 3 * 6 * 8;
+
+    /** the transition matrix A1 to the power 2^76 (mod m1), jumping one substream ahead. */
+    static final long[][] A1P76 = powerOfTwo(new long[][] {{0, 1, 0}, {0, 0, 1}, {M1 - A13N, A12, 0}}, 76, M1);
+
+    /** the transition matrix A2 to the power 2^76 (mod m2), jumping one substream ahead. */
+    static final long[][] A2P76 = powerOfTwo(new long[][] {{0, 1, 0}, {0, 0, 1}, {M2 - A23N, 0, A21}}, 76, M2);
+
+    /** the transition matrix A1 to the power 2^127 (mod m1), jumping one stream ahead. */
+    static final long[][] A1P127 = powerOfTwo(new long[][] {{0, 1, 0}, {0, 0, 1}, {M1 - A13N, A12, 0}}, 127, M1);
+
+    /** the transition matrix A2 to the power 2^127 (mod m2), jumping one stream ahead. */
+    static final long[][] A2P127 = powerOfTwo(new long[][] {{0, 1, 0}, {0, 0, 1}, {M2 - A23N, 0, A21}}, 127, M2);
+
+    /** the current state; s[0..2] for the first component and s[3..5] for the second component. */
+    private long[] state;
+
+    /** the state at the start of the current substream. */
+    private long[] substreamState;
+
+    /** the start state of the stream, belonging to the seed or to the moment the stream was split off. */
+    private long[] startState;
+
+    /**
+     * Construct a new MRG32k3aGenerator. The seed value used equals System.currentTimeMillis().
+     */
+    public MRG32k3aGenerator()
+    {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Construct a new MRG32k3aGenerator with a given seed. The six state values of the generator are derived from the seed.
+     * @param seed long; the seed
+     */
+    public MRG32k3aGenerator(final long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Construct a new MRG32k3aGenerator that starts at the given state; used to split off a stream.
+     * @param seed long; the seed of the generator from which this stream is split off
+     * @param startState long[]; the start state of the new stream
+     */
+    private MRG32k3aGenerator(final long seed, final long[] startState)
+    {
+        super(seed);
+        this.startState = startState.clone();
+        this.substreamState = startState.clone();
+        this.state = startState.clone();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double nextDouble()
+    {
+        long[] s = this.state;
+        long p1 = (A12 * s[1] - A13N * s[0]) % M1;
+        if (p1 < 0)
+        {
+            p1 += M1;
+        }
+        s[0] = s[1];
+        s[1] = s[2];
+        s[2] = p1;
+        long p2 = (A21 * s[5] - A23N * s[3]) % M2;
+        if (p2 < 0)
+        {
+            p2 += M2;
+        }
+        s[3] = s[4];
+        s[4] = s[5];
+        s[5] = p2;
+        return (p1 > p2) ? (p1 - p2) * NORM : (p1 - p2 + M1) * NORM;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long next(final int bits)
+    {
+        if (bits < 0 || bits > 64)
+        {
+            throw new IllegalArgumentException("bits (" + bits + ") not in range [0,64]");
+        }
+        // one draw delivers 32 bits of resolution
+        if (bits <= 32)
+        {
+            return (long) (nextDouble() * (1L << bits));
+        }
+        return (next(32) << (bits - 32)) | next(bits - 32);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setSeed(final long seed)
+    {
+        this.seed = seed;
+        long[] s = new long[6];
+        long z = seed;
+        for (int i = 0; i < 6; i++)
+        {
+            z += 0x9E3779B97F4A7C15L;
+            s[i] = Long.remainderUnsigned(mix64(z), i < 3 ? M1 : M2);
+        }
+        // each component needs at least one non-zero value
+        if (s[0] == 0 && s[1] == 0 && s[2] == 0)
+        {
+            s[0] = 12345L;
+        }
+        if (s[3] == 0 && s[4] == 0 && s[5] == 0)
+        {
+            s[3] = 12345L;
+        }
+        this.startState = s;
+        this.substreamState = s.clone();
+        this.state = s.clone();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset()
+    {
+        this.substreamState = this.startState.clone();
+        this.state = this.startState.clone();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void nextSubstream()
+    {
+        this.substreamState = jump(A1P76, A2P76, this.substreamState);
+        this.state = this.substreamState.clone();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setSubstream(final long substreamIndex)
+    {
+        Throw.when(substreamIndex < 0, IllegalArgumentException.class, "substreamIndex < 0");
+        long[] s = this.startState.clone();
+        long[][] a1 = A1P76;
+        long[][] a2 = A2P76;
+        long n = substreamIndex;
+        while (n > 0)
+        {
+            if ((n & 1L) != 0)
+            {
+                s = jump(a1, a2, s);
+            }
+            n >>>= 1;
+            if (n > 0)
+            {
+                a1 = multiply(a1, a1, M1);
+                a2 = multiply(a2, a2, M2);
+            }
+        }
+        this.substreamState = s;
+        this.state = s.clone();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public MRG32k3aGenerator split()
+    {
+        MRG32k3aGenerator stream = new MRG32k3aGenerator(this.seed, this.state);
+        this.state = jump(A1P127, A2P127, this.state);
+        this.substreamState = jump(A1P127, A2P127, this.substreamState);
+        return stream;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] saveState()
+    {
+        ByteBuffer buffer = StreamState.create(StreamState.MRG32K3A, STATE_VERSION, this.seed, STATE_LENGTH);
+        LongBuffer longBuffer = buffer.asLongBuffer();
+        longBuffer.put(this.state);
+        longBuffer.put(this.substreamState);
+        longBuffer.put(this.startState);
+        return buffer.array();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void restoreState(final byte[] savedState) throws StreamException
+    {
+        ByteBuffer buffer = StreamState.read(savedState, StreamState.MRG32K3A, STATE_VERSION, STATE_LENGTH);
+        LongBuffer longBuffer = buffer.asLongBuffer();
+        long[] s = new long[6];
+        long[] sub = new long[6];
+        long[] start = new long[6];
+        longBuffer.get(s);
+        longBuffer.get(sub);
+        longBuffer.get(start);
+        for (int i = 0; i < 6; i++)
+        {
+            long m = i < 3 ? M1 : M2;
+            if (s[i] < 0 || s[i] >= m || sub[i] < 0 || sub[i] >= m || start[i] < 0 || start[i] >= m)
+            {
+                throw new StreamException("state value out of range for MRG32k3a");
+            }
+        }
+        this.state = s;
+        this.substreamState = sub;
+        this.startState = start;
+        this.seed = StreamState.getSeed(buffer);
+    }
+
+    /**
+     * Apply the jump matrices for both components to a state.
+     * @param a1 long[][]; the 3x3 matrix for the first component
+     * @param a2 long[][]; the 3x3 matrix for the second component
+     * @param s long[]; the state of 6 values to jump
+     * @return long[]; a new state array with the jumped state
+     */
+    private static long[] jump(final long[][] a1, final long[][] a2, final long[] s)
+    {
+        long[] result = new long[6];
+        for (int i = 0; i < 3; i++)
+        {
+            long v1 = 0;
+            long v2 = 0;
+            for (int j = 0; j < 3; j++)
+            {
+                v1 = (v1 + multiplyMod(a1[i][j], s[j], M1)) % M1;
+                v2 = (v2 + multiplyMod(a2[i][j], s[j + 3], M2)) % M2;
+            }
+            result[i] = v1;
+            result[i + 3] = v2;
+        }
+        return result;
+    }
+
+    /**
+     * Compute the matrix power a^(2^e) mod m by repeated squaring.
+     * @param a long[][]; the 3x3 matrix
+     * @param e int; the exponent of 2
+     * @param m long; the modulus
+     * @return long[][]; a^(2^e) mod m
+     */
+    private static long[][] powerOfTwo(final long[][] a, final int e, final long m)
+    {
+        long[][] result = a;
+        for (int i = 0; i < e; i++)
+        {
+            result = multiply(result, result, m);
+        }
+        return result;
+    }
+
+    /**
+     * Multiply two 3x3 matrices modulo m.
+     * @param a long[][]; the first matrix
+     * @param b long[][]; the second matrix
+     * @param m long; the modulus
+     * @return long[][]; a * b mod m
+     */
+    private static long[][] multiply(final long[][] a, final long[][] b, final long m)
+    {
+        long[][] c = new long[3][3];
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                long v = 0;
+                for (int k = 0; k < 3; k++)
+                {
+                    v = (v + multiplyMod(a[i][k], b[k][j], m)) % m;
+                }
+                c[i][j] = v;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Compute (a * b) mod m without overflow, for 0 &lt;= a, b &lt; m &lt; 2<sup>32</sup>.
+     * @param a long; the first factor
+     * @param b long; the second factor
+     * @param m long; the modulus
+     * @return long; (a * b) mod m
+     */
+    private static long multiplyMod(final long a, final long b, final long m)
+    {
+        return ((((a >>> 16) * b) % m << 16) + (a & 0xFFFFL) * b) % m;
+    }
+
+    /**
+     * The SplitMix64 finalizer, used to spread the bits of the seed over the state values.
+     * @param z long; the value to mix
+     * @return long; the mixed value
+     */
+    static long mix64(final long z)
+    {
+        long x = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "MRG32k3aGenerator[" + this.seed + "]";
+    }
+}
@@ -1,5 +1,7 @@
 package nl.tudelft.simulation.jstats.streams;
 
+import java.nio.ByteBuffer;
+
 /**
  * A java implementation of the Mersenne Twister pseudo random number generator.
  * <p>
@@ -52,6 +54,12 @@ public class MersenneTwister extends RandomNumberGenerator
     /** unsigned mask for promoting int -> long. */
     private static final int UMASK = (1 << 31) - 1;
 
+    /** the version of the binary state format: mti (int) followed by the N ints of the state vector. */
+    private static final byte STATE_VERSION = 1;
+
+    /** the length of the binary state after the header, in bytes. */
+    private static final int STATE_LENGTH = 4 + 4 * N;
+
     /** the array for the state vector. */
     private int[] mt;
 
@@ -148,4 +156,29 @@ public class MersenneTwister extends RandomNumberGenerator
         super.seed = seed;
         this.initialize();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized byte[] saveState()
+    {
+        ByteBuffer buffer = StreamState.create(StreamState.MERSENNE_TWISTER, STATE_VERSION, this.seed, STATE_LENGTH);
+        buffer.putInt(this.mti);
+        buffer.asIntBuffer().put(this.mt);
+        return buffer.array();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void restoreState(final byte[] state) throws StreamException
+    {
+        ByteBuffer buffer = StreamState.read(state, StreamState.MERSENNE_TWISTER, STATE_VERSION, STATE_LENGTH);
+        int stateMti = buffer.getInt();
+        if (stateMti < 0 || stateMti > N)
+        {
+            throw new StreamException("state has mti " + stateMti + " not in range [0," + N + "]");
+        }
+        buffer.asIntBuffer().get(this.mt);
+        this.mti = stateMti;
+        this.seed = StreamState.getSeed(buffer);
+    }
 }
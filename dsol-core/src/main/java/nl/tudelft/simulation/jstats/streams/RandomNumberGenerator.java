@@ -95,7 +95,7 @@ public abstract class RandomNumberGenerator implements StreamInterface
 
     /** {@inheritDoc} */
     @Override
-    public synchronized int nextInt(final int i, final int j)
+    public int nextInt(final int i, final int j)
     {
         if (i < 0 || j <= 0 || i >= j)
         {
@@ -136,7 +136,10 @@ public abstract class RandomNumberGenerator implements StreamInterface
         return this.getClass().toString() + "[" + this.seed + "]";
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc} This default implementation serializes the entire generator, and restoreState() copies the fields back
+     * using reflection. The generators in this package override both methods with a compact binary state format.
+     */
     @Override
     public byte[] saveState() throws StreamException
     {
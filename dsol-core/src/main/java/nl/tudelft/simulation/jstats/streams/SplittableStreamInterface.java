@@ -0,0 +1,41 @@
+package nl.tudelft.simulation.jstats.streams;
+
+/**
+ * The SplittableStreamInterface defines streams that can be partitioned into guaranteed non-overlapping substreams, e.g. to
+ * hand each replication or each parallel thread its own part of the period of the generator. Implementations are not
+ * synchronized; a stream and its substreams are meant to be used by one thread at a time.
+ * <p>
+ * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public interface SplittableStreamInterface extends StreamInterface
+{
+    /**
+     * Advance the state of the stream to the start of the next substream, i.e., jump ahead over the remaining numbers of the
+     * current substream. The substream length is specific for the generator, and is large enough to never be exhausted by a
+     * single replication.
+     */
+    void nextSubstream();
+
+    /**
+     * Set the state of the stream to the start of the substream with the given index, counted from the start state of the
+     * stream (the state belonging to the seed, or the state at which the stream was split off). Substream 0 is the start
+     * state itself. The method is reproducible: calling it twice with the same index gives the same sequence of numbers.
+     * @param substreamIndex long; the index of the substream (&gt;= 0)
+     * @throws IllegalArgumentException when substreamIndex &lt; 0
+     */
+    void setSubstream(long substreamIndex);
+
+    /**
+     * Split off a new stream that is guaranteed not to overlap with this stream. The returned stream starts at the current
+     * state of this stream, after which this stream is advanced over a 'stream length', which is a multiple of the substream
+     * length. Both the new stream and this stream can therefore use many substreams without overlapping.
+     * @return SplittableStreamInterface; a new, independent stream of the same type
+     */
+    SplittableStreamInterface split();
+}
@@ -0,0 +1,115 @@
+package nl.tudelft.simulation.jstats.streams;
+
+import java.nio.ByteBuffer;
+
+/**
+ * StreamState contains the helper methods for the compact binary state format of the streams, used by saveState() and
+ * restoreState(). Each state starts with a header of 14 bytes: a magic number (4 bytes), the stream type (1 byte), the format
+ * version (1 byte), and the current seed of the stream (8 bytes). The header is followed by the state of the generator, which
+ * is specific for the stream type, in big-endian order. The original seed of a stream is not part of its state.
+ * <p>
+ * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+final class StreamState
+{
+    /** the magic number at the start of each state: "DSRS". */
+    static final int MAGIC = 0x44535253;
+
+    /** the length of the header in bytes. */
+    static final int HEADER_LENGTH = 14;
+
+    /** stream type of the MersenneTwister. */
+    static final byte MERSENNE_TWISTER = 1;
+
+    /** stream type of the DX120Generator. */
+    static final byte DX120 = 2;
+
+    /** stream type of Java2Random. */
+    static final byte JAVA2RANDOM = 3;
+
+    /** stream type of the MRG32k3aGenerator. */
+    static final byte MRG32K3A = 4;
+
+    /** stream type of the Xoshiro256Generator. */
+    static final byte XOSHIRO256 = 5;
+
+    /** */
+    private StreamState()
+    {
+        // utility class
+    }
+
+    /**
+     * Create a buffer for the state of a stream, and write the header.
+     * @param type byte; the stream type
+     * @param version byte; the version of the format of the stream type
+     * @param seed long; the current seed of the stream
+     * @param stateLength int; the number of bytes of the state after the header
+     * @return ByteBuffer; a buffer with the header written, positioned at the start of the state
+     */
+    static ByteBuffer create(final byte type, final byte version, final long seed, final int stateLength)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + stateLength);
+        buffer.putInt(MAGIC);
+        buffer.put(type);
+        buffer.put(version);
+        buffer.putLong(seed);
+        return buffer;
+    }
+
+    /**
+     * Wrap an earlier saved state in a buffer after checking the header and the length. The seed in the header can be
+     * retrieved afterwards with getSeed().
+     * @param state byte[]; the earlier saved state
+     * @param type byte; the expected stream type
+     * @param version byte; the expected version of the format of the stream type
+     * @param stateLength int; the expected number of bytes of the state after the header
+     * @return ByteBuffer; a buffer positioned at the start of the state
+     * @throws StreamException when the state is null, has the wrong length, or belongs to another stream type or version
+     */
+    static ByteBuffer read(final byte[] state, final byte type, final byte version, final int stateLength)
+            throws StreamException
+    {
+        if (state == null)
+        {
+            throw new StreamException("state cannot be null");
+        }
+        if (state.length != HEADER_LENGTH + stateLength)
+        {
+            throw new StreamException("state has length " + state.length + ", expected " + (HEADER_LENGTH + stateLength));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(state);
+        if (buffer.getInt() != MAGIC)
+        {
+            throw new StreamException("state does not start with the stream state magic number");
+        }
+        byte stateType = buffer.get();
+        if (stateType != type)
+        {
+            throw new StreamException("state has stream type " + stateType + ", expected " + type);
+        }
+        byte stateVersion = buffer.get();
+        if (stateVersion != version)
+        {
+            throw new StreamException("state has format version " + stateVersion + ", expected " + version);
+        }
+        buffer.getLong(); // the seed, which can be retrieved with getSeed()
+        return buffer;
+    }
+
+    /**
+     * Return the seed that is stored in the header of a state that has been checked with read().
+     * @param buffer ByteBuffer; the buffer returned by read()
+     * @return long; the seed stored in the header
+     */
+    static long getSeed(final ByteBuffer buffer)
+    {
+        return buffer.getLong(HEADER_LENGTH - 8);
+    }
+}
@@ -0,0 +1,283 @@
+package nl.tudelft.simulation.jstats.streams;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * The xoshiro256** pseudo random number generator of David Blackman and Sebastiano Vigna, with a period of
+ * 2<sup>256</sup>-1. The generator is very fast, has a small state of four longs, and supports jump-ahead. Substreams are
+ * spaced 2<sup>128</sup> numbers apart, and streams that are split off are spaced 2<sup>192</sup> numbers apart, so parallel
+ * replications that each use their own substream are guaranteed not to overlap. The generator is described in D. Blackman
+ * and S. Vigna, Scrambled Linear Pseudorandom Number Generators, ACM Transactions on Mathematical Software 47(4), 2021, and
+ * at <a href="https://prng.di.unimi.it/">https://prng.di.unimi.it/</a>. Contrary to the MersenneTwister and the
+ * DX120Generator, the generator is not synchronized.
+ * <p>
+ * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class Xoshiro256Generator extends RandomNumberGenerator implements SplittableStreamInterface
+{
+    /** */
+    private static final long serialVersionUID = 20221019L;
+
+    /** the jump polynomial for 2^128 steps. */
+    private static final long[] JUMP = {0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+
+    /** the jump polynomial for 2^192 steps. */
+    private static final long[] LONG_JUMP =
+            {0x76e15d3efefdcbbfL, 0xc5004e441c522fb3L, 0x77710069854ee241L, 0x39109bb02acbe635L};
+
+    /** the version of the binary state format: the state, substream state and start state, each 4 longs. */
+    private static final byte STATE_VERSION = 1;
+
+    /** the length of the binary state after the header, in bytes. */
+    private static final int STATE_LENGTH = 3 * 4 * 8;
+
+    /** state value 0. */
+    private long s0;
+
+    /** state value 1. */
+    private long s1;
+
+    /** state value 2. */
+    private long s2;
+
+    /** state value 3. */
+    private long s3;
+
+    /** the state at the start of the current substream. */
+    private long[] substreamState;
+
+    /** the start state of the stream, belonging to the seed or to the moment the stream was split off. */
+    private long[] startState;
+
+    /**
+     * Construct a new Xoshiro256Generator. The seed value used equals System.currentTimeMillis().
+     */
+    public Xoshiro256Generator()
+    {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Construct a new Xoshiro256Generator with a given seed. The four state values are derived from the seed with the
+     * SplitMix64 generator, as recommended by the authors.
+     * @param seed long; the seed
+     */
+    public Xoshiro256Generator(final long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Construct a new Xoshiro256Generator that starts at the given state; used to split off a stream.
+     * @param seed long; the seed of the generator from which this stream is split off
+     * @param startState long[]; the start state of the new stream
+     */
+    private Xoshiro256Generator(final long seed, final long[] startState)
+    {
+        super(seed);
+        this.startState = startState.clone();
+        this.substreamState = startState.clone();
+        setState(startState);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long nextLong()
+    {
+        final long result = Long.rotateLeft(this.s1 * 5, 7) * 9;
+        final long t = this.s1 << 17;
+        this.s2 ^= this.s0;
+        this.s3 ^= this.s1;
+        this.s1 ^= this.s2;
+        this.s0 ^= this.s3;
+        this.s2 ^= t;
+        this.s3 = Long.rotateLeft(this.s3, 45);
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected long next(final int bits)
+    {
+        if (bits < 0 || bits > 64)
+        {
+            throw new IllegalArgumentException("bits (" + bits + ") not in range [0,64]");
+        }
+        return bits == 0 ? 0L : nextLong() >>> (64 - bits);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setSeed(final long seed)
+    {
+        this.seed = seed;
+        long[] s = new long[4];
+        long z = seed;
+        for (int i = 0; i < 4; i++)
+        {
+            z += 0x9E3779B97F4A7C15L;
+            s[i] = MRG32k3aGenerator.mix64(z);
+        }
+        if ((s[0] | s[1] | s[2] | s[3]) == 0)
+        {
+            s[0] = 1L; // the all-zero state is not allowed
+        }
+        this.startState = s;
+        this.substreamState = s.clone();
+        setState(s);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset()
+    {
+        this.substreamState = this.startState.clone();
+        setState(this.startState);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void nextSubstream()
+    {
+        setState(this.substreamState);
+        jump(JUMP);
+        this.substreamState = getState();
+    }
+
+    /**
+     * {@inheritDoc} The jump to substream n takes n jumps of 2<sup>128</sup>, each costing 256 generator steps.
+     */
+    @Override
+    public void setSubstream(final long substreamIndex)
+    {
+        Throw.when(substreamIndex < 0, IllegalArgumentException.class, "substreamIndex < 0");
+        setState(this.startState);
+        for (long i = 0; i < substreamIndex; i++)
+        {
+            jump(JUMP);
+        }
+        this.substreamState = getState();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Xoshiro256Generator split()
+    {
+        Xoshiro256Generator stream = new Xoshiro256Generator(this.seed, getState());
+        jump(LONG_JUMP);
+        long[] current = getState();
+        setState(this.substreamState);
+        jump(LONG_JUMP);
+        this.substreamState = getState();
+        setState(current);
+        return stream;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] saveState()
+    {
+        ByteBuffer buffer = StreamState.create(StreamState.XOSHIRO256, STATE_VERSION, this.seed, STATE_LENGTH);
+        LongBuffer longBuffer = buffer.asLongBuffer();
+        longBuffer.put(this.s0).put(this.s1).put(this.s2).put(this.s3);
+        longBuffer.put(this.substreamState);
+        longBuffer.put(this.startState);
+        return buffer.array();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void restoreState(final byte[] state) throws StreamException
+    {
+        ByteBuffer buffer = StreamState.read(state, StreamState.XOSHIRO256, STATE_VERSION, STATE_LENGTH);
+        LongBuffer longBuffer = buffer.asLongBuffer();
+        long[] s = new long[4];
+        long[] sub = new long[4];
+        long[] start = new long[4];
+        longBuffer.get(s);
+        longBuffer.get(sub);
+        longBuffer.get(start);
+        if ((s[0] | s[1] | s[2] | s[3]) == 0)
+        {
+            throw new StreamException("the all-zero state is not allowed for xoshiro256**");
+        }
+        setState(s);
+        this.substreamState = sub;
+        this.startState = start;
+        this.seed = StreamState.getSeed(buffer);
+    }
+
+    /**
+     * Jump the current state ahead with the given jump polynomial.
+     * @param polynomial long[]; the jump polynomial
+     */
+    private void jump(final long[] polynomial)
+    {
+        long j0 = 0;
+        long j1 = 0;
+        long j2 = 0;
+        long j3 = 0;
+        for (long p : polynomial)
+        {
+            for (int b = 0; b < 64; b++)
+            {
+                if ((p & (1L << b)) != 0)
+                {
+                    j0 ^= this.s0;
+                    j1 ^= this.s1;
+                    j2 ^= this.s2;
+                    j3 ^= this.s3;
+                }
+                nextLong();
+            }
+        }
+        this.s0 = j0;
+        this.s1 = j1;
+        this.s2 = j2;
+        this.s3 = j3;
+    }
+
+    /**
+     * Return a copy of the current state.
+     * @return long[]; the four state values
+     */
+    private long[] getState()
+    {
+        return new long[] {this.s0, this.s1, this.s2, this.s3};
+    }
+
+    /**
+     * Set the current state.
+     * @param s long[]; the four state values
+     */
+    private void setState(final long[] s)
+    {
+        this.s0 = s[0];
+        this.s1 = s[1];
+        this.s2 = s[2];
+        this.s3 = s[3];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "Xoshiro256Generator[" + this.seed + "]";
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Map;
 import org.djutils.exceptions.Try;
 import org.junit.Test;
 
+import nl.tudelft.simulation.jstats.streams.MRG32k3aGenerator;
 import nl.tudelft.simulation.jstats.streams.MersenneTwister;
 import nl.tudelft.simulation.jstats.streams.StreamInterface;
 
@@ -140,4 +141,46 @@ public class StreamInformationTest
         ssu.updateSeed("default", si.getStream("default"), 2);
         assertEquals(99L, si.getStream("default").getSeed());
     }
+
+    /**
+     * Test the SubstreamUpdater object.
+     */
+    @Test
+    public void testSubstreamUpdater()
+    {
+        SubstreamUpdater su = new SubstreamUpdater();
+        assertEquals(SimpleStreamUpdater.class, su.getFallbackStreamUpdater().getClass());
+        MRG32k3aGenerator mrg = new MRG32k3aGenerator(10L);
+        MRG32k3aGenerator check = new MRG32k3aGenerator(10L);
+        su.updateSeed("default", mrg, 0);
+        assertEquals(check.nextDouble(), mrg.nextDouble(), 0.0);
+        su.updateSeed("default", mrg, 3);
+        assertEquals(10L, mrg.getSeed());
+        check.setSubstream(3);
+        assertEquals(check.nextDouble(), mrg.nextDouble(), 0.0);
+        mrg.setSeed(20L);
+        su.updateSeed("default", mrg, 3);
+        assertEquals(10L, mrg.getSeed());
+        check.setSubstream(3);
+        assertEquals(check.nextDouble(), mrg.nextDouble(), 0.0);
+
+        // fallback for a stream that cannot be split
+        StreamInterface mt = new MersenneTwister(10L);
+        su.updateSeed("default", mt, 2);
+        assertNotEquals(10L, mt.getSeed());
+        su.setFallbackStreamUpdater(new StreamUpdater()
+        {
+            /** */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void updateSeed(final String streamId, final StreamInterface stream, final int replicationNumber)
+            {
+                stream.setSeed(99L);
+            }
+        });
+        su.updateSeed("default", mt, 2);
+        assertEquals(99L, mt.getSeed());
+        Try.testFail(() -> { su.setFallbackStreamUpdater(null); });
+    }
 }
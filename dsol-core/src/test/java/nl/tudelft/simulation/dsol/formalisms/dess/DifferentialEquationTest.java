@@ -0,0 +1,331 @@
+package nl.tudelft.simulation.dsol.formalisms.dess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.djutils.exceptions.Try;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.SingleReplication;
+import nl.tudelft.simulation.dsol.model.AbstractDSOLModel;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simulators.DEVDESSSimulator;
+import nl.tudelft.simulation.dsol.simulators.DEVDESSSimulatorInterface;
+import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
+import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegratorType;
+import nl.tudelft.simulation.language.DSOLRuntimeException;
+
+/**
+ * DifferentialEquationTest checks the state events of the DifferentialEquation on a DEVDESS simulator with a falling ball: the
+ * look-ahead at the start of each time step, the location of the crossing of the floor, and the scheduling of the handler at
+ * the analytic time of the crossing.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class DifferentialEquationTest
+{
+    /** the tolerance for the time of a state event. */
+    private static final double TOLERANCE = 1.0E-6;
+
+    /**
+     * Test that a ball that falls from 10 m and bounces with half of its speed hits the floor at the analytic times. The step
+     * size of the equation does not divide the time step of the simulator, so the last step of each look-ahead is clamped.
+     * @throws SimRuntimeException on simulation error
+     * @throws RemoteException on remote network exception for the listener
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testFallingBall() throws SimRuntimeException, RemoteException, InterruptedException
+    {
+        for (NumericalIntegratorType integrator : new NumericalIntegratorType[] {NumericalIntegratorType.RUNGEKUTTA4,
+                NumericalIntegratorType.ADAMS})
+        {
+            BallModel model = run(9.81, 0.0, 10.0, 0.5, 0.1, 0.03, integrator, 3.0);
+            // t1 = sqrt(2h/g); the ball goes up with half of the speed g.t1, and hits the floor again after g.t1 / g = t1
+            double t1 = Math.sqrt(2.0 * 10.0 / 9.81);
+            assertEquals(integrator + ": " + model.impacts, 2, model.impacts.size());
+            assertEquals(integrator.toString(), t1, model.impacts.get(0), TOLERANCE);
+            assertEquals(integrator.toString(), 2.0 * t1, model.impacts.get(1), TOLERANCE);
+            for (double height : model.heights)
+            {
+                assertEquals(integrator.toString(), 0.0, height, TOLERANCE);
+            }
+            // the look-ahead takes place at the start of every time step, and ends at the end of the step
+            assertEquals(3.0, model.stepEnds.get(model.stepEnds.size() - 1), 0.1);
+            for (int i = 0; i < model.stepEnds.size(); i++)
+            {
+                assertEquals(0.1 * (i + 1), model.stepEnds.get(i), 1.0E-9);
+            }
+        }
+    }
+
+    /**
+     * Test the bounces of a ball with quadratic air drag, for which the ODE is not a polynomial, with a step size that divides
+     * the time step of the simulator and with a step size that does not. The Adams integrator continues with the values of its
+     * earlier steps from one time step to the next, and starts again with its primer after each bounce.
+     * @throws SimRuntimeException on simulation error
+     * @throws RemoteException on remote network exception for the listener
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testDrag() throws SimRuntimeException, RemoteException, InterruptedException
+    {
+        double g = 9.81;
+        double k = 0.05;
+        double vt = Math.sqrt(g / k);
+        double rate = Math.sqrt(g * k);
+        // falling from h: h - y = ln(cosh(rate.t)) / k; going up with v0: the apex is after atan(v0 / vt) / rate
+        double t1 = acosh(Math.exp(k * 10.0)) / rate;
+        double v0 = 0.5 * vt * Math.tanh(rate * t1);
+        double apex = Math.log(1.0 + v0 * v0 / (vt * vt)) / (2.0 * k);
+        double t2 = t1 + Math.atan(v0 / vt) / rate + acosh(Math.exp(k * apex)) / rate;
+        for (double stepSize : new double[] {0.025, 0.03})
+        {
+            for (NumericalIntegratorType integrator : new NumericalIntegratorType[] {NumericalIntegratorType.RUNGEKUTTA4,
+                    NumericalIntegratorType.ADAMS})
+            {
+                BallModel model = run(g, k, 10.0, 0.5, 0.1, stepSize, integrator, 3.0);
+                String m = integrator + ", step size " + stepSize + ": " + model.impacts;
+                assertEquals(m, 2, model.impacts.size());
+                assertEquals(m, t1, model.impacts.get(0), 1.0E-5);
+                assertEquals(m, t2, model.impacts.get(1), 1.0E-5);
+                if (integrator == NumericalIntegratorType.ADAMS)
+                {
+                    // a start takes 4 primer steps of 10 RK4 sub steps of 4 evaluations; the integrator starts 3 times, and
+                    // starting again in every time step would take more than 30 * 160 evaluations
+                    assertTrue(m + ", " + model.ball.evaluations, model.ball.evaluations < 2000);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the inverse of the hyperbolic cosine.
+     * @param x double; the value, at least 1
+     * @return double; the non-negative value of which the hyperbolic cosine is x
+     */
+    private static double acosh(final double x)
+    {
+        return Math.log(x + Math.sqrt(x * x - 1.0));
+    }
+
+    /**
+     * Test that a crossing that takes place exactly at the end of a time step, which is also an integration point, fires the
+     * state event once.
+     * @throws SimRuntimeException on simulation error
+     * @throws RemoteException on remote network exception for the listener
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testCrossingOnStepBoundary() throws SimRuntimeException, RemoteException, InterruptedException
+    {
+        // y = 1 - t^2 hits the floor at t = 1.0, the end of the fourth time step; the ball does not bounce
+        BallModel model = run(2.0, 0.0, 1.0, 0.0, 0.25, 0.125, NumericalIntegratorType.RUNGEKUTTA4, 2.0);
+        assertEquals(model.impacts.toString(), 1, model.impacts.size());
+        assertEquals(1.0, model.impacts.get(0), TOLERANCE);
+    }
+
+    /**
+     * Test that a state event cannot be added to an equation with a negative step size, for which the look-ahead would never
+     * reach the end of the time step.
+     * @throws SimRuntimeException on simulation error
+     * @throws RemoteException on remote network exception for the listener
+     */
+    @Test
+    public void testNegativeStepSize() throws SimRuntimeException, RemoteException
+    {
+        DEVDESSSimulator.TimeDouble simulator = new DEVDESSSimulator.TimeDouble("sim", 0.1);
+        Ball ball = new Ball(simulator, -0.01, NumericalIntegratorType.RUNGEKUTTA4, 9.81, 0.0);
+        Try.testFail(() -> ball.addStateEvent((x, y) -> y[0], StateEventDirection.DECREASING, () ->
+        {
+            // no handler
+        }), DSOLRuntimeException.class);
+    }
+
+    /**
+     * Run the falling ball until the end of the replication.
+     * @param gravity double; the gravitational acceleration
+     * @param drag double; the coefficient of the quadratic air drag per unit of mass
+     * @param height double; the initial height of the ball
+     * @param restitution double; the fraction of the speed with which the ball bounces
+     * @param timeStep double; the time step of the simulator
+     * @param stepSize double; the step size of the equation
+     * @param integrator NumericalIntegratorType; the integrator of the equation
+     * @param endTime double; the end time of the replication
+     * @return BallModel; the model with the results of the run
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    private static BallModel run(final double gravity, final double drag, final double height, final double restitution,
+            final double timeStep, final double stepSize, final NumericalIntegratorType integrator, final double endTime)
+            throws SimRuntimeException, InterruptedException
+    {
+        DEVDESSSimulator.TimeDouble simulator = new DEVDESSSimulator.TimeDouble("sim", timeStep);
+        BallModel model = new BallModel(simulator, gravity, drag, height, restitution, stepSize, integrator);
+        simulator.initialize(model, new SingleReplication.TimeDouble("rep", 0.0, 0.0, endTime));
+        CountDownLatch stopped = new CountDownLatch(1);
+        simulator.addListener(event -> stopped.countDown(), SimulatorInterface.STOP_EVENT);
+        simulator.start();
+        assertTrue("the simulator did not stop", stopped.await(60, TimeUnit.SECONDS));
+        return model;
+    }
+
+    /** The model with the falling ball, which records the times of the impacts and of the ends of the time steps. */
+    static class BallModel extends AbstractDSOLModel.TimeDouble<DEVDESSSimulatorInterface.TimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the times of the impacts. */
+        private final List<Double> impacts = new ArrayList<>();
+
+        /** the heights of the ball at the impacts. */
+        private final List<Double> heights = new ArrayList<>();
+
+        /** the ends of the time steps of the STEP_STARTED_EVENTs. */
+        private final List<Double> stepEnds = new ArrayList<>();
+
+        /** the gravitational acceleration. */
+        private final double gravity;
+
+        /** the coefficient of the quadratic air drag per unit of mass. */
+        private final double drag;
+
+        /** the initial height of the ball. */
+        private final double height;
+
+        /** the fraction of the speed with which the ball bounces. */
+        private final double restitution;
+
+        /** the step size of the equation. */
+        private final double stepSize;
+
+        /** the integrator of the equation. */
+        private final NumericalIntegratorType integrator;
+
+        /** the ball. */
+        private Ball ball;
+
+        /**
+         * @param simulator DEVDESSSimulatorInterface.TimeDouble; the simulator
+         * @param gravity double; the gravitational acceleration
+         * @param drag double; the coefficient of the quadratic air drag per unit of mass
+         * @param height double; the initial height of the ball
+         * @param restitution double; the fraction of the speed with which the ball bounces
+         * @param stepSize double; the step size of the equation
+         * @param integrator NumericalIntegratorType; the integrator of the equation
+         */
+        BallModel(final DEVDESSSimulatorInterface.TimeDouble simulator, final double gravity, final double drag,
+                final double height, final double restitution, final double stepSize, final NumericalIntegratorType integrator)
+        {
+            super(simulator);
+            this.gravity = gravity;
+            this.drag = drag;
+            this.height = height;
+            this.restitution = restitution;
+            this.stepSize = stepSize;
+            this.integrator = integrator;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void constructModel() throws SimRuntimeException
+        {
+            try
+            {
+                Ball ball = new Ball(getSimulator(), this.stepSize, this.integrator, this.gravity, this.drag);
+                this.ball = ball;
+                ball.initialize(0.0, new double[] {this.height, 0.0});
+                ball.addStateEvent((x, y) -> y[0], StateEventDirection.DECREASING, () ->
+                {
+                    double time = getSimulator().getSimulatorTime();
+                    this.impacts.add(time);
+                    this.heights.add(ball.previousY[0]);
+                    if (this.restitution > 0.0)
+                    {
+                        ball.initialize(time, new double[] {0.0, -this.restitution * ball.previousY[1]});
+                    }
+                });
+                getSimulator().addListener(
+                        event -> this.stepEnds.add(((Number) event.getContent()).doubleValue()),
+                        DEVDESSSimulatorInterface.STEP_STARTED_EVENT);
+                // the simulator stops when its event list is empty, so an event at the end keeps it running
+                getSimulator().scheduleEventAbs(getSimulator().getReplication().getEndSimTime().get(), () ->
+                {
+                    // end of the run
+                });
+            }
+            catch (RemoteException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return "BallModel";
+        }
+    }
+
+    /** The falling ball, with y[0] the height and y[1] the vertical speed, and an optional quadratic air drag. */
+    static class Ball extends DifferentialEquation<Double, Double, SimTimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the gravitational acceleration. */
+        private final double gravity;
+
+        /** the coefficient of the quadratic air drag per unit of mass. */
+        private final double drag;
+
+        /** the number of evaluations of the derivative. */
+        private int evaluations = 0;
+
+        /**
+         * @param simulator DEVDESSSimulatorInterface.TimeDouble; the simulator
+         * @param stepSize double; the step size of the equation
+         * @param integrator NumericalIntegratorType; the integrator of the equation
+         * @param gravity double; the gravitational acceleration
+         * @param drag double; the coefficient of the quadratic air drag per unit of mass
+         * @throws RemoteException on remote network exception for the listener
+         */
+        Ball(final DEVDESSSimulatorInterface.TimeDouble simulator, final double stepSize,
+                final NumericalIntegratorType integrator, final double gravity, final double drag) throws RemoteException
+        {
+            super(simulator, stepSize, integrator, 2);
+            this.gravity = gravity;
+            this.drag = drag;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double[] dy(final double x, final double[] y)
+        {
+            this.evaluations++;
+            return new double[] {y[1], -this.gravity - this.drag * y[1] * Math.abs(y[1])};
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return "Ball";
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.SingleReplication;
+import nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS.exceptions.PortAlreadyDefinedException;
+import nl.tudelft.simulation.dsol.model.AbstractDSOLModel;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulator;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulatorInterface;
+import nl.tudelft.simulation.dsol.simulators.TokenRing;
+
+/**
+ * CoupledModelTest checks that the flattened routing table of the CoupledModel delivers the same messages in the same order as
+ * the transfer through the couplings of each coupled model, through chains of external input couplings, internal couplings and
+ * external output couplings, and that a coupled model that overrides transfer() still gets all messages that pass it.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class CoupledModelTest
+{
+    /**
+     * Compare the flattened routing with the transfer through the couplings.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testFlattenedRouting() throws SimRuntimeException, InterruptedException
+    {
+        List<String> hierarchical = run(false, false);
+        // 5 messages of the generator reach R1, R2 and R3; the 5 forwarded messages reach R2 and R3
+        assertEquals(25, hierarchical.size());
+        assertEquals("R1:1@1.0", hierarchical.get(0));
+        assertEquals("R2:1@1.0", hierarchical.get(1));
+        assertEquals("R3:1@1.0", hierarchical.get(2));
+        assertEquals("R2:10@1.0", hierarchical.get(3));
+        assertEquals("R3:10@1.0", hierarchical.get(4));
+        assertEquals(hierarchical, run(true, false));
+    }
+
+    /**
+     * Test that the messages that pass a coupled model that overrides transfer() are delivered through that method, also when
+     * the flattened routing is switched on.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testTransferOverride() throws SimRuntimeException, InterruptedException
+    {
+        List<String> hierarchical = run(false, true);
+        assertTrue(hierarchical.contains("B.transfer:10@1.0"));
+        assertTrue(hierarchical.contains("B.transfer:50@5.0"));
+        // the messages of the generator pass B through its external input couplings, and not through transfer()
+        assertFalse(hierarchical.contains("B.transfer:1@1.0"));
+        assertEquals(30, hierarchical.size());
+        assertEquals(hierarchical, run(true, true));
+    }
+
+    /**
+     * Run the network of coupled models until the end of the replication.
+     * @param flattened boolean; whether the flattened routing is switched on
+     * @param override boolean; whether coupled model B overrides transfer()
+     * @return List&lt;String&gt;; the log of the received messages, and of the calls of the overridden transfer() method
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    private static List<String> run(final boolean flattened, final boolean override)
+            throws SimRuntimeException, InterruptedException
+    {
+        DEVSSimulator.TimeDouble simulator = new DEVSSimulator.TimeDouble("sim");
+        NetworkModel model = new NetworkModel(simulator, flattened, override);
+        simulator.initialize(model, new SingleReplication.TimeDouble("rep", 0.0, 0.0, 10.0));
+        TokenRing.run(simulator);
+        return model.log;
+    }
+
+    /**
+     * The network: in the top model, coupled model A contains the generator G, of which the messages go through an EOC to the
+     * output port of A, and from there through an IC to atomic model R3 and to coupled model B. B passes them through EICs to
+     * atomic model R1, to coupled model C with atomic model R2, and to forwarder F. F sends ten times the value through an IC
+     * to C, and through an EOC to the output port of B, which is coupled to R3.
+     */
+    static class NetworkModel extends AbstractDSOLModel.TimeDouble<DEVSSimulatorInterface.TimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the log of the received messages. */
+        private final List<String> log = new ArrayList<>();
+
+        /** whether the flattened routing is switched on. */
+        private final boolean flattened;
+
+        /** whether coupled model B overrides transfer(). */
+        private final boolean override;
+
+        /**
+         * @param simulator DEVSSimulatorInterface.TimeDouble; the simulator
+         * @param flattened boolean; whether the flattened routing is switched on
+         * @param override boolean; whether coupled model B overrides transfer()
+         */
+        NetworkModel(final DEVSSimulatorInterface.TimeDouble simulator, final boolean flattened, final boolean override)
+        {
+            super(simulator);
+            this.flattened = flattened;
+            this.override = override;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void constructModel() throws SimRuntimeException
+        {
+            try
+            {
+                Coupled top = new Coupled("top", getSimulator());
+                Coupled a = new Coupled("A", top);
+                Generator g = new Generator("G", a);
+                a.addExternalOutputCoupling(g.out, a.out);
+
+                Coupled b = this.override ? new RecordingCoupled("B", top, this.log) : new Coupled("B", top);
+                Receiver r1 = new Receiver("R1", b, this.log);
+                Coupled c = new Coupled("C", b);
+                Receiver r2 = new Receiver("R2", c, this.log);
+                Forwarder f = new Forwarder("F", b);
+                b.addExternalInputCoupling(b.in, r1.in);
+                b.addExternalInputCoupling(b.in, c.in);
+                b.addExternalInputCoupling(b.in, f.in);
+                c.addExternalInputCoupling(c.in, r2.in);
+                b.addInternalCoupling(f.out, c.in);
+                b.addExternalOutputCoupling(f.out, b.out);
+
+                Receiver r3 = new Receiver("R3", top, this.log);
+                top.addInternalCoupling(a.out, b.in);
+                top.addInternalCoupling(a.out, r3.in);
+                top.addInternalCoupling(b.out, r3.in);
+
+                top.setFlattenedRouting(this.flattened);
+                g.initialize(0.0);
+            }
+            catch (PortAlreadyDefinedException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return "NetworkModel";
+        }
+    }
+
+    /** A coupled model with one input port and one output port. */
+    static class Coupled extends CoupledModel.TimeDouble
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the input port. */
+        final InputPort<Double, Double, SimTimeDouble, Integer> in = new InputPort<>(this);
+
+        /** the output port. */
+        final OutputPort<Double, Double, SimTimeDouble, Integer> out = new OutputPort<>(this);
+
+        /**
+         * @param modelName String; the name of the top model
+         * @param simulator DEVSSimulatorInterface.TimeDouble; the simulator
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Coupled(final String modelName, final DEVSSimulatorInterface.TimeDouble simulator) throws PortAlreadyDefinedException
+        {
+            super(modelName, simulator);
+            addInputPort("in", this.in);
+            addOutputPort("out", this.out);
+        }
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Coupled; the parent model
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Coupled(final String modelName, final Coupled parentModel) throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel);
+            addInputPort("in", this.in);
+            addOutputPort("out", this.out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+
+    /** A coupled model that logs the messages that pass its transfer() method. */
+    static class RecordingCoupled extends Coupled
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the log. */
+        private final List<String> log;
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Coupled; the parent model
+         * @param log List&lt;String&gt;; the log
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        RecordingCoupled(final String modelName, final Coupled parentModel, final List<String> log)
+                throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel);
+            this.log = log;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public <TYPE> void transfer(final OutputPortInterface<Double, Double, SimTimeDouble, TYPE> x, final TYPE y)
+                throws java.rmi.RemoteException, SimRuntimeException
+        {
+            this.log.add(getModelName() + ".transfer:" + y + "@" + getSimulator().getSimulatorTime());
+            super.transfer(x, y);
+        }
+    }
+
+    /** An atomic model that sends the values 1 to 5 at the times 1.0 to 5.0. */
+    static class Generator extends AtomicModel<Double, Double, SimTimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the output port. */
+        final OutputPort<Double, Double, SimTimeDouble, Integer> out = new OutputPort<>(this);
+
+        /** the next value to send. */
+        private int count = 1;
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Coupled; the parent model
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Generator(final String modelName, final Coupled parentModel) throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel);
+            addOutputPort("out", this.out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaInternal()
+        {
+            this.count++;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaExternal(final Double e, final Object value)
+        {
+            // no input
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void lambda()
+        {
+            this.out.send(this.count);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Double timeAdvance()
+        {
+            return this.count <= 5 ? 1.0 : Double.POSITIVE_INFINITY;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+
+    /** An atomic model that sends ten times the value it receives, without delay. */
+    static class Forwarder extends AtomicModel<Double, Double, SimTimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the input port. */
+        final InputPort<Double, Double, SimTimeDouble, Integer> in = new InputPort<>(this);
+
+        /** the output port. */
+        final OutputPort<Double, Double, SimTimeDouble, Integer> out = new OutputPort<>(this);
+
+        /** the value to send, or null when there is none. */
+        private Integer pending = null;
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Coupled; the parent model
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Forwarder(final String modelName, final Coupled parentModel) throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel);
+            addInputPort("in", this.in);
+            addOutputPort("out", this.out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaInternal()
+        {
+            this.pending = null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaExternal(final Double e, final Object value)
+        {
+            this.pending = 10 * (Integer) value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void lambda()
+        {
+            this.out.send(this.pending);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Double timeAdvance()
+        {
+            return this.pending == null ? Double.POSITIVE_INFINITY : 0.0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+
+    /** An atomic model that logs the values it receives. */
+    static class Receiver extends AtomicModel<Double, Double, SimTimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the input port. */
+        final InputPort<Double, Double, SimTimeDouble, Integer> in = new InputPort<>(this);
+
+        /** the log. */
+        private final List<String> log;
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Coupled; the parent model
+         * @param log List&lt;String&gt;; the log
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Receiver(final String modelName, final Coupled parentModel, final List<String> log) throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel);
+            this.log = log;
+            addInputPort("in", this.in);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaInternal()
+        {
+            // passive
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaExternal(final Double e, final Object value)
+        {
+            this.log.add(getModelName() + ":" + value + "@" + getSimulator().getSimulatorTime());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void lambda()
+        {
+            // no output
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Double timeAdvance()
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.SingleReplication;
+import nl.tudelft.simulation.dsol.formalisms.devs.ESDEVS.exceptions.PortAlreadyDefinedException;
+import nl.tudelft.simulation.dsol.model.AbstractDSOLModel;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulator;
+import nl.tudelft.simulation.dsol.simulators.DEVSSimulatorInterface;
+import nl.tudelft.simulation.dsol.simulators.TokenRing;
+
+/**
+ * ParallelDEVSCoordinatorTest checks the Parallel DEVS protocol of the ParallelDEVSCoordinator: the results of a network of
+ * ParallelAtomicModels do not depend on whether, and in which chunks, the components are executed in parallel; simultaneous
+ * messages for a component arrive in one MessageBag in the registration order of the senders; and a component that is imminent
+ * and receives messages at the same time executes the confluent transition.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class ParallelDEVSCoordinatorTest
+{
+    /** the number of cells in the ring. */
+    private static final int CELLS = 100;
+
+    /**
+     * Test that a ring of cells, with many simultaneous and confluent events, gives the same traces when it is executed
+     * sequentially, in parallel with a chunk size of 1, and in parallel with larger chunks.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testSequentialParallel() throws SimRuntimeException, InterruptedException
+    {
+        Builder ring = (top, coordinator, traces) ->
+        {
+            List<Cell> cells = new ArrayList<>();
+            for (int i = 0; i < CELLS; i++)
+            {
+                Cell cell = new Cell("cell" + i, top, coordinator, i);
+                cells.add(cell);
+                traces.add(cell.trace);
+            }
+            for (int i = 0; i < CELLS; i++)
+            {
+                // every cell receives the messages of two neighbours, so simultaneous messages and confluent events occur
+                top.addInternalCoupling(cells.get(i).out, cells.get((i + 1) % CELLS).in);
+                top.addInternalCoupling(cells.get(i).out, cells.get((i + 3) % CELLS).in);
+            }
+            for (Cell cell : cells)
+            {
+                cell.initialize(0.0);
+            }
+        };
+
+        List<List<String>> sequential = run(ring, false, 64);
+        String all = sequential.toString();
+        assertTrue(all.contains("ext@"));
+        assertTrue(all.contains("conf@"));
+        assertTrue(all.contains("int@"));
+        assertEquals(sequential, run(ring, true, 1));
+        assertEquals(sequential, run(ring, true, 7));
+        // a chunk larger than the number of cells executes all cells in one task
+        assertEquals(sequential, run(ring, true, 1000));
+    }
+
+    /**
+     * Test that the messages of two components that send at the same time arrive in one bag of the receiver, in the
+     * registration order of the senders.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testMessageBag() throws SimRuntimeException, InterruptedException
+    {
+        for (boolean parallel : new boolean[] {false, true})
+        {
+            List<List<String>> traces = run((top, coordinator, t) ->
+            {
+                Recorder receiver = new Recorder("R", top, coordinator, Double.POSITIVE_INFINITY, AtomicModel.INTERNAL_FIRST);
+                t.add(receiver.trace);
+                for (String name : new String[] {"G1", "G2", "G3"})
+                {
+                    // G3 sends later, and should get a bag of its own
+                    Sender sender = new Sender(name, top, coordinator, name.equals("G3") ? 2.0 : 1.0);
+                    top.addInternalCoupling(sender.out, receiver.in);
+                    sender.initialize(0.0);
+                }
+                receiver.initialize(0.0);
+            }, parallel, 1);
+            assertEquals(Arrays.asList("ext@1.0 e=1.0 [G1, G2]", "ext@2.0 e=1.0 [G3]"), traces.get(0));
+        }
+    }
+
+    /**
+     * Test that deltaConfluent is called when an internal event and an external event of a component coincide, and that the
+     * default implementation follows the conflict strategy of the component.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testConfluent() throws SimRuntimeException, InterruptedException
+    {
+        for (boolean strategy : new boolean[] {AtomicModel.INTERNAL_FIRST, AtomicModel.EXTERNAL_FIRST})
+        {
+            List<List<String>> traces = run((top, coordinator, t) ->
+            {
+                Sender sender = new Sender("G", top, coordinator, 1.0);
+                Recorder receiver = new Recorder("R", top, coordinator, 1.0, strategy);
+                t.add(receiver.trace);
+                top.addInternalCoupling(sender.out, receiver.in);
+                sender.initialize(0.0);
+                receiver.initialize(0.0);
+            }, false, 64);
+            if (strategy == AtomicModel.INTERNAL_FIRST)
+            {
+                assertEquals(Arrays.asList("conf@1.0 [G]", "int@1.0", "ext@1.0 e=0.0 [G]"), traces.get(0));
+            }
+            else
+            {
+                assertEquals(Arrays.asList("conf@1.0 [G]", "ext@1.0 e=1.0 [G]", "int@1.0"), traces.get(0));
+            }
+        }
+
+        // without a coinciding external event, the internal transition is executed on its own
+        List<List<String>> traces = run((top, coordinator, t) ->
+        {
+            Sender sender = new Sender("G", top, coordinator, 2.0);
+            Recorder receiver = new Recorder("R", top, coordinator, 1.0, AtomicModel.INTERNAL_FIRST);
+            t.add(receiver.trace);
+            top.addInternalCoupling(sender.out, receiver.in);
+            sender.initialize(0.0);
+            receiver.initialize(0.0);
+        }, false, 64);
+        assertEquals(Arrays.asList("int@1.0", "ext@2.0 e=1.0 [G]"), traces.get(0));
+        assertFalse(traces.get(0).toString().contains("conf@"));
+    }
+
+    /**
+     * Build and run a network of ParallelAtomicModels until the end of the replication.
+     * @param builder Builder; the builder of the network
+     * @param parallel boolean; whether the coordinator executes the components in parallel
+     * @param chunkSize int; the maximum number of components per parallel task
+     * @return List&lt;List&lt;String&gt;&gt;; the traces that the builder registered
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    private static List<List<String>> run(final Builder builder, final boolean parallel, final int chunkSize)
+            throws SimRuntimeException, InterruptedException
+    {
+        DEVSSimulator.TimeDouble simulator = new DEVSSimulator.TimeDouble("sim");
+        NetworkModel model = new NetworkModel(simulator, builder, parallel, chunkSize);
+        simulator.initialize(model, new SingleReplication.TimeDouble("rep", 0.0, 0.0, 20.0));
+        TokenRing.run(simulator);
+        return model.traces;
+    }
+
+    /** Builder of a network of ParallelAtomicModels. */
+    @FunctionalInterface
+    interface Builder
+    {
+        /**
+         * Build the network.
+         * @param top Top; the top model
+         * @param coordinator ParallelDEVSCoordinator&lt;Double,Double,SimTimeDouble&gt;; the coordinator
+         * @param traces List&lt;List&lt;String&gt;&gt;; the list to register the traces of the components in
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        void build(Top top, ParallelDEVSCoordinator<Double, Double, SimTimeDouble> coordinator, List<List<String>> traces)
+                throws PortAlreadyDefinedException;
+    }
+
+    /** The model that builds the network with a Builder. */
+    static class NetworkModel extends AbstractDSOLModel.TimeDouble<DEVSSimulatorInterface.TimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the traces of the components. */
+        private final List<List<String>> traces = new ArrayList<>();
+
+        /** the builder of the network. */
+        private final Builder builder;
+
+        /** whether the coordinator executes the components in parallel. */
+        private final boolean parallel;
+
+        /** the maximum number of components per parallel task. */
+        private final int chunkSize;
+
+        /**
+         * @param simulator DEVSSimulatorInterface.TimeDouble; the simulator
+         * @param builder Builder; the builder of the network
+         * @param parallel boolean; whether the coordinator executes the components in parallel
+         * @param chunkSize int; the maximum number of components per parallel task
+         */
+        NetworkModel(final DEVSSimulatorInterface.TimeDouble simulator, final Builder builder, final boolean parallel,
+                final int chunkSize)
+        {
+            super(simulator);
+            this.builder = builder;
+            this.parallel = parallel;
+            this.chunkSize = chunkSize;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void constructModel() throws SimRuntimeException
+        {
+            ParallelDEVSCoordinator<Double, Double, SimTimeDouble> coordinator =
+                    new ParallelDEVSCoordinator<>(getSimulator());
+            coordinator.setParallel(this.parallel, this.chunkSize);
+            try
+            {
+                this.builder.build(new Top(getSimulator()), coordinator, this.traces);
+            }
+            catch (PortAlreadyDefinedException exception)
+            {
+                throw new SimRuntimeException(exception);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return "NetworkModel";
+        }
+    }
+
+    /** The top model without ports. */
+    static class Top extends CoupledModel.TimeDouble
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param simulator DEVSSimulatorInterface.TimeDouble; the simulator
+         */
+        Top(final DEVSSimulatorInterface.TimeDouble simulator)
+        {
+            super("top", simulator);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+
+    /**
+     * A cell of the ring. Its time advance depends on the number of internal transitions and on the messages it received, so
+     * the cells get many events at the same times. Each transition is added to the trace of the cell.
+     */
+    static class Cell extends ParallelAtomicModel<Double, Double, SimTimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the input port. */
+        final InputPort<Double, Double, SimTimeDouble, Integer> in = new InputPort<>(this);
+
+        /** the output port. */
+        final OutputPort<Double, Double, SimTimeDouble, Integer> out = new OutputPort<>(this);
+
+        /** the trace of the transitions. */
+        final List<String> trace = new ArrayList<>();
+
+        /** the number of the cell. */
+        private final int number;
+
+        /** the number of internal transitions. */
+        private int internals = 0;
+
+        /** the sum of the received values. */
+        private int received = 0;
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Top; the parent model
+         * @param coordinator ParallelDEVSCoordinator&lt;Double,Double,SimTimeDouble&gt;; the coordinator
+         * @param number int; the number of the cell
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Cell(final String modelName, final Top parentModel,
+                final ParallelDEVSCoordinator<Double, Double, SimTimeDouble> coordinator, final int number)
+                throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel, coordinator);
+            this.number = number;
+            addInputPort("in", this.in);
+            addOutputPort("out", this.out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaInternal()
+        {
+            this.trace.add("int@" + getSimulator().getSimulatorTime());
+            this.internals++;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaExternal(final Double e, final MessageBag<Double, Double, SimTimeDouble> messages)
+        {
+            List<Integer> values = messages.getValues(this.in);
+            this.trace.add("ext@" + getSimulator().getSimulatorTime() + " e=" + e + " " + values);
+            for (int value : values)
+            {
+                this.received += value;
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaConfluent(final MessageBag<Double, Double, SimTimeDouble> messages)
+        {
+            this.trace.add("conf@" + getSimulator().getSimulatorTime());
+            super.deltaConfluent(messages);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void lambda()
+        {
+            this.out.send(1000 * this.number + this.internals);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Double timeAdvance()
+        {
+            return this.internals < 20 ? 0.5 * (1 + (this.number + this.internals + this.received) % 3)
+                    : Double.POSITIVE_INFINITY;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+
+    /** A component that sends its name once, after a given delay. */
+    static class Sender extends ParallelAtomicModel<Double, Double, SimTimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the output port. */
+        final OutputPort<Double, Double, SimTimeDouble, String> out = new OutputPort<>(this);
+
+        /** the delay after which the name is sent. */
+        private final double delay;
+
+        /** whether the name has been sent. */
+        private boolean sent = false;
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Top; the parent model
+         * @param coordinator ParallelDEVSCoordinator&lt;Double,Double,SimTimeDouble&gt;; the coordinator
+         * @param delay double; the delay after which the name is sent
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Sender(final String modelName, final Top parentModel,
+                final ParallelDEVSCoordinator<Double, Double, SimTimeDouble> coordinator, final double delay)
+                throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel, coordinator);
+            this.delay = delay;
+            addOutputPort("out", this.out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaInternal()
+        {
+            this.sent = true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaExternal(final Double e, final MessageBag<Double, Double, SimTimeDouble> messages)
+        {
+            // no input
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void lambda()
+        {
+            this.out.send(getModelName());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Double timeAdvance()
+        {
+            return this.sent ? Double.POSITIVE_INFINITY : this.delay;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+
+    /** A component that traces its transitions, and that has one internal event after a given delay. */
+    static class Recorder extends ParallelAtomicModel<Double, Double, SimTimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the input port. */
+        final InputPort<Double, Double, SimTimeDouble, String> in = new InputPort<>(this);
+
+        /** the trace of the transitions. */
+        final List<String> trace = new ArrayList<>();
+
+        /** the delay of the internal event. */
+        private final double delay;
+
+        /** whether the internal event took place. */
+        private boolean done = false;
+
+        /**
+         * @param modelName String; the name of the model
+         * @param parentModel Top; the parent model
+         * @param coordinator ParallelDEVSCoordinator&lt;Double,Double,SimTimeDouble&gt;; the coordinator
+         * @param delay double; the delay of the internal event, or infinity for a passive component
+         * @param conflictStrategy boolean; the conflict strategy of the default confluent transition
+         * @throws PortAlreadyDefinedException when a port is defined twice
+         */
+        Recorder(final String modelName, final Top parentModel,
+                final ParallelDEVSCoordinator<Double, Double, SimTimeDouble> coordinator, final double delay,
+                final boolean conflictStrategy) throws PortAlreadyDefinedException
+        {
+            super(modelName, parentModel, coordinator, 0.0, new Phase(""), conflictStrategy);
+            this.delay = delay;
+            addInputPort("in", this.in);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaInternal()
+        {
+            this.trace.add("int@" + getSimulator().getSimulatorTime());
+            this.done = true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaExternal(final Double e, final MessageBag<Double, Double, SimTimeDouble> messages)
+        {
+            // all messages of the bag should have arrived on the input port
+            assertEquals(messages.size(), messages.getValues(this.in).size());
+            this.trace.add("ext@" + getSimulator().getSimulatorTime() + " e=" + e + " " + messages.getValues(this.in));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void deltaConfluent(final MessageBag<Double, Double, SimTimeDouble> messages)
+        {
+            this.trace.add("conf@" + getSimulator().getSimulatorTime() + " " + messages.getValues(this.in));
+            super.deltaConfluent(messages);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void lambda()
+        {
+            // no output
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected Double timeAdvance()
+        {
+            return this.done ? Double.POSITIVE_INFINITY : this.delay;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return getFullName();
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package nl.tudelft.simulation.dsol.formalisms.eventscheduling;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeoutException;
 
 import javax.naming.NamingException;
@@ -19,6 +25,7 @@ import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
 import nl.tudelft.simulation.dsol.simulators.DEVSRealTimeAnimator;
 import nl.tudelft.simulation.dsol.simulators.DEVSSimulator;
 import nl.tudelft.simulation.dsol.simulators.DEVSSimulatorInterface;
+import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
 import nl.tudelft.simulation.jstats.distributions.DistContinuous;
 import nl.tudelft.simulation.jstats.distributions.DistUniform;
 import nl.tudelft.simulation.jstats.streams.MersenneTwister;
@@ -207,6 +214,87 @@ public class DEVSRealTimeClockDoubleTest implements EventListenerInterface
         this.waiter.await(1000);
     }
 
+    /**
+     * Test a model that overruns the wall clock: the first events take much more wall clock time than the simulation time
+     * between them. The animator should fire BACKLOG_EVENTs with the achieved speed factor and the backlog, a last
+     * BACKLOG_EVENT with a backlog of 0.0 after it has caught up, and still execute all events in order and on their time.
+     * @throws SimRuntimeException in case of error
+     * @throws TimeoutException when the simulation does not stop in time
+     * @throws InterruptedException on error
+     */
+    @Test
+    public void testBacklog() throws SimRuntimeException, TimeoutException, InterruptedException
+    {
+        this.waiter = new Waiter();
+        // 1.0 in the simulation is 100 ms on the wall clock
+        DEVSRealTimeAnimator.TimeDouble simulator = new DEVSRealTimeAnimator.TimeDouble("testBacklog", 0.01);
+        simulator.setAnimation(false);
+        this.devsSimulator = simulator;
+        ModelDouble model = new ModelDouble(simulator);
+        ReplicationInterface.TimeDouble rep = new SingleReplication.TimeDouble("rep1", 0.0, 0.0, 10.0);
+        simulator.initialize(model, rep);
+
+        final List<Object[]> backlogs = new CopyOnWriteArrayList<>();
+        final List<Double> executed = new CopyOnWriteArrayList<>();
+        simulator.addListener(event -> backlogs.add((Object[]) event.getContent()), DEVSRealTimeAnimator.BACKLOG_EVENT);
+        simulator.addListener(event -> this.waiter.resume(), SimulatorInterface.STOP_EVENT);
+
+        // 10 events that each take 30 ms, where 5 ms is available, followed by 50 events that take no time
+        List<Double> times = new ArrayList<>();
+        for (int i = 1; i <= 10; i++)
+        {
+            times.add(0.05 * i);
+        }
+        for (int i = 0; i < 50; i++)
+        {
+            times.add(1.0 + 0.1 * i);
+        }
+        for (double time : times)
+        {
+            simulator.scheduleEventAbs(time, () ->
+            {
+                this.waiter.assertEquals(time, simulator.getSimulatorTime());
+                executed.add(time);
+                if (time < 1.0)
+                {
+                    try
+                    {
+                        Thread.sleep(30);
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        this.waiter.fail(exception);
+                    }
+                }
+            });
+        }
+        simulator.start();
+        this.waiter.await(10000);
+
+        // the events are executed in order, and each of them on its own time
+        assertEquals(times, executed);
+
+        // the simulation got behind with an achieved speed factor below 1, and caught up again
+        assertTrue(backlogs.size() > 1);
+        double maxBacklog = 0.0;
+        for (Object[] content : backlogs)
+        {
+            assertEquals(2, content.length);
+            assertTrue(content[0] instanceof Double);
+            assertTrue(content[1] instanceof Double);
+            double backlog = (Double) content[1];
+            assertTrue(backlog >= 0.0);
+            if (backlog > maxBacklog)
+            {
+                maxBacklog = backlog;
+                assertTrue("achieved speed factor " + content[0] + " should be below 1", (Double) content[0] < 1.0);
+            }
+        }
+        // 10 events of 30 ms in 50 ms of simulation time give a backlog of about 250 ms
+        assertTrue("maximum backlog " + maxBacklog + " should be over 100 ms", maxBacklog > 100.0);
+        assertEquals(0.0, (Double) backlogs.get(backlogs.size() - 1)[1], 0.0);
+    }
+
     /**
      * THE MODEL.
      */
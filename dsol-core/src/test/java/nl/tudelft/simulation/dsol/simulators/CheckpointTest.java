@@ -0,0 +1,332 @@
+package nl.tudelft.simulation.dsol.simulators;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.SingleReplication;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.jstats.streams.StreamException;
+import nl.tudelft.simulation.jstats.streams.StreamInterface;
+
+/**
+ * Test of the Checkpoint: a simulation that is restored from a checkpoint should continue with exactly the same results as
+ * the simulation that was not interrupted, also when several simulators are restored from the same checkpoint.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class CheckpointTest
+{
+    /** the ring of 6 stations that often reschedule a departure, and that runs until 100. */
+    private static final TokenRing RING = new TokenRing(6, 0.1, 0.3, 100.0);
+
+    /**
+     * Compare the continuation of restored simulators with the uninterrupted simulation.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     * @throws IOException when writing or reading the checkpoint fails
+     */
+    @Test
+    public void testRestore() throws SimRuntimeException, InterruptedException, IOException
+    {
+        List<String> reference = runReference();
+        assertTrue(reference.size() > 500);
+
+        Path file = Files.createTempFile("dsol", ".checkpoint");
+        Path scheduledFile = Files.createTempFile("dsol", ".checkpoint");
+        try
+        {
+            // write a checkpoint of a stopped simulator, and one from within the simulation
+            Ring ring = new Ring();
+            ring.checkpoint.scheduleWrite(new SimTimeDouble(75.0), scheduledFile);
+            TokenRing.stepUpTo(ring.simulator, 50.0);
+            ring.checkpoint.write(file);
+            double time = ring.simulator.getSimulatorTime();
+            assertTrue(time > 0.0 && time < 50.0);
+            TokenRing.run(ring.simulator);
+            assertEquals(reference, ring.log());
+
+            Ring restored = new Ring();
+            restored.checkpoint.restore(file);
+            assertEquals(time, restored.simulator.getSimulatorTime(), 0.0);
+            TokenRing.run(restored.simulator);
+            assertEquals(reference, restored.log());
+
+            // fork several simulators from the same image
+            Checkpoint.Image image = Checkpoint.read(scheduledFile);
+            List<Ring> forks = new ArrayList<>();
+            for (int i = 0; i < 3; i++)
+            {
+                Ring fork = new Ring();
+                fork.checkpoint.restore(image);
+                assertEquals(75.0, fork.simulator.getSimulatorTime(), 0.0);
+                forks.add(fork);
+            }
+            List<CountDownLatch> ended = new ArrayList<>();
+            for (Ring fork : forks)
+            {
+                ended.add(TokenRing.endOfReplication(fork.simulator));
+                fork.simulator.start();
+            }
+            for (int i = 0; i < forks.size(); i++)
+            {
+                TokenRing.await(ended.get(i));
+                assertEquals(reference, forks.get(i).log());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(scheduledFile);
+        }
+    }
+
+    /**
+     * Test the errors for objects that cannot be stored or restored.
+     * @throws SimRuntimeException on simulation error
+     * @throws IOException when writing the checkpoint fails unexpectedly
+     */
+    @Test
+    public void testErrors() throws SimRuntimeException, IOException
+    {
+        Path file = Files.createTempFile("dsol", ".checkpoint");
+        try
+        {
+            Ring ring = new Ring();
+            try
+            {
+                ring.checkpoint.register(Checkpoint.SIMULATOR, new Object());
+                fail("registering a reserved name should fail");
+            }
+            catch (IllegalArgumentException exception)
+            {
+                // ok
+            }
+            try
+            {
+                ring.checkpoint.register("other", ring.stations.get(0));
+                fail("registering an object twice should fail");
+            }
+            catch (IllegalArgumentException exception)
+            {
+                // ok
+            }
+            ring.checkpoint.write(file);
+            long size = Files.size(file);
+
+            // a lambda that is not serializable cannot be stored, and the existing checkpoint is kept
+            ring.simulator.scheduleEventAbs(10.0, () -> ring.stations.get(0).arrive(0));
+            try
+            {
+                ring.checkpoint.write(file);
+                fail("storing a lambda that is not serializable should fail");
+            }
+            catch (IOException exception)
+            {
+                // ok
+            }
+            assertEquals(size, Checkpoint.read(file).getSize());
+
+            // the stations have to be registered in the restoring simulator
+            DEVSSimulator.TimeDouble simulator = new DEVSSimulator.TimeDouble("unregistered");
+            simulator.initialize(new TokenRing.RingModel(simulator, new ArrayList<>()),
+                    new SingleReplication.TimeDouble("rep", 0.0, 0.0, 100.0));
+            try
+            {
+                new Checkpoint<>(simulator).restore(file);
+                fail("restoring without registered stations should fail");
+            }
+            catch (IOException exception)
+            {
+                // ok
+            }
+
+            // a truncated checkpoint should not be restored
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+            try
+            {
+                new Ring().checkpoint.restore(file);
+                fail("restoring a truncated checkpoint should fail");
+            }
+            catch (IOException exception)
+            {
+                // ok
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Test that a checkpoint with a corrupt event section is rejected before anything is restored: the simulator time, the
+     * event list, the streams and the stations of the restoring simulator should not change.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     * @throws IOException when writing the checkpoint fails unexpectedly
+     * @throws StreamException when the state of a stream cannot be saved
+     */
+    @Test
+    public void testCorruptEvents() throws SimRuntimeException, InterruptedException, IOException, StreamException
+    {
+        Path file = Files.createTempFile("dsol", ".checkpoint");
+        try
+        {
+            Ring ring = new Ring();
+            TokenRing.stepUpTo(ring.simulator, 50.0);
+            ring.checkpoint.write(file);
+            byte[] bytes = Files.readAllBytes(file);
+
+            // the method names of the SimEvents only occur in the event section; damage the bytes after the first one
+            byte[] method = "depart".getBytes(StandardCharsets.UTF_8);
+            int position = indexOf(bytes, method);
+            assertTrue(position > 0);
+            byte[] corrupt = bytes.clone();
+            Arrays.fill(corrupt, position + method.length, position + method.length + 8, (byte) 0x7F);
+            byte[] truncated = Arrays.copyOf(bytes, position + method.length);
+
+            for (byte[] damaged : new byte[][] {corrupt, truncated})
+            {
+                Files.write(file, damaged);
+                Ring restored = new Ring();
+                List<SimEventInterface<SimTimeDouble>> events = events(restored.simulator);
+                List<byte[]> streamStates = new ArrayList<>();
+                for (StreamInterface stream : restored.simulator.getModel().getStreams().values())
+                {
+                    streamStates.add(stream.saveState());
+                }
+                List<String> log = restored.log();
+                try
+                {
+                    restored.checkpoint.restore(file);
+                    fail("restoring a checkpoint with a corrupt event section should fail");
+                }
+                catch (IOException exception)
+                {
+                    // ok
+                }
+                assertEquals(0.0, restored.simulator.getSimulatorTime(), 0.0);
+                assertEquals(events, events(restored.simulator));
+                int i = 0;
+                for (StreamInterface stream : restored.simulator.getModel().getStreams().values())
+                {
+                    assertArrayEquals(streamStates.get(i++), stream.saveState());
+                }
+                assertEquals(log, restored.log());
+
+                // the untouched simulator still runs as the uninterrupted simulation
+                TokenRing.run(restored.simulator);
+                assertEquals(runReference(), restored.log());
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Return the first position of a pattern in an array of bytes.
+     * @param bytes byte[]; the bytes to search
+     * @param pattern byte[]; the pattern to find
+     * @return int; the first position of the pattern, or -1 when the pattern does not occur
+     */
+    private static int indexOf(final byte[] bytes, final byte[] pattern)
+    {
+        for (int i = 0; i + pattern.length <= bytes.length; i++)
+        {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + pattern.length), pattern))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the events on the event list of a simulator, in the order of the event list.
+     * @param simulator DEVSSimulator.TimeDouble; the simulator
+     * @return List&lt;SimEventInterface&lt;SimTimeDouble&gt;&gt;; the events on the event list
+     */
+    private static List<SimEventInterface<SimTimeDouble>> events(final DEVSSimulator.TimeDouble simulator)
+    {
+        List<SimEventInterface<SimTimeDouble>> events = new ArrayList<>();
+        for (SimEventInterface<SimTimeDouble> event : simulator.eventList)
+        {
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * Run the ring without interruption.
+     * @return List&lt;String&gt;; the log of all stations
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    private List<String> runReference() throws SimRuntimeException, InterruptedException
+    {
+        Ring ring = new Ring();
+        TokenRing.run(ring.simulator);
+        return ring.log();
+    }
+
+    /** A ring of stations on a new simulator, with the stations registered in a checkpoint. */
+    static class Ring
+    {
+        /** the simulator. */
+        private final DEVSSimulator.TimeDouble simulator = new DEVSSimulator.TimeDouble("ring");
+
+        /** the stations. */
+        private final List<TokenRing.Station> stations;
+
+        /** the checkpoint. */
+        private final Checkpoint<Double, Double, SimTimeDouble> checkpoint;
+
+        /**
+         * Construct the ring, and initialize the simulator.
+         * @throws SimRuntimeException on simulation error
+         */
+        Ring() throws SimRuntimeException
+        {
+            this.stations = RING.createRing(this.simulator);
+            this.checkpoint = new Checkpoint<>(this.simulator);
+            for (TokenRing.Station station : this.stations)
+            {
+                this.checkpoint.register("station" + station.getIndex(), station);
+            }
+        }
+
+        /**
+         * Concatenate the logs of the stations.
+         * @return List&lt;String&gt;; the log of all stations
+         */
+        List<String> log()
+        {
+            return TokenRing.log(this.stations);
+        }
+    }
+
+}
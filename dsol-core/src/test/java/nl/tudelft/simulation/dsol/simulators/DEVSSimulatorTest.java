@@ -1,6 +1,12 @@
 package nl.tudelft.simulation.dsol.simulators;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.djutils.event.EventInterface;
@@ -8,6 +14,11 @@ import org.djutils.event.EventListenerInterface;
 import org.junit.Test;
 
 import net.jodah.concurrentunit.Waiter;
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
+import nl.tudelft.simulation.dsol.experiment.SingleReplication;
+import nl.tudelft.simulation.dsol.model.AbstractDSOLModel;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
 
 /**
  * The DEVSSimulatorTest test the DEVS Simulator.
@@ -48,6 +59,60 @@ public class DEVSSimulatorTest implements EventListenerInterface
 //        this.waiter.await(5000);
     }
 
+    /**
+     * Test that runUpTo() pauses the replication before the end of the run, so the simulator can be started again, and that
+     * only reaching the end of the run ends the replication.
+     * @throws SimRuntimeException on simulation error
+     * @throws RemoteException on remote network exception for the listener
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testRunUpToPausesReplication() throws SimRuntimeException, RemoteException, InterruptedException
+    {
+        DEVSSimulator.TimeDouble simulator = new DEVSSimulator.TimeDouble("testRunUpToPausesReplication");
+        CountModel model = new CountModel(simulator);
+        simulator.initialize(model, new SingleReplication.TimeDouble("rep", 0.0, 0.0, 10.0));
+        CountDownLatch ended = new CountDownLatch(1);
+        simulator.addListener(event -> ended.countDown(), ReplicationInterface.END_REPLICATION_EVENT);
+
+        simulator.runUpTo(new SimTimeDouble(5.5));
+        waitForStopped(simulator);
+        assertEquals(5.5, simulator.getSimulatorTime(), 0.0);
+        assertEquals(5, model.count);
+        assertEquals(ReplicationState.STARTED, simulator.getReplicationState());
+        assertEquals(1, ended.getCount());
+
+        // a second runUpTo() continues from the pause, and still does not end the replication
+        simulator.runUpTo(new SimTimeDouble(7.0));
+        waitForStopped(simulator);
+        assertEquals(7.0, simulator.getSimulatorTime(), 0.0);
+        assertEquals(6, model.count);
+        assertEquals(ReplicationState.STARTED, simulator.getReplicationState());
+
+        // reaching the run length ends the replication
+        simulator.start();
+        assertTrue("the replication did not end", ended.await(10, TimeUnit.SECONDS));
+        waitForStopped(simulator);
+        assertEquals(10.0, simulator.getSimulatorTime(), 0.0);
+        assertEquals(10, model.count);
+        assertEquals(ReplicationState.ENDED, simulator.getReplicationState());
+    }
+
+    /**
+     * Wait until the simulator thread has stopped, since the STOP_EVENT is fired before the run state changes.
+     * @param simulator DEVSSimulator.TimeDouble; the simulator
+     * @throws InterruptedException when the test is interrupted
+     */
+    private static void waitForStopped(final DEVSSimulator.TimeDouble simulator) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (simulator.getRunState() != RunState.STOPPED && simulator.getRunState() != RunState.ENDED)
+        {
+            assertTrue("the simulator did not stop", System.currentTimeMillis() < deadline);
+            Thread.sleep(1L);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void notify(final EventInterface event) throws RemoteException
@@ -55,4 +120,38 @@ public class DEVSSimulatorTest implements EventListenerInterface
         this.waiter.resume();
     }
 
+    /** Model that schedules an event at t = 1, 2, ..., 10 and counts the executed events. */
+    static class CountModel extends AbstractDSOLModel.TimeDouble<DEVSSimulator.TimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the number of executed events. */
+        private int count = 0;
+
+        /**
+         * @param simulator DEVSSimulator.TimeDouble; the simulator
+         */
+        CountModel(final DEVSSimulator.TimeDouble simulator)
+        {
+            super(simulator);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void constructModel() throws SimRuntimeException
+        {
+            for (int i = 1; i <= 10; i++)
+            {
+                getSimulator().scheduleEventAbs((double) i, () -> this.count++);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return "CountModel";
+        }
+    }
 }
@@ -0,0 +1,423 @@
+package nl.tudelft.simulation.dsol.simulators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
+import nl.tudelft.simulation.dsol.experiment.SingleReplication;
+import nl.tudelft.simulation.dsol.experiment.StreamInformation;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.Executable;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.model.AbstractDSOLModel;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simulators.parallel.AbstractSynchronizer;
+import nl.tudelft.simulation.dsol.simulators.parallel.LogicalProcess;
+import nl.tudelft.simulation.dsol.simulators.parallel.OptimisticLogicalProcess;
+import nl.tudelft.simulation.dsol.simulators.parallel.StateSavable;
+import nl.tudelft.simulation.jstats.streams.MRG32k3aGenerator;
+import nl.tudelft.simulation.jstats.streams.MersenneTwister;
+import nl.tudelft.simulation.jstats.streams.StreamInterface;
+
+/**
+ * TokenRing is the test model of the Checkpoint and the parallel synchronizers: a ring of stations that each hold tokens for a
+ * random time, and then pass them on to the next station. The ring can run on one DEVSSimulator, or partitioned with one
+ * logical process per station, and the logs of the stations should be exactly the same in all cases. Sometimes a station
+ * changes its mind and reschedules the departure of a token, so cancelled events are part of the checkpoints and rollbacks.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class TokenRing
+{
+    /** the maximum time in seconds to wait for the end of a replication. */
+    public static final long TIMEOUT = 60;
+
+    /** the number of stations in the ring. */
+    private final int numberOfStations;
+
+    /** the minimum time between the departure of a token and its arrival at the next station. */
+    private final double lookahead;
+
+    /** the probability that a station reschedules the departure of a token. */
+    private final double rescheduleProbability;
+
+    /** the end time of the replication. */
+    private final double endTime;
+
+    /**
+     * Define a ring of stations.
+     * @param numberOfStations int; the number of stations in the ring
+     * @param lookahead double; the minimum time between the departure of a token and its arrival at the next station, which
+     *            is also the lookahead of the channels between the logical processes
+     * @param rescheduleProbability double; the probability that a station reschedules the departure of a token
+     * @param endTime double; the end time of the replication
+     */
+    public TokenRing(final int numberOfStations, final double lookahead, final double rescheduleProbability,
+            final double endTime)
+    {
+        this.numberOfStations = numberOfStations;
+        this.lookahead = lookahead;
+        this.rescheduleProbability = rescheduleProbability;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Create the stations of the ring on one simulator, and initialize the simulator. The tokens are passed on with
+     * serializable lambdas, so the ring can be stored in a checkpoint.
+     * @param simulator DEVSSimulator.TimeDouble; the simulator
+     * @return List&lt;Station&gt;; the stations of the ring
+     * @throws SimRuntimeException on simulation error
+     */
+    public List<Station> createRing(final DEVSSimulator.TimeDouble simulator) throws SimRuntimeException
+    {
+        List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < this.numberOfStations; i++)
+        {
+            stations.add(new Station(i, simulator));
+        }
+        for (int i = 0; i < this.numberOfStations; i++)
+        {
+            Station next = stations.get((i + 1) % this.numberOfStations);
+            stations.get(i).sender =
+                    (delay, token) -> simulator.scheduleEventRel(delay, (Executable & Serializable) () -> next.arrive(token));
+        }
+        simulator.initialize(new RingModel(simulator, stations),
+                new SingleReplication.TimeDouble("rep", 0.0, 0.0, this.endTime));
+        return stations;
+    }
+
+    /**
+     * Run the ring on one DEVSSimulator.
+     * @return List&lt;String&gt;; the log of all stations
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    public List<String> runSingleSimulator() throws SimRuntimeException, InterruptedException
+    {
+        DEVSSimulator.TimeDouble simulator = new DEVSSimulator.TimeDouble("ring");
+        List<Station> stations = createRing(simulator);
+        run(simulator);
+        return log(stations);
+    }
+
+    /**
+     * Run the ring with one logical process per station. The stations of optimistic logical processes are registered as
+     * their state.
+     * @param synchronizer AbstractSynchronizer&lt;Double, Double, SimTimeDouble&gt;; the synchronizer to run the logical
+     *            processes
+     * @param factory Function&lt;String, L&gt;; the factory of the logical processes with a given id
+     * @param <L> the type of the logical processes
+     * @return List&lt;String&gt;; the log of all stations
+     * @throws SimRuntimeException on simulation error
+     */
+    @SuppressWarnings("unchecked")
+    public <L extends LogicalProcess<Double, Double, SimTimeDouble> & DEVSSimulatorInterface.TimeDouble> List<
+            String> runLogicalProcesses(final AbstractSynchronizer<Double, Double, SimTimeDouble> synchronizer,
+                    final Function<String, L> factory) throws SimRuntimeException
+    {
+        List<L> lps = new ArrayList<>();
+        List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < this.numberOfStations; i++)
+        {
+            L lp = factory.apply("lp" + i);
+            synchronizer.addLogicalProcess(lp);
+            lps.add(lp);
+            Station station = new Station(i, lp);
+            stations.add(station);
+            if (lp instanceof OptimisticLogicalProcess)
+            {
+                ((OptimisticLogicalProcess<Double, Double, SimTimeDouble>) lp).addState(station);
+            }
+        }
+        for (int i = 0; i < this.numberOfStations; i++)
+        {
+            L lp = lps.get(i);
+            L nextLp = lps.get((i + 1) % this.numberOfStations);
+            Station next = stations.get((i + 1) % this.numberOfStations);
+            synchronizer.connect(lp, nextLp, this.lookahead);
+            stations.get(i).sender = (delay, token) -> lp.sendEvent(nextLp, delay, () -> next.arrive(token));
+        }
+        for (int i = 0; i < this.numberOfStations; i++)
+        {
+            List<Station> partition = new ArrayList<>();
+            partition.add(stations.get(i));
+            lps.get(i).initialize(new RingModel(lps.get(i), partition),
+                    new SingleReplication.TimeDouble("rep" + i, 0.0, 0.0, this.endTime));
+        }
+        synchronizer.run();
+        for (L lp : lps)
+        {
+            assertEquals(this.endTime, lp.getSimulatorTime(), 0.0);
+        }
+        return log(stations);
+    }
+
+    /**
+     * Concatenate the logs of the stations.
+     * @param stations List&lt;Station&gt;; the stations
+     * @return List&lt;String&gt;; the log of all stations
+     */
+    public static List<String> log(final List<Station> stations)
+    {
+        List<String> result = new ArrayList<>();
+        for (Station station : stations)
+        {
+            result.addAll(station.log);
+        }
+        return result;
+    }
+
+    /**
+     * Start the simulator, and wait until the replication has ended.
+     * @param simulator DEVSSimulator.TimeDouble; the simulator
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    public static void run(final DEVSSimulator.TimeDouble simulator) throws SimRuntimeException, InterruptedException
+    {
+        CountDownLatch ended = endOfReplication(simulator);
+        simulator.start();
+        await(ended);
+    }
+
+    /**
+     * Return a latch that is released when the replication of the simulator ends. The END_REPLICATION_EVENT is only fired
+     * when the simulator has completely stopped, so the simulator can be inspected as soon as the latch is released.
+     * @param simulator DEVSSimulator.TimeDouble; the simulator, which has not been started yet
+     * @return CountDownLatch; the latch that is released at the end of the replication
+     */
+    public static CountDownLatch endOfReplication(final DEVSSimulator.TimeDouble simulator)
+    {
+        CountDownLatch ended = new CountDownLatch(1);
+        simulator.addListener(event -> ended.countDown(), ReplicationInterface.END_REPLICATION_EVENT);
+        return ended;
+    }
+
+    /**
+     * Wait for the end of a replication, and fail when the replication does not end within the timeout.
+     * @param ended CountDownLatch; the latch of endOfReplication()
+     * @throws InterruptedException when the test is interrupted
+     */
+    public static void await(final CountDownLatch ended) throws InterruptedException
+    {
+        assertTrue("the replication did not end within " + TIMEOUT + " seconds", ended.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Execute the events before a given time one by one on the calling thread, so the simulator is stopped, and not just
+     * stopping, when the method returns.
+     * @param simulator DEVSSimulator.TimeDouble; the simulator
+     * @param time double; the time before which all events are executed
+     * @throws SimRuntimeException on simulation error
+     */
+    public static void stepUpTo(final DEVSSimulator.TimeDouble simulator, final double time) throws SimRuntimeException
+    {
+        while (!simulator.getEventList().isEmpty() && simulator.getEventList().first().getAbsoluteExecutionTime().get() < time)
+        {
+            simulator.step();
+        }
+    }
+
+    /** Sends a token to the next station. */
+    interface Sender
+    {
+        /**
+         * Send a token to the next station.
+         * @param delay double; the delay
+         * @param token int; the token
+         * @throws SimRuntimeException on scheduling error
+         */
+        void send(double delay, int token) throws SimRuntimeException;
+    }
+
+    /**
+     * A station in the ring that holds tokens for a random time, and passes them on to the next station. The pending departure
+     * and the log of the station are its state, which is stored in a checkpoint, and saved incrementally for a rollback by
+     * storing the length of the log.
+     */
+    public class Station implements Checkpointable, StateSavable
+    {
+        /** the index of the station. */
+        private final int index;
+
+        /** the simulator of the station. */
+        private final DEVSSimulatorInterface<Double, Double, SimTimeDouble> simulator;
+
+        /** the random stream of the station. */
+        private final StreamInterface stream;
+
+        /** the sender to the next station. */
+        private Sender sender;
+
+        /** the departure of the last received token, or null when it has departed. */
+        private SimEventInterface<SimTimeDouble> pending;
+
+        /** the log of received tokens. */
+        private List<String> log = new ArrayList<>();
+
+        /**
+         * @param index int; the index of the station
+         * @param simulator DEVSSimulatorInterface&lt;Double, Double, SimTimeDouble&gt;; the simulator of the station
+         */
+        Station(final int index, final DEVSSimulatorInterface<Double, Double, SimTimeDouble> simulator)
+        {
+            this.index = index;
+            this.simulator = simulator;
+            this.stream = index % 2 == 0 ? new MRG32k3aGenerator(100 + index) : new MersenneTwister(100 + index);
+        }
+
+        /**
+         * @return index int; the index of the station
+         */
+        public int getIndex()
+        {
+            return this.index;
+        }
+
+        /**
+         * Schedule the initial tokens of the station.
+         * @throws SimRuntimeException on scheduling error
+         */
+        void start() throws SimRuntimeException
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                this.simulator.scheduleEventAbs(this.stream.nextDouble(), this, this, "arrive",
+                        new Object[] {this.index * 100 + i});
+            }
+        }
+
+        /**
+         * Receive a token, and schedule its departure. Sometimes, the station changes its mind, and reschedules the departure.
+         * @param token Integer; the token
+         * @throws SimRuntimeException on scheduling error
+         */
+        public void arrive(final Integer token) throws SimRuntimeException
+        {
+            this.log.add(this.index + ":" + token + "@" + this.simulator.getSimulatorTime());
+            this.pending =
+                    this.simulator.scheduleEventRel(this.stream.nextDouble(), this, this, "depart", new Object[] {token});
+            if (this.stream.nextDouble() < TokenRing.this.rescheduleProbability)
+            {
+                this.simulator.cancelEvent(this.pending);
+                this.pending =
+                        this.simulator.scheduleEventRel(this.stream.nextDouble(), this, this, "depart", new Object[] {token});
+            }
+        }
+
+        /**
+         * Pass a token to the next station.
+         * @param token Integer; the token
+         * @throws SimRuntimeException on scheduling error
+         */
+        public void depart(final Integer token) throws SimRuntimeException
+        {
+            this.pending = null;
+            this.sender.send(TokenRing.this.lookahead + this.stream.nextDouble(), token);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void writeCheckpoint(final ObjectOutput out) throws IOException
+        {
+            out.writeObject(this.pending);
+            out.writeInt(this.log.size());
+            for (String entry : this.log)
+            {
+                out.writeUTF(entry);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @SuppressWarnings("unchecked")
+        public void readCheckpoint(final ObjectInput in) throws IOException, ClassNotFoundException
+        {
+            this.pending = (SimEventInterface<SimTimeDouble>) in.readObject();
+            int size = in.readInt();
+            this.log = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+            {
+                this.log.add(in.readUTF());
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object saveState()
+        {
+            return new Object[] {this.pending, this.log.size()};
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @SuppressWarnings("unchecked")
+        public void restoreState(final Object state)
+        {
+            Object[] saved = (Object[]) state;
+            this.pending = (SimEventInterface<SimTimeDouble>) saved[0];
+            int size = (Integer) saved[1];
+            while (this.log.size() > size)
+            {
+                this.log.remove(this.log.size() - 1);
+            }
+        }
+    }
+
+    /** The model that starts a number of stations, and that registers their streams. */
+    public static class RingModel extends AbstractDSOLModel.TimeDouble<DEVSSimulatorInterface.TimeDouble>
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the stations of the model. */
+        private final List<Station> stations;
+
+        /**
+         * @param simulator DEVSSimulatorInterface.TimeDouble; the simulator
+         * @param stations List&lt;Station&gt;; the stations of the model
+         */
+        public RingModel(final DEVSSimulatorInterface.TimeDouble simulator, final List<Station> stations)
+        {
+            super(simulator, new StreamInformation(new MRG32k3aGenerator(1L)));
+            this.stations = stations;
+            for (Station station : stations)
+            {
+                this.streamInformation.addStream("station" + station.index, station.stream);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void constructModel() throws SimRuntimeException
+        {
+            for (Station station : this.stations)
+            {
+                station.start();
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Serializable getSourceId()
+        {
+            return "RingModel";
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.SingleReplication;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simulators.TokenRing;
+
+/**
+ * Test of the ConservativeSynchronizer: the parallel execution of a partitioned model should give exactly the same results as
+ * the sequential execution of the logical processes, and as the execution of the complete model on one DEVSSimulator.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class ConservativeSynchronizerTest
+{
+    /** the ring of 8 stations with a lookahead of 0.5, that runs until 200. */
+    private static final TokenRing RING = new TokenRing(8, 0.5, 0.0, 200.0);
+
+    /**
+     * Compare the parallel and sequential execution of the logical processes with the execution on one simulator.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testDeterminism() throws SimRuntimeException, InterruptedException
+    {
+        List<String> reference = RING.runSingleSimulator();
+        assertTrue(reference.size() > 1000);
+        List<String> sequential = runLogicalProcesses(false);
+        assertEquals(reference, sequential);
+        for (int i = 0; i < 5; i++)
+        {
+            List<String> parallel = runLogicalProcesses(true);
+            assertEquals(reference, parallel);
+        }
+    }
+
+    /**
+     * Test the checks on sending events and connecting logical processes.
+     * @throws SimRuntimeException on simulation error
+     */
+    @Test
+    public void testChecks() throws SimRuntimeException
+    {
+        ConservativeSynchronizer<Double, Double, SimTimeDouble> synchronizer = new ConservativeSynchronizer<>("sync");
+        LogicalProcess.TimeDouble lp0 = new LogicalProcess.TimeDouble("lp0");
+        LogicalProcess.TimeDouble lp1 = new LogicalProcess.TimeDouble("lp1");
+        LogicalProcess.TimeDouble lp2 = new LogicalProcess.TimeDouble("lp2");
+        synchronizer.addLogicalProcess(lp0);
+        synchronizer.addLogicalProcess(lp1);
+        assertEquals(0, lp0.getIndex());
+        assertEquals(1, lp1.getIndex());
+        assertEquals(synchronizer, lp1.getSynchronizer());
+        try
+        {
+            synchronizer.addLogicalProcess(lp0);
+            fail("adding a logical process twice should fail");
+        }
+        catch (SimRuntimeException exception)
+        {
+            // ok
+        }
+        try
+        {
+            synchronizer.connect(lp0, lp2, 1.0);
+            fail("connecting a logical process that has not been added should fail");
+        }
+        catch (SimRuntimeException exception)
+        {
+            // ok
+        }
+        try
+        {
+            synchronizer.connect(lp0, lp1, 0.0);
+            fail("connecting with zero lookahead should fail");
+        }
+        catch (IllegalArgumentException exception)
+        {
+            // ok
+        }
+        synchronizer.connect(lp0, lp1, 2.0);
+        synchronizer.connect(lp1, lp0, 1.0);
+        assertEquals(1.0, synchronizer.getLookahead(), 0.0);
+        assertEquals(2.0, lp0.getChannel(lp1).getLookahead(), 0.0);
+        assertEquals(2, synchronizer.getChannels().size());
+
+        lp0.initialize(new TokenRing.RingModel(lp0, new ArrayList<>()),
+                new SingleReplication.TimeDouble("rep0", 0.0, 0.0, 10.0));
+        try
+        {
+            lp0.sendEvent(lp1, 1.5, () -> fail("should not be executed"));
+            fail("sending with a delay less than the lookahead should fail");
+        }
+        catch (SimRuntimeException exception)
+        {
+            // ok
+        }
+        try
+        {
+            lp0.sendEvent(lp2, 5.0, () -> fail("should not be executed"));
+            fail("sending without a channel should fail");
+        }
+        catch (SimRuntimeException exception)
+        {
+            // ok
+        }
+        try
+        {
+            lp0.start();
+            fail("starting a logical process on its own should fail");
+        }
+        catch (SimRuntimeException exception)
+        {
+            // ok
+        }
+    }
+
+    /**
+     * Run the ring with one logical process per station.
+     * @param parallel boolean; whether the logical processes are executed in parallel
+     * @return List&lt;String&gt;; the log of all stations
+     * @throws SimRuntimeException on simulation error
+     */
+    private List<String> runLogicalProcesses(final boolean parallel) throws SimRuntimeException
+    {
+        ConservativeSynchronizer<Double, Double, SimTimeDouble> synchronizer = new ConservativeSynchronizer<>("ring");
+        synchronizer.setParallel(parallel);
+        List<String> log = RING.runLogicalProcesses(synchronizer, LogicalProcess.TimeDouble::new);
+        assertTrue(synchronizer.getNumberOfWindows() > 0);
+        assertTrue(synchronizer.getNumberOfDeliveredMessages() > 0);
+        return log;
+    }
+
+}
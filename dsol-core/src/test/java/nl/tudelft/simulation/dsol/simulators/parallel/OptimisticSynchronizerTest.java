@@ -0,0 +1,121 @@
+package nl.tudelft.simulation.dsol.simulators.parallel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simulators.TokenRing;
+
+/**
+ * Test of the OptimisticSynchronizer: the optimistic execution of a partitioned model with rollbacks should give exactly the
+ * same results as the execution of the complete model on one DEVSSimulator, for small and large optimistic windows.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class OptimisticSynchronizerTest
+{
+    /** the lookahead of the channels, which is small compared to the time between events. */
+    private static final double LOOKAHEAD = 0.05;
+
+    /** the ring of 8 stations that sometimes reschedule a departure, and that runs until 100. */
+    private static final TokenRing RING = new TokenRing(8, LOOKAHEAD, 0.2, 100.0);
+
+    /**
+     * Compare the optimistic execution of the logical processes with the execution on one simulator.
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the test is interrupted
+     */
+    @Test
+    public void testRollback() throws SimRuntimeException, InterruptedException
+    {
+        List<String> reference = RING.runSingleSimulator();
+        assertTrue(reference.size() > 500);
+        for (double window : new double[] {LOOKAHEAD, 0.5, 5.0})
+        {
+            assertEquals(reference, runLogicalProcesses(window, false));
+            assertEquals(reference, runLogicalProcesses(window, true));
+        }
+    }
+
+    /**
+     * Test that only optimistic logical processes can be added to an optimistic synchronizer, and vice versa.
+     */
+    @Test
+    public void testChecks()
+    {
+        OptimisticSynchronizer<Double, Double, SimTimeDouble> optimistic = new OptimisticSynchronizer<>("opt", 1.0);
+        ConservativeSynchronizer<Double, Double, SimTimeDouble> conservative = new ConservativeSynchronizer<>("cons");
+        try
+        {
+            optimistic.addLogicalProcess(new LogicalProcess.TimeDouble("lp"));
+            fail("adding a conservative logical process to an optimistic synchronizer should fail");
+        }
+        catch (SimRuntimeException exception)
+        {
+            // ok
+        }
+        try
+        {
+            conservative.addLogicalProcess(new OptimisticLogicalProcess.TimeDouble("lp"));
+            fail("adding an optimistic logical process to a conservative synchronizer should fail");
+        }
+        catch (SimRuntimeException exception)
+        {
+            // ok
+        }
+        try
+        {
+            optimistic.setOptimisticWindow(0.0);
+            fail("an optimistic window of zero should fail");
+        }
+        catch (IllegalArgumentException exception)
+        {
+            // ok
+        }
+        assertEquals(1.0, optimistic.getOptimisticWindow(), 0.0);
+    }
+
+    /**
+     * Run the ring with one optimistic logical process per station.
+     * @param window double; the optimistic window
+     * @param parallel boolean; whether the logical processes are executed in parallel
+     * @return List&lt;String&gt;; the log of all stations
+     * @throws SimRuntimeException on simulation error
+     */
+    private List<String> runLogicalProcesses(final double window, final boolean parallel) throws SimRuntimeException
+    {
+        OptimisticSynchronizer<Double, Double, SimTimeDouble> synchronizer = new OptimisticSynchronizer<>("ring", window);
+        synchronizer.setParallel(parallel);
+        List<OptimisticLogicalProcess.TimeDouble> lps = new ArrayList<>();
+        List<String> log = RING.runLogicalProcesses(synchronizer, (id) ->
+        {
+            OptimisticLogicalProcess.TimeDouble lp = new OptimisticLogicalProcess.TimeDouble(id);
+            lps.add(lp);
+            return lp;
+        });
+        for (OptimisticLogicalProcess.TimeDouble lp : lps)
+        {
+            assertEquals(0, lp.getNumberOfUncommittedEvents());
+        }
+        if (window > 1.0)
+        {
+            assertTrue(synchronizer.getNumberOfRollbacks() > 0);
+            assertTrue(synchronizer.getNumberOfDeliveredAntiMessages() > 0);
+        }
+        return log;
+    }
+
+}
@@ -0,0 +1,120 @@
+package nl.tudelft.simulation.dsol.simulators.parallel.benchmark;
+
+import java.util.List;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.simtime.SimTimeDouble;
+import nl.tudelft.simulation.dsol.simulators.TokenRing;
+import nl.tudelft.simulation.dsol.simulators.parallel.ConservativeSynchronizer;
+import nl.tudelft.simulation.dsol.simulators.parallel.LogicalProcess;
+import nl.tudelft.simulation.dsol.simulators.parallel.OptimisticLogicalProcess;
+import nl.tudelft.simulation.dsol.simulators.parallel.OptimisticSynchronizer;
+
+/**
+ * SynchronizerBenchmark compares the execution time of the token ring on one DEVSSimulator with the execution time of the
+ * partitioned ring, with one logical process per station, on the ConservativeSynchronizer and on the OptimisticSynchronizer
+ * (Time Warp) with several optimistic windows. The ring is run with a large lookahead, for which the conservative
+ * synchronization works well, and with a small lookahead, for which the optimistic synchronization should do better. For
+ * every run, the benchmark checks that the results are the same as the results of the sequential run.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public final class SynchronizerBenchmark
+{
+    /** the number of stations, and thereby logical processes, of the ring. */
+    private static final int STATIONS = 16;
+
+    /** the end time of the replications. */
+    private static final double END_TIME = 1000.0;
+
+    /** the number of runs per configuration, of which the fastest is reported. */
+    private static final int RUNS = 3;
+
+    /** */
+    private SynchronizerBenchmark()
+    {
+        // utility class
+    }
+
+    /**
+     * Benchmark a ring with a given lookahead.
+     * @param lookahead double; the lookahead of the ring
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the benchmark is interrupted
+     */
+    public static void benchmark(final double lookahead) throws SimRuntimeException, InterruptedException
+    {
+        TokenRing ring = new TokenRing(STATIONS, lookahead, 0.2, END_TIME);
+        System.out.println("lookahead " + lookahead);
+
+        long fastest = Long.MAX_VALUE;
+        List<String> reference = null;
+        for (int run = 0; run < RUNS; run++)
+        {
+            long startTime = System.nanoTime();
+            reference = ring.runSingleSimulator();
+            fastest = Math.min(fastest, System.nanoTime() - startTime);
+        }
+        System.out.println(String.format("  DEVSSimulator                     : %6d ms, %d tokens received", fastest / 1000000,
+                reference.size()));
+
+        for (boolean parallel : new boolean[] {false, true})
+        {
+            fastest = Long.MAX_VALUE;
+            boolean same = true;
+            long windows = 0;
+            for (int run = 0; run < RUNS; run++)
+            {
+                ConservativeSynchronizer<Double, Double, SimTimeDouble> synchronizer = new ConservativeSynchronizer<>("ring");
+                synchronizer.setParallel(parallel);
+                long startTime = System.nanoTime();
+                List<String> log = ring.runLogicalProcesses(synchronizer, LogicalProcess.TimeDouble::new);
+                fastest = Math.min(fastest, System.nanoTime() - startTime);
+                same &= reference.equals(log);
+                windows = synchronizer.getNumberOfWindows();
+            }
+            System.out.println(String.format("  Conservative %-10s           : %6d ms, %d windows, same results: %b",
+                    parallel ? "parallel" : "sequential", fastest / 1000000, windows, same));
+        }
+
+        for (double window : new double[] {lookahead, 10.0 * lookahead, 100.0 * lookahead})
+        {
+            fastest = Long.MAX_VALUE;
+            boolean same = true;
+            long rollbacks = 0;
+            for (int run = 0; run < RUNS; run++)
+            {
+                OptimisticSynchronizer<Double, Double, SimTimeDouble> synchronizer =
+                        new OptimisticSynchronizer<>("ring", window);
+                synchronizer.setParallel(true);
+                long startTime = System.nanoTime();
+                List<String> log = ring.runLogicalProcesses(synchronizer, OptimisticLogicalProcess.TimeDouble::new);
+                fastest = Math.min(fastest, System.nanoTime() - startTime);
+                same &= reference.equals(log);
+                rollbacks = synchronizer.getNumberOfRollbacks();
+            }
+            System.out.println(String.format("  Time Warp, window %-8.3f        : %6d ms, %d rollbacks, same results: %b",
+                    window, fastest / 1000000, rollbacks, same));
+        }
+    }
+
+    /**
+     * Execute the benchmark.
+     * @param args String[]; the command line arguments, not used
+     * @throws SimRuntimeException on simulation error
+     * @throws InterruptedException when the benchmark is interrupted
+     */
+    public static void main(final String[] args) throws SimRuntimeException, InterruptedException
+    {
+        System.out.println("Token ring with " + STATIONS + " stations until " + END_TIME + ", " + Runtime.getRuntime()
+                .availableProcessors() + " processors, fastest of " + RUNS + " runs");
+        benchmark(0.5);
+        benchmark(0.01);
+    }
+
+}
@@ -0,0 +1,235 @@
+package nl.tudelft.simulation.jstats.distributions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.ToDoubleFunction;
+
+import org.junit.Test;
+
+import nl.tudelft.simulation.jstats.math.ProbMath;
+import nl.tudelft.simulation.jstats.streams.DX120Generator;
+import nl.tudelft.simulation.jstats.streams.Java2Random;
+import nl.tudelft.simulation.jstats.streams.MRG32k3aGenerator;
+import nl.tudelft.simulation.jstats.streams.MersenneTwister;
+import nl.tudelft.simulation.jstats.streams.StreamInterface;
+import nl.tudelft.simulation.jstats.streams.Xoshiro256Generator;
+
+/**
+ * ZigguratSamplerTest validates the ziggurat normal and exponential samplers and the gamma sampler with Kolmogorov-Smirnov and
+ * chi-square goodness-of-fit tests, for each of the streams.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class ZigguratSamplerTest
+{
+    /** the number of samples for the goodness-of-fit tests. */
+    private static final int N = 200_000;
+
+    /** the critical value of the Kolmogorov-Smirnov statistic sqrt(n)*D for alpha = 0.001. */
+    private static final double KS_CRITICAL = 1.95;
+
+    /** the number of bins for the chi-square tests. */
+    private static final int BINS = 50;
+
+    /** the critical value of chi-square with 49 degrees of freedom for alpha = 0.001. */
+    private static final double CHI2_CRITICAL = 85.35;
+
+    /**
+     * @return StreamInterface[]; the streams to test with
+     */
+    private StreamInterface[] streams()
+    {
+        return new StreamInterface[] {new Java2Random(10L), new MersenneTwister(11L), new DX120Generator(12L),
+                new MRG32k3aGenerator(13L), new Xoshiro256Generator(14L)};
+    }
+
+    /**
+     * Test the ziggurat normal sampler.
+     */
+    @Test
+    public void testNormal()
+    {
+        DoubleUnaryOperator cdf = x -> 0.5 + 0.5 * ProbMath.erf(x / Math.sqrt(2.0));
+        for (StreamInterface stream : streams())
+        {
+            String name = "normal " + stream.getClass().getSimpleName();
+            double[] values = sample(stream, ZigguratSampler::nextNormal);
+            testKolmogorovSmirnov(name, values, cdf);
+            testChiSquare(name, values, cdf);
+            double tail = Arrays.stream(values).filter(x -> Math.abs(x) > 3.442619855899).count() / (double) N;
+            assertEquals(name + " tail", 2.0 * (1.0 - cdf.applyAsDouble(3.442619855899)), tail, 3E-4);
+        }
+    }
+
+    /**
+     * Test the ziggurat exponential sampler.
+     */
+    @Test
+    public void testExponential()
+    {
+        DoubleUnaryOperator cdf = x -> x <= 0.0 ? 0.0 : 1.0 - Math.exp(-x);
+        for (StreamInterface stream : streams())
+        {
+            String name = "exponential " + stream.getClass().getSimpleName();
+            double[] values = sample(stream, ZigguratSampler::nextExponential);
+            assertTrue(name + " min", Arrays.stream(values).min().getAsDouble() >= 0.0);
+            testKolmogorovSmirnov(name, values, cdf);
+            testChiSquare(name, values, cdf);
+            double tail = Arrays.stream(values).filter(x -> x > 7.69711747013104972).count() / (double) N;
+            assertEquals(name + " tail", Math.exp(-7.69711747013104972), tail, 3E-4);
+        }
+    }
+
+    /**
+     * Test the Marsaglia-Tsang gamma sampler for shape &gt; 1, shape = 1 and shape &lt; 1, and the Erlang distribution above
+     * and below its gamma threshold.
+     */
+    @Test
+    public void testGamma()
+    {
+        for (StreamInterface stream : streams())
+        {
+            String name = "gamma " + stream.getClass().getSimpleName();
+            // Gamma(3, 2) has the Erlang CDF 1 - sum_{n=0}^{2} exp(-x/2) (x/2)^n / n!
+            DoubleUnaryOperator cdf3 = x -> x <= 0.0 ? 0.0 : 1.0 - Math.exp(-x / 2.0) * (1.0 + x / 2.0 + x * x / 8.0);
+            DistGamma gamma3 = new DistGamma(stream, 3.0, 2.0);
+            double[] values = sample(stream, s -> gamma3.draw());
+            testKolmogorovSmirnov(name + "(3,2)", values, cdf3);
+            testChiSquare(name + "(3,2)", values, cdf3);
+            DistErlang erlang3 = new DistErlang(stream, 2.0, 3);
+            testKolmogorovSmirnov("erlang(2,3)", sample(stream, s -> erlang3.draw()), cdf3);
+
+            // Gamma(0.5, 1) is the distribution of Z^2/2 for standard normal Z, with CDF erf(sqrt(x))
+            DoubleUnaryOperator cdfHalf = x -> x <= 0.0 ? 0.0 : ProbMath.erf(Math.sqrt(x));
+            DistGamma gammaHalf = new DistGamma(stream, 0.5, 1.0);
+            values = sample(stream, s -> gammaHalf.draw());
+            testKolmogorovSmirnov(name + "(0.5,1)", values, cdfHalf);
+            testChiSquare(name + "(0.5,1)", values, cdfHalf);
+
+            // Gamma(1, 1.5) is exponential with mean 1.5
+            DoubleUnaryOperator cdf1 = x -> x <= 0.0 ? 0.0 : 1.0 - Math.exp(-x / 1.5);
+            DistGamma gamma1 = new DistGamma(stream, 1.0, 1.5);
+            testKolmogorovSmirnov(name + "(1,1.5)", sample(stream, s -> gamma1.draw()), cdf1);
+
+            // Erlang(0.5, 12) above the gamma threshold, with the Erlang CDF
+            DoubleUnaryOperator cdf12 = x ->
+            {
+                double sum = 0.0;
+                double term = 1.0;
+                for (int n = 0; n < 12; n++)
+                {
+                    sum += term;
+                    term *= (x / 0.5) / (n + 1);
+                }
+                return x <= 0.0 ? 0.0 : 1.0 - Math.exp(-x / 0.5) * sum;
+            };
+            DistErlang erlang12 = new DistErlang(stream, 0.5, 12);
+            testKolmogorovSmirnov("erlang(0.5,12)", sample(stream, s -> erlang12.draw()), cdf12);
+        }
+    }
+
+    /**
+     * Test the truncated normal distribution in the rejection regime and in the inverse transform regime.
+     */
+    @Test
+    public void testNormalTrunc()
+    {
+        for (double[] ab : new double[][] {{-1.0, 2.0}, {1.0, 3.0}})
+        {
+            double a = ab[0];
+            double b = ab[1];
+            DoubleUnaryOperator phi = x -> 0.5 + 0.5 * ProbMath.erf(x / Math.sqrt(2.0));
+            double z = phi.applyAsDouble(b) - phi.applyAsDouble(a);
+            DoubleUnaryOperator cdf = x -> x <= a ? 0.0 : x >= b ? 1.0 : (phi.applyAsDouble(x) - phi.applyAsDouble(a)) / z;
+            DistNormalTrunc dist = new DistNormalTrunc(new MersenneTwister(20L), a, b);
+            testKolmogorovSmirnov("normaltrunc(" + a + "," + b + ")", sample(null, s -> dist.draw()), cdf);
+        }
+    }
+
+    /**
+     * Draw N values.
+     * @param stream StreamInterface; the stream
+     * @param sampler ToDoubleFunction&lt;StreamInterface&gt;; the sampler
+     * @return double[]; the values
+     */
+    private double[] sample(final StreamInterface stream, final ToDoubleFunction<StreamInterface> sampler)
+    {
+        double[] values = new double[N];
+        for (int i = 0; i < N; i++)
+        {
+            values[i] = sampler.applyAsDouble(stream);
+        }
+        return values;
+    }
+
+    /**
+     * Carry out a one-sample Kolmogorov-Smirnov test.
+     * @param name String; the name for the assertion messages
+     * @param values double[]; the sample
+     * @param cdf DoubleUnaryOperator; the hypothesized cumulative distribution function
+     */
+    private void testKolmogorovSmirnov(final String name, final double[] values, final DoubleUnaryOperator cdf)
+    {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        double d = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            double f = cdf.applyAsDouble(sorted[i]);
+            d = Math.max(d, Math.max((i + 1.0) / n - f, f - (double) i / n));
+        }
+        assertTrue(name + " KS statistic " + d * Math.sqrt(n), d * Math.sqrt(n) < KS_CRITICAL);
+    }
+
+    /**
+     * Carry out a chi-square test with BINS equiprobable bins, using bisection on the cdf for the bin boundaries.
+     * @param name String; the name for the assertion messages
+     * @param values double[]; the sample
+     * @param cdf DoubleUnaryOperator; the hypothesized cumulative distribution function
+     */
+    private void testChiSquare(final String name, final double[] values, final DoubleUnaryOperator cdf)
+    {
+        double[] bounds = new double[BINS - 1];
+        for (int k = 1; k < BINS; k++)
+        {
+            double p = (double) k / BINS;
+            double lo = -50.0;
+            double hi = 50.0;
+            for (int iter = 0; iter < 100; iter++)
+            {
+                double mid = 0.5 * (lo + hi);
+                if (cdf.applyAsDouble(mid) < p)
+                {
+                    lo = mid;
+                }
+                else
+                {
+                    hi = mid;
+                }
+            }
+            bounds[k - 1] = 0.5 * (lo + hi);
+        }
+        int[] counts = new int[BINS];
+        for (double v : values)
+        {
+            int index = Arrays.binarySearch(bounds, v);
+            counts[index >= 0 ? index : -index - 1]++;
+        }
+        double expected = (double) values.length / BINS;
+        double chi2 = 0.0;
+        for (int count : counts)
+        {
+            chi2 += (count - expected) * (count - expected) / expected;
+        }
+        assertTrue(name + " chi-square " + chi2, chi2 < CHI2_CRITICAL);
+    }
+}
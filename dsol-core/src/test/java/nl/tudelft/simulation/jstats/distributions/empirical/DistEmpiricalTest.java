@@ -3,6 +3,8 @@ package nl.tudelft.simulation.jstats.distributions.empirical;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
+
 import org.djutils.exceptions.Try;
 import org.junit.Test;
 
@@ -137,4 +139,284 @@ public class DistEmpiricalTest
         Try.testFail(() -> { new DistEmpiricalDiscreteLong(stream, empDist3); });
     }
 
+    /**
+     * Test that the index-based lookup with the guide table returns the same entry as the lookup in the map, and that the
+     * distributions draw the same values as with the lookup in the map.
+     */
+    @Test
+    public void testGuideTable()
+    {
+        StreamInterface stream = new MersenneTwister(20L);
+        int n = 1000;
+        double[] cpd = new double[n];
+        long[] vl = new long[n];
+        double sum = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            sum += stream.nextDouble() * stream.nextDouble();
+            cpd[i] = sum;
+            vl[i] = 3 * i;
+        }
+        for (int i = 0; i < n; i++)
+        {
+            cpd[i] /= sum;
+        }
+        cpd[n - 1] = 1.0;
+        DiscreteEmpiricalDistribution empDist = CumulativeProbabilities.createDiscreteDistribution(vl, cpd);
+        for (int i = 0; i < n; i++)
+        {
+            assertEquals(i, empDist.getCeilingIndex(cpd[i]));
+            assertEquals(cpd[i], empDist.getCumulativeProbability(i), 0.0);
+            assertEquals(3L * i, empDist.getValue(i).longValue());
+            if (i > 0)
+            {
+                assertEquals(i, empDist.getCeilingIndex(Math.nextUp(cpd[i - 1])));
+            }
+        }
+        assertEquals(0, empDist.getCeilingIndex(0.0));
+        assertEquals(0, empDist.getCeilingIndex(-1.0));
+        assertEquals(n - 1, empDist.getCeilingIndex(1.0));
+        assertEquals(-1, empDist.getCeilingIndex(1.1));
+        for (int i = 0; i < 100_000; i++)
+        {
+            double u = stream.nextDouble();
+            assertEquals(empDist.getCeilingEntry(u).getValue(), empDist.getValue(empDist.getCeilingIndex(u)));
+        }
+
+        DistEmpiricalDiscreteLong distLong = new DistEmpiricalDiscreteLong(new MersenneTwister(21L), empDist);
+        assertEquals(SamplingMethod.INVERSE_TRANSFORM, distLong.getSamplingMethod());
+        StreamInterface checkStream = new MersenneTwister(21L);
+        for (int i = 0; i < 10_000; i++)
+        {
+            assertEquals(empDist.getCeilingEntry(checkStream.nextDouble()).getValue().longValue(), distLong.draw());
+        }
+
+        double[] cpi = {0.0, 0.1, 0.5, 0.8, 1.0};
+        double[] vi = {0.0, 1.0, 2.0, 3.0, 4.0};
+        InterpolatedEmpiricalDistribution empDistI = CumulativeProbabilities.createInterpolatedDistribution(vi, cpi);
+        DistEmpiricalInterpolated distI = new DistEmpiricalInterpolated(new MersenneTwister(22L), empDistI);
+        checkStream = new MersenneTwister(22L);
+        for (int i = 0; i < 10_000; i++)
+        {
+            double u = checkStream.nextDouble();
+            DistributionEntry entry0 = empDistI.getFloorEntry(u);
+            DistributionEntry entry1 = empDistI.getCeilingEntry(u);
+            double v0 = entry0.getValue().doubleValue();
+            double c0 = entry0.getCumulativeProbability();
+            double expected = v0 + (entry1.getValue().doubleValue() - v0) * (u - c0) / (entry1.getCumulativeProbability() - c0);
+            assertEquals(expected, distI.draw(), 0.0);
+        }
+    }
+
+    /**
+     * Test the alias method for the discrete empirical distributions.
+     */
+    @Test
+    public void testAliasMethod()
+    {
+        StreamInterface stream = new MersenneTwister(12L);
+        double[] cpd = {0.1, 0.5, 0.5000001, 0.8, 1.0};
+        long[] vl = {1, 2, 3, 4, 5};
+        double[] density = {0.1, 0.4, 0.0000001, 0.3, 0.2};
+        DiscreteEmpiricalDistribution empDist = CumulativeProbabilities.createDiscreteDistribution(vl, cpd);
+        DistEmpiricalDiscreteLong distLong = new DistEmpiricalDiscreteLong(stream, empDist, SamplingMethod.ALIAS);
+        assertEquals(SamplingMethod.ALIAS, distLong.getSamplingMethod());
+        int[] bins = new int[5];
+        for (int i = 0; i < 100_000; i++)
+        {
+            bins[(int) (distLong.draw() - 1)]++;
+        }
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(density[i], bins[i] / 100_000.0, 5E-3);
+            assertEquals(density[i], distLong.probability(vl[i]), 1E-6);
+        }
+
+        double[] vd = {1.0, 2.0, 3.0, 4.0, 5.0};
+        DiscreteEmpiricalDistribution empDistD = CumulativeProbabilities.createDiscreteDistribution(vd, cpd);
+        DistEmpiricalDiscreteDouble distDouble = new DistEmpiricalDiscreteDouble(stream, empDistD, SamplingMethod.ALIAS);
+        bins = new int[5];
+        for (int i = 0; i < 100_000; i++)
+        {
+            bins[(int) (distDouble.draw() - 1.0)]++;
+        }
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(density[i], bins[i] / 100_000.0, 5E-3);
+        }
+
+        // every index of the table is reachable exactly with the right probability
+        AliasTable table = new AliasTable(new double[] {1.0, 0.0, 3.0, 4.0});
+        assertEquals(4, table.size());
+        int[] count = new int[4];
+        int m = 80_000;
+        for (int i = 0; i < m; i++)
+        {
+            count[table.sample((i + 0.5) / m)]++;
+        }
+        assertEquals(10_000, count[0]);
+        assertEquals(0, count[1]);
+        assertEquals(30_000, count[2]);
+        assertEquals(40_000, count[3]);
+        assertEquals(0, new AliasTable(new double[] {2.0}).sample(0.999));
+
+        Try.testFail(() -> { new AliasTable((double[]) null); }, NullPointerException.class);
+        Try.testFail(() -> { new AliasTable(new double[0]); }, IllegalArgumentException.class);
+        Try.testFail(() -> { new AliasTable(new double[] {0.5, -0.1}); }, IllegalArgumentException.class);
+        Try.testFail(() -> { new AliasTable(new double[] {0.5, Double.NaN}); }, IllegalArgumentException.class);
+        Try.testFail(() -> { new AliasTable(new double[] {0.0, 0.0}); }, IllegalArgumentException.class);
+        Try.testFail(() -> { new DistEmpiricalDiscreteLong(stream, empDist, null); }, NullPointerException.class);
+        Try.testFail(() -> { new DistEmpiricalDiscreteDouble(stream, empDistD, null); }, NullPointerException.class);
+    }
+
+    /**
+     * Test that the default index-based methods of the EmpiricalDistributionInterface, for implementations that do not
+     * override them, return the same results as the methods of AbstractEmpiricalDistribution.
+     */
+    @Test
+    public void testDefaultIndexMethods()
+    {
+        StreamInterface stream = new MersenneTwister(23L);
+        int n = 100;
+        double[] cpd = new double[n];
+        long[] vl = new long[n];
+        double sum = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            sum += stream.nextDouble();
+            cpd[i] = sum;
+            vl[i] = 2 * i + 1;
+        }
+        for (int i = 0; i < n; i++)
+        {
+            cpd[i] /= sum;
+        }
+        cpd[n - 1] = 1.0;
+        DiscreteEmpiricalDistribution empDist = CumulativeProbabilities.createDiscreteDistribution(vl, cpd);
+        EmpiricalDistributionInterface delegate = new DelegatingDistribution(empDist);
+        for (int i = 0; i < n; i++)
+        {
+            assertEquals(empDist.getCumulativeProbability(i), delegate.getCumulativeProbability(i), 0.0);
+            assertEquals(empDist.getValue(i), delegate.getValue(i));
+            assertEquals(i, delegate.getCeilingIndex(cpd[i]));
+            assertEquals(i, delegate.getCeilingIndex(Math.nextDown(cpd[i])));
+        }
+        assertEquals(0, delegate.getCeilingIndex(-1.0));
+        assertEquals(n - 1, delegate.getCeilingIndex(1.0));
+        assertEquals(-1, delegate.getCeilingIndex(1.1));
+        for (int i = 0; i < 10_000; i++)
+        {
+            double u = stream.nextDouble();
+            assertEquals(empDist.getCeilingIndex(u), delegate.getCeilingIndex(u));
+        }
+        Try.testFail(() -> delegate.getValue(n), IndexOutOfBoundsException.class);
+        Try.testFail(() -> delegate.getCumulativeProbability(-1), IndexOutOfBoundsException.class);
+
+        AliasTable table = new AliasTable(empDist);
+        AliasTable delegateTable = new AliasTable(delegate);
+        for (int i = 0; i < 10_000; i++)
+        {
+            double u = stream.nextDouble();
+            assertEquals(table.sample(u), delegateTable.sample(u));
+        }
+    }
+
+    /**
+     * Empirical distribution that only implements the abstract methods of the EmpiricalDistributionInterface, by delegating
+     * them to another empirical distribution, so the default methods of the interface are used.
+     */
+    private static class DelegatingDistribution implements EmpiricalDistributionInterface
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the distribution to delegate to. */
+        private final EmpiricalDistributionInterface distribution;
+
+        /**
+         * @param distribution EmpiricalDistributionInterface; the distribution to delegate to
+         */
+        DelegatingDistribution(final EmpiricalDistributionInterface distribution)
+        {
+            this.distribution = distribution;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size()
+        {
+            return this.distribution.size();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public List<Number> getValues()
+        {
+            return this.distribution.getValues();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public List<Double> getCumulativeProbabilities()
+        {
+            return this.distribution.getCumulativeProbabilities();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public DistributionEntry getFloorEntry(final double cumulativeProbability)
+        {
+            return this.distribution.getFloorEntry(cumulativeProbability);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public DistributionEntry getCeilingEntry(final double cumulativeProbability)
+        {
+            return this.distribution.getCeilingEntry(cumulativeProbability);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public DistributionEntry getPrevEntry(final double cumulativeProbability)
+        {
+            return this.distribution.getPrevEntry(cumulativeProbability);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public DistributionEntry getNextEntry(final double cumulativeProbability)
+        {
+            return this.distribution.getNextEntry(cumulativeProbability);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public DistributionEntry getFloorEntryForValue(final Number value)
+        {
+            return this.distribution.getFloorEntryForValue(value);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public DistributionEntry getCeilingEntryForValue(final Number value)
+        {
+            return this.distribution.getCeilingEntryForValue(value);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Number getHighestValue()
+        {
+            return this.distribution.getHighestValue();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Number getLowestValue()
+        {
+            return this.distribution.getLowestValue();
+        }
+    }
+
 }
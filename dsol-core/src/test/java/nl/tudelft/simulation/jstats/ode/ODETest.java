@@ -1,12 +1,22 @@
 package nl.tudelft.simulation.jstats.ode;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.Serializable;
 
+import org.djutils.exceptions.Try;
 import org.junit.Test;
 
+import nl.tudelft.simulation.jstats.ode.integrators.AdaptiveNumericalIntegrator;
+import nl.tudelft.simulation.jstats.ode.integrators.BDF;
+import nl.tudelft.simulation.jstats.ode.integrators.ImplicitNumericalIntegrator;
+import nl.tudelft.simulation.jstats.ode.integrators.LUDecomposition;
+import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegrator;
 import nl.tudelft.simulation.jstats.ode.integrators.NumericalIntegratorType;
+import nl.tudelft.simulation.jstats.ode.integrators.Rosenbrock;
+import nl.tudelft.simulation.language.DSOLRuntimeException;
 
 /**
  * The test script for the ODE package.
@@ -46,6 +56,35 @@ public class ODETest
         }
     }
 
+    /**
+     * tests that y(x) continues on the grid of a fixed step integrator over a number of calls, and that a multistep integrator
+     * keeps the values of its earlier steps, so y(5) is exactly the same with and without the values computed before.
+     */
+    @Test
+    public void testContinuation()
+    {
+        for (NumericalIntegratorType integrationMethod : NumericalIntegratorType.values())
+        {
+            ODE ode = new ODE(0.01, integrationMethod);
+            if (ode.getIntegrator() instanceof AdaptiveNumericalIntegrator)
+            {
+                continue;
+            }
+            String m = "Method " + integrationMethod.toString();
+            double[] y2 = ode.y(2.005).clone();
+            ode.y(2.007);
+            ode.y(3.333);
+            double[] y5 = ode.y(5.0);
+            ODE reference = new ODE(0.01, integrationMethod);
+            assertEquals(m, reference.y(5.0)[0], y5[0], 0.0);
+            assertEquals(m, 27.0, y5[0], 0.5);
+
+            // initialize() starts again from the new value, also for a multistep integrator
+            ode.initialize(1.0, new double[] {1.0});
+            assertEquals(m, y2[0], ode.y(2.005)[0], 0.0);
+        }
+    }
+
     /**
      * tests the differential equation solvers on the stiff equation y" + 101y' + 100y = 0. This can be split into two
      * equations: y' = p and p' = -100y -101p with y(0) = 1 and p(0) = -1. The exact solution is y(x) = exp(-x). see F. Scheid,
@@ -77,6 +116,271 @@ public class ODETest
         }
     }
 
+    /**
+     * tests the adaptive Dormand-Prince integrator on y' = x.y^(1/3) and on the stiff equation, checking the accuracy, the
+     * dense output between the steps, and the number of steps.
+     */
+    @Test
+    public void testAdaptive()
+    {
+        ODE ode = new ODE(0.01, NumericalIntegratorType.DORMANDPRINCE);
+        AdaptiveNumericalIntegrator integrator = (AdaptiveNumericalIntegrator) ode.getIntegrator();
+        // exact solution y = ((x^2 + 2) / 3)^(3/2)
+        for (double x = 1.0; x <= 5.0; x += 0.01)
+        {
+            double expected = Math.pow((x * x + 2.0) / 3.0, 1.5);
+            assertEquals("x = " + x, expected, ode.y(x)[0], 1E-5 * expected);
+        }
+        // smooth solution: far fewer steps than the 400 of the fixed step integrators
+        assertTrue(integrator.getAcceptedSteps() < 100);
+        assertTrue(integrator.getStepEnd() >= 5.0);
+
+        // re-initialization restarts the integrator
+        ode.initialize(1.0, new double[] {1.0});
+        assertFalse(integrator.isInitialized());
+        assertEquals(2.82843, ode.y(2.0)[0], 1E-4);
+        assertTrue(integrator.covers(2.0));
+
+        // tighter tolerances give a more accurate answer with more steps
+        ode.initialize(1.0, new double[] {1.0});
+        integrator.setTolerances(1E-10, 1E-12);
+        assertEquals(27.0, ode.y(5.0)[0], 1E-7);
+
+        // next(x, y) integrates exactly one stepSize
+        double[] y = integrator.next(1.0, new double[] {1.0});
+        assertEquals(1.01, integrator.getStepEnd(), 0.0);
+        assertEquals(Math.pow((1.01 * 1.01 + 2.0) / 3.0, 1.5), y[0], 1E-9);
+
+        StiffODE stiff = new StiffODE(0.01, NumericalIntegratorType.DORMANDPRINCE);
+        for (double x = 0.0; x <= 10.0; x += 0.5)
+        {
+            assertEquals("x = " + x, Math.exp(-x), stiff.y(x)[0], 1E-5);
+        }
+
+        Try.testFail(() -> { integrator.setTolerances(-1.0, 1E-6); }, IllegalArgumentException.class);
+        Try.testFail(() -> { integrator.setTolerances(0.0, 0.0); }, IllegalArgumentException.class);
+        Try.testFail(() -> { integrator.setStepSizeBounds(1.0, 0.5); }, IllegalArgumentException.class);
+        Try.testFail(() -> { integrator.interpolate(100.0); }, DSOLRuntimeException.class);
+        integrator.reset();
+        Try.testFail(() -> { integrator.step(2.0); }, DSOLRuntimeException.class);
+    }
+
+    /**
+     * tests that the integrators only use the in-place dy(x, y, dy) method of the equation when stepping with next(x, y, yNext),
+     * that the in-place step gives the same result as next(x, y), and that yNext can be the same array as y.
+     */
+    @Test
+    public void testInPlace()
+    {
+        for (NumericalIntegratorType integrationMethod : NumericalIntegratorType.values())
+        {
+            InPlaceODE ode = new InPlaceODE();
+            NumericalIntegrator integrator = integrationMethod.getInstance(0.001, ode);
+            NumericalIntegrator reference = integrationMethod.getInstance(0.001, ode);
+            double[] y = new double[] {1.0, -1.0};
+            double[] yRef = y.clone();
+            double x = 0.0;
+            for (int i = 0; i < 100; i++)
+            {
+                integrator.next(x, y, y);
+                yRef = reference.next(x, yRef);
+                x += 0.001;
+            }
+            String m = "Method " + integrationMethod.toString();
+            assertEquals(m, 0, ode.allocatingCalls);
+            assertEquals(m, yRef[0], y[0], 0.0);
+            assertEquals(m, yRef[1], y[1], 0.0);
+            assertEquals(m, Math.exp(-0.1), y[0], 1E-3);
+        }
+    }
+
+    /**
+     * tests the implicit integrators on a very stiff equation y' = -1000 (y - cos(x)) - sin(x) with solution y = cos(x), with a
+     * step size for which the explicit integrators are unstable, with the analytical and the numerical Jacobian.
+     */
+    @Test
+    public void testImplicit()
+    {
+        for (NumericalIntegratorType integrationMethod : new NumericalIntegratorType[] {NumericalIntegratorType.BDF1,
+                NumericalIntegratorType.BDF2, NumericalIntegratorType.BDF3, NumericalIntegratorType.BDF4,
+                NumericalIntegratorType.BDF5, NumericalIntegratorType.ROSENBROCK})
+        {
+            for (boolean analytical : new boolean[] {true, false})
+            {
+                VeryStiffODE ode = analytical ? new AnalyticalStiffODE() : new VeryStiffODE();
+                ImplicitNumericalIntegrator integrator =
+                        (ImplicitNumericalIntegrator) integrationMethod.getInstance(0.05, ode);
+                String m = "Method " + integrationMethod.toString() + ", analytical = " + analytical;
+                double[] y = new double[] {1.0};
+                double x = 0.0;
+                for (int i = 0; i < 100; i++)
+                {
+                    integrator.next(x, y, y);
+                    x = 0.05 * (i + 1);
+                }
+                double tolerance = integrationMethod == NumericalIntegratorType.BDF1 ? 1E-3 : 1E-5;
+                assertEquals(m, Math.cos(5.0), y[0], tolerance);
+                if (analytical)
+                {
+                    // the integrator, and the Rosenbrock primer of BDF, use the analytical Jacobian
+                    assertTrue(m, ((AnalyticalStiffODE) ode).jacobianCalls >= integrator.getJacobianEvaluations());
+                }
+                if (integrationMethod == NumericalIntegratorType.ROSENBROCK)
+                {
+                    assertEquals(m, 100, integrator.getJacobianEvaluations());
+                }
+                else
+                {
+                    // linear equation: the first Jacobian and its factorization are used for all steps
+                    assertEquals(m, 1, integrator.getJacobianEvaluations());
+                    assertEquals(m, 1, integrator.getDecompositions());
+                }
+            }
+        }
+
+        // the explicit integrators are unstable for this step size
+        NumericalIntegrator rk4 = NumericalIntegratorType.RUNGEKUTTA4.getInstance(0.05, new VeryStiffODE());
+        double[] y = new double[] {1.0};
+        for (int i = 0; i < 100; i++)
+        {
+            rk4.next(0.05 * i, y, y);
+        }
+        assertFalse(Math.abs(y[0] - Math.cos(5.0)) < 1.0);
+
+        // switching the integrator of a differential equation with one line
+        StiffODE stiff = new StiffODE(0.01, NumericalIntegratorType.RUNGEKUTTA4);
+        stiff.setIntegrator(NumericalIntegratorType.BDF3);
+        assertTrue(stiff.getIntegrator() instanceof BDF);
+        assertEquals(3, ((BDF) stiff.getIntegrator()).getOrder());
+        for (double x = 0.5; x <= 10.0; x += 0.5)
+        {
+            assertEquals("x = " + x, Math.exp(-x), stiff.y(x)[0], 1E-4 * Math.exp(-x));
+        }
+
+        Rosenbrock rosenbrock = new Rosenbrock(0.05, new VeryStiffODE());
+        rosenbrock.setMaxJacobianAge(10);
+        rosenbrock.next(0.0, new double[] {1.0});
+        rosenbrock.invalidateJacobian();
+        rosenbrock.next(0.05, new double[] {1.0});
+        assertEquals(2, rosenbrock.getJacobianEvaluations());
+        Try.testFail(() -> { rosenbrock.setMaxJacobianAge(0); }, IllegalArgumentException.class);
+        Try.testFail(() -> { new BDF(0.01, new VeryStiffODE(), 6); }, IllegalArgumentException.class);
+        Try.testFail(() -> { new BDF(0.01, new VeryStiffODE(), 0); }, IllegalArgumentException.class);
+        Try.testFail(() -> { new BDF(0.01, new VeryStiffODE()).setTolerances(0.0, 0.0); },
+                IllegalArgumentException.class);
+    }
+
+    /**
+     * tests the LU decomposition.
+     */
+    @Test
+    public void testLUDecomposition()
+    {
+        LUDecomposition lu = new LUDecomposition();
+        assertFalse(lu.isDecomposed());
+        double[][] a = new double[][] {{0.0, 2.0, 1.0}, {1.0, 1.0, 1.0}, {4.0, -2.0, 3.0}};
+        lu.decompose(a);
+        assertTrue(lu.isDecomposed());
+        assertEquals(3, lu.size());
+        assertEquals(0.0, a[0][0], 0.0); // the matrix is not changed
+        double[] b = new double[] {5.0, 6.0, 9.0};
+        lu.solve(b, new double[3]);
+        // check the solution by substitution
+        double[] expected = new double[] {5.0, 6.0, 9.0};
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(expected[i], a[i][0] * b[0] + a[i][1] * b[1] + a[i][2] * b[2], 1E-12);
+        }
+        Try.testFail(() -> { lu.decompose(new double[][] {{1.0, 2.0}, {2.0, 4.0}}); }, DSOLRuntimeException.class);
+        assertFalse(lu.isDecomposed());
+        Try.testFail(() -> { lu.solve(new double[2], new double[2]); }, DSOLRuntimeException.class);
+        Try.testFail(() -> { lu.decompose(new double[][] {{1.0, 2.0}, {2.0}}); }, IllegalArgumentException.class);
+    }
+
+    /**
+     * tests the batch integration of many instances of the same equation, against the integration of the instances one by one.
+     */
+    @Test
+    public void testBatch()
+    {
+        int size = 3000;
+        double[] rates = new double[size];
+        double[][] y0 = new double[size][];
+        for (int i = 0; i < size; i++)
+        {
+            rates[i] = 0.1 + i / 1000.0;
+            y0[i] = new double[] {1.0 + i, 0.0};
+        }
+        for (boolean parallel : new boolean[] {false, true})
+        {
+            BatchDifferentialEquation batch =
+                    new BatchDifferentialEquation(0.01, NumericalIntegratorType.RUNGEKUTTA4, new DecayBatch(rates), size);
+            batch.setParallel(parallel, 100);
+            assertEquals(parallel, batch.isParallel());
+            assertEquals(100, batch.getChunkSize());
+            assertEquals(size, batch.getSize());
+            assertEquals(2, batch.getNumberOfVariables());
+            batch.initialize(0.0, y0);
+            batch.y(2.0);
+            for (int i = 0; i < size; i += 299)
+            {
+                // y' = -k y, z' = y for one instance, with the same integrator and step size
+                final double k = rates[i];
+                DifferentialEquationInterface single = new DifferentialEquationInterface()
+                {
+                    /** {@inheritDoc} */
+                    @Override
+                    public void initialize(final double x0, final double[] y0)
+                    {
+                        // not used
+                    }
+
+                    /** {@inheritDoc} */
+                    @Override
+                    public double[] y(final double x)
+                    {
+                        return null;
+                    }
+
+                    /** {@inheritDoc} */
+                    @Override
+                    public double[] dy(final double x, final double[] y)
+                    {
+                        return new double[] {-k * y[0], y[0]};
+                    }
+                };
+                NumericalIntegrator integrator = NumericalIntegratorType.RUNGEKUTTA4.getInstance(0.01, single);
+                double[] y = y0[i].clone();
+                for (int step = 0; step < 200; step++)
+                {
+                    integrator.next(0.01 * step, y, y);
+                }
+                double[] instance = batch.y(2.0, i);
+                assertEquals(y[0], instance[0], 1E-12 * y0[i][0]);
+                assertEquals(y[1], instance[1], 1E-12 * y0[i][0]);
+                assertEquals(instance[0], batch.getValue(i, 0), 0.0);
+                assertEquals((1.0 + i) * Math.exp(-2.0 * k), instance[0], 1E-6 * y0[i][0]);
+            }
+
+            // a discrete change of one instance
+            batch.setValue(5, 0, 100.0);
+            assertEquals(100.0, batch.getValue(5, 0), 0.0);
+            assertEquals(100.0 * Math.exp(-(0.1 + 5 / 1000.0)), batch.y(3.0, 5)[0], 1E-6);
+            assertEquals(1.0 * Math.exp(-3.0 * 0.1), batch.y(3.0, 0)[0], 1E-6);
+
+            Try.testFail(() -> { batch.y(3.0, size); }, IndexOutOfBoundsException.class);
+            Try.testFail(() -> { batch.getValue(-1, 0); }, IndexOutOfBoundsException.class);
+            Try.testFail(() -> { batch.getValue(0, 2); }, IndexOutOfBoundsException.class);
+            Try.testFail(() -> { batch.initialize(0.0, new double[size]); }, IllegalArgumentException.class);
+            Try.testFail(() -> { batch.initialize(0.0, new double[size][1]); }, IllegalArgumentException.class);
+            Try.testFail(() -> { batch.setParallel(true, 0); }, IllegalArgumentException.class);
+        }
+        Try.testFail(() -> { new BatchDifferentialEquation(0.01, NumericalIntegratorType.EULER, null, 10); },
+                NullPointerException.class);
+        Try.testFail(() -> { new BatchDifferentialEquation(0.01, NumericalIntegratorType.EULER, new DecayBatch(rates), 0); },
+                IllegalArgumentException.class);
+    }
+
     /** ODE. */
     class ODE extends DifferentialEquation
     {
@@ -140,4 +444,117 @@ public class ODETest
             return "StiffODE";
         }
     }
+
+    /** Stiff ODE that implements the in-place derivative, and counts the calls of the allocating derivative. */
+    class InPlaceODE implements DifferentialEquationInterface
+    {
+        /** the number of calls of dy(x, y). */
+        private int allocatingCalls = 0;
+
+        /** {@inheritDoc} */
+        @Override
+        public void initialize(final double x0, final double[] y0)
+        {
+            // not used
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double[] y(final double x)
+        {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double[] dy(final double x, final double[] y)
+        {
+            this.allocatingCalls++;
+            double[] dy = new double[y.length];
+            dy(x, y, dy);
+            return dy;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void dy(final double x, final double[] y, final double[] dy)
+        {
+            dy[0] = y[1];
+            dy[1] = -100 * y[0] - 101 * y[1];
+        }
+    }
+
+    /** Very stiff ODE y' = -1000 (y - cos(x)) - sin(x). */
+    class VeryStiffODE implements DifferentialEquationInterface
+    {
+        /** {@inheritDoc} */
+        @Override
+        public void initialize(final double x0, final double[] y0)
+        {
+            // not used
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double[] y(final double x)
+        {
+            return null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double[] dy(final double x, final double[] y)
+        {
+            return new double[] {-1000.0 * (y[0] - Math.cos(x)) - Math.sin(x)};
+        }
+    }
+
+    /** Very stiff ODE y' = -1000 (y - cos(x)) - sin(x) with an analytical Jacobian. */
+    class AnalyticalStiffODE extends VeryStiffODE implements JacobianInterface
+    {
+        /** the number of calls of the Jacobian. */
+        private int jacobianCalls = 0;
+
+        /** {@inheritDoc} */
+        @Override
+        public void jacobian(final double x, final double[] y, final double[][] dfdy)
+        {
+            this.jacobianCalls++;
+            dfdy[0][0] = -1000.0;
+        }
+    }
+
+    /** Batch of y' = -k y, z' = y with a rate k per instance. */
+    class DecayBatch implements BatchDifferentialEquationInterface
+    {
+        /** the rates per instance. */
+        private final double[] rates;
+
+        /**
+         * constructs a new DecayBatch.
+         * @param rates the rates per instance
+         */
+        DecayBatch(final double[] rates)
+        {
+            this.rates = rates;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getNumberOfVariables()
+        {
+            return 2;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void dy(final double x, final double[] y, final double[] dy, final int size, final int from, final int to)
+        {
+            for (int i = from; i < to; i++)
+            {
+                dy[i] = -this.rates[i] * y[i];
+                dy[size + i] = y[i];
+            }
+        }
+    }
 }
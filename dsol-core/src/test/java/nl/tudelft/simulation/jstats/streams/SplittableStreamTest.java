@@ -0,0 +1,115 @@
+package nl.tudelft.simulation.jstats.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.djutils.exceptions.Try;
+import org.junit.Test;
+
+/**
+ * Test the substream and split facilities of the splittable streams.
+ * <p>
+ * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class SplittableStreamTest
+{
+    /**
+     * Test the jump matrices of MRG32k3a against the values published in the RngStreams package.
+     */
+    @Test
+    public void testMRG32k3aJumpMatrices()
+    {
+        assertArrayEquals(new long[] {82758667L, 1871391091L, 4127413238L}, MRG32k3aGenerator.A1P76[0]);
+        assertArrayEquals(new long[] {3672091415L, 3528743235L, 69195019L}, MRG32k3aGenerator.A1P76[2]);
+        assertArrayEquals(new long[] {1511326704L, 3759209742L, 1610795712L}, MRG32k3aGenerator.A2P76[0]);
+        assertArrayEquals(new long[] {3859662829L, 4292754251L, 3708466080L}, MRG32k3aGenerator.A2P76[2]);
+        assertArrayEquals(new long[] {2427906178L, 3580155704L, 949770784L}, MRG32k3aGenerator.A1P127[0]);
+        assertArrayEquals(new long[] {1464411153L, 277697599L, 1610723613L}, MRG32k3aGenerator.A2P127[0]);
+    }
+
+    /**
+     * Test that setSubstream(n) equals n times nextSubstream(), and that substreams differ.
+     */
+    @Test
+    public void testSubstreams()
+    {
+        SplittableStreamInterface[] streams = {new MRG32k3aGenerator(10L), new Xoshiro256Generator(10L)};
+        for (SplittableStreamInterface stream : streams)
+        {
+            double d0 = stream.nextDouble();
+            stream.nextDouble();
+            stream.nextSubstream();
+            double d1 = stream.nextDouble();
+            assertNotEquals(d0, d1, 0.0);
+            stream.nextSubstream();
+            stream.nextSubstream();
+            double d3 = stream.nextDouble();
+            stream.setSubstream(3);
+            assertEquals(d3, stream.nextDouble(), 0.0);
+            stream.setSubstream(1);
+            assertEquals(d1, stream.nextDouble(), 0.0);
+            stream.setSubstream(0);
+            assertEquals(d0, stream.nextDouble(), 0.0);
+            stream.reset();
+            assertEquals(d0, stream.nextDouble(), 0.0);
+            stream.setSubstream(5);
+            stream.setSeed(10L);
+            assertEquals(d0, stream.nextDouble(), 0.0);
+            Try.testFail(() -> stream.setSubstream(-1), IllegalArgumentException.class);
+        }
+    }
+
+    /**
+     * Test that a split stream starts at the current state, and that the parent jumps ahead.
+     */
+    @Test
+    public void testSplit()
+    {
+        SplittableStreamInterface[] streams = {new MRG32k3aGenerator(20L), new Xoshiro256Generator(20L)};
+        for (SplittableStreamInterface stream : streams)
+        {
+            stream.nextDouble();
+            SplittableStreamInterface copy = stream.getClass() == MRG32k3aGenerator.class ? new MRG32k3aGenerator(20L)
+                    : new Xoshiro256Generator(20L);
+            copy.nextDouble();
+            double expected = copy.nextDouble();
+            SplittableStreamInterface child = stream.split();
+            assertEquals(stream.getClass(), child.getClass());
+            assertEquals(expected, child.nextDouble(), 0.0);
+            assertNotEquals(expected, stream.nextDouble(), 0.0);
+            child.nextDouble();
+            child.reset();
+            assertEquals(expected, child.nextDouble(), 0.0);
+            child.setSubstream(0);
+            assertEquals(expected, child.nextDouble(), 0.0);
+        }
+    }
+
+    /**
+     * Test that the first values of consecutive substreams are uniformly distributed.
+     */
+    @Test
+    public void testSubstreamUniformity()
+    {
+        SplittableStreamInterface[] streams = {new MRG32k3aGenerator(30L), new Xoshiro256Generator(30L)};
+        for (SplittableStreamInterface stream : streams)
+        {
+            double sum = 0.0;
+            int n = 1000;
+            for (int i = 0; i < n; i++)
+            {
+                stream.setSubstream(i);
+                double d = stream.nextDouble();
+                sum += d;
+            }
+            assertEquals(0.5, sum / n, 0.05);
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package nl.tudelft.simulation.jstats.streams;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import org.djutils.exceptions.Try;
 import org.junit.Assert;
+import org.junit.Test;
 
 /**
  * <br>
@@ -23,7 +28,7 @@ public class StreamStateSaveRestoreTest
         String s = "";
         for (int i = 0; i < n; i++)
         {
-            s += stream.nextInt(10, 100) + " ";
+            s += stream.nextInt(10, 99) + " ";
         }
         return s;
     }
@@ -31,10 +36,11 @@ public class StreamStateSaveRestoreTest
     /**
      * tests the classes in the reference class.
      */
-    // TODO: @Test testStreamStateSaveRestore
+    @Test
     public void testStreamStateSaveRestore()
     {
-        StreamInterface[] streams = {new Java2Random(10), new MersenneTwister(10), new DX120Generator(10)};
+        StreamInterface[] streams = {new Java2Random(10), new MersenneTwister(10), new DX120Generator(10),
+                new MRG32k3aGenerator(10), new Xoshiro256Generator(10)};
         for (int j = 0; j < streams.length; j++)
         {
             try
@@ -58,4 +64,96 @@ public class StreamStateSaveRestoreTest
         }
     }
 
+    /**
+     * Test that a saved state restores into another instance with a different seed, and that both instances then deliver the
+     * same numbers and have the same state.
+     * @throws StreamException on error
+     */
+    @Test
+    public void testStateRoundtrip() throws StreamException
+    {
+        StreamInterface[][] streams = {{new Java2Random(10), new Java2Random(20)},
+                {new MersenneTwister(10), new MersenneTwister(20)}, {new DX120Generator(10), new DX120Generator(20)},
+                {new MRG32k3aGenerator(10), new MRG32k3aGenerator(20)},
+                {new Xoshiro256Generator(10), new Xoshiro256Generator(20)}};
+        for (StreamInterface[] pair : streams)
+        {
+            StreamInterface rng = pair[0];
+            StreamInterface other = pair[1];
+            // draw over the boundary of the refill of the Mersenne Twister state vector
+            for (int i = 0; i < 1000; i++)
+            {
+                rng.nextDouble();
+            }
+            byte[] state = rng.saveState();
+            assertTrue(state.length < 6000);
+            other.restoreState(state);
+            assertEquals(10L, other.getSeed());
+            assertEquals(20L, other.getOriginalSeed());
+            assertArrayEquals(state, other.saveState());
+            for (int i = 0; i < 1000; i++)
+            {
+                assertEquals(rng.nextLong(), other.nextLong());
+                assertEquals(rng.nextDouble(), other.nextDouble(), 0.0);
+            }
+            assertArrayEquals(rng.saveState(), other.saveState());
+            other.reset();
+            rng.reset();
+            assertEquals(rng.nextDouble(), other.nextDouble(), 0.0);
+            rng.restoreState(state);
+            other.restoreState(state);
+            assertEquals(rng.nextInt(0, 100), other.nextInt(0, 100));
+        }
+    }
+
+    /**
+     * Test that the cached second Gaussian value of Java2Random is part of the state, and that Java2Random delivers the same
+     * numbers as java.util.Random.
+     * @throws StreamException on error
+     */
+    @Test
+    public void testJava2RandomGaussian() throws StreamException
+    {
+        Java2Random rng = new Java2Random(10);
+        java.util.Random random = new java.util.Random(10);
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(random.nextInt(), rng.nextInt());
+            assertEquals(random.nextDouble(), rng.nextDouble(), 0.0);
+            assertEquals(random.nextGaussian(), rng.nextGaussian(), 0.0);
+        }
+        rng.nextGaussian();
+        byte[] state = rng.saveState();
+        double g = rng.nextGaussian();
+        rng.nextGaussian();
+        rng.restoreState(state);
+        assertEquals(g, rng.nextGaussian(), 0.0);
+    }
+
+    /**
+     * Test that a wrong state is rejected.
+     * @throws StreamException on error
+     */
+    @Test
+    public void testWrongState() throws StreamException
+    {
+        byte[] mtState = new MersenneTwister(10).saveState();
+        byte[] dxState = new DX120Generator(10).saveState();
+        StreamInterface mt = new MersenneTwister(10);
+        StreamInterface dx = new DX120Generator(10);
+        Try.testFail(() -> mt.restoreState(dxState), StreamException.class);
+        Try.testFail(() -> dx.restoreState(mtState), StreamException.class);
+        Try.testFail(() -> mt.restoreState(null), StreamException.class);
+        Try.testFail(() -> mt.restoreState(new byte[10]), StreamException.class);
+        byte[] wrongMagic = mtState.clone();
+        wrongMagic[0] = 0;
+        Try.testFail(() -> mt.restoreState(wrongMagic), StreamException.class);
+        byte[] wrongVersion = mtState.clone();
+        wrongVersion[5] = 99;
+        Try.testFail(() -> mt.restoreState(wrongVersion), StreamException.class);
+        byte[] wrongIndex = mtState.clone();
+        wrongIndex[StreamState.HEADER_LENGTH] = 99;
+        Try.testFail(() -> mt.restoreState(wrongIndex), StreamException.class);
+        mt.restoreState(mtState);
+    }
 }
@@ -26,7 +26,8 @@ public class StreamTest
     public void testStreamDouble()
     {
         int nr = 1000000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             double sum = 0.0;
@@ -54,7 +55,8 @@ public class StreamTest
     public void testStreamFloat()
     {
         int nr = 1000000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             float sum = 0.0f;
@@ -82,7 +84,8 @@ public class StreamTest
     public void testStreamInt()
     {
         int nr = 1000000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             double sum = 0.0;
@@ -112,7 +115,8 @@ public class StreamTest
     {
         // System.out.println("\nINT EQUAL NUMBER OF BITS");
         int nr = 1000000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             int nrBins = 32;
@@ -144,7 +148,8 @@ public class StreamTest
     public void testStreamInt0to10()
     {
         int nr = 1000000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             long sum = 0L;
@@ -179,7 +184,8 @@ public class StreamTest
     public void testStreamBoolean()
     {
         int nr = 100000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             double sum = 0.0;
@@ -201,7 +207,8 @@ public class StreamTest
     public void testStreamLong()
     {
         long nr = 1000000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             double sum = 0.0;
@@ -230,7 +237,8 @@ public class StreamTest
     public void testStreamLongEqualBits()
     {
         long nr = 1000000;
-        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L)};
+        StreamInterface[] streams = {new Java2Random(100L), new MersenneTwister(101L), new DX120Generator(102L),
+                new MRG32k3aGenerator(103L), new Xoshiro256Generator(104L)};
         for (StreamInterface stream : streams)
         {
             int nrBins = 64;
@@ -261,7 +269,8 @@ public class StreamTest
     @Test
     public void testSeedManagement()
     {
-        StreamInterface[] streams = {new Java2Random(14L), new MersenneTwister(14L), new DX120Generator(14L)};
+        StreamInterface[] streams = {new Java2Random(14L), new MersenneTwister(14L), new DX120Generator(14L),
+                new MRG32k3aGenerator(14L), new Xoshiro256Generator(14L)};
         for (StreamInterface stream : streams)
         {
             assertEquals(14L, stream.getSeed());
@@ -1,10 +1,13 @@
 package nl.tudelft.simulation.dsol.swing.animation.D2;
 
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Image;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Point2D;
+import java.awt.image.ImageObserver;
 import java.io.Serializable;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
@@ -21,9 +24,7 @@ import java.util.TreeSet;
 import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
 
-import org.djutils.draw.bounds.Bounds;
 import org.djutils.draw.bounds.Bounds2d;
-import org.djutils.draw.point.Point;
 import org.djutils.draw.point.Point2d;
 import org.djutils.event.EventInterface;
 import org.djutils.event.EventListenerInterface;
@@ -32,13 +33,16 @@ import org.djutils.event.EventProducerInterface;
 import org.djutils.event.EventType;
 import org.djutils.event.EventTypeInterface;
 import org.djutils.event.ref.ReferenceType;
+import org.djutils.exceptions.Throw;
 import org.djutils.logger.CategoryLogger;
 import org.djutils.metadata.MetaData;
 import org.djutils.metadata.ObjectDescriptor;
 
 import nl.tudelft.simulation.dsol.animation.Locatable;
+import nl.tudelft.simulation.dsol.animation.D2.LevelOfDetail;
 import nl.tudelft.simulation.dsol.animation.D2.Renderable2DComparator;
 import nl.tudelft.simulation.dsol.animation.D2.Renderable2DInterface;
+import nl.tudelft.simulation.dsol.animation.D2.RenderableIndex;
 import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
 import nl.tudelft.simulation.dsol.simulators.AnimatorInterface;
 import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
@@ -66,7 +70,13 @@ import nl.tudelft.simulation.naming.context.util.ContextUtil;
  * </ul>
  * Furthermore, the AnimationPanel is an event listener, and listens, e.g., to the event of a searched object: the
  * ANIMATION_SEARCH_OBJECT_EVENT to highlight the object, or, in case of an AutoPanAnimationPanel, to keep the object in the
- * middle of the screen.
+ * middle of the screen.<br>
+ * <br>
+ * <b>Background rendering:</b><br>
+ * By default, the animation elements are drawn on the event dispatch thread. With setBackgroundRendering(true), they are drawn
+ * by a FrameRenderer on a background thread, and the event dispatch thread only copies the finished frame to the screen. This
+ * keeps the user interface responsive for heavy animations, but the paint methods of the renderables are then called outside
+ * the event dispatch thread, which is not safe for renderables that use Swing components to paint themselves.
  * <p>
  * Copyright (c) 2002-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
  * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
@@ -90,10 +100,10 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
     private Map<Class<? extends Locatable>, Boolean> visibilityMap = Collections.synchronizedMap(new LinkedHashMap<>());
 
     /** cache of the classes that are hidden. */
-    private Set<Class<? extends Locatable>> hiddenClasses = new LinkedHashSet<>();
+    private Set<Class<? extends Locatable>> hiddenClasses = Collections.synchronizedSet(new LinkedHashSet<>());
 
     /** cache of the classes that are shown. */
-    private Set<Class<? extends Locatable>> shownClasses = new LinkedHashSet<>();
+    private Set<Class<? extends Locatable>> shownClasses = Collections.synchronizedSet(new LinkedHashSet<>());
 
     /** the simulator. */
     private SimulatorInterface<?, ?, ?> simulator;
@@ -107,11 +117,21 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
     /** enable drag line. */
     private boolean dragLineEnabled = false;
 
-    /** List of drawable objects. */
-    private List<Renderable2DInterface<? extends Locatable>> elementList = new ArrayList<>();
+    /** the spatial index of the elements, to only paint and pick the elements that overlap with an extent or a point. */
+    private final RenderableIndex index = new RenderableIndex();
+
+    /** the level of detail, to draw the elements that are too small on the screen as points or density tiles. */
+    private LevelOfDetail levelOfDetail = new LevelOfDetail(LevelOfDetail.Mode.POINTS);
 
-    /** dirty flag for the list. */
-    private boolean dirty = false;
+    /** the renderer that draws the animation elements on a background thread. */
+    private final FrameRenderer frameRenderer = new FrameRenderer(this);
+
+    /**
+     * whether the animation elements are drawn on a background thread, or on the event dispatch thread. The default is the
+     * event dispatch thread, since the paint methods of existing renderables may use Swing components, which is only safe on
+     * the event dispatch thread.
+     */
+    private volatile boolean backgroundRendering = false;
 
     /** delegate class to do handle event producing. */
     private final AnimationEventProducer animationEventProducer;
@@ -171,29 +191,15 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         // draw the grid.
         super.paintComponent(g2);
 
-        // update drawable elements when necessary
-        if (this.dirty)
+        // draw the animation elements, or the last frame that the background renderer has drawn
+        if (this.backgroundRendering)
         {
-            synchronized (this.elementList)
-            {
-                this.elementList.clear();
-                this.elementList.addAll(this.elements);
-                this.dirty = false;
-            }
+            this.frameRenderer.drawFrame(g2, this.getExtent(), this.getSize(), this);
         }
-
-        // draw the animation elements
-        for (Renderable2DInterface<? extends Locatable> element : this.elementList)
+        else
         {
-            // destroy has been called?
-            if (element.getSource() == null) 
-            {
-                objectRemoved(element);
-            }
-            else if (isShowElement(element))
-            {
-                element.paintComponent(g2, this.getExtent(), this.getSize(), getRenderableScale(), this);
-            }
+            updateIndex();
+            paintElements(g2, this.getExtent(), this.getSize());
         }
 
         // draw drag line if enabled.
@@ -205,6 +211,65 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         }
     }
 
+    /**
+     * Update the positions of the elements in the spatial index, and remove the elements for which destroy has been called. The
+     * positions in the index are the snapshot for the next frame.
+     */
+    protected void updateIndex()
+    {
+        for (Renderable2DInterface<? extends Locatable> element : this.index.update())
+        {
+            objectRemoved(element);
+        }
+    }
+
+    /**
+     * Return whether a frame that is not started by the simulator, e.g., after panning or zooming, has to take a new snapshot
+     * of the positions of the elements. This is the case when the simulator does not run, since it then does not signal the
+     * boundaries of the animation frames.
+     * @return boolean; whether a frame that is not started by the simulator has to take a new snapshot of the positions
+     */
+    protected boolean isSnapshotNeeded()
+    {
+        return !this.simulator.isStartingOrRunning();
+    }
+
+    /**
+     * Paint the animation elements that overlap with the extent. This method is called by the background renderer, or by the
+     * event dispatch thread when background rendering is off.
+     * @param g2 Graphics2D; the graphics to paint on
+     * @param extent Bounds2d; the extent of the frame
+     * @param screenSize Dimension; the screen size of the frame
+     */
+    protected void paintElements(final Graphics2D g2, final Bounds2d extent, final Dimension screenSize)
+    {
+        this.levelOfDetail.begin(extent, screenSize);
+        for (Renderable2DInterface<? extends Locatable> element : this.index.query(extent))
+        {
+            if (isShowElement(element) && !this.levelOfDetail.add(element))
+            {
+                element.paintComponent(g2, extent, screenSize, getRenderableScale(), this);
+            }
+        }
+        this.levelOfDetail.end(g2, this);
+    }
+
+    /**
+     * Repaint the animation elements, e.g., after a change of the visible classes.
+     * @param snapshot boolean; whether the positions of the elements have to be taken again
+     */
+    protected void repaintElements(final boolean snapshot)
+    {
+        if (this.backgroundRendering)
+        {
+            this.frameRenderer.requestFrame(snapshot);
+        }
+        else
+        {
+            this.repaint();
+        }
+    }
+
     /**
      * Test whether the element needs to be shown on the screen or not.
      * @param element Renderable2DInterface&lt;? extends Locatable&gt;; the renderable element to test
@@ -268,7 +333,14 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         {
             if (this.getWidth() > 0 || this.getHeight() > 0)
             {
-                this.repaint();
+                if (this.backgroundRendering)
+                {
+                    this.frameRenderer.frameBoundary();
+                }
+                else
+                {
+                    this.repaint();
+                }
             }
             return;
         }
@@ -285,9 +357,10 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
 
         else if (event.getType().equals(ReplicationInterface.START_REPLICATION_EVENT))
         {
-            synchronized (this.elementList)
+            synchronized (this.elements)
             {
                 this.elements.clear();
+                this.index.clear();
                 try
                 {
                     if (this.context != null)
@@ -311,7 +384,7 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
                             System.err.println("odd object in context: " + element);
                         }
                     }
-                    this.repaint();
+                    repaintElements(true);
                 }
                 catch (Exception exception)
                 {
@@ -327,10 +400,10 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
      */
     public void objectAdded(final Renderable2DInterface<? extends Locatable> element)
     {
-        synchronized (this.elementList)
+        synchronized (this.elements)
         {
             this.elements.add(element);
-            this.dirty = true;
+            this.index.add(element);
         }
     }
 
@@ -340,10 +413,10 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
      */
     public void objectRemoved(final Renderable2DInterface<? extends Locatable> element)
     {
-        synchronized (this.elementList)
+        synchronized (this.elements)
         {
             this.elements.remove(element);
-            this.dirty = true;
+            this.index.remove(element);
         }
     }
 
@@ -353,40 +426,16 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
      */
     public synchronized Bounds2d fullExtent()
     {
-        double minX = Double.MAX_VALUE;
-        double maxX = -Double.MAX_VALUE;
-        double minY = Double.MAX_VALUE;
-        double maxY = -Double.MAX_VALUE;
-        try
-        {
-            for (Renderable2DInterface<? extends Locatable> renderable : this.elementList)
-            {
-                if (renderable.getSource() == null)
-                {
-                    continue;
-                }
-                Point<?> l = renderable.getSource().getLocation();
-                if (l != null)
-                {
-                    Bounds<?, ?, ?> b = renderable.getSource().getBounds();
-                    minX = Math.min(minX, l.getX() + b.getMinX());
-                    minY = Math.min(minY, l.getY() + b.getMinY());
-                    maxX = Math.max(maxX, l.getX() + b.getMaxX());
-                    maxY = Math.max(maxY, l.getY() + b.getMaxY());
-                }
-            }
-        }
-        catch (Exception e)
+        updateIndex();
+        Bounds2d bounds = this.index.getBounds();
+        if (bounds == null)
         {
-            // ignore
+            return getExtent();
         }
-
-        minX -= EXTENT_MARGIN_FACTOR * Math.abs(maxX - minX);
-        minY -= EXTENT_MARGIN_FACTOR * Math.abs(maxY - minY);
-        maxX += EXTENT_MARGIN_FACTOR * Math.abs(maxX - minX);
-        maxY += EXTENT_MARGIN_FACTOR * Math.abs(maxY - minY);
-
-        return new Bounds2d(minX, maxX, minY, maxY);
+        double marginX = EXTENT_MARGIN_FACTOR * bounds.getDeltaX();
+        double marginY = EXTENT_MARGIN_FACTOR * bounds.getDeltaY();
+        return new Bounds2d(bounds.getMinX() - marginX, bounds.getMaxX() + marginX, bounds.getMinY() - marginY,
+                bounds.getMaxY() + marginY);
     }
 
     /**
@@ -409,7 +458,7 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         }
         this.shownClasses.clear();
         this.hiddenClasses.clear();
-        this.repaint();
+        repaintElements(false);
     }
 
     /**
@@ -424,7 +473,7 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         }
         this.shownClasses.clear();
         this.hiddenClasses.clear();
-        this.repaint();
+        repaintElements(false);
     }
 
     /**
@@ -444,7 +493,7 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         }
         this.shownClasses.clear();
         this.hiddenClasses.clear();
-        this.repaint();
+        repaintElements(false);
     }
 
     /**
@@ -500,7 +549,7 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         try
         {
             Point2d point = getRenderableScale().getWorldCoordinates(mousePoint, getExtent(), getSize());
-            for (Renderable2DInterface<?> renderable : getElements())
+            for (Renderable2DInterface<?> renderable : this.index.query(point))
             {
                 if (isShowElement(renderable) && renderable.contains(point, getExtent()))
                 {
@@ -614,6 +663,93 @@ public class AnimationPanel extends GridPanel implements EventListenerInterface,
         return this.elements;
     }
 
+    /**
+     * Return the spatial index of the animation elements.
+     * @return RenderableIndex; the spatial index of the animation elements
+     */
+    public RenderableIndex getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * Return whether the animation elements are drawn on a background thread, or on the event dispatch thread.
+     * @return boolean; whether the animation elements are drawn on a background thread
+     */
+    public boolean isBackgroundRendering()
+    {
+        return this.backgroundRendering;
+    }
+
+    /**
+     * Set whether the animation elements are drawn on a background thread, or on the event dispatch thread. Background
+     * rendering is off by default; it should only be switched on when the paint methods of all renderables can be called
+     * outside the event dispatch thread, i.e., when they do not use Swing components to paint themselves.
+     * @param backgroundRendering boolean; whether the animation elements are drawn on a background thread
+     */
+    public void setBackgroundRendering(final boolean backgroundRendering)
+    {
+        this.backgroundRendering = backgroundRendering;
+        if (!backgroundRendering)
+        {
+            this.frameRenderer.stop();
+        }
+        this.repaint();
+    }
+
+    /**
+     * Return the renderer that draws the animation elements on a background thread.
+     * @return FrameRenderer; the renderer that draws the animation elements on a background thread
+     */
+    public FrameRenderer getFrameRenderer()
+    {
+        return this.frameRenderer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void removeNotify()
+    {
+        this.frameRenderer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * {@inheritDoc} An image that a renderable draws asynchronously, such as a tile of a GIS map, is only visible after a new
+     * frame has been drawn, so with background rendering a new frame is requested when the image is complete.
+     */
+    @Override
+    public boolean imageUpdate(final Image image, final int infoflags, final int x, final int y, final int width,
+            final int height)
+    {
+        if (this.backgroundRendering && (infoflags & (ImageObserver.ALLBITS | ImageObserver.FRAMEBITS)) != 0)
+        {
+            this.frameRenderer.requestFrame(false);
+        }
+        return super.imageUpdate(image, infoflags, x, y, width, height);
+    }
+
+    /**
+     * Return the level of detail that draws the elements that are too small on the screen as points or density tiles.
+     * @return LevelOfDetail; the level of detail of the panel
+     */
+    public LevelOfDetail getLevelOfDetail()
+    {
+        return this.levelOfDetail;
+    }
+
+    /**
+     * Set the level of detail that draws the elements that are too small on the screen as points or density tiles. Use a
+     * LevelOfDetail with Mode.DETAIL to always paint all elements in detail.
+     * @param levelOfDetail LevelOfDetail; the new level of detail of the panel
+     * @throws NullPointerException when levelOfDetail is null
+     */
+    public void setLevelOfDetail(final LevelOfDetail levelOfDetail)
+    {
+        Throw.whenNull(levelOfDetail, "levelOfDetail cannot be null");
+        this.levelOfDetail = levelOfDetail;
+    }
+
     /**
      * EventProducer to which to delegate the event producing methods.
      * <p>
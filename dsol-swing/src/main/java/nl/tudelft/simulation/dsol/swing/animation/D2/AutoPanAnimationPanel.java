@@ -121,7 +121,7 @@ public class AutoPanAnimationPanel extends AnimationPanel
         List<Object> targets = new ArrayList<>();
         Point2d point = getRenderableScale().getWorldCoordinates(mousePoint,
                 getExtent(), getSize());
-        for (Renderable2DInterface<?> renderable : getElements())
+        for (Renderable2DInterface<?> renderable : getIndex().query(point))
         {
             if (isShowElement(renderable)
                     && renderable.contains(point, getExtent()))
@@ -0,0 +1,318 @@
+package nl.tudelft.simulation.dsol.swing.animation.D2;
+
+import java.awt.AlphaComposite;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+
+import javax.swing.SwingUtilities;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.logger.CategoryLogger;
+
+import nl.tudelft.simulation.dsol.animation.D2.RenderableScale;
+
+/**
+ * FrameRenderer draws the animation elements of an AnimationPanel on a background thread, so the Swing event dispatch thread
+ * (EDT) only has to copy a finished frame to the screen, and the simulator never waits for the painting. The renderer keeps
+ * two images: the front image is the last finished frame, which is drawn by the EDT, and the back image is the frame that is
+ * being drawn by the render thread. When a frame is finished, the images are swapped and the panel is repainted.
+ * <p>
+ * A frame starts with a snapshot of the positions of the renderables in the spatial index of the panel. The snapshot is taken
+ * by the thread that fires the UPDATE_ANIMATION_EVENT, at the boundary between two animation frames of the simulator. When the
+ * render thread is still busy with the previous frame, the event does not wait: the snapshot is taken by the render thread as
+ * soon as it has finished the previous frame. Changes of the view, such as panning and zooming, lead to a new frame without a
+ * new snapshot while the simulator runs; when the simulator does not run, there are no frame boundaries, and these frames take
+ * their own snapshot. Until a new frame is ready, the EDT shows the last frame, moved and scaled to the new extent.
+ * </p>
+ * <p>
+ * The extent and the screen size of a frame are always taken by the EDT when the frame is requested, since panning, zooming
+ * and resizing change them on the EDT. A frame that is requested by another thread is therefore passed on to the EDT, which
+ * adds the extent and size, and the render thread never reads them from the panel.
+ * </p>
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/" target="_blank"> https://simulation.tudelft.nl</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">
+ * https://simulation.tudelft.nl/dsol/3.0/license.html</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck" target="_blank"> Alexander Verbraeck</a>
+ */
+public class FrameRenderer implements Runnable
+{
+    /** the panel for which the frames are drawn. */
+    private final AnimationPanel panel;
+
+    /** the last finished frame, drawn by the EDT. */
+    private BufferedImage front = null;
+
+    /** the extent of the last finished frame. */
+    private Bounds2d frontExtent = null;
+
+    /** the screen size of the last finished frame. */
+    private Dimension frontSize = null;
+
+    /** the image in which the render thread draws the next frame. */
+    private BufferedImage back = null;
+
+    /** the render thread, or null when it is not running. */
+    private Thread thread = null;
+
+    /** the extent of the requested frame, taken by the EDT. */
+    private Bounds2d requestedExtent = null;
+
+    /** the screen size of the requested frame, taken by the EDT. */
+    private Dimension requestedSize = null;
+
+    /** whether a new frame has been requested. */
+    private boolean frameRequested = false;
+
+    /** whether the render thread has to take the snapshot of the positions before drawing the next frame. */
+    private boolean snapshotRequested = false;
+
+    /** whether the render thread is drawing a frame. */
+    private boolean rendering = false;
+
+    /** the number of frames that have been drawn. */
+    private long frameCount = 0;
+
+    /**
+     * Construct a FrameRenderer for an animation panel. The render thread is started when the first frame is requested.
+     * @param panel AnimationPanel; the panel for which the frames are drawn
+     */
+    public FrameRenderer(final AnimationPanel panel)
+    {
+        this.panel = panel;
+    }
+
+    /**
+     * Signal the boundary of an animation frame of the simulator. When the render thread is idle, the snapshot of the positions
+     * is taken right away by the calling thread, and a new frame is requested. Otherwise, the render thread takes the snapshot
+     * when it has finished the current frame, so the calling thread never waits for the painting. A pending frame uses the
+     * extent and size of the last request of the EDT, which are still current, since every change of the view leads to a new
+     * request by the EDT.
+     */
+    public void frameBoundary()
+    {
+        synchronized (this)
+        {
+            if (this.rendering || this.frameRequested)
+            {
+                this.snapshotRequested = true;
+                this.frameRequested = true;
+                return;
+            }
+        }
+        this.panel.updateIndex();
+        requestFrame(false);
+    }
+
+    /**
+     * Request a new frame, e.g., because the view or the visible classes have changed. The extent and screen size of the frame
+     * are taken from the panel by the EDT: when this method is not called by the EDT, the request is passed on to the EDT.
+     * @param snapshot boolean; whether the positions of the renderables have to be taken again before drawing the frame
+     */
+    public void requestFrame(final boolean snapshot)
+    {
+        if (SwingUtilities.isEventDispatchThread())
+        {
+            requestFrame(snapshot, this.panel.getExtent(), this.panel.getSize());
+        }
+        else
+        {
+            SwingUtilities.invokeLater(() -> requestFrame(snapshot, this.panel.getExtent(), this.panel.getSize()));
+        }
+    }
+
+    /**
+     * Request a new frame for the given extent and screen size, which have been taken by the EDT. When a frame has already been
+     * requested but not started, the request is merged with it, and the latest extent and size are used.
+     * @param snapshot boolean; whether the positions of the renderables have to be taken again before drawing the frame
+     * @param extent Bounds2d; the extent of the frame
+     * @param size Dimension; the screen size of the frame; the dimension is copied
+     */
+    public synchronized void requestFrame(final boolean snapshot, final Bounds2d extent, final Dimension size)
+    {
+        this.requestedExtent = extent;
+        this.requestedSize = new Dimension(size);
+        this.frameRequested = true;
+        this.snapshotRequested |= snapshot;
+        if (this.thread == null)
+        {
+            this.thread = new Thread(this, "FrameRenderer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stop the render thread, e.g., when the panel is removed from the screen. A new frame request starts a new render thread.
+     */
+    public synchronized void stop()
+    {
+        if (this.thread != null)
+        {
+            this.thread = null;
+            notifyAll();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            boolean snapshot;
+            Bounds2d extent;
+            Dimension size;
+            synchronized (this)
+            {
+                while (!this.frameRequested && this.thread == Thread.currentThread())
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        // ignore; the loop checks whether the thread should stop
+                    }
+                }
+                if (this.thread != Thread.currentThread())
+                {
+                    return;
+                }
+                snapshot = this.snapshotRequested;
+                extent = this.requestedExtent;
+                size = this.requestedSize;
+                this.frameRequested = false;
+                this.snapshotRequested = false;
+                this.rendering = true;
+            }
+            try
+            {
+                renderFrame(snapshot, extent, size);
+            }
+            catch (Exception exception)
+            {
+                CategoryLogger.always().warn(exception, "FrameRenderer");
+            }
+            finally
+            {
+                synchronized (this)
+                {
+                    this.rendering = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw a frame in the back image, swap the images, and repaint the panel.
+     * @param snapshot boolean; whether the positions of the renderables have to be taken before drawing the frame
+     * @param extent Bounds2d; the extent of the frame, taken by the EDT when the frame was requested
+     * @param size Dimension; the screen size of the frame, taken by the EDT when the frame was requested
+     */
+    private void renderFrame(final boolean snapshot, final Bounds2d extent, final Dimension size)
+    {
+        if (snapshot)
+        {
+            this.panel.updateIndex();
+        }
+        if (size.width <= 0 || size.height <= 0)
+        {
+            return;
+        }
+        if (this.back == null || this.back.getWidth() != size.width || this.back.getHeight() != size.height)
+        {
+            this.back = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        Graphics2D graphics = this.back.createGraphics();
+        try
+        {
+            graphics.setComposite(AlphaComposite.Clear);
+            graphics.fillRect(0, 0, size.width, size.height);
+            graphics.setComposite(AlphaComposite.SrcOver);
+            graphics.setClip(0, 0, size.width, size.height);
+            this.panel.paintElements(graphics, extent, size);
+        }
+        finally
+        {
+            graphics.dispose();
+        }
+        synchronized (this)
+        {
+            BufferedImage image = this.front;
+            this.front = this.back;
+            this.back = image;
+            this.frontExtent = extent;
+            this.frontSize = size;
+            this.frameCount++;
+        }
+        this.panel.repaint();
+    }
+
+    /**
+     * Draw the last finished frame on the screen; this method is called by the EDT. When the frame was drawn for another extent
+     * or screen size than the current one, it is moved and scaled to the current extent, and a new frame is requested.
+     * @param graphics Graphics2D; the graphics of the panel
+     * @param extent Bounds2d; the current extent of the panel
+     * @param size Dimension; the current screen size of the panel
+     * @param observer ImageObserver; the observer of the panel
+     */
+    public void drawFrame(final Graphics2D graphics, final Bounds2d extent, final Dimension size,
+            final ImageObserver observer)
+    {
+        boolean current;
+        boolean first;
+        synchronized (this)
+        {
+            first = this.front == null;
+            current = !first && extent.equals(this.frontExtent) && size.equals(this.frontSize);
+            if (current)
+            {
+                graphics.drawImage(this.front, 0, 0, observer);
+            }
+            else if (this.front != null)
+            {
+                // map the pixels of the last frame to the pixels of the current extent: screen = (world - min) / scale
+                RenderableScale scale = this.panel.getRenderableScale();
+                double oldXScale = scale.getXScale(this.frontExtent, this.frontSize);
+                double oldYScale = scale.getYScale(this.frontExtent, this.frontSize);
+                double newXScale = scale.getXScale(extent, size);
+                double newYScale = scale.getYScale(extent, size);
+                double sx = oldXScale / newXScale;
+                double sy = oldYScale / newYScale;
+                double tx = (this.frontExtent.getMinX() - extent.getMinX()) / newXScale;
+                double ty = size.height - (this.frontExtent.getMinY() - extent.getMinY()) / newYScale
+                        - this.frontSize.height * sy;
+                graphics.drawImage(this.front, new AffineTransform(sx, 0.0, 0.0, sy, tx, ty), observer);
+            }
+        }
+        if (!current)
+        {
+            requestFrame(first || this.panel.isSnapshotNeeded(), extent, size);
+        }
+    }
+
+    /**
+     * Return the number of frames that have been drawn by the render thread.
+     * @return long; the number of frames that have been drawn by the render thread
+     */
+    public synchronized long getFrameCount()
+    {
+        return this.frameCount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "FrameRenderer [frameCount=" + getFrameCount() + "]";
+    }
+}
@@ -90,13 +90,14 @@ public class RealTimeControlPanel<A extends Comparable<A> & Serializable, R exte
                 {
                     this.savedAnimationDelay = getSimulator().getAnimationDelay();
                     getSimulator().setAnimationDelay(0L);
-                    getSimulator().setUpdateMsec(1000);
                     getSimulator().setAnimationDelay(500); // 2 Hz
+                    getSimulator().setFastForward(true);
                     getSimulator().start();
                 }
             }
             if (actionCommand.equals("RunPause") || actionCommand.equals("Reset"))
             {
+                getSimulator().setFastForward(false);
                 getSimulator().setAnimationDelay(this.savedAnimationDelay);
             }
         }
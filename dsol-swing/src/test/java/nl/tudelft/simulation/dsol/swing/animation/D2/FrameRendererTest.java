@@ -0,0 +1,293 @@
+package nl.tudelft.simulation.dsol.swing.animation.D2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.rmi.RemoteException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.djutils.draw.bounds.Bounds2d;
+import org.djutils.event.TimedEvent;
+import org.junit.Test;
+
+import nl.tudelft.simulation.dsol.simulators.AnimatorInterface;
+import nl.tudelft.simulation.dsol.simulators.DEVSAnimator;
+import nl.tudelft.simulation.language.DSOLException;
+
+/**
+ * FrameRendererTest checks that the FrameRenderer takes the snapshot of the positions at the UPDATE_ANIMATION_EVENT, only
+ * shows a frame after it has been finished in the back image and swapped to the front, and coalesces the frame requests that
+ * arrive while a frame is drawn. The animation elements of the test panel are a single red square at a position that the test
+ * sets, so the frames can be checked by their pixels.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class FrameRendererTest
+{
+    /**
+     * Test that the snapshot is taken at the UPDATE_ANIMATION_EVENT by the thread that fires the event.
+     * @throws Exception on error
+     */
+    @Test
+    public void testSnapshotAtUpdateAnimationEvent() throws Exception
+    {
+        TestPanel panel = new TestPanel();
+        FrameRenderer renderer = panel.getFrameRenderer();
+        assertFalse(panel.isBackgroundRendering());
+        panel.setBackgroundRendering(true);
+        assertTrue(panel.isBackgroundRendering());
+
+        panel.position = 20.0;
+        panel.notify(new TimedEvent<Double>(AnimatorInterface.UPDATE_ANIMATION_EVENT, "FrameRendererTest", null, 1.0));
+        assertEquals(1, panel.snapshots);
+        assertEquals(20.0, panel.snapshotPosition, 0.0);
+        assertEquals(Thread.currentThread(), panel.snapshotThread);
+        waitForFrames(renderer, 1);
+        assertTrue(isRed(draw(panel), 20));
+
+        // the position at the time of the event is drawn, not the position at the time of drawing
+        panel.position = 60.0;
+        assertTrue(isRed(draw(panel), 20));
+        assertFalse(isRed(draw(panel), 60));
+        assertEquals(1, renderer.getFrameCount());
+
+        panel.setBackgroundRendering(false);
+    }
+
+    /**
+     * Test that a frame is only shown when it has been finished, and the back image has been swapped with the front image.
+     * @throws Exception on error
+     */
+    @Test
+    public void testBackBufferSwap() throws Exception
+    {
+        TestPanel panel = new TestPanel();
+        FrameRenderer renderer = panel.getFrameRenderer();
+        panel.setBackgroundRendering(true);
+        panel.position = 20.0;
+        renderer.frameBoundary();
+        waitForFrames(renderer, 1);
+
+        // the second frame is blocked in the middle of painting; the EDT keeps showing the first frame
+        panel.block();
+        panel.position = 60.0;
+        renderer.frameBoundary();
+        assertTrue(panel.painting.await(5, TimeUnit.SECONDS));
+        BufferedImage screen = draw(panel);
+        assertTrue(isRed(screen, 20));
+        assertFalse(isRed(screen, 60));
+        assertEquals(1, renderer.getFrameCount());
+
+        // after the swap, the EDT shows the second frame, and the image of the first frame is cleared before it is reused
+        panel.release();
+        waitForFrames(renderer, 2);
+        screen = draw(panel);
+        assertFalse(isRed(screen, 20));
+        assertTrue(isRed(screen, 60));
+        panel.position = 40.0;
+        renderer.frameBoundary();
+        waitForFrames(renderer, 3);
+        screen = draw(panel);
+        assertFalse(isRed(screen, 20));
+        assertFalse(isRed(screen, 60));
+        assertTrue(isRed(screen, 40));
+
+        panel.setBackgroundRendering(false);
+    }
+
+    /**
+     * Test that the frame requests that arrive while a frame is drawn do not wait, and lead to a single next frame, which takes
+     * the snapshot of the positions on the render thread when the previous frame is finished.
+     * @throws Exception on error
+     */
+    @Test
+    public void testRequestFrameCoalescing() throws Exception
+    {
+        TestPanel panel = new TestPanel();
+        FrameRenderer renderer = panel.getFrameRenderer();
+        panel.setBackgroundRendering(true);
+        panel.block();
+        panel.position = 20.0;
+        renderer.frameBoundary();
+        assertTrue(panel.painting.await(5, TimeUnit.SECONDS));
+
+        // the render thread is blocked, so these calls would never return if they waited for the painting
+        for (double position : new double[] {30.0, 40.0, 50.0})
+        {
+            panel.position = position;
+            renderer.frameBoundary();
+        }
+        renderer.requestFrame(false, panel.getExtent(), panel.getSize());
+        assertEquals(1, panel.snapshots);
+        assertEquals(0, renderer.getFrameCount());
+
+        panel.release();
+        waitForFrames(renderer, 2);
+        Thread.sleep(100);
+        assertEquals(2, renderer.getFrameCount());
+        assertEquals(2, panel.snapshots);
+        assertEquals(50.0, panel.snapshotPosition, 0.0);
+        assertNotEquals(Thread.currentThread(), panel.snapshotThread);
+        assertEquals("FrameRenderer", panel.snapshotThread.getName());
+        BufferedImage screen = draw(panel);
+        assertTrue(isRed(screen, 50));
+        assertFalse(isRed(screen, 20));
+
+        panel.setBackgroundRendering(false);
+    }
+
+    /**
+     * Wait until the renderer has drawn a number of frames.
+     * @param renderer FrameRenderer; the renderer
+     * @param frames long; the number of frames to wait for
+     * @throws InterruptedException when the test is interrupted
+     */
+    private static void waitForFrames(final FrameRenderer renderer, final long frames) throws InterruptedException
+    {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (renderer.getFrameCount() < frames && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(5);
+        }
+        assertEquals(frames, renderer.getFrameCount());
+    }
+
+    /**
+     * Draw the last finished frame of the panel on an empty screen image.
+     * @param panel TestPanel; the panel
+     * @return BufferedImage; the screen image
+     */
+    private static BufferedImage draw(final TestPanel panel)
+    {
+        BufferedImage screen = new BufferedImage(TestPanel.SIZE, TestPanel.SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = screen.createGraphics();
+        panel.getFrameRenderer().drawFrame(graphics, panel.getExtent(), panel.getSize(), null);
+        graphics.dispose();
+        return screen;
+    }
+
+    /**
+     * Return whether the screen shows the square of the test panel at a position.
+     * @param screen BufferedImage; the screen image
+     * @param position double; the x- and y-coordinate of the square
+     * @return boolean; whether the screen shows the square at the position
+     */
+    private static boolean isRed(final BufferedImage screen, final double position)
+    {
+        return new Color(screen.getRGB((int) position, TestPanel.SIZE - (int) position), true).equals(Color.RED);
+    }
+
+    /**
+     * AnimationPanel with a single red square as animation element, of which the painting can be blocked. The extent is (0, 0)
+     * - (100, 100), and the screen size is 100 x 100 pixels, so world coordinates and pixels have the same scale.
+     */
+    static class TestPanel extends AnimationPanel
+    {
+        /** */
+        private static final long serialVersionUID = 1L;
+
+        /** the width and height of the extent and the screen. */
+        static final int SIZE = 100;
+
+        /** the current x- and y-coordinate of the square, as set by the test. */
+        private volatile double position = 10.0;
+
+        /** the position of the square in the last snapshot. */
+        private volatile double snapshotPosition = Double.NaN;
+
+        /** the thread that took the last snapshot. */
+        private volatile Thread snapshotThread = null;
+
+        /** the number of snapshots. */
+        private volatile int snapshots = 0;
+
+        /** the latch that is counted down when painting has started. */
+        private volatile CountDownLatch painting = new CountDownLatch(1);
+
+        /** the latch that blocks painting, or null when painting is not blocked. */
+        private volatile CountDownLatch blocked = null;
+
+        /**
+         * Create a test panel for a DEVSAnimator.
+         * @throws RemoteException on network error
+         * @throws DSOLException when the simulator is not an animator
+         */
+        TestPanel() throws RemoteException, DSOLException
+        {
+            super(new Bounds2d(0, SIZE, 0, SIZE), new DEVSAnimator.TimeDouble("FrameRendererTest"));
+            setSize(SIZE, SIZE);
+        }
+
+        /** Block the painting of the next frame until release() is called. */
+        void block()
+        {
+            this.painting = new CountDownLatch(1);
+            this.blocked = new CountDownLatch(1);
+        }
+
+        /** Release the painting of the frame. */
+        void release()
+        {
+            this.blocked.countDown();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isShowing()
+        {
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void updateIndex()
+        {
+            this.snapshotPosition = this.position;
+            this.snapshotThread = Thread.currentThread();
+            this.snapshots++;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected boolean isSnapshotNeeded()
+        {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void paintElements(final Graphics2D g2, final Bounds2d extent, final Dimension screenSize)
+        {
+            this.painting.countDown();
+            CountDownLatch latch = this.blocked;
+            if (latch != null)
+            {
+                try
+                {
+                    latch.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException exception)
+                {
+                    return;
+                }
+                this.blocked = null;
+            }
+            int x = (int) this.snapshotPosition;
+            int y = SIZE - (int) this.snapshotPosition;
+            g2.setColor(Color.RED);
+            g2.fillRect(x - 2, y - 2, 5, 5);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package nl.tudelft.simulation.dsol.web;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.server.WebSocketHandler;
+import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
+
+import nl.tudelft.simulation.dsol.web.animation.AnimationFrame;
+import nl.tudelft.simulation.dsol.web.animation.AnimationStreamEncoder;
+import nl.tudelft.simulation.dsol.web.animation.D2.HTMLAnimationPanel;
+
+/**
+ * AnimationStreamHandler pushes the animation of an HTMLAnimationPanel as a binary stream over a WebSocket to the browsers
+ * that are connected. At a fixed interval, the panel is painted once into an AnimationFrame, and for every connected browser
+ * an AnimationStreamEncoder encodes the differences with the previous message that the browser has received. When nothing
+ * has changed, no message is sent. When the previous message to a browser has not been written yet, the browser skips the
+ * frame, and receives all changes in the next frame, so a slow connection does not build up a queue of frames. The browser
+ * decodes the messages with the DsolAnimationStream in /js/dsol-animation-stream.js.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class AnimationStreamHandler extends WebSocketHandler
+{
+    /** the context path of the WebSocket of the animation stream. */
+    public static final String CONTEXT_PATH = "/animationStream";
+
+    /** the animation panel to paint. */
+    private final HTMLAnimationPanel animationPanel;
+
+    /** the interval between two frames in milliseconds. */
+    private final long interval;
+
+    /** the connected sockets. */
+    private final Set<AnimationSocket> sockets = new CopyOnWriteArraySet<>();
+
+    /** the executor that paints and pushes the frames. */
+    private ScheduledExecutorService executor = null;
+
+    /** the scheduled task that paints and pushes the frames. */
+    private ScheduledFuture<?> pushTask = null;
+
+    /**
+     * Create a handler that pushes the animation of a panel to the connected browsers.
+     * @param animationPanel HTMLAnimationPanel; the animation panel to paint
+     * @param interval long; the interval between two frames in milliseconds
+     * @throws NullPointerException when animationPanel is null
+     * @throws IllegalArgumentException when interval &lt;= 0
+     */
+    public AnimationStreamHandler(final HTMLAnimationPanel animationPanel, final long interval)
+    {
+        Throw.whenNull(animationPanel, "animationPanel cannot be null");
+        Throw.when(interval <= 0, IllegalArgumentException.class, "interval should be > 0");
+        this.animationPanel = animationPanel;
+        this.interval = interval;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void configure(final WebSocketServletFactory factory)
+    {
+        factory.setCreator((request, response) -> new AnimationSocket());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "AnimationStreamHandler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pushTask = this.executor.scheduleWithFixedDelay(this::push, this.interval, this.interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doStop() throws Exception
+    {
+        this.pushTask.cancel(false);
+        this.executor.shutdown();
+        super.doStop();
+    }
+
+    /**
+     * Paint the animation panel once, and send the frame to all connected sockets. An exception is logged and not thrown,
+     * because it would cancel the scheduled task.
+     */
+    protected void push()
+    {
+        if (this.sockets.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            AnimationFrame frame = this.animationPanel.getAnimationFrame();
+            for (AnimationSocket socket : this.sockets)
+            {
+                socket.send(frame);
+            }
+        }
+        catch (Exception exception)
+        {
+            CategoryLogger.always().warn(exception, "AnimationStreamHandler.push");
+        }
+    }
+
+    /**
+     * Return the number of connected browsers.
+     * @return int; the number of connected browsers
+     */
+    public int getNumberConnections()
+    {
+        return this.sockets.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "AnimationStreamHandler [interval=" + this.interval + ", connections=" + this.sockets.size() + "]";
+    }
+
+    /**
+     * AnimationSocket is the WebSocket of one browser, with the encoder that knows what the browser has received.
+     */
+    class AnimationSocket extends WebSocketAdapter implements WriteCallback
+    {
+        /** the encoder of the messages for this browser. */
+        private final AnimationStreamEncoder encoder = new AnimationStreamEncoder();
+
+        /** whether a message is being written to the browser. */
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+
+        /** {@inheritDoc} */
+        @Override
+        public void onWebSocketConnect(final Session session)
+        {
+            super.onWebSocketConnect(session);
+            AnimationStreamHandler.this.sockets.add(this);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onWebSocketClose(final int statusCode, final String reason)
+        {
+            AnimationStreamHandler.this.sockets.remove(this);
+            super.onWebSocketClose(statusCode, reason);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onWebSocketError(final Throwable cause)
+        {
+            AnimationStreamHandler.this.sockets.remove(this);
+            super.onWebSocketError(cause);
+        }
+
+        /**
+         * Send the differences between the frame and what the browser has received, unless the previous message is still
+         * being written.
+         * @param frame AnimationFrame; the frame to send
+         */
+        void send(final AnimationFrame frame)
+        {
+            if (!isConnected() || !this.sending.compareAndSet(false, true))
+            {
+                return;
+            }
+            byte[] message = this.encoder.encode(frame);
+            if (message == null)
+            {
+                this.sending.set(false);
+                return;
+            }
+            RemoteEndpoint remote = getRemote();
+            if (remote == null)
+            {
+                // the socket has been closed after the isConnected() check
+                writeFailed(null);
+                return;
+            }
+            try
+            {
+                remote.sendBytes(ByteBuffer.wrap(message), this);
+            }
+            catch (RuntimeException exception)
+            {
+                writeFailed(exception);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void writeSuccess()
+        {
+            this.sending.set(false);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void writeFailed(final Throwable cause)
+        {
+            // the browser may have missed the message, so the next message contains the full scene
+            this.encoder.reset();
+            this.sending.set(false);
+        }
+    }
+
+}
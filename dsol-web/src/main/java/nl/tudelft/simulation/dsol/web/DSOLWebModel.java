@@ -26,7 +26,6 @@ import org.eclipse.jetty.server.Request;
 
 import nl.tudelft.simulation.dsol.SimRuntimeException;
 import nl.tudelft.simulation.dsol.animation.Locatable;
-import nl.tudelft.simulation.dsol.animation.D2.Renderable2DInterface;
 import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
 import nl.tudelft.simulation.dsol.simulators.AnimatorInterface;
 import nl.tudelft.simulation.dsol.simulators.DEVSRealTimeAnimator;
@@ -351,14 +350,7 @@ public class DSOLWebModel implements EventListenerInterface
                         {
                             Point2d point = animationPanel.getRenderableScale().getWorldCoordinates(new Point2D.Double(x, y),
                                     animationPanel.getExtent(), animationPanel.getSize());
-                            for (Renderable2DInterface<?> renderable : animationPanel.getElements())
-                            {
-                                if (animationPanel.isShowElement(renderable)
-                                        && renderable.contains(point, animationPanel.getExtent()))
-                                {
-                                    targets.add(renderable.getSource());
-                                }
-                            }
+                            targets.addAll(animationPanel.getSelectedObjects(point));
                         }
                         catch (Exception exception)
                         {
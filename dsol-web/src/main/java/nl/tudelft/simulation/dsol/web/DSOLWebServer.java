@@ -24,16 +24,15 @@ import org.djutils.event.EventInterface;
 import org.djutils.event.EventListenerInterface;
 import org.djutils.event.TimedEvent;
 import org.djutils.io.URLResource;
-import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.HandlerList;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 
 import nl.tudelft.simulation.dsol.SimRuntimeException;
 import nl.tudelft.simulation.dsol.animation.Locatable;
-import nl.tudelft.simulation.dsol.animation.D2.Renderable2DInterface;
 import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
 import nl.tudelft.simulation.dsol.simulators.AnimatorInterface;
 import nl.tudelft.simulation.dsol.simulators.DEVSRealTimeAnimator;
@@ -54,6 +53,9 @@ import nl.tudelft.simulation.introspection.beans.BeanIntrospector;
  */
 public abstract class DSOLWebServer implements EventListenerInterface
 {
+    /** the interval between two frames of the binary animation stream in milliseconds. */
+    public static final long ANIMATION_STREAM_INTERVAL = 40L;
+
     /** the title for the model window. */
     private final String title;
 
@@ -119,7 +121,16 @@ public abstract class DSOLWebServer implements EventListenerInterface
             resourceHandler.setResourceBase(webRoot);
 
             HandlerList handlers = new HandlerList();
-            handlers.setHandlers(new Handler[] {resourceHandler, new XHRHandler(DSOLWebServer.this)});
+            if (DSOLWebServer.this.animationPanel != null)
+            {
+                // the binary animation stream over a WebSocket; browsers without WebSocket poll 'animate' with XHR
+                ContextHandler streamContext = new ContextHandler(AnimationStreamHandler.CONTEXT_PATH);
+                streamContext.setHandler(
+                        new AnimationStreamHandler(DSOLWebServer.this.animationPanel, ANIMATION_STREAM_INTERVAL));
+                handlers.addHandler(streamContext);
+            }
+            handlers.addHandler(resourceHandler);
+            handlers.addHandler(new XHRHandler(DSOLWebServer.this));
             server.setHandler(handlers);
 
             try
@@ -411,14 +422,7 @@ public abstract class DSOLWebServer implements EventListenerInterface
                             {
                                 Point2d point = animationPanel.getRenderableScale().getWorldCoordinates(
                                         new Point2D.Double(x, y), animationPanel.getExtent(), animationPanel.getSize());
-                                for (Renderable2DInterface<?> renderable : animationPanel.getElements())
-                                {
-                                    if (animationPanel.isShowElement(renderable)
-                                            && renderable.contains(point, animationPanel.getExtent()))
-                                    {
-                                        targets.add(renderable.getSource());
-                                    }
-                                }
+                                targets.addAll(animationPanel.getSelectedObjects(point));
                             }
                             catch (Exception exception)
                             {
@@ -0,0 +1,103 @@
+package nl.tudelft.simulation.dsol.web.animation;
+
+import java.util.Arrays;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * AnimationFrame is the immutable result of painting the animation once with an HTMLStreamGraphics2D. For every drawn object
+ * it contains the id of the object, the encoded geometry of the object in its own coordinates, and the placement of the object
+ * on the screen as the 6 values {m00, m10, m01, m11, m02, m12} of an affine transform, in the order in which the objects have
+ * been drawn. The AnimationStreamEncoder of a client compares the frame with the previous frame that has been sent to the
+ * client, and only encodes the differences.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class AnimationFrame
+{
+    /** the ids of the objects in drawing order. */
+    private final long[] ids;
+
+    /** the encoded geometry of the objects; the arrays should not be changed. */
+    private final byte[][] geometries;
+
+    /** the placements of the objects; the arrays should not be changed. */
+    private final double[][] placements;
+
+    /**
+     * Create a frame. The arrays are not copied, so they should not be changed after the frame has been created.
+     * @param ids long[]; the ids of the objects in drawing order
+     * @param geometries byte[][]; the encoded geometry of the objects
+     * @param placements double[][]; the placements of the objects, each with 6 values
+     * @throws NullPointerException when one of the arrays is null
+     * @throws IllegalArgumentException when the arrays have a different length, or a placement does not have 6 values
+     */
+    public AnimationFrame(final long[] ids, final byte[][] geometries, final double[][] placements)
+    {
+        Throw.whenNull(ids, "ids cannot be null");
+        Throw.whenNull(geometries, "geometries cannot be null");
+        Throw.whenNull(placements, "placements cannot be null");
+        Throw.when(ids.length != geometries.length || ids.length != placements.length, IllegalArgumentException.class,
+                "ids, geometries and placements should have the same length");
+        for (double[] placement : placements)
+        {
+            Throw.when(placement.length != 6, IllegalArgumentException.class, "a placement should have 6 values");
+        }
+        this.ids = ids;
+        this.geometries = geometries;
+        this.placements = placements;
+    }
+
+    /**
+     * Return the number of objects in the frame.
+     * @return int; the number of objects in the frame
+     */
+    public int size()
+    {
+        return this.ids.length;
+    }
+
+    /**
+     * Return the id of an object.
+     * @param index int; the index of the object in drawing order
+     * @return long; the id of the object
+     */
+    public long getId(final int index)
+    {
+        return this.ids[index];
+    }
+
+    /**
+     * Return the encoded geometry of an object. The array should not be changed.
+     * @param index int; the index of the object in drawing order
+     * @return byte[]; the encoded geometry of the object
+     */
+    public byte[] getGeometry(final int index)
+    {
+        return this.geometries[index];
+    }
+
+    /**
+     * Return the placement of an object as the values {m00, m10, m01, m11, m02, m12} of an affine transform. The array should
+     * not be changed.
+     * @param index int; the index of the object in drawing order
+     * @return double[]; the placement of the object
+     */
+    public double[] getPlacement(final int index)
+    {
+        return this.placements[index];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return "AnimationFrame [ids=" + Arrays.toString(this.ids) + "]";
+    }
+
+}
@@ -0,0 +1,255 @@
+package nl.tudelft.simulation.dsol.web.animation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * AnimationStreamEncoder encodes the AnimationFrames for one client of the binary animation stream. The encoder remembers
+ * which geometry, placement and drawing order the client has received, so the geometry of an object is only sent when the
+ * object is new or its drawing has changed, the placement of an object is only sent for the values that have changed, and
+ * the drawing order is only sent when it has changed. When nothing has changed, no message is needed at all. The client
+ * keeps the state of the scene, and draws the objects in the drawing order, each with its geometry at its placement.
+ * <p>
+ * A message starts with the VERSION byte, followed by records that each start with a tag byte:
+ * </p>
+ * <ul>
+ * <li>RESET: the client removes all objects; only in the first message, or after reset()</li>
+ * <li>REMOVE, id: the object is not drawn anymore and can be removed</li>
+ * <li>GEOMETRY, id, length, bytes: the new geometry of the object, encoded as described in HTMLStreamGraphics2D</li>
+ * <li>PLACEMENT, id, mask, deltas: the changed values of the placement {m00, m10, m01, m11, m02, m12} of the object. The
+ * values are quantized to integers: the scale and rotation values m00, m10, m01 and m11 to the bits of the nearest float, and
+ * the translation values m02 and m12 to whole TRANSLATION_UNITS of a pixel. Bit i of the mask byte is set when quantized value
+ * i has changed, and for every changed value the difference with the previous quantized value (0 for a new object) is written
+ * as a zigzag-encoded signed varint. Moving an object by a few pixels therefore costs one or two bytes per coordinate.</li>
+ * <li>ORDER, count, ids: the new drawing order of the objects; every id is encoded as the difference with the previous id in
+ * the list (the first with 0)</li>
+ * </ul>
+ * Ids and id differences are zigzag-encoded signed varints, and the length and count are unsigned varints.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class AnimationStreamEncoder
+{
+    /** the version of the stream format, which is the first byte of every message. */
+    public static final byte VERSION = 2;
+
+    /** the tag of a reset record. */
+    public static final byte RESET = 1;
+
+    /** the tag of a remove record. */
+    public static final byte REMOVE = 2;
+
+    /** the tag of a geometry record. */
+    public static final byte GEOMETRY = 3;
+
+    /** the tag of a placement record. */
+    public static final byte PLACEMENT = 4;
+
+    /** the tag of an order record. */
+    public static final byte ORDER = 5;
+
+    /** the number of units per pixel in which the translation values of a placement are sent. */
+    public static final int TRANSLATION_UNITS = 16;
+
+    /** the quantized placement of a new object, to which the first placement is compared. */
+    private static final long[] ZERO_PLACEMENT = new long[6];
+
+    /** the geometry of the objects that the client has received. */
+    private final Map<Long, byte[]> sentGeometries = new HashMap<>();
+
+    /** the quantized placement of the objects that the client has received. */
+    private final Map<Long, long[]> sentPlacements = new HashMap<>();
+
+    /** the drawing order that the client has received. */
+    private long[] sentOrder = new long[0];
+
+    /** whether the next message has to start with a reset. */
+    private boolean resetNeeded = true;
+
+    /**
+     * Forget what the client has received, so the next message starts with a reset and contains the full scene. This is
+     * needed when a message could not be delivered to the client.
+     */
+    public synchronized void reset()
+    {
+        this.sentGeometries.clear();
+        this.sentPlacements.clear();
+        this.sentOrder = new long[0];
+        this.resetNeeded = true;
+    }
+
+    /**
+     * Encode the differences between the frame and what the client has received, and assume that the client receives the
+     * message.
+     * @param frame AnimationFrame; the frame to send to the client
+     * @return byte[]; the message for the client, or null when the frame is the same as what the client has received
+     * @throws NullPointerException when frame is null
+     */
+    public synchronized byte[] encode(final AnimationFrame frame)
+    {
+        Throw.whenNull(frame, "frame cannot be null");
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            boolean changed = false;
+            if (this.resetNeeded)
+            {
+                out.writeByte(RESET);
+                this.resetNeeded = false;
+                changed = true;
+            }
+
+            // remove the objects that are not in the frame anymore
+            Set<Long> frameIds = new HashSet<>();
+            long[] order = new long[frame.size()];
+            for (int i = 0; i < frame.size(); i++)
+            {
+                order[i] = frame.getId(i);
+                frameIds.add(order[i]);
+            }
+            for (Iterator<Long> it = this.sentGeometries.keySet().iterator(); it.hasNext();)
+            {
+                Long id = it.next();
+                if (!frameIds.contains(id))
+                {
+                    out.writeByte(REMOVE);
+                    writeSignedVarint(out, id);
+                    it.remove();
+                    this.sentPlacements.remove(id);
+                    changed = true;
+                }
+            }
+
+            // send new and changed geometry, and the changed values of the placements
+            for (int i = 0; i < frame.size(); i++)
+            {
+                long id = frame.getId(i);
+                byte[] geometry = frame.getGeometry(i);
+                byte[] sentGeometry = this.sentGeometries.get(id);
+                if (sentGeometry != geometry && !Arrays.equals(sentGeometry, geometry))
+                {
+                    out.writeByte(GEOMETRY);
+                    writeSignedVarint(out, id);
+                    HTMLStreamGraphics2D.writeVarint(out, geometry.length);
+                    out.write(geometry);
+                    changed = true;
+                }
+                this.sentGeometries.put(id, geometry);
+
+                long[] placement = quantize(frame.getPlacement(i));
+                long[] sentPlacement = this.sentPlacements.get(id);
+                if (sentPlacement == null)
+                {
+                    sentPlacement = ZERO_PLACEMENT;
+                }
+                changed |= writePlacement(out, id, placement, sentPlacement);
+                this.sentPlacements.put(id, placement);
+            }
+
+            // send the drawing order when it has changed
+            if (!Arrays.equals(order, this.sentOrder))
+            {
+                out.writeByte(ORDER);
+                HTMLStreamGraphics2D.writeVarint(out, order.length);
+                long previousId = 0L;
+                for (long id : order)
+                {
+                    writeSignedVarint(out, id - previousId);
+                    previousId = id;
+                }
+                this.sentOrder = order;
+                changed = true;
+            }
+            return changed ? bytes.toByteArray() : null;
+        }
+        catch (IOException exception)
+        {
+            // cannot happen when writing to a byte array
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Quantize the values of a placement to the integers that are sent to the client: the bits of the nearest float for the
+     * scale and rotation values, and whole TRANSLATION_UNITS of a pixel for the translation values.
+     * @param placement double[]; the placement {m00, m10, m01, m11, m02, m12}
+     * @return long[]; the quantized placement
+     */
+    static long[] quantize(final double[] placement)
+    {
+        long[] quantized = new long[6];
+        for (int j = 0; j < 4; j++)
+        {
+            quantized[j] = Float.floatToIntBits((float) placement[j]);
+        }
+        quantized[4] = Math.round(placement[4] * TRANSLATION_UNITS);
+        quantized[5] = Math.round(placement[5] * TRANSLATION_UNITS);
+        return quantized;
+    }
+
+    /**
+     * Write a placement record with the differences of the quantized values of the placement that have changed, when there are
+     * any.
+     * @param out DataOutputStream; the output to write to
+     * @param id long; the id of the object
+     * @param placement long[]; the new quantized placement
+     * @param sentPlacement long[]; the quantized placement that the client has received
+     * @return boolean; whether a placement record has been written
+     * @throws IOException on error writing the record
+     */
+    private static boolean writePlacement(final DataOutputStream out, final long id, final long[] placement,
+            final long[] sentPlacement) throws IOException
+    {
+        int mask = 0;
+        for (int j = 0; j < 6; j++)
+        {
+            if (placement[j] != sentPlacement[j])
+            {
+                mask |= 1 << j;
+            }
+        }
+        if (mask == 0)
+        {
+            return false;
+        }
+        out.writeByte(PLACEMENT);
+        writeSignedVarint(out, id);
+        out.writeByte(mask);
+        for (int j = 0; j < 6; j++)
+        {
+            if (placement[j] != sentPlacement[j])
+            {
+                writeSignedVarint(out, placement[j] - sentPlacement[j]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a signed value as a zigzag-encoded varint, so values close to zero give short varints.
+     * @param out DataOutputStream; the output to write to
+     * @param value long; the value to write
+     * @throws IOException on error writing the value
+     */
+    private static void writeSignedVarint(final DataOutputStream out, final long value) throws IOException
+    {
+        HTMLStreamGraphics2D.writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+}
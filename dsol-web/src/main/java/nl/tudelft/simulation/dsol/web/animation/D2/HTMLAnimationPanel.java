@@ -12,15 +12,17 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-import org.djutils.draw.bounds.Bounds;
 import org.djutils.draw.bounds.Bounds2d;
-import org.djutils.draw.point.Point;
+import org.djutils.draw.point.Point2d;
 import org.djutils.event.EventInterface;
 import org.djutils.event.EventListenerInterface;
+import org.djutils.exceptions.Throw;
 
 import nl.tudelft.simulation.dsol.animation.Locatable;
+import nl.tudelft.simulation.dsol.animation.D2.LevelOfDetail;
 import nl.tudelft.simulation.dsol.animation.D2.Renderable2DComparator;
 import nl.tudelft.simulation.dsol.animation.D2.Renderable2DInterface;
+import nl.tudelft.simulation.dsol.animation.D2.RenderableIndex;
 import nl.tudelft.simulation.dsol.animation.gis.GisMapInterface;
 import nl.tudelft.simulation.dsol.animation.gis.GisRenderable2D;
 import nl.tudelft.simulation.dsol.experiment.ReplicationInterface;
@@ -48,6 +50,12 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
     /** */
     private static final long serialVersionUID = 20200108L;
 
+    /** the object id of the elements that the level of detail draws as points or density tiles in the animation stream. */
+    public static final long LEVEL_OF_DETAIL_ID = -2L;
+
+    /** the object id of the drag line in the binary animation stream. */
+    public static final long DRAG_LINE_ID = -3L;
+
     /** the elements of this panel. */
     private SortedSet<Renderable2DInterface<? extends Locatable>> elements =
             new TreeSet<Renderable2DInterface<? extends Locatable>>(new Renderable2DComparator());
@@ -73,11 +81,11 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
     /** enable drag line. */
     private boolean dragLineEnabled = false;
 
-    /** List of drawable objects. */
-    private List<Renderable2DInterface<? extends Locatable>> elementList = new ArrayList<>();
+    /** the spatial index of the elements, to only paint and pick the elements that overlap with an extent or a point. */
+    private final RenderableIndex index = new RenderableIndex();
 
-    /** dirty flag for the list. */
-    private boolean dirtyElements = false;
+    /** the level of detail, to draw the elements that are too small on the screen as density tiles. */
+    private LevelOfDetail levelOfDetail = new LevelOfDetail(LevelOfDetail.Mode.DENSITY);
 
     /** Map of toggle names to toggle animation classes. */
     private Map<String, Class<? extends Locatable>> toggleLocatableMap = new LinkedHashMap<>();
@@ -117,31 +125,34 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
         // draw the grid.
         super.paintComponent(g2);
 
-        // update drawable elements when necessary
-        if (this.dirtyElements)
+        // update the positions of the elements in the index, and remove the elements for which destroy has been called
+        for (Renderable2DInterface<? extends Locatable> element : this.index.update())
         {
-            synchronized (this.elementList)
-            {
-                this.elementList.clear();
-                this.elementList.addAll(this.elements);
-                this.dirtyElements = false;
-            }
+            objectRemoved(element);
         }
 
-        // draw the animation elements.
-        for (Renderable2DInterface<? extends Locatable> element : this.elementList)
+        // draw the animation elements that overlap with the extent.
+        this.levelOfDetail.begin(this.getExtent(), this.getSize());
+        for (Renderable2DInterface<? extends Locatable> element : this.index.query(this.getExtent()))
         {
-            if (isShowElement(element))
+            if (isShowElement(element) && !this.levelOfDetail.add(element))
             {
+                g2.beginObject(element.getId());
                 element.paintComponent(g2, this.getExtent(), this.getSize(), getRenderableScale(), this);
+                g2.endObject();
             }
         }
+        g2.beginObject(LEVEL_OF_DETAIL_ID);
+        this.levelOfDetail.end(g2, this);
+        g2.endObject();
 
         // draw drag line if enabled.
         if (this.dragLineEnabled)
         {
+            g2.beginObject(DRAG_LINE_ID);
             g2.setColor(Color.BLACK);
             g2.drawLine(this.dragLine[0], this.dragLine[1], this.dragLine[2], this.dragLine[3]);
+            g2.endObject();
             this.dragLineEnabled = false;
         }
     }
@@ -215,9 +226,10 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
         else if // (this.simulator.getSourceId().equals(event.getSourceId()) && // TODO: improve check
         (event.getType().equals(ReplicationInterface.START_REPLICATION_EVENT))
         {
-            synchronized (this.elementList)
+            synchronized (this.elements)
             {
                 this.elements.clear();
+                this.index.clear();
                 try
                 {
                     if (this.context != null)
@@ -250,10 +262,10 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
      */
     public void objectAdded(final Renderable2DInterface<? extends Locatable> element)
     {
-        synchronized (this.elementList)
+        synchronized (this.elements)
         {
             this.elements.add(element);
-            this.dirtyElements = true;
+            this.index.add(element);
         }
     }
 
@@ -263,10 +275,10 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
      */
     public void objectRemoved(final Renderable2DInterface<? extends Locatable> element)
     {
-        synchronized (this.elementList)
+        synchronized (this.elements)
         {
             this.elements.remove(element);
-            this.dirtyElements = true;
+            this.index.remove(element);
         }
     }
 
@@ -276,36 +288,37 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
      */
     public synchronized Bounds2d fullExtent()
     {
-        double minX = Double.MAX_VALUE;
-        double maxX = -Double.MAX_VALUE;
-        double minY = Double.MAX_VALUE;
-        double maxY = -Double.MAX_VALUE;
-        try
+        for (Renderable2DInterface<? extends Locatable> element : this.index.update())
         {
-            for (Renderable2DInterface<? extends Locatable> renderable : this.elementList)
-            {
-                Point<?> l = renderable.getSource().getLocation();
-                if (l != null)
-                {
-                    Bounds<?, ?, ?> b = renderable.getSource().getBounds();
-                    minX = Math.min(minX, l.getX() + b.getMinX());
-                    minY = Math.min(minY, l.getY() + b.getMinY());
-                    maxX = Math.max(maxX, l.getX() + b.getMaxX());
-                    maxY = Math.max(maxY, l.getY() + b.getMaxY());
-                }
-            }
+            objectRemoved(element);
         }
-        catch (Exception e)
+        Bounds2d bounds = this.index.getBounds();
+        if (bounds == null)
         {
-            // ignore
+            return getExtent();
         }
+        double marginX = 0.05 * bounds.getDeltaX();
+        double marginY = 0.05 * bounds.getDeltaY();
+        return new Bounds2d(bounds.getMinX() - marginX, bounds.getMaxX() + marginX, bounds.getMinY() - marginY,
+                bounds.getMaxY() + marginY);
+    }
 
-        minX -= 0.05 * Math.abs(maxX - minX);
-        minY -= 0.05 * Math.abs(maxY - minY);
-        maxX += 0.05 * Math.abs(maxX - minX);
-        maxY += 0.05 * Math.abs(maxY - minY);
-
-        return new Bounds2d(minX, maxX, minY, maxY);
+    /**
+     * Return the list of shown objects whose animation contains a point.
+     * @param point Point2d; the point in world coordinates
+     * @return List&lt;Locatable&gt;; the shown objects whose animation contains the point
+     */
+    public List<Locatable> getSelectedObjects(final Point2d point)
+    {
+        List<Locatable> targets = new ArrayList<Locatable>();
+        for (Renderable2DInterface<?> renderable : this.index.query(point))
+        {
+            if (isShowElement(renderable) && renderable.contains(point, getExtent()))
+            {
+                targets.add(renderable.getSource());
+            }
+        }
+        return targets;
     }
 
     /**
@@ -366,6 +379,36 @@ public class HTMLAnimationPanel extends HTMLGridPanel implements EventListenerIn
         return this.elements;
     }
 
+    /**
+     * Return the spatial index of the animation elements.
+     * @return RenderableIndex; the spatial index of the animation elements
+     */
+    public RenderableIndex getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * Return the level of detail that draws the elements that are too small on the screen as points or density tiles.
+     * @return LevelOfDetail; the level of detail of the panel
+     */
+    public LevelOfDetail getLevelOfDetail()
+    {
+        return this.levelOfDetail;
+    }
+
+    /**
+     * Set the level of detail that draws the elements that are too small on the screen as points or density tiles. Use a
+     * LevelOfDetail with Mode.DETAIL to always paint all elements in detail.
+     * @param levelOfDetail LevelOfDetail; the new level of detail of the panel
+     * @throws NullPointerException when levelOfDetail is null
+     */
+    public void setLevelOfDetail(final LevelOfDetail levelOfDetail)
+    {
+        Throw.whenNull(levelOfDetail, "levelOfDetail cannot be null");
+        this.levelOfDetail = levelOfDetail;
+    }
+
     /**
      * @return returns the dragLine.
      */
@@ -16,7 +16,9 @@ import org.djutils.draw.bounds.Bounds2d;
 import org.djutils.draw.point.Point2d;
 
 import nl.tudelft.simulation.dsol.animation.D2.RenderableScale;
+import nl.tudelft.simulation.dsol.web.animation.AnimationFrame;
 import nl.tudelft.simulation.dsol.web.animation.HTMLGraphics2D;
+import nl.tudelft.simulation.dsol.web.animation.HTMLStreamGraphics2D;
 
 /**
  * The GridPanel introduces the gridPanel.
@@ -46,6 +48,9 @@ public class HTMLGridPanel implements ImageObserver
     /** the ZOOM factor. */
     public static final double ZOOMFACTOR = 1.2;
 
+    /** the object id of the grid in the binary animation stream. */
+    public static final long GRID_ID = -1L;
+
     /** gridColor. */
     protected static final Color GRIDCOLOR = Color.BLACK;
 
@@ -112,6 +117,10 @@ public class HTMLGridPanel implements ImageObserver
     @SuppressWarnings("checkstyle:visibilitymodifier")
     protected HTMLGraphics2D htmlGraphics2D;
 
+    /** the HTMLStreamGraphics2D 'shadow' canvas for the binary animation stream. */
+    @SuppressWarnings("checkstyle:visibilitymodifier")
+    protected HTMLStreamGraphics2D streamGraphics2D;
+
     /** dirty flag. */
     private boolean dirty = false;
 
@@ -136,6 +145,7 @@ public class HTMLGridPanel implements ImageObserver
     {
         this.renderableScale = new RenderableScale();
         this.htmlGraphics2D = new HTMLGraphics2D();
+        this.streamGraphics2D = new HTMLStreamGraphics2D();
         this.extent = extent;
         this.homeExtent = extent;
         this.setBackground(Color.WHITE);
@@ -155,6 +165,18 @@ public class HTMLGridPanel implements ImageObserver
         return this.htmlGraphics2D.closeAndGetCommands();
     }
 
+    /**
+     * Return the drawing of the panel as a frame for the binary animation stream, with the drawing of every object keyed by
+     * its id.
+     * @return AnimationFrame; the drawing of the panel for the binary animation stream
+     */
+    public synchronized AnimationFrame getAnimationFrame()
+    {
+        this.streamGraphics2D.clearCommand();
+        this.paintComponent(this.streamGraphics2D);
+        return this.streamGraphics2D.closeAndGetFrame();
+    }
+
     /**
      * Draw the grid.
      * @param g HTMLGraphics2D; the virtual Graphics2D canvas to enable writing to the browser
@@ -168,7 +190,9 @@ public class HTMLGridPanel implements ImageObserver
         }
         if (this.showGrid)
         {
+            g.beginObject(GRID_ID);
             this.drawGrid(g);
+            g.endObject();
         }
     }
 
@@ -100,6 +100,25 @@ public class HTMLGraphics2D extends Graphics2D
         return this.commands.toString();
     }
 
+    /**
+     * Start the drawing of an animation object with the given id. The commands that are drawn until endObject() is called
+     * belong to this object. The XML commands do not use the id, but the binary animation stream of HTMLStreamGraphics2D
+     * sends the drawing of an object again only when it has changed.
+     * @param id long; the id of the object that will be drawn
+     */
+    public void beginObject(final long id)
+    {
+        // the XML commands are not keyed
+    }
+
+    /**
+     * End the drawing of the animation object that was started with beginObject().
+     */
+    public void endObject()
+    {
+        // the XML commands are not keyed
+    }
+
     /**
      * Add a draw command
      * @param drawCommand String; the tag for the draw command
@@ -158,19 +177,7 @@ public class HTMLGraphics2D extends Graphics2D
     protected void addFontData()
     {
         this.commands.append(",");
-        String javaFontName = this.font.getFontName().toLowerCase();
-        String htmlFontName;
-        if (javaFontName.contains("arial") || javaFontName.contains("helvetica") || javaFontName.contains("verdana")
-                || javaFontName.contains("tahoma") || javaFontName.contains("segoe") || javaFontName.contains("sans"))
-            htmlFontName = "sans-serif";
-        else if (javaFontName.contains("times") || javaFontName.contains("cambria") || javaFontName.contains("georgia")
-                || javaFontName.contains("serif"))
-            htmlFontName = "serif";
-        else if (javaFontName.contains("courier") || javaFontName.contains("consol") || javaFontName.contains("mono"))
-            htmlFontName = "monospace";
-        else
-            htmlFontName = "sans-serif";
-        this.commands.append(htmlFontName);
+        this.commands.append(getHtmlFontName());
         this.commands.append(",");
         this.commands.append(this.font.getSize2D());
         this.commands.append(",");
@@ -182,6 +189,24 @@ public class HTMLGraphics2D extends Graphics2D
             this.commands.append("plain");
     }
 
+    /**
+     * Return the HTML font family of the current font: sans-serif, serif, or monospace.
+     * @return String; the HTML font family of the current font
+     */
+    protected String getHtmlFontName()
+    {
+        String javaFontName = this.font.getFontName().toLowerCase();
+        if (javaFontName.contains("arial") || javaFontName.contains("helvetica") || javaFontName.contains("verdana")
+                || javaFontName.contains("tahoma") || javaFontName.contains("segoe") || javaFontName.contains("sans"))
+            return "sans-serif";
+        else if (javaFontName.contains("times") || javaFontName.contains("cambria") || javaFontName.contains("georgia")
+                || javaFontName.contains("serif"))
+            return "serif";
+        else if (javaFontName.contains("courier") || javaFontName.contains("consol") || javaFontName.contains("mono"))
+            return "monospace";
+        return "sans-serif";
+    }
+
     /**
      * Add fill command, transform.m11(h-scale), transform.m12(h-skew), transform.m21(v-skew), transform.m22(v-scale),
      * transform.dx(h-translate), transform.dy(v-translate), color.r, color.g, color.b, color.alpha, color.transparency,
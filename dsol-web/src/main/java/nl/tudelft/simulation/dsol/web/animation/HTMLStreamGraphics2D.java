@@ -0,0 +1,463 @@
+package nl.tudelft.simulation.dsol.web.animation;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * HTMLStreamGraphics2D records the drawing of the animation as binary geometry per animation object, for the binary animation
+ * stream that is pushed to the browser over a WebSocket. The drawing of an object is started with beginObject(id) and ended
+ * with endObject(). The transform at the first drawing command of an object is the <i>placement</i> of the object, and all
+ * drawing commands of the object are stored relative to that placement. When an object only moves, rotates, or is zoomed, its
+ * geometry stays the same and only the placement changes, so the AnimationStreamEncoder only has to send the new placement.
+ * Drawing commands outside beginObject() and endObject() are stored as separate unkeyed objects with the ids -1000, -1001,
+ * etc. in the order in which they are drawn in the frame.
+ * <p>
+ * The geometry of an object is a sequence of primitives, each of which starts with an opcode byte, followed by a byte that is
+ * 0 when the relative transform is the identity, or 1 when the 6 floats {m00, m10, m01, m11, m02, m12} of the relative
+ * transform follow, and by the color as 4 bytes r, g, b, alpha. The draw primitives DRAW_OVAL, DRAW_RECT, DRAW_LINE and
+ * DRAW_PATH then have the line width as a float. The remainder of the primitive depends on the opcode:
+ * </p>
+ * <ul>
+ * <li>FILL_OVAL, DRAW_OVAL: 4 floats center x, center y, radius x, radius y</li>
+ * <li>FILL_RECT, DRAW_RECT, CLEAR_RECT: 4 floats x, y, width, height</li>
+ * <li>DRAW_LINE: 4 floats x1, y1, x2, y2</li>
+ * <li>FILL_PATH, DRAW_PATH: for FILL_PATH a byte with the winding rule (0 = even-odd, 1 = non-zero), the number of segments
+ * as a varint, and for every segment a byte with the PathIterator segment type (SEG_MOVETO = 0, SEG_LINETO = 1, SEG_QUADTO =
+ * 2, SEG_CUBICTO = 3, SEG_CLOSE = 4) followed by the 0, 2, 4, or 6 float coordinates of the segment</li>
+ * <li>DRAW_STRING: the font family (sans-serif, serif, or monospace) as a string, the font size as a float, the font style as
+ * a byte (0 = plain, 1 = bold, 2 = italic), the x and y position as floats, and the text as a string</li>
+ * </ul>
+ * Strings are encoded as a varint with the number of UTF-8 bytes, followed by the bytes. All numbers are big-endian.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class HTMLStreamGraphics2D extends HTMLGraphics2D
+{
+    /** the opcode to fill an oval. */
+    public static final byte FILL_OVAL = 1;
+
+    /** the opcode to draw the outline of an oval. */
+    public static final byte DRAW_OVAL = 2;
+
+    /** the opcode to fill a rectangle. */
+    public static final byte FILL_RECT = 3;
+
+    /** the opcode to draw the outline of a rectangle. */
+    public static final byte DRAW_RECT = 4;
+
+    /** the opcode to clear a rectangle. */
+    public static final byte CLEAR_RECT = 5;
+
+    /** the opcode to draw a line. */
+    public static final byte DRAW_LINE = 6;
+
+    /** the opcode to fill a path. */
+    public static final byte FILL_PATH = 7;
+
+    /** the opcode to draw the outline of a path. */
+    public static final byte DRAW_PATH = 8;
+
+    /** the opcode to draw a string. */
+    public static final byte DRAW_STRING = 9;
+
+    /** the id of the first unkeyed object in a frame; the next unkeyed objects count down from this id. */
+    public static final long FIRST_UNKEYED_ID = -1000L;
+
+    /** the bytes of the geometry of the current object. */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    /** the output to write the geometry of the current object. */
+    private final DataOutputStream output = new DataOutputStream(this.bytes);
+
+    /** the id of the current object. */
+    private long objectId;
+
+    /** whether an object has been started with beginObject(). */
+    private boolean inObject = false;
+
+    /** the placement of the current object, or null when nothing has been drawn for the object. */
+    private AffineTransform placement = null;
+
+    /** the inverse of the placement of the current object. */
+    private AffineTransform inversePlacement = null;
+
+    /** the number of unkeyed objects in the current frame. */
+    private int numberUnkeyed = 0;
+
+    /** the ids of the objects that have been started in the current frame. */
+    private Set<Long> frameIds = new HashSet<>();
+
+    /** the ids of the objects of the current frame in drawing order. */
+    private List<Long> ids = new ArrayList<>();
+
+    /** the geometries of the objects of the current frame in drawing order. */
+    private List<byte[]> geometries = new ArrayList<>();
+
+    /** the placements of the objects of the current frame in drawing order. */
+    private List<double[]> placements = new ArrayList<>();
+
+    /** the geometries of the previous frame, to reuse the same array when the geometry of an object did not change. */
+    private Map<Long, byte[]> previousGeometries = new HashMap<>();
+
+    /**
+     * Clear the recorded objects to start a new frame.
+     */
+    @Override
+    public void clearCommand()
+    {
+        this.inObject = false;
+        this.placement = null;
+        this.numberUnkeyed = 0;
+        this.frameIds = new HashSet<>();
+        this.ids = new ArrayList<>();
+        this.geometries = new ArrayList<>();
+        this.placements = new ArrayList<>();
+    }
+
+    /**
+     * The stream does not produce XML commands; use closeAndGetFrame() instead.
+     * @return String; an empty animate tag
+     */
+    @Override
+    public String closeAndGetCommands()
+    {
+        return "<animate>\n</animate>\n";
+    }
+
+    /**
+     * Close the current frame, and return the recorded objects.
+     * @return AnimationFrame; the objects that have been drawn since clearCommand()
+     */
+    public AnimationFrame closeAndGetFrame()
+    {
+        if (this.inObject)
+        {
+            endObject();
+        }
+        int size = this.ids.size();
+        long[] frameIdArray = new long[size];
+        Map<Long, byte[]> frameGeometries = new HashMap<>();
+        for (int i = 0; i < size; i++)
+        {
+            frameIdArray[i] = this.ids.get(i);
+            frameGeometries.put(this.ids.get(i), this.geometries.get(i));
+        }
+        this.previousGeometries = frameGeometries;
+        return new AnimationFrame(frameIdArray, this.geometries.toArray(new byte[size][]),
+                this.placements.toArray(new double[size][]));
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException when the object with the id has already been drawn in this frame
+     */
+    @Override
+    public void beginObject(final long id)
+    {
+        Throw.when(this.frameIds.contains(id), IllegalArgumentException.class,
+                "object with id %d has already been drawn in this frame", id);
+        if (this.inObject)
+        {
+            endObject();
+        }
+        this.frameIds.add(id);
+        this.objectId = id;
+        this.inObject = true;
+        this.placement = null;
+        this.bytes.reset();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endObject()
+    {
+        if (!this.inObject)
+        {
+            return;
+        }
+        this.inObject = false;
+        if (this.placement == null)
+        {
+            // nothing has been drawn for the object, e.g., because it is outside the extent
+            return;
+        }
+        byte[] geometry = this.bytes.toByteArray();
+        byte[] previousGeometry = this.previousGeometries.get(this.objectId);
+        if (Arrays.equals(geometry, previousGeometry))
+        {
+            geometry = previousGeometry;
+        }
+        this.ids.add(this.objectId);
+        this.geometries.add(geometry);
+        double[] matrix = new double[6];
+        this.placement.getMatrix(matrix);
+        this.placements.add(matrix);
+        this.placement = null;
+    }
+
+    /**
+     * Start a primitive: write the opcode, the transform relative to the placement of the object, and the color. When nothing
+     * has been drawn yet for the current object, the current transform becomes the placement of the object. When no object has
+     * been started, a new unkeyed object is started.
+     * @param opcode byte; the opcode of the primitive
+     * @param primitiveColor Color; the color of the primitive
+     * @throws IOException on error writing to the byte array (not expected)
+     */
+    protected void writePrimitiveStart(final byte opcode, final Color primitiveColor) throws IOException
+    {
+        if (!this.inObject)
+        {
+            long id;
+            do
+            {
+                id = FIRST_UNKEYED_ID - this.numberUnkeyed++;
+            }
+            while (this.frameIds.contains(id));
+            beginObject(id);
+        }
+        if (this.placement == null)
+        {
+            this.placement = new AffineTransform(this.affineTransform);
+            try
+            {
+                this.inversePlacement = this.placement.createInverse();
+            }
+            catch (NoninvertibleTransformException exception)
+            {
+                // the drawing cannot be expressed relative to the transform; draw relative to the identity instead
+                this.placement = new AffineTransform();
+                this.inversePlacement = new AffineTransform();
+            }
+        }
+        this.output.writeByte(opcode);
+        if (this.affineTransform.equals(this.placement))
+        {
+            this.output.writeByte(0);
+        }
+        else
+        {
+            AffineTransform relative = new AffineTransform(this.inversePlacement);
+            relative.concatenate(this.affineTransform);
+            double[] matrix = new double[6];
+            relative.getMatrix(matrix);
+            this.output.writeByte(1);
+            for (double value : matrix)
+            {
+                this.output.writeFloat((float) value);
+            }
+        }
+        this.output.writeByte(primitiveColor.getRed());
+        this.output.writeByte(primitiveColor.getGreen());
+        this.output.writeByte(primitiveColor.getBlue());
+        this.output.writeByte(primitiveColor.getAlpha());
+        if (opcode == DRAW_OVAL || opcode == DRAW_RECT || opcode == DRAW_LINE || opcode == DRAW_PATH)
+        {
+            this.output.writeFloat(this.stroke instanceof BasicStroke ? ((BasicStroke) this.stroke).getLineWidth() : 0.1f);
+        }
+    }
+
+    /**
+     * Return the color for fill and draw commands, which is the paint when it is a color, and the color otherwise.
+     * @return Color; the color for fill and draw commands
+     */
+    private Color getPaintColor()
+    {
+        return this.paint instanceof Color ? (Color) this.paint : this.color;
+    }
+
+    /**
+     * Return the opcode of a fill or draw command of HTMLGraphics2D.
+     * @param command String; the command
+     * @return byte; the opcode of the command, or 0 when the command is not known
+     */
+    private static byte opcode(final String command)
+    {
+        switch (command)
+        {
+            case "fillOval":
+                return FILL_OVAL;
+            case "drawOval":
+                return DRAW_OVAL;
+            case "fillRect":
+                return FILL_RECT;
+            case "drawRect":
+                return DRAW_RECT;
+            case "clearRect":
+                return CLEAR_RECT;
+            case "drawLine":
+                return DRAW_LINE;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Write a primitive with an opcode and 4 float parameters.
+     * @param command String; the fill or draw command of HTMLGraphics2D
+     * @param params Object...; the 4 numeric parameters of the command
+     */
+    private void writeShape(final String command, final Object... params)
+    {
+        byte opcode = opcode(command);
+        if (opcode == 0 || params.length != 4)
+        {
+            return;
+        }
+        try
+        {
+            writePrimitiveStart(opcode, getPaintColor());
+            for (Object param : params)
+            {
+                this.output.writeFloat(((Number) param).floatValue());
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addTransformFill(final String fillCommand, final Object... params)
+    {
+        writeShape(fillCommand, params);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addTransformDraw(final String drawCommand, final Object... params)
+    {
+        writeShape(drawCommand, params);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addTransformPathFloat(final Path2D.Float path, final boolean fill)
+    {
+        writePath(path, fill);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addTransformPathDouble(final Path2D.Double path, final boolean fill)
+    {
+        writePath(path, fill);
+    }
+
+    /**
+     * Write a path as a FILL_PATH or DRAW_PATH primitive.
+     * @param path Path2D; the path to write
+     * @param fill boolean; whether the path is filled or drawn
+     */
+    private void writePath(final Path2D path, final boolean fill)
+    {
+        try
+        {
+            writePrimitiveStart(fill ? FILL_PATH : DRAW_PATH, this.color);
+            if (fill)
+            {
+                this.output.writeByte(path.getWindingRule() == Path2D.WIND_EVEN_ODD ? 0 : 1);
+            }
+            ByteArrayOutputStream segmentBytes = new ByteArrayOutputStream();
+            DataOutputStream segmentOutput = new DataOutputStream(segmentBytes);
+            int numberSegments = 0;
+            float[] coords = new float[6];
+            for (PathIterator i = path.getPathIterator(null); !i.isDone(); i.next())
+            {
+                int segment = i.currentSegment(coords);
+                segmentOutput.writeByte(segment);
+                int numberCoords = segment == PathIterator.SEG_CLOSE ? 0 : segment == PathIterator.SEG_CUBICTO ? 6
+                        : segment == PathIterator.SEG_QUADTO ? 4 : 2;
+                for (int c = 0; c < numberCoords; c++)
+                {
+                    segmentOutput.writeFloat(coords[c]);
+                }
+                numberSegments++;
+            }
+            writeVarint(this.output, numberSegments);
+            segmentBytes.writeTo(this.output);
+        }
+        catch (IOException exception)
+        {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void addTransformText(final String drawCommand, final Object... params)
+    {
+        if (!"drawString".equals(drawCommand) || params.length != 3)
+        {
+            return;
+        }
+        try
+        {
+            writePrimitiveStart(DRAW_STRING, this.color);
+            writeString(this.output, getHtmlFontName());
+            this.output.writeFloat(this.font.getSize2D());
+            this.output.writeByte(this.font.isBold() ? 1 : this.font.isItalic() ? 2 : 0);
+            this.output.writeFloat(((Number) params[0]).floatValue());
+            this.output.writeFloat(((Number) params[1]).floatValue());
+            writeString(this.output, params[2].toString());
+        }
+        catch (IOException exception)
+        {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Write an unsigned varint: 7 bits per byte, least significant group first, with the high bit set when more bytes follow.
+     * @param out DataOutputStream; the output to write to
+     * @param value long; the value to write, interpreted as unsigned
+     * @throws IOException on error writing the value
+     */
+    public static void writeVarint(final DataOutputStream out, final long value) throws IOException
+    {
+        long v = value;
+        while ((v & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /**
+     * Write a string as a varint with the number of UTF-8 bytes, followed by the bytes.
+     * @param out DataOutputStream; the output to write to
+     * @param s String; the string to write
+     * @throws IOException on error writing the string
+     */
+    public static void writeString(final DataOutputStream out, final String s) throws IOException
+    {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length);
+        out.write(utf8);
+    }
+
+}
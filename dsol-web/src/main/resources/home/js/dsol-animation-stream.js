@@ -0,0 +1,339 @@
+/*
+ * DsolAnimationStream decodes the binary animation stream that the AnimationStreamHandler of the DSOLWebServer pushes over a
+ * WebSocket, and draws the scene on a canvas. The stream is an object-keyed scene: the geometry of an object is only received
+ * when the object is new or its drawing has changed, and per frame only the changed values of the placements of the objects
+ * are received, as differences of the quantized values. See AnimationStreamEncoder and HTMLStreamGraphics2D for the format.
+ *
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved.
+ * The DSOL project is distributed under a three-clause BSD-style license, which can be found at
+ * https://simulation.tudelft.nl/dsol/3.0/license.html.
+ *
+ * usage:
+ *   var stream = new DsolAnimationStream();
+ *   socket.binaryType = "arraybuffer";
+ *   socket.onmessage = function(event) { stream.decode(event.data); stream.draw(context); };
+ */
+
+// the tags of the records in a message
+var DSOL_STREAM_VERSION = 2;
+
+// the number of units per pixel of the quantized translation values of a placement
+var DSOL_STREAM_TRANSLATION_UNITS = 16;
+var DSOL_STREAM_RESET = 1;
+var DSOL_STREAM_REMOVE = 2;
+var DSOL_STREAM_GEOMETRY = 3;
+var DSOL_STREAM_PLACEMENT = 4;
+var DSOL_STREAM_ORDER = 5;
+
+// the opcodes of the primitives in the geometry of an object
+var DSOL_FILL_OVAL = 1;
+var DSOL_DRAW_OVAL = 2;
+var DSOL_FILL_RECT = 3;
+var DSOL_DRAW_RECT = 4;
+var DSOL_CLEAR_RECT = 5;
+var DSOL_DRAW_LINE = 6;
+var DSOL_FILL_PATH = 7;
+var DSOL_DRAW_PATH = 8;
+var DSOL_DRAW_STRING = 9;
+
+// the segment types of a path, as in java.awt.geom.PathIterator
+var DSOL_SEG_MOVETO = 0;
+var DSOL_SEG_LINETO = 1;
+var DSOL_SEG_QUADTO = 2;
+var DSOL_SEG_CUBICTO = 3;
+var DSOL_SEG_CLOSE = 4;
+
+// the html fonts for the font families of the stream
+var DSOL_STREAM_FONTS = {
+  "sans-serif" : "Calibri, Helvetica, Arial, sans-serif",
+  "serif" : "Georgia, Times, 'Times New Roman', serif",
+  "monospace" : "Courier, 'Courier New', monospace"
+};
+
+// =============================== READER ======================================
+
+/* Reader for the big-endian numbers, varints and strings of a message. */
+function DsolStreamReader(buffer) {
+  this.view = new DataView(buffer);
+  this.bytes = new Uint8Array(buffer);
+  this.position = 0;
+  this.length = buffer.byteLength;
+}
+
+DsolStreamReader.prototype.readByte = function() {
+  return this.view.getUint8(this.position++);
+};
+
+DsolStreamReader.prototype.readFloat = function() {
+  var value = this.view.getFloat32(this.position);
+  this.position += 4;
+  return value;
+};
+
+/* Read an unsigned varint; values up to 2^53 are exact. */
+DsolStreamReader.prototype.readVarint = function() {
+  var result = 0;
+  var scale = 1;
+  var b;
+  do {
+    b = this.view.getUint8(this.position++);
+    result += (b & 0x7F) * scale;
+    scale *= 128;
+  } while (b & 0x80);
+  return result;
+};
+
+/* Read a zigzag-encoded signed varint. */
+DsolStreamReader.prototype.readSignedVarint = function() {
+  var value = this.readVarint();
+  return (value % 2 === 0) ? value / 2 : -(value + 1) / 2;
+};
+
+DsolStreamReader.prototype.readString = function() {
+  var length = this.readVarint();
+  var utf8 = this.bytes.subarray(this.position, this.position + length);
+  this.position += length;
+  if (typeof TextDecoder !== "undefined") {
+    return new TextDecoder("utf-8").decode(utf8);
+  }
+  var s = "";
+  for (var i = 0; i < utf8.length; i++) {
+    s += String.fromCharCode(utf8[i]);
+  }
+  return decodeURIComponent(escape(s));
+};
+
+// =============================== SCENE ======================================
+
+/* The scene of a stream: the objects by id, and the drawing order of the ids. */
+function DsolAnimationStream() {
+  this.objects = {};
+  this.order = [];
+  this.scratch = new DataView(new ArrayBuffer(4));
+}
+
+/* Return the object with the given id, and create it with a zero placement when it does not exist. */
+DsolAnimationStream.prototype.getObject = function(id) {
+  var object = this.objects[id];
+  if (object === undefined) {
+    object = {
+      primitives : [],
+      placement : [ 0, 0, 0, 0, 0, 0 ],
+      quantized : [ 0, 0, 0, 0, 0, 0 ]
+    };
+    this.objects[id] = object;
+  }
+  return object;
+};
+
+/* Decode a message (ArrayBuffer) and apply it to the scene. */
+DsolAnimationStream.prototype.decode = function(buffer) {
+  var reader = new DsolStreamReader(buffer);
+  var version = reader.readByte();
+  if (version !== DSOL_STREAM_VERSION) {
+    throw "DsolAnimationStream: unknown version " + version;
+  }
+  while (reader.position < reader.length) {
+    var tag = reader.readByte();
+    if (tag === DSOL_STREAM_RESET) {
+      this.objects = {};
+      this.order = [];
+    }
+    else if (tag === DSOL_STREAM_REMOVE) {
+      delete this.objects[reader.readSignedVarint()];
+    }
+    else if (tag === DSOL_STREAM_GEOMETRY) {
+      var object = this.getObject(reader.readSignedVarint());
+      var end = reader.readVarint() + reader.position;
+      object.primitives = this.readGeometry(reader, end);
+    }
+    else if (tag === DSOL_STREAM_PLACEMENT) {
+      this.readPlacement(reader, this.getObject(reader.readSignedVarint()));
+    }
+    else if (tag === DSOL_STREAM_ORDER) {
+      var count = reader.readVarint();
+      var order = new Array(count);
+      var id = 0;
+      for (var i = 0; i < count; i++) {
+        id += reader.readSignedVarint();
+        order[i] = id;
+      }
+      this.order = order;
+    }
+    else {
+      throw "DsolAnimationStream: unknown tag " + tag;
+    }
+  }
+};
+
+/* Add the differences of the changed quantized placement values: float bits for m00..m11, and fixed units for m02, m12. */
+DsolAnimationStream.prototype.readPlacement = function(reader, object) {
+  var mask = reader.readByte();
+  for (var j = 0; j < 6; j++) {
+    if (mask & (1 << j)) {
+      object.quantized[j] += reader.readSignedVarint();
+      if (j < 4) {
+        this.scratch.setInt32(0, object.quantized[j]);
+        object.placement[j] = this.scratch.getFloat32(0);
+      }
+      else {
+        object.placement[j] = object.quantized[j] / DSOL_STREAM_TRANSLATION_UNITS;
+      }
+    }
+  }
+};
+
+/* Read the primitives of the geometry of an object up to the end position. */
+DsolAnimationStream.prototype.readGeometry = function(reader, end) {
+  var primitives = [];
+  while (reader.position < end) {
+    var p = {};
+    p.opcode = reader.readByte();
+    p.transform = null;
+    if (reader.readByte() === 1) {
+      p.transform = [];
+      for (var i = 0; i < 6; i++) {
+        p.transform.push(reader.readFloat());
+      }
+    }
+    var r = reader.readByte(), g = reader.readByte(), b = reader.readByte(), a = reader.readByte();
+    p.color = "rgba(" + r + "," + g + "," + b + "," + (a / 255) + ")";
+    if (p.opcode === DSOL_DRAW_OVAL || p.opcode === DSOL_DRAW_RECT || p.opcode === DSOL_DRAW_LINE
+        || p.opcode === DSOL_DRAW_PATH) {
+      p.lineWidth = reader.readFloat();
+    }
+    if (p.opcode === DSOL_FILL_PATH || p.opcode === DSOL_DRAW_PATH) {
+      p.fillRule = "nonzero";
+      if (p.opcode === DSOL_FILL_PATH && reader.readByte() === 0) {
+        p.fillRule = "evenodd";
+      }
+      var numberSegments = reader.readVarint();
+      p.segments = [];
+      for (var s = 0; s < numberSegments; s++) {
+        var segment = reader.readByte();
+        var numberCoords = segment === DSOL_SEG_CLOSE ? 0 : segment === DSOL_SEG_CUBICTO ? 6
+            : segment === DSOL_SEG_QUADTO ? 4 : 2;
+        var coords = [];
+        for (var c = 0; c < numberCoords; c++) {
+          coords.push(reader.readFloat());
+        }
+        p.segments.push({
+          type : segment,
+          coords : coords
+        });
+      }
+    }
+    else if (p.opcode === DSOL_DRAW_STRING) {
+      var family = reader.readString();
+      var size = reader.readFloat();
+      var style = reader.readByte();
+      p.font = (style === 1 ? "bold " : style === 2 ? "italic " : "") + size + "pt "
+          + (DSOL_STREAM_FONTS[family] || DSOL_STREAM_FONTS["sans-serif"]);
+      p.x = reader.readFloat();
+      p.y = reader.readFloat();
+      p.text = reader.readString();
+    }
+    else {
+      p.params = [ reader.readFloat(), reader.readFloat(), reader.readFloat(), reader.readFloat() ];
+    }
+    primitives.push(p);
+  }
+  return primitives;
+};
+
+// =============================== DRAWING ======================================
+
+/* Draw the scene on a (cleared) canvas context: every object in drawing order with its geometry at its placement. */
+DsolAnimationStream.prototype.draw = function(context) {
+  for (var i = 0; i < this.order.length; i++) {
+    var object = this.objects[this.order[i]];
+    if (object === undefined) {
+      continue;
+    }
+    var m = object.placement;
+    for (var k = 0; k < object.primitives.length; k++) {
+      var p = object.primitives[k];
+      context.save();
+      context.setTransform(m[0], m[1], m[2], m[3], m[4], m[5]);
+      if (p.transform !== null) {
+        context.transform(p.transform[0], p.transform[1], p.transform[2], p.transform[3], p.transform[4], p.transform[5]);
+      }
+      dsolDrawPrimitive(context, p);
+      context.restore();
+    }
+  }
+  context.setTransform(1, 0, 0, 1, 0, 0);
+};
+
+/* Draw one primitive in the current transform of the context. */
+function dsolDrawPrimitive(context, p) {
+  context.fillStyle = p.color;
+  context.strokeStyle = p.color;
+  if (p.lineWidth !== undefined) {
+    context.lineWidth = p.lineWidth;
+  }
+  switch (p.opcode) {
+    case DSOL_FILL_OVAL:
+    case DSOL_DRAW_OVAL:
+      context.beginPath();
+      context.ellipse(p.params[0], p.params[1], Math.abs(p.params[2]), Math.abs(p.params[3]), 0, 0, 2 * Math.PI, false);
+      if (p.opcode === DSOL_FILL_OVAL)
+        context.fill();
+      else
+        context.stroke();
+      break;
+
+    case DSOL_FILL_RECT:
+      context.fillRect(p.params[0], p.params[1], p.params[2], p.params[3]);
+      break;
+
+    case DSOL_DRAW_RECT:
+      context.strokeRect(p.params[0], p.params[1], p.params[2], p.params[3]);
+      break;
+
+    case DSOL_CLEAR_RECT:
+      context.clearRect(p.params[0], p.params[1], p.params[2], p.params[3]);
+      break;
+
+    case DSOL_DRAW_LINE:
+      context.beginPath();
+      context.moveTo(p.params[0], p.params[1]);
+      context.lineTo(p.params[2], p.params[3]);
+      context.stroke();
+      break;
+
+    case DSOL_FILL_PATH:
+    case DSOL_DRAW_PATH:
+      context.beginPath();
+      for (var s = 0; s < p.segments.length; s++) {
+        var c = p.segments[s].coords;
+        switch (p.segments[s].type) {
+          case DSOL_SEG_MOVETO:
+            context.moveTo(c[0], c[1]);
+            break;
+          case DSOL_SEG_LINETO:
+            context.lineTo(c[0], c[1]);
+            break;
+          case DSOL_SEG_QUADTO:
+            context.quadraticCurveTo(c[0], c[1], c[2], c[3]);
+            break;
+          case DSOL_SEG_CUBICTO:
+            context.bezierCurveTo(c[0], c[1], c[2], c[3], c[4], c[5]);
+            break;
+          case DSOL_SEG_CLOSE:
+            context.closePath();
+            break;
+        }
+      }
+      if (p.opcode === DSOL_FILL_PATH)
+        context.fill(p.fillRule);
+      else
+        context.stroke();
+      break;
+
+    case DSOL_DRAW_STRING:
+      context.font = p.font;
+      context.fillText(p.text, p.x, p.y);
+      break;
+  }
+}
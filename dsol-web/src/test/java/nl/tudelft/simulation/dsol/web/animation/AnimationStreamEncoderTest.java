@@ -0,0 +1,292 @@
+package nl.tudelft.simulation.dsol.web.animation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * AnimationStreamEncoderTest encodes frames with the AnimationStreamEncoder, decodes the messages in the same way as the
+ * JavaScript client (dsol-animation-stream.js) does, and checks that the decoded placements match the placements of the frames
+ * within the quantum, and that small moves only cost a few bytes.
+ * <p>
+ * Copyright (c) 2022-2022 Delft University of Technology, Jaffalaan 5, 2628 BX Delft, the Netherlands. All rights reserved. See
+ * for project information <a href="https://simulation.tudelft.nl/dsol/manual/" target="_blank">DSOL Manual</a>. The DSOL
+ * project is distributed under a three-clause BSD-style license, which can be found at
+ * <a href="https://simulation.tudelft.nl/dsol/3.0/license.html" target="_blank">DSOL License</a>.
+ * </p>
+ * @author <a href="https://www.tudelft.nl/averbraeck">Alexander Verbraeck</a>
+ */
+public class AnimationStreamEncoderTest
+{
+    /** the geometry of the test objects; the decoder skips it. */
+    private static final byte[] GEOMETRY = new byte[] {HTMLStreamGraphics2D.FILL_RECT, 0, 1, 2, 3, 4};
+
+    /**
+     * Test that random placements, including zooming and rotation, survive the round trip within the quantum.
+     */
+    @Test
+    public void testRoundTrip()
+    {
+        Random random = new Random(1234L);
+        AnimationStreamEncoder encoder = new AnimationStreamEncoder();
+        Decoder decoder = new Decoder();
+        double[][] placements = new double[20][];
+        for (int i = 0; i < placements.length; i++)
+        {
+            placements[i] = randomPlacement(random);
+        }
+        for (int f = 0; f < 50; f++)
+        {
+            // move all objects a bit, and now and then zoom, rotate, or jump far away
+            for (int i = 0; i < placements.length; i++)
+            {
+                double[] p = placements[i].clone();
+                p[4] += random.nextGaussian() * 3.0;
+                p[5] += random.nextGaussian() * 3.0;
+                if (random.nextInt(10) == 0)
+                {
+                    p = randomPlacement(random);
+                }
+                placements[i] = p;
+            }
+            // leave out an object in some frames, so it is removed and added again
+            int size = f % 7 == 3 ? placements.length - 1 : placements.length;
+            AnimationFrame frame = frame(size, placements);
+            byte[] message = encoder.encode(frame);
+            assertNotNull(message);
+            decoder.decode(message);
+            assertEquals(size, decoder.order.length);
+            for (int i = 0; i < size; i++)
+            {
+                assertEquals(frame.getId(i), decoder.order[i]);
+                assertPlacement(frame.getPlacement(i), decoder.placements.get(frame.getId(i)));
+            }
+        }
+    }
+
+    /**
+     * Test that a small move only costs a few bytes, and that an unchanged frame or a move below the quantum costs nothing.
+     */
+    @Test
+    public void testSmallMove()
+    {
+        AnimationStreamEncoder encoder = new AnimationStreamEncoder();
+        Decoder decoder = new Decoder();
+        double[][] placements = new double[][] {{0.25, 0.0, 0.0, -0.25, 412.5, 300.0}, {1.0, 0.0, 0.0, 1.0, 10.0, 20.0}};
+        decoder.decode(encoder.encode(frame(2, placements)));
+        assertNull(encoder.encode(frame(2, placements)));
+
+        placements[0] = new double[] {0.25, 0.0, 0.0, -0.25, 414.0, 299.25};
+        byte[] message = encoder.encode(frame(2, placements));
+        // version, tag, id, mask, and one byte for each of the two translation differences
+        assertEquals(6, message.length);
+        decoder.decode(message);
+        assertPlacement(placements[0], decoder.placements.get(0L));
+        assertArrayEquals(new double[] {1.0, 0.0, 0.0, 1.0, 10.0, 20.0}, decoder.placements.get(1L), 0.0);
+
+        placements[0] = new double[] {0.25, 0.0, 0.0, -0.25, 414.01, 299.25};
+        assertNull(encoder.encode(frame(2, placements)));
+
+        // a move of an object far from the origin costs the same as a move close to the origin
+        placements[1] = new double[] {1.0, 0.0, 0.0, 1.0, 123456.0, -98765.0};
+        decoder.decode(encoder.encode(frame(2, placements)));
+        placements[1] = new double[] {1.0, 0.0, 0.0, 1.0, 123457.5, -98764.0};
+        message = encoder.encode(frame(2, placements));
+        assertTrue("message too long: " + message.length, message.length <= 7);
+        decoder.decode(message);
+        assertPlacement(placements[1], decoder.placements.get(1L));
+    }
+
+    /**
+     * Create a random placement with a random scale, rotation and translation.
+     * @param random Random; the random generator
+     * @return double[]; a random placement
+     */
+    private static double[] randomPlacement(final Random random)
+    {
+        double scale = Math.pow(10.0, random.nextDouble() * 6.0 - 3.0);
+        double angle = random.nextDouble() * 2.0 * Math.PI;
+        return new double[] {scale * Math.cos(angle), scale * Math.sin(angle), -scale * Math.sin(angle),
+                scale * Math.cos(angle), random.nextDouble() * 20000.0 - 10000.0, random.nextDouble() * 20000.0 - 10000.0};
+    }
+
+    /**
+     * Create a frame with the objects 0 .. size-1 in reverse drawing order.
+     * @param size int; the number of objects
+     * @param placements double[][]; the placements of the objects
+     * @return AnimationFrame; the frame
+     */
+    private static AnimationFrame frame(final int size, final double[][] placements)
+    {
+        long[] ids = new long[size];
+        byte[][] geometries = new byte[size][];
+        double[][] framePlacements = new double[size][];
+        for (int i = 0; i < size; i++)
+        {
+            ids[i] = size - 1 - i;
+            geometries[i] = GEOMETRY;
+            framePlacements[i] = placements[size - 1 - i].clone();
+        }
+        return new AnimationFrame(ids, geometries, framePlacements);
+    }
+
+    /**
+     * Assert that a decoded placement matches the placement within the quantum: the precision of a float for the scale and
+     * rotation values, and half a translation unit for the translation values.
+     * @param expected double[]; the placement of the frame
+     * @param actual double[]; the decoded placement
+     */
+    private static void assertPlacement(final double[] expected, final double[] actual)
+    {
+        for (int j = 0; j < 4; j++)
+        {
+            assertEquals(expected[j], actual[j], Math.ulp((float) expected[j]));
+        }
+        for (int j = 4; j < 6; j++)
+        {
+            assertEquals(expected[j], actual[j], 0.5 / AnimationStreamEncoder.TRANSLATION_UNITS + 1E-9);
+        }
+    }
+
+    /** Decoder of the placements and drawing order of the stream, in the same way as dsol-animation-stream.js. */
+    private static class Decoder
+    {
+        /** the quantized placements of the objects. */
+        private final Map<Long, long[]> quantized = new HashMap<>();
+
+        /** the decoded placements of the objects. */
+        private final Map<Long, double[]> placements = new HashMap<>();
+
+        /** the drawing order. */
+        private long[] order = new long[0];
+
+        /**
+         * Decode a message and apply it to the scene.
+         * @param message byte[]; the message
+         */
+        void decode(final byte[] message)
+        {
+            ByteBuffer in = ByteBuffer.wrap(message);
+            assertEquals(AnimationStreamEncoder.VERSION, in.get());
+            while (in.hasRemaining())
+            {
+                byte tag = in.get();
+                switch (tag)
+                {
+                    case AnimationStreamEncoder.RESET:
+                        this.quantized.clear();
+                        this.placements.clear();
+                        this.order = new long[0];
+                        break;
+
+                    case AnimationStreamEncoder.REMOVE:
+                    {
+                        long id = readSignedVarint(in);
+                        this.quantized.remove(id);
+                        this.placements.remove(id);
+                        break;
+                    }
+
+                    case AnimationStreamEncoder.GEOMETRY:
+                    {
+                        long id = readSignedVarint(in);
+                        byte[] geometry = new byte[(int) readVarint(in)];
+                        in.get(geometry);
+                        assertArrayEquals(GEOMETRY, geometry);
+                        getQuantized(id);
+                        break;
+                    }
+
+                    case AnimationStreamEncoder.PLACEMENT:
+                    {
+                        long id = readSignedVarint(in);
+                        long[] q = getQuantized(id);
+                        double[] p = this.placements.get(id);
+                        int mask = in.get();
+                        for (int j = 0; j < 6; j++)
+                        {
+                            if ((mask & (1 << j)) != 0)
+                            {
+                                q[j] += readSignedVarint(in);
+                                p[j] = j < 4 ? Float.intBitsToFloat((int) q[j])
+                                        : (double) q[j] / AnimationStreamEncoder.TRANSLATION_UNITS;
+                            }
+                        }
+                        break;
+                    }
+
+                    case AnimationStreamEncoder.ORDER:
+                    {
+                        this.order = new long[(int) readVarint(in)];
+                        long id = 0L;
+                        for (int i = 0; i < this.order.length; i++)
+                        {
+                            id += readSignedVarint(in);
+                            this.order[i] = id;
+                        }
+                        break;
+                    }
+
+                    default:
+                        throw new AssertionError("unknown tag " + tag);
+                }
+            }
+        }
+
+        /**
+         * Return the quantized placement of an object, and create the object with a zero placement when it does not exist.
+         * @param id long; the id of the object
+         * @return long[]; the quantized placement of the object
+         */
+        private long[] getQuantized(final long id)
+        {
+            if (!this.quantized.containsKey(id))
+            {
+                this.quantized.put(id, new long[6]);
+                this.placements.put(id, new double[6]);
+            }
+            return this.quantized.get(id);
+        }
+
+        /**
+         * Read an unsigned varint.
+         * @param in ByteBuffer; the input
+         * @return long; the value
+         */
+        private static long readVarint(final ByteBuffer in)
+        {
+            long result = 0L;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = in.get();
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            }
+            while ((b & 0x80) != 0);
+            return result;
+        }
+
+        /**
+         * Read a zigzag-encoded signed varint.
+         * @param in ByteBuffer; the input
+         * @return long; the value
+         */
+        private static long readSignedVarint(final ByteBuffer in)
+        {
+            long value = readVarint(in);
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+
+}